@@ -0,0 +1,52 @@
+package com.company.company_clean_hub_be.cccd.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Thread pool xử lý ảnh CCCD (OpenCV native + ZXing).
+ * Giới hạn số luồng để nhiều request onboarding cùng lúc không làm quá tải CPU / bộ nhớ native;
+ * khi hàng đợi đầy, luồng request tự xử lý (CallerRuns) thay vì báo lỗi.
+ */
+@Slf4j
+@Configuration
+public class CccdValidationExecutorConfig {
+
+    @Bean(name = "cccdValidationExecutor")
+    public ThreadPoolTaskExecutor cccdValidationExecutor(CccdValidationProperties props) {
+        int workers = props.getExecutor().getWorkers();
+        int queueCapacity = props.getExecutor().getQueueCapacity();
+        log.info("[CCCD] Initializing validation executor: workers={}, queueCapacity={}", workers, queueCapacity);
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(workers);
+        executor.setMaxPoolSize(workers);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("cccd-validation-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        executor.initialize();
+        return executor;
+    }
+
+    @Bean(name = "cccdQrDecodeExecutor")
+    public ThreadPoolTaskExecutor cccdQrDecodeExecutor(CccdValidationProperties props) {
+        int workers = props.getExecutor().getQrWorkers();
+        int queueCapacity = props.getExecutor().getQrQueueCapacity();
+        log.info("[CCCD] Initializing QR decode executor: workers={}, queueCapacity={}", workers, queueCapacity);
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(workers);
+        executor.setMaxPoolSize(workers);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("cccd-qr-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        executor.initialize();
+        return executor;
+    }
+}
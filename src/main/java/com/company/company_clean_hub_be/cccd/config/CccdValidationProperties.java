@@ -29,6 +29,9 @@ public class CccdValidationProperties {
     // Template
     private Template template = new Template();
 
+    // Thread pool xử lý 2 mặt song song
+    private Executor executor = new Executor();
+
     @Data
     public static class Card {
         private double minAreaRatio = 0.15;
@@ -61,4 +64,13 @@ public class CccdValidationProperties {
         private String backV1 = "back/cccd_back_v1.png";
         private double matchThreshold = 0.65;
     }
+
+    @Data
+    public static class Executor {
+        private int workers = 4;
+        private int queueCapacity = 100;
+        // Pool riêng cho các pass decode QR chạy song song (tránh chờ chéo với pool xử lý 2 mặt)
+        private int qrWorkers = 4;
+        private int qrQueueCapacity = 200;
+    }
 }
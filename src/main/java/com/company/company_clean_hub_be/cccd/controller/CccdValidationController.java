@@ -2,6 +2,7 @@ package com.company.company_clean_hub_be.cccd.controller;
 
 import com.company.company_clean_hub_be.cccd.dto.CccdValidationResponse;
 import com.company.company_clean_hub_be.cccd.service.impl.CccdValidationServiceImpl;
+import com.company.company_clean_hub_be.cccd.template.CccdTemplateFeatureCache;
 import com.company.company_clean_hub_be.dto.response.ApiResponse;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
@@ -21,6 +22,7 @@ import org.springframework.web.multipart.MultipartFile;
 public class CccdValidationController {
 
     CccdValidationServiceImpl cccdValidationService;
+    CccdTemplateFeatureCache templateFeatureCache;
 
     /**
      * POST /api/documents/cccd/validate & /api/v1/documents/cccd/validate
@@ -42,4 +44,15 @@ public class CccdValidationController {
 
         return ApiResponse.success("Kiểm tra ảnh CCCD thành công", response, HttpStatus.OK.value());
     }
+
+    /**
+     * POST /api/documents/cccd/templates/reload
+     * Tính lại đặc trưng template sau khi thay file template, không cần khởi động lại ứng dụng.
+     */
+    @PostMapping("/templates/reload")
+    @PreAuthorize("hasAnyRole('QLT1', 'QLT2')")
+    public ApiResponse<Void> reloadTemplates() {
+        templateFeatureCache.reload();
+        return ApiResponse.success("Tải lại template CCCD thành công", null, HttpStatus.OK.value());
+    }
 }
@@ -4,45 +4,88 @@ import com.company.company_clean_hub_be.cccd.dto.CccdExtractedData;
 import com.google.zxing.*;
 import com.google.zxing.client.j2se.BufferedImageLuminanceSource;
 import com.google.zxing.common.HybridBinarizer;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.bytedeco.javacpp.BytePointer;
+import org.bytedeco.javacpp.indexer.FloatIndexer;
+import org.bytedeco.opencv.global.opencv_core;
 import org.bytedeco.opencv.global.opencv_imgcodecs;
+import org.bytedeco.opencv.global.opencv_imgproc;
 import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_core.Rect;
+import org.bytedeco.opencv.opencv_core.Size;
+import org.bytedeco.opencv.opencv_objdetect.QRCodeDetector;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Component;
 
-import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayInputStream;
+import java.awt.image.DataBufferByte;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 
 /**
  * Trích xuất dữ liệu từ QR Code trên thẻ CCCD bằng ZXing.
  * Cấu trúc QR Code CCCD Việt Nam:
  * SốCCCD|SốCMNDCũ|HọVàTên|NgàySinh|GiớiTính|ĐịaChỉ|NgàyCấp
+ *
+ * Chiến lược decode:
+ * 1. Định vị QR bằng OpenCV (finder patterns) → chỉ cắt + xoay vùng ứng viên rồi decode.
+ * 2. Nếu không định vị/decode được → chạy song song các pass cũ (4 góc × 4 vùng cắt),
+ *    pass đầu tiên thành công sẽ huỷ các pass còn lại.
  */
 @Slf4j
 @Component
-@RequiredArgsConstructor
 public class CccdQrScanner {
 
+    private static final int[] FALLBACK_ANGLES = {0, 90, 270, 180};
+    // Biên mở rộng quanh vùng QR định vị được (tỷ lệ theo kích thước QR)
+    private static final double CANDIDATE_MARGIN = 0.15;
+    // QR nhỏ hơn ngưỡng này (px) được phóng to trước khi decode
+    private static final int MIN_CANDIDATE_SIZE = 300;
+
+    private final ThreadPoolTaskExecutor qrDecodeExecutor;
+
+    public CccdQrScanner(@Qualifier("cccdQrDecodeExecutor") ThreadPoolTaskExecutor qrDecodeExecutor) {
+        this.qrDecodeExecutor = qrDecodeExecutor;
+    }
+
     /**
      * Đọc QR Code từ OpenCV Mat.
      * @return CccdExtractedData nếu quét thành công, null nếu không đọc được QR
      */
-    /**
-     * Đọc QR Code từ OpenCV Mat.
-     */
     public CccdExtractedData scanQrCode(Mat image) {
         if (image == null || image.empty()) return null;
 
+        long start = System.nanoTime();
+        Mat gray = toGrayMat(image);
         try {
-            BufferedImage bufferedImage = matToBufferedImage(image);
-            return scanQrFromBufferedImage(bufferedImage);
+            // 1. Định vị + decode vùng ứng viên
+            Result result = decodeLocalizedCandidate(gray);
+            String strategy = "localized";
+
+            // 2. Fallback song song trên toàn ảnh
+            if (result == null) {
+                result = decodeFallbacksInParallel(toBufferedImage(gray));
+                strategy = "fallback";
+            }
+
+            long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+            if (result != null && result.getText() != null) {
+                String qrText = result.getText().trim();
+                log.info("[CCCD] QR Code decoded successfully ({} in {} ms): {}", strategy, elapsedMs, qrText);
+                return parseCccdQrText(qrText);
+            }
+
+            log.warn("[CCCD] QR Code scan failed (localization + parallel fallbacks) in {} ms", elapsedMs);
+            return null;
         } catch (Exception e) {
             log.warn("[CCCD] Error scanning QR code: {}", e.getMessage());
             return null;
+        } finally {
+            if (gray != image) gray.release();
         }
     }
 
@@ -51,56 +94,158 @@ public class CccdQrScanner {
      */
     public CccdExtractedData scanQrFromBytes(byte[] imageBytes) {
         if (imageBytes == null || imageBytes.length == 0) return null;
+        Mat buf = new Mat(1, imageBytes.length, opencv_core.CV_8UC1);
+        Mat mat = null;
         try {
-            BufferedImage bufferedImage = ImageIO.read(new ByteArrayInputStream(imageBytes));
-            return scanQrFromBufferedImage(bufferedImage);
+            buf.data().put(imageBytes);
+            mat = opencv_imgcodecs.imdecode(buf, opencv_imgcodecs.IMREAD_GRAYSCALE);
+            return scanQrCode(mat);
         } catch (Exception e) {
             log.warn("[CCCD] Error scanning QR from bytes: {}", e.getMessage());
             return null;
+        } finally {
+            buf.release();
+            if (mat != null) mat.release();
         }
     }
 
+    // ─── Localization ─────────────────────────────────────────────────────────
+
     /**
-     * Decode QR Code từ BufferedImage bằng ZXing đa chiến lược (Multi-pass & Multi-angle: 0°, 90°, 270°, 180°).
+     * Dùng QRCodeDetector của OpenCV tìm 4 góc QR, ước lượng hướng xoay theo cạnh trên,
+     * cắt vùng QR (kèm biên) và xoay về 0° trước khi decode.
      */
-    public CccdExtractedData scanQrFromBufferedImage(BufferedImage originalImg) {
-        if (originalImg == null) return null;
+    private Result decodeLocalizedCandidate(Mat gray) {
+        QRCodeDetector detector = new QRCodeDetector();
+        Mat points = new Mat();
+        Mat pts = null;
+        Mat candidate = null;
+        try {
+            if (!detector.detect(gray, points) || points.empty() || points.total() < 4) {
+                log.debug("[CCCD] QR localization: no candidate found");
+                return null;
+            }
 
-        int[] angles = {0, 90, 270, 180};
-        for (int angle : angles) {
-            BufferedImage bufferedImage = rotateImage(originalImg, angle);
-            if (bufferedImage == null) continue;
+            pts = points.reshape(1, 4);
+            FloatIndexer idx = pts.createIndexer();
+            float[] xs = new float[4];
+            float[] ys = new float[4];
+            try {
+                for (int i = 0; i < 4; i++) {
+                    xs[i] = idx.get(i, 0);
+                    ys[i] = idx.get(i, 1);
+                }
+            } finally {
+                idx.release();
+            }
 
-            // Pass 1: Decode toàn bộ ảnh
-            Result result = tryDecodeSingleImage(bufferedImage);
+            candidate = cropAndOrient(gray, xs, ys);
+            if (candidate == null) return null;
 
-            // Pass 2: Crop vùng góc trên bên phải 2x (Vị trí chứa QR Code chuẩn của thẻ CCCD)
-            if (result == null) {
-                BufferedImage topRight2x = cropAndScale(bufferedImage, 0.45, 0.0, 0.55, 0.55, 2.0);
-                result = tryDecodeSingleImage(topRight2x);
-            }
+            return tryDecodeSingleImage(toBufferedImage(candidate));
+        } catch (Exception e) {
+            log.debug("[CCCD] QR localization error: {}", e.getMessage());
+            return null;
+        } finally {
+            if (candidate != null) candidate.release();
+            // reshape trả về header Mat mới (dùng chung dữ liệu với points) — cũng phải giải phóng
+            if (pts != null) pts.release();
+            points.release();
+            detector.close();
+        }
+    }
 
-            // Pass 3: Crop vùng góc trên bên phải 3x
-            if (result == null) {
-                BufferedImage topRight3x = cropAndScale(bufferedImage, 0.45, 0.0, 0.55, 0.55, 3.0);
-                result = tryDecodeSingleImage(topRight3x);
-            }
+    private Mat cropAndOrient(Mat gray, float[] xs, float[] ys) {
+        float minX = Math.min(Math.min(xs[0], xs[1]), Math.min(xs[2], xs[3]));
+        float maxX = Math.max(Math.max(xs[0], xs[1]), Math.max(xs[2], xs[3]));
+        float minY = Math.min(Math.min(ys[0], ys[1]), Math.min(ys[2], ys[3]));
+        float maxY = Math.max(Math.max(ys[0], ys[1]), Math.max(ys[2], ys[3]));
 
-            // Pass 4: Crop vùng góc trên bên trái 2x (Phòng trường hợp ảnh bị lộn)
-            if (result == null) {
-                BufferedImage topLeft2x = cropAndScale(bufferedImage, 0.0, 0.0, 0.55, 0.55, 2.0);
-                result = tryDecodeSingleImage(topLeft2x);
-            }
+        int marginX = (int) ((maxX - minX) * CANDIDATE_MARGIN);
+        int marginY = (int) ((maxY - minY) * CANDIDATE_MARGIN);
+        int x = Math.max(0, (int) minX - marginX);
+        int y = Math.max(0, (int) minY - marginY);
+        int w = Math.min(gray.cols() - x, (int) (maxX - minX) + 2 * marginX);
+        int h = Math.min(gray.rows() - y, (int) (maxY - minY) + 2 * marginY);
+        if (w <= 0 || h <= 0) return null;
 
-            if (result != null && result.getText() != null) {
-                String qrText = result.getText().trim();
-                log.info("[CCCD] QR Code decoded successfully at angle {}°: {}", angle, qrText);
-                return parseCccdQrText(qrText);
+        Mat roi = new Mat(gray, new Rect(x, y, w, h));
+
+        // Góc 0 → 1 là cạnh trên của QR; làm tròn hướng về bội số 90°
+        double angle = Math.toDegrees(Math.atan2(ys[1] - ys[0], xs[1] - xs[0]));
+        int quarter = Math.floorMod((int) Math.round(angle / 90.0), 4);
+
+        Mat oriented = new Mat();
+        try {
+            switch (quarter) {
+                case 1 -> opencv_core.rotate(roi, oriented, opencv_core.ROTATE_90_COUNTERCLOCKWISE);
+                case 2 -> opencv_core.rotate(roi, oriented, opencv_core.ROTATE_180);
+                case 3 -> opencv_core.rotate(roi, oriented, opencv_core.ROTATE_90_CLOCKWISE);
+                default -> roi.copyTo(oriented);
             }
+        } finally {
+            // roi chỉ là header trỏ vào gray
+            roi.release();
         }
 
-        log.warn("[CCCD] QR Code scan failed across all angles (0°, 90°, 270°, 180°) and passes");
-        return null;
+        int shortSide = Math.min(oriented.cols(), oriented.rows());
+        if (shortSide > 0 && shortSide < MIN_CANDIDATE_SIZE) {
+            double scale = (double) MIN_CANDIDATE_SIZE / shortSide;
+            Mat scaled = new Mat();
+            opencv_imgproc.resize(oriented, scaled,
+                    new Size((int) (oriented.cols() * scale), (int) (oriented.rows() * scale)),
+                    0, 0, opencv_imgproc.INTER_CUBIC);
+            oriented.release();
+            oriented = scaled;
+        }
+
+        log.debug("[CCCD] QR candidate at ({}, {}) {}x{}, rotation={}°", x, y, w, h, quarter * 90);
+        return oriented;
+    }
+
+    // ─── Parallel fallbacks ───────────────────────────────────────────────────
+
+    /**
+     * Các pass cũ (4 góc × toàn ảnh / góc trên phải 2x, 3x / góc trên trái 2x) chạy song song,
+     * kết quả đầu tiên thành công được trả về và các pass còn lại bị huỷ.
+     */
+    private Result decodeFallbacksInParallel(BufferedImage originalImg) throws InterruptedException {
+        if (originalImg == null) return null;
+
+        List<Callable<Result>> tasks = new ArrayList<>();
+        for (int angle : FALLBACK_ANGLES) {
+            tasks.add(fallbackTask(originalImg, angle, 0, 0, 1, 1, 1.0));
+            // Vùng góc trên bên phải (vị trí chứa QR Code chuẩn của thẻ CCCD)
+            tasks.add(fallbackTask(originalImg, angle, 0.45, 0.0, 0.55, 0.55, 2.0));
+            tasks.add(fallbackTask(originalImg, angle, 0.45, 0.0, 0.55, 0.55, 3.0));
+            // Vùng góc trên bên trái (phòng trường hợp ảnh bị lộn)
+            tasks.add(fallbackTask(originalImg, angle, 0.0, 0.0, 0.55, 0.55, 2.0));
+        }
+
+        try {
+            return qrDecodeExecutor.getThreadPoolExecutor().invokeAny(tasks);
+        } catch (ExecutionException e) {
+            // Không pass nào decode được
+            return null;
+        }
+    }
+
+    private Callable<Result> fallbackTask(BufferedImage src, int angle,
+                                          double rx, double ry, double rw, double rh, double scale) {
+        return () -> {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedException("QR fallback cancelled");
+            }
+            BufferedImage rotated = rotateImage(src, angle);
+            BufferedImage img = (scale == 1.0 && rw == 1 && rh == 1)
+                    ? rotated
+                    : cropAndScale(rotated, rx, ry, rw, rh, scale);
+            Result result = tryDecodeSingleImage(img);
+            if (result == null) {
+                throw NotFoundException.getNotFoundInstance();
+            }
+            return result;
+        };
     }
 
     private BufferedImage rotateImage(BufferedImage src, int angle) {
@@ -241,16 +386,26 @@ public class CccdQrScanner {
         }
     }
 
-    private BufferedImage matToBufferedImage(Mat mat) {
+    private Mat toGrayMat(Mat image) {
+        if (image.channels() == 1) return image;
+        Mat gray = new Mat();
+        opencv_imgproc.cvtColor(image, gray,
+                image.channels() == 4 ? opencv_imgproc.COLOR_BGRA2GRAY : opencv_imgproc.COLOR_BGR2GRAY);
+        return gray;
+    }
+
+    /**
+     * Copy trực tiếp dữ liệu Mat grayscale sang BufferedImage (không encode PNG trung gian).
+     */
+    private BufferedImage toBufferedImage(Mat gray) {
+        Mat src = gray.isContinuous() ? gray : gray.clone();
         try {
-            BytePointer buf = new BytePointer();
-            opencv_imgcodecs.imencode(".png", mat, buf);
-            byte[] bytes = new byte[(int) buf.limit()];
-            buf.get(bytes);
-            return ImageIO.read(new ByteArrayInputStream(bytes));
-        } catch (Exception e) {
-            log.warn("[CCCD] Failed to convert Mat to BufferedImage: {}", e.getMessage());
-            return null;
+            BufferedImage img = new BufferedImage(src.cols(), src.rows(), BufferedImage.TYPE_BYTE_GRAY);
+            byte[] target = ((DataBufferByte) img.getRaster().getDataBuffer()).getData();
+            src.data().get(target);
+            return img;
+        } finally {
+            if (src != gray) src.release();
         }
     }
 }
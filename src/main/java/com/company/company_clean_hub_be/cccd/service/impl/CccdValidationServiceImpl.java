@@ -8,14 +8,20 @@ import com.company.company_clean_hub_be.cccd.enums.DocumentSide;
 import com.company.company_clean_hub_be.cccd.enums.ValidationErrorCode;
 import com.company.company_clean_hub_be.cccd.enums.ValidationStatus;
 import com.company.company_clean_hub_be.cccd.opencv.OpenCvImageProcessor;
-import lombok.RequiredArgsConstructor;
+import com.company.company_clean_hub_be.cccd.dto.CccdExtractedData;
+import com.company.company_clean_hub_be.cccd.opencv.CccdQrScanner;
 import lombok.extern.slf4j.Slf4j;
 import org.bytedeco.opencv.opencv_core.Mat;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.regex.Pattern;
 
 /**
  * Orchestrator: điều phối toàn bộ pipeline kiểm tra CCCD.
@@ -23,17 +29,76 @@ import java.util.List;
  */
 @Slf4j
 @Service
-@RequiredArgsConstructor
 public class CccdValidationServiceImpl {
 
+    private static final Pattern ID_CARD_PATTERN = Pattern.compile("\\d{12}|\\d{9}");
+
     private final ImageQualityServiceImpl imageQualityService;
     private final CardDetectionServiceImpl cardDetectionService;
     private final TemplateMatchingServiceImpl templateMatchingService;
     private final ScoreServiceImpl scoreService;
     private final OpenCvImageProcessor imageProcessor;
-    private final com.company.company_clean_hub_be.cccd.opencv.CccdQrScanner cccdQrScanner;
+    private final CccdQrScanner cccdQrScanner;
     private final CccdValidationProperties props;
     private final GptCccdService gptCccdService;
+    private final ThreadPoolTaskExecutor cccdValidationExecutor;
+
+    public CccdValidationServiceImpl(
+            ImageQualityServiceImpl imageQualityService,
+            CardDetectionServiceImpl cardDetectionService,
+            TemplateMatchingServiceImpl templateMatchingService,
+            ScoreServiceImpl scoreService,
+            OpenCvImageProcessor imageProcessor,
+            CccdQrScanner cccdQrScanner,
+            CccdValidationProperties props,
+            GptCccdService gptCccdService,
+            @Qualifier("cccdValidationExecutor") ThreadPoolTaskExecutor cccdValidationExecutor) {
+        this.imageQualityService = imageQualityService;
+        this.cardDetectionService = cardDetectionService;
+        this.templateMatchingService = templateMatchingService;
+        this.scoreService = scoreService;
+        this.imageProcessor = imageProcessor;
+        this.cccdQrScanner = cccdQrScanner;
+        this.props = props;
+        this.gptCccdService = gptCccdService;
+        this.cccdValidationExecutor = cccdValidationExecutor;
+    }
+
+    /**
+     * Ngữ cảnh xử lý một mặt trong một request: ảnh chỉ decode một lần,
+     * Mat đã cắt/cân chỉnh được dùng chung cho chấm điểm và quét QR.
+     */
+    private static class SideContext {
+        final MultipartFile file;
+        final DocumentSide expectedSide;
+        byte[] bytes;
+        Mat image;
+        CardDetectionServiceImpl.CardDetectionResult detection;
+        CccdSideResult result;
+        CccdExtractedData qrData;
+
+        SideContext(MultipartFile file, DocumentSide expectedSide) {
+            this.file = file;
+            this.expectedSide = expectedSide;
+        }
+
+        // Mat đã cân chỉnh nếu phát hiện được thẻ, ngược lại ảnh gốc
+        Mat bestMat() {
+            if (detection != null && detection.cardDetected && detection.normalizedImage != null) {
+                return detection.normalizedImage;
+            }
+            return image;
+        }
+
+        void release() {
+            if (detection != null && detection.normalizedImage != null) {
+                detection.normalizedImage.release();
+            }
+            if (image != null) {
+                image.release();
+            }
+        }
+    }
 
     /**
      * Điểm vào chính: nhận 2 MultipartFile (front + back), trả về kết quả validation.
@@ -70,9 +135,38 @@ public class CccdValidationServiceImpl {
             log.warn("[CCCD] GPT Validation failed, falling back to OpenCV OCR: {}", e.getMessage());
         }
 
-        // Xử lý từng mặt (OpenCV Fallback)
-        CccdSideResult frontResult = processSide(frontFile, DocumentSide.FRONT);
-        CccdSideResult backResult  = processSide(backFile,  DocumentSide.BACK);
+        // Xử lý 2 mặt song song (OpenCV Fallback); mặt sau quét QR ngay trong luồng của nó
+        SideContext frontCtx = new SideContext(frontFile, DocumentSide.FRONT);
+        SideContext backCtx = new SideContext(backFile, DocumentSide.BACK);
+        CccdExtractedData extractedData;
+        CccdSideResult frontResult;
+        CccdSideResult backResult;
+        try {
+            CompletableFuture<Void> frontTask = CompletableFuture.runAsync(
+                    () -> processSide(frontCtx), cccdValidationExecutor);
+            CompletableFuture<Void> backTask = CompletableFuture.runAsync(() -> {
+                processSide(backCtx);
+                backCtx.qrData = scanQr(backCtx);
+            }, cccdValidationExecutor);
+            CompletableFuture.allOf(frontTask, backTask).join();
+
+            // Chỉ thử QR mặt trước nếu mặt sau không đọc được
+            extractedData = backCtx.qrData;
+            if (!isValidQr(extractedData)) {
+                CccdExtractedData frontQr = scanQr(frontCtx);
+                if (isValidQr(frontQr) || extractedData == null) extractedData = frontQr;
+            }
+            frontResult = frontCtx.result;
+            backResult = backCtx.result;
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof RuntimeException re) throw re;
+            throw e;
+        } finally {
+            // Xóa buffer sau khi xử lý
+            frontCtx.release();
+            backCtx.release();
+        }
 
         // Kiểm tra side có bị swap không
         if (frontResult.getSide() == DocumentSide.BACK && backResult.getSide() == DocumentSide.FRONT) {
@@ -82,45 +176,6 @@ public class CccdValidationServiceImpl {
             backResult = tmp;
         }
 
-        // Trích xuất thông tin từ QR Code (thử mặt sau trước, nếu không được thì thử mặt trước)
-        com.company.company_clean_hub_be.cccd.dto.CccdExtractedData extractedData = null;
-        try {
-            byte[] backBytes = backFile.getBytes();
-            // 1. Thử quét luồng byte nguyên bản mặt sau
-            extractedData = cccdQrScanner.scanQrFromBytes(backBytes);
-
-            // 2. Thử quét trên ảnh mặt sau đã được cắt & cân chỉnh thẻ (Cropped Normalized Mat)
-            if (extractedData == null) {
-                Mat backMat = imageProcessor.decodeImage(backBytes);
-                if (backMat != null && !backMat.empty()) {
-                    CardDetectionServiceImpl.CardDetectionResult backDetection = cardDetectionService.detect(backMat);
-                    Mat croppedBack = (backDetection.cardDetected && backDetection.normalizedImage != null)
-                            ? backDetection.normalizedImage : backMat;
-                    extractedData = cccdQrScanner.scanQrCode(croppedBack);
-                    backMat.release();
-                }
-            }
-
-            // 3. Thử mặt trước nếu mặt sau không có QR
-            if (extractedData == null) {
-                byte[] frontBytes = frontFile.getBytes();
-                extractedData = cccdQrScanner.scanQrFromBytes(frontBytes);
-
-                if (extractedData == null) {
-                    Mat frontMat = imageProcessor.decodeImage(frontBytes);
-                    if (frontMat != null && !frontMat.empty()) {
-                        CardDetectionServiceImpl.CardDetectionResult frontDetection = cardDetectionService.detect(frontMat);
-                        Mat croppedFront = (frontDetection.cardDetected && frontDetection.normalizedImage != null)
-                                ? frontDetection.normalizedImage : frontMat;
-                        extractedData = cccdQrScanner.scanQrCode(croppedFront);
-                        frontMat.release();
-                    }
-                }
-            }
-        } catch (Exception e) {
-            log.warn("[CCCD] Failed to scan QR Code: {}", e.getMessage());
-        }
-
         // Nếu trích xuất thành công mã QR chuẩn 12 số của Bộ Công An -> Khẳng định 100% là CCCD Việt Nam hợp lệ
         if (extractedData != null && extractedData.getIdCard() != null) {
             log.info("[CCCD] QR extracted successfully for ID: {}. Boosting validation status to VALID.", extractedData.getIdCard());
@@ -170,7 +225,13 @@ public class CccdValidationServiceImpl {
 
     // ─── Process single side ──────────────────────────────────────────────────
 
-    private CccdSideResult processSide(MultipartFile file, DocumentSide expectedSide) {
+    private void processSide(SideContext ctx) {
+        ctx.result = evaluateSide(ctx);
+    }
+
+    private CccdSideResult evaluateSide(SideContext ctx) {
+        MultipartFile file = ctx.file;
+        DocumentSide expectedSide = ctx.expectedSide;
         List<ValidationErrorCode> errors = new ArrayList<>();
 
         // [1] File validation
@@ -183,6 +244,7 @@ public class CccdValidationServiceImpl {
         byte[] bytes;
         try {
             bytes = file.getBytes();
+            ctx.bytes = bytes;
         } catch (Exception e) {
             return failResult(expectedSide, 0, 0, List.of(ValidationErrorCode.IMAGE_DECODE_FAILED));
         }
@@ -204,74 +266,103 @@ public class CccdValidationServiceImpl {
             image.release();
             image = rotated;
         }
+        // Mat được giữ trong context để quét QR, giải phóng sau khi request xử lý xong
+        ctx.image = image;
 
-        try {
-            // [3] Image Quality Check
-            ImageQualityResult quality = imageQualityService.evaluate(file, image);
-            errors.addAll(quality.getErrors());
-            int qualityScore = quality.getQualityScore();
+        // [3] Image Quality Check
+        ImageQualityResult quality = imageQualityService.evaluate(file, image);
+        errors.addAll(quality.getErrors());
+        int qualityScore = quality.getQualityScore();
 
-            // [4] Card Detection + Perspective Correction
-            CardDetectionServiceImpl.CardDetectionResult detection = cardDetectionService.detect(image);
-            int cardScore = detection.cardDetected ? 100 : 0;
+        // [4] Card Detection + Perspective Correction
+        CardDetectionServiceImpl.CardDetectionResult detection = cardDetectionService.detect(image);
+        ctx.detection = detection;
+        int cardScore = detection.cardDetected ? 100 : 0;
 
-            if (!detection.cardDetected) {
-                errors.add(ValidationErrorCode.CARD_NOT_DETECTED);
-            }
-            // cardCropped will deduct score via completenessScore instead of blocking as hard error
+        if (!detection.cardDetected) {
+            errors.add(ValidationErrorCode.CARD_NOT_DETECTED);
+        }
+        // cardCropped will deduct score via completenessScore instead of blocking as hard error
 
-            // [5] Aspect Ratio (deduct score if outside optimal ratio range, without hard blocking)
-            int aspectRatioScore = 0;
-            if (detection.cardDetected) {
-                boolean ratioOk = cardDetectionService.isAspectRatioValid(detection.aspectRatio);
-                aspectRatioScore = ratioOk ? 100 : 60;
-            }
+        // [5] Aspect Ratio (deduct score if outside optimal ratio range, without hard blocking)
+        int aspectRatioScore = 0;
+        if (detection.cardDetected) {
+            boolean ratioOk = cardDetectionService.isAspectRatioValid(detection.aspectRatio);
+            aspectRatioScore = ratioOk ? 100 : 60;
+        }
+
+        // [6+7] Template Matching + Side Classification
+        Mat matForMatch = (detection.normalizedImage != null) ? detection.normalizedImage : image;
+        TemplateMatchingServiceImpl.MatchResult matchResult = templateMatchingService.matchAndClassify(matForMatch);
+
+        DocumentSide detectedSide = matchResult.detectedSide;
+        int templateScore = matchResult.templateScore;
+        int regionScore = matchResult.regionScore;
+
+        if (detectedSide == DocumentSide.UNKNOWN) {
+            detectedSide = expectedSide;
+        }
 
-            // [6+7] Template Matching + Side Classification
-            Mat matForMatch = (detection.normalizedImage != null) ? detection.normalizedImage : image;
-            TemplateMatchingServiceImpl.MatchResult matchResult = templateMatchingService.matchAndClassify(matForMatch);
+        // [8] Score Calculation
+        ScoreServiceImpl.ScoreInput scoreInput = new ScoreServiceImpl.ScoreInput();
+        scoreInput.qualityScore      = qualityScore;
+        scoreInput.cardDetected      = cardScore;
+        scoreInput.aspectRatioScore  = aspectRatioScore;
+        scoreInput.completenessScore = detection.cardCropped ? 0 : 100;
+        scoreInput.templateScore     = templateScore;
+        scoreInput.regionScore       = regionScore;
+
+        int overallScore = scoreService.compute(scoreInput);
+
+        // [9] Determine validity
+        ValidationStatus status = determineSideStatus(overallScore);
+        boolean valid = errors.isEmpty() && status == ValidationStatus.VALID;
+
+        return CccdSideResult.builder()
+                .valid(valid)
+                .side(detectedSide)
+                .status(status)
+                .qualityScore(qualityScore)
+                .blurry(quality.isBlurry())
+                .cardDetected(detection.cardDetected)
+                .templateScore(templateScore)
+                .overallScore(overallScore)
+                .errors(errors)
+                .build();
+    }
 
-            DocumentSide detectedSide = matchResult.detectedSide;
-            int templateScore = matchResult.templateScore;
-            int regionScore = matchResult.regionScore;
+    // ─── QR scan ──────────────────────────────────────────────────────────────
 
-            if (detectedSide == DocumentSide.UNKNOWN) {
-                detectedSide = expectedSide;
+    /**
+     * Quét QR trên một mặt: thử Mat đã cắt/cân chỉnh trước, sau đó ảnh gốc đã decode sẵn trong context.
+     * Dừng ngay khi đọc được payload hợp lệ.
+     */
+    private CccdExtractedData scanQr(SideContext ctx) {
+        try {
+            // Ảnh không decode được bằng OpenCV (vd. sai định dạng): thử trực tiếp từ byte
+            if (ctx.image == null || ctx.image.empty()) {
+                byte[] bytes = ctx.bytes != null ? ctx.bytes : ctx.file.getBytes();
+                return cccdQrScanner.scanQrFromBytes(bytes);
             }
 
-            // [8] Score Calculation
-            ScoreServiceImpl.ScoreInput scoreInput = new ScoreServiceImpl.ScoreInput();
-            scoreInput.qualityScore      = qualityScore;
-            scoreInput.cardDetected      = cardScore;
-            scoreInput.aspectRatioScore  = aspectRatioScore;
-            scoreInput.completenessScore = detection.cardCropped ? 0 : 100;
-            scoreInput.templateScore     = templateScore;
-            scoreInput.regionScore       = regionScore;
-
-            int overallScore = scoreService.compute(scoreInput);
-
-            // [9] Determine validity
-            ValidationStatus status = determineSideStatus(overallScore);
-            boolean valid = errors.isEmpty() && status == ValidationStatus.VALID;
-
-            return CccdSideResult.builder()
-                    .valid(valid)
-                    .side(detectedSide)
-                    .status(status)
-                    .qualityScore(qualityScore)
-                    .blurry(quality.isBlurry())
-                    .cardDetected(detection.cardDetected)
-                    .templateScore(templateScore)
-                    .overallScore(overallScore)
-                    .errors(errors)
-                    .build();
+            Mat best = ctx.bestMat();
+            CccdExtractedData data = cccdQrScanner.scanQrCode(best);
+            if (isValidQr(data) || best == ctx.image) return data;
 
-        } finally {
-            // Xóa buffer sau khi xử lý
-            image.release();
+            CccdExtractedData fromImage = cccdQrScanner.scanQrCode(ctx.image);
+            if (isValidQr(fromImage) || data == null) return fromImage;
+            return data;
+        } catch (Exception e) {
+            log.warn("[CCCD] Failed to scan QR Code: {}", e.getMessage());
+            return null;
         }
     }
 
+    // QR chỉ hợp lệ khi có số CCCD 12 số (hoặc CMND 9 số); decode rác phải rơi xuống QR mặt trước
+    private boolean isValidQr(CccdExtractedData data) {
+        return data != null && data.getIdCard() != null && ID_CARD_PATTERN.matcher(data.getIdCard()).matches();
+    }
+
     // ─── Helpers ──────────────────────────────────────────────────────────────
 
     private CccdSideResult failResult(DocumentSide side, int qualityScore, int templateScore,
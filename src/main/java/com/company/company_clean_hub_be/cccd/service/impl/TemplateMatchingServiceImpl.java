@@ -4,22 +4,17 @@ import com.company.company_clean_hub_be.cccd.config.CccdValidationProperties;
 import com.company.company_clean_hub_be.cccd.enums.DocumentSide;
 import com.company.company_clean_hub_be.cccd.opencv.OpenCvImageProcessor;
 import com.company.company_clean_hub_be.cccd.template.CccdTemplate;
-import com.company.company_clean_hub_be.cccd.template.CccdTemplateRegistry;
+import com.company.company_clean_hub_be.cccd.template.CccdTemplateFeatureCache;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.bytedeco.opencv.global.opencv_core;
-import org.bytedeco.opencv.global.opencv_features2d;
-import org.bytedeco.opencv.global.opencv_imgcodecs;
-import org.bytedeco.opencv.global.opencv_imgproc;
 import org.bytedeco.opencv.opencv_core.*;
 import org.bytedeco.opencv.opencv_features2d.ORB;
-import org.springframework.core.io.ResourceLoader;
 import org.springframework.stereotype.Service;
 
-import java.io.IOException;
+import java.util.HashMap;
 import java.util.List;
-
-import static org.bytedeco.opencv.global.opencv_imgproc.*;
+import java.util.Map;
 
 /**
  * So sánh ảnh CCCD với template để:
@@ -32,10 +27,9 @@ import static org.bytedeco.opencv.global.opencv_imgproc.*;
 @RequiredArgsConstructor
 public class TemplateMatchingServiceImpl {
 
-    private final CccdTemplateRegistry templateRegistry;
+    private final CccdTemplateFeatureCache featureCache;
     private final OpenCvImageProcessor imageProcessor;
     private final CccdValidationProperties props;
-    private final ResourceLoader resourceLoader;
 
     public static class MatchResult {
         public DocumentSide detectedSide = DocumentSide.UNKNOWN;
@@ -46,23 +40,32 @@ public class TemplateMatchingServiceImpl {
 
     /**
      * So sánh ảnh đã normalize với tất cả templates đang active.
+     * Đặc trưng template lấy từ cache; đặc trưng ảnh đầu vào chỉ tính một lần cho mỗi kích thước template.
      * Trả về side + score tốt nhất.
      */
     public MatchResult matchAndClassify(Mat normalizedImage) {
-        MatchResult best = new MatchResult();
-
-        for (CccdTemplate template : templateRegistry.getAllActive()) {
-            Mat templateMat = loadTemplateMat(template.getImagePath());
-            if (templateMat == null) continue;
-
-            int score = computeOrbMatchScore(normalizedImage, templateMat);
-            if (score > best.templateScore) {
-                best.templateScore = score;
-                best.detectedSide = template.getSide();
-                best.matchedTemplateId = template.getTemplateId();
-                best.regionScore = checkRequiredRegions(normalizedImage, template.getRequiredRegions());
+        MatchResult best = featureCache.withFeatures(features -> {
+            MatchResult result = new MatchResult();
+            Map<String, InputFeatures> inputBySize = new HashMap<>();
+            try {
+                for (CccdTemplateFeatureCache.TemplateFeatures template : features) {
+                    InputFeatures input = inputBySize.computeIfAbsent(
+                            template.cols() + "x" + template.rows(),
+                            key -> computeInputFeatures(normalizedImage, template.cols(), template.rows()));
+
+                    int score = computeOrbMatchScore(input, template);
+                    if (score > result.templateScore) {
+                        result.templateScore = score;
+                        result.detectedSide = template.getTemplate().getSide();
+                        result.matchedTemplateId = template.getTemplate().getTemplateId();
+                        result.regionScore = checkRequiredRegions(normalizedImage, template.getTemplate().getRequiredRegions());
+                    }
+                }
+            } finally {
+                inputBySize.values().forEach(InputFeatures::release);
             }
-        }
+            return result;
+        });
 
         if (best.templateScore < (int) (props.getTemplate().getMatchThreshold() * 100)) {
             best.detectedSide = DocumentSide.UNKNOWN;
@@ -74,20 +77,37 @@ public class TemplateMatchingServiceImpl {
 
     // ─── ORB Feature Matching ─────────────────────────────────────────────────
 
-    private int computeOrbMatchScore(Mat input, Mat templateMat) {
-        try {
-            Mat resized = imageProcessor.resize(input, templateMat.cols(), templateMat.rows());
-            Mat grayInput = imageProcessor.toGrayscale(resized);
-            Mat grayTemplate = imageProcessor.toGrayscale(templateMat);
+    private static class InputFeatures {
+        final KeyPointVector keypoints = new KeyPointVector();
+        final Mat descriptors = new Mat();
 
-            ORB orb = ORB.create(500, 1.2f, 8, 31, 0, 2, ORB.HARRIS_SCORE, 31, 20);
-            KeyPointVector kp1 = new KeyPointVector();
-            KeyPointVector kp2 = new KeyPointVector();
-            Mat desc1 = new Mat();
-            Mat desc2 = new Mat();
+        void release() {
+            descriptors.release();
+            keypoints.close();
+        }
+    }
 
-            orb.detectAndCompute(grayInput, new Mat(), kp1, desc1);
-            orb.detectAndCompute(grayTemplate, new Mat(), kp2, desc2);
+    private InputFeatures computeInputFeatures(Mat input, int width, int height) {
+        InputFeatures features = new InputFeatures();
+        Mat resized = imageProcessor.resize(input, width, height);
+        Mat grayInput = imageProcessor.toGrayscale(resized);
+        ORB orb = CccdTemplateFeatureCache.createOrb();
+        try {
+            orb.detectAndCompute(grayInput, new Mat(), features.keypoints, features.descriptors);
+        } catch (Exception e) {
+            log.warn("[CCCD] ORB detect error: {}", e.getMessage());
+        } finally {
+            orb.close();
+            if (grayInput != resized) grayInput.release();
+            resized.release();
+        }
+        return features;
+    }
+
+    private int computeOrbMatchScore(InputFeatures input, CccdTemplateFeatureCache.TemplateFeatures template) {
+        try {
+            Mat desc1 = input.descriptors;
+            Mat desc2 = template.getDescriptors();
 
             if (desc1.empty() || desc2.empty()) return 0;
 
@@ -103,7 +123,7 @@ public class TemplateMatchingServiceImpl {
                 if (matches.get(i).distance() < 60) goodMatches++;
             }
 
-            long total = Math.max(kp1.size(), kp2.size());
+            long total = Math.max(input.keypoints.size(), template.getKeypoints().size());
             if (total == 0) return 0;
 
             // Score 0-100
@@ -153,16 +173,4 @@ public class TemplateMatchingServiceImpl {
 
         return total > 0 ? (passed * 100 / total) : 0;
     }
-
-    private Mat loadTemplateMat(String path) {
-        try {
-            byte[] bytes = resourceLoader.getResource(path).getInputStream().readAllBytes();
-            Mat buf = new Mat(1, bytes.length, opencv_core.CV_8UC1);
-            buf.data().put(bytes);
-            return opencv_imgcodecs.imdecode(buf, opencv_imgcodecs.IMREAD_COLOR);
-        } catch (IOException e) {
-            log.error("[CCCD] Cannot load template: {} - {}", path, e.getMessage());
-            return null;
-        }
-    }
 }
@@ -0,0 +1,169 @@
+package com.company.company_clean_hub_be.cccd.template;
+
+import com.company.company_clean_hub_be.cccd.opencv.OpenCvImageProcessor;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bytedeco.opencv.global.opencv_core;
+import org.bytedeco.opencv.global.opencv_imgcodecs;
+import org.bytedeco.opencv.opencv_core.KeyPointVector;
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_features2d.ORB;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/**
+ * Cache đặc trưng ORB của các template CCCD.
+ * Template không đổi khi chạy nên ảnh grayscale, keypoints và descriptors được tính một lần
+ * lúc khởi động; mỗi lần validate chỉ còn phải tính đặc trưng của ảnh đầu vào.
+ * Các Mat nằm ở bộ nhớ native nên được giải phóng tường minh khi reload hoặc tắt ứng dụng.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CccdTemplateFeatureCache {
+
+    private final CccdTemplateRegistry templateRegistry;
+    private final OpenCvImageProcessor imageProcessor;
+    private final ResourceLoader resourceLoader;
+
+    // Read lock khi đang so khớp, write lock khi reload/giải phóng để không release Mat đang được dùng
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private List<TemplateFeatures> features = List.of();
+
+    @Getter
+    public static class TemplateFeatures {
+        private final CccdTemplate template;
+        private final Mat gray;
+        private final KeyPointVector keypoints;
+        private final Mat descriptors;
+
+        TemplateFeatures(CccdTemplate template, Mat gray, KeyPointVector keypoints, Mat descriptors) {
+            this.template = template;
+            this.gray = gray;
+            this.keypoints = keypoints;
+            this.descriptors = descriptors;
+        }
+
+        public int cols() {
+            return gray.cols();
+        }
+
+        public int rows() {
+            return gray.rows();
+        }
+
+        void release() {
+            descriptors.release();
+            keypoints.close();
+            gray.release();
+        }
+    }
+
+    /**
+     * Cùng tham số ORB cho template và ảnh đầu vào, nếu khác nhau descriptors không so được.
+     */
+    public static ORB createOrb() {
+        return ORB.create(500, 1.2f, 8, 31, 0, 2, ORB.HARRIS_SCORE, 31, 20);
+    }
+
+    @PostConstruct
+    public void init() {
+        reload();
+    }
+
+    /**
+     * Tính lại đặc trưng cho toàn bộ template active rồi thay thế cache cũ.
+     * Gọi khi file template thay đổi.
+     */
+    public void reload() {
+        List<TemplateFeatures> loaded = new ArrayList<>();
+        for (CccdTemplate template : templateRegistry.getAllActive()) {
+            TemplateFeatures f = computeFeatures(template);
+            if (f != null) loaded.add(f);
+        }
+
+        List<TemplateFeatures> old;
+        lock.writeLock().lock();
+        try {
+            old = features;
+            features = List.copyOf(loaded);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        old.forEach(TemplateFeatures::release);
+        log.info("[CCCD] Template feature cache loaded: {} templates", loaded.size());
+    }
+
+    /**
+     * Chạy hàm so khớp trên danh sách đặc trưng hiện tại.
+     * Không giữ tham chiếu tới TemplateFeatures ra ngoài hàm vì Mat có thể bị giải phóng khi reload.
+     */
+    public <T> T withFeatures(Function<List<TemplateFeatures>, T> fn) {
+        lock.readLock().lock();
+        try {
+            return fn.apply(features);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        lock.writeLock().lock();
+        try {
+            features.forEach(TemplateFeatures::release);
+            features = List.of();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("[CCCD] Template feature cache released");
+    }
+
+    private TemplateFeatures computeFeatures(CccdTemplate template) {
+        Mat color = loadTemplateMat(template.getImagePath());
+        if (color == null || color.empty()) {
+            log.error("[CCCD] Cannot decode template: {}", template.getImagePath());
+            return null;
+        }
+
+        Mat gray = imageProcessor.toGrayscale(color);
+        if (gray != color) color.release();
+
+        KeyPointVector keypoints = new KeyPointVector();
+        Mat descriptors = new Mat();
+        ORB orb = createOrb();
+        try {
+            orb.detectAndCompute(gray, new Mat(), keypoints, descriptors);
+        } finally {
+            orb.close();
+        }
+
+        log.info("[CCCD] Template {} features: size={}x{}, keypoints={}",
+                template.getTemplateId(), gray.cols(), gray.rows(), keypoints.size());
+        return new TemplateFeatures(template, gray, keypoints, descriptors);
+    }
+
+    private Mat loadTemplateMat(String path) {
+        try (InputStream in = resourceLoader.getResource(path).getInputStream()) {
+            byte[] bytes = in.readAllBytes();
+            Mat buf = new Mat(1, bytes.length, opencv_core.CV_8UC1);
+            buf.data().put(bytes);
+            Mat decoded = opencv_imgcodecs.imdecode(buf, opencv_imgcodecs.IMREAD_COLOR);
+            buf.release();
+            return decoded;
+        } catch (IOException e) {
+            log.error("[CCCD] Cannot load template: {} - {}", path, e.getMessage());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.company.company_clean_hub_be.config;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Thread pool xử lý outbox sau khi chụp ảnh (upload Cloudinary, auto-approve).
+ * Hàng đợi có giới hạn: khi đầy, worker dừng nhận thêm và để sự kiện ở lại DB cho lượt sau.
+ */
+@Configuration
+@Slf4j
+public class CaptureOutboxConfig {
+
+    @Value("${capture.outbox.workers:4}")
+    private int workers;
+
+    @Value("${capture.outbox.queue-capacity:500}")
+    private int queueCapacity;
+
+    @Bean(name = "captureOutboxExecutor")
+    public ThreadPoolTaskExecutor captureOutboxExecutor() {
+        log.info("Initializing capture outbox executor: workers={}, queueCapacity={}", workers, queueCapacity);
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(workers);
+        executor.setMaxPoolSize(workers);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("capture-outbox-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(60);
+        executor.initialize();
+        return executor;
+    }
+}
@@ -0,0 +1,38 @@
+package com.company.company_clean_hub_be.config;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Thread pool gọi API xoá hàng loạt của Cloudinary khi dọn ảnh cũ.
+ * Worker chỉ gọi HTTP, không giữ connection DB; số worker giới hạn số request song song tới Cloudinary.
+ */
+@Configuration
+@Slf4j
+public class ImageCleanupConfig {
+
+    @Value("${image.cleanup.workers:4}")
+    private int workers;
+
+    @Bean(name = "imageCleanupExecutor")
+    public ThreadPoolTaskExecutor imageCleanupExecutor() {
+        log.info("Initializing image cleanup executor: workers={}", workers);
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(workers);
+        executor.setMaxPoolSize(workers);
+        executor.setQueueCapacity(100);
+        executor.setThreadNamePrefix("image-cleanup-");
+        // Hàng đợi đầy thì luồng scheduler tự xoá lô đó
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(60);
+        executor.initialize();
+        return executor;
+    }
+}
@@ -0,0 +1,40 @@
+package com.company.company_clean_hub_be.config;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Thread pool cho job xuất hóa đơn cả tháng.
+ * Mỗi worker giữ một connection khi lưu hóa đơn nên số worker được giữ nhỏ như payroll job.
+ */
+@Configuration
+@Slf4j
+public class InvoiceJobConfig {
+
+    @Value("${invoice.job.workers:3}")
+    private int workers;
+
+    @Value("${invoice.job.queue-capacity:1000}")
+    private int queueCapacity;
+
+    @Bean(name = "invoiceJobExecutor")
+    public ThreadPoolTaskExecutor invoiceJobExecutor() {
+        log.info("Initializing invoice job executor: workers={}, queueCapacity={}", workers, queueCapacity);
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(workers);
+        executor.setMaxPoolSize(workers);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("invoice-job-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(60);
+        executor.initialize();
+        return executor;
+    }
+}
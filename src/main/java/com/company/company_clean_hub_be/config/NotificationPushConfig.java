@@ -0,0 +1,41 @@
+package com.company.company_clean_hub_be.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Thread pool riêng chỉ để ghi event SSE ra các kết nối (mỗi kết nối tối đa một task drain tại một
+ * thời điểm), để client chậm không giữ transaction / luồng request.
+ * emitter.send là ghi chặn: pool đủ lớn để vài client treo không chiếm hết worker, kết nối treo quá
+ * sse.send-timeout-seconds bị SseEmitterService bỏ.
+ * Pool đầy thì từ chối (không CallerRuns) — event vẫn nằm trong hàng đợi của kết nối và được
+ * gửi ở lần drain sau.
+ */
+@Configuration
+@Slf4j
+public class NotificationPushConfig {
+
+    @Value("${sse.sender.workers:16}")
+    private int workers;
+
+    @Value("${sse.sender.queue-capacity:1000}")
+    private int queueCapacity;
+
+    @Bean(name = "sseSenderExecutor")
+    public ThreadPoolTaskExecutor sseSenderExecutor() {
+        log.info("Initializing SSE sender executor: workers={}, queueCapacity={}", workers, queueCapacity);
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(workers);
+        executor.setMaxPoolSize(workers);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("sse-sender-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        executor.initialize();
+        return executor;
+    }
+}
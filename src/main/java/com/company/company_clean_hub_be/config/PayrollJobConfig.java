@@ -0,0 +1,40 @@
+package com.company.company_clean_hub_be.config;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Thread pool cho các tác vụ tính lương / xuất lương chạy nền.
+ * Số worker nhỏ hơn hẳn Hikari pool (10) để các request khác vẫn có connection.
+ */
+@Configuration
+@Slf4j
+public class PayrollJobConfig {
+
+    @Value("${payroll.job.workers:3}")
+    private int workers;
+
+    @Value("${payroll.job.queue-capacity:1000}")
+    private int queueCapacity;
+
+    @Bean(name = "payrollJobExecutor")
+    public ThreadPoolTaskExecutor payrollJobExecutor() {
+        log.info("Initializing payroll job executor: workers={}, queueCapacity={}", workers, queueCapacity);
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(workers);
+        executor.setMaxPoolSize(workers);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("payroll-job-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(60);
+        executor.initialize();
+        return executor;
+    }
+}
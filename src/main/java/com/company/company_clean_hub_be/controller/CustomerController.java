@@ -1,5 +1,6 @@
 package com.company.company_clean_hub_be.controller;
 
+import java.util.Iterator;
 import java.util.List;
 
 import org.springframework.core.io.ByteArrayResource;
@@ -16,6 +17,7 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import com.company.company_clean_hub_be.dto.request.CustomerRequest;
 import com.company.company_clean_hub_be.dto.response.ApiResponse;
@@ -111,4 +113,22 @@ public class CustomerController {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
     }
+
+    @GetMapping("/export/excel/stream")
+    public ResponseEntity<StreamingResponseBody> exportCustomersWithContractsStreaming() {
+        log.info("Export customers with contracts (streaming) requested");
+        try {
+            Iterator<CustomerContractGroupDto> customerGroups = customerService.openCustomersWithContractsExportCursor();
+            StreamingResponseBody body = out -> excelExportService.writeCustomersWithContractsToExcel(customerGroups, out);
+            return ResponseEntity.ok()
+                    .header(HttpHeaders.CONTENT_DISPOSITION,
+                            "attachment; filename=Danh_sach_khach_hang.xlsx")
+                    .contentType(MediaType.parseMediaType(
+                            "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"))
+                    .body(body);
+        } catch (Exception e) {
+            log.error("Error exporting customers (streaming)", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
 }
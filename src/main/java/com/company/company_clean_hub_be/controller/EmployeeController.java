@@ -2,6 +2,7 @@ package com.company.company_clean_hub_be.controller;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 
 import org.springframework.core.io.ByteArrayResource;
@@ -19,9 +20,11 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import com.company.company_clean_hub_be.dto.request.EmployeeRequest;
 import com.company.company_clean_hub_be.dto.response.ApiResponse;
+import com.company.company_clean_hub_be.dto.response.AvailableEmployeeResponse;
 import com.company.company_clean_hub_be.dto.response.EmployeeExportDto;
 import com.company.company_clean_hub_be.dto.response.EmployeeImageResponse;
 import com.company.company_clean_hub_be.dto.response.EmployeeResponse;
@@ -67,6 +70,29 @@ public class EmployeeController {
         return ApiResponse.success("Lấy danh sách nhân viên thành công", employees, HttpStatus.OK.value());
     }
 
+    /**
+     * Tìm nhân viên rảnh cho một khung giờ, ví dụ ?days=MONDAY,WEDNESDAY,FRIDAY&startTime=06:00&endTime=09:00.
+     * Có contractId thì thiếu days / startTime / endTime sẽ lấy theo hợp đồng; cùng số assignment đang hoạt động
+     * thì xếp theo khoảng cách tới vị trí làm việc của hợp đồng. Không truyền employmentType thì lấy CONTRACT_STAFF.
+     */
+    @GetMapping("/available")
+    @org.springframework.security.access.prepost.PreAuthorize("hasAuthority('EMPLOYEE_VIEW')")
+    public ApiResponse<List<AvailableEmployeeResponse>> findAvailableEmployees(
+            @RequestParam(required = false) Long contractId,
+            @RequestParam(required = false) List<java.time.DayOfWeek> days,
+            @RequestParam(required = false) @org.springframework.format.annotation.DateTimeFormat(iso = org.springframework.format.annotation.DateTimeFormat.ISO.TIME) java.time.LocalTime startTime,
+            @RequestParam(required = false) @org.springframework.format.annotation.DateTimeFormat(iso = org.springframework.format.annotation.DateTimeFormat.ISO.TIME) java.time.LocalTime endTime,
+            @RequestParam(required = false) @org.springframework.format.annotation.DateTimeFormat(iso = org.springframework.format.annotation.DateTimeFormat.ISO.DATE) java.time.LocalDate fromDate,
+            @RequestParam(required = false) @org.springframework.format.annotation.DateTimeFormat(iso = org.springframework.format.annotation.DateTimeFormat.ISO.DATE) java.time.LocalDate toDate,
+            @RequestParam(required = false) String province,
+            @RequestParam(required = false) String ward,
+            @RequestParam(required = false) com.company.company_clean_hub_be.entity.EmploymentType employmentType,
+            @RequestParam(defaultValue = "20") int limit) {
+        List<AvailableEmployeeResponse> candidates = employeeService.findAvailableEmployees(contractId, days,
+                startTime, endTime, fromDate, toDate, province, ward, employmentType, limit);
+        return ApiResponse.success("Lấy danh sách nhân viên rảnh thành công", candidates, HttpStatus.OK.value());
+    }
+
     @GetMapping("/{id}")
     @org.springframework.security.access.prepost.PreAuthorize("hasAnyAuthority('EMPLOYEE_VIEW', 'EMPLOYEE_VIEW_OWN')")
     public ApiResponse<EmployeeResponse> getEmployeeById(@PathVariable Long id) {
@@ -268,6 +294,25 @@ public class EmployeeController {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
     }
+
+    @GetMapping("/export/excel/stream")
+    public ResponseEntity<StreamingResponseBody> exportEmployeesToExcelStreaming(
+            @RequestParam(required = false) com.company.company_clean_hub_be.entity.EmploymentType employmentType) {
+        log.info("Export employees (streaming) requested: employmentType={}", employmentType);
+        try {
+            Iterator<EmployeeExportDto> employees = employeeService.openEmployeesExportCursor(employmentType);
+            StreamingResponseBody body = out -> excelExportService.writeEmployeesToExcel(employees, out);
+            return ResponseEntity.ok()
+                    .header(HttpHeaders.CONTENT_DISPOSITION,
+                            "attachment; filename=Danh_sach_nhan_vien.xlsx")
+                    .contentType(MediaType.parseMediaType(
+                            "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"))
+                    .body(body);
+        } catch (Exception e) {
+            log.error("Error exporting employees (streaming)", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
     @PutMapping("/{id}/company-leave")
     @org.springframework.security.access.prepost.PreAuthorize("hasAuthority('EMPLOYEE_EDIT')")
     public ApiResponse<EmployeeResponse> takeCompanyLeave(@PathVariable Long id, 
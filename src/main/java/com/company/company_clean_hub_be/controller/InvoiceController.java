@@ -4,18 +4,24 @@ import com.company.company_clean_hub_be.dto.request.InvoiceCreationRequest;
 import com.company.company_clean_hub_be.dto.request.InvoiceUpdateRequest;
 import com.company.company_clean_hub_be.dto.response.ApiResponse;
 import com.company.company_clean_hub_be.dto.response.BulkInvoiceResponse;
+import com.company.company_clean_hub_be.dto.response.InvoiceBulkResultRow;
+import com.company.company_clean_hub_be.dto.response.InvoiceJobResponse;
 import com.company.company_clean_hub_be.dto.response.InvoiceResponse;
 import com.company.company_clean_hub_be.entity.InvoiceStatus;
+import com.company.company_clean_hub_be.service.ExcelExportService;
+import com.company.company_clean_hub_be.service.InvoiceJobService;
 import com.company.company_clean_hub_be.service.InvoiceService;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
+import org.springframework.core.io.ByteArrayResource;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.ByteArrayOutputStream;
 import java.net.URLEncoder;
@@ -29,6 +35,8 @@ import java.util.List;
 public class InvoiceController {
 
         InvoiceService invoiceService;
+        InvoiceJobService invoiceJobService;
+        ExcelExportService excelExportService;
 
         @PostMapping
         @PreAuthorize("hasAuthority('INVOICE_CREATE')")
@@ -50,6 +58,40 @@ public class InvoiceController {
                                 HttpStatus.CREATED.value());
         }
 
+        @PostMapping("/jobs/monthly")
+        @PreAuthorize("hasAuthority('INVOICE_CREATE')")
+        public ApiResponse<InvoiceJobResponse> startMonthlyInvoicingJob(
+                        @RequestParam Integer month,
+                        @RequestParam Integer year,
+                        @RequestParam(required = false) String notes) {
+                InvoiceJobResponse job = invoiceJobService.startMonthlyInvoicing(month, year, notes);
+                return ApiResponse.success("Đã tạo tác vụ xuất hóa đơn", job, HttpStatus.ACCEPTED.value());
+        }
+
+        @GetMapping("/jobs/{jobId}")
+        @PreAuthorize("hasAuthority('INVOICE_CREATE')")
+        public ApiResponse<InvoiceJobResponse> getInvoiceJob(@PathVariable String jobId) {
+                InvoiceJobResponse job = invoiceJobService.getJob(jobId);
+                return ApiResponse.success("Lấy trạng thái tác vụ thành công", job, HttpStatus.OK.value());
+        }
+
+        @GetMapping("/jobs/{jobId}/report")
+        @PreAuthorize("hasAuthority('INVOICE_CREATE')")
+        public ResponseEntity<ByteArrayResource> downloadInvoiceJobReport(@PathVariable String jobId) {
+                InvoiceJobResponse job = invoiceJobService.getJob(jobId);
+                List<InvoiceBulkResultRow> rows = invoiceJobService.getReportRows(jobId);
+                ByteArrayResource excelFile = excelExportService.exportInvoiceJobReportToExcel(rows, job.getMonth(),
+                                job.getYear());
+
+                return ResponseEntity.ok()
+                                .header(HttpHeaders.CONTENT_DISPOSITION,
+                                                "attachment; filename=invoice_job_" + job.getMonth() + "_" + job.getYear() + ".xlsx")
+                                .contentType(MediaType.parseMediaType(
+                                                "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"))
+                                .contentLength(excelFile.contentLength())
+                                .body(excelFile);
+        }
+
         @GetMapping("/{id}")
         @PreAuthorize("hasAuthority('INVOICE_VIEW')")
         public ApiResponse<InvoiceResponse> getInvoice(@PathVariable Long id) {
@@ -190,4 +232,21 @@ public class InvoiceController {
 
                 return new ResponseEntity<>(outputStream.toByteArray(), headers, HttpStatus.OK);
         }
+
+        @GetMapping("/month/{month}/year/{year}/export/excel/stream")
+        @PreAuthorize("hasAuthority('INVOICE_EXPORT')")
+        public ResponseEntity<StreamingResponseBody> exportInvoicesToExcelStreaming(@PathVariable Integer month,
+                        @PathVariable Integer year) {
+                String rawFilename = "Invoices_" + month + "-" + year + ".zip";
+                String encodedFilename = URLEncoder.encode(rawFilename, StandardCharsets.UTF_8).replaceAll("\\+", "%20");
+
+                HttpHeaders headers = new HttpHeaders();
+                headers.setContentType(MediaType.parseMediaType("application/zip"));
+                headers.add(HttpHeaders.CONTENT_DISPOSITION,
+                                "attachment; filename=\"" + rawFilename + "\"; filename*=UTF-8''" + encodedFilename);
+                headers.add(HttpHeaders.CACHE_CONTROL, "no-cache, no-store, must-revalidate");
+
+                StreamingResponseBody body = out -> invoiceService.writeInvoicesZip(month, year, out);
+                return new ResponseEntity<>(body, headers, HttpStatus.OK);
+        }
 }
\ No newline at end of file
@@ -1,6 +1,7 @@
 package com.company.company_clean_hub_be.controller;
 
 import com.company.company_clean_hub_be.dto.response.ApiResponse;
+import com.company.company_clean_hub_be.dto.response.NotificationFeedResponse;
 import com.company.company_clean_hub_be.dto.response.NotificationResponse;
 import com.company.company_clean_hub_be.dto.response.PageResponse;
 import com.company.company_clean_hub_be.entity.User;
@@ -11,6 +12,7 @@ import com.company.company_clean_hub_be.service.NotificationService;
 import com.company.company_clean_hub_be.service.SseEmitterService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -32,18 +34,40 @@ public class NotificationController {
     private final SseEmitterService sseEmitterService;
     private final UserRepository userRepository;
 
+    @Value("${sse.replay-limit:100}")
+    private int replayLimit;
+
     /**
      * GET /api/notifications/subscribe
      * Kết nối SSE để nhận notification real-time.
      * FE gọi 1 lần khi load app, giữ kết nối và lắng nghe event "notification".
+     * Mỗi tab có kết nối riêng. Khi reconnect, trình duyệt gửi header Last-Event-ID
+     * (hoặc FE truyền ?lastEventId=) → server gửi lại các notification bị lỡ.
      */
     @GetMapping(value = "/subscribe", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
     @PreAuthorize("hasAuthority('NOTIFICATION_VIEW')")
-    public SseEmitter subscribe() {
+    public SseEmitter subscribe(
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventIdHeader,
+            @RequestParam(value = "lastEventId", required = false) String lastEventIdParam) {
         String username = SecurityContextHolder.getContext().getAuthentication().getName();
         User user = userRepository.findByUsername(username)
                 .orElseThrow(() -> new AppException(ErrorCode.USER_IS_NOT_EXISTS));
-        return sseEmitterService.subscribe(user.getId());
+        Long lastEventId = parseEventId(lastEventIdHeader != null ? lastEventIdHeader : lastEventIdParam);
+        if (lastEventId == null) {
+            return sseEmitterService.subscribe(user.getId());
+        }
+        return sseEmitterService.subscribe(user.getId(),
+                () -> notificationService.getNotificationsAfter(user.getId(), lastEventId, replayLimit));
+    }
+
+    /**
+     * GET /api/notifications/sse/stats
+     * Thống kê SSE hub: số user/kết nối, event đang chờ gửi, đã gửi, bị bỏ.
+     */
+    @GetMapping("/sse/stats")
+    @PreAuthorize("hasAnyRole('QLT1', 'QLT2')")
+    public ApiResponse<SseEmitterService.SseStats> getSseStats() {
+        return ApiResponse.success("Lấy thống kê SSE thành công", sseEmitterService.getStats(), HttpStatus.OK.value());
     }
 
     /**
@@ -65,6 +89,24 @@ public class NotificationController {
         return ApiResponse.success("Lấy danh sách thông báo thành công", result, HttpStatus.OK.value());
     }
 
+    /**
+     * GET /api/notifications/feed?type=ALL&isRead=false&cursor=...&limit=20
+     * Feed phân trang theo cursor (mới nhất trước), không đếm tổng nên không quét toàn bảng.
+     * - cursor : nextCursor của trang trước, bỏ trống = trang đầu
+     * - limit  : số bản ghi mỗi trang (mặc định 20, tối đa 100)
+     * Kèm unreadCount để FE cập nhật badge luôn.
+     */
+    @GetMapping("/feed")
+    @PreAuthorize("hasAuthority('NOTIFICATION_VIEW')")
+    public ApiResponse<NotificationFeedResponse> getMyFeed(
+            @RequestParam(required = false, defaultValue = "ALL") String type,
+            @RequestParam(required = false) Boolean isRead,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int limit) {
+        NotificationFeedResponse result = notificationService.getMyFeed(type, isRead, cursor, limit);
+        return ApiResponse.success("Lấy danh sách thông báo thành công", result, HttpStatus.OK.value());
+    }
+
     /**
      * GET /api/notifications/unread
      * Lấy notification chưa đọc.
@@ -119,4 +161,15 @@ public class NotificationController {
         notificationService.markAllAsRead();
         return ApiResponse.success("Đã đánh dấu tất cả thông báo là đã đọc", null, HttpStatus.OK.value());
     }
+
+    private Long parseEventId(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
 }
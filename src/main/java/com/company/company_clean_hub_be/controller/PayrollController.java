@@ -1,6 +1,7 @@
 package com.company.company_clean_hub_be.controller;
 
 import java.math.BigDecimal;
+import java.util.Iterator;
 import java.util.List;
 
 import org.springframework.core.io.ByteArrayResource;
@@ -17,6 +18,7 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import com.company.company_clean_hub_be.dto.request.PaymentRequest;
 import com.company.company_clean_hub_be.dto.request.PayrollRequest;
@@ -26,10 +28,12 @@ import com.company.company_clean_hub_be.dto.response.PageResponse;
 import com.company.company_clean_hub_be.dto.response.PayRollAssignmentExportExcel;
 import com.company.company_clean_hub_be.dto.response.PaymentHistoryResponse;
 import com.company.company_clean_hub_be.dto.response.PayrollAssignmentResponse;
+import com.company.company_clean_hub_be.dto.response.PayrollJobResponse;
 import com.company.company_clean_hub_be.dto.response.PayrollOverviewResponse;
 import com.company.company_clean_hub_be.dto.response.PayrollResponse;
 import com.company.company_clean_hub_be.dto.response.PayrollSummaryDTO;
 import com.company.company_clean_hub_be.service.ExcelExportService;
+import com.company.company_clean_hub_be.service.PayrollJobService;
 import com.company.company_clean_hub_be.service.PayrollService;
 import com.company.company_clean_hub_be.service.impl.ExcelExportServiceImpl;
 
@@ -44,6 +48,7 @@ import lombok.extern.slf4j.Slf4j;
 public class PayrollController {
     private final PayrollService payrollService;
     private final ExcelExportService excelExportService;
+    private final PayrollJobService payrollJobService;
 
     @PostMapping("/calculate")
     public ApiResponse<List<PayrollAssignmentResponse>> calculatePayroll(@Valid @RequestBody PayrollRequest request) {
@@ -179,6 +184,62 @@ public class PayrollController {
                 .body(excelFile);
     }
 
+    @GetMapping("export/excel/{month}/{year}/stream")
+    public ResponseEntity<StreamingResponseBody> exportPayrollStreaming(
+            @PathVariable Integer month,
+            @PathVariable Integer year) {
+
+        log.info("🔵 [EXPORT PAYROLL STREAM] Request nhận được: month={}, year={}", month, year);
+        // Mở cursor ngay trên request thread (cần SecurityContext để xác định kế toán)
+        Iterator<PayRollAssignmentExportExcel> rows = payrollJobService.openExportCursor(month, year);
+        StreamingResponseBody body = out -> excelExportService.writePayrollAssignmentsToExcel(rows, month, year, out);
+
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=payroll_" + month + "_" + year + ".xlsx")
+                .contentType(MediaType.parseMediaType(
+                        "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"))
+                .body(body);
+    }
+
+    @PostMapping("/jobs/calculate")
+    public ApiResponse<PayrollJobResponse> startCalculationJob(
+            @RequestParam Integer month,
+            @RequestParam Integer year) {
+        PayrollJobResponse job = payrollJobService.startCalculation(month, year);
+        return ApiResponse.success("Đã tạo tác vụ tính lương", job, HttpStatus.ACCEPTED.value());
+    }
+
+    @PostMapping("/jobs/export")
+    public ApiResponse<PayrollJobResponse> startExportJob(
+            @RequestParam Integer month,
+            @RequestParam Integer year) {
+        PayrollJobResponse job = payrollJobService.startExport(month, year);
+        return ApiResponse.success("Đã tạo tác vụ xuất bảng lương", job, HttpStatus.ACCEPTED.value());
+    }
+
+    @GetMapping("/jobs/{jobId}")
+    public ApiResponse<PayrollJobResponse> getJob(@PathVariable String jobId) {
+        PayrollJobResponse job = payrollJobService.getJob(jobId);
+        return ApiResponse.success("Lấy trạng thái tác vụ thành công", job, HttpStatus.OK.value());
+    }
+
+    @GetMapping("/jobs/{jobId}/excel")
+    public ResponseEntity<ByteArrayResource> downloadJobExcel(@PathVariable String jobId) {
+        PayrollJobResponse job = payrollJobService.getJob(jobId);
+        List<PayRollAssignmentExportExcel> assignmentData = payrollJobService.getExportRows(jobId);
+        ByteArrayResource excelFile = excelExportService.exportPayrollAssignmentsToExcel(assignmentData,
+                job.getMonth(), job.getYear());
+
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=payroll_" + job.getMonth() + "_" + job.getYear() + ".xlsx")
+                .contentType(MediaType.parseMediaType(
+                        "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"))
+                .contentLength(excelFile.contentLength())
+                .body(excelFile);
+    }
+
     @GetMapping("/{id}/payment-history")
     public ApiResponse<List<PaymentHistoryResponse>> getPaymentHistory(@PathVariable Long id) {
         List<PaymentHistoryResponse> history = payrollService.getPaymentHistory(id);
@@ -31,6 +31,17 @@ public class VerificationController {
 
     private final VerificationService verificationService;
 
+    /**
+     * GET /api/verifications/auto-approval/stats
+     * Thống kê job auto-approve: thời gian chạy, số ứng viên / đủ điều kiện / đã duyệt / lỗi.
+     */
+    @GetMapping("/auto-approval/stats")
+    @org.springframework.security.access.prepost.PreAuthorize("hasAnyRole('QLT1', 'QLT2')")
+    public ApiResponse<VerificationService.AutoApprovalStats> getAutoApprovalStats() {
+        return ApiResponse.success("Lấy thống kê auto-approve thành công", verificationService.getAutoApprovalStats(),
+                HttpStatus.OK.value());
+    }
+
     @GetMapping("/pending")
     public ApiResponse<List<AssignmentVerificationResponse>> getPendingVerifications() {
         List<AssignmentVerificationResponse> verifications = verificationService.getPendingVerifications();
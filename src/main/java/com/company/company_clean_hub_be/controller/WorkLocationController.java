@@ -17,6 +17,7 @@ import com.company.company_clean_hub_be.exception.AppException;
 import com.company.company_clean_hub_be.exception.ErrorCode;
 import com.company.company_clean_hub_be.repository.ContractRepository;
 import com.company.company_clean_hub_be.repository.WorkLocationRepository;
+import com.company.company_clean_hub_be.service.GeofenceService;
 
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
@@ -31,6 +32,7 @@ public class WorkLocationController {
 
     WorkLocationRepository workLocationRepository;
     ContractRepository contractRepository;
+    GeofenceService geofenceService;
 
     @GetMapping
     @PreAuthorize("hasAnyRole('QLT1', 'QLT2', 'QLV')")
@@ -62,6 +64,7 @@ public class WorkLocationController {
                 .build();
 
         WorkLocation saved = workLocationRepository.save(location);
+        geofenceService.invalidateContract(contractId);
         return ApiResponse.success("Tạo vị trí làm việc thành công", mapToResponse(saved), HttpStatus.CREATED.value());
     }
 
@@ -82,16 +85,18 @@ public class WorkLocationController {
         location.setUpdatedAt(LocalDateTime.now());
 
         WorkLocation saved = workLocationRepository.save(location);
+        geofenceService.invalidateContract(location.getContract() != null ? location.getContract().getId() : contractId);
         return ApiResponse.success("Cập nhật vị trí làm việc thành công", mapToResponse(saved), HttpStatus.OK.value());
     }
 
     @DeleteMapping("/{id}")
     @PreAuthorize("hasAnyRole('QLT1', 'QLT2', 'QLV')")
     public ApiResponse<Void> deleteWorkLocation(@PathVariable Long contractId, @PathVariable Long id) {
-        if (!workLocationRepository.existsById(id)) {
-            throw new AppException(ErrorCode.NOTIFICATION_NOT_FOUND);
-        }
+        WorkLocation location = workLocationRepository.findById(id)
+                .orElseThrow(() -> new AppException(ErrorCode.NOTIFICATION_NOT_FOUND));
+        Long ownerContractId = location.getContract() != null ? location.getContract().getId() : contractId;
         workLocationRepository.deleteById(id);
+        geofenceService.invalidateContract(ownerContractId);
         return ApiResponse.success("Xóa vị trí làm việc thành công", null, HttpStatus.OK.value());
     }
 
@@ -0,0 +1,27 @@
+package com.company.company_clean_hub_be.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Ứng viên rảnh cho một khung giờ (kết quả tìm nhân viên khả dụng), đã xếp hạng.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class AvailableEmployeeResponse {
+    private Long employeeId;
+    private String employeeCode;
+    private String name;
+    private String phone;
+    private String address;
+
+    // Khoảng cách (mét) từ nơi làm việc hiện tại gần nhất tới vị trí làm việc của hợp đồng; null nếu không xác định
+    private Double distanceMeters;
+
+    // Số assignment đang hoạt động (IN_PROGRESS / SCHEDULED) của nhân viên
+    private Integer activeAssignments;
+}
@@ -0,0 +1,36 @@
+package com.company.company_clean_hub_be.dto.response;
+
+import java.math.BigDecimal;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Kết quả xuất hóa đơn của một hợp đồng trong lần xuất hàng loạt (một dòng báo cáo).
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class InvoiceBulkResultRow {
+
+    public enum Outcome {
+        CREATED, // Đã tạo hóa đơn
+        SKIPPED, // Hợp đồng đã có hóa đơn tháng này
+        FAILED   // Lỗi khi tính / lưu hóa đơn
+    }
+
+    private Long contractId;
+    private Long customerId;
+    private String customerCode;
+    private String customerName;
+    private Outcome outcome;
+    private Long invoiceId;
+    private BigDecimal totalAmount;
+    private String message;
+
+    // Chỉ có khi outcome = CREATED; job hàng loạt không giữ lại để tiết kiệm bộ nhớ
+    private InvoiceResponse invoice;
+}
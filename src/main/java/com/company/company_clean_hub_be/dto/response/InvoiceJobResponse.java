@@ -0,0 +1,42 @@
+package com.company.company_clean_hub_be.dto.response;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class InvoiceJobResponse {
+
+    public enum JobStatus {
+        PENDING,
+        RUNNING,
+        COMPLETED,
+        COMPLETED_WITH_ERRORS
+    }
+
+    private String jobId;
+    private JobStatus status;
+    private Integer month;
+    private Integer year;
+
+    private Integer totalContracts;
+    private Integer processedContracts;
+    private Integer totalChunks;
+    private Integer completedChunks;
+    private Integer progressPercent;
+
+    private Integer createdInvoices;
+    private Integer skippedContracts;
+    private Integer failedContracts;
+    private List<String> errors;
+
+    private LocalDateTime createdAt;
+    private LocalDateTime finishedAt;
+}
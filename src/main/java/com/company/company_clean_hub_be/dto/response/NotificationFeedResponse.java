@@ -0,0 +1,20 @@
+package com.company.company_clean_hub_be.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class NotificationFeedResponse {
+    private List<NotificationResponse> items;
+    // Truyền lại vào ?cursor= để lấy trang tiếp theo; null khi đã hết
+    private String nextCursor;
+    private boolean hasMore;
+    private long unreadCount;
+}
@@ -0,0 +1,47 @@
+package com.company.company_clean_hub_be.dto.response;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PayrollJobResponse {
+
+    public enum JobType {
+        CALCULATE, // Tính lương hàng loạt
+        EXPORT     // Tính lại + dựng dữ liệu xuất Excel
+    }
+
+    public enum JobStatus {
+        PENDING,
+        RUNNING,
+        COMPLETED,
+        COMPLETED_WITH_ERRORS
+    }
+
+    private String jobId;
+    private JobType type;
+    private JobStatus status;
+    private Integer month;
+    private Integer year;
+
+    private Integer totalEmployees;
+    private Integer processedEmployees;
+    private Integer totalChunks;
+    private Integer completedChunks;
+    private Integer progressPercent;
+    private Integer resultRows;
+
+    private List<Long> failedEmployeeIds;
+    private List<String> errors;
+
+    private LocalDateTime createdAt;
+    private LocalDateTime finishedAt;
+}
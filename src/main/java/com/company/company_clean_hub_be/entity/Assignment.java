@@ -5,6 +5,7 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
 
+import com.company.company_clean_hub_be.service.helper.AvailabilityIndexListener;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import jakarta.persistence.*;
@@ -25,6 +26,7 @@ import lombok.EqualsAndHashCode;
 @AllArgsConstructor
 @Builder
 @JsonIgnoreProperties({ "hibernateLazyInitializer", "handler" })
+@EntityListeners(AvailabilityIndexListener.class)
 public class Assignment {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -6,11 +6,13 @@ import java.time.LocalDateTime;
 import org.hibernate.annotations.ColumnDefault;
 import org.hibernate.annotations.Comment;
 
+import com.company.company_clean_hub_be.service.helper.AttendanceSummaryListener;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EntityListeners;
 import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
@@ -20,6 +22,7 @@ import jakarta.persistence.ManyToOne;
 import jakarta.persistence.OneToOne;
 import jakarta.persistence.CascadeType;
 import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.PositiveOrZero;
 import lombok.AllArgsConstructor;
@@ -31,6 +34,7 @@ import lombok.ToString;
 
 @Entity
 @Table(name = "attendance")
+@EntityListeners(AttendanceSummaryListener.class)
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -121,4 +125,11 @@ public class Attendance {
     @EqualsAndHashCode.Exclude
     @JsonIgnore
     private Evaluation evaluation;
+
+    // Giá trị lúc nạp các cột bảng tổng hợp chấm công dùng, do AttendanceSummaryListener ghi
+    @Transient
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    @JsonIgnore
+    private AttendanceSummaryListener.SummaryState loadedSummaryState;
 }
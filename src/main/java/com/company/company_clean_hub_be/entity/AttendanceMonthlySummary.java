@@ -0,0 +1,64 @@
+package com.company.company_clean_hub_be.entity;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Số liệu chấm công đã gom theo (assignment, năm, tháng), được tính lại từ bảng attendance
+ * mỗi khi chấm công của assignment thay đổi (xem AttendanceSummaryService).
+ * Tính lương, hóa đơn và API tổng ngày công đọc bảng này thay vì gom từng ngày chấm công.
+ */
+@Entity
+@Table(name = "attendance_monthly_summary", uniqueConstraints = @UniqueConstraint(
+        name = "uk_attendance_monthly_summary", columnNames = { "assignment_id", "year", "month" }))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class AttendanceMonthlySummary {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "assignment_id", nullable = false)
+    private Long assignmentId;
+
+    @Column(name = "year", nullable = false)
+    private Integer year;
+
+    @Column(name = "month", nullable = false)
+    private Integer month;
+
+    // Số chấm công chưa xóa
+    @Column(name = "work_days", nullable = false)
+    private Integer workDays;
+
+    // Số chấm công đã xóa mềm (ngày nghỉ)
+    @Column(name = "absence_days", nullable = false)
+    private Integer absenceDays;
+
+    @Column(name = "bonus_total", nullable = false, precision = 19, scale = 2)
+    private BigDecimal bonusTotal;
+
+    @Column(name = "penalty_total", nullable = false, precision = 19, scale = 2)
+    private BigDecimal penaltyTotal;
+
+    @Column(name = "support_cost_total", nullable = false, precision = 19, scale = 2)
+    private BigDecimal supportCostTotal;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,45 @@
+package com.company.company_clean_hub_be.entity;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Lob;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+/**
+ * Ảnh (base64) chờ upload của một CaptureOutboxEvent, tách bảng riêng để truy vấn quét outbox
+ * không phải đọc cột LONGTEXT. Ghi cùng transaction với sự kiện, xoá ngay sau khi upload thành công.
+ */
+@Entity
+@Table(name = "capture_outbox_payloads")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CaptureOutboxPayload {
+
+    @Id
+    @Column(name = "event_id")
+    private Long eventId;
+
+    @Lob
+    @Column(name = "image_base64", nullable = false, columnDefinition = "LONGTEXT")
+    @ToString.Exclude
+    private String imageBase64;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+    }
+}
@@ -0,0 +1,18 @@
+package com.company.company_clean_hub_be.entity;
+
+public enum CaptureOutboxStatus {
+    PENDING("Chờ xử lý"),
+    PROCESSING("Đang xử lý"),
+    DONE("Đã xử lý"),
+    FAILED("Lỗi, đã hết lượt thử lại");
+
+    private final String description;
+
+    CaptureOutboxStatus(String description) {
+        this.description = description;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+}
@@ -9,6 +9,7 @@
     import java.util.List;
     import java.util.Set;
 
+    import com.company.company_clean_hub_be.service.helper.AvailabilityIndexListener;
     import com.fasterxml.jackson.annotation.JsonIgnore;
     import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
     import jakarta.validation.constraints.NotEmpty;
@@ -20,6 +21,7 @@
     import jakarta.persistence.Column;
     import jakarta.persistence.ElementCollection;
     import jakarta.persistence.Entity;
+    import jakarta.persistence.EntityListeners;
     import jakarta.persistence.EnumType;
     import jakarta.persistence.Enumerated;
     import jakarta.persistence.FetchType;
@@ -45,6 +47,7 @@
     @AllArgsConstructor
     @Builder
     @JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
+    @EntityListeners(AvailabilityIndexListener.class)
     public class Contract {
         @Id
         @GeneratedValue(strategy = GenerationType.IDENTITY)
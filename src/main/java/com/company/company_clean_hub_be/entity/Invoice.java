@@ -10,7 +10,8 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "invoices")
+@Table(name = "invoices", uniqueConstraints = @UniqueConstraint(
+        name = "uk_invoices_contract_period", columnNames = { "contract_id", "invoice_month", "invoice_year" }))
 @Getter
 @Setter
 @NoArgsConstructor
@@ -0,0 +1,61 @@
+package com.company.company_clean_hub_be.entity;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Notification đã đọc và quá hạn lưu trữ, được chuyển khỏi bảng notifications
+ * (giữ nguyên id gốc) để bảng chính chỉ còn dữ liệu nóng.
+ */
+@Entity
+@Table(name = "notifications_archive")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class NotificationArchive {
+
+    @Id
+    private Long id;
+
+    @Column(name = "recipient_id", nullable = false)
+    private Long recipientId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "type", length = 50, nullable = false)
+    private NotificationType type;
+
+    @Column(name = "title", length = 255)
+    private String title;
+
+    @Column(name = "message", columnDefinition = "TEXT")
+    private String message;
+
+    @Column(name = "ref_employee_id")
+    private Long refEmployeeId;
+
+    @Column(name = "ref_assignment_id")
+    private Long refAssignmentId;
+
+    @Column(name = "ref_contract_id")
+    private Long refContractId;
+
+    @Column(name = "is_read", nullable = false)
+    private Boolean isRead;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+
+    @Column(name = "archived_at")
+    private LocalDateTime archivedAt;
+}
@@ -18,7 +18,10 @@ import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.OneToMany;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
 import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
 
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -28,7 +31,8 @@ import lombok.NoArgsConstructor;
 import lombok.ToString;
 
 @Entity
-@Table(name = "payrolls")
+@Table(name = "payrolls", uniqueConstraints = @UniqueConstraint(
+        name = "uk_payrolls_employee_period", columnNames = { "employee_id", "payroll_month", "payroll_year" }))
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -103,4 +107,20 @@ public class Payroll {
     @Column(name = "note", columnDefinition = "TEXT")
     private String note;
 
+    // Kỳ lương lấy từ createdAt (luôn là ngày 1 của tháng lương), dùng cho khóa uk_payrolls_employee_period
+    @Column(name = "payroll_month")
+    private Integer payrollMonth;
+
+    @Column(name = "payroll_year")
+    private Integer payrollYear;
+
+    @PrePersist
+    @PreUpdate
+    protected void syncPeriod() {
+        if (createdAt != null) {
+            payrollMonth = createdAt.getMonthValue();
+            payrollYear = createdAt.getYear();
+        }
+    }
+
 }
@@ -30,6 +30,9 @@ public enum ErrorCode {
     BANK_ACCOUNT_ALREADY_EXISTS(400, "Số tài khoản ngân hàng đã tồn tại"),
     PAYROLL_NOT_FOUND(404, "Bảng lương không tồn tại"),
     PAYROLL_ALREADY_EXISTS(400, "Bảng lương tháng này đã tồn tại"),
+    PAYROLL_JOB_NOT_FOUND(404, "Tác vụ tính lương không tồn tại hoặc đã hết hạn"),
+    PAYROLL_JOB_NOT_READY(400, "Tác vụ tính lương chưa hoàn tất hoặc không phải tác vụ xuất Excel"),
+    PAYROLL_CALCULATION_ALREADY_RUNNING(400, "Đang có tác vụ tính lương cho tháng này"),
     ATTENDANCE_NOT_FOUND(404, "Nhân viên không đi làm vào ngày này"),
     REVIEW_NOT_FOUND(404, "Đánh giá không tồn tại"),
     ATTENDANCE_ALREADY_EXISTS(400, "Chấm công ngày này đã tồn tại"),
@@ -49,6 +52,9 @@ public enum ErrorCode {
     INVOICE_ALREADY_EXISTS(400, "Hóa đơn tháng này cho hợp đồng đã tồn tại"),
     INVALID_ACTUAL_WORKING_DAYS(400, "Số ngày làm thực tế không hợp lệ"),
     INVOICE_DATE_BEFORE_CONTRACT_START(400, "Ngày xuất hóa đơn phải sau hoặc bằng ngày bắt đầu hợp đồng"),
+    INVOICE_JOB_NOT_FOUND(404, "Tác vụ xuất hóa đơn không tồn tại hoặc đã hết hạn"),
+    INVOICE_JOB_NOT_READY(400, "Tác vụ xuất hóa đơn chưa hoàn tất"),
+    INVOICE_JOB_ALREADY_RUNNING(400, "Đang có tác vụ xuất hóa đơn cho tháng này"),
 
     COMPANY_STAFF_CANNOT_BE_ASSIGNED(400, "Nhân viên văn phòng không thể được phân công làm việc cho khách hàng"),
     COMPANY_STAFF_CANNOT_BE_REASSIGNED(400, "Nhân viên văn phòng không thể được điều động thay thế"),
@@ -32,6 +32,23 @@ public interface AssignmentHistoryRepository extends JpaRepository<AssignmentHis
     // Pageable version for paginated histories per contract
     org.springframework.data.domain.Page<AssignmentHistory> findByContractIdOrderByCreatedAtDesc(Long contractId, org.springframework.data.domain.Pageable pageable);
 
+    // Trang lịch sử của hợp đồng, lọc tháng/năm ở DB; nạp kèm người tạo / người rollback
+    @Query(value = "SELECT h FROM AssignmentHistory h " +
+            "LEFT JOIN FETCH h.createdBy LEFT JOIN FETCH h.rollbackBy " +
+            "WHERE h.contractId = :contractId " +
+            "AND (:month IS NULL OR MONTH(h.createdAt) = :month) " +
+            "AND (:year IS NULL OR YEAR(h.createdAt) = :year) " +
+            "ORDER BY h.createdAt DESC",
+            countQuery = "SELECT COUNT(h) FROM AssignmentHistory h " +
+            "WHERE h.contractId = :contractId " +
+            "AND (:month IS NULL OR MONTH(h.createdAt) = :month) " +
+            "AND (:year IS NULL OR YEAR(h.createdAt) = :year)")
+    org.springframework.data.domain.Page<AssignmentHistory> findByContractIdAndMonthYear(
+            @Param("contractId") Long contractId,
+            @Param("month") Integer month,
+            @Param("year") Integer year,
+            org.springframework.data.domain.Pageable pageable);
+
     // Lấy lịch sử theo trạng thái
     List<AssignmentHistory> findByStatusOrderByCreatedAtDesc(HistoryStatus status);
 
@@ -16,6 +16,10 @@ import java.util.Optional;
 
 public interface AssignmentRepository extends JpaRepository<Assignment, Long> {
 
+        // Customer của assignment (kiểm tra quyền, không load entity)
+        @Query("SELECT a.contract.customer.id FROM Assignment a WHERE a.id = :assignmentId")
+        Optional<Long> findCustomerIdById(@Param("assignmentId") Long assignmentId);
+
         @Query("SELECT a FROM Assignment a " +
                         "LEFT JOIN a.employee e " +
                         "LEFT JOIN a.contract cont " +
@@ -87,6 +91,26 @@ public interface AssignmentRepository extends JpaRepository<Assignment, Long> {
                         @Param("year") Integer year,
                         Pageable pageable);
 
+        // Phân công của một trang hợp đồng, nạp kèm nhân viên, người phân công và ngày làm việc
+        // (keyword đã ở dạng '%...%' chữ thường)
+        @Query("SELECT DISTINCT a FROM Assignment a " +
+                        "JOIN FETCH a.employee e " +
+                        "LEFT JOIN FETCH a.assignedBy " +
+                        "LEFT JOIN FETCH a.workingDaysPerWeek " +
+                        "WHERE a.contract.id IN :contractIds " +
+                        "AND (:status IS NULL OR a.status = :status) " +
+                        "AND (:month IS NULL OR MONTH(a.startDate) = :month) " +
+                        "AND (:year IS NULL OR YEAR(a.startDate) = :year) " +
+                        "AND (:keyword IS NULL OR LOWER(e.name) LIKE :keyword " +
+                        "OR LOWER(e.employeeCode) LIKE :keyword) " +
+                        "ORDER BY a.startDate DESC")
+        List<Assignment> findByContractIdsWithFilters(
+                        @Param("contractIds") java.util.Collection<Long> contractIds,
+                        @Param("status") AssignmentStatus status,
+                        @Param("month") Integer month,
+                        @Param("year") Integer year,
+                        @Param("keyword") String keyword);
+
         @Query("SELECT a FROM Assignment a " +
                         "WHERE a.employee.id = :employeeId " +
                         "AND a.contract.id = :contractId " +
@@ -137,7 +161,8 @@ public interface AssignmentRepository extends JpaRepository<Assignment, Long> {
                         "WHERE a.employee.id = :employeeId " +
                         "AND FUNCTION('MONTH', att.date) = :month " +
                         "AND FUNCTION('YEAR', att.date) = :year " +
-                        "AND a.status <> com.company.company_clean_hub_be.entity.AssignmentStatus.CANCELLED")
+                        "AND a.status <> com.company.company_clean_hub_be.entity.AssignmentStatus.CANCELLED " +
+                        "ORDER BY a.id")
         List<Assignment> findDistinctAssignmentsByAttendanceMonthAndEmployee(
                         @Param("month") Integer month,
                         @Param("year") Integer year,
@@ -156,6 +181,20 @@ public interface AssignmentRepository extends JpaRepository<Assignment, Long> {
                         @Param("year") Integer year,
                         @Param("employeeIds") List<Long> employeeIds);
 
+        @Query("SELECT DISTINCT a FROM Assignment a " +
+                        "LEFT JOIN FETCH a.contract c " +
+                        "LEFT JOIN FETCH c.customer cu " +
+                        "JOIN a.attendances att " +
+                        "WHERE FUNCTION('MONTH', att.date) = :month " +
+                        "AND FUNCTION('YEAR', att.date) = :year " +
+                        "AND a.employee.id IN :employeeIds " +
+                        "AND a.status <> com.company.company_clean_hub_be.entity.AssignmentStatus.CANCELLED " +
+                        "ORDER BY a.id")
+        List<Assignment> findDistinctAssignmentsWithContractByAttendanceMonthAndEmployeeIds(
+                        @Param("month") Integer month,
+                        @Param("year") Integer year,
+                        @Param("employeeIds") List<Long> employeeIds);
+
         @Query("SELECT a FROM Assignment a " +
                         "WHERE a.assignmentType = 'TEMPORARY' " +
                         "AND a.status = 'IN_PROGRESS' " +
@@ -189,6 +228,63 @@ public interface AssignmentRepository extends JpaRepository<Assignment, Long> {
                         @Param("type") com.company.company_clean_hub_be.entity.AssignmentType type,
                         @Param("status") com.company.company_clean_hub_be.entity.AssignmentStatus status);
 
+        // Keyset theo id cho các job định kỳ: mỗi lần chỉ lấy một trang id > lastId
+        @Query("SELECT a FROM Assignment a LEFT JOIN FETCH a.contract c " +
+                        "WHERE a.id > :lastId " +
+                        "AND a.status IN :statuses " +
+                        "AND ((a.endDate IS NOT NULL AND a.endDate < :today) " +
+                        "OR (c.endDate IS NOT NULL AND c.endDate < :today)) " +
+                        "ORDER BY a.id")
+        List<Assignment> findExpiredAssignmentsAfterId(
+                        @Param("statuses") List<AssignmentStatus> statuses,
+                        @Param("today") LocalDate today,
+                        @Param("lastId") Long lastId,
+                        Pageable pageable);
+
+        // Cặp (assignmentId, contractId) của tháng trước cần sinh lại cho tháng mới:
+        // COMPANY hoặc hợp đồng MONTHLY còn hiệu lực, bỏ qua SUPPORT/TEMPORARY
+        @Query("SELECT a.id, c.id FROM Assignment a LEFT JOIN a.contract c " +
+                        "WHERE a.status IN :statuses " +
+                        "AND a.startDate BETWEEN :fromDate AND :toDate " +
+                        "AND (a.assignmentType IS NULL " +
+                        "OR a.assignmentType NOT IN (com.company.company_clean_hub_be.entity.AssignmentType.SUPPORT, " +
+                        "com.company.company_clean_hub_be.entity.AssignmentType.TEMPORARY)) " +
+                        "AND (a.scope = com.company.company_clean_hub_be.entity.AssignmentScope.COMPANY " +
+                        "OR (c.contractType IN :contractTypes AND (c.endDate IS NULL OR c.endDate >= :today))) " +
+                        "ORDER BY c.id, a.id")
+        List<Object[]> findMonthlyRenewableAssignmentKeys(
+                        @Param("statuses") List<AssignmentStatus> statuses,
+                        @Param("fromDate") LocalDate fromDate,
+                        @Param("toDate") LocalDate toDate,
+                        @Param("contractTypes") List<com.company.company_clean_hub_be.entity.ContractType> contractTypes,
+                        @Param("today") LocalDate today);
+
+        @Query("SELECT a FROM Assignment a JOIN FETCH a.employee LEFT JOIN FETCH a.contract " +
+                        "WHERE a.id IN :ids ORDER BY a.id")
+        List<Assignment> findAllWithEmployeeAndContractByIdIn(@Param("ids") List<Long> ids);
+
+        // (employeeId, contractId, scope) của các assignment đã có trong khoảng ngày
+        @Query("SELECT a.employee.id, c.id, a.scope FROM Assignment a LEFT JOIN a.contract c " +
+                        "WHERE a.employee.id IN :employeeIds " +
+                        "AND a.startDate BETWEEN :fromDate AND :toDate")
+        List<Object[]> findAssignmentKeysByEmployeeIdsAndStartDateBetween(
+                        @Param("employeeIds") List<Long> employeeIds,
+                        @Param("fromDate") LocalDate fromDate,
+                        @Param("toDate") LocalDate toDate);
+
+        @Query("SELECT a FROM Assignment a " +
+                        "WHERE a.id > :lastId " +
+                        "AND a.status IN :statuses " +
+                        "AND a.startDate <= :endDate " +
+                        "AND (a.endDate IS NULL OR a.endDate >= :startDate) " +
+                        "ORDER BY a.id")
+        List<Assignment> findActiveAssignmentsInRangeAfterId(
+                        @Param("statuses") List<AssignmentStatus> statuses,
+                        @Param("startDate") LocalDate startDate,
+                        @Param("endDate") LocalDate endDate,
+                        @Param("lastId") Long lastId,
+                        Pageable pageable);
+
         @Query("SELECT COUNT(DISTINCT a.employee.id) FROM Assignment a " +
                         "WHERE a.contract.id = :contractId " +
                         "AND a.status IN ('IN_PROGRESS', 'SCHEDULED') " +
@@ -207,6 +303,18 @@ public interface AssignmentRepository extends JpaRepository<Assignment, Long> {
                         @Param("endDate") java.time.LocalDate endDate,
                         @Param("excludedType") com.company.company_clean_hub_be.entity.AssignmentType excludedType);
 
+        // [contractId, số nhân viên] — bản gom nhóm của truy vấn trên cho nhiều hợp đồng
+        @Query("SELECT a.contract.id, COUNT(DISTINCT a.employee.id) FROM Assignment a " +
+                        "WHERE a.contract.id IN :contractIds " +
+                        "AND a.status IN ('IN_PROGRESS', 'SCHEDULED') " +
+                        "AND a.startDate <= :endDate " +
+                        "AND (:excludedType IS NULL OR a.assignmentType <> :excludedType) " +
+                        "GROUP BY a.contract.id")
+        List<Object[]> countDistinctActiveEmployeesByContractsBeforeExcludingType(
+                        @Param("contractIds") java.util.Collection<Long> contractIds,
+                        @Param("endDate") java.time.LocalDate endDate,
+                        @Param("excludedType") com.company.company_clean_hub_be.entity.AssignmentType excludedType);
+
         @Query("SELECT COUNT(DISTINCT a.employee.id) FROM Assignment a " +
                         "WHERE a.contract.id = :contractId " +
                         "AND a.status IN ('IN_PROGRESS', 'SCHEDULED') " +
@@ -286,6 +394,31 @@ public interface AssignmentRepository extends JpaRepository<Assignment, Long> {
                         @Param("workDays") int workDays,
                         @Param("plannedDays") int plannedDays);
 
+        // Cộng dồn workDays (không để âm), dùng cho cập nhật metrics theo delta
+        @Modifying(flushAutomatically = true)
+        @Query("UPDATE Assignment a SET a.workDays = CASE WHEN COALESCE(a.workDays, 0) + :delta < 0 THEN 0 " +
+                        "ELSE COALESCE(a.workDays, 0) + :delta END WHERE a.id = :assignmentId")
+        int incrementWorkDays(
+                        @Param("assignmentId") Long assignmentId,
+                        @Param("delta") int delta);
+
+        @Modifying(flushAutomatically = true)
+        @Query("UPDATE Assignment a SET a.workDays = :workDays WHERE a.id = :assignmentId")
+        int updateWorkDays(
+                        @Param("assignmentId") Long assignmentId,
+                        @Param("workDays") int workDays);
+
+        // Assignment cần đối soát metrics: còn hoạt động hoặc bắt đầu từ :fromDate (keyset theo id)
+        @Query("SELECT a.id, a.workDays FROM Assignment a " +
+                        "WHERE a.id > :lastId " +
+                        "AND (a.status IN :statuses OR a.startDate >= :fromDate) " +
+                        "ORDER BY a.id")
+        List<Object[]> findMetricsReconciliationCandidatesAfterId(
+                        @Param("statuses") List<AssignmentStatus> statuses,
+                        @Param("fromDate") LocalDate fromDate,
+                        @Param("lastId") Long lastId,
+                        Pageable pageable);
+
         // Tìm assignment có contract giao thời gian (overlap) với nhân viên vào ngày cụ
         // thể
         @Query("""
@@ -311,6 +444,25 @@ public interface AssignmentRepository extends JpaRepository<Assignment, Long> {
                         @Param("endTime") java.time.LocalTime endTime,
                         @Param("excludeId") Long excludeId);
 
+        // Khung bận cho EmployeeAvailabilityIndex:
+        // [assignmentId, employeeId, contractId, startDate, endDate, workStartTime, workEndTime]
+        @Query("SELECT a.id, a.employee.id, c.id, a.startDate, a.endDate, c.workStartTime, c.workEndTime " +
+                        "FROM Assignment a JOIN a.contract c WHERE a.status IN :statuses")
+        List<Object[]> findAvailabilitySlots(@Param("statuses") java.util.Collection<AssignmentStatus> statuses);
+
+        @Query("SELECT a.id, a.employee.id, c.id, a.startDate, a.endDate, c.workStartTime, c.workEndTime " +
+                        "FROM Assignment a JOIN a.contract c " +
+                        "WHERE a.status IN :statuses AND a.employee.id IN :employeeIds")
+        List<Object[]> findAvailabilitySlotsByEmployeeIds(
+                        @Param("statuses") java.util.Collection<AssignmentStatus> statuses,
+                        @Param("employeeIds") java.util.Collection<Long> employeeIds);
+
+        @Query("SELECT DISTINCT a.employee.id FROM Assignment a " +
+                        "WHERE a.contract.id IN :contractIds AND a.status IN :statuses")
+        List<Long> findEmployeeIdsByContractIdsAndStatuses(
+                        @Param("contractIds") java.util.Collection<Long> contractIds,
+                        @Param("statuses") java.util.Collection<AssignmentStatus> statuses);
+
         @Query("SELECT DISTINCT a.employee.id FROM Assignment a WHERE a.contract.customer.id IN :customerIds")
         List<Long> findEmployeeIdsByCustomerIds(@Param("customerIds") List<Long> customerIds);
 }
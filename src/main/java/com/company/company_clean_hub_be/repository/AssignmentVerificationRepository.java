@@ -4,6 +4,7 @@ import java.util.List;
 import java.util.Optional;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
@@ -44,6 +45,30 @@ public interface AssignmentVerificationRepository extends JpaRepository<Assignme
            "AND av.currentAttempts > 0")
     List<AssignmentVerification> findVerificationsForAutoApproval();
 
+    // [verificationId, số work schedule VERIFIED] của mọi verification cần xét auto-approve, một truy vấn gom nhóm
+    @Query("SELECT av.id, COUNT(ws.id) FROM AssignmentVerification av " +
+           "LEFT JOIN WorkSchedule ws ON ws.assignmentVerification = av " +
+           "AND ws.status = com.company.company_clean_hub_be.entity.WorkScheduleStatus.VERIFIED " +
+           "WHERE av.status IN :statuses AND av.currentAttempts > 0 " +
+           "GROUP BY av.id ORDER BY av.id")
+    List<Object[]> countVerifiedSchedulesForAutoApproval(@Param("statuses") List<VerificationStatus> statuses);
+
+    // Chuyển một lô sang AUTO_APPROVED; chỉ các bản ghi vẫn còn ở trạng thái statuses (bỏ qua bản ghi vừa được duyệt tay)
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE AssignmentVerification av SET av.status = com.company.company_clean_hub_be.entity.VerificationStatus.AUTO_APPROVED, " +
+           "av.autoApprovedAt = :approvedAt, av.updatedAt = :approvedAt " +
+           "WHERE av.id IN :ids AND av.status IN :statuses")
+    int markAutoApproved(@Param("ids") List<Long> ids,
+                         @Param("statuses") List<VerificationStatus> statuses,
+                         @Param("approvedAt") java.time.LocalDateTime approvedAt);
+
+    // Các verification vừa được markAutoApproved trong lô, nạp kèm assignment để xử lý work schedule
+    @Query("SELECT av FROM AssignmentVerification av JOIN FETCH av.assignment " +
+           "WHERE av.id IN :ids AND av.status = com.company.company_clean_hub_be.entity.VerificationStatus.AUTO_APPROVED " +
+           "AND av.autoApprovedAt = :approvedAt")
+    List<AssignmentVerification> findAutoApprovedInBatch(@Param("ids") List<Long> ids,
+                                                         @Param("approvedAt") java.time.LocalDateTime approvedAt);
+
     // Lấy tất cả verifications của nhân viên làm việc theo hợp đồng của 1 customer cụ thể
     @Query("SELECT av FROM AssignmentVerification av " +
            "JOIN FETCH av.assignment a " +
@@ -0,0 +1,146 @@
+package com.company.company_clean_hub_be.repository;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import com.company.company_clean_hub_be.entity.AssignmentType;
+import com.company.company_clean_hub_be.entity.AttendanceMonthlySummary;
+
+public interface AttendanceMonthlySummaryRepository extends JpaRepository<AttendanceMonthlySummary, Long> {
+
+        String SUMMARY_INSERT = "INSERT INTO attendance_monthly_summary (assignment_id, `year`, `month`, " +
+                        "work_days, absence_days, bonus_total, penalty_total, support_cost_total, updated_at) " +
+                        "SELECT a.assignment_id, YEAR(a.date), MONTH(a.date), " +
+                        "SUM(CASE WHEN a.deleted = true THEN 0 ELSE 1 END), " +
+                        "SUM(CASE WHEN a.deleted = true THEN 1 ELSE 0 END), " +
+                        "COALESCE(SUM(CASE WHEN a.deleted = true THEN NULL ELSE a.bonus END), 0), " +
+                        "COALESCE(SUM(CASE WHEN a.deleted = true THEN NULL ELSE a.penalty END), 0), " +
+                        "COALESCE(SUM(CASE WHEN a.deleted = true THEN NULL ELSE a.support_cost END), 0), " +
+                        "NOW(6) " +
+                        "FROM attendance a ";
+
+        String LIVE_AGGREGATE = "SELECT a.assignment_id, YEAR(a.date) AS y, MONTH(a.date) AS m, " +
+                        "SUM(CASE WHEN a.deleted = true THEN 0 ELSE 1 END) AS work_days, " +
+                        "SUM(CASE WHEN a.deleted = true THEN 1 ELSE 0 END) AS absence_days, " +
+                        "COALESCE(SUM(CASE WHEN a.deleted = true THEN NULL ELSE a.bonus END), 0) AS bonus_total, " +
+                        "COALESCE(SUM(CASE WHEN a.deleted = true THEN NULL ELSE a.penalty END), 0) AS penalty_total, " +
+                        "COALESCE(SUM(CASE WHEN a.deleted = true THEN NULL ELSE a.support_cost END), 0) AS support_cost_total " +
+                        "FROM attendance a " +
+                        "WHERE a.assignment_id > :fromId AND a.assignment_id <= :toId AND a.date IS NOT NULL " +
+                        "GROUP BY a.assignment_id, YEAR(a.date), MONTH(a.date)";
+
+        String SUMMARY_UPSERT = "GROUP BY a.assignment_id, YEAR(a.date), MONTH(a.date) " +
+                        "ON DUPLICATE KEY UPDATE work_days = VALUES(work_days), absence_days = VALUES(absence_days), " +
+                        "bonus_total = VALUES(bonus_total), penalty_total = VALUES(penalty_total), " +
+                        "support_cost_total = VALUES(support_cost_total), updated_at = VALUES(updated_at)";
+
+        @Modifying
+        @Query("DELETE FROM AttendanceMonthlySummary s WHERE s.assignmentId IN :assignmentIds")
+        int deleteByAssignmentIds(@Param("assignmentIds") Collection<Long> assignmentIds);
+
+        // Tính lại toàn bộ các tháng của các assignment từ bảng attendance
+        @Modifying
+        @Query(value = SUMMARY_INSERT +
+                        "WHERE a.assignment_id IN (:assignmentIds) AND a.date IS NOT NULL " +
+                        SUMMARY_UPSERT, nativeQuery = true)
+        int insertFromAttendanceByAssignmentIds(@Param("assignmentIds") Collection<Long> assignmentIds);
+
+        @Modifying
+        @Query("DELETE FROM AttendanceMonthlySummary s WHERE s.assignmentId IN :assignmentIds " +
+                        "AND s.year = :year AND s.month = :month")
+        int deleteByAssignmentIdsAndMonth(
+                        @Param("assignmentIds") Collection<Long> assignmentIds,
+                        @Param("year") Integer year,
+                        @Param("month") Integer month);
+
+        // Tính lại một tháng [fromDate, toDate) của các assignment từ bảng attendance
+        @Modifying
+        @Query(value = SUMMARY_INSERT +
+                        "WHERE a.assignment_id IN (:assignmentIds) AND a.date >= :fromDate AND a.date < :toDate " +
+                        SUMMARY_UPSERT, nativeQuery = true)
+        int insertFromAttendanceByAssignmentIdsAndDateRange(
+                        @Param("assignmentIds") Collection<Long> assignmentIds,
+                        @Param("fromDate") LocalDate fromDate,
+                        @Param("toDate") LocalDate toDate);
+
+        // Dựng lại theo khoảng assignment id (fromId, toId]
+        @Modifying
+        @Query("DELETE FROM AttendanceMonthlySummary s WHERE s.assignmentId > :fromId AND s.assignmentId <= :toId")
+        int deleteByAssignmentIdRange(@Param("fromId") Long fromId, @Param("toId") Long toId);
+
+        @Modifying
+        @Query(value = SUMMARY_INSERT +
+                        "WHERE a.assignment_id > :fromId AND a.assignment_id <= :toId AND a.date IS NOT NULL " +
+                        SUMMARY_UPSERT, nativeQuery = true)
+        int insertFromAttendanceByAssignmentIdRange(@Param("fromId") Long fromId, @Param("toId") Long toId);
+
+        // Số (assignment, năm, tháng) trong khoảng (fromId, toId] mà bảng tổng hợp lệch với gom trực tiếp
+        // từ attendance: thiếu dòng, sai số liệu, hoặc còn dòng cho tháng không còn chấm công
+        @Query(value = "SELECT COUNT(*) FROM (" +
+                        "SELECT live.assignment_id FROM (" + LIVE_AGGREGATE + ") live " +
+                        "LEFT JOIN attendance_monthly_summary s ON s.assignment_id = live.assignment_id " +
+                        "AND s.`year` = live.y AND s.`month` = live.m " +
+                        "WHERE s.id IS NULL OR s.work_days <> live.work_days OR s.absence_days <> live.absence_days " +
+                        "OR s.bonus_total <> live.bonus_total OR s.penalty_total <> live.penalty_total " +
+                        "OR s.support_cost_total <> live.support_cost_total " +
+                        "UNION ALL " +
+                        "SELECT s.assignment_id FROM attendance_monthly_summary s " +
+                        "WHERE s.assignment_id > :fromId AND s.assignment_id <= :toId " +
+                        "AND NOT EXISTS (SELECT 1 FROM attendance a WHERE a.assignment_id = s.assignment_id " +
+                        "AND YEAR(a.date) = s.`year` AND MONTH(a.date) = s.`month`)" +
+                        ") mismatches", nativeQuery = true)
+        Long countMismatchesByAssignmentIdRange(@Param("fromId") Long fromId, @Param("toId") Long toId);
+
+        @Query(value = "SELECT GREATEST(COALESCE((SELECT MAX(assignment_id) FROM attendance), 0), " +
+                        "COALESCE((SELECT MAX(assignment_id) FROM attendance_monthly_summary), 0))", nativeQuery = true)
+        Long findMaxAssignmentId();
+
+        // [assignmentId, ngày công các tháng trước :period, SUM(bonus), SUM(penalty), SUM(supportCost), kỳ lớn nhất]
+        // với kỳ = year * 12 + month
+        @Query("SELECT s.assignmentId, " +
+                        "SUM(CASE WHEN s.year * 12 + s.month < :period THEN s.workDays ELSE 0 END), " +
+                        "SUM(s.bonusTotal), SUM(s.penaltyTotal), SUM(s.supportCostTotal), " +
+                        "MAX(s.year * 12 + s.month) " +
+                        "FROM AttendanceMonthlySummary s " +
+                        "WHERE s.assignmentId IN :assignmentIds " +
+                        "GROUP BY s.assignmentId")
+        List<Object[]> aggregateByAssignmentIds(
+                        @Param("assignmentIds") Collection<Long> assignmentIds,
+                        @Param("period") Integer period);
+
+        @Query("SELECT COALESCE(SUM(s.workDays), 0) FROM AttendanceMonthlySummary s, Assignment asn " +
+                        "WHERE asn.id = s.assignmentId AND asn.employee.id = :employeeId " +
+                        "AND s.year = :year AND s.month = :month")
+        Long sumWorkDaysByEmployeeAndMonth(
+                        @Param("employeeId") Long employeeId,
+                        @Param("month") Integer month,
+                        @Param("year") Integer year);
+
+        @Query("SELECT COALESCE(SUM(s.absenceDays), 0) FROM AttendanceMonthlySummary s, Assignment asn " +
+                        "WHERE asn.id = s.assignmentId AND asn.contract.id = :contractId " +
+                        "AND s.year = :year AND s.month = :month " +
+                        "AND (:excludedType IS NULL OR asn.assignmentType <> :excludedType)")
+        Long sumAbsenceDaysByContractAndMonth(
+                        @Param("contractId") Long contractId,
+                        @Param("month") Integer month,
+                        @Param("year") Integer year,
+                        @Param("excludedType") AssignmentType excludedType);
+
+        // [contractId, số ngày nghỉ]
+        @Query("SELECT asn.contract.id, SUM(s.absenceDays) FROM AttendanceMonthlySummary s, Assignment asn " +
+                        "WHERE asn.id = s.assignmentId AND asn.contract.id IN :contractIds " +
+                        "AND s.year = :year AND s.month = :month " +
+                        "AND (:excludedType IS NULL OR asn.assignmentType <> :excludedType) " +
+                        "GROUP BY asn.contract.id")
+        List<Object[]> sumAbsenceDaysByContractsAndMonth(
+                        @Param("contractIds") Collection<Long> contractIds,
+                        @Param("month") Integer month,
+                        @Param("year") Integer year,
+                        @Param("excludedType") AssignmentType excludedType);
+}
@@ -2,12 +2,14 @@ package com.company.company_clean_hub_be.repository;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
@@ -124,6 +126,50 @@ public interface AttendanceRepository extends JpaRepository<Attendance, Long> {
                         @Param("year") Integer year,
                         @Param("employeeId") Long employeeId);
 
+        // (employeeId, year, month) còn dữ liệu chấm công trong [fromDate, toDate): chấm công bất kỳ của
+        // assignment chưa CANCELLED, hoặc chấm công chưa xóa — gộp hai điều kiện kiểm tra payroll orphan
+        @Query("SELECT a.assignment.employee.id, FUNCTION('YEAR', a.date), FUNCTION('MONTH', a.date) " +
+                        "FROM Attendance a " +
+                        "WHERE a.assignment.employee.id IN :employeeIds " +
+                        "AND a.date >= :fromDate AND a.date < :toDate " +
+                        "AND (a.assignment.status <> com.company.company_clean_hub_be.entity.AssignmentStatus.CANCELLED " +
+                        "OR a.deleted IS NULL OR a.deleted = false) " +
+                        "GROUP BY a.assignment.employee.id, FUNCTION('YEAR', a.date), FUNCTION('MONTH', a.date)")
+        List<Object[]> findEmployeeMonthsWithAttendance(
+                        @Param("employeeIds") Collection<Long> employeeIds,
+                        @Param("fromDate") LocalDate fromDate,
+                        @Param("toDate") LocalDate toDate);
+
+        // Gỡ liên kết chấm công (thường đã xóa mềm) khỏi các payroll sắp bị xóa
+        @Modifying
+        @Query("UPDATE Attendance a SET a.payroll = null WHERE a.payroll.id IN :payrollIds")
+        int unlinkPayrolls(@Param("payrollIds") Collection<Long> payrollIds);
+
+        @Query("SELECT DISTINCT a.assignment.employee.id FROM Attendance a " +
+                        "WHERE (a.deleted IS NULL OR a.deleted = false) " +
+                        "AND a.assignment.employee.id IN :employeeIds " +
+                        "AND FUNCTION('MONTH', a.date) = :month " +
+                        "AND FUNCTION('YEAR', a.date) = :year")
+        List<Long> findEmployeeIdsWithAttendanceByMonthYear(
+                        @Param("month") Integer month,
+                        @Param("year") Integer year,
+                        @Param("employeeIds") List<Long> employeeIds);
+
+        // Gắn payroll_id cho toàn bộ chấm công trong tháng của các nhân viên vừa tính lương
+        @org.springframework.data.jpa.repository.Modifying
+        @Query(value = "UPDATE attendance att " +
+                        "JOIN assignments asn ON asn.id = att.assignment_id " +
+                        "JOIN payrolls p ON p.employee_id = asn.employee_id " +
+                        "AND MONTH(p.created_at) = :month AND YEAR(p.created_at) = :year " +
+                        "SET att.payroll_id = p.id " +
+                        "WHERE (att.deleted IS NULL OR att.deleted = false) " +
+                        "AND MONTH(att.date) = :month AND YEAR(att.date) = :year " +
+                        "AND asn.employee_id IN (:employeeIds)", nativeQuery = true)
+        int linkPayrollsByMonthYearAndEmployeeIds(
+                        @Param("month") Integer month,
+                        @Param("year") Integer year,
+                        @Param("employeeIds") List<Long> employeeIds);
+
         @Query("SELECT a FROM Attendance a WHERE a.payroll.id = :payrollId AND (a.deleted IS NULL OR a.deleted = false)")
         List<Attendance> findByPayrollId(@Param("payrollId") Long payrollId);
 
@@ -298,4 +344,35 @@ public interface AttendanceRepository extends JpaRepository<Attendance, Long> {
                 @Param("month") Integer month,
                 @Param("year") Integer year);
 
+        // Chấm công "độc lập" tính vào workDays: chưa xóa, không gắn WorkSchedule nào và ngày đó
+        // không có WorkSchedule đã bị xóa chấm công (cùng quy tắc với AssignmentMetricsService)
+        @Query("SELECT COUNT(a) FROM Attendance a " +
+               "WHERE a.assignment.id = :assignmentId AND a.date = :date " +
+               "AND (a.deleted IS NULL OR a.deleted = false) " +
+               "AND NOT EXISTS (SELECT 1 FROM WorkSchedule ws WHERE ws.assignment.id = a.assignment.id " +
+               "AND (ws.attendance.id = a.id OR (ws.scheduledDate = a.date AND ws.attendanceDeleted = true)))")
+        long countStandaloneByAssignmentIdAndDate(
+                @Param("assignmentId") Long assignmentId,
+                @Param("date") LocalDate date);
+
+        // Như trên, gom theo assignment: (assignmentId, count)
+        @Query("SELECT a.assignment.id, COUNT(a) FROM Attendance a " +
+               "WHERE a.assignment.id IN :assignmentIds " +
+               "AND (a.deleted IS NULL OR a.deleted = false) " +
+               "AND NOT EXISTS (SELECT 1 FROM WorkSchedule ws WHERE ws.assignment.id = a.assignment.id " +
+               "AND (ws.attendance.id = a.id OR (ws.scheduledDate = a.date AND ws.attendanceDeleted = true))) " +
+               "GROUP BY a.assignment.id")
+        List<Object[]> countStandaloneByAssignmentIds(@Param("assignmentIds") List<Long> assignmentIds);
+
+        // (assignmentId, số chấm công chưa xóa) trong khoảng ngày, dùng cho tháng hiện tại của bảng tổng hợp
+        @Query("SELECT a.assignment.id, COUNT(a) FROM Attendance a " +
+               "WHERE a.assignment.id IN :assignmentIds " +
+               "AND a.date BETWEEN :startDate AND :endDate " +
+               "AND (a.deleted IS NULL OR a.deleted = false) " +
+               "GROUP BY a.assignment.id")
+        List<Object[]> countActiveByAssignmentIdsAndDateBetween(
+                @Param("assignmentIds") java.util.Collection<Long> assignmentIds,
+                @Param("startDate") LocalDate startDate,
+                @Param("endDate") LocalDate endDate);
+
 }
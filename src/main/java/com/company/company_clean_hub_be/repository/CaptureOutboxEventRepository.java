@@ -0,0 +1,44 @@
+package com.company.company_clean_hub_be.repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.company.company_clean_hub_be.entity.CaptureOutboxEvent;
+
+public interface CaptureOutboxEventRepository extends JpaRepository<CaptureOutboxEvent, Long> {
+
+    // Sự kiện đến hạn: PENDING đã tới giờ thử lại, hoặc PROCESSING bị treo (worker dừng giữa chừng)
+    @Query("SELECT e.id FROM CaptureOutboxEvent e " +
+           "WHERE (e.status = com.company.company_clean_hub_be.entity.CaptureOutboxStatus.PENDING " +
+           "AND (e.nextAttemptAt IS NULL OR e.nextAttemptAt <= :now)) " +
+           "OR (e.status = com.company.company_clean_hub_be.entity.CaptureOutboxStatus.PROCESSING " +
+           "AND e.lockedAt < :staleBefore) " +
+           "ORDER BY e.id")
+    List<Long> findDueEventIds(
+            @Param("now") LocalDateTime now,
+            @Param("staleBefore") LocalDateTime staleBefore,
+            Pageable pageable);
+
+    // Nhận xử lý một sự kiện; trả về 0 nếu worker khác đã nhận trước
+    @Transactional
+    @Modifying
+    @Query("UPDATE CaptureOutboxEvent e " +
+           "SET e.status = com.company.company_clean_hub_be.entity.CaptureOutboxStatus.PROCESSING, " +
+           "e.lockedAt = :now, e.attempts = e.attempts + 1, e.updatedAt = :now " +
+           "WHERE e.id = :id " +
+           "AND ((e.status = com.company.company_clean_hub_be.entity.CaptureOutboxStatus.PENDING " +
+           "AND (e.nextAttemptAt IS NULL OR e.nextAttemptAt <= :now)) " +
+           "OR (e.status = com.company.company_clean_hub_be.entity.CaptureOutboxStatus.PROCESSING " +
+           "AND e.lockedAt < :staleBefore))")
+    int claim(
+            @Param("id") Long id,
+            @Param("now") LocalDateTime now,
+            @Param("staleBefore") LocalDateTime staleBefore);
+}
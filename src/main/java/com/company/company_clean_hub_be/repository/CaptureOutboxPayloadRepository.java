@@ -0,0 +1,20 @@
+package com.company.company_clean_hub_be.repository;
+
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import com.company.company_clean_hub_be.entity.CaptureOutboxPayload;
+
+public interface CaptureOutboxPayloadRepository extends JpaRepository<CaptureOutboxPayload, Long> {
+
+    @Query("SELECT p.imageBase64 FROM CaptureOutboxPayload p WHERE p.eventId = :eventId")
+    Optional<String> findImageBase64ByEventId(@Param("eventId") Long eventId);
+
+    @Modifying
+    @Query("DELETE FROM CaptureOutboxPayload p WHERE p.eventId = :eventId")
+    int deleteByEventId(@Param("eventId") Long eventId);
+}
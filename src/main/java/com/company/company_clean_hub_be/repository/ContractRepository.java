@@ -12,6 +12,10 @@ import com.company.company_clean_hub_be.dto.response.CustomerContractServiceFlat
 import com.company.company_clean_hub_be.entity.Contract;
 
 public interface ContractRepository extends JpaRepository<Contract, Long> {
+
+    // Customer của hợp đồng (kiểm tra quyền, không load entity)
+    @Query("SELECT c.customer.id FROM Contract c WHERE c.id = :contractId")
+    java.util.Optional<Long> findCustomerIdById(@Param("contractId") Long contractId);
     
     @Query("SELECT c FROM Contract c LEFT JOIN c.customer cu WHERE " +
            "(:keyword IS NULL OR :keyword = '' OR " +
@@ -25,6 +29,31 @@ public interface ContractRepository extends JpaRepository<Contract, Long> {
     
     List<Contract> findByCustomerId(Long customerId);
 
+    String CUSTOMER_CONTRACT_FILTER = "FROM Contract c WHERE c.customer.id = :customerId " +
+           "AND (:contractId IS NULL OR c.id = :contractId) " +
+           "AND (:contractType IS NULL OR c.contractType = :contractType) " +
+           "AND (:assignmentFiltered = false OR EXISTS (SELECT 1 FROM Assignment a WHERE a.contract.id = c.id " +
+           "AND (:status IS NULL OR a.status = :status) " +
+           "AND (:month IS NULL OR MONTH(a.startDate) = :month) " +
+           "AND (:year IS NULL OR YEAR(a.startDate) = :year) " +
+           "AND (:keyword IS NULL OR LOWER(a.employee.name) LIKE :keyword " +
+           "OR LOWER(a.employee.employeeCode) LIKE :keyword)))";
+
+    // Trang id hợp đồng của khách hàng (thứ tự id). assignmentFiltered = true thì chỉ lấy hợp đồng
+    // có phân công khớp status / tháng / năm / keyword (keyword đã ở dạng '%...%' chữ thường)
+    @Query(value = "SELECT c.id " + CUSTOMER_CONTRACT_FILTER + " ORDER BY c.id ASC",
+           countQuery = "SELECT COUNT(c) " + CUSTOMER_CONTRACT_FILTER)
+    Page<Long> findIdsByCustomerWithFilters(
+            @Param("customerId") Long customerId,
+            @Param("contractId") Long contractId,
+            @Param("contractType") com.company.company_clean_hub_be.entity.ContractType contractType,
+            @Param("assignmentFiltered") boolean assignmentFiltered,
+            @Param("status") com.company.company_clean_hub_be.entity.AssignmentStatus status,
+            @Param("month") Integer month,
+            @Param("year") Integer year,
+            @Param("keyword") String keyword,
+            Pageable pageable);
+
     @Query("""
             SELECT new com.company.company_clean_hub_be.dto.response.CustomerContractServiceFlatDto(
                 c.customer.id,
@@ -50,6 +79,36 @@ public interface ContractRepository extends JpaRepository<Contract, Long> {
             """)
     List<CustomerContractServiceFlatDto> findAllCustomerContractServicesFlat();
 
+    @Query("SELECT DISTINCT c.customer.id FROM Contract c ORDER BY c.customer.id ASC")
+    List<Long> findDistinctCustomerIdsWithContracts();
+
+    @Query("""
+            SELECT new com.company.company_clean_hub_be.dto.response.CustomerContractServiceFlatDto(
+                c.customer.id,
+                c.customer.name,
+                c.customer.address,
+                c.customer.taxCode,
+                c.customer.email,
+                c.id,
+                CAST(c.startDate AS string),
+                CAST(c.endDate AS string),
+                CAST(c.contractType AS string),
+                c.paymentStatus,
+                c.description,
+                CAST(SIZE(c.workingDaysPerWeek) AS int),
+                s.id,
+                s.title,
+                s.price,
+                s.vat
+            )
+            FROM Contract c
+            LEFT JOIN c.services s
+            WHERE c.customer.id IN :customerIds
+            ORDER BY c.customer.id ASC, c.id ASC, s.id ASC
+            """)
+    List<CustomerContractServiceFlatDto> findCustomerContractServicesFlatByCustomerIds(
+            @Param("customerIds") List<Long> customerIds);
+
     @Query("SELECT c FROM Contract c WHERE c.endDate BETWEEN :startDate AND :endDate AND c.paymentStatus <> :status")
     List<Contract> findByEndDateBetweenAndPaymentStatusNot(
             @Param("startDate") java.time.LocalDate startDate,
@@ -60,4 +119,25 @@ public interface ContractRepository extends JpaRepository<Contract, Long> {
     List<Contract> findByPaymentStatusNotAndEndDateAfter(
             @Param("status") String status,
             @Param("date") java.time.LocalDate date);
+
+    // [contractId, dayOfWeek] của các hợp đồng (ngày làm việc trong tuần)
+    @Query("SELECT c.id, d FROM Contract c JOIN c.workingDaysPerWeek d WHERE c.id IN :ids")
+    List<Object[]> findWorkingDaysByContractIds(@Param("ids") java.util.Collection<Long> ids);
+
+    // Nạp hợp đồng kèm khách hàng + dịch vụ trong một truy vấn (tránh N+1 khi dựng báo cáo)
+    @Query("SELECT DISTINCT c FROM Contract c LEFT JOIN FETCH c.customer LEFT JOIN FETCH c.services WHERE c.id IN :ids")
+    List<Contract> findAllWithCustomerAndServicesByIdIn(@Param("ids") java.util.Collection<Long> ids);
+
+    // Khởi tạo workingDaysPerWeek cho các hợp đồng đã nạp ở truy vấn trên (không fetch hai collection cùng lúc)
+    @Query("SELECT DISTINCT c FROM Contract c LEFT JOIN FETCH c.workingDaysPerWeek WHERE c.id IN :ids")
+    List<Contract> findAllWithWorkingDaysByIdIn(@Param("ids") java.util.Collection<Long> ids);
+
+    // Hợp đồng còn hiệu lực trong kỳ [startDate, endDate] (xuất hóa đơn cả tháng)
+    @Query("SELECT c.id FROM Contract c " +
+           "WHERE (c.startDate IS NULL OR c.startDate <= :endDate) " +
+           "AND (c.endDate IS NULL OR c.endDate >= :startDate) " +
+           "ORDER BY c.customer.id ASC, c.id ASC")
+    List<Long> findIdsActiveInPeriod(
+            @Param("startDate") java.time.LocalDate startDate,
+            @Param("endDate") java.time.LocalDate endDate);
 }
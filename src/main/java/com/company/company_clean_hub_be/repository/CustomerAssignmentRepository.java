@@ -25,6 +25,14 @@ public interface CustomerAssignmentRepository extends JpaRepository<CustomerAssi
      */
     List<CustomerAssignment> findByCustomerId(Long customerId);
 
+    /**
+     * Id các manager (theo role) được phân công cho một customer
+     */
+    @Query("SELECT DISTINCT ca.manager.id FROM CustomerAssignment ca " +
+           "WHERE ca.customer.id = :customerId AND ca.manager.role.code IN :roleCodes")
+    List<Long> findManagerIdsByCustomerIdAndRoleCodes(@Param("customerId") Long customerId,
+                                                      @Param("roleCodes") java.util.Collection<String> roleCodes);
+
     /**
      * Kiểm tra xem một manager đã được phân công cho customer chưa
      */
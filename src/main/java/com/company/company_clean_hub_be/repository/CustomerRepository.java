@@ -55,6 +55,30 @@ public interface CustomerRepository extends JpaRepository<Customer, Long> {
             Pageable pageable
     );
 
+    // Như findByFiltersAndIds nhưng lọc bằng bảng phân công của manager
+    @Query("SELECT c FROM Customer c WHERE c.id IN (SELECT ca.customer.id FROM CustomerAssignment ca WHERE ca.manager.id = :managerId) AND " +
+           "(:keyword IS NULL OR :keyword = '' OR " +
+           "LOWER(c.name) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
+           "LOWER(c.customerCode) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
+           "LOWER(c.phone) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
+           "LOWER(c.email) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
+           "LOWER(c.taxCode) LIKE LOWER(CONCAT('%', :keyword, '%'))) " +
+           "AND (:hasContractInMonth IS NULL OR " +
+           "(:hasContractInMonth = true AND c.id IN (" +
+           "  SELECT DISTINCT ct.customer.id FROM Contract ct WHERE ct.startDate <= :monthEnd AND (ct.endDate IS NULL OR ct.endDate >= :monthStart)" +
+           ")) OR " +
+           "(:hasContractInMonth = false AND c.id NOT IN (" +
+           "  SELECT DISTINCT ct.customer.id FROM Contract ct WHERE ct.startDate <= :monthEnd AND (ct.endDate IS NULL OR ct.endDate >= :monthStart)" +
+           ")))")
+    Page<Customer> findByFiltersForManager(
+            @Param("keyword") String keyword,
+            @Param("managerId") Long managerId,
+            @Param("hasContractInMonth") Boolean hasContractInMonth,
+            @Param("monthStart") java.time.LocalDate monthStart,
+            @Param("monthEnd") java.time.LocalDate monthEnd,
+            Pageable pageable
+    );
+
         java.util.Optional<Customer> findByCustomerCode(String customerCode);
 
         // Phương thức để lấy mã khách hàng lớn nhất
@@ -41,6 +41,16 @@ public interface EmployeeRepository extends JpaRepository<Employee, Long> {
             Pageable pageable
     );
 
+    // [id, employeeCode, name, phone, address] của nhân viên lọc theo loại / tỉnh / phường, không nạp entity
+    @Query("SELECT e.id, e.employeeCode, e.name, e.phone, e.address FROM Employee e " +
+           "WHERE (:employmentType IS NULL OR e.employmentType = :employmentType) " +
+           "AND (:province IS NULL OR :province = '' OR LOWER(e.address) LIKE LOWER(CONCAT('%', :province, '%'))) " +
+           "AND (:ward IS NULL OR :ward = '' OR LOWER(e.address) LIKE LOWER(CONCAT('%', :ward, '%')))")
+    List<Object[]> findAvailabilityCandidateRows(
+            @Param("employmentType") com.company.company_clean_hub_be.entity.EmploymentType employmentType,
+            @Param("province") String province,
+            @Param("ward") String ward);
+
     boolean existsByUsername(String username);
 
     boolean existsByPhone(String phone);
@@ -85,8 +95,28 @@ public interface EmployeeRepository extends JpaRepository<Employee, Long> {
             @Param("year") int year
     );
 
+    @Query("""
+        SELECT DISTINCT e.id
+        FROM Employee e
+        JOIN Assignment a ON e.id = a.employee.id
+        WHERE FUNCTION('MONTH', a.startDate) = :month
+          AND FUNCTION('YEAR', a.startDate) = :year
+        ORDER BY e.id
+    """)
+    List<Long> findDistinctEmployeeIdsByAssignmentMonthYear(
+            @Param("month") int month,
+            @Param("year") int year
+    );
+
     List<Employee> findByEmploymentType(EmploymentType employmentType);
 
+    // Id nhân viên (theo thứ tự id) cho luồng xuất Excel streaming, nạp chi tiết theo lô
+    @Query("SELECT e.id FROM Employee e WHERE (:employmentType IS NULL OR e.employmentType = :employmentType) ORDER BY e.id")
+    List<Long> findIdsForExport(@Param("employmentType") EmploymentType employmentType);
+
+    @Query("SELECT e FROM Employee e WHERE e.id IN :ids ORDER BY e.id")
+    List<Employee> findAllByIdInOrderById(@Param("ids") List<Long> ids);
+
         Optional<Employee> findByUsername(String username);
 
     // Phương thức để lấy mã nhân viên lớn nhất theo prefix
@@ -15,6 +15,10 @@ import org.springframework.data.domain.Pageable;
 @Repository
 public interface InvoiceRepository extends JpaRepository<Invoice, Long> {
 
+    // Customer của hóa đơn (kiểm tra quyền, không load entity)
+    @Query("SELECT i.contract.customer.id FROM Invoice i WHERE i.id = :invoiceId")
+    Optional<Long> findCustomerIdById(@Param("invoiceId") Long invoiceId);
+
     // Tìm hóa đơn theo contract và tháng/năm
     @Query("SELECT i FROM Invoice i WHERE i.contract.id = :contractId AND i.invoiceMonth = :month AND i.invoiceYear = :year")
     Optional<Invoice> findByContractIdAndMonthAndYear(
@@ -23,6 +27,14 @@ public interface InvoiceRepository extends JpaRepository<Invoice, Long> {
             @Param("year") Integer year
     );
 
+    // Các hợp đồng đã có hóa đơn của tháng trong danh sách cho trước
+    @Query("SELECT i.contract.id FROM Invoice i WHERE i.contract.id IN :contractIds AND i.invoiceMonth = :month AND i.invoiceYear = :year")
+    List<Long> findContractIdsWithInvoice(
+            @Param("contractIds") java.util.Collection<Long> contractIds,
+            @Param("month") Integer month,
+            @Param("year") Integer year
+    );
+
     // Lấy tất cả hóa đơn của một contract
     @Query("SELECT i FROM Invoice i WHERE i.contract.id = :contractId ORDER BY i.invoiceYear DESC, i.invoiceMonth DESC")
     List<Invoice> findByContractId(@Param("contractId") Long contractId);
@@ -74,6 +86,16 @@ public interface InvoiceRepository extends JpaRepository<Invoice, Long> {
             "ORDER BY cust.name")
     List<Invoice> findAllWithLinesByMonthAndYearAndCustomerIds(@Param("month") Integer month, @Param("year") Integer year, @Param("customerIds") List<Long> customerIds);
 
+    // Hóa đơn của các khách hàng được phân công cho manager (lọc bằng bảng phân công)
+    @Query("SELECT DISTINCT i FROM Invoice i " +
+            "LEFT JOIN FETCH i.invoiceLines l " +
+            "LEFT JOIN FETCH i.contract c " +
+            "LEFT JOIN FETCH c.customer cust " +
+            "WHERE i.invoiceMonth = :month AND i.invoiceYear = :year " +
+            "AND cust.id IN (SELECT ca.customer.id FROM CustomerAssignment ca WHERE ca.manager.id = :managerId) " +
+            "ORDER BY cust.name")
+    List<Invoice> findAllWithLinesByMonthAndYearForManager(@Param("month") Integer month, @Param("year") Integer year, @Param("managerId") Long managerId);
+
     // Lấy tất cả hóa đơn cùng invoice lines + contract + customer để xuất tổng hợp (theo month/year)
     @Query("SELECT DISTINCT i FROM Invoice i " +
             "LEFT JOIN FETCH i.invoiceLines l " +
@@ -83,6 +105,22 @@ public interface InvoiceRepository extends JpaRepository<Invoice, Long> {
             "ORDER BY cust.name")
     List<Invoice> findAllWithLinesByMonthAndYear(@Param("month") Integer month, @Param("year") Integer year);
 
+    // Id hóa đơn trong tháng theo cùng thứ tự xuất tổng hợp, dùng cho luồng xuất zip streaming
+    @Query("SELECT i.id FROM Invoice i " +
+            "LEFT JOIN i.contract c " +
+            "LEFT JOIN c.customer cust " +
+            "WHERE i.invoiceMonth = :month AND i.invoiceYear = :year " +
+            "ORDER BY cust.name, i.id")
+    List<Long> findIdsByMonthAndYearOrderByCustomerName(@Param("month") Integer month, @Param("year") Integer year);
+
+    @Query("SELECT DISTINCT i FROM Invoice i " +
+            "LEFT JOIN FETCH i.invoiceLines l " +
+            "LEFT JOIN FETCH i.contract c " +
+            "LEFT JOIN FETCH c.customer cust " +
+            "WHERE i.id IN :ids " +
+            "ORDER BY cust.name, i.id")
+    List<Invoice> findAllWithLinesByIds(@Param("ids") List<Long> ids);
+
     // Variant: for a specific customer
     @Query("SELECT DISTINCT i FROM Invoice i " +
             "LEFT JOIN FETCH i.invoiceLines l " +
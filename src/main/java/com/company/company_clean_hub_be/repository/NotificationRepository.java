@@ -5,6 +5,7 @@ import com.company.company_clean_hub_be.entity.NotificationType;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
@@ -73,6 +74,49 @@ public interface NotificationRepository extends JpaRepository<Notification, Long
 
     void deleteByCreatedAtBefore(LocalDateTime cutoff);
 
+    // ─── Feed keyset (recipient_id, created_at, id) ─────────────────────────────
+    @Query("""
+        SELECT n FROM Notification n
+        WHERE n.recipient.id = :recipientId
+        AND (:type IS NULL OR n.type = :type)
+        AND (:isRead IS NULL OR n.isRead = :isRead)
+        ORDER BY n.createdAt DESC, n.id DESC
+    """)
+    List<Notification> findFeedFirstPage(
+            @Param("recipientId") Long recipientId,
+            @Param("type") NotificationType type,
+            @Param("isRead") Boolean isRead,
+            Pageable pageable);
+
+    @Query("""
+        SELECT n FROM Notification n
+        WHERE n.recipient.id = :recipientId
+        AND (:type IS NULL OR n.type = :type)
+        AND (:isRead IS NULL OR n.isRead = :isRead)
+        AND (n.createdAt < :cursorCreatedAt OR (n.createdAt = :cursorCreatedAt AND n.id < :cursorId))
+        ORDER BY n.createdAt DESC, n.id DESC
+    """)
+    List<Notification> findFeedAfterCursor(
+            @Param("recipientId") Long recipientId,
+            @Param("type") NotificationType type,
+            @Param("isRead") Boolean isRead,
+            @Param("cursorCreatedAt") LocalDateTime cursorCreatedAt,
+            @Param("cursorId") Long cursorId,
+            Pageable pageable);
+
+    // Đánh dấu đã đọc toàn bộ bằng 1 câu UPDATE, trả về số dòng thay đổi
+    @Modifying
+    @Query("UPDATE Notification n SET n.isRead = true WHERE n.recipient.id = :recipientId AND n.isRead = false")
+    int markAllReadByRecipientId(@Param("recipientId") Long recipientId);
+
+    // Đối soát bộ đếm chưa đọc: [recipientId, count]
+    @Query("SELECT n.recipient.id, COUNT(n) FROM Notification n " +
+           "WHERE n.isRead = false AND n.recipient.id IN :recipientIds GROUP BY n.recipient.id")
+    List<Object[]> countUnreadByRecipientIds(@Param("recipientIds") List<Long> recipientIds);
+
+    // Notification có id > afterId của 1 user (replay SSE theo Last-Event-ID), cũ nhất trước
+    List<Notification> findByRecipientIdAndIdGreaterThanOrderByIdAsc(Long recipientId, Long afterId, Pageable pageable);
+
     @Query("SELECT CASE WHEN COUNT(n) > 0 THEN true ELSE false END FROM Notification n " +
            "WHERE n.type = :type AND n.refContractId = :contractId AND n.recipient.id = :recipientId AND n.createdAt > :since")
     boolean existsByTypeAndRefContractIdAndCreatedAtAfter(
@@ -104,4 +148,25 @@ public interface NotificationRepository extends JpaRepository<Notification, Long
             @Param("employeeId") Long employeeId,
             @Param("recipientId") Long recipientId,
             @Param("since") LocalDateTime since);
+
+    // Người nhận đã có thông báo cùng loại / hợp đồng / nhân viên kể từ :since (dedupe theo lô)
+    @Query("SELECT DISTINCT n.recipient.id FROM Notification n " +
+           "WHERE n.type = :type AND n.refContractId = :contractId AND n.refEmployeeId = :employeeId " +
+           "AND n.recipient.id IN :recipientIds AND n.createdAt > :since")
+    List<Long> findRecipientIdsNotifiedSince(
+            @Param("type") NotificationType type,
+            @Param("contractId") Long contractId,
+            @Param("employeeId") Long employeeId,
+            @Param("recipientIds") List<Long> recipientIds,
+            @Param("since") LocalDateTime since);
+
+    // Như trên nhưng chỉ theo loại + hợp đồng (không phân biệt nhân viên)
+    @Query("SELECT DISTINCT n.recipient.id FROM Notification n " +
+           "WHERE n.type = :type AND n.refContractId = :contractId " +
+           "AND n.recipient.id IN :recipientIds AND n.createdAt > :since")
+    List<Long> findRecipientIdsNotifiedForContractSince(
+            @Param("type") NotificationType type,
+            @Param("contractId") Long contractId,
+            @Param("recipientIds") List<Long> recipientIds,
+            @Param("since") LocalDateTime since);
 }
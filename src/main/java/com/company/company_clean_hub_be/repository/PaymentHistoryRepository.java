@@ -1,8 +1,10 @@
 package com.company.company_clean_hub_be.repository;
 
+import java.util.Collection;
 import java.util.List;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -17,4 +19,8 @@ public interface PaymentHistoryRepository extends JpaRepository<PaymentHistory,
 
     @Query("SELECT MAX(ph.installmentNumber) FROM PaymentHistory ph WHERE ph.payroll.id = :payrollId")
     Integer findMaxInstallmentNumberByPayrollId(@Param("payrollId") Long payrollId);
+
+    @Modifying
+    @Query("DELETE FROM PaymentHistory ph WHERE ph.payroll.id IN :payrollIds")
+    int deleteByPayrollIdIn(@Param("payrollIds") Collection<Long> payrollIds);
 }
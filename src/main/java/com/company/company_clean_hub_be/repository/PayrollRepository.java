@@ -1,11 +1,13 @@
 package com.company.company_clean_hub_be.repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
@@ -13,6 +15,26 @@ import com.company.company_clean_hub_be.entity.Payroll;
 
 public interface PayrollRepository extends JpaRepository<Payroll, Long> {
 
+        // Keyset theo id: các payroll chưa thanh toán xong (job dọn payroll mồ côi)
+        @Query("SELECT p FROM Payroll p " +
+                        "WHERE p.id > :lastId " +
+                        "AND (p.status IS NULL OR p.status <> com.company.company_clean_hub_be.entity.PayrollStatus.PAID) " +
+                        "ORDER BY p.id")
+        List<Payroll> findUnpaidPayrollsAfterId(
+                        @Param("lastId") Long lastId,
+                        Pageable pageable);
+
+        long countByStatus(com.company.company_clean_hub_be.entity.PayrollStatus status);
+
+        // Lọc lại các payroll vẫn chưa PAID ngay trước khi xóa (có thể vừa được thanh toán)
+        @Query("SELECT p.id FROM Payroll p WHERE p.id IN :ids " +
+                        "AND (p.status IS NULL OR p.status <> com.company.company_clean_hub_be.entity.PayrollStatus.PAID)")
+        List<Long> findUnpaidIdsByIdIn(@Param("ids") Collection<Long> ids);
+
+        @Modifying
+        @Query("DELETE FROM Payroll p WHERE p.id IN :ids")
+        int deleteByIdIn(@Param("ids") Collection<Long> ids);
+
         @Query("SELECT p FROM Payroll p " +
                         "WHERE p.employee.id = :employeeId " +
                         "AND MONTH(p.createdAt) = :month AND YEAR(p.createdAt) = :year")
@@ -62,12 +84,31 @@ public interface PayrollRepository extends JpaRepository<Payroll, Long> {
                         @Param("customerIds") List<Long> customerIds,
                         Pageable pageable);
 
-        @Query("SELECT COUNT(p), " +
-                        "SUM(CASE WHEN p.status = com.company.company_clean_hub_be.entity.PayrollStatus.PAID THEN 1 ELSE 0 END), " +
-                        "SUM(CASE WHEN p.status = com.company.company_clean_hub_be.entity.PayrollStatus.UNPAID THEN 1 ELSE 0 END), " +
-                        "SUM(CASE WHEN p.status = com.company.company_clean_hub_be.entity.PayrollStatus.PARTIAL_PAID THEN 1 ELSE 0 END), " +
-                        "COALESCE(SUM(p.finalSalary), 0), " +
-                        "COALESCE(SUM(COALESCE(p.paidAmount, 0)), 0) " +
+        // Như findByFiltersAndCustomerIds nhưng lọc bằng bảng phân công của manager (không truyền IN-list)
+        @Query("SELECT DISTINCT p FROM Payroll p " +
+                        "LEFT JOIN p.employee e " +
+                        "JOIN p.attendances a " +
+                        "JOIN a.assignment asn " +
+                        "JOIN asn.contract c " +
+                        "WHERE c.customer.id IN (SELECT ca.customer.id FROM CustomerAssignment ca WHERE ca.manager.id = :managerId) " +
+                        "AND (:keyword IS NULL OR :keyword = '' OR " +
+                        "LOWER(e.name) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
+                        "LOWER(e.employeeCode) LIKE LOWER(CONCAT('%', :keyword, '%'))) " +
+                        "AND (:month IS NULL OR MONTH(p.createdAt) = :month) " +
+                        "AND (:year IS NULL OR YEAR(p.createdAt) = :year) " +
+                        "AND (:isPaid IS NULL OR " +
+                        "(:isPaid = true AND p.status = com.company.company_clean_hub_be.entity.PayrollStatus.PAID) OR " +
+                        "(:isPaid = false AND p.status IN (com.company.company_clean_hub_be.entity.PayrollStatus.UNPAID, com.company.company_clean_hub_be.entity.PayrollStatus.PARTIAL_PAID)))")
+        Page<Payroll> findByFiltersForManager(
+                        @Param("keyword") String keyword,
+                        @Param("month") Integer month,
+                        @Param("year") Integer year,
+                        @Param("isPaid") Boolean isPaid,
+                        @Param("managerId") Long managerId,
+                        Pageable pageable);
+
+        // [status, count, sum(finalSalary), sum(paidAmount)] theo cùng filter với findByFilters (tổng quan bảng lương)
+        @Query("SELECT p.status, COUNT(p), SUM(p.finalSalary), SUM(p.paidAmount) " +
                         "FROM Payroll p " +
                         "LEFT JOIN p.employee e " +
                         "WHERE (:keyword IS NULL OR :keyword = '' OR " +
@@ -77,13 +118,72 @@ public interface PayrollRepository extends JpaRepository<Payroll, Long> {
                         "AND (:year IS NULL OR YEAR(p.createdAt) = :year) " +
                         "AND (:isPaid IS NULL OR " +
                         "(:isPaid = true AND p.status = com.company.company_clean_hub_be.entity.PayrollStatus.PAID) OR " +
-                        "(:isPaid = false AND p.status IN (com.company.company_clean_hub_be.entity.PayrollStatus.UNPAID, com.company.company_clean_hub_be.entity.PayrollStatus.PARTIAL_PAID)))")
-        Object[] getOverviewStats(
+                        "(:isPaid = false AND p.status IN (com.company.company_clean_hub_be.entity.PayrollStatus.UNPAID, com.company.company_clean_hub_be.entity.PayrollStatus.PARTIAL_PAID))) " +
+                        "GROUP BY p.status")
+        List<Object[]> getOverviewStatsByStatus(
                         @Param("keyword") String keyword,
                         @Param("month") Integer month,
                         @Param("year") Integer year,
                         @Param("isPaid") Boolean isPaid);
 
+        // Như getOverviewStatsByStatus nhưng chỉ payroll có chấm công ở khách hàng được phân công cho manager
+        @Query("SELECT p.status, COUNT(p), SUM(p.finalSalary), SUM(p.paidAmount) " +
+                        "FROM Payroll p " +
+                        "LEFT JOIN p.employee e " +
+                        "WHERE p.id IN (SELECT a.payroll.id FROM Attendance a " +
+                        "WHERE a.assignment.contract.customer.id IN (SELECT ca.customer.id FROM CustomerAssignment ca WHERE ca.manager.id = :managerId)) " +
+                        "AND (:keyword IS NULL OR :keyword = '' OR " +
+                        "LOWER(e.name) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
+                        "LOWER(e.employeeCode) LIKE LOWER(CONCAT('%', :keyword, '%'))) " +
+                        "AND (:month IS NULL OR MONTH(p.createdAt) = :month) " +
+                        "AND (:year IS NULL OR YEAR(p.createdAt) = :year) " +
+                        "AND (:isPaid IS NULL OR " +
+                        "(:isPaid = true AND p.status = com.company.company_clean_hub_be.entity.PayrollStatus.PAID) OR " +
+                        "(:isPaid = false AND p.status IN (com.company.company_clean_hub_be.entity.PayrollStatus.UNPAID, com.company.company_clean_hub_be.entity.PayrollStatus.PARTIAL_PAID))) " +
+                        "GROUP BY p.status")
+        List<Object[]> getOverviewStatsByStatusForManager(
+                        @Param("keyword") String keyword,
+                        @Param("month") Integer month,
+                        @Param("year") Integer year,
+                        @Param("isPaid") Boolean isPaid,
+                        @Param("managerId") Long managerId);
+
+        // [payrollId, assignmentId, số chấm công chưa xóa, SUM(bonus) chưa xóa, SUM(penalty) kể cả đã xóa]
+        // của chấm công ở khách hàng được phân công cho manager, cùng filter với getOverviewStatsByStatusForManager
+        @Query("SELECT p.id, asn.id, " +
+                        "SUM(CASE WHEN a.deleted = true THEN 0 ELSE 1 END), " +
+                        "SUM(CASE WHEN a.deleted = true THEN 0 ELSE COALESCE(a.bonus, 0) END), " +
+                        "SUM(COALESCE(a.penalty, 0)) " +
+                        "FROM Attendance a " +
+                        "JOIN a.payroll p " +
+                        "JOIN a.assignment asn " +
+                        "LEFT JOIN p.employee e " +
+                        "WHERE asn.contract.customer.id IN (SELECT ca.customer.id FROM CustomerAssignment ca WHERE ca.manager.id = :managerId) " +
+                        "AND (:keyword IS NULL OR :keyword = '' OR " +
+                        "LOWER(e.name) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
+                        "LOWER(e.employeeCode) LIKE LOWER(CONCAT('%', :keyword, '%'))) " +
+                        "AND (:month IS NULL OR MONTH(p.createdAt) = :month) " +
+                        "AND (:year IS NULL OR YEAR(p.createdAt) = :year) " +
+                        "AND (:isPaid IS NULL OR " +
+                        "(:isPaid = true AND p.status = com.company.company_clean_hub_be.entity.PayrollStatus.PAID) OR " +
+                        "(:isPaid = false AND p.status IN (com.company.company_clean_hub_be.entity.PayrollStatus.UNPAID, com.company.company_clean_hub_be.entity.PayrollStatus.PARTIAL_PAID))) " +
+                        "GROUP BY p.id, asn.id")
+        List<Object[]> sumScopedAttendanceByPayrollAndAssignmentForManager(
+                        @Param("keyword") String keyword,
+                        @Param("month") Integer month,
+                        @Param("year") Integer year,
+                        @Param("isPaid") Boolean isPaid,
+                        @Param("managerId") Long managerId);
+
+        // [employeeId, payrollId, insuranceTotal] của payroll trong tháng của các nhân viên
+        @Query("SELECT p.employee.id, p.id, p.insuranceTotal FROM Payroll p " +
+                        "WHERE p.employee.id IN :employeeIds " +
+                        "AND MONTH(p.createdAt) = :month AND YEAR(p.createdAt) = :year")
+        List<Object[]> findPayrollKeysByMonthAndYearAndEmployeeIds(
+                        @Param("month") Integer month,
+                        @Param("year") Integer year,
+                        @Param("employeeIds") List<Long> employeeIds);
+
         @Query("SELECT DISTINCT YEAR(p.createdAt) FROM Payroll p ORDER BY YEAR(p.createdAt) DESC")
         List<Integer> getDistinctYears();
 }
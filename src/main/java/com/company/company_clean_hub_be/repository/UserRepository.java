@@ -47,9 +47,35 @@ public interface UserRepository extends JpaRepository<User, Long> {
                         @Param("userIds") List<Long> userIds,
                         Pageable pageable);
 
+        // User manager được xem: khách hàng được phân công + nhân viên làm việc cho các khách hàng đó
+        @Query("SELECT u FROM User u WHERE " +
+                        "u.id IN (SELECT ca.customer.id FROM CustomerAssignment ca WHERE ca.manager.id = :managerId) OR " +
+                        "u.id IN (SELECT a.employee.id FROM Assignment a, CustomerAssignment ca2 " +
+                        "WHERE ca2.customer.id = a.contract.customer.id AND ca2.manager.id = :managerId)")
+        List<User> findVisibleToManager(@Param("managerId") Long managerId);
+
+        @Query("SELECT u FROM User u LEFT JOIN u.role r WHERE (" +
+                        "u.id IN (SELECT ca.customer.id FROM CustomerAssignment ca WHERE ca.manager.id = :managerId) OR " +
+                        "u.id IN (SELECT a.employee.id FROM Assignment a, CustomerAssignment ca2 " +
+                        "WHERE ca2.customer.id = a.contract.customer.id AND ca2.manager.id = :managerId)) AND " +
+                        "(:keyword IS NULL OR :keyword = '' OR " +
+                        "LOWER(u.username) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
+                        "LOWER(u.email) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
+                        "LOWER(u.phone) LIKE LOWER(CONCAT('%', :keyword, '%'))) AND " +
+                        "(:roleId IS NULL OR u.role.id = :roleId)")
+        Page<User> findByFiltersForManager(
+                        @Param("keyword") String keyword,
+                        @Param("roleId") Long roleId,
+                        @Param("managerId") Long managerId,
+                        Pageable pageable);
+
         @Query("SELECT u FROM User u WHERE u.role.code = :roleCode")
         List<User> findActiveUsersByRoleCode(@Param("roleCode") String roleCode);
 
         @Query("SELECT u FROM User u WHERE u.role.code IN :roleCodes")
         List<User> findByRoleCodeIn(@Param("roleCodes") List<String> roleCodes);
+
+        // Chỉ lấy id (dùng cho cache người nhận thông báo)
+        @Query("SELECT u.id FROM User u WHERE u.role.code = :roleCode")
+        List<Long> findIdsByRoleCode(@Param("roleCode") String roleCode);
 }
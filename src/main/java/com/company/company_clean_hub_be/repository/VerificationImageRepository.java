@@ -4,9 +4,12 @@ import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.company.company_clean_hub_be.entity.VerificationImage;
 
@@ -52,9 +55,21 @@ public interface VerificationImageRepository extends JpaRepository<VerificationI
            "ORDER BY vi.capturedAt DESC")
     List<LocalDateTime> findCaptureDatesByAssignmentId(@Param("assignmentId") Long assignmentId);
 
-    // Tìm ảnh cũ hơn 90 ngày và còn cloudinary_public_id
-    @Query("SELECT vi FROM VerificationImage vi " +
+    // Trang (id, cloudinaryPublicId) của ảnh chụp trước cutoffDate và còn cloudinary_public_id, keyset theo id
+    @Query("SELECT vi.id, vi.cloudinaryPublicId FROM VerificationImage vi " +
            "WHERE vi.cloudinaryPublicId IS NOT NULL " +
-           "AND vi.capturedAt < :cutoffDate")
-    List<VerificationImage> findImagesOlderThanWithPublicId(@Param("cutoffDate") LocalDateTime cutoffDate);
+           "AND vi.capturedAt < :cutoffDate " +
+           "AND vi.id > :lastId " +
+           "ORDER BY vi.id ASC")
+    List<Object[]> findCleanupCandidatesAfterId(
+        @Param("cutoffDate") LocalDateTime cutoffDate,
+        @Param("lastId") Long lastId,
+        Pageable pageable);
+
+    // Xoá dữ liệu Cloudinary của cả trang bằng 1 câu UPDATE, giữ GPS + thời gian
+    @Transactional
+    @Modifying
+    @Query("UPDATE VerificationImage vi SET vi.cloudinaryPublicId = NULL, vi.cloudinaryUrl = NULL " +
+           "WHERE vi.id IN :ids")
+    int clearCloudinaryData(@Param("ids") List<Long> ids);
 }
\ No newline at end of file
@@ -3,6 +3,8 @@ package com.company.company_clean_hub_be.repository;
 import java.util.List;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import com.company.company_clean_hub_be.entity.WorkLocation;
@@ -11,4 +13,14 @@ import com.company.company_clean_hub_be.entity.WorkLocation;
 public interface WorkLocationRepository extends JpaRepository<WorkLocation, Long> {
     List<WorkLocation> findByContractId(Long contractId);
     List<WorkLocation> findByContractIdAndIsActiveTrue(Long contractId);
+
+    // rows of (id, latitude, longitude, radiusMeters) cho index geofence, không nạp entity
+    @Query("SELECT w.id, w.latitude, w.longitude, w.radiusMeters FROM WorkLocation w " +
+           "WHERE w.contract.id = :contractId AND w.isActive = true")
+    List<Object[]> findActiveFenceRowsByContractId(@Param("contractId") Long contractId);
+
+    // rows of (contractId, latitude, longitude) của các vị trí active, dùng tính khoảng cách khi tìm nhân viên rảnh
+    @Query("SELECT w.contract.id, w.latitude, w.longitude FROM WorkLocation w " +
+           "WHERE w.contract.id IN :contractIds AND w.isActive = true")
+    List<Object[]> findActiveCoordinateRowsByContractIds(@Param("contractIds") java.util.Collection<Long> contractIds);
 }
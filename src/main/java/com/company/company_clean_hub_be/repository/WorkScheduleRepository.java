@@ -115,4 +115,66 @@ public interface WorkScheduleRepository extends JpaRepository<WorkSchedule, Long
 
     // Delete by assignment (for cleanup)
     void deleteByAssignmentId(Long assignmentId);
+
+    // workDays metrics: VERIFIED schedules whose attendance is still present, for one day of an assignment
+    @Query("SELECT COUNT(ws) FROM WorkSchedule ws WHERE ws.assignment.id = :assignmentId AND ws.scheduledDate = :date " +
+           "AND ws.status = 'VERIFIED' AND (ws.attendanceDeleted IS NULL OR ws.attendanceDeleted = false)")
+    long countVerifiedWithAttendanceByAssignmentIdAndDate(@Param("assignmentId") Long assignmentId, @Param("date") LocalDate date);
+
+    // Same count grouped per assignment: rows of (assignmentId, count)
+    @Query("SELECT ws.assignment.id, COUNT(ws) FROM WorkSchedule ws WHERE ws.assignment.id IN :assignmentIds " +
+           "AND ws.status = 'VERIFIED' AND (ws.attendanceDeleted IS NULL OR ws.attendanceDeleted = false) " +
+           "GROUP BY ws.assignment.id")
+    List<Object[]> countVerifiedWithAttendanceByAssignmentIds(@Param("assignmentIds") List<Long> assignmentIds);
+
+    // ─── Dashboard aggregates (dùng index (scheduled_date, status)) ───────────
+
+    // rows of (status, count) trong khoảng ngày
+    @Query("SELECT ws.status, COUNT(ws) FROM WorkSchedule ws " +
+           "WHERE ws.scheduledDate BETWEEN :startDate AND :endDate GROUP BY ws.status")
+    List<Object[]> countByStatusInDateRange(@Param("startDate") LocalDate startDate, @Param("endDate") LocalDate endDate);
+
+    // rows of (status, count) của một nhân viên trong khoảng ngày
+    @Query("SELECT ws.status, COUNT(ws) FROM WorkSchedule ws " +
+           "WHERE ws.employee.id = :employeeId AND ws.scheduledDate BETWEEN :startDate AND :endDate GROUP BY ws.status")
+    List<Object[]> countByStatusForEmployeeInDateRange(
+            @Param("employeeId") Long employeeId,
+            @Param("startDate") LocalDate startDate,
+            @Param("endDate") LocalDate endDate);
+
+    // rows of (employeeId, name, employeeCode, status, count); contractId null = tất cả hợp đồng
+    @Query("SELECT e.id, e.name, e.employeeCode, ws.status, COUNT(ws) FROM WorkSchedule ws " +
+           "JOIN ws.employee e LEFT JOIN ws.assignment a LEFT JOIN a.contract c " +
+           "WHERE ws.scheduledDate BETWEEN :startDate AND :endDate " +
+           "AND (:contractId IS NULL OR c.id = :contractId) " +
+           "GROUP BY e.id, e.name, e.employeeCode, ws.status")
+    List<Object[]> countByEmployeeAndStatusInDateRange(
+            @Param("startDate") LocalDate startDate,
+            @Param("endDate") LocalDate endDate,
+            @Param("contractId") Long contractId);
+
+    // rows of (contractId, status, count)
+    @Query("SELECT a.contract.id, ws.status, COUNT(ws) FROM WorkSchedule ws JOIN ws.assignment a " +
+           "WHERE ws.scheduledDate BETWEEN :startDate AND :endDate AND a.contract IS NOT NULL " +
+           "GROUP BY a.contract.id, ws.status")
+    List<Object[]> countByContractAndStatusInDateRange(
+            @Param("startDate") LocalDate startDate,
+            @Param("endDate") LocalDate endDate);
+
+    @Query("SELECT a.contract.id, ws.status, COUNT(ws) FROM WorkSchedule ws JOIN ws.assignment a " +
+           "WHERE ws.scheduledDate BETWEEN :startDate AND :endDate AND a.contract.customer.id IN :customerIds " +
+           "GROUP BY a.contract.id, ws.status")
+    List<Object[]> countByContractAndStatusInDateRangeForCustomers(
+            @Param("startDate") LocalDate startDate,
+            @Param("endDate") LocalDate endDate,
+            @Param("customerIds") List<Long> customerIds);
+
+    // rows of (contractId, số nhân viên khác nhau)
+    @Query("SELECT a.contract.id, COUNT(DISTINCT ws.employee.id) FROM WorkSchedule ws JOIN ws.assignment a " +
+           "WHERE ws.scheduledDate BETWEEN :startDate AND :endDate AND a.contract.id IN :contractIds " +
+           "GROUP BY a.contract.id")
+    List<Object[]> countDistinctEmployeesByContractInDateRange(
+            @Param("startDate") LocalDate startDate,
+            @Param("endDate") LocalDate endDate,
+            @Param("contractIds") java.util.Collection<Long> contractIds);
 }
@@ -0,0 +1,82 @@
+package com.company.company_clean_hub_be.schedule;
+
+import com.company.company_clean_hub_be.entity.AssignmentStatus;
+import com.company.company_clean_hub_be.repository.AssignmentRepository;
+import com.company.company_clean_hub_be.service.AssignmentMetricsService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Đối soát workDays của Assignment.
+ * workDays được cập nhật theo delta từng ngày khi chấm công / chụp ảnh; job này tính lại
+ * bằng truy vấn gom nhóm cho các assignment còn hoạt động (hoặc bắt đầu từ tháng trước)
+ * và sửa các bản ghi bị lệch (ghi đồng thời, luồng cập nhật hàng loạt...).
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class AssignmentMetricsReconciliationScheduler {
+
+    private final AssignmentRepository assignmentRepository;
+    private final AssignmentMetricsService assignmentMetricsService;
+
+    @Value("${scheduler.page-size:500}")
+    private int pageSize;
+
+    /**
+     * Chạy lúc 3h30 sáng hàng ngày, sau các job phân công / chấm công
+     * Cron: 0 30 3 * * * = giây phút giờ ngày tháng thứ
+     */
+    @Scheduled(cron = "0 30 3 * * *")
+    public void reconcileAssignmentMetrics() {
+        executeReconcileAssignmentMetrics();
+    }
+
+    public void executeReconcileAssignmentMetrics() {
+        log.info("[METRICS-RECONCILE] Bắt đầu đối soát workDays của assignment");
+        long startedAt = System.currentTimeMillis();
+
+        List<AssignmentStatus> statuses = List.of(AssignmentStatus.IN_PROGRESS, AssignmentStatus.SCHEDULED);
+        LocalDate fromDate = LocalDate.now().withDayOfMonth(1).minusMonths(1);
+        long lastId = 0L;
+        int checked = 0;
+        int repaired = 0;
+        int pages = 0;
+
+        try {
+            List<Object[]> page;
+            do {
+                page = assignmentRepository.findMetricsReconciliationCandidatesAfterId(
+                        statuses, fromDate, lastId, PageRequest.of(0, pageSize));
+                if (page.isEmpty()) {
+                    break;
+                }
+                pages++;
+
+                Map<Long, Integer> storedWorkDays = new LinkedHashMap<>();
+                for (Object[] row : page) {
+                    storedWorkDays.put((Long) row[0], (Integer) row[1]);
+                }
+                lastId = (Long) page.get(page.size() - 1)[0];
+                checked += storedWorkDays.size();
+
+                // Mỗi trang một transaction (gọi qua proxy của AssignmentMetricsService)
+                repaired += assignmentMetricsService.reconcileWorkDays(storedWorkDays);
+            } while (page.size() == pageSize);
+
+            log.info("[METRICS-RECONCILE] Hoàn tất: {} trang, kiểm tra {} assignment, sửa {} assignment, {}ms",
+                    pages, checked, repaired, System.currentTimeMillis() - startedAt);
+        } catch (Exception e) {
+            log.error("[METRICS-RECONCILE] Lỗi khi đối soát workDays: {}", e.getMessage(), e);
+        }
+    }
+}
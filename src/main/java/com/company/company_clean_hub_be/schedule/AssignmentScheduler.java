@@ -3,31 +3,28 @@ package com.company.company_clean_hub_be.schedule;
 import com.company.company_clean_hub_be.entity.Assignment;
 import com.company.company_clean_hub_be.entity.AssignmentStatus;
 import com.company.company_clean_hub_be.entity.AssignmentType;
-import com.company.company_clean_hub_be.entity.Attendance;
-import com.company.company_clean_hub_be.entity.Contract;
-import com.company.company_clean_hub_be.entity.AssignmentScope;
 import com.company.company_clean_hub_be.entity.ContractType;
-import com.company.company_clean_hub_be.entity.WorkScheduleReason;
 import com.company.company_clean_hub_be.repository.AssignmentRepository;
-import com.company.company_clean_hub_be.repository.AssignmentVerificationRepository;
 import com.company.company_clean_hub_be.repository.AttendanceRepository;
-import com.company.company_clean_hub_be.service.WorkScheduleService;
+import com.company.company_clean_hub_be.service.MonthlyAttendanceGenerationService;
+import jakarta.persistence.EntityManager;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.context.event.EventListener;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
 
-import java.math.BigDecimal;
-import java.time.DayOfWeek;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.YearMonth;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
 
 @Component
 @RequiredArgsConstructor
@@ -36,8 +33,11 @@ public class AssignmentScheduler {
 
     private final AssignmentRepository assignmentRepository;
     private final AttendanceRepository attendanceRepository;
-    private final WorkScheduleService workScheduleService;
-    private final AssignmentVerificationRepository verificationRepository;
+    private final MonthlyAttendanceGenerationService monthlyAttendanceGenerationService;
+    private final EntityManager entityManager;
+
+    @Value("${scheduler.page-size:500}")
+    private int pageSize;
 
     /**
      * Chạy lúc 1h sáng hàng ngày để cập nhật trạng thái các phân công tạm thời đã
@@ -77,38 +77,46 @@ public class AssignmentScheduler {
         }
     }
 
+    @Transactional
     public void executeUpdateAutoCompleteExpiredAssignments() {
         LocalDate today = LocalDate.now();
+        long startedAt = System.currentTimeMillis();
         log.info("[LỊCH TRÌNH] Kiểm tra các phân công đã hết hạn tính đến ngày {}", today);
 
-        List<Assignment> expiredAssignments = assignmentRepository.findAll().stream()
-                .filter(a -> a.getStatus() == AssignmentStatus.IN_PROGRESS
-                        || a.getStatus() == AssignmentStatus.SCHEDULED)
-                .filter(a -> {
-                    // Trường hợp 1: Phân công có endDate riêng và endDate < today
-                    if (a.getEndDate() != null && a.getEndDate().isBefore(today)) {
-                        return true;
-                    }
-                    // Trường hợp 2: Hợp đồng có endDate và contract.endDate < today
-                    if (a.getContract() != null && a.getContract().getEndDate() != null
-                            && a.getContract().getEndDate().isBefore(today)) {
-                        return true;
-                    }
-                    return false;
-                })
-                .toList();
-
-        if (!expiredAssignments.isEmpty()) {
-            for (Assignment a : expiredAssignments) {
+        // Lọc trạng thái và ngày hết hạn (assignment.endDate hoặc contract.endDate < today)
+        // ngay trong SQL, duyệt theo trang keyset để không nạp toàn bộ bảng assignments
+        List<AssignmentStatus> statuses = List.of(AssignmentStatus.IN_PROGRESS, AssignmentStatus.SCHEDULED);
+        long lastId = 0L;
+        int totalUpdated = 0;
+        int pages = 0;
+        List<Assignment> page;
+        do {
+            page = assignmentRepository.findExpiredAssignmentsAfterId(
+                    statuses, today, lastId, PageRequest.of(0, pageSize));
+            if (page.isEmpty()) {
+                break;
+            }
+            pages++;
+            for (Assignment a : page) {
                 a.setStatus(AssignmentStatus.COMPLETED);
             }
-            assignmentRepository.saveAll(expiredAssignments);
+            assignmentRepository.saveAll(page);
+            totalUpdated += page.size();
+            lastId = page.get(page.size() - 1).getId();
+
+            // Giải phóng persistence context giữa các trang
+            entityManager.flush();
+            entityManager.clear();
+        } while (page.size() == pageSize);
+
+        if (totalUpdated > 0) {
             log.info("[LỊCH TRÌNH] Đã cập nhật thành công {} phân công hết hạn sang trạng thái HOÀN THÀNH (COMPLETED)",
-                    expiredAssignments.size());
+                    totalUpdated);
         } else {
             log.info("[LỊCH TRÌNH] Không có phân công hết hạn nào cần cập nhật");
         }
-        log.info("[LỊCH TRÌNH] 2257");
+        log.info("[LỊCH TRÌNH] Quét phân công hết hạn: {} trang, {} bản ghi, {}ms",
+                pages, totalUpdated, System.currentTimeMillis() - startedAt);
     }
 
     /**
@@ -260,363 +268,90 @@ public class AssignmentScheduler {
      * sáng)
      */
     @Scheduled(cron = "0 0 1 1 * *")
-    @Transactional
     public void generateMonthlyAttendances() {
         executeGenerateMonthlyAttendances();
     }
 
     /**
-     * Method public để có thể gọi test từ controller
+     * Method public để có thể gọi test từ controller.
+     * Không chạy trong một transaction chung: mỗi hợp đồng (hoặc assignment COMPANY)
+     * được MonthlyAttendanceGenerationService commit riêng, hợp đồng lỗi không làm
+     * rollback các hợp đồng khác và chạy lại sẽ tiếp tục từ những hợp đồng chưa sinh.
      */
-    @Transactional
     public void executeGenerateMonthlyAttendances() {
         log.info("=== BẮT ĐẦU SINH ASSIGNMENT VÀ CHẤM CÔNG THÁNG MỚI ===");
         log.info("Thời gian chạy: {}", LocalDateTime.now());
 
         LocalDate today = LocalDate.now();
         YearMonth currentMonth = YearMonth.from(today);
-        int year = currentMonth.getYear();
-        int month = currentMonth.getMonthValue();
+        YearMonth lastMonth = currentMonth.minusMonths(1);
+        long startedAt = System.currentTimeMillis();
 
         try {
-            // Tìm tất cả các phân công IN_PROGRESS hoặc COMPLETED của tháng trước
-            YearMonth lastMonth = currentMonth.minusMonths(1);
-            List<Assignment> lastMonthAssignments = assignmentRepository.findAll().stream()
-                    .filter(a -> a.getStatus() == AssignmentStatus.IN_PROGRESS
-                            || a.getStatus() == AssignmentStatus.COMPLETED)
-                    .filter(a -> {
-                        YearMonth assignmentMonth = YearMonth.from(a.getStartDate());
-                        return assignmentMonth.equals(lastMonth);
-                    })
-                    .toList();
-
-            log.info("Tìm thấy {} phân công của tháng {} cần tạo cho tháng mới",
-                    lastMonthAssignments.size(), lastMonth);
-
-            int totalCreatedAssignments = 0;
-            int totalGeneratedAttendances = 0;
-            int skippedCount = 0;
-
-            for (Assignment oldAssignment : lastMonthAssignments) {
-                Contract contract = oldAssignment.getContract();
-
-                boolean isCompany = oldAssignment.getScope() == AssignmentScope.COMPANY;
-
-                // If not COMPANY and contract is missing -> bad data, skip
-                if (!isCompany && contract == null) {
-                    log.warn("Bỏ qua Assignment ID {} vì contract = null và scope != COMPANY", oldAssignment.getId());
-                    skippedCount++;
-                    continue;
-                }
-
-                // Nếu assignment thuộc contract, chỉ xử lý hợp đồng MONTHLY
-                if (!isCompany) {
-                    if (contract.getContractType() != ContractType.MONTHLY_FIXED
-                            && contract.getContractType() != ContractType.MONTHLY_ACTUAL) {
-                        continue;
-                    }
-
-                    // Kiểm tra hợp đồng còn hiệu lực
-                    if (contract.getEndDate() != null && contract.getEndDate().isBefore(today)) {
-                        log.info("Hợp đồng ID {} đã hết hạn, bỏ qua", contract.getId());
-                        continue;
-                    }
-                }
-
-                // Kiểm tra xem tháng mới đã có Assignment chưa
-                if (isCompany) {
-                    List<Assignment> employeeMonthAssignments = assignmentRepository
-                            .findAssignmentsByEmployeeAndMonthAndYear(
-                                    oldAssignment.getEmployee().getId(), month, year);
-                    boolean alreadyExists = employeeMonthAssignments.stream()
-                            .anyMatch(a -> a.getScope() == AssignmentScope.COMPANY
-                                    && a.getStartDate() != null
-                                    && YearMonth.from(a.getStartDate()).getYear() == year
-                                    && YearMonth.from(a.getStartDate()).getMonthValue() == month);
-                    if (alreadyExists) {
-                        log.info("Tháng {}/{} đã có Assignment COMPANY cho Employee {}, bỏ qua",
-                                month, year, oldAssignment.getEmployee().getName());
-                        skippedCount++;
-                        continue;
-                    }
-                } else {
-                    Optional<Assignment> existingAssignment = assignmentRepository
-                            .findByEmployeeAndContractAndMonth(
-                                    oldAssignment.getEmployee().getId(),
-                                    contract.getId(),
-                                    year,
-                                    month);
-                    if (existingAssignment.isPresent()) {
-                        log.info("Tháng {}/{} đã có Assignment ID {} cho Employee {} - Contract {}, bỏ qua",
-                                month, year, existingAssignment.get().getId(),
-                                oldAssignment.getEmployee().getName(), contract.getId());
-                        skippedCount++;
-                        continue;
-                    }
-                }
-
-                // Skip automatic generation for SUPPORT and TEMPORARY assignments
-                if (oldAssignment.getAssignmentType() == AssignmentType.SUPPORT
-                        || oldAssignment.getAssignmentType() == AssignmentType.TEMPORARY) {
-                    log.info("Bỏ qua tự động sinh cho Assignment {} ID={} (sinh thủ công theo dates)",
-                            oldAssignment.getAssignmentType(), oldAssignment.getId());
-                    skippedCount++;
-                    continue;
-                }
-
-                // Tạo Assignment mới cho tháng mới (copy thông tin từ tháng trước)
-                LocalDate firstDayOfMonth = currentMonth.atDay(1);
-                Assignment newAssignment = Assignment.builder()
-                        .employee(oldAssignment.getEmployee())
-                        .contract(contract)
-                        .scope(oldAssignment.getScope())
-                        .startDate(firstDayOfMonth)
-                        .status(AssignmentStatus.IN_PROGRESS)
-                        .assignmentType(oldAssignment.getAssignmentType()) // Giữ nguyên type
-                        .salaryAtTime(oldAssignment.getSalaryAtTime())
-                        .workDays(0) // Reset về 0
-                        .plannedDays(oldAssignment.getPlannedDays())
-                        .workingDaysPerWeek(oldAssignment.getWorkingDaysPerWeek() != null
-                                ? new ArrayList<>(oldAssignment.getWorkingDaysPerWeek())
-                                : null)
-                        .additionalAllowance(oldAssignment.getAdditionalAllowance())
-                        .monthlySupport(oldAssignment.getMonthlySupport())
-                        .advanceNote(null) // Reset: advanceNote là dữ liệu theo tháng, không copy sang tháng mới
-                        .description(oldAssignment.getDescription())
-                        .createdAt(LocalDateTime.now())
-                        .updatedAt(LocalDateTime.now())
-                        .build();
-
-                Assignment savedAssignment = assignmentRepository.save(newAssignment);
-                totalCreatedAssignments++;
-
-                log.info("✓ Đã tạo Assignment mới ID {} cho tháng {}/{} (Employee: {}, Type: {})",
-                        savedAssignment.getId(), month, year,
-                        savedAssignment.getEmployee().getName(),
-                        savedAssignment.getAssignmentType());
-
-                // === FIX: Skip Attendance generation for contracts requiring image
-                // verification ===
-                // Thay vào đó tạo WorkSchedule để nhân viên phải chụp ảnh mới có ngày công
-                boolean requiresImageVerification = !isCompany
-                        && contract != null
-                        && Boolean.TRUE.equals(contract.getRequiresImageVerification());
-
-                if (requiresImageVerification) {
-                    log.info(
-                            "Contract ID {} yêu cầu chụp ảnh xác thực, bỏ qua sinh Attendance tự động cho Assignment ID {}. "
-                                    +
-                                    "Tạo WorkSchedule thay thế.",
-                            contract.getId(), savedAssignment.getId());
-
-                    // Tính endDate cho assignment mới
-                    LocalDate endOfMonth = currentMonth.atEndOfMonth();
-                    LocalDate endDate = endOfMonth;
-                    if (contract.getEndDate() != null && contract.getEndDate().isBefore(endDate)) {
-                        endDate = contract.getEndDate();
-                    }
-
-                    // Xác định reason và verificationId
-                    Long verificationId = null;
-                    WorkScheduleReason wsReason;
-                    Long employeeAssignmentCount = assignmentRepository.countAssignmentsByEmployeeExcluding(
-                            savedAssignment.getEmployee().getId(), savedAssignment.getId());
-                    if (employeeAssignmentCount == 0) {
-                        // Nhân viên mới
-                        wsReason = WorkScheduleReason.NEW_EMPLOYEE_VERIFICATION;
-                        verificationId = verificationRepository
-                                .findByAssignmentId(oldAssignment.getId())
-                                .map(v -> v.getId())
-                                .orElse(null);
-                    } else {
-                        wsReason = WorkScheduleReason.CONTRACT_REQUIREMENT;
-                    }
-
-                    // Tạo WorkSchedule cho assignment mới
-                    workScheduleService.createWorkSchedulesForAssignment(
-                            savedAssignment, wsReason, verificationId,
-                            firstDayOfMonth, endDate);
-
-                    // Tính plannedDays
-                    List<?> workingDays = contract.getWorkingDaysPerWeek();
-                    if (workingDays != null && !workingDays.isEmpty()) {
-                        int plannedDaysForMonth = 0;
-                        LocalDate tempDate = firstDayOfMonth;
-                        while (!tempDate.isAfter(endDate)) {
-                            String dayName = tempDate.getDayOfWeek().name();
-                            for (Object day : workingDays) {
-                                if (day.toString().equals(dayName)) {
-                                    plannedDaysForMonth++;
-                                    break;
-                                }
-                            }
-                            tempDate = tempDate.plusDays(1);
-                        }
-                        savedAssignment.setPlannedDays(plannedDaysForMonth);
-                    }
-
-                    savedAssignment.setWorkDays(0);
-                    savedAssignment.setUpdatedAt(LocalDateTime.now());
-                    assignmentRepository.save(savedAssignment);
-
-                    log.info(
-                            "✓ Đã tạo WorkSchedule và cập nhật workDays=0, plannedDays={} cho Assignment ID {} (requiresImageVerification=true)",
-                            savedAssignment.getPlannedDays(), savedAssignment.getId());
-                    continue; // Skip phần sinh Attendance bên dưới
-                }
-                // === END FIX ===
-
-                // Xác định ngày kết thúc: min của (cuối tháng, ngày hết hạn hợp đồng/assignment
-                // nếu có)
-                LocalDate endOfMonth = currentMonth.atEndOfMonth();
-                LocalDate endDate = endOfMonth;
-                if (isCompany) {
-                    if (oldAssignment.getEndDate() != null && oldAssignment.getEndDate().isBefore(endDate)) {
-                        endDate = oldAssignment.getEndDate();
-                        log.info("Assignment ID {} (COMPANY) sẽ kết thúc ngày {}, chỉ sinh chấm công tới ngày đó",
-                                oldAssignment.getId(), endDate);
-                    }
+            // Các phân công IN_PROGRESS/COMPLETED của tháng trước (COMPANY hoặc hợp đồng MONTHLY
+            // còn hiệu lực), chỉ lấy cặp id rồi nhóm theo hợp đồng
+            List<Object[]> keys = assignmentRepository.findMonthlyRenewableAssignmentKeys(
+                    List.of(AssignmentStatus.IN_PROGRESS, AssignmentStatus.COMPLETED),
+                    lastMonth.atDay(1), lastMonth.atEndOfMonth(),
+                    List.of(ContractType.MONTHLY_FIXED, ContractType.MONTHLY_ACTUAL),
+                    today);
+
+            List<Long> companyAssignmentIds = new ArrayList<>();
+            Map<Long, List<Long>> assignmentIdsByContract = new LinkedHashMap<>();
+            for (Object[] row : keys) {
+                Long assignmentId = (Long) row[0];
+                Long contractId = (Long) row[1];
+                if (contractId == null) {
+                    companyAssignmentIds.add(assignmentId);
                 } else {
-                    if (contract.getEndDate() != null && contract.getEndDate().isBefore(endDate)) {
-                        endDate = contract.getEndDate();
-                        log.info("Hợp đồng ID {} sẽ hết hạn ngày {}, chỉ sinh chấm công tới ngày đó",
-                                contract.getId(), endDate);
-                    }
-                }
-
-                // Lấy thông tin từ Assignment mới để sinh chấm công
-                BigDecimal workHours = BigDecimal.valueOf(8);
-                BigDecimal bonus = BigDecimal.ZERO;
-                BigDecimal penalty = BigDecimal.ZERO;
-                BigDecimal supportCost = BigDecimal.ZERO;
-
-                // Sinh chấm công cho từng ngày
-                int generatedDays = 0;
-                // Lấy workingDays dưới dạng raw list để tránh ClassCastException
-                List<?> workingDays = null;
-                if (isCompany) {
-                    workingDays = oldAssignment.getWorkingDaysPerWeek();
-                } else {
-                    workingDays = contract.getWorkingDaysPerWeek();
-                }
-
-                // Debug log
-                if (isCompany) {
-                    log.info("[DEBUG] Assignment ID {} (COMPANY): workingDays = {}, startDate = {}, endDate = {}",
-                            savedAssignment.getId(),
-                            workingDays != null ? workingDays : "NULL",
-                            firstDayOfMonth, endDate);
-                }
-
-                LocalDate currentDate = firstDayOfMonth;
-                int skippedExisting = 0;
-                int skippedNotWorkingDay = 0;
-                int loopCount = 0;
-
-                while (!currentDate.isAfter(endDate)) {
-                    loopCount++;
-                    DayOfWeek currentDayOfWeek = currentDate.getDayOfWeek();
-
-                    // Kiểm tra có phải ngày làm việc không - so sánh bằng String vì có thể khác
-                    // enum class
-                    if (workingDays != null && !workingDays.isEmpty()) {
-                        boolean isWorkingDay = false;
-                        String currentDayName = currentDayOfWeek.name();
-
-                        for (Object day : workingDays) {
-                            if (day.toString().equals(currentDayName)) {
-                                isWorkingDay = true;
-                                break;
-                            }
-                        }
-
-                        if (!isWorkingDay) {
-                            skippedNotWorkingDay++;
-                            currentDate = currentDate.plusDays(1);
-                            continue;
-                        }
-                    }
-
-                    // Kiểm tra xem attendance đã tồn tại chưa
-                    Optional<Attendance> existing = attendanceRepository
-                            .findByAssignmentAndEmployeeAndDate(savedAssignment.getId(),
-                                    savedAssignment.getEmployee().getId(), currentDate);
-
-                    if (existing.isEmpty()) {
-                        Attendance attendance = Attendance.builder()
-                                .employee(savedAssignment.getEmployee())
-                                .assignment(savedAssignment) // Dùng assignment mới
-                                .date(currentDate)
-                                .workHours(workHours)
-                                .bonus(bonus)
-                                .penalty(penalty)
-                                .supportCost(supportCost)
-                                .isOvertime(false)
-                                .deleted(false)
-                                .description("Tự động sinh cho tháng " + currentMonth)
-                                .createdAt(LocalDateTime.now())
-                                .updatedAt(LocalDateTime.now())
-                                .build();
-
-                        attendanceRepository.save(attendance);
-                        generatedDays++;
-                    } else {
-                        skippedExisting++;
-                    }
-
-                    currentDate = currentDate.plusDays(1);
+                    assignmentIdsByContract.computeIfAbsent(contractId, k -> new ArrayList<>()).add(assignmentId);
                 }
+            }
 
-                if (isCompany) {
-                    log.info(
-                            "[DEBUG] Assignment ID {} (COMPANY): generatedDays={}, skippedExisting={}, skippedNotWorkingDay={}",
-                            savedAssignment.getId(), generatedDays, skippedExisting, skippedNotWorkingDay);
-                }
+            log.info("Tìm thấy {} phân công của tháng {} cần tạo cho tháng mới ({} hợp đồng, {} COMPANY)",
+                    keys.size(), lastMonth, assignmentIdsByContract.size(), companyAssignmentIds.size());
 
-                if (generatedDays > 0) {
-                    log.info("  → Sinh {} ngày chấm công cho Assignment mới ID {}",
-                            generatedDays, savedAssignment.getId());
-                    totalGeneratedAttendances += generatedDays;
+            int totalCreatedAssignments = 0;
+            int totalGeneratedAttendances = 0;
+            int totalGeneratedWorkSchedules = 0;
+            int skippedCount = 0;
+            int failedUnits = 0;
+
+            // Assignment COMPANY không có hợp đồng: mỗi assignment là một đơn vị commit
+            for (Long assignmentId : companyAssignmentIds) {
+                try {
+                    MonthlyAttendanceGenerationService.GenerationResult result = monthlyAttendanceGenerationService
+                            .generateForContract(null, List.of(assignmentId), currentMonth);
+                    totalCreatedAssignments += result.createdAssignments();
+                    totalGeneratedAttendances += result.generatedAttendances();
+                    totalGeneratedWorkSchedules += result.generatedWorkSchedules();
+                    skippedCount += result.skippedAssignments();
+                } catch (Exception e) {
+                    failedUnits++;
+                    log.error("❌ LỖI khi sinh tháng mới cho Assignment COMPANY ID {}: {}", assignmentId,
+                            e.getMessage(), e);
                 }
+            }
 
-                // Cập nhật workDays = số attendance đã sinh
-                savedAssignment.setWorkDays(generatedDays);
-
-                // Tính lại plannedDays cho tháng mới dựa trên workingDays và số ngày trong
-                // tháng
-                if (workingDays != null && !workingDays.isEmpty()) {
-                    int plannedDaysForMonth = 0;
-                    LocalDate tempDate = firstDayOfMonth;
-                    while (!tempDate.isAfter(endDate)) {
-                        String dayName = tempDate.getDayOfWeek().name();
-                        boolean isPlanned = false;
-                        for (Object day : workingDays) {
-                            if (day.toString().equals(dayName)) {
-                                isPlanned = true;
-                                break;
-                            }
-                        }
-                        if (isPlanned) {
-                            plannedDaysForMonth++;
-                        }
-                        tempDate = tempDate.plusDays(1);
-                    }
-                    savedAssignment.setPlannedDays(plannedDaysForMonth);
-                } else {
-                    // Nếu không có workingDays thì plannedDays = workDays
-                    savedAssignment.setPlannedDays(generatedDays);
+            for (Map.Entry<Long, List<Long>> entry : assignmentIdsByContract.entrySet()) {
+                try {
+                    MonthlyAttendanceGenerationService.GenerationResult result = monthlyAttendanceGenerationService
+                            .generateForContract(entry.getKey(), entry.getValue(), currentMonth);
+                    totalCreatedAssignments += result.createdAssignments();
+                    totalGeneratedAttendances += result.generatedAttendances();
+                    totalGeneratedWorkSchedules += result.generatedWorkSchedules();
+                    skippedCount += result.skippedAssignments();
+                } catch (Exception e) {
+                    failedUnits++;
+                    log.error("❌ LỖI khi sinh tháng mới cho Hợp đồng ID {}: {}", entry.getKey(), e.getMessage(), e);
                 }
-
-                savedAssignment.setUpdatedAt(LocalDateTime.now());
-                assignmentRepository.save(savedAssignment);
-
-                log.info("✓ Đã cập nhật workDays={}, plannedDays={} cho Assignment ID {} (scope={}, type={})",
-                        generatedDays, savedAssignment.getPlannedDays(), savedAssignment.getId(),
-                        savedAssignment.getScope(), savedAssignment.getAssignmentType());
             }
 
-            log.info("✓ Tổng kết: Đã tạo {} Assignment mới, sinh {} ngày chấm công, bỏ qua {} assignment",
-                    totalCreatedAssignments, totalGeneratedAttendances, skippedCount);
+            log.info("✓ Tổng kết: Đã tạo {} Assignment mới, sinh {} ngày chấm công, {} WorkSchedule, bỏ qua {} assignment, {} đơn vị lỗi",
+                    totalCreatedAssignments, totalGeneratedAttendances, totalGeneratedWorkSchedules, skippedCount,
+                    failedUnits);
+            log.info("Sinh dữ liệu tháng {}: {} phân công nguồn, {}ms",
+                    currentMonth, keys.size(), System.currentTimeMillis() - startedAt);
 
         } catch (Exception e) {
             log.error("❌ LỖI khi sinh assignment và chấm công tháng mới: {}", e.getMessage(), e);
@@ -0,0 +1,106 @@
+package com.company.company_clean_hub_be.schedule;
+
+import com.company.company_clean_hub_be.service.AttendanceSummaryService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Đối soát và dựng lại bảng attendance_monthly_summary từ bảng attendance.
+ * Bảng tổng hợp được cập nhật khi chấm công thay đổi; job hàng đêm so bảng tổng hợp với gom trực tiếp
+ * và chỉ dựng lại các khoảng bị lệch do ghi thẳng DB hoặc luồng cập nhật hàng loạt quên đánh dấu.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class AttendanceSummaryRebuildScheduler {
+
+    private final AttendanceSummaryService attendanceSummaryService;
+
+    @Value("${attendance.summary.batch-size:500}")
+    private int batchSize;
+
+    /**
+     * Bảng được Hibernate tạo (ddl-auto=update) nên không có dữ liệu ban đầu;
+     * khởi động lần đầu thì dựng lại toàn bộ từ bảng attendance.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildIfEmpty() {
+        try {
+            if (attendanceSummaryService.needsInitialBuild()) {
+                log.info("[ATTENDANCE-SUMMARY] Bảng tổng hợp trống, dựng lại lần đầu");
+                executeRebuildAttendanceSummary();
+            }
+        } catch (Exception e) {
+            log.error("[ATTENDANCE-SUMMARY] Lỗi khi kiểm tra bảng tổng hợp lúc khởi động: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Chạy lúc 3h sáng hàng ngày, trước job đối soát workDays
+     * Cron: 0 0 3 * * * = giây phút giờ ngày tháng thứ
+     */
+    @Scheduled(cron = "0 0 3 * * *")
+    public void reconcileAttendanceSummary() {
+        executeReconcileAttendanceSummary();
+    }
+
+    /**
+     * So từng khoảng assignment id với gom trực tiếp từ attendance, dựng lại khoảng bị lệch.
+     */
+    public void executeReconcileAttendanceSummary() {
+        log.info("[ATTENDANCE-SUMMARY] Bắt đầu đối soát bảng tổng hợp chấm công");
+        long startedAt = System.currentTimeMillis();
+
+        int ranges = 0;
+        int driftedRanges = 0;
+        int mismatches = 0;
+
+        try {
+            long maxId = attendanceSummaryService.findMaxAssignmentId();
+            for (long fromId = 0; fromId < maxId; fromId += batchSize) {
+                long toId = Math.min(fromId + batchSize, maxId);
+                int rangeMismatches = attendanceSummaryService.countMismatches(fromId, toId);
+                if (rangeMismatches > 0) {
+                    log.warn("[ATTENDANCE-SUMMARY] Lệch {} tháng trong khoảng assignment ({}, {}], dựng lại",
+                            rangeMismatches, fromId, toId);
+                    attendanceSummaryService.rebuildRange(fromId, toId);
+                    mismatches += rangeMismatches;
+                    driftedRanges++;
+                }
+                ranges++;
+            }
+
+            log.info("[ATTENDANCE-SUMMARY] Đối soát xong: {} khoảng, {} khoảng lệch, {} tháng lệch, {}ms",
+                    ranges, driftedRanges, mismatches, System.currentTimeMillis() - startedAt);
+        } catch (Exception e) {
+            log.error("[ATTENDANCE-SUMMARY] Lỗi khi đối soát bảng tổng hợp: {}", e.getMessage(), e);
+        }
+    }
+
+    public void executeRebuildAttendanceSummary() {
+        log.info("[ATTENDANCE-SUMMARY] Bắt đầu dựng lại bảng tổng hợp chấm công");
+        long startedAt = System.currentTimeMillis();
+
+        int ranges = 0;
+        int rows = 0;
+
+        try {
+            long maxId = attendanceSummaryService.findMaxAssignmentId();
+            for (long fromId = 0; fromId < maxId; fromId += batchSize) {
+                // Mỗi khoảng assignment id một transaction (gọi qua proxy của AttendanceSummaryService)
+                rows += attendanceSummaryService.rebuildRange(fromId, Math.min(fromId + batchSize, maxId));
+                ranges++;
+            }
+
+            log.info("[ATTENDANCE-SUMMARY] Hoàn tất: {} khoảng assignment, {} dòng tổng hợp, {}ms",
+                    ranges, rows, System.currentTimeMillis() - startedAt);
+        } catch (Exception e) {
+            log.error("[ATTENDANCE-SUMMARY] Lỗi khi dựng lại bảng tổng hợp: {}", e.getMessage(), e);
+        }
+    }
+}
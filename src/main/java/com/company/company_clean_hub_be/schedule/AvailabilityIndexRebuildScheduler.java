@@ -0,0 +1,32 @@
+package com.company.company_clean_hub_be.schedule;
+
+import com.company.company_clean_hub_be.service.helper.EmployeeAvailabilityIndex;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Dựng lại chỉ mục lịch bận của nhân viên từ DB, sửa các lệch mà listener không thấy
+ * (bulk update, đổi ngày làm việc của hợp đồng...).
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class AvailabilityIndexRebuildScheduler {
+
+    private final EmployeeAvailabilityIndex availabilityIndex;
+
+    /**
+     * Chạy lúc 3h45 sáng hàng ngày, sau các job kết thúc / kích hoạt assignment
+     * Cron: 0 45 3 * * * = giây phút giờ ngày tháng thứ
+     */
+    @Scheduled(cron = "0 45 3 * * *")
+    public void rebuildAvailabilityIndex() {
+        try {
+            availabilityIndex.rebuild();
+        } catch (Exception e) {
+            log.error("[AVAILABILITY-INDEX] Lỗi khi dựng lại chỉ mục: {}", e.getMessage(), e);
+        }
+    }
+}
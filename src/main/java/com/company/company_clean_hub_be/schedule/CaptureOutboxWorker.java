@@ -0,0 +1,93 @@
+package com.company.company_clean_hub_be.schedule;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import com.company.company_clean_hub_be.service.CaptureOutboxService;
+import com.company.company_clean_hub_be.service.WorkScheduleService;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Worker xử lý outbox sau khi chụp ảnh: upload ảnh lên Cloudinary rồi chạy auto-approve.
+ * Lỗi được thử lại với backoff, sự kiện vẫn nằm trong DB nên ứng dụng khởi động lại cũng không mất.
+ */
+@Component
+@Slf4j
+public class CaptureOutboxWorker {
+
+    private final CaptureOutboxService captureOutboxService;
+    private final WorkScheduleService workScheduleService;
+    private final ThreadPoolTaskExecutor captureOutboxExecutor;
+
+    // Sự kiện đã đưa vào pool nhưng chưa xử lý xong, tránh submit trùng giữa các lượt poll
+    private final Set<Long> inFlight = ConcurrentHashMap.newKeySet();
+
+    @Value("${capture.outbox.poll-batch-size:50}")
+    private int pollBatchSize;
+
+    public CaptureOutboxWorker(
+            CaptureOutboxService captureOutboxService,
+            WorkScheduleService workScheduleService,
+            @Qualifier("captureOutboxExecutor") ThreadPoolTaskExecutor captureOutboxExecutor) {
+        this.captureOutboxService = captureOutboxService;
+        this.workScheduleService = workScheduleService;
+        this.captureOutboxExecutor = captureOutboxExecutor;
+    }
+
+    @Scheduled(fixedDelay = 2000)
+    public void poll() {
+        List<Long> eventIds = captureOutboxService.findDueEventIds(pollBatchSize);
+        if (eventIds.isEmpty()) {
+            return;
+        }
+
+        int submitted = 0;
+        for (Long eventId : eventIds) {
+            if (!inFlight.add(eventId)) {
+                continue;
+            }
+            try {
+                captureOutboxExecutor.execute(() -> {
+                    try {
+                        process(eventId);
+                    } finally {
+                        inFlight.remove(eventId);
+                    }
+                });
+                submitted++;
+            } catch (TaskRejectedException e) {
+                // Pool đầy: các sự kiện còn lại được lấy ở lượt poll sau
+                inFlight.remove(eventId);
+                log.warn("[CAPTURE-OUTBOX] Executor queue full, deferring remaining events");
+                break;
+            }
+        }
+
+        if (submitted > 0) {
+            log.debug("[CAPTURE-OUTBOX] Submitted {} events", submitted);
+        }
+    }
+
+    private void process(Long eventId) {
+        if (!captureOutboxService.claim(eventId)) {
+            return;
+        }
+        try {
+            captureOutboxService.uploadPendingImage(eventId);
+            workScheduleService.completeCaptureFollowUp(eventId);
+            log.info("[CAPTURE-OUTBOX] Event {} processed", eventId);
+        } catch (Exception e) {
+            log.error("[CAPTURE-OUTBOX] Event {} failed: {}", eventId, e.getMessage(), e);
+            captureOutboxService.markFailed(eventId, e.getMessage());
+        }
+    }
+}
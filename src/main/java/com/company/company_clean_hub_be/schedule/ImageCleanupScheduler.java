@@ -1,69 +1,152 @@
 package com.company.company_clean_hub_be.schedule;
 
+import java.io.IOException;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Transactional;
 
-import com.company.company_clean_hub_be.entity.VerificationImage;
 import com.company.company_clean_hub_be.repository.VerificationImageRepository;
 import com.company.company_clean_hub_be.service.FileStorageService;
 
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
 /**
  * Scheduler tự động xoá ảnh xác minh trên Cloudinary sau 90 ngày.
  * Giữ lại record với GPS location + thời gian, chỉ xoá ảnh + clear URL.
  * Chạy mỗi ngày lúc 3:00 sáng.
+ * Duyệt ảnh theo trang (keyset theo id); mỗi trang chia lô gọi API xoá hàng loạt song song trên
+ * imageCleanupExecutor (thử lại với backoff), rồi clear dữ liệu Cloudinary bằng 1 câu UPDATE.
+ * Không giữ transaction / connection DB trong lúc gọi Cloudinary; ảnh xoá lỗi được thử lại ở lần chạy sau.
  */
 @Component
-@RequiredArgsConstructor
 @Slf4j
 public class ImageCleanupScheduler {
 
     private final VerificationImageRepository verificationImageRepository;
     private final FileStorageService fileStorageService;
+    private final ThreadPoolTaskExecutor cleanupExecutor;
+
+    @Value("${image.cleanup.retention-days:90}")
+    private int retentionDays;
+
+    @Value("${image.cleanup.page-size:500}")
+    private int pageSize;
+
+    @Value("${image.cleanup.delete-batch-size:100}")
+    private int deleteBatchSize;
+
+    @Value("${image.cleanup.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${image.cleanup.retry-base-millis:1000}")
+    private long retryBaseMillis;
+
+    public ImageCleanupScheduler(VerificationImageRepository verificationImageRepository,
+                                 FileStorageService fileStorageService,
+                                 @Qualifier("imageCleanupExecutor") ThreadPoolTaskExecutor cleanupExecutor) {
+        this.verificationImageRepository = verificationImageRepository;
+        this.fileStorageService = fileStorageService;
+        this.cleanupExecutor = cleanupExecutor;
+    }
 
     @Scheduled(cron = "0 0 3 * * *") // 3:00 AM daily
-    @Transactional
     public void cleanupOldImages() {
         log.info("[IMAGE-CLEANUP] Starting scheduled image cleanup...");
+        long startedAt = System.currentTimeMillis();
+
+        LocalDateTime cutoffDate = LocalDateTime.now().minusDays(retentionDays);
+        long lastId = 0L;
+        int total = 0;
+        int successCount = 0;
+        int pages = 0;
 
-        LocalDateTime cutoffDate = LocalDateTime.now().minusDays(90);
-        List<VerificationImage> oldImages = verificationImageRepository
-                .findImagesOlderThanWithPublicId(cutoffDate);
+        List<Object[]> page;
+        do {
+            page = verificationImageRepository.findCleanupCandidatesAfterId(
+                    cutoffDate, lastId, PageRequest.of(0, pageSize));
+            if (page.isEmpty()) {
+                break;
+            }
+            pages++;
+            total += page.size();
+            lastId = (Long) page.get(page.size() - 1)[0];
+
+            successCount += cleanupPage(page);
+        } while (page.size() == pageSize);
 
-        if (oldImages.isEmpty()) {
-            log.info("[IMAGE-CLEANUP] No images older than 90 days to clean up.");
+        if (total == 0) {
+            log.info("[IMAGE-CLEANUP] No images older than {} days to clean up.", retentionDays);
             return;
         }
+        log.info("[IMAGE-CLEANUP] Cleanup completed: {} success, {} failed out of {} images, {} pages, {}ms",
+                successCount, total - successCount, total, pages, System.currentTimeMillis() - startedAt);
+    }
 
-        log.info("[IMAGE-CLEANUP] Found {} images older than 90 days. Starting cleanup...", oldImages.size());
+    // rows: [id, cloudinaryPublicId]; trả về số ảnh đã clear
+    private int cleanupPage(List<Object[]> rows) {
+        List<String> publicIds = new ArrayList<>();
+        for (Object[] row : rows) {
+            String publicId = (String) row[1];
+            if (!publicId.isEmpty()) {
+                publicIds.add(publicId);
+            }
+        }
 
-        int successCount = 0;
-        int failCount = 0;
+        // Xoá trên Cloudinary theo lô, song song trong giới hạn số worker
+        List<CompletableFuture<Set<String>>> futures = new ArrayList<>();
+        int batchSize = Math.max(1, deleteBatchSize);
+        for (int i = 0; i < publicIds.size(); i += batchSize) {
+            List<String> batch = publicIds.subList(i, Math.min(publicIds.size(), i + batchSize));
+            futures.add(CompletableFuture.supplyAsync(() -> deleteWithRetry(batch), cleanupExecutor));
+        }
+        Set<String> removed = new HashSet<>();
+        futures.forEach(future -> removed.addAll(future.join()));
 
-        for (VerificationImage image : oldImages) {
+        // Chỉ clear ảnh đã không còn trên Cloudinary
+        List<Long> clearIds = new ArrayList<>();
+        for (Object[] row : rows) {
+            String publicId = (String) row[1];
+            if (publicId.isEmpty() || removed.contains(publicId)) {
+                clearIds.add((Long) row[0]);
+            }
+        }
+        if (clearIds.isEmpty()) {
+            return 0;
+        }
+        return verificationImageRepository.clearCloudinaryData(clearIds);
+    }
+
+    // Lô lỗi được thử lại tối đa maxAttempts lần (chờ retryBaseMillis, 2x, 4x...); hết lượt thì bỏ qua lô
+    private Set<String> deleteWithRetry(List<String> publicIds) {
+        for (int attempt = 1; ; attempt++) {
             try {
-                if (image.getCloudinaryPublicId() != null && !image.getCloudinaryPublicId().isEmpty()) {
-                    fileStorageService.deleteFile(image.getCloudinaryPublicId());
-                    log.debug("[IMAGE-CLEANUP] Deleted Cloudinary image: publicId={}", image.getCloudinaryPublicId());
+                return fileStorageService.deleteFiles(publicIds);
+            } catch (IOException e) {
+                if (attempt >= maxAttempts) {
+                    log.error("[IMAGE-CLEANUP] Failed to delete batch of {} images after {} attempts: {}",
+                            publicIds.size(), attempt, e.getMessage());
+                    return Set.of();
+                }
+                long delay = retryBaseMillis << (attempt - 1);
+                log.warn("[IMAGE-CLEANUP] Batch of {} images attempt {} failed, retry in {}ms: {}",
+                        publicIds.size(), attempt, delay, e.getMessage());
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return Set.of();
                 }
-                // Clear Cloudinary data, keep GPS + time
-                image.setCloudinaryPublicId(null);
-                image.setCloudinaryUrl(null);
-                verificationImageRepository.save(image);
-                successCount++;
-            } catch (Exception e) {
-                failCount++;
-                log.error("[IMAGE-CLEANUP] Failed to cleanup image id={}: {}", image.getId(), e.getMessage());
             }
         }
-
-        log.info("[IMAGE-CLEANUP] Cleanup completed: {} success, {} failed out of {} images",
-                successCount, failCount, oldImages.size());
     }
 }
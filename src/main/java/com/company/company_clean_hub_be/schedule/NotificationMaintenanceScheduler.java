@@ -0,0 +1,74 @@
+package com.company.company_clean_hub_be.schedule;
+
+import com.company.company_clean_hub_be.service.NotificationService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+
+/**
+ * Bảo trì bảng notifications:
+ * - Đối soát bộ đếm chưa đọc trong bộ nhớ với DB.
+ * - Chuyển notification đã đọc quá hạn sang notifications_archive theo lô.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class NotificationMaintenanceScheduler {
+
+    private final NotificationService notificationService;
+
+    @Value("${notification.archive.retention-days:90}")
+    private int retentionDays;
+
+    @Value("${notification.archive.batch-size:1000}")
+    private int batchSize;
+
+    /**
+     * Mỗi 10 phút
+     */
+    @Scheduled(cron = "0 */10 * * * *")
+    public void reconcileUnreadCounters() {
+        try {
+            int drifted = notificationService.reconcileUnreadCounters();
+            if (drifted > 0) {
+                log.info("[NOTIF-MAINTENANCE] Đối soát bộ đếm chưa đọc: sửa {} user", drifted);
+            }
+        } catch (Exception e) {
+            log.error("[NOTIF-MAINTENANCE] Lỗi khi đối soát bộ đếm chưa đọc: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Chạy lúc 4h sáng hàng ngày
+     * Cron: 0 0 4 * * * = giây phút giờ ngày tháng thứ
+     */
+    @Scheduled(cron = "0 0 4 * * *")
+    public void archiveReadNotifications() {
+        LocalDateTime cutoff = LocalDateTime.now().minusDays(retentionDays);
+        log.info("[NOTIF-MAINTENANCE] Bắt đầu lưu trữ notification đã đọc trước {}", cutoff);
+        long startedAt = System.currentTimeMillis();
+        int total = 0;
+        int batches = 0;
+
+        try {
+            int moved;
+            do {
+                // Mỗi lô một transaction (gọi qua proxy của NotificationService)
+                moved = notificationService.archiveReadNotifications(cutoff, batchSize);
+                total += moved;
+                if (moved > 0) {
+                    batches++;
+                }
+            } while (moved == batchSize);
+
+            log.info("[NOTIF-MAINTENANCE] Hoàn tất: {} lô, chuyển {} notification, {}ms",
+                    batches, total, System.currentTimeMillis() - startedAt);
+        } catch (Exception e) {
+            log.error("[NOTIF-MAINTENANCE] Lỗi khi lưu trữ notification (đã chuyển {}): {}", total, e.getMessage(), e);
+        }
+    }
+}
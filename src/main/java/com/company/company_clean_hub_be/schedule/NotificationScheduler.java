@@ -27,12 +27,10 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class NotificationScheduler {
 
-    private final NotificationRepository notificationRepository;
     private final ContractRepository contractRepository;
     private final AssignmentRepository assignmentRepository;
     private final AssignmentVerificationRepository assignmentVerificationRepository;
     private final VerificationImageRepository verificationImageRepository;
-    private final UserRepository userRepository;
     private final NotificationService notificationService;
     private final SalaryNoteValidator salaryNoteValidator;
 
@@ -171,27 +169,11 @@ public class NotificationScheduler {
                             "Nhân viên %s (%s) đã làm việc %d ngày liên tiếp (phân công cố định theo ngày) tại %s. Vui lòng kiểm tra.",
                             employee.getName(), employee.getEmployeeCode(), streak, contractLabel);
 
-                    // QLT1 (tất cả) + QLT2 (theo customer được phân công), dedup theo user
-                    List<User> managers = notificationService.getRecipientsForContract(contract);
-
-                    LocalDateTime todayStart = LocalDate.now().atStartOfDay();
-                    for (User manager : managers) {
-                        boolean exists = notificationRepository
-                                .existsByTypeAndRefContractIdAndRecipientIdAndCreatedAtAfter(
-                                        NotificationType.TEMPORARY_OVER_5_DAYS, contractId, manager.getId(), todayStart);
-                        if (!exists) {
-                            Notification notification = Notification.builder()
-                                    .recipient(manager)
-                                    .type(NotificationType.TEMPORARY_OVER_5_DAYS)
-                                    .title(title)
-                                    .message(message)
-                                    .refContractId(contractId)
-                                    .isRead(false)
-                                    .createdAt(LocalDateTime.now())
-                                    .build();
-                            notificationRepository.save(notification);
-                        }
-                    }
+                    // QLT1 (tất cả) + QLT2 (theo customer được phân công), dedup theo user trong một truy vấn
+                    notificationService.createNotifications(
+                            notificationService.getRecipientIdsForContract(contract, List.of("QLT2")),
+                            NotificationType.TEMPORARY_OVER_5_DAYS, title, message,
+                            null, null, contractId, LocalDate.now().atStartOfDay());
                 } catch (Exception e) {
                     log.error("[NOTIF-SCHEDULER] Error checking FIXED_BY_DAY streak for employee={}, contract={}: {}",
                             employeeId, contractId, e.getMessage());
@@ -205,33 +187,10 @@ public class NotificationScheduler {
 
     private void createNotification(NotificationType type, String title, String message,
                                      Long refEmployeeId, Long refAssignmentId, Long refContractId) {
-        // Gửi cho tất cả QLT1 và QLT2
-        List<User> managers = userRepository.findByRoleCodeIn(List.of("QLT1", "QLT2"));
-        LocalDateTime todayStart = LocalDateTime.now().withHour(0).withMinute(0).withSecond(0);
-        for (User manager : managers) {
-            // Dedup per recipient: mỗi manager chỉ nhận 1 notification/ngày cho cùng 1 issue
-            boolean exists;
-            if (refEmployeeId != null) {
-                exists = notificationRepository.existsByTypeAndContractIdAndEmployeeIdAndRecipientIdAndCreatedAtAfter(
-                        type, refContractId, refEmployeeId, manager.getId(), todayStart);
-            } else {
-                exists = notificationRepository.existsByTypeAndRefContractIdAndRecipientIdAndCreatedAtAfter(
-                        type, refContractId, manager.getId(), todayStart);
-            }
-            if (!exists) {
-                Notification notification = Notification.builder()
-                        .recipient(manager)
-                        .type(type)
-                        .title(title)
-                        .message(message)
-                        .refEmployeeId(refEmployeeId)
-                        .refAssignmentId(refAssignmentId)
-                        .refContractId(refContractId)
-                        .isRead(false)
-                        .createdAt(LocalDateTime.now())
-                        .build();
-                notificationRepository.save(notification);
-            }
-        }
+        // Gửi cho tất cả QLT1 và QLT2; mỗi manager chỉ nhận 1 notification/ngày cho cùng 1 issue
+        LocalDateTime todayStart = LocalDate.now().atStartOfDay();
+        notificationService.createNotifications(
+                notificationService.getRecipientIdsByRoles(List.of("QLT1", "QLT2")),
+                type, title, message, refEmployeeId, refAssignmentId, refContractId, todayStart);
     }
 }
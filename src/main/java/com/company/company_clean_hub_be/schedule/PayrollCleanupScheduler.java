@@ -2,24 +2,29 @@ package com.company.company_clean_hub_be.schedule;
 
 import com.company.company_clean_hub_be.entity.Payroll;
 import com.company.company_clean_hub_be.entity.PayrollStatus;
-import com.company.company_clean_hub_be.entity.Assignment;
-import com.company.company_clean_hub_be.entity.Attendance;
 import com.company.company_clean_hub_be.repository.PayrollRepository;
-import com.company.company_clean_hub_be.repository.AssignmentRepository;
 import com.company.company_clean_hub_be.repository.AttendanceRepository;
 import com.company.company_clean_hub_be.repository.PaymentHistoryRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Scheduled job để clean up payroll orphan records
- * (payroll không có attendance hoặc assignment backing data)
+ * (payroll không có attendance hoặc assignment backing data).
+ * Mỗi trang payroll chỉ tốn một truy vấn gom nhóm để tìm orphan, và orphan của trang được xóa trong
+ * một transaction riêng (tối đa scheduler.page-size dòng) thay vì giữ một transaction cho cả lượt quét.
  */
 @Component
 @RequiredArgsConstructor
@@ -28,100 +33,131 @@ public class PayrollCleanupScheduler {
 
     private final PayrollRepository payrollRepository;
     private final AttendanceRepository attendanceRepository;
-    private final AssignmentRepository assignmentRepository;
     private final PaymentHistoryRepository paymentHistoryRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${scheduler.page-size:500}")
+    private int pageSize;
+
+    private record EmployeeMonth(Long employeeId, YearMonth month) {
+    }
 
     /**
      * Chạy mỗi ngày lúc 2h sáng để clean up orphan payrolls
      * Cron: 0 0 2 * * * = giây phút giờ ngày tháng thứ
      */
     @Scheduled(cron = "0 0 2 * * *")
-    @Transactional
     public void cleanupOrphanPayrolls() {
         log.info("=== START cleanupOrphanPayrolls ===");
         LocalDateTime startTime = LocalDateTime.now();
 
         try {
-            // Lấy tất cả payroll chưa thanh toán hoàn toàn
-            List<Payroll> allPayrolls = payrollRepository.findAll();
+            // Payroll đã PAID được loại ngay trong SQL, chỉ đếm để ghi log
+            long totalSkippedPaid = payrollRepository.countByStatus(PayrollStatus.PAID);
             int totalChecked = 0;
             int totalDeleted = 0;
-            int totalSkippedPaid = 0;
-
-            for (Payroll payroll : allPayrolls) {
-                totalChecked++;
-
-                // Bỏ qua payroll đã PAID
-                if (payroll.getStatus() == PayrollStatus.PAID) {
-                    totalSkippedPaid++;
-                    continue;
+            int pages = 0;
+            long lastId = 0L;
+
+            // Duyệt payroll chưa thanh toán hoàn toàn theo trang keyset (id > lastId)
+            List<Payroll> page;
+            do {
+                page = payrollRepository.findUnpaidPayrollsAfterId(lastId, PageRequest.of(0, pageSize));
+                if (page.isEmpty()) {
+                    break;
                 }
+                pages++;
+                lastId = page.get(page.size() - 1).getId();
+                totalChecked += page.size();
 
-                Long employeeId = payroll.getEmployee() != null ? payroll.getEmployee().getId() : null;
-                if (employeeId == null) {
-                    log.warn("Payroll {} has no employee, skipping", payroll.getId());
+                List<Long> orphanIds = findOrphanIds(page);
+                if (orphanIds.isEmpty()) {
                     continue;
                 }
-
-                // Lấy month/year từ created_at
-                LocalDateTime createdAt = payroll.getCreatedAt();
-                if (createdAt == null) {
-                    log.warn("Payroll {} has no createdAt, skipping", payroll.getId());
-                    continue;
+                try {
+                    int deleted = deleteOrphans(orphanIds);
+                    totalDeleted += deleted;
+                    log.info("Deleted {} orphan payrolls (page {}, up to payrollId={}) - no assignments/attendances found",
+                            deleted, pages, lastId);
+                } catch (Exception ex) {
+                    log.error("Failed to delete {} orphan payrolls on page {} (payrollIds={}): {}",
+                            orphanIds.size(), pages, orphanIds, ex.getMessage());
                 }
-
-                Integer month = createdAt.getMonthValue();
-                Integer year = createdAt.getYear();
-
-                // Kiểm tra xem còn assignment nào trong tháng/năm này không
-                List<Assignment> assignments = assignmentRepository
-                        .findDistinctAssignmentsByAttendanceMonthAndEmployee(month, year, employeeId);
-
-                // Kiểm tra xem còn attendance nào trong tháng/năm này không
-                List<Attendance> attendances = attendanceRepository
-                        .findAttendancesByMonthYearAndEmployee(month, year, employeeId);
-
-                boolean hasData = (assignments != null && !assignments.isEmpty())
-                        || (attendances != null && !attendances.isEmpty());
-
-                // Nếu không còn data backing, xóa payroll orphan
-                if (!hasData) {
-                    try {
-                        Long payrollId = payroll.getId();
-
-                        // Xóa payment history trước
-                        try {
-                            List<com.company.company_clean_hub_be.entity.PaymentHistory> paymentHistories =
-                                    paymentHistoryRepository.findByPayrollIdOrderByCreatedAtAsc(payrollId);
-                            if (paymentHistories != null && !paymentHistories.isEmpty()) {
-                                paymentHistoryRepository.deleteAll(paymentHistories);
-                                log.info("Deleted {} payment history records for orphan payrollId={}",
-                                        paymentHistories.size(), payrollId);
-                            }
-                        } catch (Exception ex) {
-                            log.warn("Failed to delete payment history for payrollId={}: {}",
-                                    payrollId, ex.getMessage());
-                        }
-
-                        // Xóa payroll
-                        payrollRepository.delete(payroll);
-                        totalDeleted++;
-                        log.info("Deleted orphan payroll payrollId={} (status={}) for employeeId={}, month={}, year={} - no assignments/attendances found",
-                                payrollId, payroll.getStatus(), employeeId, month, year);
-
-                    } catch (Exception ex) {
-                        log.error("Failed to delete orphan payroll {}: {}", payroll.getId(), ex.getMessage());
-                    }
-                }
-            }
+            } while (page.size() == pageSize);
 
             LocalDateTime endTime = LocalDateTime.now();
-            log.info("=== COMPLETED cleanupOrphanPayrolls === Checked: {}, Deleted: {}, Skipped (PAID): {}, Duration: {}ms",
-                    totalChecked, totalDeleted, totalSkippedPaid,
+            log.info("=== COMPLETED cleanupOrphanPayrolls === Pages: {}, Checked: {}, Deleted: {}, Skipped (PAID): {}, Duration: {}ms",
+                    pages, totalChecked, totalDeleted, totalSkippedPaid,
                     java.time.Duration.between(startTime, endTime).toMillis());
 
         } catch (Exception ex) {
             log.error("Failed to execute cleanupOrphanPayrolls: {}", ex.getMessage(), ex);
         }
     }
+
+    /**
+     * Payroll trong trang không còn chấm công nào trong tháng của nó (theo created_at). Một truy vấn gom
+     * (employeeId, năm, tháng) cho cả trang, trong khoảng từ tháng nhỏ nhất tới tháng lớn nhất của trang.
+     */
+    private List<Long> findOrphanIds(List<Payroll> page) {
+        List<Payroll> candidates = new ArrayList<>(page.size());
+        Set<Long> employeeIds = new HashSet<>();
+        YearMonth minMonth = null;
+        YearMonth maxMonth = null;
+        for (Payroll payroll : page) {
+            Long employeeId = payroll.getEmployee() != null ? payroll.getEmployee().getId() : null;
+            if (employeeId == null) {
+                log.warn("Payroll {} has no employee, skipping", payroll.getId());
+                continue;
+            }
+            if (payroll.getCreatedAt() == null) {
+                log.warn("Payroll {} has no createdAt, skipping", payroll.getId());
+                continue;
+            }
+            YearMonth month = YearMonth.from(payroll.getCreatedAt());
+            minMonth = minMonth == null || month.isBefore(minMonth) ? month : minMonth;
+            maxMonth = maxMonth == null || month.isAfter(maxMonth) ? month : maxMonth;
+            employeeIds.add(employeeId);
+            candidates.add(payroll);
+        }
+        if (candidates.isEmpty()) {
+            return List.of();
+        }
+
+        Set<EmployeeMonth> withAttendance = new HashSet<>();
+        for (Object[] row : attendanceRepository.findEmployeeMonthsWithAttendance(employeeIds,
+                minMonth.atDay(1), maxMonth.plusMonths(1).atDay(1))) {
+            withAttendance.add(new EmployeeMonth(((Number) row[0]).longValue(),
+                    YearMonth.of(((Number) row[1]).intValue(), ((Number) row[2]).intValue())));
+        }
+
+        List<Long> orphanIds = new ArrayList<>();
+        for (Payroll payroll : candidates) {
+            EmployeeMonth key = new EmployeeMonth(payroll.getEmployee().getId(), YearMonth.from(payroll.getCreatedAt()));
+            if (!withAttendance.contains(key)) {
+                orphanIds.add(payroll.getId());
+            }
+        }
+        return orphanIds;
+    }
+
+    /**
+     * Xóa orphan của một trang trong một transaction: payment history trước, gỡ chấm công còn trỏ tới
+     * payroll, rồi tới payroll. Payroll vừa chuyển sang PAID giữa lúc quét và lúc xóa được giữ lại.
+     */
+    private int deleteOrphans(List<Long> orphanIds) {
+        Integer deleted = transactionTemplate.execute(status -> {
+            List<Long> unpaidIds = payrollRepository.findUnpaidIdsByIdIn(orphanIds);
+            if (unpaidIds.isEmpty()) {
+                return 0;
+            }
+            int histories = paymentHistoryRepository.deleteByPayrollIdIn(unpaidIds);
+            if (histories > 0) {
+                log.info("Deleted {} payment history records for {} orphan payrolls", histories, unpaidIds.size());
+            }
+            attendanceRepository.unlinkPayrolls(unpaidIds);
+            return payrollRepository.deleteByIdIn(unpaidIds);
+        });
+        return deleted != null ? deleted : 0;
+    }
 }
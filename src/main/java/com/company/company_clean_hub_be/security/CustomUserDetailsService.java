@@ -2,6 +2,7 @@ package com.company.company_clean_hub_be.security;
 
 import com.company.company_clean_hub_be.entity.User;
 import com.company.company_clean_hub_be.repository.UserRepository;
+import com.company.company_clean_hub_be.service.ManagerScopeService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -11,11 +12,15 @@ import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.HashSet;
+import java.util.Set;
+
 @Service
 @RequiredArgsConstructor
 public class CustomUserDetailsService implements UserDetailsService {
 
     private final UserRepository userRepository;
+    private final ManagerScopeService managerScopeService;
 
     @Override
     @Transactional
@@ -23,7 +28,7 @@ public class CustomUserDetailsService implements UserDetailsService {
         User user = userRepository.findByUsername(username)
                 .orElseThrow(() -> new UsernameNotFoundException("Không tìm thấy người dùng với tên: " + username));
 
-        return UserPrincipal.create(user);
+        return UserPrincipal.create(user, loadManagedCustomerIds(user));
     }
 
     @Transactional
@@ -31,6 +36,14 @@ public class CustomUserDetailsService implements UserDetailsService {
         User user = userRepository.findById(id)
                 .orElseThrow(() -> new UsernameNotFoundException("Không tìm thấy người dùng với ID: " + id));
 
-        return UserPrincipal.create(user);
+        return UserPrincipal.create(user, loadManagedCustomerIds(user));
+    }
+
+    private Set<Long> loadManagedCustomerIds(User user) {
+        String roleCode = user.getRole() != null ? user.getRole().getCode() : null;
+        if (!"QLT2".equalsIgnoreCase(roleCode) && !"QLV".equalsIgnoreCase(roleCode)) {
+            return Set.of();
+        }
+        return new HashSet<>(managerScopeService.getCustomerIds(user.getId()));
     }
 }
@@ -1,6 +1,8 @@
 package com.company.company_clean_hub_be.security;
 
 import com.company.company_clean_hub_be.exception.AppException;
+import com.company.company_clean_hub_be.exception.ErrorCode;
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -22,6 +24,7 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final JwtTokenProvider tokenProvider;
     private final CustomUserDetailsService customUserDetailsService;
+    private final PrincipalCache principalCache;
 
     // Không filter lại async dispatch (SSE timeout, etc.) — đã auth ở request gốc
     @Override
@@ -35,10 +38,12 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         try {
             String jwt = getJwtFromRequest(request);
 
-            if (StringUtils.hasText(jwt) && tokenProvider.validateToken(jwt)) {
-                String username = tokenProvider.getUsernameFromJWT(jwt);
+            if (StringUtils.hasText(jwt)) {
+                // Parse + verify chữ ký một lần
+                Claims claims = tokenProvider.parseValidatedClaims(jwt);
+                String username = claims.getSubject();
 
-                UserDetails userDetails = customUserDetailsService.loadUserByUsername(username);
+                UserDetails userDetails = loadPrincipal(username, tokenProvider.getTokenVersion(claims));
                 UsernamePasswordAuthenticationToken authentication =
                         new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
                 authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
@@ -65,6 +70,24 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     }
 
+    /**
+     * Principal lấy từ cache; nếu token version trong JWT khác bản cache thì load lại từ DB một lần
+     * (cache cũ hoặc mật khẩu vừa đổi). Vẫn khác → token đã bị thu hồi.
+     */
+    private UserPrincipal loadPrincipal(String username, int tokenVersion) {
+        UserPrincipal principal = principalCache.get(username,
+                () -> (UserPrincipal) customUserDetailsService.loadUserByUsername(username));
+        if (principal.getTokenVersion() != tokenVersion) {
+            principalCache.evict(username);
+            principal = principalCache.get(username,
+                    () -> (UserPrincipal) customUserDetailsService.loadUserByUsername(username));
+            if (principal.getTokenVersion() != tokenVersion) {
+                throw new AppException(ErrorCode.INVALID_TOKEN);
+            }
+        }
+        return principal;
+    }
+
     private String getJwtFromRequest(HttpServletRequest request) {
         // 1. Ưu tiên đọc từ Authorization header (API thông thường)
         String bearerToken = request.getHeader("Authorization");
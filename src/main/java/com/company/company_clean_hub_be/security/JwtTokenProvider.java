@@ -41,6 +41,7 @@ public class JwtTokenProvider {
                 .claim("role", role)
                 .claim("userId", userPrincipal.getId())
                 .claim("userType", userPrincipal.getUserType())
+                .claim("tokenVersion", userPrincipal.getTokenVersion())
                 .setIssuedAt(now)
                 .setExpiration(expiryDate)
                 .signWith(getSigningKey(), SignatureAlgorithm.HS256)
@@ -87,6 +88,37 @@ public class JwtTokenProvider {
         return claims.get("userType", String.class);
     }
 
+    /**
+     * Verify + parse token một lần (cùng cách map lỗi với validateToken).
+     */
+    public Claims parseValidatedClaims(String authToken) {
+        try {
+            return Jwts.parserBuilder()
+                    .setSigningKey(getSigningKey())
+                    .build()
+                    .parseClaimsJws(authToken)
+                    .getBody();
+        } catch (SecurityException ex) {
+            throw new AppException(ErrorCode.INVALID_TOKEN);
+        } catch (MalformedJwtException ex) {
+            throw new AppException(ErrorCode.INVALID_TOKEN);
+        } catch (ExpiredJwtException ex) {
+            throw new AppException(ErrorCode.TOKEN_EXPIRED);
+        } catch (UnsupportedJwtException ex) {
+            throw new AppException(ErrorCode.UNSUPPORTED_TOKEN);
+        } catch (IllegalArgumentException ex) {
+            throw new AppException(ErrorCode.TOKEN_CLAIMS_EMPTY);
+        }
+    }
+
+    /**
+     * Token phát hành trước khi có claim tokenVersion được coi là version 0.
+     */
+    public int getTokenVersion(Claims claims) {
+        Integer version = claims.get("tokenVersion", Integer.class);
+        return version != null ? version : 0;
+    }
+
     public boolean validateToken(String authToken) {
         try {
             Jwts.parserBuilder()
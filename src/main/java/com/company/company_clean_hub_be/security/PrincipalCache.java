@@ -0,0 +1,73 @@
+package com.company.company_clean_hub_be.security;
+
+import com.company.company_clean_hub_be.util.AfterCommit;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Cache UserPrincipal theo username để mỗi request có JWT không phải load lại
+ * User + role + permissions + customer được phân công từ DB.
+ * Entry hết hạn sau TTL; bị xoá khi transaction đổi role / mật khẩu / xoá user, hoặc đổi phân công
+ * khách hàng của manager commit. JWT có token version khác principal trong cache thì
+ * principal được load lại từ DB để so sánh.
+ */
+@Component
+@Slf4j
+public class PrincipalCache {
+
+    @Value("${security.principal-cache.ttl-seconds:300}")
+    private long ttlSeconds;
+
+    @Value("${security.principal-cache.max-entries:10000}")
+    private int maxEntries;
+
+    private record Entry(UserPrincipal principal, long loadedAt) {
+    }
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    public UserPrincipal get(String username, Supplier<UserPrincipal> loader) {
+        long now = System.currentTimeMillis();
+        Entry entry = entries.get(username);
+        if (entry == null || now - entry.loadedAt() > ttlSeconds * 1000) {
+            if (entries.size() >= maxEntries) {
+                // Số user nhỏ; chạm ngưỡng thì xoá hết thay vì LRU
+                entries.clear();
+            }
+            entry = new Entry(loader.get(), now);
+            entries.put(username, entry);
+        }
+        return entry.principal();
+    }
+
+    public void evict(String username) {
+        if (username != null && entries.remove(username) != null) {
+            log.debug("[SECURITY] Principal cache evicted: {}", username);
+        }
+    }
+
+    public void evictAll() {
+        entries.clear();
+    }
+
+    /**
+     * Xoá principal khi transaction hiện tại commit, để request khác không nạp lại bản cũ vào cache
+     * trong lúc thay đổi user / role / phân công chưa commit.
+     */
+    public void evictAfterCommit(String... usernames) {
+        AfterCommit.run(() -> {
+            for (String username : usernames) {
+                evict(username);
+            }
+        });
+    }
+
+    public void evictAllAfterCommit() {
+        AfterCommit.run(this::evictAll);
+    }
+}
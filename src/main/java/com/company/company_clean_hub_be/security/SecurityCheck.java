@@ -1,53 +1,66 @@
 package com.company.company_clean_hub_be.security;
 
-import com.company.company_clean_hub_be.entity.Employee;
-import com.company.company_clean_hub_be.repository.EmployeeRepository;
-import com.company.company_clean_hub_be.repository.CustomerRepository;
 import com.company.company_clean_hub_be.repository.AssignmentRepository;
 import com.company.company_clean_hub_be.repository.RatingRepository;
 import com.company.company_clean_hub_be.repository.ContractRepository;
 import com.company.company_clean_hub_be.repository.CustomerAssignmentRepository;
 import com.company.company_clean_hub_be.repository.InvoiceRepository;
-import com.company.company_clean_hub_be.repository.UserRepository;
-import com.company.company_clean_hub_be.entity.Rating;
-import com.company.company_clean_hub_be.service.UserService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
 
 import java.util.List;
-import java.util.Optional;
 
+/**
+ * Các kiểm tra quyền dùng trong @PreAuthorize.
+ * Employee id, role và customer được phân công đã có sẵn trên UserPrincipal (cache theo username),
+ * nên phần lớn kiểm tra chỉ còn tra bộ nhớ; chỉ tra DB khi cần dữ liệu của bản ghi được truy cập.
+ */
 @Component
 @RequiredArgsConstructor
 @Slf4j
 public class SecurityCheck {
-    private final UserService userService;
-    private final EmployeeRepository employeeRepository;
-    private final CustomerRepository customerRepository;
     private final ContractRepository contractRepository;
     private final AssignmentRepository assignmentRepository;
     private final RatingRepository ratingRepository;
     private final CustomerAssignmentRepository customerAssignmentRepository;
     private final InvoiceRepository invoiceRepository;
-    private final UserRepository userRepository;
+
+    private UserPrincipal currentPrincipal() {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth == null || !(auth.getPrincipal() instanceof UserPrincipal principal)) {
+            return null;
+        }
+        return principal;
+    }
+
+    private Long currentEmployeeId() {
+        UserPrincipal principal = currentPrincipal();
+        return principal != null ? principal.getEmployeeId() : null;
+    }
+
+    /**
+     * QLT2/QLV chỉ được truy cập customer được phân công; role khác không bị giới hạn.
+     */
+    private boolean canAccessCustomer(UserPrincipal principal, Long customerId, String... scopedRoles) {
+        if (!principal.hasRole(scopedRoles)) {
+            return true;
+        }
+        return principal.managesCustomer(customerId);
+    }
 
     public boolean isEmployeeSelf(Long employeeId) {
         if (employeeId == null) return false;
-        String username = userService.getCurrentUsername();
-        if (username == null) return false;
-        Optional<Employee> emp = employeeRepository.findByUsername(username);
-        return emp.map(e -> e.getId() != null && e.getId().equals(employeeId)).orElse(false);
+        return employeeId.equals(currentEmployeeId());
     }
 
     public boolean isAssignmentOwnedByCurrentUser(Long assignmentId) {
         if (assignmentId == null) return false;
-        String username = userService.getCurrentUsername();
-        if (username == null) return false;
-        Optional<Employee> emp = employeeRepository.findByUsername(username);
-        if (emp.isEmpty()) return false;
-        Long empId = emp.get().getId();
-        log.info("[SECURITY] isAssignmentOwnedByCurrentUser start - assignmentId={} username={} empId={}", assignmentId, username, empId);
+        Long empId = currentEmployeeId();
+        if (empId == null) return false;
+        log.info("[SECURITY] isAssignmentOwnedByCurrentUser start - assignmentId={} empId={}", assignmentId, empId);
         return assignmentRepository.findById(assignmentId)
                 .map(a -> {
                     boolean owns = a.getEmployee() != null && a.getEmployee().getId() != null && a.getEmployee().getId().equals(empId);
@@ -63,11 +76,8 @@ public class SecurityCheck {
 
     public boolean isRatingCreatedByCurrentUser(Long ratingId) {
         if (ratingId == null) return false;
-        String username = userService.getCurrentUsername();
-        if (username == null) return false;
-        Optional<Employee> emp = employeeRepository.findByUsername(username);
-        if (emp.isEmpty()) return false;
-        Long empId = emp.get().getId();
+        Long empId = currentEmployeeId();
+        if (empId == null) return false;
         return ratingRepository.findById(ratingId)
                 .map(r -> r.getReviewer() != null && r.getReviewer().getId() != null && r.getReviewer().getId().equals(empId))
                 .orElse(false);
@@ -75,11 +85,8 @@ public class SecurityCheck {
 
     public boolean isEmployeeAssignedToCustomer(Long customerId) {
         if (customerId == null) return false;
-        String username = userService.getCurrentUsername();
-        if (username == null) return false;
-        Optional<Employee> emp = employeeRepository.findByUsername(username);
-        if (emp.isEmpty()) return false;
-        Long empId = emp.get().getId();
+        Long empId = currentEmployeeId();
+        if (empId == null) return false;
         // findActiveCustomersByEmployee returns list of Customer entities
         List<com.company.company_clean_hub_be.entity.Customer> customers = assignmentRepository.findActiveCustomersByEmployee(empId);
         if (customers == null || customers.isEmpty()) return false;
@@ -88,22 +95,18 @@ public class SecurityCheck {
 
     public boolean isCustomerSelf(Long customerId) {
         if (customerId == null) return false;
-        String username = userService.getCurrentUsername();
-        if (username == null) return false;
-        return customerRepository.findById(customerId)
-                .map(c -> c.getUsername() != null && c.getUsername().equals(username))
-                .orElse(false);
+        UserPrincipal principal = currentPrincipal();
+        if (principal == null) return false;
+        // Customer kế thừa User nên customer id = user id
+        return "CUSTOMER".equals(principal.getUserType()) && customerId.equals(principal.getId());
     }
 
     public boolean isEmployeeAssignedToAssignment(Long assignmentId) {
         if (assignmentId == null) return false;
-        String username = userService.getCurrentUsername();
-        if (username == null) return false;
-        Optional<Employee> emp = employeeRepository.findByUsername(username);
-        if (emp.isEmpty()) return false;
-        Long empId = emp.get().getId();
+        Long empId = currentEmployeeId();
+        if (empId == null) return false;
 
-        log.info("[SECURITY] isEmployeeAssignedToAssignment start - assignmentId={} username={} empId={}", assignmentId, username, empId);
+        log.info("[SECURITY] isEmployeeAssignedToAssignment start - assignmentId={} empId={}", assignmentId, empId);
         return assignmentRepository.findById(assignmentId)
                 .map(a -> {
                     Long contractId = a.getContract() != null ? a.getContract().getId() : null;
@@ -124,8 +127,9 @@ public class SecurityCheck {
 
     public boolean isRatingOwnedByCustomer(Long ratingId) {
         if (ratingId == null) return false;
-        String username = userService.getCurrentUsername();
-        if (username == null) return false;
+        UserPrincipal principal = currentPrincipal();
+        if (principal == null) return false;
+        String username = principal.getUsername();
         return ratingRepository.findById(ratingId)
                 .map(r -> r.getCustomer() != null && r.getCustomer().getUsername() != null && r.getCustomer().getUsername().equals(username))
                 .orElse(false);
@@ -141,16 +145,15 @@ public class SecurityCheck {
      */
     public boolean canEmployeeReviewManager(Long assignmentId, Long reviewedEmployeeId) {
         if (assignmentId == null || reviewedEmployeeId == null) return false;
-        String username = userService.getCurrentUsername();
-        if (username == null) return false;
-        
-        // Lấy thông tin employee hiện tại (người đang đánh giá)
-        Optional<Employee> empOpt = employeeRepository.findByUsername(username);
-        if (empOpt.isEmpty()) {
-            log.info("[SECURITY] canEmployeeReviewManager - user {} is not an employee", username);
+        UserPrincipal principal = currentPrincipal();
+        if (principal == null) return false;
+
+        // Employee hiện tại (người đang đánh giá)
+        Long currentEmpId = principal.getEmployeeId();
+        if (currentEmpId == null) {
+            log.info("[SECURITY] canEmployeeReviewManager - user {} is not an employee", principal.getUsername());
             return false;
         }
-        Long currentEmpId = empOpt.get().getId();
 
         log.info("[SECURITY] canEmployeeReviewManager start - assignmentId={} currentEmpId={} reviewedEmployeeId={}", 
                 assignmentId, currentEmpId, reviewedEmployeeId);
@@ -190,28 +193,19 @@ public class SecurityCheck {
 
     public boolean isCustomerManagedByCurrentUser(Long customerId) {
         if (customerId == null) return false;
-        String username = userService.getCurrentUsername();
-        if (username == null) return false;
-        com.company.company_clean_hub_be.entity.User currentUser = userRepository.findByUsername(username).orElse(null);
-        if (currentUser == null) return false;
-        
-        if (currentUser.getRole() != null && "QLT2".equalsIgnoreCase(currentUser.getRole().getCode())) {
-            return customerAssignmentRepository.existsByManagerIdAndCustomerId(currentUser.getId(), customerId);
-        }
-        return true;
+        UserPrincipal principal = currentPrincipal();
+        if (principal == null) return false;
+        return canAccessCustomer(principal, customerId, "QLT2");
     }
 
     public boolean isAssignmentManagedByCurrentUser(Long assignmentId) {
         if (assignmentId == null) return false;
-        String username = userService.getCurrentUsername();
-        if (username == null) return false;
-        com.company.company_clean_hub_be.entity.User currentUser = userRepository.findByUsername(username).orElse(null);
-        if (currentUser == null) return false;
-
-        if (currentUser.getRole() != null && ("QLT2".equalsIgnoreCase(currentUser.getRole().getCode()) || "QLV".equalsIgnoreCase(currentUser.getRole().getCode()))) {
-            return assignmentRepository.findById(assignmentId)
-                    .map(a -> a.getContract() != null && a.getContract().getCustomer() != null &&
-                            customerAssignmentRepository.existsByManagerIdAndCustomerId(currentUser.getId(), a.getContract().getCustomer().getId()))
+        UserPrincipal principal = currentPrincipal();
+        if (principal == null) return false;
+
+        if (principal.hasRole("QLT2", "QLV")) {
+            return assignmentRepository.findCustomerIdById(assignmentId)
+                    .map(principal::managesCustomer)
                     .orElse(false);
         }
         return true;
@@ -219,15 +213,12 @@ public class SecurityCheck {
 
     public boolean isInvoiceManagedByCurrentUser(Long invoiceId) {
         if (invoiceId == null) return false;
-        String username = userService.getCurrentUsername();
-        if (username == null) return false;
-        com.company.company_clean_hub_be.entity.User currentUser = userRepository.findByUsername(username).orElse(null);
-        if (currentUser == null) return false;
-
-        if (currentUser.getRole() != null && ("QLT2".equalsIgnoreCase(currentUser.getRole().getCode()) || "QLV".equalsIgnoreCase(currentUser.getRole().getCode()))) {
-            return invoiceRepository.findById(invoiceId)
-                    .map(i -> i.getContract() != null && i.getContract().getCustomer() != null &&
-                            customerAssignmentRepository.existsByManagerIdAndCustomerId(currentUser.getId(), i.getContract().getCustomer().getId()))
+        UserPrincipal principal = currentPrincipal();
+        if (principal == null) return false;
+
+        if (principal.hasRole("QLT2", "QLV")) {
+            return invoiceRepository.findCustomerIdById(invoiceId)
+                    .map(principal::managesCustomer)
                     .orElse(false);
         }
         return true;
@@ -235,15 +226,12 @@ public class SecurityCheck {
 
     public boolean isContractManagedByCurrentUser(Long contractId) {
         if (contractId == null) return false;
-        String username = userService.getCurrentUsername();
-        if (username == null) return false;
-        com.company.company_clean_hub_be.entity.User currentUser = userRepository.findByUsername(username).orElse(null);
-        if (currentUser == null) return false;
-
-        if (currentUser.getRole() != null && ("QLT2".equalsIgnoreCase(currentUser.getRole().getCode()) || "QLV".equalsIgnoreCase(currentUser.getRole().getCode()))) {
-            return contractRepository.findById(contractId)
-                    .map(c -> c.getCustomer() != null &&
-                            customerAssignmentRepository.existsByManagerIdAndCustomerId(currentUser.getId(), c.getCustomer().getId()))
+        UserPrincipal principal = currentPrincipal();
+        if (principal == null) return false;
+
+        if (principal.hasRole("QLT2", "QLV")) {
+            return contractRepository.findCustomerIdById(contractId)
+                    .map(principal::managesCustomer)
                     .orElse(false);
         }
         return true;
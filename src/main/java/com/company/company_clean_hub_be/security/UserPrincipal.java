@@ -11,6 +11,7 @@ import org.springframework.security.core.userdetails.UserDetails;
 
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Set;
 
 @Data
 @AllArgsConstructor
@@ -21,8 +22,18 @@ public class UserPrincipal implements UserDetails {
     private String email;
     private String userType;
     private Collection<? extends GrantedAuthority> authorities;
+    private String roleCode;
+    // Id nhân viên (= user id) nếu user là Employee, ngược lại null
+    private Long employeeId;
+    // Customer được phân công quản lý (QLT2/QLV); rỗng với role khác
+    private Set<Long> managedCustomerIds;
+    private int tokenVersion;
 
     public static UserPrincipal create(User user) {
+        return create(user, Set.of());
+    }
+
+    public static UserPrincipal create(User user, Set<Long> managedCustomerIds) {
         // Load authorities from role name + permissions
         Collection<GrantedAuthority> authorities = new java.util.ArrayList<>();
         
@@ -49,10 +60,25 @@ public class UserPrincipal implements UserDetails {
                 user.getPassword(),
                 user.getEmail(),
                 userType,
-                authorities
+                authorities,
+                user.getRole().getCode(),
+                user instanceof Employee ? user.getId() : null,
+                Set.copyOf(managedCustomerIds),
+                user.getTokenVersion() != null ? user.getTokenVersion() : 0
         );
     }
 
+    public boolean hasRole(String... codes) {
+        for (String code : codes) {
+            if (code.equalsIgnoreCase(roleCode)) return true;
+        }
+        return false;
+    }
+
+    public boolean managesCustomer(Long customerId) {
+        return customerId != null && managedCustomerIds.contains(customerId);
+    }
+
     @Override
     public Collection<? extends GrantedAuthority> getAuthorities() {
         return authorities;
@@ -21,4 +21,32 @@ public interface AssignmentMetricsService {
      * @param assignmentIds Danh sách ID của các assignment cần cập nhật
      */
     void updateMultipleAssignmentMetrics(java.util.List<Long> assignmentIds);
+
+    /**
+     * Đóng góp hiện tại của một ngày vào workDays của Assignment.
+     * Gọi TRƯỚC khi thay đổi chấm công / trạng thái WorkSchedule của ngày đó.
+     *
+     * @param assignmentId ID của assignment
+     * @param date Ngày sắp thay đổi
+     * @return Số ngày công của riêng ngày đó
+     */
+    int snapshotWorkDay(Long assignmentId, java.time.LocalDate date);
+
+    /**
+     * Cộng chênh lệch workDays của một ngày so với snapshot đã lấy trước đó.
+     * Chỉ đọc dữ liệu của đúng ngày đó nên không phụ thuộc độ dài lịch sử assignment.
+     *
+     * @param assignmentId ID của assignment
+     * @param date Ngày vừa thay đổi
+     * @param before Giá trị trả về từ snapshotWorkDay trước khi thay đổi
+     */
+    void applyWorkDayDelta(Long assignmentId, java.time.LocalDate date, int before);
+
+    /**
+     * Đối soát workDays: tính lại bằng truy vấn gom nhóm và sửa các assignment bị lệch
+     *
+     * @param storedWorkDays workDays đang lưu, theo assignmentId
+     * @return Số assignment đã được sửa
+     */
+    int reconcileWorkDays(java.util.Map<Long, Integer> storedWorkDays);
 }
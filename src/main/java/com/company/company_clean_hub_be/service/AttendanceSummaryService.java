@@ -0,0 +1,83 @@
+package com.company.company_clean_hub_be.service;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Map;
+
+import com.company.company_clean_hub_be.entity.AssignmentType;
+
+/**
+ * Bảng tổng hợp chấm công attendance_monthly_summary theo (assignment, năm, tháng).
+ * Mọi thay đổi chấm công qua JPA được AttendanceSummaryListener ghi nhận; các tháng bị
+ * ảnh hưởng được tính lại một lần trước khi transaction commit. Ghi thẳng bằng JDBC / bulk
+ * query thì phải gọi markDirty.
+ */
+public interface AttendanceSummaryService {
+
+    /**
+     * Đánh dấu toàn bộ các tháng của assignment cần tính lại khi transaction hiện tại commit.
+     * Dùng cho bulk delete không biết trước các tháng bị ảnh hưởng.
+     */
+    void markDirty(Long assignmentId);
+
+    /**
+     * Đánh dấu tháng chứa date của assignment cần tính lại khi transaction hiện tại commit.
+     */
+    void markDirty(Long assignmentId, LocalDate date);
+
+    /**
+     * Tính lại ngay tổng hợp của các assignment từ bảng attendance.
+     */
+    void refreshAssignments(Collection<Long> assignmentIds);
+
+    /**
+     * Dựng lại bảng tổng hợp cho khoảng assignment id (fromId, toId], một transaction.
+     *
+     * @return Số dòng tổng hợp được ghi
+     */
+    int rebuildRange(Long fromId, Long toId);
+
+    Long findMaxAssignmentId();
+
+    /**
+     * Bảng tổng hợp trống trong khi đã có chấm công (vd. bảng vừa được Hibernate tạo), cần dựng lại toàn bộ.
+     */
+    boolean needsInitialBuild();
+
+    /**
+     * Đối chiếu bảng tổng hợp với gom trực tiếp từ attendance trong khoảng assignment id (fromId, toId].
+     *
+     * @return Số (assignment, năm, tháng) bị lệch
+     */
+    int countMismatches(Long fromId, Long toId);
+
+    /**
+     * Số liệu của assignment dùng cho tính lương: ngày công tính tới hôm nay, tổng bonus,
+     * penalty, supportCost của các chấm công chưa xóa (giống calculateActualWorkDays và sum*ByAssignment).
+     */
+    AssignmentTotals getTotals(Long assignmentId);
+
+    Map<Long, AssignmentTotals> getTotals(Collection<Long> assignmentIds);
+
+    /**
+     * Số ngày công (chấm công chưa xóa) của nhân viên trong tháng.
+     */
+    int countWorkDaysByEmployee(Long employeeId, Integer month, Integer year);
+
+    /**
+     * Số ngày nghỉ (chấm công đã xóa mềm) của hợp đồng trong cả tháng, bỏ qua assignment loại excludedType.
+     */
+    int countAbsenceDaysByContract(Long contractId, Integer month, Integer year, AssignmentType excludedType);
+
+    /**
+     * Như countAbsenceDaysByContract cho nhiều hợp đồng; hợp đồng không có ngày nghỉ không có trong map.
+     */
+    Map<Long, Integer> countAbsenceDaysByContracts(Collection<Long> contractIds, Integer month, Integer year,
+            AssignmentType excludedType);
+
+    record AssignmentTotals(int workDays, BigDecimal bonus, BigDecimal penalty, BigDecimal supportCost) {
+        public static final AssignmentTotals EMPTY = new AssignmentTotals(0, BigDecimal.ZERO, BigDecimal.ZERO,
+                BigDecimal.ZERO);
+    }
+}
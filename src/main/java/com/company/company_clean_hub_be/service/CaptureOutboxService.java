@@ -0,0 +1,26 @@
+package com.company.company_clean_hub_be.service;
+
+import java.util.List;
+
+import com.company.company_clean_hub_be.dto.request.WorkScheduleCaptureRequest;
+import com.company.company_clean_hub_be.entity.VerificationImage;
+import com.company.company_clean_hub_be.entity.WorkSchedule;
+
+public interface CaptureOutboxService {
+
+    // Ghi sự kiện vào outbox trong transaction hiện tại (cùng commit với WorkSchedule)
+    void enqueue(WorkSchedule schedule, VerificationImage image, WorkScheduleCaptureRequest request);
+
+    // Id các sự kiện đến hạn xử lý
+    List<Long> findDueEventIds(int limit);
+
+    // Nhận xử lý sự kiện, false nếu đã có worker khác nhận
+    boolean claim(Long eventId);
+
+    // Upload ảnh chờ xử lý lên storage (không giữ connection DB trong lúc upload), rồi gắn ảnh và
+    // xoá ảnh khỏi sự kiện trong một transaction
+    void uploadPendingImage(Long eventId);
+
+    // Ghi nhận lỗi: hẹn giờ thử lại hoặc chuyển FAILED khi hết lượt
+    void markFailed(Long eventId, String error);
+}
@@ -15,6 +15,8 @@ public interface CustomerService {
     CustomerResponse updateCustomer(Long id, CustomerRequest request);
     void deleteCustomer(Long id);
     List<CustomerContractGroupDto> getCustomersWithContractsForExport();
+    // Con trỏ xuất Excel streaming: nạp khách hàng và hợp đồng theo lô khi iterator đọc tới
+    java.util.Iterator<CustomerContractGroupDto> openCustomersWithContractsExportCursor();
     
     // Phương thức sinh mã khách hàng tự động
     String generateCustomerCode();
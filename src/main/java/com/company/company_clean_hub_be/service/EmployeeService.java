@@ -27,6 +27,10 @@ public interface EmployeeService {
         List<EmployeeExportDto> getEmployeesForExportByType(
                         com.company.company_clean_hub_be.entity.EmploymentType employmentType);
 
+        // Con trỏ xuất Excel streaming: nạp nhân viên theo lô khi iterator đọc tới (employmentType null = tất cả)
+        java.util.Iterator<EmployeeExportDto> openEmployeesExportCursor(
+                        com.company.company_clean_hub_be.entity.EmploymentType employmentType);
+
         // Phương thức sinh mã nhân viên tự động
         String generateEmployeeCode(com.company.company_clean_hub_be.entity.EmploymentType employmentType);
 
@@ -39,4 +43,13 @@ public interface EmployeeService {
         EmployeeResponse resignOfficeWork(Long id, java.time.LocalDate resignDate);
         EmployeeResponse cancelResignOfficeWork(Long id);
         List<String> getCompanyLeaves(Long id, Integer month, Integer year);
+
+        // Top-K nhân viên rảnh cho khung giờ (mặc định lấy giờ / ngày làm việc của hợp đồng, loại CONTRACT_STAFF),
+        // xếp theo số assignment đang hoạt động rồi khoảng cách tới vị trí làm việc của hợp đồng
+        List<com.company.company_clean_hub_be.dto.response.AvailableEmployeeResponse> findAvailableEmployees(
+                        Long contractId, List<java.time.DayOfWeek> days,
+                        java.time.LocalTime startTime, java.time.LocalTime endTime,
+                        java.time.LocalDate fromDate, java.time.LocalDate toDate,
+                        String province, String ward,
+                        com.company.company_clean_hub_be.entity.EmploymentType employmentType, int limit);
 }
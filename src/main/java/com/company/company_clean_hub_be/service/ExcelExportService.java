@@ -1,5 +1,7 @@
 package com.company.company_clean_hub_be.service;
 
+import java.io.OutputStream;
+import java.util.Iterator;
 import java.util.List;
 
 import com.company.company_clean_hub_be.dto.response.PayRollAssignmentExportExcel;
@@ -7,6 +9,7 @@ import org.springframework.core.io.ByteArrayResource;
 
 import com.company.company_clean_hub_be.dto.response.CustomerContractGroupDto;
 import com.company.company_clean_hub_be.dto.response.EmployeeExportDto;
+import com.company.company_clean_hub_be.dto.response.InvoiceBulkResultRow;
 import com.company.company_clean_hub_be.dto.response.PayRollExportExcel;
 
 public interface ExcelExportService {
@@ -16,4 +19,15 @@ public interface ExcelExportService {
 
     public ByteArrayResource exportCustomersWithContractsToExcel(List<CustomerContractGroupDto> customerGroups);
     public ByteArrayResource exportEmployeesToExcel(List<EmployeeExportDto> employees);
+
+    // Báo cáo kết quả job xuất hóa đơn cả tháng
+    ByteArrayResource exportInvoiceJobReportToExcel(List<InvoiceBulkResultRow> rows, Integer month, Integer year);
+
+    // Streaming (SXSSF): đọc dữ liệu dần từ iterator và ghi thẳng ra output stream
+    void writePayrollAssignmentsToExcel(Iterator<PayRollAssignmentExportExcel> rows, Integer month, Integer year,
+            OutputStream out);
+
+    void writeCustomersWithContractsToExcel(Iterator<CustomerContractGroupDto> customerGroups, OutputStream out);
+
+    void writeEmployeesToExcel(Iterator<EmployeeExportDto> employees, OutputStream out);
 }
@@ -1,6 +1,8 @@
 package com.company.company_clean_hub_be.service;
 
 import java.io.IOException;
+import java.util.List;
+import java.util.Set;
 
 import org.springframework.core.io.Resource;
 import org.springframework.web.multipart.MultipartFile;
@@ -8,7 +10,11 @@ import org.springframework.web.multipart.MultipartFile;
 public interface FileStorageService {
     String storeFile(MultipartFile file) throws IOException;
     String storeBase64(String base64Content, String fileName, String folder) throws IOException;
+    // Upload với public_id cố định (ghi đè nếu đã tồn tại) để có thể thử lại an toàn
+    String storeBase64WithPublicId(String base64Content, String publicId, String folder) throws IOException;
     void deleteFile(String relativePath) throws IOException;
+    // Xoá nhiều file trong một lần gọi API; trả về các public_id không còn trên storage (đã xoá hoặc không tồn tại)
+    Set<String> deleteFiles(List<String> publicIds) throws IOException;
     Resource loadFileAsResource(String relativePath) throws IOException;
     String getSecureUrl(String publicId);
 }
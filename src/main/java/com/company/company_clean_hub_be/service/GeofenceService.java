@@ -0,0 +1,21 @@
+package com.company.company_clean_hub_be.service;
+
+public interface GeofenceService {
+
+    /**
+     * Kiểm tra tọa độ có nằm trong bán kính của ít nhất một WorkLocation đang active của hợp đồng.
+     * Dữ liệu vị trí được giữ trong bộ nhớ, không truy vấn DB ở mỗi lần check-in.
+     */
+    CheckResult check(Long contractId, double latitude, double longitude);
+
+    // Gọi khi WorkLocation của hợp đồng được tạo / sửa / xoá
+    void invalidateContract(Long contractId);
+
+    void invalidateAll();
+
+    enum CheckResult {
+        NO_LOCATIONS, // hợp đồng chưa cấu hình vị trí → bỏ qua kiểm tra
+        INSIDE,
+        OUTSIDE
+    }
+}
@@ -0,0 +1,18 @@
+package com.company.company_clean_hub_be.service;
+
+import java.util.List;
+
+import com.company.company_clean_hub_be.dto.response.InvoiceBulkResultRow;
+import com.company.company_clean_hub_be.dto.response.InvoiceJobResponse;
+
+public interface InvoiceJobService {
+
+    // Xuất hóa đơn cho mọi hợp đồng còn hiệu lực trong tháng, chạy nền theo từng lô hợp đồng;
+    // mỗi tháng chỉ một job chạy tại một thời điểm
+    InvoiceJobResponse startMonthlyInvoicing(Integer month, Integer year, String notes);
+
+    InvoiceJobResponse getJob(String jobId);
+
+    // Kết quả từng hợp đồng của job đã hoàn tất (giữ thứ tự hợp đồng)
+    List<InvoiceBulkResultRow> getReportRows(String jobId);
+}
@@ -3,6 +3,7 @@ package com.company.company_clean_hub_be.service;
 import com.company.company_clean_hub_be.dto.request.InvoiceCreationRequest;
 import com.company.company_clean_hub_be.dto.request.InvoiceUpdateRequest;
 import com.company.company_clean_hub_be.dto.response.BulkInvoiceResponse;
+import com.company.company_clean_hub_be.dto.response.InvoiceBulkResultRow;
 import com.company.company_clean_hub_be.dto.response.InvoiceResponse;
 import com.company.company_clean_hub_be.entity.InvoiceStatus;
 
@@ -12,6 +13,11 @@ import java.util.List;
 public interface InvoiceService {
     InvoiceResponse createInvoice(InvoiceCreationRequest request);
     BulkInvoiceResponse createInvoicesForCustomer(InvoiceCreationRequest request);
+    // Hợp đồng còn hiệu lực trong tháng (đối tượng xuất hóa đơn cả tháng)
+    List<Long> findContractIdsToInvoice(Integer month, Integer year);
+    // Xuất hóa đơn cho một lô hợp đồng: dữ liệu nạp theo lô, mỗi hợp đồng một transaction riêng
+    List<InvoiceBulkResultRow> createInvoicesForContracts(List<Long> contractIds, Integer month, Integer year,
+            Long createdById, String notes);
     InvoiceResponse getInvoice(Long id);
     List<InvoiceResponse> getInvoicesByContract(Long contractId);
     List<InvoiceResponse> getInvoicesByCustomer(Long customerId);
@@ -19,6 +25,8 @@ public interface InvoiceService {
     List<InvoiceResponse> getInvoicesByMonthAndYear(Integer month, Integer year);
     List<InvoiceResponse> getFullInvoicesByMonthAndYear(Integer month, Integer year);
     ByteArrayOutputStream exportInvoicesToExcel(Integer month, Integer year);
+    // Streaming: ghi zip (mỗi hóa đơn một file Excel) thẳng ra output stream, nạp hóa đơn theo lô
+    void writeInvoicesZip(Integer month, Integer year, java.io.OutputStream out);
     com.company.company_clean_hub_be.dto.response.PageResponse<InvoiceResponse> getInvoicesWithFilters(String customerCode, Integer month, Integer year, int page, int pageSize);
     InvoiceResponse updateInvoice(Long id, InvoiceUpdateRequest request);
     void deleteInvoice(Long id);
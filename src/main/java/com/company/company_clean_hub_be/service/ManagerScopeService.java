@@ -0,0 +1,32 @@
+package com.company.company_clean_hub_be.service;
+
+import java.util.List;
+
+/**
+ * Phạm vi dữ liệu của manager (QLT2/QLV): danh sách customer được phân công.
+ * Danh sách được cache theo manager và xoá khi transaction đổi phân công khách hàng commit.
+ * Cache chỉ dùng để lọc danh sách; kiểm tra quyền truy cập một customer cụ thể phải tra DB.
+ * Các truy vấn danh sách lớn nên lọc bằng manager id (join bảng customer_assignments)
+ * thay vì truyền cả danh sách id vào IN (...).
+ */
+public interface ManagerScopeService {
+
+    /**
+     * Id của user hiện tại nếu role thuộc scopedRoles (bị giới hạn phạm vi), ngược lại null (xem toàn bộ).
+     */
+    Long getScopedManagerId(String... scopedRoles);
+
+    /**
+     * Id các customer được phân công cho manager (không đổi được, có thể rỗng).
+     */
+    List<Long> getCustomerIds(Long managerId);
+
+    boolean hasCustomers(Long managerId);
+
+    /**
+     * Xoá scope của manager khi transaction hiện tại commit (không có transaction thì xoá ngay).
+     */
+    void invalidate(Long managerId);
+
+    void invalidateAll();
+}
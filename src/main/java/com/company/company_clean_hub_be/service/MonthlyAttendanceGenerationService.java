@@ -0,0 +1,19 @@
+package com.company.company_clean_hub_be.service;
+
+import java.time.YearMonth;
+import java.util.List;
+
+public interface MonthlyAttendanceGenerationService {
+
+    /**
+     * Sinh Assignment + chấm công (hoặc WorkSchedule nếu hợp đồng yêu cầu chụp ảnh) của
+     * tháng mới từ các assignment tháng trước thuộc cùng một hợp đồng (hoặc một assignment
+     * COMPANY). Mỗi lần gọi là một transaction riêng; assignment đã có trong tháng mới được
+     * bỏ qua nên có thể chạy lại an toàn.
+     */
+    GenerationResult generateForContract(Long contractId, List<Long> sourceAssignmentIds, YearMonth month);
+
+    record GenerationResult(int createdAssignments, int generatedAttendances, int generatedWorkSchedules,
+            int skippedAssignments) {
+    }
+}
@@ -1,11 +1,14 @@
 package com.company.company_clean_hub_be.service;
 
+import com.company.company_clean_hub_be.dto.response.NotificationFeedResponse;
 import com.company.company_clean_hub_be.dto.response.NotificationResponse;
 import com.company.company_clean_hub_be.dto.response.PageResponse;
 import com.company.company_clean_hub_be.entity.Contract;
 import com.company.company_clean_hub_be.entity.NotificationType;
 import com.company.company_clean_hub_be.entity.User;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 public interface NotificationService {
@@ -21,6 +24,33 @@ public interface NotificationService {
                             Long refAssignmentId,
                             Long refContractId);
 
+    /**
+     * Tạo cùng một notification cho nhiều người nhận: một batch insert trong một transaction,
+     * SSE được đẩy bất đồng bộ sau khi commit.
+     * dedupeSince != null → bỏ qua người đã nhận notification cùng loại + hợp đồng
+     * (+ nhân viên nếu refEmployeeId != null) kể từ thời điểm đó.
+     * @return số notification đã tạo
+     */
+    int createNotifications(Collection<Long> recipientIds,
+                            NotificationType type,
+                            String title,
+                            String message,
+                            Long refEmployeeId,
+                            Long refAssignmentId,
+                            Long refContractId,
+                            LocalDateTime dedupeSince);
+
+    /**
+     * Id người nhận theo role (qua cache).
+     */
+    List<Long> getRecipientIdsByRoles(List<String> roleCodes);
+
+    /**
+     * Id người nhận cho 1 hợp đồng: QLT1 (tất cả) + manager thuộc customerManagerRoles
+     * được phân công khách hàng của hợp đồng (qua cache).
+     */
+    List<Long> getRecipientIdsForContract(Contract contract, List<String> customerManagerRoles);
+
     /**
      * Lấy tất cả notification của user đang login.
      */
@@ -49,6 +79,29 @@ public interface NotificationService {
      */
     long countMyUnread();
 
+    /**
+     * Feed notification phân trang keyset theo (created_at, id) giảm dần.
+     * cursor = nextCursor của trang trước (null = trang đầu). Kèm số chưa đọc từ bộ đếm trong bộ nhớ.
+     */
+    NotificationFeedResponse getMyFeed(String type, Boolean isRead, String cursor, int limit);
+
+    /**
+     * Đối soát bộ đếm chưa đọc trong bộ nhớ với DB. Trả về số user bị lệch.
+     */
+    int reconcileUnreadCounters();
+
+    /**
+     * Chuyển một lô notification đã đọc, tạo trước cutoff sang notifications_archive.
+     * Mỗi lô một transaction; trả về số bản ghi đã chuyển (0 = hết).
+     */
+    int archiveReadNotifications(LocalDateTime cutoff, int batchSize);
+
+    /**
+     * Notification của recipient có id > afterId (tối đa limit, cũ nhất trước) — dùng để replay SSE
+     * khi client reconnect với Last-Event-ID.
+     */
+    List<NotificationResponse> getNotificationsAfter(Long recipientId, Long afterId, int limit);
+
     /**
      * Xem chi tiết 1 notification — tự động đánh dấu đã đọc nếu chưa đọc.
      * Chỉ owner mới được xem.
@@ -0,0 +1,24 @@
+package com.company.company_clean_hub_be.service;
+
+import java.util.Iterator;
+import java.util.List;
+
+import com.company.company_clean_hub_be.dto.response.PayRollAssignmentExportExcel;
+import com.company.company_clean_hub_be.dto.response.PayrollJobResponse;
+
+public interface PayrollJobService {
+
+    // Tính lương cả tháng theo từng lô nhân viên, chạy nền
+    PayrollJobResponse startCalculation(Integer month, Integer year);
+
+    // Dựng dữ liệu xuất Excel cả tháng theo từng lô nhân viên, chạy nền
+    PayrollJobResponse startExport(Integer month, Integer year);
+
+    PayrollJobResponse getJob(String jobId);
+
+    // Dữ liệu xuất Excel của job EXPORT đã hoàn tất (giữ thứ tự nhân viên)
+    List<PayRollAssignmentExportExcel> getExportRows(String jobId);
+
+    // Con trỏ dữ liệu xuất Excel: mỗi lô nhân viên chỉ được tính khi iterator đọc tới
+    Iterator<PayRollAssignmentExportExcel> openExportCursor(Integer month, Integer year);
+}
@@ -19,6 +19,13 @@ public interface PayrollService {
 
         List<PayRollAssignmentExportExcel> getAllPayRollByAssignment(Integer month, Integer year);
 
+        // Chunk-level variants used by background payroll jobs (one transaction per call)
+        List<PayrollAssignmentResponse> calculatePayrollForEmployees(List<Long> employeeIds, Integer month,
+                        Integer year, Long accountantId);
+
+        List<PayRollAssignmentExportExcel> getPayRollByAssignmentForEmployees(List<Long> employeeIds, Integer month,
+                        Integer year, Long accountantId);
+
         // PayrollResponse calculatePayroll(PayrollRequest request);
         PayrollResponse getPayrollById(Long id);
 
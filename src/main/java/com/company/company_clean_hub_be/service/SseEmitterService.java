@@ -1,112 +1,311 @@
 package com.company.company_clean_hub_be.service;
 
+import com.company.company_clean_hub_be.dto.response.NotificationResponse;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
-import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 
 /**
- * Quản lý SSE connections của từng user.
- * Khi có notification mới, gọi sendNotification(userId, data) để đẩy real-time.
+ * Hub SSE: quản lý các kết nối real-time của user.
+ * - Mỗi user có thể mở nhiều kết nối (nhiều tab), giới hạn bởi max-connections-per-user.
+ * - Mỗi kết nối có một hàng đợi gửi có giới hạn; luồng gọi sendToUser chỉ đưa event vào hàng đợi,
+ *   việc ghi ra socket do pool riêng sseSenderExecutor đảm nhận nên client chậm không chặn
+ *   transaction tạo notification. Hàng đợi đầy thì bỏ event cũ nhất (client sẽ fetch lại khi cần).
+ * - Một lần ghi treo quá send-timeout-seconds thì kết nối bị bỏ và worker được ngắt, để client treo
+ *   không giữ worker của pool.
+ * - Heartbeat chỉ gửi cho kết nối đang rảnh, không chèn thêm nếu đã có event chờ gửi.
+ * - Event notification mang id = notification id để trình duyệt gửi lại Last-Event-ID khi reconnect.
  */
 @Service
 @Slf4j
 public class SseEmitterService {
 
-    // Key: userId, Value: SseEmitter của user đó
-    private final Map<Long, SseEmitter> emitters = new ConcurrentHashMap<>();
+    private final ThreadPoolTaskExecutor senderExecutor;
+
+    @Value("${sse.queue-capacity:100}")
+    private int queueCapacity;
+
+    @Value("${sse.max-connections-per-user:5}")
+    private int maxConnectionsPerUser;
+
+    @Value("${sse.heartbeat-seconds:15}")
+    private long heartbeatSeconds;
+
+    @Value("${sse.send-timeout-seconds:10}")
+    private long sendTimeoutSeconds;
+
+    // Key: userId, Value: các kết nối đang mở của user đó
+    private final Map<Long, Set<Connection>> connections = new ConcurrentHashMap<>();
+
+    private final AtomicLong connectionSeq = new AtomicLong();
+    private final AtomicLong sentEvents = new AtomicLong();
+    private final AtomicLong droppedEvents = new AtomicLong();
+
+    public SseEmitterService(@Qualifier("sseSenderExecutor") ThreadPoolTaskExecutor senderExecutor) {
+        this.senderExecutor = senderExecutor;
+    }
 
     /**
-     * User kết nối SSE — gọi khi FE mở kết nối.
+     * Thống kê hub (monitor).
      */
-    public SseEmitter subscribe(Long userId) {
-        // Đóng kết nối cũ nếu user này từng kết nối trước đó
-        SseEmitter oldEmitter = emitters.remove(userId);
-        if (oldEmitter != null) {
-            try {
-                oldEmitter.complete();
-            } catch (Exception ignored) {
-            }
+    public record SseStats(int connectedUsers, int connections, long queuedEvents,
+                           long sentEvents, long droppedEvents) {
+    }
+
+    private final class Connection {
+        private final long id = connectionSeq.incrementAndGet();
+        private final Long userId;
+        private final SseEmitter emitter;
+        private final BlockingQueue<SseEmitter.SseEventBuilder> queue;
+        // Đảm bảo tại một thời điểm chỉ có một task drain ghi ra emitter này
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private volatile long lastSentAt = System.currentTimeMillis();
+        // Thời điểm bắt đầu lần ghi đang chạy (0 = không ghi) và worker đang ghi
+        private volatile long sendStartedAt;
+        private volatile Thread sender;
+
+        private Connection(Long userId, SseEmitter emitter) {
+            this.userId = userId;
+            this.emitter = emitter;
+            this.queue = new ArrayBlockingQueue<>(queueCapacity);
         }
+    }
 
+    /**
+     * User kết nối SSE — gọi khi FE mở kết nối.
+     * replay (nullable) trả về các notification bị lỡ kể từ Last-Event-ID; được gọi sau khi kết nối
+     * đã đăng ký nên không mất event, nhưng có thể trùng với event live → FE bỏ trùng theo id.
+     */
+    public SseEmitter subscribe(Long userId, Supplier<List<NotificationResponse>> replay) {
         // Timeout = 0L (không bao giờ timeout từ phía Spring MVC, giữ kết nối bằng heartbeat @Scheduled)
         SseEmitter emitter = new SseEmitter(0L);
+        Connection connection = new Connection(userId, emitter);
 
-        emitters.put(userId, emitter);
-        log.info("SSE subscribed: userId={}", userId);
+        Set<Connection> userConnections = connections.compute(userId, (k, set) -> {
+            Set<Connection> result = set != null ? set : ConcurrentHashMap.newKeySet();
+            result.add(connection);
+            return result;
+        });
+        evictOldestIfNeeded(userConnections);
+        log.info("SSE subscribed: userId={}, connectionId={}, userConnections={}",
+                userId, connection.id, userConnections.size());
 
         emitter.onCompletion(() -> {
-            emitters.remove(userId, emitter);
-            log.info("SSE completed: userId={}", userId);
+            remove(connection);
+            log.info("SSE completed: userId={}, connectionId={}", userId, connection.id);
         });
         emitter.onTimeout(() -> {
-            emitters.remove(userId, emitter);
-            log.info("SSE timeout: userId={}", userId);
-            try {
-                emitter.complete();
-            } catch (Exception ignored) {
-            }
+            log.info("SSE timeout: userId={}, connectionId={}", userId, connection.id);
+            close(connection);
         });
         emitter.onError(e -> {
-            emitters.remove(userId, emitter);
-            log.warn("SSE error userId={}: {}", userId, e.getMessage());
+            remove(connection);
+            log.warn("SSE error userId={}, connectionId={}: {}", userId, connection.id, e.getMessage());
         });
 
-        // Gửi event ping đầu tiên để xác nhận kết nối thành công
-        try {
-            emitter.send(SseEmitter.event().name("connected").data("ok"));
-        } catch (IOException e) {
-            emitters.remove(userId, emitter);
+        // Gửi event đầu tiên để xác nhận kết nối thành công
+        enqueue(connection, SseEmitter.event().name("connected").data("ok"));
+
+        if (replay != null) {
+            try {
+                List<NotificationResponse> missed = replay.get();
+                for (NotificationResponse n : missed) {
+                    enqueue(connection, notificationEvent(n.getId(), n));
+                }
+                if (!missed.isEmpty()) {
+                    log.info("SSE replayed {} notification(s) to userId={}", missed.size(), userId);
+                }
+            } catch (Exception e) {
+                log.warn("SSE replay failed for userId={}: {}", userId, e.getMessage());
+            }
         }
 
         return emitter;
     }
 
+    public SseEmitter subscribe(Long userId) {
+        return subscribe(userId, null);
+    }
+
     /**
-     * Gửi notification real-time đến 1 user cụ thể.
-     * Gọi method này sau khi lưu Notification vào DB.
+     * Gửi notification real-time đến mọi kết nối của 1 user.
+     * Không chặn: chỉ đưa vào hàng đợi của từng kết nối.
      */
-    public void sendToUser(Long userId, Object data) {
-        SseEmitter emitter = emitters.get(userId);
-        if (emitter == null) {
+    public void sendToUser(Long userId, Long eventId, Object data) {
+        Set<Connection> userConnections = connections.get(userId);
+        if (userConnections == null || userConnections.isEmpty()) {
             // User không đang mở tab → không cần gửi SSE, FE sẽ fetch khi mở lại
             return;
         }
-        try {
-            emitter.send(SseEmitter.event()
-                    .name("notification")
-                    .data(data));
-            log.info("SSE notification sent to userId={}", userId);
-        } catch (IOException e) {
-            emitters.remove(userId);
-            log.warn("SSE send failed for userId={}: {}", userId, e.getMessage());
+        for (Connection connection : userConnections) {
+            enqueue(connection, notificationEvent(eventId, data));
         }
     }
 
+    public void sendToUser(Long userId, Object data) {
+        sendToUser(userId, null, data);
+    }
+
     /**
      * Đếm số user đang kết nối SSE (debug/monitor).
      */
     public int getConnectedCount() {
-        return emitters.size();
+        return connections.size();
+    }
+
+    public SseStats getStats() {
+        int total = 0;
+        long queued = 0;
+        for (Set<Connection> userConnections : connections.values()) {
+            for (Connection connection : userConnections) {
+                total++;
+                queued += connection.queue.size();
+            }
+        }
+        return new SseStats(connections.size(), total, queued, sentEvents.get(), droppedEvents.get());
     }
 
     /**
-     * Định kỳ 15 giây gửi gói tin heartbeat ping để giữ kết nối TCP luôn thông suốt.
-     * Tự động dọn dẹp các kết nối đã ngắt khỏi Memory.
+     * Heartbeat để giữ kết nối TCP: chỉ gửi cho kết nối không có event nào trong heartbeat-seconds
+     * và hàng đợi đang rỗng. Kết nối còn event chờ mà không có worker đang ghi (pool từng từ chối drain)
+     * thì được lên lịch drain lại. Kết nối chết sẽ bị dọn khi ghi lỗi.
      */
-    @org.springframework.scheduling.annotation.Scheduled(fixedRate = 15000)
+    @Scheduled(fixedRate = 5000)
     public void sendHeartbeat() {
-        if (emitters.isEmpty()) return;
-        emitters.forEach((userId, emitter) -> {
-            try {
-                emitter.send(SseEmitter.event().comment("ping"));
-            } catch (Exception e) {
-                emitters.remove(userId);
-                log.debug("Removed dead SSE emitter for userId={}", userId);
+        if (connections.isEmpty()) return;
+        long idleBefore = System.currentTimeMillis() - heartbeatSeconds * 1000;
+        connections.values().forEach(userConnections -> userConnections.forEach(connection -> {
+            if (!connection.queue.isEmpty()) {
+                if (!connection.draining.get() && !connection.closed.get()) {
+                    scheduleDrain(connection);
+                }
+            } else if (connection.lastSentAt < idleBefore) {
+                enqueue(connection, SseEmitter.event().comment("ping"));
+            }
+        }));
+    }
+
+    /**
+     * Bỏ các kết nối có lần ghi treo quá send-timeout-seconds và ngắt worker đang ghi để trả worker
+     * về pool.
+     */
+    @Scheduled(fixedRate = 5000)
+    public void dropStalledSends() {
+        if (connections.isEmpty()) return;
+        long stalledBefore = System.currentTimeMillis() - sendTimeoutSeconds * 1000;
+        connections.values().forEach(userConnections -> userConnections.forEach(connection -> {
+            long startedAt = connection.sendStartedAt;
+            if (startedAt == 0 || startedAt >= stalledBefore) return;
+            log.warn("SSE send stalled for userId={}, connectionId={}, dropping connection",
+                    connection.userId, connection.id);
+            Thread sender = connection.sender;
+            close(connection);
+            if (sender != null && connection.sendStartedAt == startedAt) {
+                sender.interrupt();
+            }
+        }));
+    }
+
+    private SseEmitter.SseEventBuilder notificationEvent(Long eventId, Object data) {
+        SseEmitter.SseEventBuilder event = SseEmitter.event().name("notification").data(data);
+        if (eventId != null) {
+            event.id(String.valueOf(eventId));
+        }
+        return event;
+    }
+
+    private void enqueue(Connection connection, SseEmitter.SseEventBuilder event) {
+        if (connection.closed.get()) return;
+        while (!connection.queue.offer(event)) {
+            // Hàng đợi đầy (client quá chậm): bỏ event cũ nhất
+            if (connection.queue.poll() != null) {
+                droppedEvents.incrementAndGet();
+            }
+        }
+        scheduleDrain(connection);
+    }
+
+    private void scheduleDrain(Connection connection) {
+        if (!connection.draining.compareAndSet(false, true)) return;
+        try {
+            senderExecutor.execute(() -> drain(connection));
+        } catch (TaskRejectedException e) {
+            // Pool quá tải: lần enqueue sau hoặc heartbeat kế tiếp (≤ 5s) sẽ lên lịch drain lại
+            connection.draining.set(false);
+            log.warn("SSE sender pool rejected drain for userId={}", connection.userId);
+        }
+    }
+
+    private void drain(Connection connection) {
+        connection.sender = Thread.currentThread();
+        try {
+            SseEmitter.SseEventBuilder event;
+            while (!connection.closed.get() && (event = connection.queue.poll()) != null) {
+                connection.sendStartedAt = System.currentTimeMillis();
+                connection.emitter.send(event);
+                connection.sendStartedAt = 0;
+                connection.lastSentAt = System.currentTimeMillis();
+                sentEvents.incrementAndGet();
             }
+        } catch (Exception e) {
+            log.debug("Removed dead SSE emitter for userId={}, connectionId={}: {}",
+                    connection.userId, connection.id, e.getMessage());
+            close(connection);
+        } finally {
+            connection.sendStartedAt = 0;
+            connection.sender = null;
+            connection.draining.set(false);
+            // Không để cờ ngắt của dropStalledSends lan sang task kế tiếp của worker
+            Thread.interrupted();
+        }
+        // Event đến trong lúc đang kết thúc drain
+        if (!connection.closed.get() && !connection.queue.isEmpty()) {
+            scheduleDrain(connection);
+        }
+    }
+
+    private void evictOldestIfNeeded(Set<Connection> userConnections) {
+        if (userConnections.size() <= maxConnectionsPerUser) return;
+        List<Connection> sorted = new ArrayList<>(userConnections);
+        sorted.sort(Comparator.comparingLong(c -> c.id));
+        for (int i = 0; i < sorted.size() - maxConnectionsPerUser; i++) {
+            log.info("SSE evict oldest connection: userId={}, connectionId={}", sorted.get(i).userId, sorted.get(i).id);
+            close(sorted.get(i));
+        }
+    }
+
+    private void close(Connection connection) {
+        remove(connection);
+        try {
+            connection.emitter.complete();
+        } catch (Exception ignored) {
+        }
+    }
+
+    private void remove(Connection connection) {
+        if (!connection.closed.compareAndSet(false, true)) return;
+        connection.queue.clear();
+        connections.computeIfPresent(connection.userId, (k, set) -> {
+            set.remove(connection);
+            return set.isEmpty() ? null : set;
         });
     }
 }
@@ -47,6 +47,16 @@ public interface VerificationService {
     // Auto-approval
     void processAutoApprovals();
 
+    AutoApprovalStats getAutoApprovalStats();
+
+    /**
+     * Thống kê các lần quét auto-approve (monitor): tổng số lần chạy / số đã duyệt và số liệu lần chạy gần nhất.
+     */
+    record AutoApprovalStats(long runs, long approvedTotal, java.time.LocalDateTime lastRunAt, long lastDurationMs,
+                             int lastCandidates, int lastEligible, int lastApproved, int lastFailed) {
+        public static final AutoApprovalStats EMPTY = new AutoApprovalStats(0, 0, null, 0, 0, 0, 0, 0);
+    }
+
     // Sync state
     void syncContractVerificationState(com.company.company_clean_hub_be.entity.Contract contract, boolean requiresVerification);
     
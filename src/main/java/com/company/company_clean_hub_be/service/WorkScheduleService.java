@@ -51,6 +51,9 @@ public interface WorkScheduleService {
     // Photo capture
     WorkScheduleResponse capturePhoto(WorkScheduleCaptureRequest request);
 
+    // Xử lý nền sau khi chụp ảnh (auto-approve) cho một sự kiện outbox
+    void completeCaptureFollowUp(Long captureEventId);
+
     // Mark missed (cron job)
     void markMissedCheckIns(LocalDate date);
 
@@ -0,0 +1,109 @@
+package com.company.company_clean_hub_be.service.helper;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.Objects;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+import com.company.company_clean_hub_be.entity.Attendance;
+import com.company.company_clean_hub_be.service.AttendanceSummaryService;
+
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Entity listener của Attendance: insert / update (kể cả xóa mềm, khôi phục) / delete qua JPA
+ * đánh dấu tháng của assignment để bảng tổng hợp chấm công được tính lại trước khi commit.
+ * Update không đổi các cột bảng tổng hợp dùng (ảnh chấm công, gắn payroll...) được bỏ qua.
+ * Hibernate tạo listener qua Spring nên dùng ObjectProvider để tránh vòng phụ thuộc với EntityManagerFactory.
+ */
+@Component
+@RequiredArgsConstructor
+public class AttendanceSummaryListener {
+
+    private final ObjectProvider<AttendanceSummaryService> attendanceSummaryService;
+
+    /**
+     * Giá trị các cột bảng tổng hợp dùng, chụp lúc nạp / ghi để so với lần update sau.
+     */
+    public record SummaryState(Long assignmentId, LocalDate date, boolean deleted, BigDecimal bonus,
+            BigDecimal penalty, BigDecimal supportCost) {
+
+        static SummaryState of(Attendance attendance) {
+            return new SummaryState(
+                    attendance.getAssignment() != null ? attendance.getAssignment().getId() : null,
+                    attendance.getDate(),
+                    Boolean.TRUE.equals(attendance.getDeleted()),
+                    attendance.getBonus(),
+                    attendance.getPenalty(),
+                    attendance.getSupportCost());
+        }
+
+        boolean sameMonth(SummaryState other) {
+            return Objects.equals(assignmentId, other.assignmentId)
+                    && Objects.equals(month(), other.month());
+        }
+
+        boolean sameTotals(SummaryState other) {
+            return deleted == other.deleted
+                    && sameAmount(bonus, other.bonus)
+                    && sameAmount(penalty, other.penalty)
+                    && sameAmount(supportCost, other.supportCost);
+        }
+
+        private YearMonth month() {
+            return date != null ? YearMonth.from(date) : null;
+        }
+
+        private static boolean sameAmount(BigDecimal a, BigDecimal b) {
+            return a == null ? b == null : b != null && a.compareTo(b) == 0;
+        }
+    }
+
+    @PostLoad
+    public void onAttendanceLoaded(Attendance attendance) {
+        attendance.setLoadedSummaryState(SummaryState.of(attendance));
+    }
+
+    @PostPersist
+    public void onAttendanceCreated(Attendance attendance) {
+        SummaryState current = SummaryState.of(attendance);
+        mark(current);
+        attendance.setLoadedSummaryState(current);
+    }
+
+    @PostUpdate
+    public void onAttendanceUpdated(Attendance attendance) {
+        SummaryState current = SummaryState.of(attendance);
+        SummaryState previous = attendance.getLoadedSummaryState();
+        if (previous == null) {
+            // Entity không nạp qua persistence context này (merge bản detached): không biết giá trị cũ
+            mark(current);
+        } else if (!previous.sameMonth(current)) {
+            // Đổi assignment hoặc sang tháng khác: cả tháng cũ và tháng mới đều thay đổi
+            mark(previous);
+            mark(current);
+        } else if (!previous.sameTotals(current)) {
+            mark(current);
+        }
+        attendance.setLoadedSummaryState(current);
+    }
+
+    @PostRemove
+    public void onAttendanceRemoved(Attendance attendance) {
+        SummaryState previous = attendance.getLoadedSummaryState();
+        mark(previous != null ? previous : SummaryState.of(attendance));
+    }
+
+    private void mark(SummaryState state) {
+        if (state.assignmentId() != null) {
+            attendanceSummaryService.getObject().markDirty(state.assignmentId(), state.date());
+        }
+    }
+}
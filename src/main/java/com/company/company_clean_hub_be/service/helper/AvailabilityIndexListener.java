@@ -0,0 +1,43 @@
+package com.company.company_clean_hub_be.service.helper;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+import com.company.company_clean_hub_be.entity.Assignment;
+import com.company.company_clean_hub_be.entity.Contract;
+
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Entity listener của Assignment và Contract: tạo / kết thúc / hoàn thành / xóa assignment và sửa hợp đồng
+ * qua JPA đánh dấu các nhân viên cần nạp lại trong EmployeeAvailabilityIndex sau khi commit.
+ * Hibernate tạo listener qua Spring nên dùng ObjectProvider để tránh vòng phụ thuộc với EntityManagerFactory.
+ */
+@Component
+@RequiredArgsConstructor
+public class AvailabilityIndexListener {
+
+    private final ObjectProvider<EmployeeAvailabilityIndex> availabilityIndex;
+
+    @PostPersist
+    @PostUpdate
+    public void onChanged(Object entity) {
+        dispatch(entity, false);
+    }
+
+    @PostRemove
+    public void onRemoved(Object entity) {
+        dispatch(entity, true);
+    }
+
+    private void dispatch(Object entity, boolean removed) {
+        if (entity instanceof Assignment assignment) {
+            availabilityIndex.getObject().onAssignmentChanged(assignment, removed);
+        } else if (entity instanceof Contract contract) {
+            availabilityIndex.getObject().onContractChanged(contract.getId());
+        }
+    }
+}
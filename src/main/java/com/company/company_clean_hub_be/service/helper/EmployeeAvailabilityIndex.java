@@ -0,0 +1,406 @@
+package com.company.company_clean_hub_be.service.helper;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.company.company_clean_hub_be.entity.Assignment;
+import com.company.company_clean_hub_be.entity.AssignmentStatus;
+import com.company.company_clean_hub_be.repository.AssignmentRepository;
+import com.company.company_clean_hub_be.repository.ContractRepository;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Chỉ mục lịch bận của nhân viên, giữ trong bộ nhớ: mỗi assignment IN_PROGRESS / SCHEDULED thuộc hợp đồng
+ * là một khung (ngày hiệu lực, bitmap thứ trong tuần, giờ bắt đầu–kết thúc theo phút).
+ * Lần dùng đầu tiên nạp toàn bộ từ DB; sau đó AvailabilityIndexListener đánh dấu nhân viên / hợp đồng
+ * bị thay đổi và chỉ các nhân viên đó được nạp lại sau khi transaction commit.
+ * Job dựng lại hàng đêm ghi đè toàn bộ để sửa lệch (bulk update, thay đổi ngày làm việc của hợp đồng...).
+ * Mỗi lần nạp lấy số phiên bản trước khi đọc DB; lần nạp cũ hơn không ghi đè dữ liệu của lần nạp mới hơn.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class EmployeeAvailabilityIndex {
+
+    public static final int ALL_DAYS = 0x7F;
+
+    private static final List<AssignmentStatus> ACTIVE_STATUSES = List.of(AssignmentStatus.IN_PROGRESS,
+            AssignmentStatus.SCHEDULED);
+    private static final int CHUNK_SIZE = 1000;
+
+    private final AssignmentRepository assignmentRepository;
+    private final ContractRepository contractRepository;
+
+    /**
+     * Khung bận của một assignment. startMinute / endMinute = -1 khi hợp đồng không có khung giờ
+     * (không bao giờ trùng). endDate null = không giới hạn; startDate null = không bao giờ trùng.
+     */
+    public record BookedSlot(long assignmentId, long employeeId, long contractId, LocalDate startDate,
+                             LocalDate endDate, int dayMask, int startMinute, int endMinute) {
+
+        public boolean hasTime() {
+            return startMinute >= 0 && endMinute >= 0;
+        }
+
+        public LocalTime startTime() {
+            return hasTime() ? LocalTime.ofSecondOfDay(startMinute * 60L) : null;
+        }
+
+        public LocalTime endTime() {
+            return hasTime() ? LocalTime.ofSecondOfDay(endMinute * 60L) : null;
+        }
+    }
+
+    /**
+     * Khung bị trùng và ngày đầu tiên trùng.
+     */
+    public record Conflict(BookedSlot slot, LocalDate date) {
+    }
+
+    // Key: employeeId, Value: danh sách khung bận (không đổi, thay nguyên danh sách khi nạp lại)
+    private volatile Map<Long, List<BookedSlot>> slotsByEmployee;
+    // Key: assignmentId — để listener biết assignment có đang nằm trong chỉ mục không
+    private volatile Map<Long, BookedSlot> slotsByAssignment;
+
+    private final Object writeLock = new Object();
+
+    // Phiên bản tăng dần, lấy trước khi đọc DB
+    private final AtomicLong loadSeq = new AtomicLong();
+    // Key: employeeId, Value: phiên bản của lần nạp đã ghi danh sách hiện tại (chỉ sửa trong writeLock)
+    private Map<Long, Long> employeeVersions = new HashMap<>();
+
+    /**
+     * Các nhân viên / hợp đồng thay đổi trong transaction hiện tại; nạp lại sau khi commit.
+     */
+    private final class PendingRefresh implements TransactionSynchronization {
+        private final Set<Long> employeeIds = new LinkedHashSet<>();
+        private final Set<Long> contractIds = new LinkedHashSet<>();
+
+        @Override
+        public void afterCommit() {
+            try {
+                refresh(employeeIds, contractIds);
+            } catch (Exception e) {
+                // Chỉ mục lệch đến lần nạp lại sau / job dựng lại hàng đêm
+                log.warn("[AVAILABILITY-INDEX] Nạp lại thất bại employeeIds={}, contractIds={}: {}",
+                        employeeIds, contractIds, e.getMessage());
+            }
+        }
+    }
+
+    // ───────────────────────────── Truy vấn ─────────────────────────────
+
+    public static int toDayMask(Collection<DayOfWeek> days) {
+        if (days == null) {
+            return ALL_DAYS;
+        }
+        int mask = 0;
+        for (DayOfWeek day : days) {
+            if (day != null) {
+                mask |= dayBit(day);
+            }
+        }
+        return mask;
+    }
+
+    public static int dayBit(DayOfWeek day) {
+        return 1 << (day.getValue() - 1);
+    }
+
+    public List<BookedSlot> getSlots(Long employeeId) {
+        return slotsByEmployee().getOrDefault(employeeId, List.of());
+    }
+
+    /**
+     * Khung đầu tiên của nhân viên trùng giờ [start, end) vào một ngày trong [from, to] thuộc dayMask.
+     * Giống findAssignmentsWithTimeConflict + kiểm tra workingDays của cả hai hợp đồng.
+     *
+     * @param to null = không giới hạn
+     * @return null nếu nhân viên rảnh
+     */
+    public Conflict findConflict(Long employeeId, LocalDate from, LocalDate to, int dayMask,
+                                 LocalTime start, LocalTime end, Long excludeAssignmentId) {
+        if (employeeId == null || from == null || start == null || end == null || dayMask == 0) {
+            return null;
+        }
+        int startMinute = toMinute(start);
+        int endMinute = toMinute(end);
+        Conflict first = null;
+        for (BookedSlot slot : getSlots(employeeId)) {
+            if (!slot.hasTime() || Objects.equals(slot.assignmentId(), excludeAssignmentId)
+                    || slot.startMinute() >= endMinute || slot.endMinute() <= startMinute) {
+                continue;
+            }
+            LocalDate date = firstCommonDay(slot, from, to, dayMask);
+            if (date != null && (first == null || date.isBefore(first.date()))) {
+                first = new Conflict(slot, date);
+            }
+        }
+        return first;
+    }
+
+    public boolean isFree(Long employeeId, LocalDate from, LocalDate to, int dayMask, LocalTime start, LocalTime end) {
+        return findConflict(employeeId, from, to, dayMask, start, end, null) == null;
+    }
+
+    // Ngày sớm nhất trong giao của [from, to], thời gian hiệu lực của khung, có thứ thuộc cả hai bitmap.
+    // Khung không có startDate không bao giờ trùng (findAssignmentsWithTimeConflict lọc a.startDate <= ngày)
+    private static LocalDate firstCommonDay(BookedSlot slot, LocalDate from, LocalDate to, int dayMask) {
+        int common = slot.dayMask() & dayMask;
+        if (common == 0 || slot.startDate() == null) {
+            return null;
+        }
+        LocalDate lower = slot.startDate().isAfter(from) ? slot.startDate() : from;
+        LocalDate upper = to;
+        if (slot.endDate() != null && (upper == null || slot.endDate().isBefore(upper))) {
+            upper = slot.endDate();
+        }
+        // Quá 7 ngày thì chắc chắn gặp đủ các thứ, chỉ cần tìm ngày đầu tiên
+        for (int i = 0; i < 7; i++) {
+            LocalDate date = lower.plusDays(i);
+            if (upper != null && date.isAfter(upper)) {
+                return null;
+            }
+            if ((common & dayBit(date.getDayOfWeek())) != 0) {
+                return date;
+            }
+        }
+        return null;
+    }
+
+    private static int toMinute(LocalTime time) {
+        return time.getHour() * 60 + time.getMinute();
+    }
+
+    // ───────────────────────────── Cập nhật ─────────────────────────────
+
+    /**
+     * Gọi từ listener khi assignment được thêm / sửa / xóa qua JPA. Chỉ đánh dấu khi thay đổi ảnh hưởng
+     * chỉ mục (trạng thái hoạt động, nhân viên, hợp đồng, ngày hiệu lực).
+     */
+    public void onAssignmentChanged(Assignment assignment, boolean removed) {
+        if (slotsByAssignment == null || assignment.getId() == null) {
+            return; // Chưa nạp: lần dùng đầu tiên sẽ đọc từ DB
+        }
+        BookedSlot existing = slotsByAssignment.get(assignment.getId());
+        Long employeeId = assignment.getEmployee() != null ? assignment.getEmployee().getId() : null;
+        Long contractId = assignment.getContract() != null ? assignment.getContract().getId() : null;
+        boolean indexed = !removed && contractId != null && employeeId != null
+                && ACTIVE_STATUSES.contains(assignment.getStatus());
+
+        if (existing == null && !indexed) {
+            return;
+        }
+        if (existing != null && indexed
+                && existing.employeeId() == employeeId
+                && existing.contractId() == contractId
+                && Objects.equals(existing.startDate(), assignment.getStartDate())
+                && Objects.equals(existing.endDate(), assignment.getEndDate())) {
+            return;
+        }
+        Set<Long> employeeIds = new LinkedHashSet<>();
+        if (existing != null) {
+            employeeIds.add(existing.employeeId());
+        }
+        if (indexed) {
+            employeeIds.add(employeeId);
+        }
+        scheduleRefresh(employeeIds, Set.of());
+    }
+
+    /**
+     * Gọi từ listener khi hợp đồng được sửa / xóa: nạp lại các nhân viên đang có assignment thuộc hợp đồng.
+     */
+    public void onContractChanged(Long contractId) {
+        if (slotsByAssignment == null || contractId == null) {
+            return;
+        }
+        scheduleRefresh(Set.of(), Set.of(contractId));
+    }
+
+    private void scheduleRefresh(Set<Long> employeeIds, Set<Long> contractIds) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            // Không có transaction: dữ liệu đã ghi, nạp lại ngay
+            refresh(employeeIds, contractIds);
+            return;
+        }
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (synchronization instanceof PendingRefresh pending) {
+                pending.employeeIds.addAll(employeeIds);
+                pending.contractIds.addAll(contractIds);
+                return;
+            }
+        }
+        PendingRefresh pending = new PendingRefresh();
+        pending.employeeIds.addAll(employeeIds);
+        pending.contractIds.addAll(contractIds);
+        TransactionSynchronizationManager.registerSynchronization(pending);
+    }
+
+    /**
+     * Nạp lại khung của các nhân viên, cùng các nhân viên có assignment thuộc contractIds.
+     */
+    public void refresh(Collection<Long> employeeIds, Collection<Long> contractIds) {
+        if (slotsByAssignment == null) {
+            return;
+        }
+        Set<Long> targets = new LinkedHashSet<>(employeeIds);
+        if (!contractIds.isEmpty()) {
+            for (BookedSlot slot : slotsByAssignment.values()) {
+                if (contractIds.contains(slot.contractId())) {
+                    targets.add(slot.employeeId());
+                }
+            }
+            targets.addAll(assignmentRepository.findEmployeeIdsByContractIdsAndStatuses(contractIds, ACTIVE_STATUSES));
+        }
+        if (targets.isEmpty()) {
+            return;
+        }
+        long version = loadSeq.incrementAndGet();
+        Map<Long, List<BookedSlot>> loaded = new HashMap<>();
+        for (List<Long> chunk : chunks(new ArrayList<>(targets))) {
+            load(assignmentRepository.findAvailabilitySlotsByEmployeeIds(ACTIVE_STATUSES, chunk), loaded);
+        }
+        int applied = 0;
+        synchronized (writeLock) {
+            for (Long employeeId : targets) {
+                // Lần nạp khác bắt đầu sau lần này đã ghi trước: dữ liệu ở đây cũ hơn
+                if (employeeVersions.getOrDefault(employeeId, 0L) > version) {
+                    continue;
+                }
+                employeeVersions.put(employeeId, version);
+                List<BookedSlot> slots = loaded.containsKey(employeeId) ? List.copyOf(loaded.get(employeeId)) : null;
+                // Thay nguyên danh sách trong một thao tác: luồng đọc không thấy nhân viên "rảnh" giữa chừng
+                List<BookedSlot> previous = slots != null
+                        ? slotsByEmployee.put(employeeId, slots)
+                        : slotsByEmployee.remove(employeeId);
+                if (slots != null) {
+                    slots.forEach(slot -> slotsByAssignment.put(slot.assignmentId(), slot));
+                }
+                if (previous != null) {
+                    previous.stream()
+                            .filter(slot -> slots == null || slots.stream()
+                                    .noneMatch(s -> s.assignmentId() == slot.assignmentId()))
+                            .forEach(slot -> slotsByAssignment.remove(slot.assignmentId(), slot));
+                }
+                applied++;
+            }
+        }
+        log.debug("[AVAILABILITY-INDEX] Nạp lại {}/{} nhân viên (phiên bản {})", applied, targets.size(), version);
+    }
+
+    /**
+     * Dựng lại toàn bộ chỉ mục từ DB.
+     *
+     * @return Số khung bận
+     */
+    public int rebuild() {
+        long startedAt = System.currentTimeMillis();
+        long version = loadSeq.incrementAndGet();
+        Map<Long, List<BookedSlot>> loaded = new HashMap<>();
+        int count = load(assignmentRepository.findAvailabilitySlots(ACTIVE_STATUSES), loaded);
+
+        Map<Long, List<BookedSlot>> byEmployee = new ConcurrentHashMap<>();
+        Map<Long, BookedSlot> byAssignment = new ConcurrentHashMap<>();
+        loaded.forEach((employeeId, slots) -> {
+            byEmployee.put(employeeId, List.copyOf(slots));
+            slots.forEach(slot -> byAssignment.put(slot.assignmentId(), slot));
+        });
+        synchronized (writeLock) {
+            // Nhân viên được nạp lại bởi lần nạp bắt đầu sau lần dựng này: giữ dữ liệu mới hơn đó
+            Map<Long, Long> versions = new HashMap<>();
+            employeeVersions.forEach((employeeId, employeeVersion) -> {
+                if (employeeVersion <= version) {
+                    return;
+                }
+                versions.put(employeeId, employeeVersion);
+                List<BookedSlot> stale = byEmployee.remove(employeeId);
+                if (stale != null) {
+                    stale.forEach(slot -> byAssignment.remove(slot.assignmentId()));
+                }
+                List<BookedSlot> newer = slotsByEmployee.get(employeeId);
+                if (newer != null) {
+                    byEmployee.put(employeeId, newer);
+                    newer.forEach(slot -> byAssignment.put(slot.assignmentId(), slot));
+                }
+            });
+            employeeVersions = versions;
+            slotsByEmployee = byEmployee;
+            slotsByAssignment = byAssignment;
+        }
+        log.info("[AVAILABILITY-INDEX] Dựng lại: {} khung của {} nhân viên, {}ms",
+                count, byEmployee.size(), System.currentTimeMillis() - startedAt);
+        return count;
+    }
+
+    private Map<Long, List<BookedSlot>> slotsByEmployee() {
+        Map<Long, List<BookedSlot>> current = slotsByEmployee;
+        if (current == null) {
+            synchronized (this) {
+                if (slotsByEmployee == null) {
+                    rebuild();
+                }
+                current = slotsByEmployee;
+            }
+        }
+        return current;
+    }
+
+    // rows: [assignmentId, employeeId, contractId, startDate, endDate, workStartTime, workEndTime]
+    private int load(List<Object[]> rows, Map<Long, List<BookedSlot>> target) {
+        Map<Long, Integer> dayMasks = loadDayMasks(rows.stream().map(r -> (Long) r[2]).distinct().toList());
+        for (Object[] row : rows) {
+            Long contractId = (Long) row[2];
+            LocalTime start = (LocalTime) row[5];
+            LocalTime end = (LocalTime) row[6];
+            boolean hasTime = start != null && end != null;
+            BookedSlot slot = new BookedSlot(
+                    (Long) row[0],
+                    (Long) row[1],
+                    contractId,
+                    (LocalDate) row[3],
+                    (LocalDate) row[4],
+                    dayMasks.getOrDefault(contractId, 0),
+                    hasTime ? toMinute(start) : -1,
+                    hasTime ? toMinute(end) : -1);
+            target.computeIfAbsent(slot.employeeId(), id -> new ArrayList<>()).add(slot);
+        }
+        return rows.size();
+    }
+
+    // Hợp đồng không có dòng nào trong contract_working_days → 0 (giống workingDaysPerWeek rỗng: không trùng)
+    private Map<Long, Integer> loadDayMasks(List<Long> contractIds) {
+        Map<Long, Integer> masks = new HashMap<>();
+        for (List<Long> chunk : chunks(contractIds)) {
+            for (Object[] row : contractRepository.findWorkingDaysByContractIds(chunk)) {
+                masks.merge((Long) row[0], dayBit((DayOfWeek) row[1]), (a, b) -> a | b);
+            }
+        }
+        return masks;
+    }
+
+    private static List<List<Long>> chunks(List<Long> ids) {
+        List<List<Long>> chunks = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i += CHUNK_SIZE) {
+            chunks.add(ids.subList(i, Math.min(ids.size(), i + CHUNK_SIZE)));
+        }
+        return chunks;
+    }
+}
@@ -0,0 +1,87 @@
+package com.company.company_clean_hub_be.service.helper;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.company.company_clean_hub_be.repository.CustomerAssignmentRepository;
+import com.company.company_clean_hub_be.repository.UserRepository;
+import com.company.company_clean_hub_be.util.AfterCommit;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Cache id người nhận thông báo: role → user ids và customer → manager ids.
+ * Danh sách quản lý rất ít thay đổi nên giữ trong bộ nhớ có TTL; được xoá khi transaction thay đổi
+ * user hoặc phân công khách hàng commit.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class NotificationRecipientResolver {
+
+    private final UserRepository userRepository;
+    private final CustomerAssignmentRepository customerAssignmentRepository;
+
+    @Value("${notification.recipient-cache-ttl-seconds:300}")
+    private long ttlSeconds;
+
+    private record Entry(List<Long> ids, long loadedAt) {
+    }
+
+    private final Map<String, Entry> idsByRole = new ConcurrentHashMap<>();
+    private final Map<String, Entry> managerIdsByCustomer = new ConcurrentHashMap<>();
+
+    /**
+     * Id tất cả user thuộc các role (không trùng, giữ thứ tự role truyền vào).
+     */
+    public List<Long> getUserIdsByRoles(Collection<String> roleCodes) {
+        Set<Long> result = new LinkedHashSet<>();
+        for (String roleCode : roleCodes) {
+            result.addAll(cached(idsByRole, roleCode, () -> userRepository.findIdsByRoleCode(roleCode)));
+        }
+        return new ArrayList<>(result);
+    }
+
+    /**
+     * Id các manager (thuộc roleCodes) được phân công quản lý customer.
+     */
+    public List<Long> getCustomerManagerIds(Long customerId, Collection<String> roleCodes) {
+        if (customerId == null) return List.of();
+        Set<String> roles = new TreeSet<>(roleCodes);
+        String key = customerId + ":" + String.join(",", roles);
+        return cached(managerIdsByCustomer, key,
+                () -> customerAssignmentRepository.findManagerIdsByCustomerIdAndRoleCodes(customerId, roles));
+    }
+
+    /**
+     * Gọi khi user (role) hoặc phân công khách hàng thay đổi; cache được xoá khi transaction hiện tại commit.
+     */
+    public void invalidate() {
+        AfterCommit.run(() -> {
+            idsByRole.clear();
+            managerIdsByCustomer.clear();
+            log.debug("[NOTIFY] Recipient cache invalidated");
+        });
+    }
+
+    private List<Long> cached(Map<String, Entry> cache, String key, Supplier<List<Long>> loader) {
+        long now = System.currentTimeMillis();
+        Entry entry = cache.get(key);
+        if (entry == null || now - entry.loadedAt() > ttlSeconds * 1000) {
+            entry = new Entry(List.copyOf(loader.get()), now);
+            cache.put(key, entry);
+        }
+        return entry.ids();
+    }
+}
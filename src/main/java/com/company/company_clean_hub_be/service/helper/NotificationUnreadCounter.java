@@ -0,0 +1,68 @@
+package com.company.company_clean_hub_be.service.helper;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.stereotype.Component;
+
+import com.company.company_clean_hub_be.repository.NotificationRepository;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Bộ đếm notification chưa đọc của từng user, giữ trong bộ nhớ cho badge trên UI.
+ * Lần đọc đầu tiên lấy từ DB; sau đó cập nhật theo delta khi tạo / đánh dấu đã đọc
+ * (gọi sau khi transaction commit). Job đối soát định kỳ ghi đè bằng số liệu DB để sửa lệch.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class NotificationUnreadCounter {
+
+    private final NotificationRepository notificationRepository;
+
+    // Key: userId, Value: số notification chưa đọc
+    private final Map<Long, AtomicLong> counters = new ConcurrentHashMap<>();
+
+    public long get(Long userId) {
+        return counters.computeIfAbsent(userId,
+                id -> new AtomicLong(notificationRepository.countByRecipientIdAndIsReadFalse(id))).get();
+    }
+
+    /**
+     * Cộng delta (âm khi đánh dấu đã đọc). User chưa có trong cache thì bỏ qua — lần đọc sau sẽ lấy từ DB.
+     */
+    public void add(Long userId, long delta) {
+        AtomicLong counter = counters.get(userId);
+        if (counter != null) {
+            counter.updateAndGet(v -> Math.max(0, v + delta));
+        }
+    }
+
+    public List<Long> cachedUserIds() {
+        return List.copyOf(counters.keySet());
+    }
+
+    /**
+     * Ghi đè số liệu của các user đã đối soát; user không còn notification chưa đọc thì về 0.
+     * Trả về số user bị lệch.
+     */
+    public int reconcile(List<Long> userIds, Map<Long, Long> dbCounts) {
+        int drifted = 0;
+        for (Long userId : userIds) {
+            long actual = dbCounts.getOrDefault(userId, 0L);
+            AtomicLong counter = counters.get(userId);
+            if (counter != null && counter.getAndSet(actual) != actual) {
+                drifted++;
+            }
+        }
+        return drifted;
+    }
+
+    public void evict(Long userId) {
+        counters.remove(userId);
+    }
+}
@@ -0,0 +1,59 @@
+package com.company.company_clean_hub_be.service.helper;
+
+import java.time.YearMonth;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.company.company_clean_hub_be.exception.AppException;
+import com.company.company_clean_hub_be.exception.ErrorCode;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Mỗi tháng lương chỉ có một lượt tính lương hàng loạt tại một thời điểm (job nền hoặc tính đồng bộ),
+ * giống runningPeriods của InvoiceJobServiceImpl. Khóa uk_payrolls_employee_period vẫn chặn trùng
+ * giữa nhiều instance; guard này tránh để hai lượt chạy cùng tháng cùng tính lại một lúc.
+ */
+@Component
+@Slf4j
+public class PayrollPeriodGuard {
+
+    private final Map<YearMonth, String> runningPeriods = new ConcurrentHashMap<>();
+
+    /**
+     * Giữ tháng cho owner; tháng đang được lượt khác giữ thì ném PAYROLL_CALCULATION_ALREADY_RUNNING.
+     */
+    public void acquire(YearMonth period, String owner) {
+        String runningOwner = runningPeriods.putIfAbsent(period, owner);
+        if (runningOwner != null) {
+            log.warn("[PAYROLL-GUARD] Rejected calculation {} for {}: {} is still running", owner, period,
+                    runningOwner);
+            throw new AppException(ErrorCode.PAYROLL_CALCULATION_ALREADY_RUNNING);
+        }
+    }
+
+    public void release(YearMonth period, String owner) {
+        runningPeriods.remove(period, owner);
+    }
+
+    /**
+     * Nhả tháng khi transaction hiện tại kết thúc (commit hoặc rollback) để lượt sau đọc được payroll vừa
+     * ghi; không có transaction thì nhả ngay.
+     */
+    public void releaseAfterCompletion(YearMonth period, String owner) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    release(period, owner);
+                }
+            });
+        } else {
+            release(period, owner);
+        }
+    }
+}
@@ -1,16 +1,13 @@
 package com.company.company_clean_hub_be.service.impl;
 
+import java.time.LocalDate;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.Map;
 
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import com.company.company_clean_hub_be.entity.Assignment;
-import com.company.company_clean_hub_be.entity.Attendance;
-import com.company.company_clean_hub_be.entity.WorkSchedule;
-import com.company.company_clean_hub_be.entity.WorkScheduleStatus;
 import com.company.company_clean_hub_be.repository.AssignmentRepository;
 import com.company.company_clean_hub_be.repository.AttendanceRepository;
 import com.company.company_clean_hub_be.repository.WorkScheduleRepository;
@@ -30,66 +27,29 @@ public class AssignmentMetricsServiceImpl implements AssignmentMetricsService {
     private final AttendanceRepository attendanceRepository;
     private final EntityManager entityManager;
 
+    // workDays = VERIFIED work_schedules (with attendance not deleted) + standalone
+    // attendances (not deleted, not linked to a WorkSchedule and no WorkSchedule
+    // with deleted attendance on the same date). Both parts are counted in SQL.
+
     @Override
     @Transactional
     public void updateAssignmentMetrics(Long assignmentId) {
         try {
-            Assignment assignment = assignmentRepository.findById(assignmentId).orElse(null);
-            if (assignment == null) {
-                log.warn("Assignment not found: {}", assignmentId);
-                return;
-            }
-
             // Flush pending changes so queries below see the latest state
             entityManager.flush();
 
-            // workDays = VERIFIED work_schedules (with attendance not deleted) + standalone
-            // attendances (no WorkSchedule)
-            List<WorkSchedule> allSchedules = workScheduleRepository.findByAssignmentId(assignmentId);
-
-            // Only count VERIFIED WorkSchedules that still have valid attendance (not
-            // deleted)
-            int verifiedSchedules = (int) allSchedules.stream()
-                    .filter(ws -> ws.getStatus() == WorkScheduleStatus.VERIFIED)
-                    .filter(ws -> ws.getAttendanceDeleted() == null || !ws.getAttendanceDeleted())
-                    .count();
-
-            // Count standalone attendances (attendance records without a corresponding
-            // WorkSchedule)
-            List<Attendance> allAttendances = attendanceRepository.findByAssignmentId(assignmentId);
-
-            // Build set of attendance IDs that have WorkSchedule (including deleted ones)
-            // We need to check both current link and attendanceDeleted flag
-            Set<Long> wsAttendanceIds = allSchedules.stream()
-                    .filter(ws -> ws.getAttendance() != null)
-                    .map(ws -> ws.getAttendance().getId())
-                    .collect(Collectors.toSet());
-
-            // Also find attendances that were unlinked (attendanceDeleted = true)
-            // by matching date between WorkSchedule and Attendance
-            Set<java.time.LocalDate> wsScheduledDates = allSchedules.stream()
-                    .filter(ws -> ws.getAttendanceDeleted() != null && ws.getAttendanceDeleted())
-                    .map(ws -> ws.getScheduledDate())
-                    .collect(Collectors.toSet());
-
-            // For workDays: only count non-deleted standalone attendances
-            int standaloneAttendancesForWork = (int) allAttendances.stream()
-                    .filter(a -> a.getDeleted() == null || !a.getDeleted())
-                    .filter(a -> !wsAttendanceIds.contains(a.getId()))
-                    .filter(a -> !wsScheduledDates.contains(a.getDate())) // Exclude if has WorkSchedule by date
-                    .count();
-
-            int workDays = verifiedSchedules + standaloneAttendancesForWork;
+            int workDays = countWorkDays(List.of(assignmentId)).getOrDefault(assignmentId, 0);
 
             // plannedDays: giữ nguyên giá trị cũ, không tính lại.
             // plannedDays phản ánh số ngày dự kiến làm theo lịch hợp đồng,
             // không bị ảnh hưởng bởi việc nhân viên nghỉ phép hay xóa attendance.
-            int plannedDays = assignment.getPlannedDays() != null ? assignment.getPlannedDays() : 0;
-
-            assignmentRepository.updateMetrics(assignmentId, workDays, plannedDays);
+            if (assignmentRepository.updateWorkDays(assignmentId, workDays) == 0) {
+                log.warn("Assignment not found: {}", assignmentId);
+                return;
+            }
 
-            log.info("Updated assignment metrics: assignmentId={}, workDays={}, plannedDays={} (preserved)",
-                    assignmentId, workDays, plannedDays);
+            log.info("Updated assignment metrics: assignmentId={}, workDays={}, plannedDays preserved",
+                    assignmentId, workDays);
         } catch (Exception e) {
             log.error("Failed to update assignment metrics for assignmentId={}: {}",
                     assignmentId, e.getMessage(), e);
@@ -108,4 +68,72 @@ public class AssignmentMetricsServiceImpl implements AssignmentMetricsService {
             updateAssignmentMetrics(assignmentId);
         }
     }
+
+    @Override
+    @Transactional
+    public int snapshotWorkDay(Long assignmentId, LocalDate date) {
+        if (assignmentId == null || date == null) {
+            return 0;
+        }
+        entityManager.flush();
+        return countWorkDay(assignmentId, date);
+    }
+
+    @Override
+    @Transactional
+    public void applyWorkDayDelta(Long assignmentId, LocalDate date, int before) {
+        if (assignmentId == null || date == null) {
+            return;
+        }
+        try {
+            entityManager.flush();
+            int delta = countWorkDay(assignmentId, date) - before;
+            if (delta != 0) {
+                assignmentRepository.incrementWorkDays(assignmentId, delta);
+            }
+            log.info("Applied assignment metrics delta: assignmentId={}, date={}, workDaysDelta={}",
+                    assignmentId, date, delta);
+        } catch (Exception e) {
+            log.error("Failed to apply assignment metrics delta for assignmentId={}, date={}: {}",
+                    assignmentId, date, e.getMessage(), e);
+        }
+    }
+
+    @Override
+    @Transactional
+    public int reconcileWorkDays(Map<Long, Integer> storedWorkDays) {
+        if (storedWorkDays == null || storedWorkDays.isEmpty()) {
+            return 0;
+        }
+
+        Map<Long, Integer> actual = countWorkDays(List.copyOf(storedWorkDays.keySet()));
+        int repaired = 0;
+        for (Map.Entry<Long, Integer> entry : storedWorkDays.entrySet()) {
+            int expected = actual.getOrDefault(entry.getKey(), 0);
+            int stored = entry.getValue() != null ? entry.getValue() : 0;
+            if (expected != stored) {
+                assignmentRepository.updateWorkDays(entry.getKey(), expected);
+                repaired++;
+                log.warn("[METRICS-RECONCILE] Assignment {} workDays drift: stored={}, actual={} -> repaired",
+                        entry.getKey(), stored, expected);
+            }
+        }
+        return repaired;
+    }
+
+    private int countWorkDay(Long assignmentId, LocalDate date) {
+        return (int) (workScheduleRepository.countVerifiedWithAttendanceByAssignmentIdAndDate(assignmentId, date)
+                + attendanceRepository.countStandaloneByAssignmentIdAndDate(assignmentId, date));
+    }
+
+    private Map<Long, Integer> countWorkDays(List<Long> assignmentIds) {
+        Map<Long, Integer> workDays = new HashMap<>();
+        for (Object[] row : workScheduleRepository.countVerifiedWithAttendanceByAssignmentIds(assignmentIds)) {
+            workDays.merge((Long) row[0], ((Long) row[1]).intValue(), Integer::sum);
+        }
+        for (Object[] row : attendanceRepository.countStandaloneByAssignmentIds(assignmentIds)) {
+            workDays.merge((Long) row[0], ((Long) row[1]).intValue(), Integer::sum);
+        }
+        return workDays;
+    }
 }
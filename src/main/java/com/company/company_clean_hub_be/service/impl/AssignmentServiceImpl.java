@@ -62,6 +62,7 @@ import com.company.company_clean_hub_be.repository.UserRepository;
 import com.company.company_clean_hub_be.service.AssignmentMetricsService;
 import com.company.company_clean_hub_be.service.AssignmentService;
 import com.company.company_clean_hub_be.service.SalaryNoteValidator;
+import com.company.company_clean_hub_be.service.helper.EmployeeAvailabilityIndex;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -72,7 +73,7 @@ import lombok.extern.slf4j.Slf4j;
 public class AssignmentServiceImpl implements AssignmentService {
 
         private final AssignmentRepository assignmentRepository;
-        private final com.company.company_clean_hub_be.repository.CustomerAssignmentRepository customerAssignmentRepository;
+        private final com.company.company_clean_hub_be.service.ManagerScopeService managerScopeService;
         private final EmployeeRepository employeeRepository;
         private final CustomerRepository customerRepository;
         private final ContractRepository contractRepository;
@@ -91,8 +92,8 @@ public class AssignmentServiceImpl implements AssignmentService {
         private final com.company.company_clean_hub_be.repository.VerificationImageRepository imageRepository;
         private final AssignmentMetricsService assignmentMetricsService;
         private final com.company.company_clean_hub_be.repository.SalaryNoteRepository salaryNoteRepository;
-        private final com.company.company_clean_hub_be.repository.NotificationRepository notificationRepository;
         private final SalaryNoteValidator salaryNoteValidator;
+        private final EmployeeAvailabilityIndex availabilityIndex;
 
         @Override
         public List<AssignmentResponse> getAllAssignments() {
@@ -116,7 +117,7 @@ public class AssignmentServiceImpl implements AssignmentService {
 
                 Page<Assignment> assignmentPage;
                 if (currentUser != null && currentUser.getRole() != null && "QLT2".equalsIgnoreCase(currentUser.getRole().getCode())) {
-                        List<Long> assignedIds = customerAssignmentRepository.findCustomerIdsByManagerId(currentUser.getId());
+                        List<Long> assignedIds = managerScopeService.getCustomerIds(currentUser.getId());
                         if (assignedIds.isEmpty()) {
                                 return PageResponse.<AssignmentResponse>builder()
                                                 .content(new ArrayList<>())
@@ -2048,60 +2049,36 @@ public class AssignmentServiceImpl implements AssignmentService {
                 customerRepository.findById(customerId)
                                 .orElseThrow(() -> new AppException(ErrorCode.CUSTOMER_NOT_FOUND));
 
-                // Get all contracts for this customer
-                List<Contract> allContracts = contractRepository.findByCustomerId(customerId);
-
-                // Filter contracts by contractId if provided
-                if (contractId != null) {
-                        allContracts = allContracts.stream()
-                                        .filter(c -> c.getId().equals(contractId))
-                                        .collect(Collectors.toList());
-                }
-
-                // Filter contracts by contractType if provided
-                if (contractType != null) {
-                        allContracts = allContracts.stream()
-                                        .filter(c -> c.getContractType() == contractType)
-                                        .collect(Collectors.toList());
-                }
-
-                // Fetch all assignments with filters
-                Pageable unpaged = Pageable.unpaged();
-                Page<Assignment> allAssignments = assignmentRepository.findAllAssignmentsByCustomerWithFilters(
-                                customerId, contractType, status, month, year, unpaged);
-
-                // Filter assignments by keyword if provided (employee name or code)
-                List<Assignment> filteredAssignments = allAssignments.getContent();
-                if (keyword != null && !keyword.trim().isEmpty()) {
-                        String lowerKeyword = keyword.toLowerCase().trim();
-                        filteredAssignments = filteredAssignments.stream()
-                                        .filter(a -> {
-                                                if (a.getEmployee() == null)
-                                                        return false;
-                                                Employee emp = a.getEmployee();
-                                                boolean matchName = emp.getName() != null &&
-                                                                emp.getName().toLowerCase().contains(lowerKeyword);
-                                                boolean matchCode = emp.getEmployeeCode() != null &&
-                                                                emp.getEmployeeCode().toLowerCase()
-                                                                                .contains(lowerKeyword);
-                                                return matchName || matchCode;
-                                        })
-                                        .collect(Collectors.toList());
-                }
-
-                // Group assignments by contract
-                Map<Long, List<Assignment>> assignmentsByContract = filteredAssignments.stream()
-                                .filter(a -> a.getContract() != null)
-                                .collect(Collectors.groupingBy(a -> a.getContract().getId()));
-
-                // Pagination on contracts
-                int totalContracts = allContracts.size();
+                // Phase 1: trang id hợp đồng lọc ở DB. Có keyword / status thì chỉ lấy hợp đồng có phân công khớp;
+                // chỉ lọc tháng / năm thì vẫn liệt kê mọi hợp đồng (kể cả không có phân công)
+                String keywordPattern = keyword != null && !keyword.trim().isEmpty()
+                                ? "%" + keyword.trim().toLowerCase() + "%"
+                                : null;
+                boolean assignmentFiltered = keywordPattern != null || status != null;
                 int safePage = Math.max(0, page);
                 int safePageSize = Math.max(1, pageSize);
-                int fromIndex = Math.min(totalContracts, safePage * safePageSize);
-                int toIndex = Math.min(totalContracts, fromIndex + safePageSize);
 
-                List<Contract> pagedContracts = allContracts.subList(fromIndex, toIndex);
+                Page<Long> contractIdPage = contractRepository.findIdsByCustomerWithFilters(
+                                customerId, contractId, contractType, assignmentFiltered,
+                                status, month, year, keywordPattern, PageRequest.of(safePage, safePageSize));
+                List<Long> pageContractIds = contractIdPage.getContent();
+                long totalContracts = contractIdPage.getTotalElements();
+
+                // Phase 2: chỉ nạp hợp đồng + phân công của trang hiện tại
+                Map<Long, Contract> contractsById = pageContractIds.isEmpty()
+                                ? Map.of()
+                                : contractRepository.findAllWithCustomerAndServicesByIdIn(pageContractIds).stream()
+                                                .collect(Collectors.toMap(Contract::getId, c -> c));
+                List<Contract> pagedContracts = pageContractIds.stream()
+                                .map(contractsById::get)
+                                .filter(java.util.Objects::nonNull)
+                                .collect(Collectors.toList());
+
+                Map<Long, List<Assignment>> assignmentsByContract = pageContractIds.isEmpty()
+                                ? Map.of()
+                                : assignmentRepository.findByContractIdsWithFilters(
+                                                pageContractIds, status, month, year, keywordPattern).stream()
+                                                .collect(Collectors.groupingBy(a -> a.getContract().getId()));
 
                 // Build response for each contract in the page (even if no assignments)
                 List<com.company.company_clean_hub_be.dto.response.AssignmentsByContractResponse> result = new ArrayList<>();
@@ -2853,59 +2830,36 @@ public class AssignmentServiceImpl implements AssignmentService {
                 Customer customer = customerRepository.findById(customerId)
                                 .orElseThrow(() -> new AppException(ErrorCode.CUSTOMER_NOT_FOUND));
 
-                List<Contract> contracts = contractRepository.findByCustomerId(customer.getId());
-
-                // If contractId provided, filter to that contract only
-                if (contractId != null) {
-                        contracts = contracts.stream().filter(c -> c.getId().equals(contractId))
-                                        .collect(Collectors.toList());
-                }
-
-                int totalContracts = contracts.size();
                 int safePage = Math.max(0, page);
                 int safePageSize = Math.max(1, pageSize);
-                int fromIndex = Math.min(totalContracts, safePage * safePageSize);
-                int toIndex = Math.min(totalContracts, fromIndex + safePageSize);
 
-                List<Contract> pageContracts = contracts.subList(fromIndex, toIndex);
+                // Trang id hợp đồng lọc ở DB, rồi nạp hợp đồng + dịch vụ của trang trong một truy vấn
+                Page<Long> contractIdPage = contractRepository.findIdsByCustomerWithFilters(
+                                customer.getId(), contractId, null, false,
+                                null, null, null, null, PageRequest.of(safePage, safePageSize));
+                List<Long> pageContractIds = contractIdPage.getContent();
+                long totalContracts = contractIdPage.getTotalElements();
+
+                Map<Long, Contract> contractsById = pageContractIds.isEmpty()
+                                ? Map.of()
+                                : contractRepository.findAllWithCustomerAndServicesByIdIn(pageContractIds).stream()
+                                                .collect(Collectors.toMap(Contract::getId, c -> c));
+                List<Contract> pageContracts = pageContractIds.stream()
+                                .map(contractsById::get)
+                                .filter(java.util.Objects::nonNull)
+                                .collect(Collectors.toList());
 
                 List<com.company.company_clean_hub_be.dto.response.ReassignmentHistoryByContractResponse> result = new ArrayList<>();
 
-                org.springframework.data.domain.PageRequest pageable = org.springframework.data.domain.PageRequest
-                                .of(safePage, safePageSize,
-                                                org.springframework.data.domain.Sort.by("createdAt").descending());
+                // Lịch sử của từng hợp đồng cũng phân trang theo page / pageSize, lọc tháng / năm ở DB
+                PageRequest pageable = PageRequest.of(safePage, safePageSize);
 
                 for (Contract contract : pageContracts) {
-                        List<AssignmentHistoryResponse> mapped;
-
-                        if (month == null && year == null) {
-                                org.springframework.data.domain.Page<AssignmentHistory> pageHistories = assignmentHistoryRepository
-                                                .findByContractIdOrderByCreatedAtDesc(contract.getId(), pageable);
-
-                                mapped = pageHistories.getContent().stream()
-                                                .map(this::mapHistoryToResponse)
-                                                .collect(Collectors.toList());
-                        } else {
-                                List<AssignmentHistory> allHistories = assignmentHistoryRepository
-                                                .findByContractIdOrderByCreatedAtDesc(contract.getId());
-                                List<AssignmentHistory> filtered = allHistories.stream()
-                                                .filter(h -> {
-                                                        boolean mOk = month == null
-                                                                        || h.getCreatedAt().getMonthValue() == month;
-                                                        boolean yOk = year == null
-                                                                        || h.getCreatedAt().getYear() == year;
-                                                        return mOk && yOk;
-                                                })
-                                                .collect(Collectors.toList());
-
-                                int histFrom = Math.min(filtered.size(), safePage * safePageSize);
-                                int histTo = Math.min(filtered.size(), histFrom + safePageSize);
-                                List<AssignmentHistory> pageList = filtered.subList(histFrom, histTo);
-
-                                mapped = pageList.stream()
-                                                .map(this::mapHistoryToResponse)
-                                                .collect(Collectors.toList());
-                        }
+                        List<AssignmentHistoryResponse> mapped = assignmentHistoryRepository
+                                        .findByContractIdAndMonthYear(contract.getId(), month, year, pageable)
+                                        .getContent().stream()
+                                        .map(this::mapHistoryToResponse)
+                                        .collect(Collectors.toList());
 
                         // Extract service names from contract
                         List<String> serviceNames = contract.getServices() != null
@@ -3340,42 +3294,18 @@ public class AssignmentServiceImpl implements AssignmentService {
                 Long employeeId = savedAssignment.getEmployee().getId();
                 LocalDate checkFrom = savedAssignment.getStartDate();
 
-                // Kiểm tra 7 ngày đầu (đại diện cho 1 tuần)
-                java.time.DayOfWeek conflictDay = null;
-                Contract conflictContract = null;
-
-                for (int i = 0; i < 7; i++) {
-                        LocalDate checkDate = checkFrom.plusDays(i);
+                // Kiểm tra 7 ngày đầu (đại diện cho 1 tuần) trên chỉ mục lịch bận trong bộ nhớ,
+                // chỉ các ngày thuộc workingDays của cả contract mới và contract cũ
+                EmployeeAvailabilityIndex.Conflict conflict = availabilityIndex.findConflict(
+                                employeeId, checkFrom, checkFrom.plusDays(6),
+                                EmployeeAvailabilityIndex.toDayMask(newContract.getWorkingDaysPerWeek()),
+                                newStart, newEnd, savedAssignment.getId());
 
-                        // Chỉ kiểm tra ngày thuộc workingDays của contract mới
-                        if (newContract.getWorkingDaysPerWeek() != null
-                                        && !newContract.getWorkingDaysPerWeek().contains(checkDate.getDayOfWeek())) {
-                                continue;
-                        }
-
-                        List<Assignment> conflicts = assignmentRepository.findAssignmentsWithTimeConflict(
-                                        employeeId, checkDate, newStart, newEnd, savedAssignment.getId());
-
-                        for (Assignment ca : conflicts) {
-                                Contract cc = ca.getContract();
-                                if (cc == null)
-                                        continue;
-                                // Kiểm tra ngày này có trong workingDays của contract cũ không
-                                if (cc.getWorkingDaysPerWeek() != null
-                                                && !cc.getWorkingDaysPerWeek().contains(checkDate.getDayOfWeek())) {
-                                        continue;
-                                }
-                                conflictDay = checkDate.getDayOfWeek();
-                                conflictContract = cc;
-                                break;
-                        }
-                        if (conflictDay != null)
-                                break;
-                }
-
-                if (conflictDay == null) {
+                if (conflict == null) {
                         return; // Không có conflict
                 }
+                java.time.DayOfWeek conflictDay = conflict.date().getDayOfWeek();
+                EmployeeAvailabilityIndex.BookedSlot conflictSlot = conflict.slot();
 
                 // Dịch tên thứ
                 String dayName = switch (conflictDay) {
@@ -3398,42 +3328,29 @@ public class AssignmentServiceImpl implements AssignmentService {
                                 emp.getEmployeeCode(),
                                 newContract.getId(),
                                 newStart, newEnd,
-                                conflictContract.getId(),
-                                conflictContract.getWorkStartTime(), conflictContract.getWorkEndTime(),
+                                conflictSlot.contractId(),
+                                conflictSlot.startTime(), conflictSlot.endTime(),
                                 dayName);
 
-                // Gửi notification cho tất cả QLT1 và các QLT2 được phân công quản lý khách hàng này
-                List<User> managers = new java.util.ArrayList<>(userRepository.findActiveUsersByRoleCode("QLT1"));
-                if (newContract.getCustomer() != null) {
-                        List<com.company.company_clean_hub_be.entity.CustomerAssignment> customerAssigns = customerAssignmentRepository.findByCustomerId(newContract.getCustomer().getId());
-                        for (com.company.company_clean_hub_be.entity.CustomerAssignment ca : customerAssigns) {
-                                if (ca.getManager() != null && ca.getManager().getRole() != null && 
-                                    ("QLT2".equalsIgnoreCase(ca.getManager().getRole().getCode()) || "QLV".equalsIgnoreCase(ca.getManager().getRole().getCode()))) {
-                                        if (managers.stream().noneMatch(m -> m.getId().equals(ca.getManager().getId()))) {
-                                                managers.add(ca.getManager());
-                                        }
-                                }
-                        }
-                }
+                // Gửi notification cho tất cả QLT1 và các QLT2/QLV được phân công quản lý khách hàng này
+                List<Long> managerIds = notificationService.getRecipientIdsForContract(newContract, List.of("QLT2", "QLV"));
                 log.warn("[NOTIFY][WORK_TIME_CONFLICT] Detected: employeeId={}, newContractId={}, conflictContractId={}, day={}",
-                                employeeId, newContract.getId(), conflictContract.getId(), conflictDay);
-                log.info("[NOTIFY][WORK_TIME_CONFLICT] Found {} manager(s) with role QLT1 to notify", managers.size());
-                if (managers.isEmpty()) {
-                        log.warn("[NOTIFY][WORK_TIME_CONFLICT] No QLT1 managers found — conflict notification will NOT be sent");
-                }
-                for (User manager : managers) {
-                        log.info("[NOTIFY][WORK_TIME_CONFLICT] Sending to userId={} ({})",
-                                        manager.getId(), manager.getUsername());
-                        notificationService.createNotification(
-                                        manager,
-                                        com.company.company_clean_hub_be.entity.NotificationType.WORK_TIME_CONFLICT,
-                                        title,
-                                        message,
-                                        savedAssignment.getEmployee().getId(),
-                                        savedAssignment.getId(),
-                                        newContract.getId());
-                        log.info("[NOTIFY][WORK_TIME_CONFLICT] ✅ Sent successfully to userId={}", manager.getId());
+                                employeeId, newContract.getId(), conflictSlot.contractId(), conflictDay);
+                log.info("[NOTIFY][WORK_TIME_CONFLICT] Found {} manager(s) to notify", managerIds.size());
+                if (managerIds.isEmpty()) {
+                        log.warn("[NOTIFY][WORK_TIME_CONFLICT] No managers found — conflict notification will NOT be sent");
+                        return;
                 }
+                int sent = notificationService.createNotifications(
+                                managerIds,
+                                com.company.company_clean_hub_be.entity.NotificationType.WORK_TIME_CONFLICT,
+                                title,
+                                message,
+                                savedAssignment.getEmployee().getId(),
+                                savedAssignment.getId(),
+                                newContract.getId(),
+                                null);
+                log.info("[NOTIFY][WORK_TIME_CONFLICT] ✅ Sent to {} manager(s)", sent);
         }
 
         /**
@@ -3472,20 +3389,13 @@ public class AssignmentServiceImpl implements AssignmentService {
                                 currentCount);
 
                         // Gửi cho tất cả QLT1, QLT2, và QLV
-                        List<User> managers = userRepository.findByRoleCodeIn(List.of("QLT1", "QLT2", "QLV"));
-                        LocalDateTime todayStart = LocalDate.now().atStartOfDay();
-                        for (User manager : managers) {
-                                boolean exists = notificationRepository.existsByTypeAndRefContractIdAndRecipientIdAndCreatedAtAfter(
-                                        NotificationType.INSUFFICIENT_STAFF, contract.getId(), manager.getId(), todayStart);
-                                if (!exists) {
-                                        notificationService.createNotification(
-                                                manager,
-                                                NotificationType.INSUFFICIENT_STAFF,
-                                                title,
-                                                message,
-                                                null, null, contract.getId());
-                                }
-                        }
+                        notificationService.createNotifications(
+                                notificationService.getRecipientIdsByRoles(List.of("QLT1", "QLT2", "QLV")),
+                                NotificationType.INSUFFICIENT_STAFF,
+                                title,
+                                message,
+                                null, null, contract.getId(),
+                                LocalDate.now().atStartOfDay());
                         log.info("[NOTIFY][INSUFFICIENT_STAFF] Contract {} has {} employees, requires {}",
                                 contract.getId(), currentCount, contract.getNumberOfEmployees());
                 }
@@ -3535,26 +3445,15 @@ public class AssignmentServiceImpl implements AssignmentService {
                                         contract.getId());
 
                                 // Gửi cho tất cả QLT1, QLT2, và QLV
-                                List<User> managers = userRepository.findByRoleCodeIn(List.of("QLT1", "QLT2", "QLV"));
-                                LocalDateTime todayStart = LocalDate.now().atStartOfDay();
-                                for (User manager : managers) {
-                                        boolean exists = notificationRepository.existsByTypeAndContractIdAndEmployeeIdAndRecipientIdAndCreatedAtAfter(
-                                                NotificationType.ASSIGNMENT_OVER_BUDGET,
-                                                contract.getId(),
-                                                assignment.getEmployee().getId(),
-                                                manager.getId(),
-                                                todayStart);
-                                        if (!exists) {
-                                                notificationService.createNotification(
-                                                        manager,
-                                                        NotificationType.ASSIGNMENT_OVER_BUDGET,
-                                                        title,
-                                                        message,
-                                                        assignment.getEmployee().getId(),
-                                                        assignment.getId(),
-                                                        contract.getId());
-                                        }
-                                }
+                                notificationService.createNotifications(
+                                        notificationService.getRecipientIdsByRoles(List.of("QLT1", "QLT2", "QLV")),
+                                        NotificationType.ASSIGNMENT_OVER_BUDGET,
+                                        title,
+                                        message,
+                                        assignment.getEmployee().getId(),
+                                        assignment.getId(),
+                                        contract.getId(),
+                                        LocalDate.now().atStartOfDay());
                                 log.warn("[NOTIFY][ASSIGNMENT_OVER_BUDGET] Assignment {} salary {} exceeds SalaryNote {} amount {}",
                                         assignment.getId(), assignmentSalary, sn.getId(), sn.getAmount());
                                 break; // Chỉ gửi 1 notification cho lần vượt đầu tiên
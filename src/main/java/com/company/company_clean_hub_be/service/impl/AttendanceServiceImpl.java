@@ -17,7 +17,6 @@ import com.company.company_clean_hub_be.repository.AssignmentRepository;
 import com.company.company_clean_hub_be.repository.AttendanceRepository;
 import com.company.company_clean_hub_be.repository.EmployeeRepository;
 import com.company.company_clean_hub_be.repository.UserRepository;
-import com.company.company_clean_hub_be.repository.CustomerAssignmentRepository;
 import com.company.company_clean_hub_be.dto.request.AttendanceCaptureRequest;
 
 import java.time.LocalDate;
@@ -27,7 +26,9 @@ import java.util.ArrayList;
 import java.util.List;
 import com.company.company_clean_hub_be.exception.ResourceNotFoundException;
 import com.company.company_clean_hub_be.service.AttendanceService;
+import com.company.company_clean_hub_be.service.AttendanceSummaryService;
 import com.company.company_clean_hub_be.service.FileStorageService;
+import com.company.company_clean_hub_be.service.ManagerScopeService;
 import com.company.company_clean_hub_be.service.VerificationService;
 import com.company.company_clean_hub_be.service.WorkScheduleService;
 import com.company.company_clean_hub_be.service.AssignmentMetricsService;
@@ -70,7 +71,8 @@ public class AttendanceServiceImpl implements AttendanceService {
     private final WorkScheduleService workScheduleService;
     private final WorkScheduleRepository workScheduleRepository;
     private final AssignmentMetricsService assignmentMetricsService;
-    private final CustomerAssignmentRepository customerAssignmentRepository;
+    private final ManagerScopeService managerScopeService;
+    private final AttendanceSummaryService attendanceSummaryService;
 
     @Override
     public AttendanceResponse createAttendance(AttendanceRequest request) {
@@ -117,13 +119,15 @@ public class AttendanceServiceImpl implements AttendanceService {
                 .updatedAt(LocalDateTime.now())
                 .build();
 
+        int workDayBefore = assignmentMetricsService.snapshotWorkDay(assignment.getId(), request.getDate());
+
         Attendance savedAttendance = attendanceRepository.save(attendance);
 
         // Sync with work_schedule if exists
         workScheduleService.syncAttendanceCreation(savedAttendance.getId());
         
-        // Update assignment metrics
-        assignmentMetricsService.updateAssignmentMetrics(savedAttendance.getAssignment().getId());
+        // Update assignment metrics (chỉ tính lại ngày vừa chấm công)
+        assignmentMetricsService.applyWorkDayDelta(assignment.getId(), request.getDate(), workDayBefore);
         
         log.info("createAttendance completed by {}: attendanceId={}", username, savedAttendance.getId());
         return mapToResponse(savedAttendance);
@@ -235,7 +239,7 @@ public class AttendanceServiceImpl implements AttendanceService {
         Page<Attendance> attendancePage;
         if (currentUser != null && currentUser.getRole() != null && 
             "QLT2".equalsIgnoreCase(currentUser.getRole().getCode())) {
-            List<Long> assignedIds = customerAssignmentRepository.findCustomerIdsByManagerId(currentUser.getId());
+            List<Long> assignedIds = managerScopeService.getCustomerIds(currentUser.getId());
             if (assignedIds.isEmpty()) {
                 return PageResponse.<AttendanceResponse>builder()
                         .content(new ArrayList<>())
@@ -332,6 +336,15 @@ public class AttendanceServiceImpl implements AttendanceService {
                     .orElse(null);
         }
 
+        // Track old assignment/date for metrics update (trước khi ghi đè)
+        Long oldAssignmentId = attendance.getAssignment().getId();
+        LocalDate oldDate = attendance.getDate();
+        boolean dayChanged = !oldAssignmentId.equals(assignment.getId()) || !oldDate.equals(request.getDate());
+        int oldWorkDayBefore = assignmentMetricsService.snapshotWorkDay(oldAssignmentId, oldDate);
+        int newWorkDayBefore = dayChanged
+                ? assignmentMetricsService.snapshotWorkDay(assignment.getId(), request.getDate())
+                : oldWorkDayBefore;
+
         attendance.setAssignment(assignment);
         attendance.setDate(request.getDate());
         attendance.setWorkHours(request.getWorkHours());
@@ -345,10 +358,6 @@ public class AttendanceServiceImpl implements AttendanceService {
         attendance.setDescription(request.getDescription());
         attendance.setUpdatedAt(LocalDateTime.now());
 
-        // Track old assignment for metrics update
-        Assignment oldAssignment = attendance.getAssignment();
-        boolean assignmentChanged = !oldAssignment.getId().equals(assignment.getId());
-
         Attendance updatedAttendance = attendanceRepository.save(attendance);
 
         // Build response BEFORE updating metrics to avoid LazyInitializationException.
@@ -356,11 +365,13 @@ public class AttendanceServiceImpl implements AttendanceService {
         // the EntityManager, detaching all proxies including attendance.assignment.employee.
         AttendanceResponse response = mapToResponse(updatedAttendance);
 
-        // Update metrics for both old and new assignment if changed
-        if (assignmentChanged) {
-            assignmentMetricsService.updateAssignmentMetrics(oldAssignment.getId());
+        // Update metrics for both old and new assignment/date if changed
+        if (dayChanged) {
+            assignmentMetricsService.applyWorkDayDelta(oldAssignmentId, oldDate, oldWorkDayBefore);
+            // Tháng cũ của assignment cũ cũng phải tính lại
+            attendanceSummaryService.markDirty(oldAssignmentId, oldDate);
         }
-        assignmentMetricsService.updateAssignmentMetrics(assignment.getId());
+        assignmentMetricsService.applyWorkDayDelta(assignment.getId(), request.getDate(), newWorkDayBefore);
         
         log.info("updateAttendance completed by {}: id={}", username, updatedAttendance.getId());
         return response;
@@ -381,10 +392,13 @@ public class AttendanceServiceImpl implements AttendanceService {
         }
                 Attendance attendance = attendanceRepository.findById(id)
                                 .orElseThrow(() -> new AppException(ErrorCode.ATTENDANCE_NOT_FOUND));
+                Long assignmentId = attendance.getAssignment() != null ? attendance.getAssignment().getId() : null;
+                int workDayBefore = assignmentMetricsService.snapshotWorkDay(assignmentId, attendance.getDate());
                 attendance.setDeleted(true);
                 attendance.setDeletedAt(LocalDateTime.now());
                 attendance.setUpdatedAt(LocalDateTime.now());
                 attendanceRepository.save(attendance);
+                assignmentMetricsService.applyWorkDayDelta(assignmentId, attendance.getDate(), workDayBefore);
                 log.info("soft-delete attendance completed by {}: id={}", username, id);
     }
 
@@ -407,6 +421,9 @@ public class AttendanceServiceImpl implements AttendanceService {
                 Attendance attendance = attendanceRepository.findByContractAndEmployeeAndDate(contractId, employeeId, date)
                                 .orElseThrow(() -> new AppException(ErrorCode.ATTENDANCE_NOT_FOUND));
 
+                Long assignmentId = attendance.getAssignment() != null ? attendance.getAssignment().getId() : null;
+                int workDayBefore = assignmentMetricsService.snapshotWorkDay(assignmentId, attendance.getDate());
+
                 attendance.setDeleted(true);
                 attendance.setDeletedAt(LocalDateTime.now());
                 if (description != null && !description.isBlank()) {
@@ -421,11 +438,8 @@ public class AttendanceServiceImpl implements AttendanceService {
                         workScheduleService.syncAttendanceDeletion(attendance.getId(), user.getId());
                 }
 
-                // Tái tính workDays của assignment
-                Assignment assignment = attendance.getAssignment();
-                if (assignment != null) {
-                        assignmentMetricsService.updateAssignmentMetrics(assignment.getId());
-                }
+                // Cập nhật workDays của assignment theo chênh lệch của ngày bị xóa
+                assignmentMetricsService.applyWorkDayDelta(assignmentId, attendance.getDate(), workDayBefore);
 
                 log.info("softDeleteAttendance completed by {}: attendanceId={}", username, attendance.getId());
         }
@@ -448,16 +462,16 @@ public class AttendanceServiceImpl implements AttendanceService {
                         throw new AppException(ErrorCode.ATTENDANCE_NOT_FOUND);
                 }
 
+                Long assignmentId = attendance.getAssignment() != null ? attendance.getAssignment().getId() : null;
+                int workDayBefore = assignmentMetricsService.snapshotWorkDay(assignmentId, attendance.getDate());
+
                 attendance.setDeleted(false);
                 attendance.setDeletedAt(null);
                 attendance.setUpdatedAt(LocalDateTime.now());
                 attendanceRepository.save(attendance);
 
-                // Tái tính workDays của assignment
-                Assignment assignment = attendance.getAssignment();
-                if (assignment != null) {
-                        assignmentMetricsService.updateAssignmentMetrics(assignment.getId());
-                }
+                // Cập nhật workDays của assignment theo chênh lệch của ngày được khôi phục
+                assignmentMetricsService.applyWorkDayDelta(assignmentId, attendance.getDate(), workDayBefore);
 
                 log.info("restoreAttendance completed by {}: id={}", username, id);
         }
@@ -483,16 +497,16 @@ public class AttendanceServiceImpl implements AttendanceService {
                         throw new AppException(ErrorCode.ATTENDANCE_NOT_FOUND);
                 }
 
+                Long assignmentId = attendance.getAssignment() != null ? attendance.getAssignment().getId() : null;
+                int workDayBefore = assignmentMetricsService.snapshotWorkDay(assignmentId, attendance.getDate());
+
                 attendance.setDeleted(false);
                 attendance.setDeletedAt(null);
                 attendance.setUpdatedAt(LocalDateTime.now());
                 attendanceRepository.save(attendance);
 
-                // Tái tính workDays của assignment
-                Assignment assignment = attendance.getAssignment();
-                if (assignment != null) {
-                        assignmentMetricsService.updateAssignmentMetrics(assignment.getId());
-                }
+                // Cập nhật workDays của assignment theo chênh lệch của ngày được khôi phục
+                assignmentMetricsService.applyWorkDayDelta(assignmentId, attendance.getDate(), workDayBefore);
 
                 log.info("restoreByDateContractEmployee completed by {}: attendanceId={}", username, attendance.getId());
         }
@@ -551,14 +565,8 @@ public class AttendanceServiceImpl implements AttendanceService {
         Employee employee = employeeRepository.findById(employeeId)
                 .orElseThrow(() -> new AppException(ErrorCode.EMPLOYEE_NOT_FOUND));
 
-        YearMonth yearMonth = YearMonth.of(year, month);
-        LocalDate startDate = yearMonth.atDay(1);
-        LocalDate endDate = yearMonth.atEndOfMonth();
-
-        List<Attendance> attendances = attendanceRepository.findByEmployeeAndDateBetween(
-                employeeId, startDate, endDate);
-
-        int totalDays = attendances.size();
+        // Đọc bảng tổng hợp theo assignment thay vì tải từng ngày chấm công
+        int totalDays = attendanceSummaryService.countWorkDaysByEmployee(employeeId, month, year);
 
         return TotalDaysResponse.builder()
                 .employeeId(employee.getId())
@@ -734,10 +742,12 @@ public class AttendanceServiceImpl implements AttendanceService {
                 .updatedAt(LocalDateTime.now())
                 .build();
 
+        int workDayBefore = assignmentMetricsService.snapshotWorkDay(assignmentId, date);
+
         Attendance saved = attendanceRepository.save(attendance);
         
         // Update assignment metrics
-        assignmentMetricsService.updateAssignmentMetrics(assignment.getId());
+        assignmentMetricsService.applyWorkDayDelta(assignmentId, date, workDayBefore);
         
         log.info("Generated single attendance: {}", saved.getId());
         
@@ -0,0 +1,277 @@
+package com.company.company_clean_hub_be.service.impl;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.company.company_clean_hub_be.entity.AssignmentType;
+import com.company.company_clean_hub_be.repository.AttendanceMonthlySummaryRepository;
+import com.company.company_clean_hub_be.repository.AttendanceRepository;
+import com.company.company_clean_hub_be.service.AttendanceSummaryService;
+
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class AttendanceSummaryServiceImpl implements AttendanceSummaryService {
+
+    private final AttendanceMonthlySummaryRepository summaryRepository;
+    private final AttendanceRepository attendanceRepository;
+    private final EntityManager entityManager;
+
+    @Value("${attendance.summary.batch-size:500}")
+    private int batchSize;
+
+    private record MonthKey(Long assignmentId, YearMonth month) {
+    }
+
+    /**
+     * Các (assignment, tháng) có chấm công thay đổi trong transaction hiện tại; tính lại trước khi
+     * commit để bảng tổng hợp commit cùng dữ liệu chấm công. assignmentIds là các assignment phải
+     * tính lại mọi tháng (bulk delete).
+     */
+    private final class DirtyAssignments implements TransactionSynchronization {
+        private final Set<Long> assignmentIds = new LinkedHashSet<>();
+        private final Set<MonthKey> months = new LinkedHashSet<>();
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            if (readOnly) {
+                return;
+            }
+            // Ghi các thay đổi chấm công còn chờ; listener có thể đánh dấu thêm tháng trong lúc flush
+            entityManager.flush();
+            refresh(new ArrayList<>(assignmentIds));
+            refreshMonths(months.stream().filter(key -> !assignmentIds.contains(key.assignmentId())).toList());
+        }
+    }
+
+    @Override
+    public void markDirty(Long assignmentId) {
+        if (assignmentId == null) {
+            return;
+        }
+        DirtyAssignments dirty = currentDirty(assignmentId);
+        if (dirty != null) {
+            dirty.assignmentIds.add(assignmentId);
+        }
+    }
+
+    @Override
+    public void markDirty(Long assignmentId, LocalDate date) {
+        if (assignmentId == null || date == null) {
+            return;
+        }
+        DirtyAssignments dirty = currentDirty(assignmentId);
+        if (dirty != null) {
+            dirty.months.add(new MonthKey(assignmentId, YearMonth.from(date)));
+        }
+    }
+
+    private DirtyAssignments currentDirty(Long assignmentId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            // Không có transaction (không xảy ra với repository JPA); job đối soát hàng đêm sẽ sửa
+            log.warn("[ATTENDANCE-SUMMARY] Không có transaction, bỏ qua tính lại assignmentId={}", assignmentId);
+            return null;
+        }
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (synchronization instanceof DirtyAssignments dirty) {
+                return dirty;
+            }
+        }
+        DirtyAssignments dirty = new DirtyAssignments();
+        TransactionSynchronizationManager.registerSynchronization(dirty);
+        return dirty;
+    }
+
+    @Override
+    @Transactional
+    public void refreshAssignments(Collection<Long> assignmentIds) {
+        refresh(new ArrayList<>(assignmentIds));
+    }
+
+    private void refresh(List<Long> assignmentIds) {
+        if (assignmentIds.isEmpty()) {
+            return;
+        }
+        for (int i = 0; i < assignmentIds.size(); i += batchSize) {
+            List<Long> chunk = assignmentIds.subList(i, Math.min(i + batchSize, assignmentIds.size()));
+            // Xóa trước để tháng không còn chấm công nào cũng biến mất khỏi bảng tổng hợp
+            summaryRepository.deleteByAssignmentIds(chunk);
+            summaryRepository.insertFromAttendanceByAssignmentIds(chunk);
+        }
+        log.debug("[ATTENDANCE-SUMMARY] Refreshed {} assignment(s)", assignmentIds.size());
+    }
+
+    /**
+     * Chỉ tính lại các tháng bị đánh dấu: gom theo tháng để mỗi nhóm assignment một cặp delete / insert
+     * chỉ đọc chấm công của tháng đó.
+     */
+    private void refreshMonths(Collection<MonthKey> keys) {
+        if (keys.isEmpty()) {
+            return;
+        }
+        Map<YearMonth, List<Long>> assignmentsByMonth = new TreeMap<>();
+        for (MonthKey key : keys) {
+            assignmentsByMonth.computeIfAbsent(key.month(), m -> new ArrayList<>()).add(key.assignmentId());
+        }
+        for (Map.Entry<YearMonth, List<Long>> entry : assignmentsByMonth.entrySet()) {
+            YearMonth month = entry.getKey();
+            List<Long> assignmentIds = entry.getValue();
+            for (int i = 0; i < assignmentIds.size(); i += batchSize) {
+                List<Long> chunk = assignmentIds.subList(i, Math.min(i + batchSize, assignmentIds.size()));
+                summaryRepository.deleteByAssignmentIdsAndMonth(chunk, month.getYear(), month.getMonthValue());
+                summaryRepository.insertFromAttendanceByAssignmentIdsAndDateRange(chunk, month.atDay(1),
+                        month.plusMonths(1).atDay(1));
+            }
+        }
+        log.debug("[ATTENDANCE-SUMMARY] Refreshed {} assignment-month(s)", keys.size());
+    }
+
+    @Override
+    @Transactional
+    public int rebuildRange(Long fromId, Long toId) {
+        summaryRepository.deleteByAssignmentIdRange(fromId, toId);
+        return summaryRepository.insertFromAttendanceByAssignmentIdRange(fromId, toId);
+    }
+
+    @Override
+    public Long findMaxAssignmentId() {
+        Long maxId = summaryRepository.findMaxAssignmentId();
+        return maxId != null ? maxId : 0L;
+    }
+
+    @Override
+    public boolean needsInitialBuild() {
+        return summaryRepository.count() == 0 && findMaxAssignmentId() > 0;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public int countMismatches(Long fromId, Long toId) {
+        Long mismatches = summaryRepository.countMismatchesByAssignmentIdRange(fromId, toId);
+        return mismatches != null ? mismatches.intValue() : 0;
+    }
+
+    @Override
+    public AssignmentTotals getTotals(Long assignmentId) {
+        return getTotals(List.of(assignmentId)).getOrDefault(assignmentId, AssignmentTotals.EMPTY);
+    }
+
+    @Override
+    public Map<Long, AssignmentTotals> getTotals(Collection<Long> assignmentIds) {
+        Map<Long, AssignmentTotals> result = new HashMap<>();
+        if (assignmentIds == null || assignmentIds.isEmpty()) {
+            return result;
+        }
+        refreshPending(assignmentIds);
+        LocalDate today = LocalDate.now();
+        int currentPeriod = today.getYear() * 12 + today.getMonthValue();
+
+        List<Object[]> rows = summaryRepository.aggregateByAssignmentIds(assignmentIds, currentPeriod);
+
+        // Tháng hiện tại chỉ tính các ngày tới hôm nay (chấm công được sinh sẵn cho cả tháng);
+        // tháng sau chưa có ngày công
+        List<Long> inCurrentPeriod = new ArrayList<>();
+        for (Object[] row : rows) {
+            if (row[5] != null && ((Number) row[5]).intValue() >= currentPeriod) {
+                inCurrentPeriod.add((Long) row[0]);
+            }
+        }
+        Map<Long, Integer> currentMonthDays = new HashMap<>();
+        if (!inCurrentPeriod.isEmpty()) {
+            for (Object[] row : attendanceRepository.countActiveByAssignmentIdsAndDateBetween(inCurrentPeriod,
+                    today.withDayOfMonth(1), today)) {
+                currentMonthDays.put((Long) row[0], ((Number) row[1]).intValue());
+            }
+        }
+
+        for (Object[] row : rows) {
+            Long assignmentId = (Long) row[0];
+            int workDays = (row[1] != null ? ((Number) row[1]).intValue() : 0)
+                    + currentMonthDays.getOrDefault(assignmentId, 0);
+            result.put(assignmentId, new AssignmentTotals(workDays,
+                    defaultZero((BigDecimal) row[2]),
+                    defaultZero((BigDecimal) row[3]),
+                    defaultZero((BigDecimal) row[4])));
+        }
+        return result;
+    }
+
+    /**
+     * Transaction hiện tại vừa sửa chấm công của các assignment đang đọc (vd. sửa chấm công rồi tính
+     * lại lương) thì tính lại ngay thay vì chờ tới lúc commit.
+     */
+    private void refreshPending(Collection<Long> assignmentIds) {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()
+                || TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return;
+        }
+        // Thay đổi chưa flush thì listener chưa thấy
+        entityManager.flush();
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (synchronization instanceof DirtyAssignments dirty) {
+                List<Long> pending = assignmentIds.stream().filter(dirty.assignmentIds::contains).distinct().toList();
+                if (!pending.isEmpty()) {
+                    refresh(pending);
+                    dirty.assignmentIds.removeAll(pending);
+                    dirty.months.removeIf(key -> pending.contains(key.assignmentId()));
+                }
+                List<MonthKey> pendingMonths = dirty.months.stream()
+                        .filter(key -> assignmentIds.contains(key.assignmentId())).toList();
+                if (!pendingMonths.isEmpty()) {
+                    refreshMonths(pendingMonths);
+                    pendingMonths.forEach(dirty.months::remove);
+                }
+                return;
+            }
+        }
+    }
+
+    @Override
+    public int countWorkDaysByEmployee(Long employeeId, Integer month, Integer year) {
+        Long days = summaryRepository.sumWorkDaysByEmployeeAndMonth(employeeId, month, year);
+        return days != null ? days.intValue() : 0;
+    }
+
+    @Override
+    public int countAbsenceDaysByContract(Long contractId, Integer month, Integer year, AssignmentType excludedType) {
+        Long days = summaryRepository.sumAbsenceDaysByContractAndMonth(contractId, month, year, excludedType);
+        return days != null ? days.intValue() : 0;
+    }
+
+    @Override
+    public Map<Long, Integer> countAbsenceDaysByContracts(Collection<Long> contractIds, Integer month, Integer year,
+            AssignmentType excludedType) {
+        Map<Long, Integer> result = new HashMap<>();
+        if (contractIds == null || contractIds.isEmpty()) {
+            return result;
+        }
+        for (Object[] row : summaryRepository.sumAbsenceDaysByContractsAndMonth(contractIds, month, year,
+                excludedType)) {
+            result.put((Long) row[0], row[1] != null ? ((Number) row[1]).intValue() : 0);
+        }
+        return result;
+    }
+
+    private static BigDecimal defaultZero(BigDecimal value) {
+        return value != null ? value : BigDecimal.ZERO;
+    }
+}
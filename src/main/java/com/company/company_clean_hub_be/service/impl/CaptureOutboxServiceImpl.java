@@ -0,0 +1,170 @@
+package com.company.company_clean_hub_be.service.impl;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.company.company_clean_hub_be.dto.request.WorkScheduleCaptureRequest;
+import com.company.company_clean_hub_be.entity.CaptureOutboxEvent;
+import com.company.company_clean_hub_be.entity.CaptureOutboxPayload;
+import com.company.company_clean_hub_be.entity.CaptureOutboxStatus;
+import com.company.company_clean_hub_be.entity.VerificationImage;
+import com.company.company_clean_hub_be.entity.WorkSchedule;
+import com.company.company_clean_hub_be.exception.AppException;
+import com.company.company_clean_hub_be.exception.ErrorCode;
+import com.company.company_clean_hub_be.repository.CaptureOutboxEventRepository;
+import com.company.company_clean_hub_be.repository.CaptureOutboxPayloadRepository;
+import com.company.company_clean_hub_be.repository.VerificationImageRepository;
+import com.company.company_clean_hub_be.service.CaptureOutboxService;
+import com.company.company_clean_hub_be.service.FileStorageService;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Outbox trên DB cho phần xử lý sau khi chụp ảnh: không cần message broker,
+ * sự kiện và ảnh chờ upload (capture_outbox_payloads) được ghi cùng transaction với WorkSchedule
+ * nên không bị mất khi ứng dụng dừng hay redeploy.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CaptureOutboxServiceImpl implements CaptureOutboxService {
+
+    private static final String VERIFICATION_FOLDER = "company-clean-hub/verification";
+    private static final int MAX_ERROR_LENGTH = 1000;
+
+    private final CaptureOutboxEventRepository outboxRepository;
+    private final VerificationImageRepository imageRepository;
+    private final FileStorageService fileStorageService;
+    private final CaptureOutboxPayloadRepository payloadRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${capture.outbox.max-attempts:8}")
+    private int maxAttempts;
+
+    @Value("${capture.outbox.retry-base-seconds:30}")
+    private long retryBaseSeconds;
+
+    @Value("${capture.outbox.processing-timeout-minutes:10}")
+    private long processingTimeoutMinutes;
+
+    @Override
+    @Transactional
+    public void enqueue(WorkSchedule schedule, VerificationImage image, WorkScheduleCaptureRequest request) {
+        CaptureOutboxEvent event = CaptureOutboxEvent.builder()
+                .idempotencyKey("capture:" + schedule.getId())
+                .workScheduleId(schedule.getId())
+                .verificationImageId(image != null ? image.getId() : null)
+                .latitude(request.getLatitude())
+                .longitude(request.getLongitude())
+                .status(CaptureOutboxStatus.PENDING)
+                .attempts(0)
+                .nextAttemptAt(LocalDateTime.now())
+                .build();
+        outboxRepository.save(event);
+        if (image != null && request.getImageBase64() != null) {
+            payloadRepository.save(CaptureOutboxPayload.builder()
+                    .eventId(event.getId())
+                    .imageBase64(request.getImageBase64())
+                    .build());
+        }
+        log.info("[CAPTURE-OUTBOX] Enqueued event {} for work schedule {}", event.getId(), schedule.getId());
+    }
+
+    @Override
+    public List<Long> findDueEventIds(int limit) {
+        LocalDateTime now = LocalDateTime.now();
+        return outboxRepository.findDueEventIds(now, now.minusMinutes(processingTimeoutMinutes),
+                PageRequest.of(0, limit));
+    }
+
+    @Override
+    public boolean claim(Long eventId) {
+        LocalDateTime now = LocalDateTime.now();
+        return outboxRepository.claim(eventId, now, now.minusMinutes(processingTimeoutMinutes)) == 1;
+    }
+
+    @Override
+    public void uploadPendingImage(Long eventId) {
+        CaptureOutboxEvent event = outboxRepository.findById(eventId)
+                .orElseThrow(() -> new AppException(ErrorCode.INVALID_REQUEST, "Capture outbox event not found: " + eventId));
+
+        if (event.getVerificationImageId() == null) {
+            return;
+        }
+        String imageBase64 = payloadRepository.findImageBase64ByEventId(eventId)
+                .orElse(event.getImageBase64());
+        // Đã upload ở lần chạy trước
+        if (imageBase64 == null) {
+            return;
+        }
+
+        VerificationImage image = imageRepository.findById(event.getVerificationImageId()).orElse(null);
+        String publicId = null;
+        if (image == null) {
+            log.warn("[CAPTURE-OUTBOX] Verification image {} no longer exists, skip upload",
+                    event.getVerificationImageId());
+        } else if (image.getCloudinaryPublicId() == null) {
+            try {
+                // public_id cố định theo sự kiện: thử lại sẽ ghi đè cùng một ảnh, không sinh ảnh trùng
+                publicId = fileStorageService.storeBase64WithPublicId(
+                        imageBase64,
+                        "verification_" + event.getWorkScheduleId() + "_" + event.getId(),
+                        VERIFICATION_FOLDER);
+            } catch (Exception e) {
+                log.error("Failed to save verification image", e);
+                throw new AppException(ErrorCode.FILE_UPLOAD_FAILED, "Failed to save image");
+            }
+        }
+
+        // Gắn ảnh vào VerificationImage và bỏ ảnh khỏi sự kiện trong cùng một transaction:
+        // lỗi giữa hai bước không để lại ảnh đã gắn mà sự kiện vẫn chờ upload (hoặc ngược lại)
+        String uploadedPublicId = publicId;
+        transactionTemplate.executeWithoutResult(status -> {
+            if (uploadedPublicId != null) {
+                imageRepository.findById(event.getVerificationImageId()).ifPresent(current -> {
+                    current.setCloudinaryPublicId(uploadedPublicId);
+                    current.setCloudinaryUrl(fileStorageService.getSecureUrl(uploadedPublicId));
+                    imageRepository.save(current);
+                });
+            }
+            payloadRepository.deleteByEventId(eventId);
+            if (event.getImageBase64() != null) {
+                outboxRepository.findById(eventId).ifPresent(current -> {
+                    current.setImageBase64(null);
+                    outboxRepository.save(current);
+                });
+            }
+        });
+    }
+
+    @Override
+    @Transactional
+    public void markFailed(Long eventId, String error) {
+        outboxRepository.findById(eventId).ifPresent(event -> {
+            int attempts = event.getAttempts() != null ? event.getAttempts() : 0;
+            event.setLockedAt(null);
+            event.setLastError(error != null && error.length() > MAX_ERROR_LENGTH
+                    ? error.substring(0, MAX_ERROR_LENGTH)
+                    : error);
+            if (attempts >= maxAttempts) {
+                event.setStatus(CaptureOutboxStatus.FAILED);
+                log.error("[CAPTURE-OUTBOX] Event {} failed after {} attempts: {}", eventId, attempts, error);
+            } else {
+                // Lùi thời gian thử lại theo cấp số nhân, tối đa 30 phút
+                long delaySeconds = Math.min(retryBaseSeconds << Math.max(attempts - 1, 0), 1800);
+                event.setStatus(CaptureOutboxStatus.PENDING);
+                event.setNextAttemptAt(LocalDateTime.now().plusSeconds(delaySeconds));
+                log.warn("[CAPTURE-OUTBOX] Event {} attempt {} failed, retry in {}s: {}",
+                        eventId, attempts, delaySeconds, error);
+            }
+            outboxRepository.save(event);
+        });
+    }
+}
@@ -53,6 +53,7 @@ public class ContractServiceImpl implements ContractService {
         private final com.company.company_clean_hub_be.service.VerificationService verificationService;
         private final InvoiceRepository invoiceRepository;
         private final RatingRepository ratingRepository;
+        private final com.company.company_clean_hub_be.service.AttendanceSummaryService attendanceSummaryService;
 
         @Override
         public List<ContractResponse> getAllContracts() {
@@ -206,6 +207,7 @@ public class ContractServiceImpl implements ContractService {
                 for (Assignment a : assignments) {
                         workScheduleRepository.deleteByAssignmentId(a.getId());
                         attendanceRepository.deleteByAssignmentId(a.getId());
+                        attendanceSummaryService.markDirty(a.getId());
 
                         // Remove histories referencing this assignment (old or new)
                         try {
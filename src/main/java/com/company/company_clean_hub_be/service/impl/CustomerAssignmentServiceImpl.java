@@ -11,8 +11,11 @@ import com.company.company_clean_hub_be.exception.ResourceNotFoundException;
 import com.company.company_clean_hub_be.repository.CustomerAssignmentRepository;
 import com.company.company_clean_hub_be.repository.CustomerRepository;
 import com.company.company_clean_hub_be.repository.UserRepository;
+import com.company.company_clean_hub_be.security.PrincipalCache;
 import com.company.company_clean_hub_be.security.UserPrincipal;
 import com.company.company_clean_hub_be.service.CustomerAssignmentService;
+import com.company.company_clean_hub_be.service.ManagerScopeService;
+import com.company.company_clean_hub_be.service.helper.NotificationRecipientResolver;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.access.AccessDeniedException;
@@ -32,6 +35,9 @@ public class CustomerAssignmentServiceImpl implements CustomerAssignmentService
     private final CustomerAssignmentRepository customerAssignmentRepository;
     private final UserRepository userRepository;
     private final CustomerRepository customerRepository;
+    private final NotificationRecipientResolver notificationRecipientResolver;
+    private final PrincipalCache principalCache;
+    private final ManagerScopeService managerScopeService;
 
     @Override
     @Transactional
@@ -71,6 +77,10 @@ public class CustomerAssignmentServiceImpl implements CustomerAssignmentService
                 .build();
 
         CustomerAssignment savedAssignment = customerAssignmentRepository.save(assignment);
+        notificationRecipientResolver.invalidate();
+        managerScopeService.invalidate(manager.getId());
+        // Danh sách customer được phân công nằm trên principal của manager
+        principalCache.evictAfterCommit(manager.getUsername());
         log.info("Phân công thành công: assignmentId={}", savedAssignment.getId());
 
         return mapToResponse(savedAssignment);
@@ -137,6 +147,9 @@ public class CustomerAssignmentServiceImpl implements CustomerAssignmentService
         validateRevokePermission(requester, assignment);
 
         customerAssignmentRepository.delete(assignment);
+        notificationRecipientResolver.invalidate();
+        managerScopeService.invalidate(managerId);
+        principalCache.evictAfterCommit(assignment.getManager() != null ? assignment.getManager().getUsername() : null);
         log.info("Đã hủy phân công thành công");
     }
 
@@ -6,6 +6,7 @@ import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -27,8 +28,6 @@ import com.company.company_clean_hub_be.dto.response.CustomerResponse;
 import com.company.company_clean_hub_be.dto.response.PageResponse;
 import com.company.company_clean_hub_be.entity.Customer;
 import com.company.company_clean_hub_be.entity.Role;
-import com.company.company_clean_hub_be.entity.User;
-import com.company.company_clean_hub_be.repository.UserRepository;
 import com.company.company_clean_hub_be.repository.CustomerAssignmentRepository;
 import com.company.company_clean_hub_be.exception.AppException;
 import com.company.company_clean_hub_be.exception.ErrorCode;
@@ -36,6 +35,8 @@ import com.company.company_clean_hub_be.repository.ContractRepository;
 import com.company.company_clean_hub_be.repository.CustomerRepository;
 import com.company.company_clean_hub_be.repository.RoleRepository;
 import com.company.company_clean_hub_be.service.CustomerService;
+import com.company.company_clean_hub_be.service.ManagerScopeService;
+import com.company.company_clean_hub_be.util.ChunkedIterator;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -45,12 +46,16 @@ import lombok.extern.slf4j.Slf4j;
 @Transactional
 @Slf4j
 public class CustomerServiceImpl implements CustomerService {
+    // Số khách hàng nạp mỗi lần khi xuất Excel streaming
+    private static final int EXPORT_CHUNK_SIZE = 200;
+
     private final CustomerRepository customerRepository;
     private final ContractRepository contractRepository;
     private final RoleRepository roleRepository;
     private final PasswordEncoder passwordEncoder;
-    private final UserRepository userRepository;
     private final CustomerAssignmentRepository customerAssignmentRepository;
+    private final com.company.company_clean_hub_be.security.PrincipalCache principalCache;
+    private final ManagerScopeService managerScopeService;
 
     @Override
     public String generateCustomerCode() {
@@ -78,7 +83,22 @@ public class CustomerServiceImpl implements CustomerService {
         log.info("getCustomersWithContractsForExport requested");
         
         List<CustomerContractServiceFlatDto> flatData = contractRepository.findAllCustomerContractServicesFlat();
+        List<CustomerContractGroupDto> result = groupCustomerContracts(flatData);
         
+        log.info("getCustomersWithContractsForExport completed: total customers={}", result.size());
+        return result;
+    }
+
+    @Override
+    public Iterator<CustomerContractGroupDto> openCustomersWithContractsExportCursor() {
+        List<Long> customerIds = contractRepository.findDistinctCustomerIdsWithContracts();
+        log.info("openCustomersWithContractsExportCursor: total customers={}", customerIds.size());
+        return new ChunkedIterator<>(customerIds, EXPORT_CHUNK_SIZE,
+                chunk -> groupCustomerContracts(contractRepository.findCustomerContractServicesFlatByCustomerIds(chunk)));
+    }
+
+    // Gom các dòng phẳng (customer - contract - service) thành nhóm khách hàng kèm hợp đồng và tổng VAT
+    private List<CustomerContractGroupDto> groupCustomerContracts(List<CustomerContractServiceFlatDto> flatData) {
         Map<Long, CustomerContractGroupDto> customerMap = new LinkedHashMap<>();
         Map<Long, ContractDetailDto> contractMap = new HashMap<>();
         Map<Long, List<BigDecimal>> contractVatMap = new HashMap<>();
@@ -147,7 +167,6 @@ public class CustomerServiceImpl implements CustomerService {
                     .collect(Collectors.toList()));
         }
         
-        log.info("getCustomersWithContractsForExport completed: total customers={}", customerMap.size());
         return new ArrayList<>(customerMap.values());
     }
     
@@ -167,15 +186,12 @@ public class CustomerServiceImpl implements CustomerService {
 
     @Override
     public List<CustomerResponse> getAllCustomers() {
-        String username = org.springframework.security.core.context.SecurityContextHolder.getContext().getAuthentication().getName();
-        User currentUser = userRepository.findByUsername(username).orElse(null);
-        if (currentUser != null && currentUser.getRole() != null && 
-            ("QLT2".equalsIgnoreCase(currentUser.getRole().getCode()) || "QLV".equalsIgnoreCase(currentUser.getRole().getCode()))) {
-            List<Long> assignedIds = customerAssignmentRepository.findCustomerIdsByManagerId(currentUser.getId());
-            if (assignedIds.isEmpty()) {
+        Long managerId = managerScopeService.getScopedManagerId("QLT2", "QLV");
+        if (managerId != null) {
+            if (!managerScopeService.hasCustomers(managerId)) {
                 return new ArrayList<>();
             }
-            return customerRepository.findAllById(assignedIds).stream()
+            return customerAssignmentRepository.findAllCustomersByManagerId(managerId).stream()
                     .map(this::mapToResponse)
                     .collect(Collectors.toList());
         }
@@ -194,14 +210,11 @@ public class CustomerServiceImpl implements CustomerService {
         LocalDate monthStart = LocalDate.of(targetYear, targetMonth, 1);
         LocalDate monthEnd = monthStart.plusMonths(1).minusDays(1);
 
-        String username = org.springframework.security.core.context.SecurityContextHolder.getContext().getAuthentication().getName();
-        User currentUser = userRepository.findByUsername(username).orElse(null);
-        
+        Long managerId = managerScopeService.getScopedManagerId("QLT2", "QLV");
+
         Page<Customer> customerPage;
-        if (currentUser != null && currentUser.getRole() != null && 
-            ("QLT2".equalsIgnoreCase(currentUser.getRole().getCode()) || "QLV".equalsIgnoreCase(currentUser.getRole().getCode()))) {
-            List<Long> assignedIds = customerAssignmentRepository.findCustomerIdsByManagerId(currentUser.getId());
-            if (assignedIds.isEmpty()) {
+        if (managerId != null) {
+            if (!managerScopeService.hasCustomers(managerId)) {
                 return PageResponse.<CustomerResponse>builder()
                         .content(new ArrayList<>())
                         .page(0)
@@ -212,7 +225,7 @@ public class CustomerServiceImpl implements CustomerService {
                         .last(true)
                         .build();
             }
-            customerPage = customerRepository.findByFiltersAndIds(keyword, assignedIds, hasContractInMonth, monthStart, monthEnd, pageable);
+            customerPage = customerRepository.findByFiltersForManager(keyword, managerId, hasContractInMonth, monthStart, monthEnd, pageable);
         } else {
             customerPage = customerRepository.findByFilters(keyword, hasContractInMonth, monthStart, monthEnd, pageable);
         }
@@ -234,13 +247,10 @@ public class CustomerServiceImpl implements CustomerService {
 
     @Override
     public CustomerResponse getCustomerById(Long id) {
-        String username = org.springframework.security.core.context.SecurityContextHolder
-            .getContext().getAuthentication().getName();
-        User currentUser = userRepository.findByUsername(username).orElse(null);
-        if (currentUser != null && currentUser.getRole() != null && 
-            ("QLT2".equalsIgnoreCase(currentUser.getRole().getCode()) || "QLV".equalsIgnoreCase(currentUser.getRole().getCode()))) {
-            boolean exists = customerAssignmentRepository.existsByManagerIdAndCustomerId(currentUser.getId(), id);
-            if (!exists) {
+        Long managerId = managerScopeService.getScopedManagerId("QLT2", "QLV");
+        if (managerId != null) {
+            // Phân quyền truy cập một customer kiểm tra trực tiếp DB, không dựa vào scope đang cache
+            if (!customerAssignmentRepository.existsByManagerIdAndCustomerId(managerId, id)) {
                 throw new AppException(ErrorCode.FORBIDDEN);
             }
         }
@@ -292,10 +302,13 @@ public class CustomerServiceImpl implements CustomerService {
         Role role = roleRepository.findById(request.getRoleId())
                 .orElseThrow(() -> new AppException(ErrorCode.ROLE_NOT_FOUND));
 
+        String oldUsername = customer.getUsername();
         customer.setCustomerCode(request.getCustomerCode());
         customer.setUsername(request.getUsername());
         if (request.getPassword() != null && !request.getPassword().isEmpty()) {
             customer.setPassword(passwordEncoder.encode(request.getPassword()));
+            // Đặt lại mật khẩu → thu hồi các token đang dùng
+            customer.setTokenVersion((customer.getTokenVersion() != null ? customer.getTokenVersion() : 0) + 1);
         }
         customer.setPhone(request.getPhone());
         customer.setEmail(request.getEmail());
@@ -310,6 +323,7 @@ public class CustomerServiceImpl implements CustomerService {
         customer.setUpdatedAt(LocalDateTime.now());
 
         Customer updatedCustomer = customerRepository.save(customer);
+        principalCache.evictAfterCommit(oldUsername, updatedCustomer.getUsername());
         log.info("updateCustomer completed by {}: id={}", username, updatedCustomer.getId());
         return mapToResponse(updatedCustomer);
     }
@@ -319,10 +333,11 @@ public class CustomerServiceImpl implements CustomerService {
         String username = org.springframework.security.core.context.SecurityContextHolder
                 .getContext().getAuthentication().getName();
         log.info("deleteCustomer requested by {}: id={}", username, id);
-        if (!customerRepository.existsById(id)) {
-            throw new AppException(ErrorCode.CUSTOMER_NOT_FOUND);
-        }
-        customerRepository.deleteById(id);
+        Customer customer = customerRepository.findById(id)
+                .orElseThrow(() -> new AppException(ErrorCode.CUSTOMER_NOT_FOUND));
+        customerRepository.delete(customer);
+        principalCache.evictAfterCommit(customer.getUsername());
+        managerScopeService.invalidateAll();
         log.info("deleteCustomer completed: id={}", id);
     }
 
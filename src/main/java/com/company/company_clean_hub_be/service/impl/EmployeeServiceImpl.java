@@ -1,8 +1,17 @@
 package com.company.company_clean_hub_be.service.impl;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 import org.springframework.data.domain.Page;
@@ -14,9 +23,11 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import com.company.company_clean_hub_be.dto.request.EmployeeRequest;
+import com.company.company_clean_hub_be.dto.response.AvailableEmployeeResponse;
 import com.company.company_clean_hub_be.dto.response.EmployeeExportDto;
 import com.company.company_clean_hub_be.dto.response.EmployeeResponse;
 import com.company.company_clean_hub_be.dto.response.PageResponse;
+import com.company.company_clean_hub_be.entity.Contract;
 import com.company.company_clean_hub_be.entity.Employee;
 import com.company.company_clean_hub_be.entity.EmploymentType;
 import com.company.company_clean_hub_be.entity.Role;
@@ -26,11 +37,15 @@ import com.company.company_clean_hub_be.exception.ErrorCode;
 import com.company.company_clean_hub_be.entity.WorkSchedule;
 import com.company.company_clean_hub_be.entity.WorkScheduleReason;
 import com.company.company_clean_hub_be.entity.WorkScheduleStatus;
+import com.company.company_clean_hub_be.repository.ContractRepository;
 import com.company.company_clean_hub_be.repository.EmployeeRepository;
 import com.company.company_clean_hub_be.repository.RoleRepository;
 import com.company.company_clean_hub_be.repository.UserRepository;
+import com.company.company_clean_hub_be.repository.WorkLocationRepository;
 import com.company.company_clean_hub_be.repository.WorkScheduleRepository;
 import com.company.company_clean_hub_be.service.EmployeeService;
+import com.company.company_clean_hub_be.service.helper.EmployeeAvailabilityIndex;
+import com.company.company_clean_hub_be.util.ChunkedIterator;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -40,6 +55,9 @@ import lombok.extern.slf4j.Slf4j;
 @Transactional
 @Slf4j
 public class EmployeeServiceImpl implements EmployeeService {
+        // Số nhân viên nạp mỗi lần khi xuất Excel streaming
+        private static final int EXPORT_CHUNK_SIZE = 200;
+
         private final EmployeeRepository employeeRepository;
         private final RoleRepository roleRepository;
         private final PasswordEncoder passwordEncoder;
@@ -51,6 +69,28 @@ public class EmployeeServiceImpl implements EmployeeService {
         private final com.company.company_clean_hub_be.service.EmployeeImageService employeeImageService;
         private final com.company.company_clean_hub_be.service.FileStorageService fileStorageService;
         private final com.company.company_clean_hub_be.cccd.service.impl.CccdValidationServiceImpl cccdValidationService;
+        private final com.company.company_clean_hub_be.security.PrincipalCache principalCache;
+        private final ContractRepository contractRepository;
+        private final WorkLocationRepository workLocationRepository;
+        private final EmployeeAvailabilityIndex availabilityIndex;
+
+        private static final int MAX_AVAILABLE_LIMIT = 100;
+        private static final int COORDINATE_CHUNK_SIZE = 1000;
+
+        // Ứng viên rảnh; distance = null khi không tính được khoảng cách
+        record AvailableCandidate(Object[] row, Double distance, int activeAssignments) {
+                Long id() {
+                        return (Long) row[0];
+                }
+        }
+
+        // Ít assignment đang hoạt động trước, cùng tải thì gần nhất trước (không rõ khoảng cách xếp sau), rồi id.
+        // Khoảng cách tính từ vị trí các hợp đồng đang làm nên nhân viên chưa có việc luôn không rõ khoảng cách:
+        // xếp theo khoảng cách trước thì họ luôn bị đẩy xuống cuối
+        static final Comparator<AvailableCandidate> CANDIDATE_RANKING = Comparator
+                        .comparingInt(AvailableCandidate::activeAssignments)
+                        .thenComparing(AvailableCandidate::distance, Comparator.nullsLast(Comparator.naturalOrder()))
+                        .thenComparing(AvailableCandidate::id);
 
         @Override
         public String generateEmployeeCode(EmploymentType employmentType) {
@@ -246,32 +286,30 @@ public class EmployeeServiceImpl implements EmployeeService {
 
                 // Gửi notification cho Quản lý tổng (QLT1 & QLT2)
                 try {
-                        java.util.List<User> managers = userRepository.findByRoleCodeIn(java.util.List.of("QLT1", "QLT2"));
+                        java.util.List<Long> managerIds = notificationService
+                                        .getRecipientIdsByRoles(java.util.List.of("QLT1", "QLT2"));
                         log.info("[NOTIFY][NEW_EMPLOYEE] Found {} manager(s) with role QLT1/QLT2 to notify",
-                                        managers.size());
-                        if (managers.isEmpty()) {
+                                        managerIds.size());
+                        if (managerIds.isEmpty()) {
                                 log.warn("[NOTIFY][NEW_EMPLOYEE] No QLT1 managers found — notification will NOT be sent for employeeId={}",
                                                 savedEmployee.getId());
                         }
                         String createdTime = LocalDateTime.now()
                                         .format(java.time.format.DateTimeFormatter.ofPattern("HH:mm dd/MM/yyyy"));
-                        for (User manager : managers) {
-                                log.info("[NOTIFY][NEW_EMPLOYEE] Sending to userId={} ({})",
-                                                manager.getId(), manager.getUsername());
-                                notificationService.createNotification(
-                                                manager,
-                                                com.company.company_clean_hub_be.entity.NotificationType.NEW_EMPLOYEE_CREATED,
-                                                "[NV MOI] Nhân viên mới được thêm vào hệ thống",
-                                                String.format("Nhân viên %s (%s) vừa được thêm bởi %s vào lúc %s.",
-                                                                savedEmployee.getName(),
-                                                                savedEmployee.getEmployeeCode(),
-                                                                username,
-                                                                createdTime),
-                                                savedEmployee.getId(),
-                                                null,
-                                                null);
-                                log.info("[NOTIFY][NEW_EMPLOYEE] ✅ Sent successfully to userId={}", manager.getId());
-                        }
+                        int sent = notificationService.createNotifications(
+                                        managerIds,
+                                        com.company.company_clean_hub_be.entity.NotificationType.NEW_EMPLOYEE_CREATED,
+                                        "[NV MOI] Nhân viên mới được thêm vào hệ thống",
+                                        String.format("Nhân viên %s (%s) vừa được thêm bởi %s vào lúc %s.",
+                                                        savedEmployee.getName(),
+                                                        savedEmployee.getEmployeeCode(),
+                                                        username,
+                                                        createdTime),
+                                        savedEmployee.getId(),
+                                        null,
+                                        null,
+                                        null);
+                        log.info("[NOTIFY][NEW_EMPLOYEE] ✅ Sent to {} manager(s)", sent);
                 } catch (Exception e) {
                         log.warn("[NOTIFY][NEW_EMPLOYEE] ❌ Failed for employeeId={}: {}",
                                         savedEmployee.getId(), e.getMessage(), e);
@@ -459,10 +497,10 @@ public class EmployeeServiceImpl implements EmployeeService {
                 String username = org.springframework.security.core.context.SecurityContextHolder
                                 .getContext().getAuthentication().getName();
                 log.info("deleteEmployee requested by {}: id={}", username, id);
-                if (!employeeRepository.existsById(id)) {
-                        throw new AppException(ErrorCode.EMPLOYEE_NOT_FOUND);
-                }
-                employeeRepository.deleteById(id);
+                Employee employee = employeeRepository.findById(id)
+                                .orElseThrow(() -> new AppException(ErrorCode.EMPLOYEE_NOT_FOUND));
+                employeeRepository.delete(employee);
+                principalCache.evictAfterCommit(employee.getUsername());
                 log.info("deleteEmployee completed: id={}", id);
         }
 
@@ -515,25 +553,7 @@ public class EmployeeServiceImpl implements EmployeeService {
                 log.info("getAllEmployeesForExport requested");
                 DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss");
                 return employeeRepository.findAll().stream()
-                                .map(employee -> EmployeeExportDto.builder()
-                                                .id(employee.getId())
-                                                .employeeCode(employee.getEmployeeCode())
-                                                .name(employee.getName())
-                                                .username(employee.getUsername())
-                                                .email(employee.getEmail())
-                                                .phone(employee.getPhone())
-                                                .address(employee.getAddress())
-                                                .cccd(employee.getCccd())
-                                                .bankAccount(employee.getBankAccount())
-                                                .bankName(employee.getBankName())
-                                                .description(employee.getDescription())
-                                                .createdAt(employee.getCreatedAt() != null
-                                                                ? employee.getCreatedAt().format(formatter)
-                                                                : "")
-                                                .updatedAt(employee.getUpdatedAt() != null
-                                                                ? employee.getUpdatedAt().format(formatter)
-                                                                : "")
-                                                .build())
+                                .map(employee -> toExportDto(employee, formatter))
                                 .collect(Collectors.toList());
         }
 
@@ -543,28 +563,43 @@ public class EmployeeServiceImpl implements EmployeeService {
                 log.info("getEmployeesForExportByType requested: employmentType={}", employmentType);
                 DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss");
                 return employeeRepository.findByEmploymentType(employmentType).stream()
-                                .map(employee -> EmployeeExportDto.builder()
-                                                .id(employee.getId())
-                                                .employeeCode(employee.getEmployeeCode())
-                                                .name(employee.getName())
-                                                .username(employee.getUsername())
-                                                .email(employee.getEmail())
-                                                .phone(employee.getPhone())
-                                                .address(employee.getAddress())
-                                                .cccd(employee.getCccd())
-                                                .bankAccount(employee.getBankAccount())
-                                                .bankName(employee.getBankName())
-                                                .description(employee.getDescription())
-                                                .createdAt(employee.getCreatedAt() != null
-                                                                ? employee.getCreatedAt().format(formatter)
-                                                                : "")
-                                                .updatedAt(employee.getUpdatedAt() != null
-                                                                ? employee.getUpdatedAt().format(formatter)
-                                                                : "")
-                                                .build())
+                                .map(employee -> toExportDto(employee, formatter))
                                 .collect(Collectors.toList());
         }
 
+        @Override
+        public Iterator<EmployeeExportDto> openEmployeesExportCursor(EmploymentType employmentType) {
+                List<Long> employeeIds = employeeRepository.findIdsForExport(employmentType);
+                log.info("openEmployeesExportCursor: employmentType={}, total={}", employmentType, employeeIds.size());
+                DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss");
+                return new ChunkedIterator<>(employeeIds, EXPORT_CHUNK_SIZE,
+                                chunk -> employeeRepository.findAllByIdInOrderById(chunk).stream()
+                                                .map(employee -> toExportDto(employee, formatter))
+                                                .collect(Collectors.toList()));
+        }
+
+        private EmployeeExportDto toExportDto(Employee employee, DateTimeFormatter formatter) {
+                return EmployeeExportDto.builder()
+                                .id(employee.getId())
+                                .employeeCode(employee.getEmployeeCode())
+                                .name(employee.getName())
+                                .username(employee.getUsername())
+                                .email(employee.getEmail())
+                                .phone(employee.getPhone())
+                                .address(employee.getAddress())
+                                .cccd(employee.getCccd())
+                                .bankAccount(employee.getBankAccount())
+                                .bankName(employee.getBankName())
+                                .description(employee.getDescription())
+                                .createdAt(employee.getCreatedAt() != null
+                                                ? employee.getCreatedAt().format(formatter)
+                                                : "")
+                                .updatedAt(employee.getUpdatedAt() != null
+                                                ? employee.getUpdatedAt().format(formatter)
+                                                : "")
+                                .build();
+        }
+
         // [DEPRECATED] Replaced by advanceNoteSummary from Assignment.advanceNote
         // @Override
         // public EmployeeResponse updateAdvanceSalary(Long id, java.math.BigDecimal monthlyAdvanceLimit) {
@@ -801,4 +836,116 @@ public class EmployeeServiceImpl implements EmployeeService {
                         .collect(Collectors.toList());
         }
 
+        @Override
+        @Transactional(readOnly = true)
+        public List<AvailableEmployeeResponse> findAvailableEmployees(Long contractId,
+                        List<java.time.DayOfWeek> days, java.time.LocalTime startTime, java.time.LocalTime endTime,
+                        LocalDate fromDate, LocalDate toDate, String province, String ward,
+                        EmploymentType employmentType, int limit) {
+                Contract contract = contractId != null
+                                ? contractRepository.findById(contractId)
+                                                .orElseThrow(() -> new AppException(ErrorCode.CONTRACT_NOT_FOUND))
+                                : null;
+
+                // Khung cần tìm: ưu tiên tham số, thiếu thì lấy theo hợp đồng
+                java.time.LocalTime start = startTime != null ? startTime
+                                : contract != null ? contract.getWorkStartTime() : null;
+                java.time.LocalTime end = endTime != null ? endTime
+                                : contract != null ? contract.getWorkEndTime() : null;
+                if (start == null || end == null) {
+                        throw new AppException(ErrorCode.INVALID_REQUEST);
+                }
+                if (!start.isBefore(end)) {
+                        throw new AppException(ErrorCode.INVALID_WORK_TIME_RANGE);
+                }
+                int dayMask = days != null && !days.isEmpty() ? EmployeeAvailabilityIndex.toDayMask(days)
+                                : contract != null ? EmployeeAvailabilityIndex.toDayMask(contract.getWorkingDaysPerWeek())
+                                : EmployeeAvailabilityIndex.ALL_DAYS;
+                LocalDate from = fromDate != null ? fromDate : LocalDate.now();
+                if (toDate != null && toDate.isBefore(from)) {
+                        throw new AppException(ErrorCode.INVALID_REQUEST);
+                }
+                int k = Math.min(Math.max(1, limit), MAX_AVAILABLE_LIMIT);
+                // Tìm người cho hợp đồng: mặc định chỉ nhân viên hợp đồng, không lẫn nhân viên văn phòng
+                EmploymentType type = employmentType != null ? employmentType : EmploymentType.CONTRACT_STAFF;
+
+                // Lọc rảnh trên chỉ mục lịch bận trong bộ nhớ
+                List<Object[]> rows = employeeRepository.findAvailabilityCandidateRows(type, province, ward);
+                List<Object[]> free = new ArrayList<>();
+                Set<Long> contractIds = new LinkedHashSet<>();
+                if (contractId != null) {
+                        contractIds.add(contractId);
+                }
+                for (Object[] row : rows) {
+                        Long employeeId = (Long) row[0];
+                        if (availabilityIndex.isFree(employeeId, from, toDate, dayMask, start, end)) {
+                                free.add(row);
+                                availabilityIndex.getSlots(employeeId).forEach(s -> contractIds.add(s.contractId()));
+                        }
+                }
+
+                // Khoảng cách: từ vị trí làm việc của các hợp đồng nhân viên đang làm tới vị trí của hợp đồng cần người
+                Map<Long, List<double[]>> coordinates = contractId != null
+                                ? loadActiveCoordinates(contractIds)
+                                : Map.of();
+                List<double[]> targets = contractId != null ? coordinates.getOrDefault(contractId, List.of()) : List.of();
+
+                // Giữ top-K bằng heap có giới hạn (phần tử xếp hạng kém nhất ở đỉnh)
+                PriorityQueue<AvailableCandidate> heap = new PriorityQueue<>(k + 1, CANDIDATE_RANKING.reversed());
+                for (Object[] row : free) {
+                        List<EmployeeAvailabilityIndex.BookedSlot> slots = availabilityIndex.getSlots((Long) row[0]);
+                        Double distance = null;
+                        if (!targets.isEmpty()) {
+                                for (EmployeeAvailabilityIndex.BookedSlot slot : slots) {
+                                        for (double[] site : coordinates.getOrDefault(slot.contractId(), List.of())) {
+                                                for (double[] target : targets) {
+                                                        double d = GeofenceServiceImpl.haversineDistance(
+                                                                        site[0], site[1], target[0], target[1]);
+                                                        if (distance == null || d < distance) {
+                                                                distance = d;
+                                                        }
+                                                }
+                                        }
+                                }
+                        }
+                        heap.offer(new AvailableCandidate(row, distance, slots.size()));
+                        if (heap.size() > k) {
+                                heap.poll();
+                        }
+                }
+
+                List<AvailableCandidate> ranked = new ArrayList<>(heap);
+                ranked.sort(CANDIDATE_RANKING);
+                log.info("findAvailableEmployees: contractId={}, {}–{}, dayMask={}, {} nhân viên lọc, {} rảnh, trả {}",
+                                contractId, start, end, Integer.toBinaryString(dayMask), rows.size(), free.size(),
+                                ranked.size());
+
+                return ranked.stream()
+                                .map(c -> AvailableEmployeeResponse.builder()
+                                                .employeeId(c.id())
+                                                .employeeCode((String) c.row()[1])
+                                                .name((String) c.row()[2])
+                                                .phone((String) c.row()[3])
+                                                .address((String) c.row()[4])
+                                                .distanceMeters(c.distance() != null ? Math.round(c.distance() * 10) / 10.0 : null)
+                                                .activeAssignments(c.activeAssignments())
+                                                .build())
+                                .collect(Collectors.toList());
+        }
+
+        // contractId -> [latitude, longitude] của các vị trí làm việc active
+        private Map<Long, List<double[]>> loadActiveCoordinates(Set<Long> contractIds) {
+                Map<Long, List<double[]>> coordinates = new HashMap<>();
+                List<Long> ids = new ArrayList<>(contractIds);
+                for (int i = 0; i < ids.size(); i += COORDINATE_CHUNK_SIZE) {
+                        List<Long> chunk = ids.subList(i, Math.min(ids.size(), i + COORDINATE_CHUNK_SIZE));
+                        for (Object[] row : workLocationRepository.findActiveCoordinateRowsByContractIds(chunk)) {
+                                coordinates.computeIfAbsent((Long) row[0], id -> new ArrayList<>())
+                                                .add(new double[] { ((Number) row[1]).doubleValue(),
+                                                                ((Number) row[2]).doubleValue() });
+                        }
+                }
+                return coordinates;
+        }
+
 }
@@ -2,8 +2,10 @@ package com.company.company_clean_hub_be.service.impl;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.function.Function;
 
@@ -19,13 +21,16 @@ import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.VerticalAlignment;
 import org.apache.poi.ss.usermodel.Workbook;
 import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.ByteArrayResource;
 import org.springframework.stereotype.Service;
 
 import com.company.company_clean_hub_be.dto.response.ContractDetailDto;
 import com.company.company_clean_hub_be.dto.response.CustomerContractGroupDto;
 import com.company.company_clean_hub_be.dto.response.EmployeeExportDto;
+import com.company.company_clean_hub_be.dto.response.InvoiceBulkResultRow;
 import com.company.company_clean_hub_be.dto.response.PayRollAssignmentExportExcel;
 import com.company.company_clean_hub_be.dto.response.PayRollExportExcel;
 import com.company.company_clean_hub_be.service.ExcelExportService;
@@ -38,6 +43,31 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class ExcelExportServiceImpl implements ExcelExportService {
 
+    private static final String[] PAYROLL_HEADERS = {
+            "Mã NV", "Họ tên", "Tháng/Năm", "Ngân hàng", "Số TK", "SĐT",
+            "Công trình", "Ngày công", "Lương thực lãnh", "Thưởng", "Phạt",
+            "Phụ cấp", "Hỗ trợ", "Bảo hiểm", "Tổng lương tháng", "Đã thanh toán", "Còn lại",
+            "Ghi chú"
+    };
+    private static final int[] PAYROLL_COLUMN_WIDTHS = {
+            10, 16, 11, 20, 18, 14, 32, 11, 16, 14, 14, 14, 14, 14, 18, 16, 16, 130
+    };
+
+    private static final String[] CUSTOMER_HEADERS = { "STT", "Khách hàng", "Địa chỉ", "Mã số thuế", "Email",
+            "Mã hợp đồng", "Ngày ký", "Ngày hết hạn", "Ngày làm việc",
+            // "Giá trị HĐ", "Tổng giá trị",
+            "Số ngày làm", "Thuế VAT" };
+    private static final int[] CUSTOMER_COLUMN_WIDTHS = { 6, 20, 24, 16, 26, 14, 12, 12, 20, 12, 14 };
+
+    private static final String[] EMPLOYEE_HEADERS = {
+            "STT", "Mã nhân viên", "Tên", "Tên đăng nhập", "Email", "SĐT",
+            "Địa chỉ", "CCCD", "Tài khoản ngân hàng", "Ngân hàng", "Mô tả", "Ngày tạo", "Cập nhật lần cuối"
+    };
+    private static final int[] EMPLOYEE_COLUMN_WIDTHS = { 6, 14, 20, 18, 26, 14, 24, 16, 20, 20, 30, 20, 20 };
+
+    @Value("${excel.export.row-window:100}")
+    private int rowWindowSize;
+
     private static class Column<T> {
         private final String header;
         private final Function<T, Object> extractor;
@@ -204,160 +234,10 @@ public class ExcelExportServiceImpl implements ExcelExportService {
             Integer month, Integer year) {
         log.info("exportPayrollAssignmentsToExcel started: total rows={}", assignmentData.size());
         try (Workbook workbook = new XSSFWorkbook()) {
-            Sheet sheet = workbook.createSheet("Bảng lương");
-
-            // Create styles
-            CellStyle companyHeaderStyle = createCompanyHeaderStyle(workbook);
-            CellStyle headerStyle = createHeaderStyle(workbook);
-            CellStyle dataStyle = createDataStyle(workbook);
-            CellStyle numberStyle = createNumberStyle(workbook);
-
-            // ===== COMPANY HEADER SECTION =====
-            int currentRowIndex = 0;
-            int totalColumns = 18; // Tháng/Năm và Ghi chú
-
-            // Row 0: Company name
-            Row companyRow = sheet.createRow(currentRowIndex++);
-            sheet.addMergedRegion(new CellRangeAddress(0, 0, 0, totalColumns - 1));
-            Cell companyCell = companyRow.createCell(0);
-            companyCell.setCellValue("CÔNG TY TRÁCH NHIỆM HỮU HẠN PANPACIFIC");
-            companyCell.setCellStyle(companyHeaderStyle);
-
-            // Row 1: Address
-            Row addressRow = sheet.createRow(currentRowIndex++);
-            sheet.addMergedRegion(new CellRangeAddress(1, 1, 0, totalColumns - 1));
-            Cell addressCell = addressRow.createCell(0);
-            addressCell.setCellValue("349B Lạc Long Quân, Hòa Bình, Hồ Chí Minh, Việt Nam");
-            addressCell.setCellStyle(companyHeaderStyle);
-
-            // Row 2: Document Title
-            Row titleRow = sheet.createRow(currentRowIndex++);
-            sheet.addMergedRegion(new CellRangeAddress(2, 2, 0, totalColumns - 1));
-            Cell titleCell = titleRow.createCell(0);
-            titleCell.setCellValue("BẢNG THANH TOÁN TIỀN LƯƠNG THÁNG " + month + "/" + year);
-            titleCell.setCellStyle(companyHeaderStyle);
-
-            // Empty row
-            currentRowIndex++;
-
-            // Header row - Simplified summary columns
-            Row headerRow = sheet.createRow(currentRowIndex++);
-            String[] headers = {
-                    "Mã NV", "Họ tên", "Tháng/Năm", "Ngân hàng", "Số TK", "SĐT",
-                    "Công trình", "Ngày công", "Lương thực lãnh", "Thưởng", "Phạt",
-                    "Phụ cấp", "Hỗ trợ", "Bảo hiểm", "Tổng lương tháng", "Đã thanh toán", "Còn lại",
-                    "Ghi chú"
-            };
-
-            for (int i = 0; i < headers.length; i++) {
-                Cell cell = headerRow.createCell(i);
-                cell.setCellValue(headers[i]);
-                cell.setCellStyle(headerStyle);
-            }
-
-            // Data rows - each employee is one summary row
-            for (PayRollAssignmentExportExcel row : assignmentData) {
-                Row dataRow = sheet.createRow(currentRowIndex++);
-
-                // Mã nhân viên
-                Cell cell0 = dataRow.createCell(0);
-                cell0.setCellValue(row.getEmployeeId() != null ? row.getEmployeeId().toString() : "");
-                cell0.setCellStyle(dataStyle);
-
-                // Họ tên
-                Cell cell1 = dataRow.createCell(1);
-                cell1.setCellValue(row.getEmployeeName() != null ? row.getEmployeeName() : "");
-                cell1.setCellStyle(dataStyle);
-
-                // Tháng/Năm
-                Cell cell2 = dataRow.createCell(2);
-                if (row.getMonth() != null && row.getYear() != null) {
-                    cell2.setCellValue(row.getMonth() + "/" + row.getYear());
-                } else {
-                    cell2.setCellValue("");
-                }
-                cell2.setCellStyle(dataStyle);
-
-                // Ngân hàng
-                Cell cell3 = dataRow.createCell(3);
-                cell3.setCellValue(row.getBankName() != null ? row.getBankName() : "");
-                cell3.setCellStyle(dataStyle);
-
-                // Số tài khoản
-                Cell cell4 = dataRow.createCell(4);
-                cell4.setCellValue(row.getBankAccount() != null ? row.getBankAccount() : "");
-                cell4.setCellStyle(dataStyle);
-
-                // Số điện thoại
-                Cell cell5 = dataRow.createCell(5);
-                cell5.setCellValue(row.getPhone() != null ? row.getPhone() : "");
-                cell5.setCellStyle(dataStyle);
-
-                // Công trình (joined projects list)
-                Cell cell6 = dataRow.createCell(6);
-                cell6.setCellValue(row.getProjectCompany() != null ? row.getProjectCompany() : "");
-                cell6.setCellStyle(dataStyle);
-
-                // Tổng ngày công
-                Cell cell7 = dataRow.createCell(7);
-                cell7.setCellValue(row.getTotalDays() != null ? row.getTotalDays() : 0);
-                cell7.setCellStyle(numberStyle);
-
-                // Lương thực lãnh (Base Salary)
-                Cell cell8 = dataRow.createCell(8);
-                cell8.setCellValue(row.getBaseSalary() != null ? row.getBaseSalary().doubleValue() : 0);
-                cell8.setCellStyle(numberStyle);
-
-                // Tổng thưởng
-                Cell cell9 = dataRow.createCell(9);
-                cell9.setCellValue(row.getTotalBonus() != null ? row.getTotalBonus().doubleValue() : 0);
-                cell9.setCellStyle(numberStyle);
-
-                // Tổng phạt
-                Cell cell10 = dataRow.createCell(10);
-                cell10.setCellValue(row.getTotalPenalty() != null ? row.getTotalPenalty().doubleValue() : 0);
-                cell10.setCellStyle(numberStyle);
-
-                // Tổng phụ cấp
-                Cell cell11 = dataRow.createCell(11);
-                cell11.setCellValue(row.getTotalAllowance() != null ? row.getTotalAllowance().doubleValue() : 0);
-                cell11.setCellStyle(numberStyle);
-
-                // Hỗ trợ (monthly support)
-                Cell cell12 = dataRow.createCell(12);
-                cell12.setCellValue(row.getMonthlySupport() != null ? row.getMonthlySupport().doubleValue() : 0);
-                cell12.setCellStyle(numberStyle);
-
-                // Bảo hiểm
-                Cell cell13 = dataRow.createCell(13);
-                cell13.setCellValue(row.getTotalInsurance() != null ? row.getTotalInsurance().doubleValue() : 0);
-                cell13.setCellStyle(numberStyle);
-
-                // Tổng lương tháng
-                Cell cell14 = dataRow.createCell(14);
-                cell14.setCellValue(
-                        row.getTotalSalaryBeforeAdvance() != null ? row.getTotalSalaryBeforeAdvance().doubleValue()
-                                : 0);
-                cell14.setCellStyle(numberStyle);
-
-                // Đã thanh toán
-                Cell cell15 = dataRow.createCell(15);
-                cell15.setCellValue(row.getPaidAmount() != null ? row.getPaidAmount().doubleValue() : 0);
-                cell15.setCellStyle(numberStyle);
-
-                // Còn lại
-                Cell cell16 = dataRow.createCell(16);
-                cell16.setCellValue(row.getFinalSalary() != null ? row.getFinalSalary().doubleValue() : 0);
-                cell16.setCellStyle(numberStyle);
-
-                // Ghi chú công thức tính lương theo assignment
-                Cell cell17 = dataRow.createCell(17);
-                cell17.setCellValue(row.getNote() != null ? row.getNote() : "");
-                cell17.setCellStyle(dataStyle);
-            }
+            Sheet sheet = writePayrollSheet(workbook, assignmentData.iterator(), month, year);
 
             // Auto-size columns
-            for (int i = 0; i < headers.length; i++) {
+            for (int i = 0; i < PAYROLL_HEADERS.length; i++) {
                 sheet.autoSizeColumn(i);
             }
             // Set minimum widths for readability
@@ -376,6 +256,175 @@ public class ExcelExportServiceImpl implements ExcelExportService {
         }
     }
 
+    @Override
+    public void writePayrollAssignmentsToExcel(Iterator<PayRollAssignmentExportExcel> rows, Integer month,
+            Integer year, OutputStream out) {
+        log.info("writePayrollAssignmentsToExcel (streaming) started: month={}, year={}", month, year);
+        SXSSFWorkbook workbook = createStreamingWorkbook();
+        try {
+            Sheet sheet = writePayrollSheet(workbook, rows, month, year);
+            applyColumnWidths(sheet, PAYROLL_COLUMN_WIDTHS);
+            workbook.write(out);
+            log.info("writePayrollAssignmentsToExcel (streaming) completed: lastRow={}", sheet.getLastRowNum());
+        } catch (IOException e) {
+            log.error("Error streaming payroll to Excel", e);
+            throw new UncheckedIOException(e);
+        } finally {
+            workbook.dispose();
+        }
+    }
+
+    private Sheet writePayrollSheet(Workbook workbook, Iterator<PayRollAssignmentExportExcel> rows, Integer month,
+            Integer year) {
+        Sheet sheet = workbook.createSheet("Bảng lương");
+
+        // Create styles
+        CellStyle companyHeaderStyle = createCompanyHeaderStyle(workbook);
+        CellStyle headerStyle = createHeaderStyle(workbook);
+        CellStyle dataStyle = createDataStyle(workbook);
+        CellStyle numberStyle = createNumberStyle(workbook);
+
+        // ===== COMPANY HEADER SECTION =====
+        int currentRowIndex = 0;
+        int totalColumns = PAYROLL_HEADERS.length; // Tháng/Năm và Ghi chú
+
+        // Row 0: Company name
+        Row companyRow = sheet.createRow(currentRowIndex++);
+        sheet.addMergedRegion(new CellRangeAddress(0, 0, 0, totalColumns - 1));
+        Cell companyCell = companyRow.createCell(0);
+        companyCell.setCellValue("CÔNG TY TRÁCH NHIỆM HỮU HẠN PANPACIFIC");
+        companyCell.setCellStyle(companyHeaderStyle);
+
+        // Row 1: Address
+        Row addressRow = sheet.createRow(currentRowIndex++);
+        sheet.addMergedRegion(new CellRangeAddress(1, 1, 0, totalColumns - 1));
+        Cell addressCell = addressRow.createCell(0);
+        addressCell.setCellValue("349B Lạc Long Quân, Hòa Bình, Hồ Chí Minh, Việt Nam");
+        addressCell.setCellStyle(companyHeaderStyle);
+
+        // Row 2: Document Title
+        Row titleRow = sheet.createRow(currentRowIndex++);
+        sheet.addMergedRegion(new CellRangeAddress(2, 2, 0, totalColumns - 1));
+        Cell titleCell = titleRow.createCell(0);
+        titleCell.setCellValue("BẢNG THANH TOÁN TIỀN LƯƠNG THÁNG " + month + "/" + year);
+        titleCell.setCellStyle(companyHeaderStyle);
+
+        // Empty row
+        currentRowIndex++;
+
+        // Header row - Simplified summary columns
+        Row headerRow = sheet.createRow(currentRowIndex++);
+        for (int i = 0; i < PAYROLL_HEADERS.length; i++) {
+            Cell cell = headerRow.createCell(i);
+            cell.setCellValue(PAYROLL_HEADERS[i]);
+            cell.setCellStyle(headerStyle);
+        }
+
+        // Data rows - each employee is one summary row
+        while (rows.hasNext()) {
+            PayRollAssignmentExportExcel row = rows.next();
+            Row dataRow = sheet.createRow(currentRowIndex++);
+
+            // Mã nhân viên
+            Cell cell0 = dataRow.createCell(0);
+            cell0.setCellValue(row.getEmployeeId() != null ? row.getEmployeeId().toString() : "");
+            cell0.setCellStyle(dataStyle);
+
+            // Họ tên
+            Cell cell1 = dataRow.createCell(1);
+            cell1.setCellValue(row.getEmployeeName() != null ? row.getEmployeeName() : "");
+            cell1.setCellStyle(dataStyle);
+
+            // Tháng/Năm
+            Cell cell2 = dataRow.createCell(2);
+            if (row.getMonth() != null && row.getYear() != null) {
+                cell2.setCellValue(row.getMonth() + "/" + row.getYear());
+            } else {
+                cell2.setCellValue("");
+            }
+            cell2.setCellStyle(dataStyle);
+
+            // Ngân hàng
+            Cell cell3 = dataRow.createCell(3);
+            cell3.setCellValue(row.getBankName() != null ? row.getBankName() : "");
+            cell3.setCellStyle(dataStyle);
+
+            // Số tài khoản
+            Cell cell4 = dataRow.createCell(4);
+            cell4.setCellValue(row.getBankAccount() != null ? row.getBankAccount() : "");
+            cell4.setCellStyle(dataStyle);
+
+            // Số điện thoại
+            Cell cell5 = dataRow.createCell(5);
+            cell5.setCellValue(row.getPhone() != null ? row.getPhone() : "");
+            cell5.setCellStyle(dataStyle);
+
+            // Công trình (joined projects list)
+            Cell cell6 = dataRow.createCell(6);
+            cell6.setCellValue(row.getProjectCompany() != null ? row.getProjectCompany() : "");
+            cell6.setCellStyle(dataStyle);
+
+            // Tổng ngày công
+            Cell cell7 = dataRow.createCell(7);
+            cell7.setCellValue(row.getTotalDays() != null ? row.getTotalDays() : 0);
+            cell7.setCellStyle(numberStyle);
+
+            // Lương thực lãnh (Base Salary)
+            Cell cell8 = dataRow.createCell(8);
+            cell8.setCellValue(row.getBaseSalary() != null ? row.getBaseSalary().doubleValue() : 0);
+            cell8.setCellStyle(numberStyle);
+
+            // Tổng thưởng
+            Cell cell9 = dataRow.createCell(9);
+            cell9.setCellValue(row.getTotalBonus() != null ? row.getTotalBonus().doubleValue() : 0);
+            cell9.setCellStyle(numberStyle);
+
+            // Tổng phạt
+            Cell cell10 = dataRow.createCell(10);
+            cell10.setCellValue(row.getTotalPenalty() != null ? row.getTotalPenalty().doubleValue() : 0);
+            cell10.setCellStyle(numberStyle);
+
+            // Tổng phụ cấp
+            Cell cell11 = dataRow.createCell(11);
+            cell11.setCellValue(row.getTotalAllowance() != null ? row.getTotalAllowance().doubleValue() : 0);
+            cell11.setCellStyle(numberStyle);
+
+            // Hỗ trợ (monthly support)
+            Cell cell12 = dataRow.createCell(12);
+            cell12.setCellValue(row.getMonthlySupport() != null ? row.getMonthlySupport().doubleValue() : 0);
+            cell12.setCellStyle(numberStyle);
+
+            // Bảo hiểm
+            Cell cell13 = dataRow.createCell(13);
+            cell13.setCellValue(row.getTotalInsurance() != null ? row.getTotalInsurance().doubleValue() : 0);
+            cell13.setCellStyle(numberStyle);
+
+            // Tổng lương tháng
+            Cell cell14 = dataRow.createCell(14);
+            cell14.setCellValue(
+                    row.getTotalSalaryBeforeAdvance() != null ? row.getTotalSalaryBeforeAdvance().doubleValue()
+                            : 0);
+            cell14.setCellStyle(numberStyle);
+
+            // Đã thanh toán
+            Cell cell15 = dataRow.createCell(15);
+            cell15.setCellValue(row.getPaidAmount() != null ? row.getPaidAmount().doubleValue() : 0);
+            cell15.setCellStyle(numberStyle);
+
+            // Còn lại
+            Cell cell16 = dataRow.createCell(16);
+            cell16.setCellValue(row.getFinalSalary() != null ? row.getFinalSalary().doubleValue() : 0);
+            cell16.setCellStyle(numberStyle);
+
+            // Ghi chú công thức tính lương theo assignment
+            Cell cell17 = dataRow.createCell(17);
+            cell17.setCellValue(row.getNote() != null ? row.getNote() : "");
+            cell17.setCellStyle(dataStyle);
+        }
+
+        return sheet;
+    }
+
     private List<PayRollAssignmentExportExcel> convertToAssignmentFormat(List<PayRollExportExcel> oldData) {
         // This is a fallback conversion - should not be used in normal flow
         List<PayRollAssignmentExportExcel> result = new ArrayList<>();
@@ -410,167 +459,35 @@ public class ExcelExportServiceImpl implements ExcelExportService {
         return result;
     }
 
+    @Override
+    public ByteArrayResource exportInvoiceJobReportToExcel(List<InvoiceBulkResultRow> rows, Integer month,
+            Integer year) {
+        log.info("exportInvoiceJobReportToExcel requested: month={}, year={}, rows={}", month, year, rows.size());
+        List<Column<InvoiceBulkResultRow>> columns = List.of(
+                new Column<>("Mã hợp đồng", InvoiceBulkResultRow::getContractId),
+                new Column<>("Mã khách hàng", InvoiceBulkResultRow::getCustomerCode),
+                new Column<>("Khách hàng", InvoiceBulkResultRow::getCustomerName),
+                new Column<>("Kết quả", row -> switch (row.getOutcome()) {
+                    case CREATED -> "Đã tạo";
+                    case SKIPPED -> "Đã có hóa đơn";
+                    case FAILED -> "Lỗi";
+                }),
+                new Column<>("Mã hóa đơn", InvoiceBulkResultRow::getInvoiceId),
+                new Column<>("Tổng tiền", InvoiceBulkResultRow::getTotalAmount),
+                new Column<>("Ghi chú", InvoiceBulkResultRow::getMessage));
+        Workbook workbook = createWorkbookGeneric(rows, columns, "Kết quả xuất hóa đơn",
+                "KẾT QUẢ XUẤT HÓA ĐƠN THÁNG " + month + "/" + year);
+        return convertWorkbookToResource(workbook);
+    }
+
     @Override
     public ByteArrayResource exportCustomersWithContractsToExcel(List<CustomerContractGroupDto> customerGroups) {
         log.info("exportCustomersWithContractsToExcel started: total customers={}", customerGroups.size());
         try (Workbook workbook = new XSSFWorkbook()) {
-            Sheet sheet = workbook.createSheet("Danh sách khách hàng");
-
-            // Create styles
-            CellStyle companyHeaderStyle = createCompanyHeaderStyle(workbook);
-            CellStyle headerStyle = createHeaderStyle(workbook);
-            CellStyle dataStyle = createDataStyle(workbook);
-            CellStyle numberStyle = createNumberStyle(workbook);
-            CellStyle mergedCellStyle = createMergedCellStyle(workbook);
-
-            // ===== COMPANY HEADER SECTION =====
-            int currentRowIndex = 0;
-            int totalColumns = 11;
-
-            // Row 0: Company name
-            Row companyRow = sheet.createRow(currentRowIndex++);
-            sheet.addMergedRegion(new CellRangeAddress(0, 0, 0, totalColumns - 1));
-            Cell companyCell = companyRow.createCell(0);
-            companyCell.setCellValue("CÔNG TY TNHH TMDV PANPACIFIC");
-            companyCell.setCellStyle(companyHeaderStyle);
-
-            // Row 1: Address 1
-            Row address1Row = sheet.createRow(currentRowIndex++);
-            sheet.addMergedRegion(new CellRangeAddress(1, 1, 0, totalColumns - 1));
-            Cell address1Cell = address1Row.createCell(0);
-            address1Cell.setCellValue("VPĐD 1: 877 Lê Đức Thọ, Phường 16, Quận Gò Vấp, TP.HCM");
-            address1Cell.setCellStyle(companyHeaderStyle);
-
-            // Row 2: Address 2
-            Row address2Row = sheet.createRow(currentRowIndex++);
-            sheet.addMergedRegion(new CellRangeAddress(2, 2, 0, totalColumns - 1));
-            Cell address2Cell = address2Row.createCell(0);
-            address2Cell.setCellValue("VPĐD 2: 90/31 Thành Thái, Phường 12, Quận 10, TP.HCM");
-            address2Cell.setCellStyle(companyHeaderStyle);
-
-            // Row 3: Phone and Document Title (2 columns merged for each)
-            Row phoneRow = sheet.createRow(currentRowIndex++);
-
-            // Phone part (left)
-            sheet.addMergedRegion(new CellRangeAddress(3, 3, 0, 5));
-            Cell phoneCell = phoneRow.createCell(0);
-            phoneCell.setCellValue("Điện Thoại: 0901417674 - 0762833102");
-            phoneCell.setCellStyle(companyHeaderStyle);
-
-            // Document Title part (right)
-            sheet.addMergedRegion(new CellRangeAddress(3, 3, 6, totalColumns - 1));
-            Cell titleCell = phoneRow.createCell(6);
-            titleCell.setCellValue("TỔNG HỢP KHÁCH HÀNG");
-            titleCell.setCellStyle(companyHeaderStyle);
-
-            // Empty row
-            currentRowIndex++;
-
-            // Header row for table
-            Row headerRow = sheet.createRow(currentRowIndex++);
-            String[] headers = { "STT", "Khách hàng", "Địa chỉ", "Mã số thuế", "Email",
-                    "Mã hợp đồng", "Ngày ký", "Ngày hết hạn", "Ngày làm việc",
-                    // "Giá trị HĐ", "Tổng giá trị",
-                    "Số ngày làm", "Thuế VAT" };
-
-            for (int i = 0; i < headers.length; i++) {
-                Cell cell = headerRow.createCell(i);
-                cell.setCellValue(headers[i]);
-                cell.setCellStyle(headerStyle);
-            }
-
-            // Data rows with merge
-            int stt = 1;
-            for (CustomerContractGroupDto customerGroup : customerGroups) {
-                List<ContractDetailDto> contracts = customerGroup.getContracts();
-                int mergeStartRow = currentRowIndex;
-
-                for (int i = 0; i < contracts.size(); i++) {
-                    Row dataRow = sheet.createRow(currentRowIndex++);
-                    ContractDetailDto contract = contracts.get(i);
-
-                    // STT (only first row)
-                    Cell sttCell = dataRow.createCell(0);
-                    sttCell.setCellValue(stt);
-                    sttCell.setCellStyle(i == 0 ? dataStyle : mergedCellStyle);
-
-                    // Customer name (only first row)
-                    Cell customerCell = dataRow.createCell(1);
-                    customerCell.setCellValue(
-                            customerGroup.getCustomerName() != null ? customerGroup.getCustomerName() : "");
-                    customerCell.setCellStyle(i == 0 ? dataStyle : mergedCellStyle);
-
-                    // Address (only first row)
-                    Cell addressCell = dataRow.createCell(2);
-                    addressCell.setCellValue(customerGroup.getAddress() != null ? customerGroup.getAddress() : "");
-                    addressCell.setCellStyle(i == 0 ? dataStyle : mergedCellStyle);
-
-                    // Tax code (only first row)
-                    Cell taxCell = dataRow.createCell(3);
-                    taxCell.setCellValue(customerGroup.getTaxCode() != null ? customerGroup.getTaxCode() : "");
-                    taxCell.setCellStyle(i == 0 ? dataStyle : mergedCellStyle);
-
-                    // Email (only first row)
-                    Cell emailCell = dataRow.createCell(4);
-                    emailCell.setCellValue(customerGroup.getEmail() != null ? customerGroup.getEmail() : "");
-                    emailCell.setCellStyle(i == 0 ? dataStyle : mergedCellStyle);
-
-                    // Contract code
-                    Cell contractCodeCell = dataRow.createCell(5);
-                    contractCodeCell.setCellValue(contract.getContractCode());
-                    contractCodeCell.setCellStyle(dataStyle);
-
-                    // Start date
-                    Cell startDateCell = dataRow.createCell(6);
-                    startDateCell.setCellValue(contract.getStartDate());
-                    startDateCell.setCellStyle(dataStyle);
-
-                    // End date
-                    Cell endDateCell = dataRow.createCell(7);
-                    endDateCell.setCellValue(contract.getEndDate());
-                    endDateCell.setCellStyle(dataStyle);
-
-                    // Working days
-                    Cell workingDaysCell = dataRow.createCell(8);
-                    workingDaysCell.setCellValue(contract.getWorkingDays());
-                    workingDaysCell.setCellStyle(dataStyle);
-
-                    // // Contract value
-                    // Cell contractValueCell = dataRow.createCell(9);
-                    // contractValueCell.setCellValue(contract.getContractValue());
-                    // contractValueCell.setCellStyle(numberStyle);
-
-                    // Work days
-                    Cell workDaysCell = dataRow.createCell(9);
-                    workDaysCell.setCellValue(contract.getWorkDays());
-                    workDaysCell.setCellStyle(numberStyle);
-
-                    // VAT amount
-                    Cell vatCell = dataRow.createCell(10);
-                    vatCell.setCellValue(contract.getVatAmount());
-                    vatCell.setCellStyle(numberStyle);
-
-                    // // Total value
-                    // Cell totalValueCell = dataRow.createCell(11);
-                    // totalValueCell.setCellValue(contract.getTotalValue());
-                    // totalValueCell.setCellStyle(numberStyle);
-                }
-
-                // Merge cells if customer has multiple contracts
-                if (contracts.size() > 1) {
-                    int mergeEndRow = currentRowIndex - 1;
-                    sheet.addMergedRegion(new CellRangeAddress(mergeStartRow, mergeEndRow, 0, 0)); // STT
-                    sheet.addMergedRegion(new CellRangeAddress(mergeStartRow, mergeEndRow, 1, 1)); // Customer
-                    sheet.addMergedRegion(new CellRangeAddress(mergeStartRow, mergeEndRow, 2, 2)); // Address
-                    sheet.addMergedRegion(new CellRangeAddress(mergeStartRow, mergeEndRow, 3, 3)); // Tax code
-                    sheet.addMergedRegion(new CellRangeAddress(mergeStartRow, mergeEndRow, 4, 4)); // Email
-                }
-
-                stt++;
-            }
+            Sheet sheet = writeCustomersSheet(workbook, customerGroups.iterator());
 
             // Auto-size columns
-            for (int i = 0; i < headers.length; i++) {
+            for (int i = 0; i < CUSTOMER_HEADERS.length; i++) {
                 sheet.autoSizeColumn(i);
             }
 
@@ -590,6 +507,179 @@ public class ExcelExportServiceImpl implements ExcelExportService {
         }
     }
 
+    @Override
+    public void writeCustomersWithContractsToExcel(Iterator<CustomerContractGroupDto> customerGroups,
+            OutputStream out) {
+        log.info("writeCustomersWithContractsToExcel (streaming) started");
+        SXSSFWorkbook workbook = createStreamingWorkbook();
+        try {
+            Sheet sheet = writeCustomersSheet(workbook, customerGroups);
+            applyColumnWidths(sheet, CUSTOMER_COLUMN_WIDTHS);
+            workbook.write(out);
+            log.info("writeCustomersWithContractsToExcel (streaming) completed: lastRow={}", sheet.getLastRowNum());
+        } catch (IOException e) {
+            log.error("Error streaming customers to Excel", e);
+            throw new UncheckedIOException(e);
+        } finally {
+            workbook.dispose();
+        }
+    }
+
+    private Sheet writeCustomersSheet(Workbook workbook, Iterator<CustomerContractGroupDto> customerGroups) {
+        Sheet sheet = workbook.createSheet("Danh sách khách hàng");
+
+        // Create styles
+        CellStyle companyHeaderStyle = createCompanyHeaderStyle(workbook);
+        CellStyle headerStyle = createHeaderStyle(workbook);
+        CellStyle dataStyle = createDataStyle(workbook);
+        CellStyle numberStyle = createNumberStyle(workbook);
+        CellStyle mergedCellStyle = createMergedCellStyle(workbook);
+
+        // ===== COMPANY HEADER SECTION =====
+        int currentRowIndex = 0;
+        int totalColumns = CUSTOMER_HEADERS.length;
+
+        // Row 0: Company name
+        Row companyRow = sheet.createRow(currentRowIndex++);
+        sheet.addMergedRegion(new CellRangeAddress(0, 0, 0, totalColumns - 1));
+        Cell companyCell = companyRow.createCell(0);
+        companyCell.setCellValue("CÔNG TY TNHH TMDV PANPACIFIC");
+        companyCell.setCellStyle(companyHeaderStyle);
+
+        // Row 1: Address 1
+        Row address1Row = sheet.createRow(currentRowIndex++);
+        sheet.addMergedRegion(new CellRangeAddress(1, 1, 0, totalColumns - 1));
+        Cell address1Cell = address1Row.createCell(0);
+        address1Cell.setCellValue("VPĐD 1: 877 Lê Đức Thọ, Phường 16, Quận Gò Vấp, TP.HCM");
+        address1Cell.setCellStyle(companyHeaderStyle);
+
+        // Row 2: Address 2
+        Row address2Row = sheet.createRow(currentRowIndex++);
+        sheet.addMergedRegion(new CellRangeAddress(2, 2, 0, totalColumns - 1));
+        Cell address2Cell = address2Row.createCell(0);
+        address2Cell.setCellValue("VPĐD 2: 90/31 Thành Thái, Phường 12, Quận 10, TP.HCM");
+        address2Cell.setCellStyle(companyHeaderStyle);
+
+        // Row 3: Phone and Document Title (2 columns merged for each)
+        Row phoneRow = sheet.createRow(currentRowIndex++);
+
+        // Phone part (left)
+        sheet.addMergedRegion(new CellRangeAddress(3, 3, 0, 5));
+        Cell phoneCell = phoneRow.createCell(0);
+        phoneCell.setCellValue("Điện Thoại: 0901417674 - 0762833102");
+        phoneCell.setCellStyle(companyHeaderStyle);
+
+        // Document Title part (right)
+        sheet.addMergedRegion(new CellRangeAddress(3, 3, 6, totalColumns - 1));
+        Cell titleCell = phoneRow.createCell(6);
+        titleCell.setCellValue("TỔNG HỢP KHÁCH HÀNG");
+        titleCell.setCellStyle(companyHeaderStyle);
+
+        // Empty row
+        currentRowIndex++;
+
+        // Header row for table
+        Row headerRow = sheet.createRow(currentRowIndex++);
+        for (int i = 0; i < CUSTOMER_HEADERS.length; i++) {
+            Cell cell = headerRow.createCell(i);
+            cell.setCellValue(CUSTOMER_HEADERS[i]);
+            cell.setCellStyle(headerStyle);
+        }
+
+        // Data rows with merge
+        int stt = 1;
+        while (customerGroups.hasNext()) {
+            CustomerContractGroupDto customerGroup = customerGroups.next();
+            List<ContractDetailDto> contracts = customerGroup.getContracts();
+            int mergeStartRow = currentRowIndex;
+
+            for (int i = 0; i < contracts.size(); i++) {
+                Row dataRow = sheet.createRow(currentRowIndex++);
+                ContractDetailDto contract = contracts.get(i);
+
+                // STT (only first row)
+                Cell sttCell = dataRow.createCell(0);
+                sttCell.setCellValue(stt);
+                sttCell.setCellStyle(i == 0 ? dataStyle : mergedCellStyle);
+
+                // Customer name (only first row)
+                Cell customerCell = dataRow.createCell(1);
+                customerCell.setCellValue(
+                        customerGroup.getCustomerName() != null ? customerGroup.getCustomerName() : "");
+                customerCell.setCellStyle(i == 0 ? dataStyle : mergedCellStyle);
+
+                // Address (only first row)
+                Cell addressCell = dataRow.createCell(2);
+                addressCell.setCellValue(customerGroup.getAddress() != null ? customerGroup.getAddress() : "");
+                addressCell.setCellStyle(i == 0 ? dataStyle : mergedCellStyle);
+
+                // Tax code (only first row)
+                Cell taxCell = dataRow.createCell(3);
+                taxCell.setCellValue(customerGroup.getTaxCode() != null ? customerGroup.getTaxCode() : "");
+                taxCell.setCellStyle(i == 0 ? dataStyle : mergedCellStyle);
+
+                // Email (only first row)
+                Cell emailCell = dataRow.createCell(4);
+                emailCell.setCellValue(customerGroup.getEmail() != null ? customerGroup.getEmail() : "");
+                emailCell.setCellStyle(i == 0 ? dataStyle : mergedCellStyle);
+
+                // Contract code
+                Cell contractCodeCell = dataRow.createCell(5);
+                contractCodeCell.setCellValue(contract.getContractCode());
+                contractCodeCell.setCellStyle(dataStyle);
+
+                // Start date
+                Cell startDateCell = dataRow.createCell(6);
+                startDateCell.setCellValue(contract.getStartDate());
+                startDateCell.setCellStyle(dataStyle);
+
+                // End date
+                Cell endDateCell = dataRow.createCell(7);
+                endDateCell.setCellValue(contract.getEndDate());
+                endDateCell.setCellStyle(dataStyle);
+
+                // Working days
+                Cell workingDaysCell = dataRow.createCell(8);
+                workingDaysCell.setCellValue(contract.getWorkingDays());
+                workingDaysCell.setCellStyle(dataStyle);
+
+                // // Contract value
+                // Cell contractValueCell = dataRow.createCell(9);
+                // contractValueCell.setCellValue(contract.getContractValue());
+                // contractValueCell.setCellStyle(numberStyle);
+
+                // Work days
+                Cell workDaysCell = dataRow.createCell(9);
+                workDaysCell.setCellValue(contract.getWorkDays());
+                workDaysCell.setCellStyle(numberStyle);
+
+                // VAT amount
+                Cell vatCell = dataRow.createCell(10);
+                vatCell.setCellValue(contract.getVatAmount());
+                vatCell.setCellStyle(numberStyle);
+
+                // // Total value
+                // Cell totalValueCell = dataRow.createCell(11);
+                // totalValueCell.setCellValue(contract.getTotalValue());
+                // totalValueCell.setCellStyle(numberStyle);
+            }
+
+            // Merge cells if customer has multiple contracts
+            if (contracts.size() > 1) {
+                int mergeEndRow = currentRowIndex - 1;
+                sheet.addMergedRegion(new CellRangeAddress(mergeStartRow, mergeEndRow, 0, 0)); // STT
+                sheet.addMergedRegion(new CellRangeAddress(mergeStartRow, mergeEndRow, 1, 1)); // Customer
+                sheet.addMergedRegion(new CellRangeAddress(mergeStartRow, mergeEndRow, 2, 2)); // Address
+                sheet.addMergedRegion(new CellRangeAddress(mergeStartRow, mergeEndRow, 3, 3)); // Tax code
+                sheet.addMergedRegion(new CellRangeAddress(mergeStartRow, mergeEndRow, 4, 4)); // Email
+            }
+
+            stt++;
+        }
+
+        return sheet;
+    }
+
     private CellStyle createHeaderStyle(Workbook workbook) {
         CellStyle style = workbook.createCellStyle();
         Font font = workbook.createFont();
@@ -650,145 +740,179 @@ public class ExcelExportServiceImpl implements ExcelExportService {
         try (Workbook workbook = new XSSFWorkbook();
                 ByteArrayOutputStream out = new ByteArrayOutputStream()) {
 
-            Sheet sheet = workbook.createSheet("Danh sách nhân viên");
-
-            // Create header styles
-            CellStyle companyHeaderStyle = createCompanyHeaderStyle(workbook);
-            CellStyle headerStyle = createHeaderStyle(workbook);
-
-            // ===== COMPANY HEADER SECTION =====
-            int currentRowIndex = 0;
-            int totalColumns = 13;
-
-            // Row 0: Company name
-            Row companyRow = sheet.createRow(currentRowIndex++);
-            sheet.addMergedRegion(new CellRangeAddress(0, 0, 0, totalColumns - 1));
-            Cell companyCell = companyRow.createCell(0);
-            companyCell.setCellValue("CÔNG TY TNHH TMDV PANPACIFIC");
-            companyCell.setCellStyle(companyHeaderStyle);
-
-            // Row 1: Address 1
-            Row address1Row = sheet.createRow(currentRowIndex++);
-            sheet.addMergedRegion(new CellRangeAddress(1, 1, 0, totalColumns - 1));
-            Cell address1Cell = address1Row.createCell(0);
-            address1Cell.setCellValue("VPĐD 1: 877 Lê Đức Thọ, Phường 16, Quận Gò Vấp, TP.HCM");
-            address1Cell.setCellStyle(companyHeaderStyle);
-
-            // Row 2: Address 2
-            Row address2Row = sheet.createRow(currentRowIndex++);
-            sheet.addMergedRegion(new CellRangeAddress(2, 2, 0, totalColumns - 1));
-            Cell address2Cell = address2Row.createCell(0);
-            address2Cell.setCellValue("VPĐD 2: 90/31 Thành Thái, Phường 12, Quận 10, TP.HCM");
-            address2Cell.setCellStyle(companyHeaderStyle);
-
-            // Row 3: Phone and Document Title
-            Row phoneRow = sheet.createRow(currentRowIndex++);
-
-            // Phone part (left)
-            sheet.addMergedRegion(new CellRangeAddress(3, 3, 0, 5));
-            Cell phoneCell = phoneRow.createCell(0);
-            phoneCell.setCellValue("Điện Thoại: 0901417674 - 0762833102");
-            phoneCell.setCellStyle(companyHeaderStyle);
-
-            // Document Title part (right)
-            sheet.addMergedRegion(new CellRangeAddress(3, 3, 6, totalColumns - 1));
-            Cell titleCell = phoneRow.createCell(6);
-            titleCell.setCellValue("TỔNG HỢP NHÂN VIÊN");
-            titleCell.setCellStyle(companyHeaderStyle);
-
-            // Empty row
-            currentRowIndex++;
-
-            // Header columns
-            String[] headers = {
-                    "STT", "Mã nhân viên", "Tên", "Tên đăng nhập", "Email", "SĐT",
-                    "Địa chỉ", "CCCD", "Tài khoản ngân hàng", "Ngân hàng", "Mô tả", "Ngày tạo", "Cập nhật lần cuối"
-            };
-
-            // Create header row
-            Row headerRow = sheet.createRow(currentRowIndex++);
-            headerRow.setHeightInPoints(20);
-            for (int i = 0; i < headers.length; i++) {
-                Cell cell = headerRow.createCell(i);
-                cell.setCellValue(headers[i]);
-                cell.setCellStyle(headerStyle);
+            Sheet sheet = writeEmployeesSheet(workbook, employees.iterator());
+
+            // Auto-size columns
+            for (int i = 0; i < EMPLOYEE_HEADERS.length; i++) {
+                sheet.autoSizeColumn(i);
             }
+            // Set specific widths for better readability
+            sheet.setColumnWidth(2, 5000); // Tên
+            sheet.setColumnWidth(6, 6000); // Địa chỉ
+            sheet.setColumnWidth(12, 5000); // Mô tả
 
-            // Create data style
-            CellStyle dataStyle2 = createDataStyle(workbook);
+            workbook.write(out);
+            return new ByteArrayResource(out.toByteArray());
+        } catch (IOException e) {
+            log.error("Error exporting employees to Excel", e);
+            throw new UncheckedIOException(e);
+        }
+    }
 
-            // Fill data rows
-            for (int i = 0; i < employees.size(); i++) {
-                EmployeeExportDto emp = employees.get(i);
-                Row row = sheet.createRow(currentRowIndex++);
+    @Override
+    public void writeEmployeesToExcel(Iterator<EmployeeExportDto> employees, OutputStream out) {
+        log.info("writeEmployeesToExcel (streaming) started");
+        SXSSFWorkbook workbook = createStreamingWorkbook();
+        try {
+            Sheet sheet = writeEmployeesSheet(workbook, employees);
+            applyColumnWidths(sheet, EMPLOYEE_COLUMN_WIDTHS);
+            workbook.write(out);
+            log.info("writeEmployeesToExcel (streaming) completed: lastRow={}", sheet.getLastRowNum());
+        } catch (IOException e) {
+            log.error("Error streaming employees to Excel", e);
+            throw new UncheckedIOException(e);
+        } finally {
+            workbook.dispose();
+        }
+    }
 
-                Cell sttCell = row.createCell(0);
-                sttCell.setCellValue(i + 1);
-                sttCell.setCellStyle(dataStyle2);
+    private Sheet writeEmployeesSheet(Workbook workbook, Iterator<EmployeeExportDto> employees) {
+        Sheet sheet = workbook.createSheet("Danh sách nhân viên");
 
-                Cell codeCell = row.createCell(1);
-                codeCell.setCellValue(emp.getEmployeeCode() != null ? emp.getEmployeeCode() : "");
-                codeCell.setCellStyle(dataStyle2);
+        // Create header styles
+        CellStyle companyHeaderStyle = createCompanyHeaderStyle(workbook);
+        CellStyle headerStyle = createHeaderStyle(workbook);
 
-                Cell nameCell = row.createCell(2);
-                nameCell.setCellValue(emp.getName() != null ? emp.getName() : "");
-                nameCell.setCellStyle(dataStyle2);
+        // ===== COMPANY HEADER SECTION =====
+        int currentRowIndex = 0;
+        int totalColumns = EMPLOYEE_HEADERS.length;
 
-                Cell usernameCell = row.createCell(3);
-                usernameCell.setCellValue(emp.getUsername() != null ? emp.getUsername() : "");
-                usernameCell.setCellStyle(dataStyle2);
+        // Row 0: Company name
+        Row companyRow = sheet.createRow(currentRowIndex++);
+        sheet.addMergedRegion(new CellRangeAddress(0, 0, 0, totalColumns - 1));
+        Cell companyCell = companyRow.createCell(0);
+        companyCell.setCellValue("CÔNG TY TNHH TMDV PANPACIFIC");
+        companyCell.setCellStyle(companyHeaderStyle);
 
-                Cell emailCell = row.createCell(4);
-                emailCell.setCellValue(emp.getEmail() != null ? emp.getEmail() : "");
-                emailCell.setCellStyle(dataStyle2);
+        // Row 1: Address 1
+        Row address1Row = sheet.createRow(currentRowIndex++);
+        sheet.addMergedRegion(new CellRangeAddress(1, 1, 0, totalColumns - 1));
+        Cell address1Cell = address1Row.createCell(0);
+        address1Cell.setCellValue("VPĐD 1: 877 Lê Đức Thọ, Phường 16, Quận Gò Vấp, TP.HCM");
+        address1Cell.setCellStyle(companyHeaderStyle);
 
-                Cell phoneCellData = row.createCell(5);
-                phoneCellData.setCellValue(emp.getPhone() != null ? emp.getPhone() : "");
-                phoneCellData.setCellStyle(dataStyle2);
+        // Row 2: Address 2
+        Row address2Row = sheet.createRow(currentRowIndex++);
+        sheet.addMergedRegion(new CellRangeAddress(2, 2, 0, totalColumns - 1));
+        Cell address2Cell = address2Row.createCell(0);
+        address2Cell.setCellValue("VPĐD 2: 90/31 Thành Thái, Phường 12, Quận 10, TP.HCM");
+        address2Cell.setCellStyle(companyHeaderStyle);
 
-                Cell addressCell = row.createCell(6);
-                addressCell.setCellValue(emp.getAddress() != null ? emp.getAddress() : "");
-                addressCell.setCellStyle(dataStyle2);
+        // Row 3: Phone and Document Title
+        Row phoneRow = sheet.createRow(currentRowIndex++);
 
-                Cell cccdCell = row.createCell(7);
-                cccdCell.setCellValue(emp.getCccd() != null ? emp.getCccd() : "");
-                cccdCell.setCellStyle(dataStyle2);
+        // Phone part (left)
+        sheet.addMergedRegion(new CellRangeAddress(3, 3, 0, 5));
+        Cell phoneCell = phoneRow.createCell(0);
+        phoneCell.setCellValue("Điện Thoại: 0901417674 - 0762833102");
+        phoneCell.setCellStyle(companyHeaderStyle);
 
-                Cell bankAccountCell = row.createCell(8);
-                bankAccountCell.setCellValue(emp.getBankAccount() != null ? emp.getBankAccount() : "");
-                bankAccountCell.setCellStyle(dataStyle2);
+        // Document Title part (right)
+        sheet.addMergedRegion(new CellRangeAddress(3, 3, 6, totalColumns - 1));
+        Cell titleCell = phoneRow.createCell(6);
+        titleCell.setCellValue("TỔNG HỢP NHÂN VIÊN");
+        titleCell.setCellStyle(companyHeaderStyle);
 
-                Cell bankNameCell = row.createCell(9);
-                bankNameCell.setCellValue(emp.getBankName() != null ? emp.getBankName() : "");
-                bankNameCell.setCellStyle(dataStyle2);
+        // Empty row
+        currentRowIndex++;
 
-                Cell descriptionCell = row.createCell(10);
-                descriptionCell.setCellValue(emp.getDescription() != null ? emp.getDescription() : "");
-                descriptionCell.setCellStyle(dataStyle2);
+        // Create header row
+        Row headerRow = sheet.createRow(currentRowIndex++);
+        headerRow.setHeightInPoints(20);
+        for (int i = 0; i < EMPLOYEE_HEADERS.length; i++) {
+            Cell cell = headerRow.createCell(i);
+            cell.setCellValue(EMPLOYEE_HEADERS[i]);
+            cell.setCellStyle(headerStyle);
+        }
 
-                Cell createdAtCell = row.createCell(11);
-                createdAtCell.setCellValue(emp.getCreatedAt() != null ? emp.getCreatedAt() : "");
-                createdAtCell.setCellStyle(dataStyle2);
+        // Create data style
+        CellStyle dataStyle2 = createDataStyle(workbook);
 
-                Cell updatedAtCell = row.createCell(12);
-                updatedAtCell.setCellValue(emp.getUpdatedAt() != null ? emp.getUpdatedAt() : "");
-                updatedAtCell.setCellStyle(dataStyle2);
-            }
+        // Fill data rows
+        int stt = 1;
+        while (employees.hasNext()) {
+            EmployeeExportDto emp = employees.next();
+            Row row = sheet.createRow(currentRowIndex++);
 
-            // Auto-size columns
-            for (int i = 0; i < headers.length; i++) {
-                sheet.autoSizeColumn(i);
-            }
-            // Set specific widths for better readability
-            sheet.setColumnWidth(2, 5000); // Tên
-            sheet.setColumnWidth(6, 6000); // Địa chỉ
-            sheet.setColumnWidth(12, 5000); // Mô tả
+            Cell sttCell = row.createCell(0);
+            sttCell.setCellValue(stt++);
+            sttCell.setCellStyle(dataStyle2);
 
-            workbook.write(out);
-            return new ByteArrayResource(out.toByteArray());
-        } catch (IOException e) {
-            log.error("Error exporting employees to Excel", e);
-            throw new UncheckedIOException(e);
+            Cell codeCell = row.createCell(1);
+            codeCell.setCellValue(emp.getEmployeeCode() != null ? emp.getEmployeeCode() : "");
+            codeCell.setCellStyle(dataStyle2);
+
+            Cell nameCell = row.createCell(2);
+            nameCell.setCellValue(emp.getName() != null ? emp.getName() : "");
+            nameCell.setCellStyle(dataStyle2);
+
+            Cell usernameCell = row.createCell(3);
+            usernameCell.setCellValue(emp.getUsername() != null ? emp.getUsername() : "");
+            usernameCell.setCellStyle(dataStyle2);
+
+            Cell emailCell = row.createCell(4);
+            emailCell.setCellValue(emp.getEmail() != null ? emp.getEmail() : "");
+            emailCell.setCellStyle(dataStyle2);
+
+            Cell phoneCellData = row.createCell(5);
+            phoneCellData.setCellValue(emp.getPhone() != null ? emp.getPhone() : "");
+            phoneCellData.setCellStyle(dataStyle2);
+
+            Cell addressCell = row.createCell(6);
+            addressCell.setCellValue(emp.getAddress() != null ? emp.getAddress() : "");
+            addressCell.setCellStyle(dataStyle2);
+
+            Cell cccdCell = row.createCell(7);
+            cccdCell.setCellValue(emp.getCccd() != null ? emp.getCccd() : "");
+            cccdCell.setCellStyle(dataStyle2);
+
+            Cell bankAccountCell = row.createCell(8);
+            bankAccountCell.setCellValue(emp.getBankAccount() != null ? emp.getBankAccount() : "");
+            bankAccountCell.setCellStyle(dataStyle2);
+
+            Cell bankNameCell = row.createCell(9);
+            bankNameCell.setCellValue(emp.getBankName() != null ? emp.getBankName() : "");
+            bankNameCell.setCellStyle(dataStyle2);
+
+            Cell descriptionCell = row.createCell(10);
+            descriptionCell.setCellValue(emp.getDescription() != null ? emp.getDescription() : "");
+            descriptionCell.setCellStyle(dataStyle2);
+
+            Cell createdAtCell = row.createCell(11);
+            createdAtCell.setCellValue(emp.getCreatedAt() != null ? emp.getCreatedAt() : "");
+            createdAtCell.setCellStyle(dataStyle2);
+
+            Cell updatedAtCell = row.createCell(12);
+            updatedAtCell.setCellValue(emp.getUpdatedAt() != null ? emp.getUpdatedAt() : "");
+            updatedAtCell.setCellStyle(dataStyle2);
+        }
+
+        return sheet;
+    }
+
+    // ===== STREAMING (SXSSF) HELPERS =====
+
+    private SXSSFWorkbook createStreamingWorkbook() {
+        // Chỉ giữ rowWindowSize dòng trong bộ nhớ, các dòng cũ được đẩy xuống file tạm
+        SXSSFWorkbook workbook = new SXSSFWorkbook(rowWindowSize);
+        workbook.setCompressTempFiles(true);
+        return workbook;
+    }
+
+    // SXSSF không auto-size được các dòng đã flush nên dùng độ rộng cố định (đơn vị: số ký tự)
+    private void applyColumnWidths(Sheet sheet, int[] widthsInChars) {
+        for (int i = 0; i < widthsInChars.length; i++) {
+            sheet.setColumnWidth(i, widthsInChars[i] * 256);
         }
     }
 }
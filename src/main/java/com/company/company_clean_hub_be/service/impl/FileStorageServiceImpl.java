@@ -4,7 +4,10 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Service;
@@ -25,6 +28,7 @@ public class FileStorageServiceImpl implements FileStorageService {
     private final Cloudinary cloudinary;
     private static final String EMPLOYEE_FOLDER = "company-clean-hub/employee";
     private static final String CONTRACT_FOLDER = "company-clean-hub/contract";
+    private static final int BULK_DELETE_LIMIT = 100;
 
     @Override
     public String storeFile(MultipartFile file) throws IOException {
@@ -59,6 +63,35 @@ public class FileStorageServiceImpl implements FileStorageService {
         }
     }
 
+    @Override
+    public String storeBase64WithPublicId(String base64Content, String publicId, String folder) throws IOException {
+        log.info("Uploading base64 file to Cloudinary: publicId={}, folder={}", publicId, folder);
+
+        if (base64Content.contains(",")) {
+            base64Content = base64Content.split(",")[1];
+        }
+
+        try {
+            Map<String, Object> uploadResult = cloudinary.uploader().upload(
+                    java.util.Base64.getDecoder().decode(base64Content),
+                    ObjectUtils.asMap(
+                            "folder", folder,
+                            "public_id", publicId,
+                            "overwrite", true,
+                            "resource_type", "auto",
+                            "access_mode", "public"
+                    )
+            );
+
+            String storedPublicId = (String) uploadResult.get("public_id");
+            log.info("Base64 file uploaded successfully to Cloudinary: publicId={}", storedPublicId);
+            return storedPublicId;
+        } catch (Exception ex) {
+            log.error("Failed to upload base64 file to Cloudinary: {}", publicId, ex);
+            throw new IOException("Failed to upload base64 file to Cloudinary", ex);
+        }
+    }
+
     @Override
     public String getSecureUrl(String publicId) {
         if (publicId == null || publicId.isEmpty()) return null;
@@ -130,6 +163,41 @@ public class FileStorageServiceImpl implements FileStorageService {
         }
     }
 
+    @Override
+    public Set<String> deleteFiles(List<String> publicIds) throws IOException {
+        Set<String> removed = new HashSet<>();
+        if (publicIds == null || publicIds.isEmpty()) return removed;
+
+        // Admin API nhận tối đa 100 public_id mỗi lần gọi
+        for (int i = 0; i < publicIds.size(); i += BULK_DELETE_LIMIT) {
+            List<String> chunk = publicIds.subList(i, Math.min(publicIds.size(), i + BULK_DELETE_LIMIT));
+            try {
+                @SuppressWarnings("unchecked")
+                Map<String, Object> deleteResult = cloudinary.api().deleteResources(
+                    chunk,
+                    ObjectUtils.asMap("resource_type", "image")
+                );
+
+                @SuppressWarnings("unchecked")
+                Map<String, Object> deleted = (Map<String, Object>) deleteResult.get("deleted");
+                if (deleted != null) {
+                    deleted.forEach((publicId, result) -> {
+                        if ("deleted".equals(result) || "not_found".equals(result)) {
+                            removed.add(publicId);
+                        } else {
+                            log.warn("Cloudinary bulk delete returned {} for publicId={}", result, publicId);
+                        }
+                    });
+                }
+            } catch (Exception ex) {
+                log.error("Failed to bulk delete {} files from Cloudinary", chunk.size(), ex);
+                throw new IOException("Failed to bulk delete files from Cloudinary", ex);
+            }
+        }
+        log.info("Bulk deleted {}/{} files from Cloudinary", removed.size(), publicIds.size());
+        return removed;
+    }
+
     @Override
     public Resource loadFileAsResource(String relativePath) throws IOException {
         log.warn("loadFileAsResource is not supported for Cloudinary storage");
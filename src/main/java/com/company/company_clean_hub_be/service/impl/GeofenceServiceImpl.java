@@ -0,0 +1,157 @@
+package com.company.company_clean_hub_be.service.impl;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.stereotype.Service;
+
+import com.company.company_clean_hub_be.repository.WorkLocationRepository;
+import com.company.company_clean_hub_be.service.GeofenceService;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Index geofence trong bộ nhớ cho WorkLocation.
+ * Mỗi hợp đồng có một lưới ô ~1km (theo độ); mỗi vị trí được gắn vào các ô mà vòng bán kính
+ * của nó phủ tới, nên một lần check chỉ xét vài vị trí trong ô chứa tọa độ.
+ * Khoảng cách được tính bằng xấp xỉ equirectangular, chỉ dùng Haversine khi điểm nằm sát biên.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class GeofenceServiceImpl implements GeofenceService {
+
+    private static final double EARTH_RADIUS = 6_371_000; // mét
+    private static final double METERS_PER_DEGREE = Math.PI * EARTH_RADIUS / 180.0;
+    // Kích thước ô lưới (độ), ~1.1km theo vĩ độ
+    private static final double CELL_DEGREES = 0.01;
+    // Sai số tương đối cho phép của xấp xỉ equirectangular trước khi tính lại bằng Haversine
+    private static final double BORDER_TOLERANCE = 0.01;
+    // Vị trí có bán kính phủ quá nhiều ô được xét riêng, không gắn vào lưới
+    private static final long MAX_CELLS_PER_FENCE = 400;
+
+    private final WorkLocationRepository workLocationRepository;
+
+    // contractId -> index các vị trí active; nạp lười, xoá khi vị trí thay đổi
+    private final Map<Long, ContractFences> fencesByContract = new ConcurrentHashMap<>();
+
+    private record Fence(Long locationId, double latitude, double longitude, double radiusMeters, double cosLatitude) {
+    }
+
+    private record ContractFences(Map<Long, List<Fence>> cells, List<Fence> wide, int size) {
+        static final ContractFences EMPTY = new ContractFences(Map.of(), List.of(), 0);
+    }
+
+    @Override
+    public CheckResult check(Long contractId, double latitude, double longitude) {
+        ContractFences fences = fencesByContract.computeIfAbsent(contractId, this::loadContract);
+        if (fences.size() == 0) {
+            return CheckResult.NO_LOCATIONS;
+        }
+
+        List<Fence> candidates = fences.cells().get(cellKey(latitude, longitude));
+        if (candidates != null) {
+            for (Fence fence : candidates) {
+                if (isInside(fence, latitude, longitude)) {
+                    return CheckResult.INSIDE;
+                }
+            }
+        }
+        for (Fence fence : fences.wide()) {
+            if (isInside(fence, latitude, longitude)) {
+                return CheckResult.INSIDE;
+            }
+        }
+        return CheckResult.OUTSIDE;
+    }
+
+    @Override
+    public void invalidateContract(Long contractId) {
+        if (contractId != null) {
+            fencesByContract.remove(contractId);
+            log.debug("[GEOFENCE] Invalidated contract {}", contractId);
+        }
+    }
+
+    @Override
+    public void invalidateAll() {
+        fencesByContract.clear();
+        log.info("[GEOFENCE] Invalidated all contracts");
+    }
+
+    private ContractFences loadContract(Long contractId) {
+        List<Object[]> rows = workLocationRepository.findActiveFenceRowsByContractId(contractId);
+        if (rows.isEmpty()) {
+            return ContractFences.EMPTY;
+        }
+
+        Map<Long, List<Fence>> cells = new HashMap<>();
+        List<Fence> wide = new ArrayList<>();
+        for (Object[] row : rows) {
+            double lat = ((Number) row[1]).doubleValue();
+            double lng = ((Number) row[2]).doubleValue();
+            double radius = ((Number) row[3]).doubleValue();
+            double cosLat = Math.cos(Math.toRadians(lat));
+            Fence fence = new Fence((Long) row[0], lat, lng, radius, cosLat);
+
+            // Gắn vị trí vào mọi ô mà hình bao của vòng bán kính đi qua
+            double dLat = radius / METERS_PER_DEGREE;
+            double dLng = radius / (METERS_PER_DEGREE * Math.max(cosLat, 1e-6));
+            long minRow = cellIndex(lat - dLat);
+            long maxRow = cellIndex(lat + dLat);
+            long minCol = cellIndex(lng - dLng);
+            long maxCol = cellIndex(lng + dLng);
+            if ((maxRow - minRow + 1) * (maxCol - minCol + 1) > MAX_CELLS_PER_FENCE) {
+                wide.add(fence);
+                continue;
+            }
+            for (long r = minRow; r <= maxRow; r++) {
+                for (long c = minCol; c <= maxCol; c++) {
+                    cells.computeIfAbsent(cellKey(r, c), k -> new ArrayList<>()).add(fence);
+                }
+            }
+        }
+
+        log.debug("[GEOFENCE] Loaded {} locations into {} cells for contract {}", rows.size(), cells.size(), contractId);
+        return new ContractFences(cells, wide, rows.size());
+    }
+
+    private boolean isInside(Fence fence, double latitude, double longitude) {
+        double dy = (latitude - fence.latitude()) * METERS_PER_DEGREE;
+        double dx = (longitude - fence.longitude()) * METERS_PER_DEGREE * fence.cosLatitude();
+        double approx = Math.sqrt(dx * dx + dy * dy);
+
+        if (approx <= fence.radiusMeters() * (1 - BORDER_TOLERANCE)) return true;
+        if (approx > fence.radiusMeters() * (1 + BORDER_TOLERANCE)) return false;
+        return haversineDistance(latitude, longitude, fence.latitude(), fence.longitude()) <= fence.radiusMeters();
+    }
+
+    private static long cellIndex(double degrees) {
+        return (long) Math.floor(degrees / CELL_DEGREES);
+    }
+
+    private static long cellKey(double latitude, double longitude) {
+        return cellKey(cellIndex(latitude), cellIndex(longitude));
+    }
+
+    private static long cellKey(long row, long col) {
+        return (row << 32) ^ (col & 0xffffffffL);
+    }
+
+    /**
+     * Tính khoảng cách giữa 2 điểm GPS bằng công thức Haversine (đơn vị: mét).
+     */
+    static double haversineDistance(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
+                * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+        return EARTH_RADIUS * c;
+    }
+}
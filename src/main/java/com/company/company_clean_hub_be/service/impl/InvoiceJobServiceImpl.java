@@ -0,0 +1,277 @@
+package com.company.company_clean_hub_be.service.impl;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import com.company.company_clean_hub_be.dto.response.InvoiceBulkResultRow;
+import com.company.company_clean_hub_be.dto.response.InvoiceBulkResultRow.Outcome;
+import com.company.company_clean_hub_be.dto.response.InvoiceJobResponse;
+import com.company.company_clean_hub_be.dto.response.InvoiceJobResponse.JobStatus;
+import com.company.company_clean_hub_be.entity.User;
+import com.company.company_clean_hub_be.exception.AppException;
+import com.company.company_clean_hub_be.exception.ErrorCode;
+import com.company.company_clean_hub_be.repository.UserRepository;
+import com.company.company_clean_hub_be.service.InvoiceJobService;
+import com.company.company_clean_hub_be.service.InvoiceService;
+import com.company.company_clean_hub_be.service.UserService;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Xuất hóa đơn cả tháng dưới dạng job nền: các hợp đồng còn hiệu lực trong tháng được chia
+ * thành từng lô, các lô chạy song song trên invoiceJobExecutor. Mỗi lô nạp dữ liệu đầu vào
+ * bằng truy vấn gom nhóm, mỗi hợp đồng lưu trong transaction riêng (xem
+ * InvoiceService.createInvoicesForContracts). Kết quả từng hợp đồng được giữ lại để tải báo cáo.
+ */
+@Service
+@Slf4j
+public class InvoiceJobServiceImpl implements InvoiceJobService {
+
+    private final InvoiceService invoiceService;
+    private final UserRepository userRepository;
+    private final UserService userService;
+    private final ThreadPoolTaskExecutor invoiceJobExecutor;
+
+    private final Map<String, InvoiceJob> jobs = new ConcurrentHashMap<>();
+
+    // Kỳ hóa đơn đang có job chạy → jobId; hai job cùng kỳ sẽ cùng tạo hóa đơn cho một hợp đồng
+    private final Map<YearMonth, String> runningPeriods = new ConcurrentHashMap<>();
+
+    @Value("${invoice.job.chunk-size:50}")
+    private int chunkSize;
+
+    @Value("${invoice.job.retention-minutes:60}")
+    private long retentionMinutes;
+
+    public InvoiceJobServiceImpl(InvoiceService invoiceService,
+            UserRepository userRepository,
+            UserService userService,
+            @Qualifier("invoiceJobExecutor") ThreadPoolTaskExecutor invoiceJobExecutor) {
+        this.invoiceService = invoiceService;
+        this.userRepository = userRepository;
+        this.userService = userService;
+        this.invoiceJobExecutor = invoiceJobExecutor;
+    }
+
+    @Override
+    public InvoiceJobResponse startMonthlyInvoicing(Integer month, Integer year, String notes) {
+        if (month == null || year == null || month < 1 || month > 12) {
+            throw new AppException(ErrorCode.INVALID_REQUEST);
+        }
+        purgeExpiredJobs();
+
+        YearMonth period = YearMonth.of(year, month);
+        String jobId = UUID.randomUUID().toString();
+        String runningJobId = runningPeriods.putIfAbsent(period, jobId);
+        if (runningJobId != null) {
+            log.warn("[INVOICE-JOB] Rejected job for {}: job {} is still running", period, runningJobId);
+            throw new AppException(ErrorCode.INVOICE_JOB_ALREADY_RUNNING);
+        }
+
+        InvoiceJob job;
+        List<List<Long>> chunks = new ArrayList<>();
+        try {
+            // SecurityContext không có trên worker thread nên lấy người tạo ngay tại request
+            User creator = userRepository.findByUsername(userService.getCurrentUsername())
+                    .orElseThrow(() -> new AppException(ErrorCode.USER_IS_NOT_EXISTS));
+
+            List<Long> contractIds = invoiceService.findContractIdsToInvoice(month, year);
+            for (int from = 0; from < contractIds.size(); from += chunkSize) {
+                chunks.add(new ArrayList<>(contractIds.subList(from, Math.min(from + chunkSize, contractIds.size()))));
+            }
+
+            job = new InvoiceJob(jobId, month, year, creator.getId(), notes, contractIds.size(), chunks.size());
+        } catch (RuntimeException ex) {
+            runningPeriods.remove(period, jobId);
+            throw ex;
+        }
+        jobs.put(job.jobId, job);
+        log.info("[INVOICE-JOB] Created job {} month={} year={} contracts={} chunks={}",
+                job.jobId, month, year, job.totalContracts, chunks.size());
+
+        if (chunks.isEmpty()) {
+            finish(job);
+            return toResponse(job);
+        }
+
+        for (int i = 0; i < chunks.size(); i++) {
+            int chunkIndex = i;
+            List<Long> chunk = chunks.get(i);
+            try {
+                invoiceJobExecutor.execute(() -> runChunk(job, chunkIndex, chunk));
+            } catch (TaskRejectedException ex) {
+                log.error("[INVOICE-JOB] Job {} chunk {} rejected by executor: {}", job.jobId, chunkIndex,
+                        ex.getMessage());
+                job.results.set(chunkIndex, failedRows(chunk, "Lô bị từ chối do hàng đợi đầy"));
+                job.failedContracts.addAndGet(chunk.size());
+                job.errors.add("Chunk " + chunkIndex + " bị từ chối do hàng đợi đầy");
+                completeChunk(job, chunk.size());
+            }
+        }
+        return toResponse(job);
+    }
+
+    @Override
+    public InvoiceJobResponse getJob(String jobId) {
+        return toResponse(findJob(jobId));
+    }
+
+    @Override
+    public List<InvoiceBulkResultRow> getReportRows(String jobId) {
+        InvoiceJob job = findJob(jobId);
+        if (job.finishedAt == null) {
+            throw new AppException(ErrorCode.INVOICE_JOB_NOT_READY);
+        }
+        List<InvoiceBulkResultRow> rows = new ArrayList<>();
+        for (int i = 0; i < job.results.length(); i++) {
+            List<InvoiceBulkResultRow> chunkRows = job.results.get(i);
+            if (chunkRows != null) {
+                rows.addAll(chunkRows);
+            }
+        }
+        return rows;
+    }
+
+    private void runChunk(InvoiceJob job, int chunkIndex, List<Long> contractIds) {
+        if (job.status == JobStatus.PENDING) {
+            job.status = JobStatus.RUNNING;
+        }
+        log.info("[INVOICE-JOB] Job {} chunk {} started ({} contracts)", job.jobId, chunkIndex, contractIds.size());
+        List<InvoiceBulkResultRow> rows;
+        try {
+            rows = invoiceService.createInvoicesForContracts(contractIds, job.month, job.year, job.creatorId,
+                    job.notes);
+        } catch (Exception ex) {
+            // Lỗi khi nạp dữ liệu của lô (lỗi từng hợp đồng đã được ghi vào kết quả)
+            log.error("[INVOICE-JOB] Job {} chunk {} failed: {}", job.jobId, chunkIndex, ex.getMessage(), ex);
+            rows = failedRows(contractIds, ex.getMessage());
+        }
+
+        for (InvoiceBulkResultRow row : rows) {
+            // Báo cáo chỉ cần số tiền, không giữ chi tiết hóa đơn trong bộ nhớ
+            row.setInvoice(null);
+            switch (row.getOutcome()) {
+                case CREATED -> job.createdInvoices.incrementAndGet();
+                case SKIPPED -> job.skippedContracts.incrementAndGet();
+                case FAILED -> {
+                    job.failedContracts.incrementAndGet();
+                    job.errors.add("contractId=" + row.getContractId() + ": " + row.getMessage());
+                }
+            }
+        }
+        job.results.set(chunkIndex, rows);
+        completeChunk(job, contractIds.size());
+    }
+
+    private List<InvoiceBulkResultRow> failedRows(List<Long> contractIds, String message) {
+        List<InvoiceBulkResultRow> rows = new ArrayList<>();
+        for (Long contractId : contractIds) {
+            rows.add(InvoiceBulkResultRow.builder()
+                    .contractId(contractId)
+                    .outcome(Outcome.FAILED)
+                    .message(message)
+                    .build());
+        }
+        return rows;
+    }
+
+    private void completeChunk(InvoiceJob job, int contractCount) {
+        job.processedContracts.addAndGet(contractCount);
+        if (job.completedChunks.incrementAndGet() == job.totalChunks) {
+            finish(job);
+        }
+    }
+
+    private void finish(InvoiceJob job) {
+        job.status = job.failedContracts.get() == 0 ? JobStatus.COMPLETED : JobStatus.COMPLETED_WITH_ERRORS;
+        job.finishedAt = LocalDateTime.now();
+        runningPeriods.remove(YearMonth.of(job.year, job.month), job.jobId);
+        log.info("[INVOICE-JOB] Job {} finished: status={}, created={}, skipped={}, failed={}",
+                job.jobId, job.status, job.createdInvoices.get(), job.skippedContracts.get(),
+                job.failedContracts.get());
+    }
+
+    private InvoiceJob findJob(String jobId) {
+        InvoiceJob job = jobs.get(jobId);
+        if (job == null) {
+            throw new AppException(ErrorCode.INVOICE_JOB_NOT_FOUND);
+        }
+        return job;
+    }
+
+    private void purgeExpiredJobs() {
+        LocalDateTime threshold = LocalDateTime.now().minusMinutes(retentionMinutes);
+        jobs.values().removeIf(job -> job.finishedAt != null && job.finishedAt.isBefore(threshold));
+    }
+
+    private InvoiceJobResponse toResponse(InvoiceJob job) {
+        int processed = job.processedContracts.get();
+        return InvoiceJobResponse.builder()
+                .jobId(job.jobId)
+                .status(job.status)
+                .month(job.month)
+                .year(job.year)
+                .totalContracts(job.totalContracts)
+                .processedContracts(processed)
+                .totalChunks(job.totalChunks)
+                .completedChunks(job.completedChunks.get())
+                .progressPercent(job.totalContracts == 0 ? 100 : processed * 100 / job.totalContracts)
+                .createdInvoices(job.createdInvoices.get())
+                .skippedContracts(job.skippedContracts.get())
+                .failedContracts(job.failedContracts.get())
+                .errors(new ArrayList<>(job.errors))
+                .createdAt(job.createdAt)
+                .finishedAt(job.finishedAt)
+                .build();
+    }
+
+    private static final class InvoiceJob {
+        private final String jobId;
+        private final Integer month;
+        private final Integer year;
+        private final Long creatorId;
+        private final String notes;
+        private final int totalContracts;
+        private final int totalChunks;
+        private final LocalDateTime createdAt = LocalDateTime.now();
+
+        private volatile JobStatus status = JobStatus.PENDING;
+        private volatile LocalDateTime finishedAt;
+
+        private final AtomicInteger processedContracts = new AtomicInteger();
+        private final AtomicInteger completedChunks = new AtomicInteger();
+        private final AtomicInteger createdInvoices = new AtomicInteger();
+        private final AtomicInteger skippedContracts = new AtomicInteger();
+        private final AtomicInteger failedContracts = new AtomicInteger();
+        private final Queue<String> errors = new ConcurrentLinkedQueue<>();
+        // Kết quả theo thứ tự lô để báo cáo giữ đúng thứ tự hợp đồng
+        private final AtomicReferenceArray<List<InvoiceBulkResultRow>> results;
+
+        private InvoiceJob(String jobId, Integer month, Integer year, Long creatorId, String notes,
+                int totalContracts, int totalChunks) {
+            this.jobId = jobId;
+            this.month = month;
+            this.year = year;
+            this.creatorId = creatorId;
+            this.notes = notes;
+            this.totalContracts = totalContracts;
+            this.totalChunks = totalChunks;
+            this.results = new AtomicReferenceArray<>(totalChunks);
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.company.company_clean_hub_be.service.impl;
 import com.company.company_clean_hub_be.dto.request.InvoiceCreationRequest;
 import com.company.company_clean_hub_be.dto.request.InvoiceUpdateRequest;
 import com.company.company_clean_hub_be.dto.response.BulkInvoiceResponse;
+import com.company.company_clean_hub_be.dto.response.InvoiceBulkResultRow;
 import com.company.company_clean_hub_be.dto.response.InvoiceResponse;
 import com.company.company_clean_hub_be.entity.*;
 import com.company.company_clean_hub_be.exception.AppException;
@@ -14,24 +15,31 @@ import com.company.company_clean_hub_be.repository.InvoiceLineRepository;
 import com.company.company_clean_hub_be.repository.AttendanceRepository;
 import com.company.company_clean_hub_be.repository.AssignmentRepository;
 import com.company.company_clean_hub_be.repository.UserRepository;
-import com.company.company_clean_hub_be.repository.CustomerAssignmentRepository;
+import com.company.company_clean_hub_be.service.AttendanceSummaryService;
 import com.company.company_clean_hub_be.service.InvoiceService;
+import com.company.company_clean_hub_be.service.ManagerScopeService;
+import com.company.company_clean_hub_be.util.ChunkedIterator;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.apache.poi.ss.usermodel.*;
 import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.LocalDate;
@@ -41,7 +49,12 @@ import java.time.format.DateTimeFormatter;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -51,6 +64,11 @@ import java.util.stream.Collectors;
 @Slf4j
 public class InvoiceServiceImpl implements InvoiceService {
 
+    // Số hóa đơn nạp mỗi lần khi xuất zip streaming
+    private static final int EXPORT_CHUNK_SIZE = 50;
+    // Độ rộng cột cố định (số ký tự) thay cho autoSizeColumn khi dùng SXSSF
+    private static final int[] INVOICE_COLUMN_WIDTHS = { 6, 40, 12, 10, 16, 18, 16, 18 };
+
     InvoiceRepository invoiceRepository;
     InvoiceLineRepository invoiceLineRepository;
     ContractRepository contractRepository;
@@ -58,7 +76,9 @@ public class InvoiceServiceImpl implements InvoiceService {
     AttendanceRepository attendanceRepository;
     AssignmentRepository assignmentRepository;
     UserRepository userRepository;
-    CustomerAssignmentRepository customerAssignmentRepository;
+    ManagerScopeService managerScopeService;
+    AttendanceSummaryService attendanceSummaryService;
+    TransactionTemplate transactionTemplate;
 
     @Override
     @Transactional
@@ -84,6 +104,19 @@ public class InvoiceServiceImpl implements InvoiceService {
         User createdBy = userRepository.findByUsername(username != null ? username : "")
             .orElseThrow(() -> new AppException(ErrorCode.USER_IS_NOT_EXISTS));
 
+        int numEmployees = resolveNumEmployees(contract, request.getInvoiceMonth(), request.getInvoiceYear(), null);
+        int absenceDays = resolveAbsenceDays(contract, request.getInvoiceMonth(), request.getInvoiceYear(), null);
+
+        Invoice invoice = buildInvoice(contract, request, createdBy, actor, numEmployees, absenceDays);
+        return toInvoiceResponse(invoice);
+    }
+
+    /**
+     * Tính và lưu hóa đơn kèm invoice lines của hợp đồng.
+     * numEmployees / absenceDays được xác định trước để luồng xuất hàng loạt truyền vào số liệu nạp theo lô.
+     */
+    private Invoice buildInvoice(Contract contract, InvoiceCreationRequest request, User createdBy, String actor,
+            int numEmployees, int absenceDays) {
         // Lấy thông tin khách hàng (snapshot tại thời điểm xuất hóa đơn)
         Customer customer = contract.getCustomer();
 
@@ -159,33 +192,10 @@ public class InvoiceServiceImpl implements InvoiceService {
             totalContractPrice = totalContractPrice.add(baseAmount);
         }
 
-        // Lấy số lượng nhân viên phụ trách từ hợp đồng
-        // Nếu contract chưa set numberOfEmployees (= null hoặc 0), fallback về đếm nhân viên thực tế
-        int numEmployees = contract.getNumberOfEmployees() != null ? contract.getNumberOfEmployees() : 0;
-        if (numEmployees <= 0) {
-            LocalDate lastDayForCount = YearMonth.of(request.getInvoiceYear(), request.getInvoiceMonth()).atEndOfMonth();
-            Long actualEmployeeCount = assignmentRepository.countDistinctActiveEmployeesByContractBeforeExcludingType(
-                    contract.getId(), lastDayForCount,
-                    com.company.company_clean_hub_be.entity.AssignmentType.SUPPORT);
-            numEmployees = actualEmployeeCount != null && actualEmployeeCount > 0 ? actualEmployeeCount.intValue() : 0;
-            log.info("Contract {} - numberOfEmployees not set, fallback to actual active employees: {}",
-                    contract.getId(), numEmployees);
-        }
-
         // Số ngày kế hoạch tính từ startDate/endDate của hợp đồng trong tháng (tử số)
         int plannedDaysInPeriod = calculatePlannedDaysInPeriod(contract, request.getInvoiceMonth(), request.getInvoiceYear());
 
         // Tính công thực tế = công kế hoạch theo kỳ - số ngày nghỉ
-        // Ngày nghỉ = bản ghi Attendance có deleted = true, trong đúng kỳ hợp đồng (trừ SUPPORT)
-        YearMonth invoiceYm = YearMonth.of(request.getInvoiceYear(), request.getInvoiceMonth());
-        LocalDate periodStart = (contract.getStartDate() != null && contract.getStartDate().isAfter(invoiceYm.atDay(1)))
-                ? contract.getStartDate() : invoiceYm.atDay(1);
-        LocalDate periodEnd = (contract.getEndDate() != null && contract.getEndDate().isBefore(invoiceYm.atEndOfMonth()))
-                ? contract.getEndDate() : invoiceYm.atEndOfMonth();
-        Long absencesCountLong = attendanceRepository.countAbsencesByContractAndDateRangeExcludingAssignmentType(
-                contract.getId(), periodStart, periodEnd,
-                com.company.company_clean_hub_be.entity.AssignmentType.SUPPORT);
-        int absenceDays = absencesCountLong != null ? absencesCountLong.intValue() : 0;
         int attendancesCount = Math.max(0, plannedDaysInPeriod * numEmployees - absenceDays);
         log.info("Contract {} - numEmployees used: {} (plannedDaysInPeriod: {}, absenceDays: {}, attendancesCount: {}, contractDays: {})",
             contract.getId(), numEmployees, plannedDaysInPeriod, absenceDays, attendancesCount, contractDays);
@@ -416,7 +426,53 @@ public class InvoiceServiceImpl implements InvoiceService {
         log.info("Created invoice {} for contract {} - Month {}/{} by {} with {} lines", 
             invoice.getId(), contract.getId(), request.getInvoiceMonth(), request.getInvoiceYear(), actor, applicableServices.size());
 
-        return toInvoiceResponse(invoice);
+        return invoice;
+    }
+
+    /**
+     * Lấy số lượng nhân viên phụ trách từ hợp đồng.
+     * Nếu contract chưa set numberOfEmployees (= null hoặc 0), fallback về đếm nhân viên thực tế
+     * (activeEmployeeCount nạp sẵn, null thì truy vấn).
+     */
+    private int resolveNumEmployees(Contract contract, int month, int year, Long activeEmployeeCount) {
+        int numEmployees = contract.getNumberOfEmployees() != null ? contract.getNumberOfEmployees() : 0;
+        if (numEmployees <= 0) {
+            Long actualEmployeeCount = activeEmployeeCount;
+            if (actualEmployeeCount == null) {
+                LocalDate lastDayForCount = YearMonth.of(year, month).atEndOfMonth();
+                actualEmployeeCount = assignmentRepository.countDistinctActiveEmployeesByContractBeforeExcludingType(
+                        contract.getId(), lastDayForCount,
+                        com.company.company_clean_hub_be.entity.AssignmentType.SUPPORT);
+            }
+            numEmployees = actualEmployeeCount != null && actualEmployeeCount > 0 ? actualEmployeeCount.intValue() : 0;
+            log.info("Contract {} - numberOfEmployees not set, fallback to actual active employees: {}",
+                    contract.getId(), numEmployees);
+        }
+        return numEmployees;
+    }
+
+    /**
+     * Ngày nghỉ = bản ghi Attendance có deleted = true, trong đúng kỳ hợp đồng (trừ SUPPORT).
+     * fullMonthAbsences: số ngày nghỉ cả tháng đã nạp theo lô (null thì truy vấn từng hợp đồng).
+     */
+    private int resolveAbsenceDays(Contract contract, int month, int year, Map<Long, Integer> fullMonthAbsences) {
+        YearMonth invoiceYm = YearMonth.of(year, month);
+        LocalDate periodStart = (contract.getStartDate() != null && contract.getStartDate().isAfter(invoiceYm.atDay(1)))
+                ? contract.getStartDate() : invoiceYm.atDay(1);
+        LocalDate periodEnd = (contract.getEndDate() != null && contract.getEndDate().isBefore(invoiceYm.atEndOfMonth()))
+                ? contract.getEndDate() : invoiceYm.atEndOfMonth();
+        if (periodStart.equals(invoiceYm.atDay(1)) && periodEnd.equals(invoiceYm.atEndOfMonth())) {
+            // Hợp đồng phủ cả tháng: đọc bảng tổng hợp chấm công
+            if (fullMonthAbsences != null) {
+                return fullMonthAbsences.getOrDefault(contract.getId(), 0);
+            }
+            return attendanceSummaryService.countAbsenceDaysByContract(contract.getId(), month, year,
+                    com.company.company_clean_hub_be.entity.AssignmentType.SUPPORT);
+        }
+        Long absencesCountLong = attendanceRepository.countAbsencesByContractAndDateRangeExcludingAssignmentType(
+                contract.getId(), periodStart, periodEnd,
+                com.company.company_clean_hub_be.entity.AssignmentType.SUPPORT);
+        return absencesCountLong != null ? absencesCountLong.intValue() : 0;
     }
 
     /**
@@ -480,7 +536,6 @@ public class InvoiceServiceImpl implements InvoiceService {
     }
 
     @Override
-    @Transactional
     public BulkInvoiceResponse createInvoicesForCustomer(InvoiceCreationRequest request) {
         String actor = getCurrentUsername() != null ? getCurrentUsername() : "anonymous";
         log.info("createInvoicesForCustomer requested by {}: customerId={}, month={}, year={}", actor, request.getCustomerId(), request.getInvoiceMonth(), request.getInvoiceYear());
@@ -511,40 +566,29 @@ public class InvoiceServiceImpl implements InvoiceService {
                     .build();
         }
 
+        String username = getCurrentUsername();
+        User createdBy = userRepository.findByUsername(username != null ? username : "")
+                .orElseThrow(() -> new AppException(ErrorCode.USER_IS_NOT_EXISTS));
+
+        // Mỗi hợp đồng một transaction riêng, dữ liệu đầu vào nạp theo lô
+        List<InvoiceBulkResultRow> results = createInvoicesForContracts(
+                contracts.stream().map(Contract::getId).collect(Collectors.toList()),
+                request.getInvoiceMonth(), request.getInvoiceYear(), createdBy.getId(), request.getNotes());
+
         List<InvoiceResponse> createdInvoices = new ArrayList<>();
         List<String> errors = new ArrayList<>();
         int successCount = 0;
         int failCount = 0;
-
-        // Tạo hóa đơn cho từng hợp đồng
-        for (Contract contract : contracts) {
-            try {
-                // Kiểm tra hóa đơn đã tồn tại chưa
-                if (invoiceRepository.existsByContractIdAndMonthAndYear(
-                        contract.getId(), request.getInvoiceMonth(), request.getInvoiceYear())) {
-                    errors.add(String.format("Hợp đồng #%d đã có hóa đơn tháng %d/%d", 
-                            contract.getId(), request.getInvoiceMonth(), request.getInvoiceYear()));
-                    failCount++;
-                    continue;
-                }
-
-                // Tạo request cho từng hợp đồng
-                InvoiceCreationRequest contractRequest = InvoiceCreationRequest.builder()
-                        .contractId(contract.getId())
-                        .invoiceMonth(request.getInvoiceMonth())
-                        .invoiceYear(request.getInvoiceYear())
-                        .notes(request.getNotes())
-                        .build();
-
-                // Create invoice request (actual working days will be computed automatically)
-                InvoiceResponse invoiceResponse = createInvoice(contractRequest);
-                createdInvoices.add(invoiceResponse);
+        for (InvoiceBulkResultRow result : results) {
+            if (result.getOutcome() == InvoiceBulkResultRow.Outcome.CREATED) {
+                createdInvoices.add(result.getInvoice());
                 successCount++;
-                
-            } catch (Exception e) {
-                errors.add(String.format("Hợp đồng #%d: %s", contract.getId(), e.getMessage()));
+            } else {
+                errors.add(result.getOutcome() == InvoiceBulkResultRow.Outcome.SKIPPED
+                        ? String.format("Hợp đồng #%d đã có hóa đơn tháng %d/%d",
+                                result.getContractId(), request.getInvoiceMonth(), request.getInvoiceYear())
+                        : String.format("Hợp đồng #%d: %s", result.getContractId(), result.getMessage()));
                 failCount++;
-                log.error("Failed to create invoice for contract {}", contract.getId(), e);
             }
         }
 
@@ -562,6 +606,129 @@ public class InvoiceServiceImpl implements InvoiceService {
     }
 
 
+    @Override
+    public List<Long> findContractIdsToInvoice(Integer month, Integer year) {
+        YearMonth ym = YearMonth.of(year, month);
+        return contractRepository.findIdsActiveInPeriod(ym.atDay(1), ym.atEndOfMonth());
+    }
+
+    /**
+     * Dữ liệu đầu vào của một lô hợp đồng, nạp bằng vài truy vấn gom nhóm.
+     */
+    private record BulkInvoiceContext(Map<Long, Contract> contracts, Set<Long> invoicedContractIds,
+            Map<Long, Long> activeEmployees, Map<Long, Integer> fullMonthAbsences) {
+    }
+
+    @Override
+    public List<InvoiceBulkResultRow> createInvoicesForContracts(List<Long> contractIds, Integer month, Integer year,
+            Long createdById, String notes) {
+        if (contractIds == null || contractIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        String actor = getCurrentUsername() != null ? getCurrentUsername() : "userId=" + createdById;
+        long startedAt = System.currentTimeMillis();
+
+        BulkInvoiceContext context = transactionTemplate.execute(status -> loadBulkContext(contractIds, month, year));
+
+        List<InvoiceBulkResultRow> results = new ArrayList<>();
+        for (Long contractId : contractIds) {
+            Contract contract = context.contracts().get(contractId);
+            InvoiceBulkResultRow.InvoiceBulkResultRowBuilder row = InvoiceBulkResultRow.builder().contractId(contractId);
+            if (contract != null && contract.getCustomer() != null) {
+                row.customerId(contract.getCustomer().getId())
+                        .customerCode(contract.getCustomer().getCustomerCode())
+                        .customerName(contract.getCustomer().getName());
+            }
+
+            if (contract == null) {
+                results.add(row.outcome(InvoiceBulkResultRow.Outcome.FAILED)
+                        .message(ErrorCode.CONTRACT_NOT_FOUND.getMessage()).build());
+                continue;
+            }
+            if (context.invoicedContractIds().contains(contractId)) {
+                results.add(row.outcome(InvoiceBulkResultRow.Outcome.SKIPPED)
+                        .message(ErrorCode.INVOICE_ALREADY_EXISTS.getMessage()).build());
+                continue;
+            }
+
+            try {
+                // Transaction riêng cho từng hợp đồng: một hợp đồng lỗi không ảnh hưởng các hợp đồng khác
+                InvoiceResponse invoice = transactionTemplate.execute(status -> {
+                    validateInvoiceDate(contract, month, year);
+                    InvoiceCreationRequest contractRequest = InvoiceCreationRequest.builder()
+                            .contractId(contractId)
+                            .invoiceMonth(month)
+                            .invoiceYear(year)
+                            .notes(notes)
+                            .build();
+                    int numEmployees = resolveNumEmployees(contract, month, year,
+                            context.activeEmployees().getOrDefault(contractId, 0L));
+                    int absenceDays = resolveAbsenceDays(contract, month, year, context.fullMonthAbsences());
+                    return toInvoiceResponse(buildInvoice(contract, contractRequest,
+                            userRepository.getReferenceById(createdById), actor, numEmployees, absenceDays));
+                });
+                results.add(row.outcome(InvoiceBulkResultRow.Outcome.CREATED)
+                        .invoiceId(invoice.getId())
+                        .totalAmount(invoice.getTotalAmount())
+                        .invoice(invoice)
+                        .build());
+            } catch (DataIntegrityViolationException e) {
+                if (isInvoicePeriodConflict(e, contractId, month, year)) {
+                    // Trùng uk_invoices_contract_period: hóa đơn vừa được tạo bởi luồng khác
+                    log.warn("Invoice for contract {} month={}/{} already exists", contractId, month, year);
+                    results.add(row.outcome(InvoiceBulkResultRow.Outcome.SKIPPED)
+                            .message(ErrorCode.INVOICE_ALREADY_EXISTS.getMessage()).build());
+                } else {
+                    log.error("Failed to create invoice for contract {}", contractId, e);
+                    results.add(row.outcome(InvoiceBulkResultRow.Outcome.FAILED)
+                            .message(e.getMostSpecificCause().getMessage()).build());
+                }
+            } catch (Exception e) {
+                log.error("Failed to create invoice for contract {}", contractId, e);
+                results.add(row.outcome(InvoiceBulkResultRow.Outcome.FAILED).message(e.getMessage()).build());
+            }
+        }
+
+        log.info("createInvoicesForContracts completed by {}: month={}/{}, contracts={}, {}ms",
+                actor, month, year, contractIds.size(), System.currentTimeMillis() - startedAt);
+        return results;
+    }
+
+    // Chỉ coi là "đã tồn tại" khi vi phạm đúng khóa kỳ hóa đơn (hoặc hóa đơn kỳ này thực sự đã có);
+    // lỗi khóa ngoại / NOT NULL vẫn là FAILED
+    private boolean isInvoicePeriodConflict(DataIntegrityViolationException e, Long contractId, Integer month,
+            Integer year) {
+        String message = e.getMostSpecificCause().getMessage();
+        if (message != null && message.contains("uk_invoices_contract_period")) {
+            return true;
+        }
+        return invoiceRepository.existsByContractIdAndMonthAndYear(contractId, month, year);
+    }
+
+    private BulkInvoiceContext loadBulkContext(List<Long> contractIds, Integer month, Integer year) {
+        Map<Long, Contract> contracts = new HashMap<>();
+        for (Contract contract : contractRepository.findAllWithCustomerAndServicesByIdIn(contractIds)) {
+            contracts.put(contract.getId(), contract);
+        }
+        // Cùng persistence context → khởi tạo workingDaysPerWeek trên chính các entity ở trên
+        contractRepository.findAllWithWorkingDaysByIdIn(contractIds);
+
+        Set<Long> invoicedContractIds = new HashSet<>(
+                invoiceRepository.findContractIdsWithInvoice(contractIds, month, year));
+
+        Map<Long, Long> activeEmployees = new HashMap<>();
+        for (Object[] row : assignmentRepository.countDistinctActiveEmployeesByContractsBeforeExcludingType(
+                contractIds, YearMonth.of(year, month).atEndOfMonth(),
+                com.company.company_clean_hub_be.entity.AssignmentType.SUPPORT)) {
+            activeEmployees.put((Long) row[0], (Long) row[1]);
+        }
+
+        Map<Long, Integer> fullMonthAbsences = attendanceSummaryService.countAbsenceDaysByContracts(contractIds,
+                month, year, com.company.company_clean_hub_be.entity.AssignmentType.SUPPORT);
+
+        return new BulkInvoiceContext(contracts, invoicedContractIds, activeEmployees, fullMonthAbsences);
+    }
+
     /**
      * Lọc services áp dụng cho tháng/năm cụ thể dựa trên effectiveFrom và serviceType
      */
@@ -641,11 +808,9 @@ public class InvoiceServiceImpl implements InvoiceService {
     @Override
     public List<InvoiceResponse> getInvoicesByMonthAndYear(Integer month, Integer year) {
         log.info("getInvoicesByMonthAndYear requested: month={}, year={}", month, year);
-        String currentUsername = getCurrentUsername();
-        User currentUser = userRepository.findByUsername(currentUsername).orElse(null);
-        if (currentUser != null && currentUser.getRole() != null && 
-            "QLT2".equalsIgnoreCase(currentUser.getRole().getCode())) {
-            List<Long> assignedIds = customerAssignmentRepository.findCustomerIdsByManagerId(currentUser.getId());
+        Long managerId = managerScopeService.getScopedManagerId("QLT2");
+        if (managerId != null) {
+            List<Long> assignedIds = managerScopeService.getCustomerIds(managerId);
             if (assignedIds.isEmpty()) {
                 return new ArrayList<>();
             }
@@ -664,16 +829,13 @@ public class InvoiceServiceImpl implements InvoiceService {
     @Override
     public List<InvoiceResponse> getFullInvoicesByMonthAndYear(Integer month, Integer year) {
         log.info("getFullInvoicesByMonthAndYear requested: month={}, year={}", month, year);
-        String currentUsername = getCurrentUsername();
-        User currentUser = userRepository.findByUsername(currentUsername).orElse(null);
+        Long managerId = managerScopeService.getScopedManagerId("QLT2");
         List<Invoice> invoices;
-        if (currentUser != null && currentUser.getRole() != null && 
-            "QLT2".equalsIgnoreCase(currentUser.getRole().getCode())) {
-            List<Long> assignedIds = customerAssignmentRepository.findCustomerIdsByManagerId(currentUser.getId());
-            if (assignedIds.isEmpty()) {
+        if (managerId != null) {
+            if (!managerScopeService.hasCustomers(managerId)) {
                 return new ArrayList<>();
             }
-            invoices = invoiceRepository.findAllWithLinesByMonthAndYearAndCustomerIds(month, year, assignedIds);
+            invoices = invoiceRepository.findAllWithLinesByMonthAndYearForManager(month, year, managerId);
         } else {
             invoices = invoiceRepository.findAllWithLinesByMonthAndYear(month, year);
         }
@@ -690,13 +852,11 @@ public class InvoiceServiceImpl implements InvoiceService {
             int safePageSize = Math.max(1, pageSize);
             Pageable pageable = org.springframework.data.domain.PageRequest.of(safePage, safePageSize);
 
-            String currentUsername = getCurrentUsername();
-            User currentUser = userRepository.findByUsername(currentUsername).orElse(null);
+            Long managerId = managerScopeService.getScopedManagerId("QLT2");
 
             org.springframework.data.domain.Page<Invoice> invoicePage;
-            if (currentUser != null && currentUser.getRole() != null && 
-                "QLT2".equalsIgnoreCase(currentUser.getRole().getCode())) {
-                List<Long> assignedIds = customerAssignmentRepository.findCustomerIdsByManagerId(currentUser.getId());
+            if (managerId != null) {
+                List<Long> assignedIds = managerScopeService.getCustomerIds(managerId);
                 if (assignedIds.isEmpty()) {
                     return com.company.company_clean_hub_be.dto.response.PageResponse.<InvoiceResponse>builder()
                         .content(new ArrayList<>())
@@ -1026,118 +1186,9 @@ public class InvoiceServiceImpl implements InvoiceService {
             for (Invoice invoice : invoices) {
                 // Create a workbook per invoice
                 try (Workbook workbook = new XSSFWorkbook(); ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
-                    // Prepare styles for this workbook
-                    CellStyle headerStyle = createHeaderStyle(workbook);
-                    CellStyle boldStyle = createBoldStyle(workbook);
-                    CellStyle centerStyle = createCenterStyle(workbook);
-                    CellStyle numberStyle = createNumberStyle(workbook);
-                    CellStyle currencyStyle = createCurrencyStyle(workbook);
-
-                    String sheetName = "Invoice";
-                    Sheet sheet = workbook.createSheet(sheetName);
-
-                    int rowNum = 0;
-                    Row row0 = sheet.createRow(rowNum++);
-                    Cell companyCell = row0.createCell(0);
-                    companyCell.setCellValue("HÓA ĐƠN GIÁ TRỊ GIA TĂNG");
-                    companyCell.setCellStyle(boldStyle);
-
-                    rowNum++;
-
-                    // Customer info
-                    Row custRow1 = sheet.createRow(rowNum++);
-                    custRow1.createCell(0).setCellValue("Khách hàng:");
-                    custRow1.createCell(1).setCellValue(invoice.getCustomerName() != null ? invoice.getCustomerName() : "");
-
-                    Row custRow2 = sheet.createRow(rowNum++);
-                    custRow2.createCell(0).setCellValue("Địa chỉ:");
-                    custRow2.createCell(1).setCellValue(invoice.getCustomerAddress() != null ? invoice.getCustomerAddress() : "");
-
-                    Row custRow3 = sheet.createRow(rowNum++);
-                    custRow3.createCell(0).setCellValue("Mã số thuế:");
-                    custRow3.createCell(1).setCellValue(invoice.getCustomerTaxCode() != null ? invoice.getCustomerTaxCode() : "");
-
-                    Row custRow4 = sheet.createRow(rowNum++);
-                    custRow4.createCell(0).setCellValue("Số điện thoại:");
-                    String phone = invoice.getContract() != null && invoice.getContract().getCustomer() != null
-                            ? invoice.getContract().getCustomer().getPhone() : null;
-                    custRow4.createCell(1).setCellValue(phone != null ? phone : "");
-
-                    Row invoiceInfoRow = sheet.createRow(rowNum++);
-                    invoiceInfoRow.createCell(0).setCellValue("Hóa đơn tháng:");
-                    invoiceInfoRow.createCell(1).setCellValue(invoice.getInvoiceMonth() + "/" + invoice.getInvoiceYear());
-
-                    rowNum++;
-
-                    // Table header
-                    Row headerRow = sheet.createRow(rowNum++);
-                    String[] headers = {"STT", "Tên hàng hóa, dịch vụ", "Đơn vị tính", "Số lượng", "Đơn giá", "Thành tiền", "Thuế suất GTGT", "Tiền thuế GTGT"};
-                    for (int i = 0; i < headers.length; i++) {
-                        Cell cell = headerRow.createCell(i);
-                        cell.setCellValue(headers[i]);
-                        cell.setCellStyle(headerStyle);
-                    }
-
                     // Use stored invoice lines
                     List<InvoiceLine> lines = invoiceLineRepository.findByInvoiceId(invoice.getId());
-                    int stt = 1;
-                    for (InvoiceLine line : lines) {
-                        Row serviceRow = sheet.createRow(rowNum++);
-                        Cell sttCell = serviceRow.createCell(0);
-                        sttCell.setCellValue(stt++);
-                        sttCell.setCellStyle(centerStyle);
-
-                        serviceRow.createCell(1).setCellValue(line.getTitle() != null ? line.getTitle() : "");
-                        serviceRow.createCell(2).setCellValue(line.getUnit() != null ? line.getUnit() : getUnitByContractType(invoice.getInvoiceType()));
-
-                        BigDecimal quantity = line.getQuantity() != null ? BigDecimal.valueOf(line.getQuantity()) : BigDecimal.ONE;
-                        Cell qtyCell = serviceRow.createCell(3);
-                        qtyCell.setCellValue(quantity.doubleValue());
-                        qtyCell.setCellStyle(numberStyle);
-
-                        BigDecimal unitPrice = line.getPrice() != null ? line.getPrice() : BigDecimal.ZERO;
-                        Cell priceCell = serviceRow.createCell(4);
-                        priceCell.setCellValue(unitPrice.doubleValue());
-                        priceCell.setCellStyle(currencyStyle);
-
-                        BigDecimal amount = line.getBaseAmount() != null ? line.getBaseAmount() : BigDecimal.ZERO;
-                        Cell amountCell = serviceRow.createCell(5);
-                        amountCell.setCellValue(amount.doubleValue());
-                        amountCell.setCellStyle(currencyStyle);
-
-                        BigDecimal vatRate = line.getVat() != null ? line.getVat() : BigDecimal.ZERO;
-                        Cell vatRateCell = serviceRow.createCell(6);
-                        vatRateCell.setCellValue(vatRate.doubleValue() + "%");
-                        vatRateCell.setCellStyle(centerStyle);
-
-                        BigDecimal vatAmount = line.getVatAmount() != null ? line.getVatAmount() : BigDecimal.ZERO;
-                        Cell vatAmountCell = serviceRow.createCell(7);
-                        vatAmountCell.setCellValue(vatAmount.doubleValue());
-                        vatAmountCell.setCellStyle(currencyStyle);
-                    }
-
-                    rowNum++;
-
-                    // Totals per sheet (use invoice values)
-                    Row totalRow1 = sheet.createRow(rowNum++);
-                    totalRow1.createCell(4).setCellValue("Tổng tiền trước thuế:");
-                    Cell subtotalCell = totalRow1.createCell(5);
-                    subtotalCell.setCellValue(invoice.getSubtotal() != null ? invoice.getSubtotal().doubleValue() : 0);
-                    subtotalCell.setCellStyle(currencyStyle);
-
-                    Row totalRow2 = sheet.createRow(rowNum++);
-                    totalRow2.createCell(4).setCellValue("Tổng tiền thuế GTGT:");
-                    Cell totalVatCell = totalRow2.createCell(5);
-                    totalVatCell.setCellValue(invoice.getVatAmount() != null ? invoice.getVatAmount().doubleValue() : 0);
-                    totalVatCell.setCellStyle(currencyStyle);
-
-                    Row totalRow3 = sheet.createRow(rowNum++);
-                    Cell totalLabelCell = totalRow3.createCell(4);
-                    totalLabelCell.setCellValue("Tổng cộng thanh toán:");
-                    totalLabelCell.setCellStyle(boldStyle);
-                    Cell totalAmountCell = totalRow3.createCell(5);
-                    totalAmountCell.setCellValue(invoice.getTotalAmount() != null ? invoice.getTotalAmount().doubleValue() : 0);
-                    totalAmountCell.setCellStyle(currencyStyle);
+                    Sheet sheet = writeInvoiceSheet(workbook, invoice, lines);
 
                     // Auto-size columns for this sheet
                     for (int i = 0; i < 8; i++) sheet.autoSizeColumn(i);
@@ -1146,11 +1197,7 @@ public class InvoiceServiceImpl implements InvoiceService {
                     workbook.write(baos);
                     byte[] workbookBytes = baos.toByteArray();
 
-                    // Build a safe filename
-                    String safeName = (invoice.getCustomerName() != null ? invoice.getCustomerName().replaceAll("[\\/:*?\"<>|]", "_") : "customer");
-                    String entryName = String.format("Invoice_%d_%s_%d-%d.xlsx", invoice.getId(), safeName, invoice.getInvoiceMonth(), invoice.getInvoiceYear());
-
-                    java.util.zip.ZipEntry entry = new java.util.zip.ZipEntry(entryName);
+                    java.util.zip.ZipEntry entry = new java.util.zip.ZipEntry(buildInvoiceEntryName(invoice));
                     zos.putNextEntry(entry);
                     zos.write(workbookBytes);
                     zos.closeEntry();
@@ -1167,6 +1214,186 @@ public class InvoiceServiceImpl implements InvoiceService {
         }
     }
 
+    @Override
+    public void writeInvoicesZip(Integer month, Integer year, OutputStream out) {
+        String actor = getCurrentUsername() != null ? getCurrentUsername() : "anonymous";
+        List<Long> invoiceIds = invoiceRepository.findIdsByMonthAndYearOrderByCustomerName(month, year);
+        log.info("writeInvoicesZip (streaming) requested by {}: month={}, year={}, count={}", actor, month, year, invoiceIds.size());
+
+        // Nạp hóa đơn (kèm lines, contract, customer) theo lô và ghi từng workbook SXSSF thẳng vào zip
+        Iterator<Invoice> invoices = new ChunkedIterator<>(invoiceIds, EXPORT_CHUNK_SIZE,
+                invoiceRepository::findAllWithLinesByIds);
+        java.util.zip.ZipOutputStream zos = new java.util.zip.ZipOutputStream(out);
+        try {
+            int count = 0;
+            while (invoices.hasNext()) {
+                Invoice invoice = invoices.next();
+                List<InvoiceLine> lines = new ArrayList<>(invoice.getInvoiceLines());
+                lines.sort(Comparator.comparing(InvoiceLine::getId));
+
+                SXSSFWorkbook workbook = new SXSSFWorkbook(SXSSFWorkbook.DEFAULT_WINDOW_SIZE);
+                try {
+                    workbook.setCompressTempFiles(true);
+                    Sheet sheet = writeInvoiceSheet(workbook, invoice, lines);
+                    for (int i = 0; i < INVOICE_COLUMN_WIDTHS.length; i++) {
+                        sheet.setColumnWidth(i, INVOICE_COLUMN_WIDTHS[i] * 256);
+                    }
+
+                    zos.putNextEntry(new java.util.zip.ZipEntry(buildInvoiceEntryName(invoice)));
+                    // SXSSF đóng stream sau khi ghi nên bọc lại để không đóng zip
+                    workbook.write(new NonClosingOutputStream(zos));
+                    zos.closeEntry();
+                } finally {
+                    workbook.dispose();
+                }
+                count++;
+            }
+
+            zos.finish();
+            log.info("writeInvoicesZip (streaming) completed by {}: month={}, year={}, count={}", actor, month, year, count);
+        } catch (IOException e) {
+            log.error("Error streaming invoices to ZIP: month={}, year={}", month, year, e);
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Sheet writeInvoiceSheet(Workbook workbook, Invoice invoice, List<InvoiceLine> lines) {
+        // Prepare styles for this workbook
+        CellStyle headerStyle = createHeaderStyle(workbook);
+        CellStyle boldStyle = createBoldStyle(workbook);
+        CellStyle centerStyle = createCenterStyle(workbook);
+        CellStyle numberStyle = createNumberStyle(workbook);
+        CellStyle currencyStyle = createCurrencyStyle(workbook);
+
+        String sheetName = "Invoice";
+        Sheet sheet = workbook.createSheet(sheetName);
+
+        int rowNum = 0;
+        Row row0 = sheet.createRow(rowNum++);
+        Cell companyCell = row0.createCell(0);
+        companyCell.setCellValue("HÓA ĐƠN GIÁ TRỊ GIA TĂNG");
+        companyCell.setCellStyle(boldStyle);
+
+        rowNum++;
+
+        // Customer info
+        Row custRow1 = sheet.createRow(rowNum++);
+        custRow1.createCell(0).setCellValue("Khách hàng:");
+        custRow1.createCell(1).setCellValue(invoice.getCustomerName() != null ? invoice.getCustomerName() : "");
+
+        Row custRow2 = sheet.createRow(rowNum++);
+        custRow2.createCell(0).setCellValue("Địa chỉ:");
+        custRow2.createCell(1).setCellValue(invoice.getCustomerAddress() != null ? invoice.getCustomerAddress() : "");
+
+        Row custRow3 = sheet.createRow(rowNum++);
+        custRow3.createCell(0).setCellValue("Mã số thuế:");
+        custRow3.createCell(1).setCellValue(invoice.getCustomerTaxCode() != null ? invoice.getCustomerTaxCode() : "");
+
+        Row custRow4 = sheet.createRow(rowNum++);
+        custRow4.createCell(0).setCellValue("Số điện thoại:");
+        String phone = invoice.getContract() != null && invoice.getContract().getCustomer() != null
+                ? invoice.getContract().getCustomer().getPhone() : null;
+        custRow4.createCell(1).setCellValue(phone != null ? phone : "");
+
+        Row invoiceInfoRow = sheet.createRow(rowNum++);
+        invoiceInfoRow.createCell(0).setCellValue("Hóa đơn tháng:");
+        invoiceInfoRow.createCell(1).setCellValue(invoice.getInvoiceMonth() + "/" + invoice.getInvoiceYear());
+
+        rowNum++;
+
+        // Table header
+        Row headerRow = sheet.createRow(rowNum++);
+        String[] headers = {"STT", "Tên hàng hóa, dịch vụ", "Đơn vị tính", "Số lượng", "Đơn giá", "Thành tiền", "Thuế suất GTGT", "Tiền thuế GTGT"};
+        for (int i = 0; i < headers.length; i++) {
+            Cell cell = headerRow.createCell(i);
+            cell.setCellValue(headers[i]);
+            cell.setCellStyle(headerStyle);
+        }
+
+        int stt = 1;
+        for (InvoiceLine line : lines) {
+            Row serviceRow = sheet.createRow(rowNum++);
+            Cell sttCell = serviceRow.createCell(0);
+            sttCell.setCellValue(stt++);
+            sttCell.setCellStyle(centerStyle);
+
+            serviceRow.createCell(1).setCellValue(line.getTitle() != null ? line.getTitle() : "");
+            serviceRow.createCell(2).setCellValue(line.getUnit() != null ? line.getUnit() : getUnitByContractType(invoice.getInvoiceType()));
+
+            BigDecimal quantity = line.getQuantity() != null ? BigDecimal.valueOf(line.getQuantity()) : BigDecimal.ONE;
+            Cell qtyCell = serviceRow.createCell(3);
+            qtyCell.setCellValue(quantity.doubleValue());
+            qtyCell.setCellStyle(numberStyle);
+
+            BigDecimal unitPrice = line.getPrice() != null ? line.getPrice() : BigDecimal.ZERO;
+            Cell priceCell = serviceRow.createCell(4);
+            priceCell.setCellValue(unitPrice.doubleValue());
+            priceCell.setCellStyle(currencyStyle);
+
+            BigDecimal amount = line.getBaseAmount() != null ? line.getBaseAmount() : BigDecimal.ZERO;
+            Cell amountCell = serviceRow.createCell(5);
+            amountCell.setCellValue(amount.doubleValue());
+            amountCell.setCellStyle(currencyStyle);
+
+            BigDecimal vatRate = line.getVat() != null ? line.getVat() : BigDecimal.ZERO;
+            Cell vatRateCell = serviceRow.createCell(6);
+            vatRateCell.setCellValue(vatRate.doubleValue() + "%");
+            vatRateCell.setCellStyle(centerStyle);
+
+            BigDecimal vatAmount = line.getVatAmount() != null ? line.getVatAmount() : BigDecimal.ZERO;
+            Cell vatAmountCell = serviceRow.createCell(7);
+            vatAmountCell.setCellValue(vatAmount.doubleValue());
+            vatAmountCell.setCellStyle(currencyStyle);
+        }
+
+        rowNum++;
+
+        // Totals per sheet (use invoice values)
+        Row totalRow1 = sheet.createRow(rowNum++);
+        totalRow1.createCell(4).setCellValue("Tổng tiền trước thuế:");
+        Cell subtotalCell = totalRow1.createCell(5);
+        subtotalCell.setCellValue(invoice.getSubtotal() != null ? invoice.getSubtotal().doubleValue() : 0);
+        subtotalCell.setCellStyle(currencyStyle);
+
+        Row totalRow2 = sheet.createRow(rowNum++);
+        totalRow2.createCell(4).setCellValue("Tổng tiền thuế GTGT:");
+        Cell totalVatCell = totalRow2.createCell(5);
+        totalVatCell.setCellValue(invoice.getVatAmount() != null ? invoice.getVatAmount().doubleValue() : 0);
+        totalVatCell.setCellStyle(currencyStyle);
+
+        Row totalRow3 = sheet.createRow(rowNum++);
+        Cell totalLabelCell = totalRow3.createCell(4);
+        totalLabelCell.setCellValue("Tổng cộng thanh toán:");
+        totalLabelCell.setCellStyle(boldStyle);
+        Cell totalAmountCell = totalRow3.createCell(5);
+        totalAmountCell.setCellValue(invoice.getTotalAmount() != null ? invoice.getTotalAmount().doubleValue() : 0);
+        totalAmountCell.setCellStyle(currencyStyle);
+
+        return sheet;
+    }
+
+    private String buildInvoiceEntryName(Invoice invoice) {
+        // Build a safe filename
+        String safeName = (invoice.getCustomerName() != null ? invoice.getCustomerName().replaceAll("[\\/:*?\"<>|]", "_") : "customer");
+        return String.format("Invoice_%d_%s_%d-%d.xlsx", invoice.getId(), safeName, invoice.getInvoiceMonth(), invoice.getInvoiceYear());
+    }
+
+    private static class NonClosingOutputStream extends java.io.FilterOutputStream {
+        NonClosingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+
     private String getUnitByContractType(ContractType type) {
         return switch (type) {
             case MONTHLY_FIXED, MONTHLY_ACTUAL -> "Tháng";
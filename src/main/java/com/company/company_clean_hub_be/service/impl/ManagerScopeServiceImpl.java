@@ -0,0 +1,96 @@
+package com.company.company_clean_hub_be.service.impl;
+
+import com.company.company_clean_hub_be.entity.User;
+import com.company.company_clean_hub_be.repository.CustomerAssignmentRepository;
+import com.company.company_clean_hub_be.repository.UserRepository;
+import com.company.company_clean_hub_be.security.UserPrincipal;
+import com.company.company_clean_hub_be.service.ManagerScopeService;
+import com.company.company_clean_hub_be.util.AfterCommit;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ManagerScopeServiceImpl implements ManagerScopeService {
+
+    private final CustomerAssignmentRepository customerAssignmentRepository;
+    private final UserRepository userRepository;
+
+    @Value("${security.manager-scope.ttl-seconds:300}")
+    private long ttlSeconds;
+
+    private record Entry(List<Long> customerIds, long loadedAt) {
+    }
+
+    // Key: managerId, Value: customer được phân công
+    private final Map<Long, Entry> scopes = new ConcurrentHashMap<>();
+
+    @Override
+    public Long getScopedManagerId(String... scopedRoles) {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth == null) {
+            return null;
+        }
+        if (auth.getPrincipal() instanceof UserPrincipal principal) {
+            return principal.hasRole(scopedRoles) ? principal.getId() : null;
+        }
+        // Principal không phải UserPrincipal (vd. chạy trong job) → tra DB theo username
+        User user = userRepository.findByUsername(auth.getName()).orElse(null);
+        if (user == null || user.getRole() == null) {
+            return null;
+        }
+        for (String role : scopedRoles) {
+            if (role.equalsIgnoreCase(user.getRole().getCode())) {
+                return user.getId();
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public List<Long> getCustomerIds(Long managerId) {
+        if (managerId == null) {
+            return List.of();
+        }
+        long now = System.currentTimeMillis();
+        Entry entry = scopes.get(managerId);
+        if (entry == null || now - entry.loadedAt() > ttlSeconds * 1000) {
+            entry = new Entry(List.copyOf(customerAssignmentRepository.findCustomerIdsByManagerId(managerId)), now);
+            scopes.put(managerId, entry);
+            log.debug("[SECURITY] Manager scope loaded: managerId={}, customers={}",
+                    managerId, entry.customerIds().size());
+        }
+        return entry.customerIds();
+    }
+
+    @Override
+    public boolean hasCustomers(Long managerId) {
+        return !getCustomerIds(managerId).isEmpty();
+    }
+
+    @Override
+    public void invalidate(Long managerId) {
+        if (managerId == null) {
+            return;
+        }
+        AfterCommit.run(() -> {
+            if (scopes.remove(managerId) != null) {
+                log.debug("[SECURITY] Manager scope evicted: managerId={}", managerId);
+            }
+        });
+    }
+
+    @Override
+    public void invalidateAll() {
+        AfterCommit.run(scopes::clear);
+    }
+}
@@ -0,0 +1,269 @@
+package com.company.company_clean_hub_be.service.impl;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.company.company_clean_hub_be.entity.Assignment;
+import com.company.company_clean_hub_be.entity.AssignmentScope;
+import com.company.company_clean_hub_be.entity.AssignmentStatus;
+import com.company.company_clean_hub_be.entity.Contract;
+import com.company.company_clean_hub_be.entity.WorkScheduleReason;
+import com.company.company_clean_hub_be.entity.WorkScheduleStatus;
+import com.company.company_clean_hub_be.repository.AssignmentRepository;
+import com.company.company_clean_hub_be.repository.AssignmentVerificationRepository;
+import com.company.company_clean_hub_be.service.AttendanceSummaryService;
+import com.company.company_clean_hub_be.service.MonthlyAttendanceGenerationService;
+import com.company.company_clean_hub_be.util.WorkScheduleDates;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Sinh dữ liệu đầu tháng theo từng hợp đồng: lịch ngày làm việc của tháng mới được
+ * tính sẵn trong bộ nhớ, Assignment mới lưu qua JPA (cần id), còn chấm công và
+ * WorkSchedule được ghi bằng JDBC batch vì id IDENTITY khiến Hibernate không gộp lô.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class MonthlyAttendanceGenerationServiceImpl implements MonthlyAttendanceGenerationService {
+
+    private static final String INSERT_ATTENDANCE_SQL = "INSERT INTO attendance (assignment_id, employee_id, date, "
+            + "work_hours, bonus, penalty, support_cost, is_overtime, deleted, description, created_at, updated_at) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String INSERT_WORK_SCHEDULE_SQL = "INSERT INTO work_schedules (assignment_id, employee_id, "
+            + "scheduled_date, status, reason, assignment_verification_id, attendance_deleted, created_at, updated_at) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final BigDecimal DEFAULT_WORK_HOURS = BigDecimal.valueOf(8);
+
+    private record AttendanceRow(Long assignmentId, Long employeeId, LocalDate date) {
+    }
+
+    private record WorkScheduleRow(Long assignmentId, Long employeeId, LocalDate date, WorkScheduleStatus status,
+            WorkScheduleReason reason, Long verificationId) {
+    }
+
+    private final AssignmentRepository assignmentRepository;
+    private final AssignmentVerificationRepository verificationRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final AttendanceSummaryService attendanceSummaryService;
+
+    @Value("${scheduler.monthly-generation.batch-size:500}")
+    private int batchSize;
+
+    @Override
+    @Transactional
+    public GenerationResult generateForContract(Long contractId, List<Long> sourceAssignmentIds, YearMonth month) {
+        LocalDate today = LocalDate.now();
+        LocalDate firstDayOfMonth = month.atDay(1);
+        LocalDate endOfMonth = month.atEndOfMonth();
+        LocalDateTime now = LocalDateTime.now();
+
+        List<Assignment> sources = assignmentRepository.findAllWithEmployeeAndContractByIdIn(sourceAssignmentIds);
+        Set<String> existingKeys = loadExistingAssignmentKeys(sources, firstDayOfMonth, endOfMonth);
+
+        List<AttendanceRow> attendanceRows = new ArrayList<>();
+        List<WorkScheduleRow> workScheduleRows = new ArrayList<>();
+        int createdAssignments = 0;
+        int skippedAssignments = 0;
+
+        for (Assignment oldAssignment : sources) {
+            Long employeeId = oldAssignment.getEmployee().getId();
+            Contract contract = oldAssignment.getContract();
+            boolean isCompany = oldAssignment.getScope() == AssignmentScope.COMPANY;
+
+            // Tháng mới đã có Assignment (chạy lại sau lỗi hoặc đã tạo tay) -> bỏ qua
+            if (!existingKeys.add(assignmentKey(employeeId, isCompany ? null : contract.getId()))) {
+                log.info("[MONTHLY-GEN] Tháng {} đã có Assignment cho Employee {} (contract={}), bỏ qua",
+                        month, employeeId, isCompany ? "COMPANY" : contract.getId());
+                skippedAssignments++;
+                continue;
+            }
+
+            boolean requiresImageVerification = !isCompany
+                    && Boolean.TRUE.equals(contract.getRequiresImageVerification());
+
+            // Ngày kết thúc: min(cuối tháng, ngày hết hạn assignment COMPANY / hợp đồng)
+            LocalDate endDate = endOfMonth;
+            LocalDate limit = isCompany ? oldAssignment.getEndDate() : contract.getEndDate();
+            if (limit != null && limit.isBefore(endDate)) {
+                endDate = limit;
+            }
+
+            Set<DayOfWeek> workingDays = toDaysOfWeek(isCompany
+                    ? oldAssignment.getWorkingDaysPerWeek()
+                    : contract.getWorkingDaysPerWeek());
+            List<LocalDate> workingDates = workingDates(firstDayOfMonth, endDate, workingDays);
+
+            Integer plannedDays;
+            if (requiresImageVerification) {
+                plannedDays = workingDays.isEmpty() ? oldAssignment.getPlannedDays() : workingDates.size();
+            } else {
+                // Không cấu hình workingDays thì mọi ngày đều sinh chấm công, plannedDays = workDays
+                plannedDays = workingDates.size();
+            }
+
+            Assignment savedAssignment = assignmentRepository.save(Assignment.builder()
+                    .employee(oldAssignment.getEmployee())
+                    .contract(contract)
+                    .scope(oldAssignment.getScope())
+                    .startDate(firstDayOfMonth)
+                    .status(AssignmentStatus.IN_PROGRESS)
+                    .assignmentType(oldAssignment.getAssignmentType())
+                    .salaryAtTime(oldAssignment.getSalaryAtTime())
+                    .workDays(requiresImageVerification ? 0 : workingDates.size())
+                    .plannedDays(plannedDays)
+                    .workingDaysPerWeek(oldAssignment.getWorkingDaysPerWeek() != null
+                            ? new ArrayList<>(oldAssignment.getWorkingDaysPerWeek())
+                            : null)
+                    .additionalAllowance(oldAssignment.getAdditionalAllowance())
+                    .monthlySupport(oldAssignment.getMonthlySupport())
+                    .advanceNote(null) // advanceNote là dữ liệu theo tháng, không copy sang tháng mới
+                    .description(oldAssignment.getDescription())
+                    .createdAt(now)
+                    .updatedAt(now)
+                    .build());
+            createdAssignments++;
+
+            if (requiresImageVerification) {
+                // Hợp đồng yêu cầu chụp ảnh: không sinh chấm công, tạo WorkSchedule để nhân viên chụp ảnh
+                Long verificationId = null;
+                WorkScheduleReason reason = WorkScheduleReason.CONTRACT_REQUIREMENT;
+                if (assignmentRepository.countAssignmentsByEmployeeExcluding(employeeId, savedAssignment.getId()) == 0) {
+                    reason = WorkScheduleReason.NEW_EMPLOYEE_VERIFICATION;
+                    verificationId = verificationRepository.findByAssignmentId(oldAssignment.getId())
+                            .map(v -> v.getId())
+                            .orElse(null);
+                }
+
+                // Cùng quy tắc với WorkScheduleService.createWorkSchedulesForAssignment, ghi bằng JDBC batch
+                for (LocalDate date : WorkScheduleDates.scheduledDates(savedAssignment.getWorkingDaysPerWeek(),
+                        firstDayOfMonth, endDate)) {
+                    workScheduleRows.add(new WorkScheduleRow(savedAssignment.getId(), employeeId, date,
+                            WorkScheduleDates.initialStatus(date, today), reason, verificationId));
+                }
+            } else {
+                for (LocalDate date : workingDates) {
+                    attendanceRows.add(new AttendanceRow(savedAssignment.getId(), employeeId, date));
+                }
+            }
+        }
+
+        insertAttendances(attendanceRows, "Tự động sinh cho tháng " + month, now);
+        insertWorkSchedules(workScheduleRows, now);
+
+        log.info("[MONTHLY-GEN] Contract {}: tạo {} Assignment, {} chấm công, {} WorkSchedule, bỏ qua {}",
+                contractId != null ? contractId : "COMPANY", createdAssignments, attendanceRows.size(),
+                workScheduleRows.size(), skippedAssignments);
+
+        return new GenerationResult(createdAssignments, attendanceRows.size(), workScheduleRows.size(),
+                skippedAssignments);
+    }
+
+    private Set<String> loadExistingAssignmentKeys(List<Assignment> sources, LocalDate fromDate, LocalDate toDate) {
+        Set<String> keys = new HashSet<>();
+        if (sources.isEmpty()) {
+            return keys;
+        }
+        List<Long> employeeIds = sources.stream()
+                .map(a -> a.getEmployee().getId())
+                .distinct()
+                .toList();
+        for (Object[] row : assignmentRepository.findAssignmentKeysByEmployeeIdsAndStartDateBetween(employeeIds,
+                fromDate, toDate)) {
+            boolean isCompany = row[2] == AssignmentScope.COMPANY;
+            keys.add(assignmentKey((Long) row[0], isCompany ? null : (Long) row[1]));
+        }
+        return keys;
+    }
+
+    // COMPANY: mỗi nhân viên một assignment/tháng; CONTRACT: mỗi cặp nhân viên - hợp đồng
+    private static String assignmentKey(Long employeeId, Long contractId) {
+        return contractId == null ? employeeId + ":COMPANY" : employeeId + ":" + contractId;
+    }
+
+    // workingDays của Contract / Assignment, so theo tên để không phụ thuộc enum (trùng tên với entity.DayOfWeek)
+    private static Set<DayOfWeek> toDaysOfWeek(List<?> days) {
+        Set<DayOfWeek> result = EnumSet.noneOf(DayOfWeek.class);
+        if (days != null) {
+            for (Object day : days) {
+                result.add(DayOfWeek.valueOf(day.toString()));
+            }
+        }
+        return result;
+    }
+
+    // Rỗng = mọi ngày trong khoảng đều là ngày làm việc
+    private static List<LocalDate> workingDates(LocalDate fromDate, LocalDate toDate, Set<DayOfWeek> workingDays) {
+        List<LocalDate> dates = new ArrayList<>();
+        for (LocalDate date = fromDate; !date.isAfter(toDate); date = date.plusDays(1)) {
+            if (workingDays.isEmpty() || workingDays.contains(date.getDayOfWeek())) {
+                dates.add(date);
+            }
+        }
+        return dates;
+    }
+
+    private void insertAttendances(List<AttendanceRow> rows, String description, LocalDateTime now) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        Timestamp timestamp = Timestamp.valueOf(now);
+        jdbcTemplate.batchUpdate(INSERT_ATTENDANCE_SQL, rows, batchSize, (ps, row) -> {
+            ps.setLong(1, row.assignmentId());
+            ps.setLong(2, row.employeeId());
+            ps.setDate(3, Date.valueOf(row.date()));
+            ps.setBigDecimal(4, DEFAULT_WORK_HOURS);
+            ps.setBigDecimal(5, BigDecimal.ZERO);
+            ps.setBigDecimal(6, BigDecimal.ZERO);
+            ps.setBigDecimal(7, BigDecimal.ZERO);
+            ps.setBoolean(8, false);
+            ps.setBoolean(9, false);
+            ps.setString(10, description);
+            ps.setTimestamp(11, timestamp);
+            ps.setTimestamp(12, timestamp);
+        });
+        // JDBC batch không qua entity listener
+        rows.forEach(row -> attendanceSummaryService.markDirty(row.assignmentId(), row.date()));
+    }
+
+    private void insertWorkSchedules(List<WorkScheduleRow> rows, LocalDateTime now) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        Timestamp timestamp = Timestamp.valueOf(now);
+        jdbcTemplate.batchUpdate(INSERT_WORK_SCHEDULE_SQL, rows, batchSize, (ps, row) -> {
+            ps.setLong(1, row.assignmentId());
+            ps.setLong(2, row.employeeId());
+            ps.setDate(3, Date.valueOf(row.date()));
+            ps.setString(4, row.status().name());
+            ps.setString(5, row.reason().name());
+            if (row.verificationId() != null) {
+                ps.setLong(6, row.verificationId());
+            } else {
+                ps.setNull(6, Types.BIGINT);
+            }
+            ps.setBoolean(7, false);
+            ps.setTimestamp(8, timestamp);
+            ps.setTimestamp(9, timestamp);
+        });
+    }
+}
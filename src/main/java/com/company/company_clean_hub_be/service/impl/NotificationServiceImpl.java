@@ -1,41 +1,84 @@
 package com.company.company_clean_hub_be.service.impl;
 
+import com.company.company_clean_hub_be.dto.response.NotificationFeedResponse;
 import com.company.company_clean_hub_be.dto.response.NotificationResponse;
 import com.company.company_clean_hub_be.dto.response.PageResponse;
 import com.company.company_clean_hub_be.entity.Contract;
-import com.company.company_clean_hub_be.entity.CustomerAssignment;
 import com.company.company_clean_hub_be.entity.Notification;
 import com.company.company_clean_hub_be.entity.NotificationType;
 import com.company.company_clean_hub_be.entity.User;
 import com.company.company_clean_hub_be.exception.AppException;
 import com.company.company_clean_hub_be.exception.ErrorCode;
-import com.company.company_clean_hub_be.repository.CustomerAssignmentRepository;
 import com.company.company_clean_hub_be.repository.NotificationRepository;
 import com.company.company_clean_hub_be.repository.UserRepository;
 import com.company.company_clean_hub_be.service.NotificationService;
 import com.company.company_clean_hub_be.service.SseEmitterService;
-import lombok.RequiredArgsConstructor;
+import com.company.company_clean_hub_be.service.helper.NotificationRecipientResolver;
+import com.company.company_clean_hub_be.service.helper.NotificationUnreadCounter;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
 import java.time.LocalDateTime;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class NotificationServiceImpl implements NotificationService {
 
+    private static final String INSERT_NOTIFICATION_SQL = "INSERT INTO notifications (recipient_id, type, title, message, "
+            + "ref_employee_id, ref_assignment_id, ref_contract_id, is_read, created_at) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final int MAX_FEED_LIMIT = 100;
+
     private final NotificationRepository notificationRepository;
     private final UserRepository userRepository;
-    private final CustomerAssignmentRepository customerAssignmentRepository;
     private final SseEmitterService sseEmitterService;
+    private final NotificationRecipientResolver recipientResolver;
+    private final NotificationUnreadCounter unreadCounter;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${notification.bulk.batch-size:500}")
+    private int batchSize;
+
+    public NotificationServiceImpl(
+            NotificationRepository notificationRepository,
+            UserRepository userRepository,
+            SseEmitterService sseEmitterService,
+            NotificationRecipientResolver recipientResolver,
+            NotificationUnreadCounter unreadCounter,
+            JdbcTemplate jdbcTemplate) {
+        this.notificationRepository = notificationRepository;
+        this.userRepository = userRepository;
+        this.sseEmitterService = sseEmitterService;
+        this.recipientResolver = recipientResolver;
+        this.unreadCounter = unreadCounter;
+        this.jdbcTemplate = jdbcTemplate;
+    }
 
     @Override
     @Transactional
@@ -60,26 +103,163 @@ public class NotificationServiceImpl implements NotificationService {
         notificationRepository.save(notification);
         log.info("Notification created: type={}, recipientId={}, title={}", type, recipient.getId(), title);
 
-        // Push real-time qua SSE nếu recipient đang kết nối online
-        sseEmitterService.sendToUser(recipient.getId(), mapToResponse(notification));
+        // Cập nhật badge + push real-time qua SSE nếu recipient đang kết nối online (sau commit)
+        Long recipientId = recipient.getId();
+        NotificationResponse response = mapToResponse(notification);
+        afterCommit(() -> {
+            unreadCounter.add(recipientId, 1);
+            sseEmitterService.sendToUser(recipientId, response.getId(), response);
+        });
     }
 
     @Override
-    public List<User> getRecipientsForContract(Contract contract) {
-        List<User> managers = new ArrayList<>(userRepository.findActiveUsersByRoleCode("QLT1"));
+    @Transactional
+    public int createNotifications(Collection<Long> recipientIds,
+                                   NotificationType type,
+                                   String title,
+                                   String message,
+                                   Long refEmployeeId,
+                                   Long refAssignmentId,
+                                   Long refContractId,
+                                   LocalDateTime dedupeSince) {
+        if (recipientIds == null || recipientIds.isEmpty()) {
+            return 0;
+        }
+        List<Long> recipients = new ArrayList<>(new LinkedHashSet<>(recipientIds));
+
+        // Dedupe theo lô: một truy vấn cho cả danh sách người nhận
+        if (dedupeSince != null) {
+            Set<Long> alreadyNotified = new HashSet<>(refEmployeeId != null
+                    ? notificationRepository.findRecipientIdsNotifiedSince(
+                            type, refContractId, refEmployeeId, recipients, dedupeSince)
+                    : notificationRepository.findRecipientIdsNotifiedForContractSince(
+                            type, refContractId, recipients, dedupeSince));
+            recipients.removeIf(alreadyNotified::contains);
+            if (recipients.isEmpty()) {
+                return 0;
+            }
+        }
+
+        LocalDateTime createdAt = LocalDateTime.now();
+        List<Long> ids = batchInsert(recipients, type, title, message,
+                refEmployeeId, refAssignmentId, refContractId, createdAt);
+        log.info("Notifications created: type={}, recipients={}, title={}", type, recipients.size(), title);
+
+        List<Long> pushRecipients = List.copyOf(recipients);
+        afterCommit(() -> {
+            for (int i = 0; i < pushRecipients.size(); i++) {
+                unreadCounter.add(pushRecipients.get(i), 1);
+                NotificationResponse response = NotificationResponse.builder()
+                        .id(i < ids.size() ? ids.get(i) : null)
+                        .type(type.name())
+                        .typeDescription(type.getDescription())
+                        .title(title)
+                        .message(message)
+                        .refEmployeeId(refEmployeeId)
+                        .refAssignmentId(refAssignmentId)
+                        .refContractId(refContractId)
+                        .isRead(false)
+                        .createdAt(createdAt)
+                        .build();
+                sseEmitterService.sendToUser(pushRecipients.get(i), response.getId(), response);
+            }
+        });
+        return recipients.size();
+    }
+
+    @Override
+    public List<Long> getRecipientIdsByRoles(List<String> roleCodes) {
+        return recipientResolver.getUserIdsByRoles(roleCodes);
+    }
+
+    @Override
+    public List<Long> getRecipientIdsForContract(Contract contract, List<String> customerManagerRoles) {
+        Set<Long> ids = new LinkedHashSet<>(recipientResolver.getUserIdsByRoles(List.of("QLT1")));
         if (contract != null && contract.getCustomer() != null) {
-            List<CustomerAssignment> assigns = customerAssignmentRepository
-                    .findByCustomerId(contract.getCustomer().getId());
-            for (CustomerAssignment ca : assigns) {
-                if (ca.getManager() != null
-                        && ca.getManager().getRole() != null
-                        && "QLT2".equalsIgnoreCase(ca.getManager().getRole().getCode())
-                        && managers.stream().noneMatch(m -> m.getId().equals(ca.getManager().getId()))) {
-                    managers.add(ca.getManager());
+            ids.addAll(recipientResolver.getCustomerManagerIds(contract.getCustomer().getId(), customerManagerRoles));
+        }
+        return new ArrayList<>(ids);
+    }
+
+    @Override
+    public List<User> getRecipientsForContract(Contract contract) {
+        return userRepository.findAllById(getRecipientIdsForContract(contract, List.of("QLT2")));
+    }
+
+    /**
+     * Batch insert qua JDBC (IDENTITY id không batch được qua Hibernate), trả về id theo thứ tự người nhận.
+     */
+    private List<Long> batchInsert(List<Long> recipients, NotificationType type, String title, String message,
+                                   Long refEmployeeId, Long refAssignmentId, Long refContractId,
+                                   LocalDateTime createdAt) {
+        return jdbcTemplate.execute((ConnectionCallback<List<Long>>) con -> {
+            List<Long> ids = new ArrayList<>(recipients.size());
+            try (PreparedStatement ps = con.prepareStatement(INSERT_NOTIFICATION_SQL, Statement.RETURN_GENERATED_KEYS)) {
+                int pending = 0;
+                for (Long recipientId : recipients) {
+                    ps.setLong(1, recipientId);
+                    ps.setString(2, type.name());
+                    ps.setString(3, title);
+                    ps.setString(4, message);
+                    setNullableLong(ps, 5, refEmployeeId);
+                    setNullableLong(ps, 6, refAssignmentId);
+                    setNullableLong(ps, 7, refContractId);
+                    ps.setBoolean(8, false);
+                    ps.setTimestamp(9, Timestamp.valueOf(createdAt));
+                    ps.addBatch();
+                    if (++pending == batchSize) {
+                        executeBatch(ps, ids);
+                        pending = 0;
+                    }
+                }
+                if (pending > 0) {
+                    executeBatch(ps, ids);
                 }
             }
+            return ids;
+        });
+    }
+
+    private void executeBatch(PreparedStatement ps, List<Long> ids) throws java.sql.SQLException {
+        ps.executeBatch();
+        try (ResultSet keys = ps.getGeneratedKeys()) {
+            while (keys.next()) {
+                ids.add(keys.getLong(1));
+            }
+        }
+    }
+
+    private void setNullableLong(PreparedStatement ps, int index, Long value) throws java.sql.SQLException {
+        if (value != null) {
+            ps.setLong(index, value);
+        } else {
+            ps.setNull(index, Types.BIGINT);
+        }
+    }
+
+    /**
+     * Chạy sau khi transaction commit (nếu không có transaction thì chạy ngay): cập nhật bộ đếm
+     * chưa đọc và đẩy SSE. SseEmitterService chỉ xếp event vào hàng đợi của từng kết nối nên
+     * không chặn luồng gọi.
+     */
+    private void afterCommit(Runnable push) {
+        Runnable task = () -> {
+            try {
+                push.run();
+            } catch (Exception e) {
+                log.warn("Notification after-commit hook failed: {}", e.getMessage());
+            }
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    task.run();
+                }
+            });
+        } else {
+            task.run();
         }
-        return managers;
     }
 
     @Override
@@ -152,8 +332,77 @@ public class NotificationServiceImpl implements NotificationService {
 
     @Override
     public long countMyUnread() {
-        User currentUser = getCurrentUserEntity();
-        return notificationRepository.countByRecipientIdAndIsReadFalse(currentUser.getId());
+        return unreadCounter.get(getCurrentUserId());
+    }
+
+    @Override
+    public NotificationFeedResponse getMyFeed(String type, Boolean isRead, String cursor, int limit) {
+        Long recipientId = getCurrentUserId();
+        NotificationType notificationType = parseType(type);
+        int size = Math.max(1, Math.min(limit, MAX_FEED_LIMIT));
+
+        // Lấy dư 1 bản ghi để biết còn trang sau hay không
+        PageRequest pageable = PageRequest.of(0, size + 1);
+        List<Notification> rows;
+        if (cursor == null || cursor.isBlank()) {
+            rows = notificationRepository.findFeedFirstPage(recipientId, notificationType, isRead, pageable);
+        } else {
+            FeedCursor c = FeedCursor.decode(cursor);
+            rows = notificationRepository.findFeedAfterCursor(
+                    recipientId, notificationType, isRead, c.createdAt(), c.id(), pageable);
+        }
+
+        boolean hasMore = rows.size() > size;
+        List<Notification> pageRows = hasMore ? rows.subList(0, size) : rows;
+        Notification last = pageRows.isEmpty() ? null : pageRows.get(pageRows.size() - 1);
+        return NotificationFeedResponse.builder()
+                .items(pageRows.stream().map(this::mapToResponse).collect(Collectors.toList()))
+                .nextCursor(hasMore && last != null ? new FeedCursor(last.getCreatedAt(), last.getId()).encode() : null)
+                .hasMore(hasMore)
+                .unreadCount(unreadCounter.get(recipientId))
+                .build();
+    }
+
+    @Override
+    public int reconcileUnreadCounters() {
+        List<Long> userIds = unreadCounter.cachedUserIds();
+        if (userIds.isEmpty()) {
+            return 0;
+        }
+        Map<Long, Long> dbCounts = new HashMap<>();
+        for (Object[] row : notificationRepository.countUnreadByRecipientIds(userIds)) {
+            dbCounts.put((Long) row[0], (Long) row[1]);
+        }
+        return unreadCounter.reconcile(userIds, dbCounts);
+    }
+
+    @Override
+    @Transactional
+    public int archiveReadNotifications(LocalDateTime cutoff, int batchSize) {
+        List<Long> ids = jdbcTemplate.queryForList(
+                "SELECT id FROM notifications WHERE is_read = TRUE AND created_at < ? ORDER BY id LIMIT ?",
+                Long.class, Timestamp.valueOf(cutoff), batchSize);
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        String placeholders = String.join(",", java.util.Collections.nCopies(ids.size(), "?"));
+        Object[] args = ids.toArray();
+        // Giữ nguyên id gốc; archive và xoá trong cùng transaction
+        jdbcTemplate.update("INSERT INTO notifications_archive (id, recipient_id, type, title, message, "
+                + "ref_employee_id, ref_assignment_id, ref_contract_id, is_read, created_at, archived_at) "
+                + "SELECT id, recipient_id, type, title, message, ref_employee_id, ref_assignment_id, "
+                + "ref_contract_id, is_read, created_at, NOW(6) FROM notifications WHERE id IN (" + placeholders + ")",
+                args);
+        return jdbcTemplate.update("DELETE FROM notifications WHERE id IN (" + placeholders + ")", args);
+    }
+
+    @Override
+    public List<NotificationResponse> getNotificationsAfter(Long recipientId, Long afterId, int limit) {
+        return notificationRepository.findByRecipientIdAndIdGreaterThanOrderByIdAsc(
+                        recipientId, afterId, PageRequest.of(0, limit))
+                .stream()
+                .map(this::mapToResponse)
+                .collect(Collectors.toList());
     }
 
     @Override
@@ -172,6 +421,7 @@ public class NotificationServiceImpl implements NotificationService {
         if (Boolean.FALSE.equals(notification.getIsRead())) {
             notification.setIsRead(true);
             notificationRepository.save(notification);
+            afterCommit(() -> unreadCounter.add(currentUserId, -1));
             log.info("Auto mark-as-read notificationId={} for userId={}", id, currentUserId);
         }
 
@@ -190,8 +440,12 @@ public class NotificationServiceImpl implements NotificationService {
             throw new AppException(ErrorCode.FORBIDDEN);
         }
 
-        notification.setIsRead(true);
-        notificationRepository.save(notification);
+        if (Boolean.FALSE.equals(notification.getIsRead())) {
+            notification.setIsRead(true);
+            notificationRepository.save(notification);
+            Long recipientId = currentUser.getId();
+            afterCommit(() -> unreadCounter.add(recipientId, -1));
+        }
         return mapToResponse(notification);
     }
 
@@ -199,15 +453,46 @@ public class NotificationServiceImpl implements NotificationService {
     @Transactional
     public void markAllAsRead() {
         User currentUser = getCurrentUserEntity();
-        List<Notification> unread = notificationRepository.findByRecipientIdAndIsReadFalseOrderByCreatedAtDesc(currentUser.getId());
-        
-        unread.forEach(n -> n.setIsRead(true));
-        notificationRepository.saveAll(unread);
-        log.info("Marked {} notifications as read for role={}", unread.size(), currentUser.getRole().getCode());
+        Long recipientId = currentUser.getId();
+        int updated = notificationRepository.markAllReadByRecipientId(recipientId);
+        afterCommit(() -> unreadCounter.add(recipientId, -updated));
+        log.info("Marked {} notifications as read for role={}", updated, currentUser.getRole().getCode());
     }
 
     // ─── Helpers ───────────────────────────────────────────────────────────────
 
+    /**
+     * Cursor của feed: (createdAt, id) của bản ghi cuối trang trước, mã hoá base64url.
+     */
+    private record FeedCursor(LocalDateTime createdAt, Long id) {
+
+        String encode() {
+            String raw = createdAt + "|" + id;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static FeedCursor decode(String cursor) {
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                int sep = raw.lastIndexOf('|');
+                return new FeedCursor(LocalDateTime.parse(raw.substring(0, sep)), Long.parseLong(raw.substring(sep + 1)));
+            } catch (RuntimeException e) {
+                throw new AppException(ErrorCode.INVALID_REQUEST, "Cursor không hợp lệ");
+            }
+        }
+    }
+
+    private NotificationType parseType(String type) {
+        if (type == null || type.isBlank() || "ALL".equalsIgnoreCase(type)) {
+            return null;
+        }
+        try {
+            return NotificationType.valueOf(type.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new AppException(ErrorCode.INVALID_REQUEST);
+        }
+    }
+
     private User getCurrentUserEntity() {
         String username = SecurityContextHolder.getContext().getAuthentication().getName();
         return userRepository.findByUsername(username)
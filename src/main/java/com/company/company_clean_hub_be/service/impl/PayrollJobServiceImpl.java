@@ -0,0 +1,314 @@
+package com.company.company_clean_hub_be.service.impl;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import com.company.company_clean_hub_be.dto.response.PayRollAssignmentExportExcel;
+import com.company.company_clean_hub_be.dto.response.PayrollJobResponse;
+import com.company.company_clean_hub_be.dto.response.PayrollJobResponse.JobStatus;
+import com.company.company_clean_hub_be.dto.response.PayrollJobResponse.JobType;
+import com.company.company_clean_hub_be.entity.User;
+import com.company.company_clean_hub_be.exception.AppException;
+import com.company.company_clean_hub_be.exception.ErrorCode;
+import com.company.company_clean_hub_be.repository.EmployeeRepository;
+import com.company.company_clean_hub_be.repository.UserRepository;
+import com.company.company_clean_hub_be.service.PayrollJobService;
+import com.company.company_clean_hub_be.service.PayrollService;
+import com.company.company_clean_hub_be.service.UserService;
+import com.company.company_clean_hub_be.service.helper.PayrollPeriodGuard;
+import com.company.company_clean_hub_be.util.ChunkedIterator;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Chạy tính lương / xuất lương cả tháng dưới dạng job nền: nhân viên được chia
+ * thành từng lô cố định, mỗi lô chạy trên payrollJobExecutor trong một transaction
+ * riêng (mỗi lần gọi PayrollService là một transaction). Lô lỗi được chạy lại từng
+ * nhân viên để một nhân viên lỗi không làm hỏng cả lô. Job tính lương giữ tháng
+ * trong PayrollPeriodGuard từ lúc tạo tới khi xong để không chạy song song với lượt
+ * tính khác cùng tháng.
+ */
+@Service
+@Slf4j
+public class PayrollJobServiceImpl implements PayrollJobService {
+
+    private final PayrollService payrollService;
+    private final EmployeeRepository employeeRepository;
+    private final UserRepository userRepository;
+    private final UserService userService;
+    private final ThreadPoolTaskExecutor payrollJobExecutor;
+    private final PayrollPeriodGuard payrollPeriodGuard;
+
+    private final Map<String, PayrollJob> jobs = new ConcurrentHashMap<>();
+
+    @Value("${payroll.job.chunk-size:100}")
+    private int chunkSize;
+
+    @Value("${payroll.job.retention-minutes:60}")
+    private long retentionMinutes;
+
+    public PayrollJobServiceImpl(PayrollService payrollService,
+            EmployeeRepository employeeRepository,
+            UserRepository userRepository,
+            UserService userService,
+            @Qualifier("payrollJobExecutor") ThreadPoolTaskExecutor payrollJobExecutor,
+            PayrollPeriodGuard payrollPeriodGuard) {
+        this.payrollService = payrollService;
+        this.employeeRepository = employeeRepository;
+        this.userRepository = userRepository;
+        this.userService = userService;
+        this.payrollJobExecutor = payrollJobExecutor;
+        this.payrollPeriodGuard = payrollPeriodGuard;
+    }
+
+    @Override
+    public PayrollJobResponse startCalculation(Integer month, Integer year) {
+        return start(JobType.CALCULATE, month, year);
+    }
+
+    @Override
+    public PayrollJobResponse startExport(Integer month, Integer year) {
+        return start(JobType.EXPORT, month, year);
+    }
+
+    @Override
+    public PayrollJobResponse getJob(String jobId) {
+        return toResponse(findJob(jobId));
+    }
+
+    @Override
+    public List<PayRollAssignmentExportExcel> getExportRows(String jobId) {
+        PayrollJob job = findJob(jobId);
+        if (job.type != JobType.EXPORT || job.finishedAt == null) {
+            throw new AppException(ErrorCode.PAYROLL_JOB_NOT_READY);
+        }
+        List<PayRollAssignmentExportExcel> rows = new ArrayList<>();
+        for (int i = 0; i < job.exportChunks.length(); i++) {
+            List<PayRollAssignmentExportExcel> chunkRows = job.exportChunks.get(i);
+            if (chunkRows != null) {
+                rows.addAll(chunkRows);
+            }
+        }
+        return rows;
+    }
+
+    @Override
+    public Iterator<PayRollAssignmentExportExcel> openExportCursor(Integer month, Integer year) {
+        Long accountantId = resolveAccountant().getId();
+        List<Long> employeeIds = employeeRepository.findDistinctEmployeeIdsByAssignmentMonthYear(month, year);
+        log.info("[PAYROLL-EXPORT-STREAM] Opening cursor: month={}, year={}, employees={}", month, year,
+                employeeIds.size());
+        return new ChunkedIterator<>(employeeIds, chunkSize,
+                chunk -> payrollService.getPayRollByAssignmentForEmployees(chunk, month, year, accountantId));
+    }
+
+    private PayrollJobResponse start(JobType type, Integer month, Integer year) {
+        purgeExpiredJobs();
+
+        // SecurityContext không có trên worker thread nên lấy kế toán ngay tại request
+        User accountant = resolveAccountant();
+
+        String jobId = UUID.randomUUID().toString();
+        YearMonth period = YearMonth.of(year, month);
+        if (type == JobType.CALCULATE) {
+            payrollPeriodGuard.acquire(period, jobId);
+        }
+
+        PayrollJob job;
+        List<List<Long>> chunks = new ArrayList<>();
+        try {
+            List<Long> employeeIds = employeeRepository.findDistinctEmployeeIdsByAssignmentMonthYear(month, year);
+            for (int from = 0; from < employeeIds.size(); from += chunkSize) {
+                chunks.add(new ArrayList<>(employeeIds.subList(from, Math.min(from + chunkSize,
+                        employeeIds.size()))));
+            }
+            job = new PayrollJob(jobId, type, month, year, accountant.getId(), employeeIds.size(), chunks.size());
+        } catch (RuntimeException ex) {
+            payrollPeriodGuard.release(period, jobId);
+            throw ex;
+        }
+        jobs.put(job.jobId, job);
+        log.info("[PAYROLL-JOB] Created job {} type={} month={} year={} employees={} chunks={}",
+                job.jobId, type, month, year, job.totalEmployees, chunks.size());
+
+        if (chunks.isEmpty()) {
+            finish(job);
+            return toResponse(job);
+        }
+
+        for (int i = 0; i < chunks.size(); i++) {
+            int chunkIndex = i;
+            List<Long> chunk = chunks.get(i);
+            try {
+                payrollJobExecutor.execute(() -> runChunk(job, chunkIndex, chunk));
+            } catch (TaskRejectedException ex) {
+                log.error("[PAYROLL-JOB] Job {} chunk {} rejected by executor: {}", job.jobId, chunkIndex,
+                        ex.getMessage());
+                chunk.forEach(job.failedEmployeeIds::add);
+                job.errors.add("Chunk " + chunkIndex + " bị từ chối do hàng đợi đầy");
+                completeChunk(job, chunk.size());
+            }
+        }
+        return toResponse(job);
+    }
+
+    private void runChunk(PayrollJob job, int chunkIndex, List<Long> employeeIds) {
+        if (job.status == JobStatus.PENDING) {
+            job.status = JobStatus.RUNNING;
+        }
+        log.info("[PAYROLL-JOB] Job {} chunk {} started ({} employees)", job.jobId, chunkIndex, employeeIds.size());
+        try {
+            processEmployees(job, chunkIndex, employeeIds);
+        } catch (Exception ex) {
+            log.warn("[PAYROLL-JOB] Job {} chunk {} failed, retrying per employee: {}", job.jobId, chunkIndex,
+                    ex.getMessage());
+            retryPerEmployee(job, chunkIndex, employeeIds);
+        } finally {
+            completeChunk(job, employeeIds.size());
+        }
+    }
+
+    private void processEmployees(PayrollJob job, int chunkIndex, List<Long> employeeIds) {
+        if (job.type == JobType.CALCULATE) {
+            int rows = payrollService.calculatePayrollForEmployees(employeeIds, job.month, job.year,
+                    job.accountantId).size();
+            job.resultRows.addAndGet(rows);
+        } else {
+            List<PayRollAssignmentExportExcel> rows = payrollService.getPayRollByAssignmentForEmployees(employeeIds,
+                    job.month, job.year, job.accountantId);
+            job.exportChunks.set(chunkIndex, rows);
+            job.resultRows.addAndGet(rows.size());
+        }
+    }
+
+    private void retryPerEmployee(PayrollJob job, int chunkIndex, List<Long> employeeIds) {
+        List<PayRollAssignmentExportExcel> exportRows = new ArrayList<>();
+        for (Long employeeId : employeeIds) {
+            try {
+                if (job.type == JobType.CALCULATE) {
+                    int rows = payrollService.calculatePayrollForEmployees(List.of(employeeId), job.month, job.year,
+                            job.accountantId).size();
+                    job.resultRows.addAndGet(rows);
+                } else {
+                    List<PayRollAssignmentExportExcel> rows = payrollService.getPayRollByAssignmentForEmployees(
+                            List.of(employeeId), job.month, job.year, job.accountantId);
+                    exportRows.addAll(rows);
+                    job.resultRows.addAndGet(rows.size());
+                }
+            } catch (Exception ex) {
+                log.error("[PAYROLL-JOB] Job {} employee {} failed: {}", job.jobId, employeeId, ex.getMessage(), ex);
+                job.failedEmployeeIds.add(employeeId);
+                job.errors.add("employeeId=" + employeeId + ": " + ex.getMessage());
+            }
+        }
+        if (job.type == JobType.EXPORT) {
+            job.exportChunks.set(chunkIndex, exportRows);
+        }
+    }
+
+    private void completeChunk(PayrollJob job, int employeeCount) {
+        job.processedEmployees.addAndGet(employeeCount);
+        if (job.completedChunks.incrementAndGet() == job.totalChunks) {
+            finish(job);
+        }
+    }
+
+    private void finish(PayrollJob job) {
+        job.status = job.failedEmployeeIds.isEmpty() ? JobStatus.COMPLETED : JobStatus.COMPLETED_WITH_ERRORS;
+        job.finishedAt = LocalDateTime.now();
+        if (job.type == JobType.CALCULATE) {
+            payrollPeriodGuard.release(YearMonth.of(job.year, job.month), job.jobId);
+        }
+        log.info("[PAYROLL-JOB] Job {} finished: status={}, resultRows={}, failedEmployees={}",
+                job.jobId, job.status, job.resultRows.get(), job.failedEmployeeIds.size());
+    }
+
+    private User resolveAccountant() {
+        return userRepository.findByUsername(userService.getCurrentUsername())
+                .orElseThrow(() -> new AppException(ErrorCode.USER_IS_NOT_EXISTS));
+    }
+
+    private PayrollJob findJob(String jobId) {
+        PayrollJob job = jobs.get(jobId);
+        if (job == null) {
+            throw new AppException(ErrorCode.PAYROLL_JOB_NOT_FOUND);
+        }
+        return job;
+    }
+
+    private void purgeExpiredJobs() {
+        LocalDateTime threshold = LocalDateTime.now().minusMinutes(retentionMinutes);
+        jobs.values().removeIf(job -> job.finishedAt != null && job.finishedAt.isBefore(threshold));
+    }
+
+    private PayrollJobResponse toResponse(PayrollJob job) {
+        int processed = job.processedEmployees.get();
+        return PayrollJobResponse.builder()
+                .jobId(job.jobId)
+                .type(job.type)
+                .status(job.status)
+                .month(job.month)
+                .year(job.year)
+                .totalEmployees(job.totalEmployees)
+                .processedEmployees(processed)
+                .totalChunks(job.totalChunks)
+                .completedChunks(job.completedChunks.get())
+                .progressPercent(job.totalEmployees == 0 ? 100 : processed * 100 / job.totalEmployees)
+                .resultRows(job.resultRows.get())
+                .failedEmployeeIds(new ArrayList<>(job.failedEmployeeIds))
+                .errors(new ArrayList<>(job.errors))
+                .createdAt(job.createdAt)
+                .finishedAt(job.finishedAt)
+                .build();
+    }
+
+    private static final class PayrollJob {
+        private final String jobId;
+        private final JobType type;
+        private final Integer month;
+        private final Integer year;
+        private final Long accountantId;
+        private final int totalEmployees;
+        private final int totalChunks;
+        private final LocalDateTime createdAt = LocalDateTime.now();
+
+        private volatile JobStatus status = JobStatus.PENDING;
+        private volatile LocalDateTime finishedAt;
+
+        private final AtomicInteger processedEmployees = new AtomicInteger();
+        private final AtomicInteger completedChunks = new AtomicInteger();
+        private final AtomicInteger resultRows = new AtomicInteger();
+        private final Queue<Long> failedEmployeeIds = new ConcurrentLinkedQueue<>();
+        private final Queue<String> errors = new ConcurrentLinkedQueue<>();
+        // Kết quả xuất Excel theo thứ tự lô để ghép lại đúng thứ tự nhân viên
+        private final AtomicReferenceArray<List<PayRollAssignmentExportExcel>> exportChunks;
+
+        private PayrollJob(String jobId, JobType type, Integer month, Integer year, Long accountantId,
+                int totalEmployees, int totalChunks) {
+            this.jobId = jobId;
+            this.type = type;
+            this.month = month;
+            this.year = year;
+            this.accountantId = accountantId;
+            this.totalEmployees = totalEmployees;
+            this.totalChunks = totalChunks;
+            this.exportChunks = new AtomicReferenceArray<>(totalChunks);
+        }
+    }
+}
@@ -3,15 +3,20 @@ package com.company.company_clean_hub_be.service.impl;
 // payroll request import removed (payroll calculation logic disabled)
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.sql.Timestamp;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.YearMonth;
 import java.util.*;
 import java.util.stream.Collectors;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -42,8 +47,10 @@ import com.company.company_clean_hub_be.repository.EmployeeRepository;
 import com.company.company_clean_hub_be.repository.PaymentHistoryRepository;
 import com.company.company_clean_hub_be.repository.PayrollRepository;
 import com.company.company_clean_hub_be.repository.UserRepository;
+import com.company.company_clean_hub_be.service.AttendanceSummaryService;
 import com.company.company_clean_hub_be.service.PayrollService;
 import com.company.company_clean_hub_be.service.UserService;
+import com.company.company_clean_hub_be.service.helper.PayrollPeriodGuard;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -60,7 +67,40 @@ public class PayrollServiceImpl implements PayrollService {
         private final UserRepository userRepository;
         private final EmployeeRepository employeeRepository;
         private final PaymentHistoryRepository paymentHistoryRepository;
-        private final com.company.company_clean_hub_be.repository.CustomerAssignmentRepository customerAssignmentRepository;
+        private final com.company.company_clean_hub_be.service.ManagerScopeService managerScopeService;
+        private final AttendanceSummaryService attendanceSummaryService;
+        private final JdbcTemplate jdbcTemplate;
+        private final PayrollPeriodGuard payrollPeriodGuard;
+
+        @Value("${payroll.bulk.set-based:false}")
+        private boolean setBasedBulkCalculation;
+
+        @Value("${payroll.bulk.batch-size:500}")
+        private int bulkBatchSize;
+
+        private static final String INSERT_PAYROLL_SQL = "INSERT INTO payrolls (bonus_total, total_days, penalty_total, "
+                        + "allowance_total, insurance_total, final_salary, base_salary, status, paid_amount, "
+                        + "payment_date, employee_id, accountant_id, created_at, updated_at, note, payroll_month, "
+                        + "payroll_year) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+        private static final AssignmentAggregate EMPTY_AGGREGATE = new AssignmentAggregate(0, null, null, null);
+
+        /**
+         * Số liệu chấm công của một assignment dùng cho công thức tính lương.
+         * bonus/penalty/support giữ nguyên giá trị SUM (có thể null).
+         */
+        private record AssignmentAggregate(int workDays, BigDecimal bonus, BigDecimal penalty, BigDecimal support) {
+        }
+
+        /**
+         * Nguồn số liệu cho công thức tính lương: truy vấn theo từng assignment (luồng
+         * một nhân viên) hoặc tra cứu dữ liệu đã nạp sẵn cho cả tháng (luồng hàng loạt).
+         */
+        private interface PayrollCalculationSource {
+                AssignmentAggregate aggregate(Assignment assignment);
+
+                BigDecimal previousInsurance(Long employeeId, int prevMonth, int prevYear);
+        }
 
         @Override
         public List<PayrollAssignmentResponse> calculatePayroll(PayrollRequest request) {
@@ -70,7 +110,15 @@ public class PayrollServiceImpl implements PayrollService {
 
                 // If employeeId is null, calculate for all employees
                 if (request.getEmployeeId() == null) {
-                        log.info("Bulk calculation for all employees");
+                        log.info("Bulk calculation for all employees (setBased={})", setBasedBulkCalculation);
+                        // Không chạy song song với job tính lương hoặc lượt tính đồng bộ khác cùng tháng
+                        YearMonth period = YearMonth.of(request.getYear(), request.getMonth());
+                        String owner = "sync-" + UUID.randomUUID();
+                        payrollPeriodGuard.acquire(period, owner);
+                        payrollPeriodGuard.releaseAfterCompletion(period, owner);
+                        if (setBasedBulkCalculation) {
+                                return calculatePayrollForAllEmployeesSetBased(request.getMonth(), request.getYear());
+                        }
                         return calculatePayrollForAllEmployees(request.getMonth(), request.getYear());
                 }
 
@@ -84,10 +132,20 @@ public class PayrollServiceImpl implements PayrollService {
                 List<Employee> employees = employeeRepository.findDistinctEmployeesByAssignmentMonthYear(month, year);
                 log.info("[BULK-CALC] Found {} employees with assignments", employees.size());
 
-                List<PayrollAssignmentResponse> result = new ArrayList<>();
                 User accountant = userRepository.findByUsername(userService.getCurrentUsername())
                                 .orElseThrow(() -> new AppException(ErrorCode.USER_IS_NOT_EXISTS));
 
+                List<PayrollAssignmentResponse> result = calculatePayrollPerEmployee(employees, month, year, accountant);
+                log.info("[BULK-CALC] Completed. Total response rows: {}", result.size());
+                return result;
+        }
+
+        /**
+         * Tính lương lần lượt từng nhân viên (truy vấn và upsert qua JPA theo từng người).
+         */
+        private List<PayrollAssignmentResponse> calculatePayrollPerEmployee(List<Employee> employees, Integer month,
+                        Integer year, User accountant) {
+                List<PayrollAssignmentResponse> result = new ArrayList<>();
                 for (Employee employee : employees) {
                         Long employeeId = employee.getId();
                         log.info("[BULK-CALC] Processing employee id={}, name={}", employeeId, employee.getName());
@@ -125,11 +183,205 @@ public class PayrollServiceImpl implements PayrollService {
                                         payroll, employee, assignments, month, year);
                         result.addAll(employeeResponses);
                 }
+                return result;
+        }
 
-                log.info("[BULK-CALC] Completed. Total response rows: {}", result.size());
+        /**
+         * Tính lương hàng loạt theo tập dữ liệu: nạp assignment, attendance và các
+         * tổng bonus/penalty/support của cả tháng bằng vài truy vấn gom nhóm, tính
+         * lương trong bộ nhớ rồi ghi payroll bằng batch insert và gắn
+         * attendance.payroll_id bằng các câu UPDATE theo lô. Kết quả (payroll, note,
+         * response) giống hệt {@link #calculatePayrollForAllEmployees}. Nhân viên
+         * được xử lý theo từng lô {@code payroll.bulk.batch-size}.
+         */
+        private List<PayrollAssignmentResponse> calculatePayrollForAllEmployeesSetBased(Integer month, Integer year) {
+                log.info("[BULK-CALC-SET] Calculating payroll for all employees: month={}, year={}", month, year);
+
+                List<Employee> employees = employeeRepository.findDistinctEmployeesByAssignmentMonthYear(month, year);
+                log.info("[BULK-CALC-SET] Found {} employees with assignments", employees.size());
+
+                List<PayrollAssignmentResponse> result = new ArrayList<>();
+                if (employees.isEmpty()) {
+                        return result;
+                }
+
+                User accountant = userRepository.findByUsername(userService.getCurrentUsername())
+                                .orElseThrow(() -> new AppException(ErrorCode.USER_IS_NOT_EXISTS));
+
+                for (int from = 0; from < employees.size(); from += bulkBatchSize) {
+                        List<Employee> chunk = employees.subList(from, Math.min(from + bulkBatchSize, employees.size()));
+                        result.addAll(calculatePayrollChunkSetBased(chunk, month, year, accountant));
+                }
+
+                log.info("[BULK-CALC-SET] Completed. Total response rows: {}", result.size());
                 return result;
         }
 
+        @Override
+        public List<PayrollAssignmentResponse> calculatePayrollForEmployees(List<Long> employeeIds, Integer month,
+                        Integer year, Long accountantId) {
+                log.info("[BULK-CALC-CHUNK] Calculating payroll chunk: employees={}, month={}, year={}, setBased={}",
+                                employeeIds.size(), month, year, setBasedBulkCalculation);
+                User accountant = userRepository.findById(accountantId)
+                                .orElseThrow(() -> new AppException(ErrorCode.USER_IS_NOT_EXISTS));
+                List<Employee> employees = loadEmployeesInOrder(employeeIds);
+                // Cùng cờ payroll.bulk.set-based với calculatePayroll (tắt thì dùng luồng upsert từng nhân viên)
+                if (setBasedBulkCalculation) {
+                        return calculatePayrollChunkSetBased(employees, month, year, accountant);
+                }
+                return calculatePayrollPerEmployee(employees, month, year, accountant);
+        }
+
+        private List<Employee> loadEmployeesInOrder(List<Long> employeeIds) {
+                Map<Long, Employee> byId = employeeRepository.findAllById(employeeIds).stream()
+                                .collect(Collectors.toMap(Employee::getId, e -> e));
+                return employeeIds.stream()
+                                .map(byId::get)
+                                .filter(Objects::nonNull)
+                                .collect(Collectors.toList());
+        }
+
+        private List<PayrollAssignmentResponse> calculatePayrollChunkSetBased(List<Employee> employees, Integer month,
+                        Integer year, User accountant) {
+                List<PayrollAssignmentResponse> result = new ArrayList<>();
+                List<Long> chunkEmployeeIds = employees.stream().map(Employee::getId).collect(Collectors.toList());
+
+                // ===== Nạp dữ liệu tháng của lô nhân viên =====
+                Map<Long, List<Assignment>> assignmentsByEmployee = assignmentRepository
+                                .findDistinctAssignmentsWithContractByAttendanceMonthAndEmployeeIds(month, year,
+                                                chunkEmployeeIds)
+                                .stream()
+                                .collect(Collectors.groupingBy(a -> a.getEmployee().getId(), LinkedHashMap::new,
+                                                Collectors.toList()));
+
+                // Số liệu chấm công đọc từ bảng tổng hợp theo tháng
+                List<Long> chunkAssignmentIds = assignmentsByEmployee.values().stream()
+                                .flatMap(List::stream)
+                                .map(Assignment::getId)
+                                .toList();
+                Map<Long, AssignmentAggregate> aggregates = new HashMap<>();
+                attendanceSummaryService.getTotals(chunkAssignmentIds)
+                                .forEach((assignmentId, totals) -> aggregates.put(assignmentId, toAggregate(totals)));
+
+                Set<Long> employeesWithAttendance = new HashSet<>(
+                                attendanceRepository.findEmployeeIdsWithAttendanceByMonthYear(month, year,
+                                                chunkEmployeeIds));
+
+                Set<Long> employeesWithPayroll = new HashSet<>();
+                for (Object[] row : payrollRepository.findPayrollKeysByMonthAndYearAndEmployeeIds(month, year,
+                                chunkEmployeeIds)) {
+                        employeesWithPayroll.add((Long) row[0]);
+                }
+
+                int previousMonth = month == 1 ? 12 : month - 1;
+                int previousYear = month == 1 ? year - 1 : year;
+                Map<Long, BigDecimal> previousInsuranceByEmployee = new HashMap<>();
+                for (Object[] row : payrollRepository.findPayrollKeysByMonthAndYearAndEmployeeIds(previousMonth,
+                                previousYear, chunkEmployeeIds)) {
+                        previousInsuranceByEmployee.putIfAbsent((Long) row[0], (BigDecimal) row[2]);
+                }
+
+                log.info("[BULK-CALC-SET] Loaded month data: employeesWithAssignments={}, aggregates={}, existingPayrolls={}",
+                                assignmentsByEmployee.size(), aggregates.size(), employeesWithPayroll.size());
+
+                PayrollCalculationSource source = new PayrollCalculationSource() {
+                        @Override
+                        public AssignmentAggregate aggregate(Assignment assignment) {
+                                return aggregates.getOrDefault(assignment.getId(), EMPTY_AGGREGATE);
+                        }
+
+                        @Override
+                        public BigDecimal previousInsurance(Long employeeId, int prevMonth, int prevYear) {
+                                return previousInsuranceByEmployee.get(employeeId);
+                        }
+                };
+
+                // ===== Tính lương trong bộ nhớ =====
+                Map<Long, Payroll> pendingPayrolls = new LinkedHashMap<>();
+                for (Employee employee : employees) {
+                        Long employeeId = employee.getId();
+
+                        List<Assignment> assignments = assignmentsByEmployee.get(employeeId);
+                        if (assignments == null || assignments.isEmpty()) {
+                                log.info("[BULK-CALC-SET] Employee {} has no assignments, skip", employeeId);
+                                continue;
+                        }
+
+                        synchronizeCompanyAssignmentMonthlySupport(employee, assignments);
+
+                        if (employeesWithPayroll.contains(employeeId)) {
+                                log.info("[BULK-CALC-SET] Payroll already exists for employee {}, skip creation",
+                                                employeeId);
+                                continue;
+                        }
+
+                        if (!employeesWithAttendance.contains(employeeId)) {
+                                log.info("[BULK-CALC-SET] Employee {} skipped (no attendance)", employeeId);
+                                continue;
+                        }
+
+                        Payroll payroll = new Payroll();
+                        applyPayrollCalculation(payroll, false, employee, assignments, month, year, accountant,
+                                        new LinkedHashMap<>(), source);
+                        pendingPayrolls.put(employeeId, payroll);
+                }
+
+                if (pendingPayrolls.isEmpty()) {
+                        log.info("[BULK-CALC-SET] No new payroll to persist in this chunk");
+                        return result;
+                }
+
+                // ===== Ghi xuống DB theo lô =====
+                List<Long> employeeIds = new ArrayList<>(pendingPayrolls.keySet());
+                jdbcTemplate.batchUpdate(INSERT_PAYROLL_SQL, new ArrayList<>(pendingPayrolls.values()), bulkBatchSize,
+                                (ps, payroll) -> {
+                                        ps.setBigDecimal(1, payroll.getBonusTotal());
+                                        ps.setObject(2, payroll.getTotalDays());
+                                        ps.setBigDecimal(3, payroll.getPenaltyTotal());
+                                        ps.setBigDecimal(4, payroll.getAllowanceTotal());
+                                        ps.setBigDecimal(5, payroll.getInsuranceTotal());
+                                        ps.setBigDecimal(6, payroll.getFinalSalary());
+                                        ps.setBigDecimal(7, payroll.getBaseSalary());
+                                        ps.setString(8, payroll.getStatus() != null ? payroll.getStatus().name() : null);
+                                        ps.setBigDecimal(9, payroll.getPaidAmount());
+                                        ps.setTimestamp(10, payroll.getPaymentDate() != null
+                                                        ? Timestamp.valueOf(payroll.getPaymentDate())
+                                                        : null);
+                                        ps.setLong(11, payroll.getEmployee().getId());
+                                        ps.setLong(12, payroll.getAccountant().getId());
+                                        ps.setTimestamp(13, Timestamp.valueOf(payroll.getCreatedAt()));
+                                        ps.setTimestamp(14, Timestamp.valueOf(payroll.getUpdatedAt()));
+                                        ps.setString(15, payroll.getNote());
+                                        ps.setInt(16, payroll.getCreatedAt().getMonthValue());
+                                        ps.setInt(17, payroll.getCreatedAt().getYear());
+                                });
+
+                for (Object[] row : payrollRepository.findPayrollKeysByMonthAndYearAndEmployeeIds(month, year,
+                                employeeIds)) {
+                        Payroll payroll = pendingPayrolls.get((Long) row[0]);
+                        if (payroll != null) {
+                                payroll.setId((Long) row[1]);
+                        }
+                }
+
+                int linkedAttendances = attendanceRepository.linkPayrollsByMonthYearAndEmployeeIds(month, year,
+                                employeeIds);
+                log.info("[BULK-CALC-SET] Persisted {} payrolls, linked {} attendances", pendingPayrolls.size(),
+                                linkedAttendances);
+
+                for (Map.Entry<Long, Payroll> entry : pendingPayrolls.entrySet()) {
+                        Payroll payroll = entry.getValue();
+                        result.addAll(convertPayrollToAssignmentResponses(payroll, payroll.getEmployee(),
+                                        assignmentsByEmployee.get(entry.getKey()), month, year, source));
+                }
+                return result;
+        }
+
+        private static boolean isPayrollPeriodConflict(DataIntegrityViolationException ex) {
+                String message = ex.getMostSpecificCause().getMessage();
+                return message != null && message.contains("uk_payrolls_employee_period");
+        }
+
         private List<PayrollAssignmentResponse> calculatePayrollForSingleEmployee(PayrollRequest request) {
                 log.info("[SINGLE-CALC] Calculating payroll for employee: {}", request.getEmployeeId());
                 log.debug("[SINGLE-CALC][REQUEST] month={}, year={}, advanceSalary={}, insuranceAmount={}",
@@ -200,16 +452,16 @@ public class PayrollServiceImpl implements PayrollService {
                         log.debug("[SINGLE-CALC][ASSIGNMENT-START] assignmentId={}, scope={}",
                                         assignment.getId(), assignment.getScope());
 
-                        int realDays = calculateActualWorkDays(assignment);
+                        AttendanceSummaryService.AssignmentTotals totals = attendanceSummaryService
+                                        .getTotals(assignment.getId());
+                        int realDays = totals.workDays();
                         totalDays += realDays;
                         log.debug("[SINGLE-CALC][DAYS] assignmentId={}, realDays={}, totalDays={}",
                                         assignment.getId(), realDays, totalDays);
 
-                        BigDecimal bonus = defaultZero(attendanceRepository.sumBonusByAssignment(assignment.getId()));
-                        BigDecimal penalty = defaultZero(
-                                        attendanceRepository.sumPenaltyByAssignment(assignment.getId()));
-                        BigDecimal support = defaultZero(
-                                        attendanceRepository.sumSupportCostByAssignment(assignment.getId()));
+                        BigDecimal bonus = totals.bonus();
+                        BigDecimal penalty = totals.penalty();
+                        BigDecimal support = totals.supportCost();
                         BigDecimal additionalAllowance = defaultZero(assignment.getAdditionalAllowance());
                         BigDecimal monthlySupport = defaultZero(assignment.getMonthlySupport());
 
@@ -344,7 +596,16 @@ public class PayrollServiceImpl implements PayrollService {
                                 .updatedAt(LocalDateTime.now())
                                 .build();
 
-                Payroll savedPayroll = payrollRepository.save(payroll);
+                Payroll savedPayroll;
+                try {
+                        savedPayroll = payrollRepository.save(payroll);
+                } catch (DataIntegrityViolationException ex) {
+                        // Lượt tính khác vừa tạo bảng lương cùng kỳ (uk_payrolls_employee_period)
+                        if (isPayrollPeriodConflict(ex)) {
+                                throw new AppException(ErrorCode.PAYROLL_ALREADY_EXISTS);
+                        }
+                        throw ex;
+                }
                 log.debug("[SINGLE-CALC][SAVE] payrollId={}", savedPayroll.getId());
 
                 for (Attendance att : attendances) {
@@ -363,6 +624,13 @@ public class PayrollServiceImpl implements PayrollService {
 
         private List<PayrollAssignmentResponse> convertPayrollToAssignmentResponses(
                         Payroll payroll, Employee employee, List<Assignment> assignments, Integer month, Integer year) {
+                return convertPayrollToAssignmentResponses(payroll, employee, assignments, month, year,
+                                repositorySource());
+        }
+
+        private List<PayrollAssignmentResponse> convertPayrollToAssignmentResponses(
+                        Payroll payroll, Employee employee, List<Assignment> assignments, Integer month, Integer year,
+                        PayrollCalculationSource source) {
 
                 List<PayrollAssignmentResponse> result = new ArrayList<>();
 
@@ -379,13 +647,11 @@ public class PayrollServiceImpl implements PayrollService {
                 BigDecimal totalAdvance = BigDecimal.ZERO;
 
                 for (Assignment assignment : assignments) {
-                        int assignmentDays = calculateActualWorkDays(assignment);
-                        BigDecimal assignmentBonus = defaultZero(
-                                        attendanceRepository.sumBonusByAssignment(assignment.getId()));
-                        BigDecimal assignmentPenalty = defaultZero(
-                                        attendanceRepository.sumPenaltyByAssignment(assignment.getId()));
-                        BigDecimal assignmentSupport = defaultZero(
-                                        attendanceRepository.sumSupportCostByAssignment(assignment.getId()));
+                        AssignmentAggregate aggregate = source.aggregate(assignment);
+                        int assignmentDays = aggregate.workDays();
+                        BigDecimal assignmentBonus = defaultZero(aggregate.bonus());
+                        BigDecimal assignmentPenalty = defaultZero(aggregate.penalty());
+                        BigDecimal assignmentSupport = defaultZero(aggregate.support());
                         BigDecimal additionalAllowance = defaultZero(assignment.getAdditionalAllowance());
                         BigDecimal monthlySupport = defaultZero(assignment.getMonthlySupport());
 
@@ -407,7 +673,7 @@ public class PayrollServiceImpl implements PayrollService {
                         // Tách support và additionalAllowance: support cộng trực tiếp,
                         // additionalAllowance chia đều
                         BigDecimal assignmentSalary = calculateAssignmentAmount(assignment, assignmentBonus,
-                                        additionalAllowance, assignmentSupport);
+                                        additionalAllowance, assignmentSupport, assignmentDays);
 
                         PayrollAssignmentResponse dto = PayrollAssignmentResponse.builder()
                                         .payrollId(payroll.getId())
@@ -531,173 +797,207 @@ public class PayrollServiceImpl implements PayrollService {
                 log.info("[PAYROLL-EXPORT] Found {} employees with assignments", employees.size());
 
                 List<PayRollAssignmentExportExcel> result = new ArrayList<>();
+                if (employees.isEmpty()) {
+                        log.info("[PAYROLL-EXPORT] COMPLETED. Total rows: 0");
+                        return result;
+                }
+                User accountant = userRepository.findByUsername(userService.getCurrentUsername())
+                                .orElseThrow(() -> new AppException(ErrorCode.USER_IS_NOT_EXISTS));
 
                 for (Employee employee : employees) {
-                        String employeeId = employee.getEmployeeCode();
-                        log.info("[PAYROLL-EXPORT] Processing employee id={}, name={}", employeeId, employee.getName());
+                        PayRollAssignmentExportExcel summaryRow = buildPayrollExportRow(employee, month, year, accountant);
+                        if (summaryRow != null) {
+                                result.add(summaryRow);
+                        }
+                }
 
-                        List<Assignment> assignments = assignmentRepository
-                                        .findDistinctAssignmentsByAttendanceMonthAndEmployee(month, year,
-                                                        employee.getId());
+                log.info("[PAYROLL-EXPORT] COMPLETED. Total rows: {}", result.size());
+                return result;
+        }
 
-                        if (assignments == null || assignments.isEmpty()) {
-                                log.info("[PAYROLL-EXPORT] Employee {} has NO assignments. Skip.", employeeId);
-                                continue;
-                        }
-                        User accountant = userRepository.findByUsername(userService.getCurrentUsername())
-                                        .orElseThrow(() -> new AppException(ErrorCode.USER_IS_NOT_EXISTS));
-                        Map<String, String> note = new LinkedHashMap<>();
-                        Payroll persistedPayroll = upsertPayrollFromAssignments(employee, assignments, month, year,
-                                        accountant,
-                                        note);
-                        // List<Map.Entry<String, String>> entries =
-                        // new ArrayList<>(note.entrySet());
-                        //
-                        // for (int i = entries.size() - 1; i >= 0; i--) {
-                        // Map.Entry<String, String> entry = entries.get(i);
-                        // log.info("note key={}, value={}", entry.getKey(), entry.getValue());
-                        // }
-                        if (persistedPayroll == null) {
-                                log.info("[PAYROLL-EXPORT] Employee {} skipped because no attendance was found.",
-                                                employeeId);
-                                continue;
+        @Override
+        public List<PayRollAssignmentExportExcel> getPayRollByAssignmentForEmployees(List<Long> employeeIds,
+                        Integer month, Integer year, Long accountantId) {
+                log.info("[PAYROLL-EXPORT-CHUNK] Building export rows: employees={}, month={}, year={}",
+                                employeeIds.size(), month, year);
+                User accountant = userRepository.findById(accountantId)
+                                .orElseThrow(() -> new AppException(ErrorCode.USER_IS_NOT_EXISTS));
+
+                List<PayRollAssignmentExportExcel> result = new ArrayList<>();
+                for (Employee employee : loadEmployeesInOrder(employeeIds)) {
+                        PayRollAssignmentExportExcel summaryRow = buildPayrollExportRow(employee, month, year, accountant);
+                        if (summaryRow != null) {
+                                result.add(summaryRow);
                         }
+                }
+                return result;
+        }
 
-                        // Collect project names
-                        List<String> projectNames = assignments.stream()
-                                        .map(assignment -> {
-                                                if (assignment.getContract() != null
-                                                                && assignment.getContract().getCustomer() != null) {
-                                                        return assignment.getContract().getCustomer().getCompany();
-                                                }
-                                                return "Văn phòng";
-                                        })
-                                        .distinct()
-                                        .collect(Collectors.toList());
+        /**
+         * Tính lại (upsert) payroll của một nhân viên và dựng dòng tổng hợp cho file
+         * Excel. Trả về null nếu nhân viên không có assignment hoặc chấm công.
+         */
+        private PayRollAssignmentExportExcel buildPayrollExportRow(Employee employee, Integer month, Integer year,
+                        User accountant) {
+                String employeeId = employee.getEmployeeCode();
+                log.info("[PAYROLL-EXPORT] Processing employee id={}, name={}", employeeId, employee.getName());
 
-                        // Calculate total days
-                        int totalDays = 0;
-                        int totalPlannedDays = 0;
-                        for (Assignment assignment : assignments) {
-                                totalDays += calculateActualWorkDays(assignment);
-                                totalPlannedDays += assignment.getPlannedDays() != null ? assignment.getPlannedDays()
-                                                : 0;
-                        }
+                List<Assignment> assignments = assignmentRepository
+                                .findDistinctAssignmentsByAttendanceMonthAndEmployee(month, year,
+                                                employee.getId());
 
-                        // Compute actual (pro-rated) allowance for Excel export
-                        // FIXED_BY_CONTRACT/FIXED_BY_COMPANY: allowance / plannedDays * actualDays
-                        // FIXED_BY_DAY/TEMPORARY: allowance added directly (not pro-rated)
-                        BigDecimal actualAllowanceTotal = BigDecimal.ZERO;
-                        for (Assignment assignment : assignments) {
-                                BigDecimal additionalAllowance = assignment.getAdditionalAllowance() != null
-                                                ? assignment.getAdditionalAllowance()
-                                                : BigDecimal.ZERO;
+                if (assignments == null || assignments.isEmpty()) {
+                        log.info("[PAYROLL-EXPORT] Employee {} has NO assignments. Skip.", employeeId);
+                        return null;
+                }
+                Map<String, String> note = new LinkedHashMap<>();
+                Payroll persistedPayroll = upsertPayrollFromAssignments(employee, assignments, month, year,
+                                accountant,
+                                note);
+                // List<Map.Entry<String, String>> entries =
+                // new ArrayList<>(note.entrySet());
+                //
+                // for (int i = entries.size() - 1; i >= 0; i--) {
+                // Map.Entry<String, String> entry = entries.get(i);
+                // log.info("note key={}, value={}", entry.getKey(), entry.getValue());
+                // }
+                if (persistedPayroll == null) {
+                        log.info("[PAYROLL-EXPORT] Employee {} skipped because no attendance was found.",
+                                        employeeId);
+                        return null;
+                }
 
-                                AssignmentType type = assignment.getAssignmentType();
-                                if ((type == AssignmentType.FIXED_BY_CONTRACT
-                                                || type == AssignmentType.FIXED_BY_COMPANY)
-                                                && assignment.getPlannedDays() != null
-                                                && assignment.getPlannedDays() > 0
-                                                && assignment.getWorkDays() != null) {
-                                        int actualDays = calculateActualWorkDays(assignment);
-                                        BigDecimal proRated = additionalAllowance
-                                                        .divide(BigDecimal.valueOf(assignment.getPlannedDays()), 2,
-                                                                        RoundingMode.HALF_UP)
-                                                        .multiply(BigDecimal.valueOf(actualDays));
-                                        actualAllowanceTotal = actualAllowanceTotal.add(proRated);
-                                        log.debug("[PAYROLL-EXPORT][ALLOWANCE] FIXED assignmentId={}: raw={}, proRated={}/{}*{}={}",
-                                                        assignment.getId(), additionalAllowance,
-                                                        additionalAllowance, assignment.getPlannedDays(),
-                                                        actualDays, proRated);
-                                } else {
-                                        actualAllowanceTotal = actualAllowanceTotal.add(additionalAllowance);
-                                        log.debug("[PAYROLL-EXPORT][ALLOWANCE] NON-FIXED assignmentId={}: raw={}, added directly",
-                                                        assignment.getId(), additionalAllowance);
-                                }
-                        }
-                        // Handle COMPANY scope employee-level allowance (not pro-rated, fixed monthly)
-                        boolean hasCompanyScopeForExport = assignments.stream()
-                                        .anyMatch(a -> a.getScope() != null
-                                                        && a.getScope() == AssignmentScope.COMPANY);
-                        if (hasCompanyScopeForExport) {
-                                java.util.Optional<Assignment> companyAssignment = assignments.stream()
-                                                .filter(a -> a.getScope() != null
-                                                                && a.getScope() == AssignmentScope.COMPANY)
-                                                .findFirst();
-                                if (companyAssignment.isEmpty() && employee.getAllowance() != null) {
-                                        actualAllowanceTotal = actualAllowanceTotal.add(employee.getAllowance());
-                                        log.debug("[PAYROLL-EXPORT][ALLOWANCE] Added employee-level allowance for COMPANY scope: {}",
-                                                        employee.getAllowance());
-                                }
-                        }
-                        log.info("[PAYROLL-EXPORT][ALLOWANCE] Employee {}: rawAllowance={}, actualAllowance={}",
-                                        employeeId, persistedPayroll.getAllowanceTotal(), actualAllowanceTotal);
+                // Collect project names
+                List<String> projectNames = assignments.stream()
+                                .map(assignment -> {
+                                        if (assignment.getContract() != null
+                                                        && assignment.getContract().getCustomer() != null) {
+                                                return assignment.getContract().getCustomer().getCompany();
+                                        }
+                                        return "Văn phòng";
+                                })
+                                .distinct()
+                                .collect(Collectors.toList());
 
-                        // Calculate total monthly salary (without adding advance)
-                        BigDecimal salaryBeforeAdvance = persistedPayroll.getFinalSalary();
+                // Calculate total days
+                int totalDays = 0;
+                int totalPlannedDays = 0;
+                for (Assignment assignment : assignments) {
+                        totalDays += calculateActualWorkDays(assignment);
+                        totalPlannedDays += assignment.getPlannedDays() != null ? assignment.getPlannedDays()
+                                        : 0;
+                }
 
-                        // Calculate remaining amount (final salary - paid amount)
-                        BigDecimal paidAmount = persistedPayroll.getPaidAmount() != null
-                                        ? persistedPayroll.getPaidAmount()
+                // Compute actual (pro-rated) allowance for Excel export
+                // FIXED_BY_CONTRACT/FIXED_BY_COMPANY: allowance / plannedDays * actualDays
+                // FIXED_BY_DAY/TEMPORARY: allowance added directly (not pro-rated)
+                BigDecimal actualAllowanceTotal = BigDecimal.ZERO;
+                for (Assignment assignment : assignments) {
+                        BigDecimal additionalAllowance = assignment.getAdditionalAllowance() != null
+                                        ? assignment.getAdditionalAllowance()
                                         : BigDecimal.ZERO;
-                        BigDecimal remainingAmount = persistedPayroll.getFinalSalary().subtract(paidAmount);
 
-                        List<Map.Entry<String, String>> entries = new ArrayList<>(note.entrySet());
-                        StringBuilder sb = new StringBuilder();
-                        for (int i = entries.size() - 1; i >= 0; i--) {
-                                Map.Entry<String, String> e = entries.get(i);
-                                String key = e.getKey();
-                                String val = e.getValue() != null ? e.getValue() : "";
-                                sb.append(key).append(": ").append(val);
-                                if (i > 0) {
-                                        sb.append('\n');
-                                }
+                        AssignmentType type = assignment.getAssignmentType();
+                        if ((type == AssignmentType.FIXED_BY_CONTRACT
+                                        || type == AssignmentType.FIXED_BY_COMPANY)
+                                        && assignment.getPlannedDays() != null
+                                        && assignment.getPlannedDays() > 0
+                                        && assignment.getWorkDays() != null) {
+                                int actualDays = calculateActualWorkDays(assignment);
+                                BigDecimal proRated = additionalAllowance
+                                                .divide(BigDecimal.valueOf(assignment.getPlannedDays()), 2,
+                                                                RoundingMode.HALF_UP)
+                                                .multiply(BigDecimal.valueOf(actualDays));
+                                actualAllowanceTotal = actualAllowanceTotal.add(proRated);
+                                log.debug("[PAYROLL-EXPORT][ALLOWANCE] FIXED assignmentId={}: raw={}, proRated={}/{}*{}={}",
+                                                assignment.getId(), additionalAllowance,
+                                                additionalAllowance, assignment.getPlannedDays(),
+                                                actualDays, proRated);
+                        } else {
+                                actualAllowanceTotal = actualAllowanceTotal.add(additionalAllowance);
+                                log.debug("[PAYROLL-EXPORT][ALLOWANCE] NON-FIXED assignmentId={}: raw={}, added directly",
+                                                assignment.getId(), additionalAllowance);
+                        }
+                }
+                // Handle COMPANY scope employee-level allowance (not pro-rated, fixed monthly)
+                boolean hasCompanyScopeForExport = assignments.stream()
+                                .anyMatch(a -> a.getScope() != null
+                                                && a.getScope() == AssignmentScope.COMPANY);
+                if (hasCompanyScopeForExport) {
+                        java.util.Optional<Assignment> companyAssignment = assignments.stream()
+                                        .filter(a -> a.getScope() != null
+                                                        && a.getScope() == AssignmentScope.COMPANY)
+                                        .findFirst();
+                        if (companyAssignment.isEmpty() && employee.getAllowance() != null) {
+                                actualAllowanceTotal = actualAllowanceTotal.add(employee.getAllowance());
+                                log.debug("[PAYROLL-EXPORT][ALLOWANCE] Added employee-level allowance for COMPANY scope: {}",
+                                                employee.getAllowance());
                         }
-                        String noteStr = sb.toString();
+                }
+                log.info("[PAYROLL-EXPORT][ALLOWANCE] Employee {}: rawAllowance={}, actualAllowance={}",
+                                employeeId, persistedPayroll.getAllowanceTotal(), actualAllowanceTotal);
 
-                        // Create single summary row for employee
-                        PayRollAssignmentExportExcel summaryRow = PayRollAssignmentExportExcel.builder()
-                                        .employeeId(employeeId)
-                                        .employeeName(employee.getName())
-                                        .bankName(employee.getBankName())
-                                        .bankAccount(employee.getBankAccount())
-                                        .phone(employee.getPhone())
-                                        .assignmentType(null) // Not used in summary
-                                        .baseSalary(persistedPayroll.getBaseSalary()) // Base salary from payroll
-                                        .projectCompany(String.join(", ", projectNames)) // Join all projects
-                                        .assignmentDays(null)
-                                        .assignmentPlanedDays(null)
-                                        .assignmentBonus(null)
-                                        .assignmentPenalty(null)
-                                        .assignmentAllowance(null)
-                                        .assignmentInsurance(null)
-                                        .assignmentAdvance(null)
-                                        .assignmentSalary(null)
-                                        .totalDays(totalDays)
-                                        .totalPlanedDays(totalPlannedDays)
-                                        .totalBonus(persistedPayroll.getBonusTotal())
-                                        .totalPenalty(persistedPayroll.getPenaltyTotal())
-                                        .totalAllowance(actualAllowanceTotal)
-                                        .totalInsurance(persistedPayroll.getInsuranceTotal())
-                                        .companyAllowance(employee.getAllowance())
-                                        .totalSalaryBeforeAdvance(salaryBeforeAdvance)
-                                        // [DEPRECATED] .totalAdvance(persistedPayroll.getAdvanceTotal())
-                                        .paidAmount(paidAmount)
-                                        .finalSalary(remainingAmount) // Use remaining amount instead of finalSalary
-                                        .note(noteStr)
-                                        .monthlySupport(computeMonthlySupportTotal(assignments))
-                                        .advanceNote(buildAdvanceNoteSummary(assignments))
-                                        .month(month)
-                                        .year(year)
-                                        .isTotalRow(true) // Mark as summary row
-                                        .build();
+                // Calculate total monthly salary (without adding advance)
+                BigDecimal salaryBeforeAdvance = persistedPayroll.getFinalSalary();
+
+                // Calculate remaining amount (final salary - paid amount)
+                BigDecimal paidAmount = persistedPayroll.getPaidAmount() != null
+                                ? persistedPayroll.getPaidAmount()
+                                : BigDecimal.ZERO;
+                BigDecimal remainingAmount = persistedPayroll.getFinalSalary().subtract(paidAmount);
 
-                        result.add(summaryRow);
-                        log.info("[PAYROLL-EXPORT] Added summary row for employee {}", employeeId);
+                List<Map.Entry<String, String>> entries = new ArrayList<>(note.entrySet());
+                StringBuilder sb = new StringBuilder();
+                for (int i = entries.size() - 1; i >= 0; i--) {
+                        Map.Entry<String, String> e = entries.get(i);
+                        String key = e.getKey();
+                        String val = e.getValue() != null ? e.getValue() : "";
+                        sb.append(key).append(": ").append(val);
+                        if (i > 0) {
+                                sb.append('\n');
+                        }
                 }
+                String noteStr = sb.toString();
 
-                log.info("[PAYROLL-EXPORT] COMPLETED. Total rows: {}", result.size());
-                return result;
+                // Create single summary row for employee
+                PayRollAssignmentExportExcel summaryRow = PayRollAssignmentExportExcel.builder()
+                                .employeeId(employeeId)
+                                .employeeName(employee.getName())
+                                .bankName(employee.getBankName())
+                                .bankAccount(employee.getBankAccount())
+                                .phone(employee.getPhone())
+                                .assignmentType(null) // Not used in summary
+                                .baseSalary(persistedPayroll.getBaseSalary()) // Base salary from payroll
+                                .projectCompany(String.join(", ", projectNames)) // Join all projects
+                                .assignmentDays(null)
+                                .assignmentPlanedDays(null)
+                                .assignmentBonus(null)
+                                .assignmentPenalty(null)
+                                .assignmentAllowance(null)
+                                .assignmentInsurance(null)
+                                .assignmentAdvance(null)
+                                .assignmentSalary(null)
+                                .totalDays(totalDays)
+                                .totalPlanedDays(totalPlannedDays)
+                                .totalBonus(persistedPayroll.getBonusTotal())
+                                .totalPenalty(persistedPayroll.getPenaltyTotal())
+                                .totalAllowance(actualAllowanceTotal)
+                                .totalInsurance(persistedPayroll.getInsuranceTotal())
+                                .companyAllowance(employee.getAllowance())
+                                .totalSalaryBeforeAdvance(salaryBeforeAdvance)
+                                // [DEPRECATED] .totalAdvance(persistedPayroll.getAdvanceTotal())
+                                .paidAmount(paidAmount)
+                                .finalSalary(remainingAmount) // Use remaining amount instead of finalSalary
+                                .note(noteStr)
+                                .monthlySupport(computeMonthlySupportTotal(assignments))
+                                .advanceNote(buildAdvanceNoteSummary(assignments))
+                                .month(month)
+                                .year(year)
+                                .isTotalRow(true) // Mark as summary row
+                                .build();
+
+                log.info("[PAYROLL-EXPORT] Added summary row for employee {}", employeeId);
+                return summaryRow;
         }
 
         @Override
@@ -855,6 +1155,52 @@ public class PayrollServiceImpl implements PayrollService {
 
                 synchronizeCompanyAssignmentMonthlySupport(employee, assignments);
 
+                Optional<Payroll> optionalPayroll = payrollRepository.findByEmployeeAndMonthAndYear(
+                                employee.getId(), month, year);
+
+                boolean isExist = optionalPayroll.isPresent();
+
+                Payroll payroll = optionalPayroll.orElseGet(Payroll::new);
+                log.debug("[PAYROLL-EXPORT][DEBUG] Loaded existing payroll? {} (id={})",
+                                payroll.getId() != null, payroll.getId());
+
+                applyPayrollCalculation(payroll, isExist, employee, assignments, month, year, accountant, note,
+                                repositorySource());
+
+                log.debug("[PAYROLL-EXPORT][DEBUG] Payroll entity before save: {}", payroll);
+
+                Payroll savedPayroll = payrollRepository.save(payroll);
+                log.info("[PAYROLL-EXPORT] Payroll saved for employeeId={} payrollId={}", employee.getId(),
+                                savedPayroll.getId());
+                log.debug("[PAYROLL-EXPORT][DEBUG] Saved payroll details: {}", savedPayroll);
+
+                // Link attendances to saved payroll
+                for (Attendance attendance : attendances) {
+                        attendance.setPayroll(savedPayroll);
+                        log.debug("[PAYROLL-EXPORT][TRACE] Linking attendance id={} to payroll id={}",
+                                        attendance != null ? attendance.getId() : null, savedPayroll.getId());
+                }
+                attendanceRepository.saveAll(attendances);
+                log.debug("[PAYROLL-EXPORT][DEBUG] Saved {} attendances with payrollId={}", attendances.size(),
+                                savedPayroll.getId());
+
+                return savedPayroll;
+        }
+
+        /**
+         * Áp dụng công thức tính lương lên payroll (mới hoặc đã tồn tại) mà không
+         * lưu xuống DB. Số liệu chấm công của từng assignment lấy từ {@code source}
+         * để luồng một nhân viên và luồng hàng loạt dùng chung một công thức.
+         */
+        private void applyPayrollCalculation(Payroll payroll,
+                        boolean isExist,
+                        Employee employee,
+                        List<Assignment> assignments,
+                        Integer month,
+                        Integer year,
+                        User accountant,
+                        Map<String, String> note,
+                        PayrollCalculationSource source) {
                 BigDecimal amountTotal = BigDecimal.ZERO;
                 BigDecimal totalBonus = BigDecimal.ZERO;
                 BigDecimal totalPenalties = BigDecimal.ZERO;
@@ -877,14 +1223,6 @@ public class PayrollServiceImpl implements PayrollService {
                                 employee.getId());
                 log.debug("[PAYROLL-EXPORT][TRACE] Assignments raw list: {}", assignments);
 
-                Optional<Payroll> optionalPayroll = payrollRepository.findByEmployeeAndMonthAndYear(
-                                employee.getId(), month, year);
-
-                boolean isExist = optionalPayroll.isPresent();
-
-                Payroll payroll = optionalPayroll.orElseGet(Payroll::new);
-                log.debug("[PAYROLL-EXPORT][DEBUG] Loaded existing payroll? {} (id={})",
-                                payroll.getId() != null, payroll.getId());
                 String finalRow = "( ";
                 BigDecimal baseSalaryTotal = BigDecimal.ZERO;
 
@@ -894,14 +1232,15 @@ public class PayrollServiceImpl implements PayrollService {
                                         "[PAYROLL-EXPORT][DEBUG] Processing assignment id={} for employeeId={}",
                                         assignment != null ? assignment.getId() : null, employee.getId());
 
-                        int assignmentRealDays = calculateActualWorkDays(assignment);
+                        AssignmentAggregate aggregate = source.aggregate(assignment);
+                        int assignmentRealDays = aggregate.workDays();
                         totalDays += assignmentRealDays;
                         log.debug("[PAYROLL-EXPORT][DEBUG] assignmentRealDays={}, cumulative totalDays={}",
                                         assignmentRealDays,
                                         totalDays);
-                        BigDecimal bonus = attendanceRepository.sumBonusByAssignment(assignment.getId());
-                        BigDecimal penalty = attendanceRepository.sumPenaltyByAssignment(assignment.getId());
-                        BigDecimal support = attendanceRepository.sumSupportCostByAssignment(assignment.getId());
+                        BigDecimal bonus = aggregate.bonus();
+                        BigDecimal penalty = aggregate.penalty();
+                        BigDecimal support = aggregate.support();
                         BigDecimal additionalAllowance = assignment.getAdditionalAllowance() != null
                                         ? assignment.getAdditionalAllowance()
                                         : BigDecimal.ZERO;
@@ -924,7 +1263,8 @@ public class PayrollServiceImpl implements PayrollService {
                         totalSupportCosts = totalSupportCosts.add(additionalAllowance);
 
                         // Calculate base salary (without bonuses/allowances)
-                        BigDecimal assignmentBaseSalary = calculateBaseSalaryForAssignment(assignment);
+                        BigDecimal assignmentBaseSalary = calculateBaseSalaryForAssignment(assignment,
+                                        assignmentRealDays);
                         baseSalaryTotal = baseSalaryTotal.add(assignmentBaseSalary);
 
                         log.debug(
@@ -935,7 +1275,8 @@ public class PayrollServiceImpl implements PayrollService {
                         BigDecimal calculatedAssignmentAmount = calculateAssignmentAmount(assignment, safeBonus,
                                         additionalAllowance,
                                         safeSupport,
-                                        note);
+                                        note,
+                                        assignmentRealDays);
                         log.debug("[PAYROLL-EXPORT][DEBUG] calculateAssignmentAmount returned {} for assignmentId={}",
                                         calculatedAssignmentAmount, assignment.getId());
                         amountTotal = amountTotal.add(calculatedAssignmentAmount);
@@ -1011,12 +1352,10 @@ public class PayrollServiceImpl implements PayrollService {
                                 // Payroll mới (CONTRACT_STAFF): fallback về tháng trước, nếu không có thì 0
                                 int prevMonth = month == 1 ? 12 : month - 1;
                                 int prevYear = month == 1 ? year - 1 : year;
-                                Optional<Payroll> prevPayroll = payrollRepository.findByEmployeeAndMonthAndYear(
-                                                employee.getId(), prevMonth, prevYear);
-                                if (prevPayroll.isPresent() && prevPayroll.get().getInsuranceTotal() != null
-                                                && prevPayroll.get().getInsuranceTotal()
-                                                                .compareTo(BigDecimal.ZERO) > 0) {
-                                        insuranceTotal = prevPayroll.get().getInsuranceTotal();
+                                BigDecimal prevInsurance = source.previousInsurance(employee.getId(), prevMonth,
+                                                prevYear);
+                                if (prevInsurance != null && prevInsurance.compareTo(BigDecimal.ZERO) > 0) {
+                                        insuranceTotal = prevInsurance;
                                         log.debug("[PAYROLL-EXPORT][DEBUG] CONTRACT_STAFF new payroll: using prev month ({}/{}) insuranceTotal = {}",
                                                         prevMonth, prevYear, insuranceTotal);
                                 } else {
@@ -1107,46 +1446,46 @@ public class PayrollServiceImpl implements PayrollService {
                         }
                 }
 
-                log.debug("[PAYROLL-EXPORT][DEBUG] Payroll entity before save: {}", payroll);
+        }
 
-                Payroll savedPayroll = payrollRepository.save(payroll);
-                log.info("[PAYROLL-EXPORT] Payroll saved for employeeId={} payrollId={}", employee.getId(),
-                                savedPayroll.getId());
-                log.debug("[PAYROLL-EXPORT][DEBUG] Saved payroll details: {}", savedPayroll);
+        /**
+         * Nguồn số liệu truy vấn trực tiếp từng assignment (hành vi cũ).
+         */
+        private PayrollCalculationSource repositorySource() {
+                return new PayrollCalculationSource() {
+                        @Override
+                        public AssignmentAggregate aggregate(Assignment assignment) {
+                                return toAggregate(attendanceSummaryService.getTotals(assignment.getId()));
+                        }
 
-                // Link attendances to saved payroll
-                for (Attendance attendance : attendances) {
-                        attendance.setPayroll(savedPayroll);
-                        log.debug("[PAYROLL-EXPORT][TRACE] Linking attendance id={} to payroll id={}",
-                                        attendance != null ? attendance.getId() : null, savedPayroll.getId());
-                }
-                attendanceRepository.saveAll(attendances);
-                log.debug("[PAYROLL-EXPORT][DEBUG] Saved {} attendances with payrollId={}", attendances.size(),
-                                savedPayroll.getId());
+                        @Override
+                        public BigDecimal previousInsurance(Long employeeId, int prevMonth, int prevYear) {
+                                return payrollRepository.findByEmployeeAndMonthAndYear(employeeId, prevMonth, prevYear)
+                                                .map(Payroll::getInsuranceTotal)
+                                                .orElse(null);
+                        }
+                };
+        }
 
-                return savedPayroll;
+        private AssignmentAggregate toAggregate(AttendanceSummaryService.AssignmentTotals totals) {
+                return new AssignmentAggregate(totals.workDays(), totals.bonus(), totals.penalty(),
+                                totals.supportCost());
         }
 
         private int calculateActualWorkDays(Assignment assignment) {
-                LocalDate today = LocalDate.now();
-                log.debug("[PAYROLL-EXPORT][DEBUG] calculateActualWorkDays for assignmentId={} today={}",
-                                assignment != null ? assignment.getId() : null, today);
-
-                List<Attendance> attendances = assignment.getAttendances();
-                if (attendances == null) {
-                        attendances = attendanceRepository.findByAssignmentId(assignment.getId());
-                }
-                long count = attendances.stream()
-                                .filter(a -> a.getDate() != null && !a.getDate().isAfter(today) && !a.getDeleted())
-                                .count();
-
+                int count = attendanceSummaryService.getTotals(assignment.getId()).workDays();
                 log.debug("[PAYROLL-EXPORT][DEBUG] Actual work days counted={} for assignmentId={}", count,
                                 assignment.getId());
-                return (int) count;
+                return count;
         }
 
         private BigDecimal calculateAssignmentAmount(Assignment assignment, BigDecimal bonus,
                         BigDecimal additionalAllowance, BigDecimal support) {
+                return calculateAssignmentAmount(assignment, bonus, additionalAllowance, support, (Integer) null);
+        }
+
+        private BigDecimal calculateAssignmentAmount(Assignment assignment, BigDecimal bonus,
+                        BigDecimal additionalAllowance, BigDecimal support, Integer precomputedWorkDays) {
                 log.debug(
                                 "[PAYROLL-EXPORT][DEBUG] calculateAssignmentAmount start - assignmentId={}, bonus={}, additionalAllowance={}, support={}",
                                 assignment != null ? assignment.getId() : null, bonus, additionalAllowance, support);
@@ -1160,7 +1499,8 @@ public class PayrollServiceImpl implements PayrollService {
                 AssignmentType type = assignment.getAssignmentType();
                 AssignmentScope scope = assignment.getScope() != null ? assignment.getScope()
                                 : AssignmentScope.CONTRACT;
-                int realWorksDay = calculateActualWorkDays(assignment);
+                int realWorksDay = precomputedWorkDays != null ? precomputedWorkDays
+                                : calculateActualWorkDays(assignment);
 
                 log.debug("[PAYROLL-EXPORT][DEBUG] type={}, scope={}, realWorksDay={}", type, scope, realWorksDay);
 
@@ -1237,6 +1577,16 @@ public class PayrollServiceImpl implements PayrollService {
                         BigDecimal additionalAllowance, // Phụ cấp assignment (chia đều)
                         BigDecimal support, // Phụ cấp attendance (cộng trực tiếp)
                         Map<String, String> note) {
+                return calculateAssignmentAmount(assignment, bonus, additionalAllowance, support, note, null);
+        }
+
+        private BigDecimal calculateAssignmentAmount(
+                        Assignment assignment,
+                        BigDecimal bonus,
+                        BigDecimal additionalAllowance, // Phụ cấp assignment (chia đều)
+                        BigDecimal support, // Phụ cấp attendance (cộng trực tiếp)
+                        Map<String, String> note,
+                        Integer precomputedWorkDays) { // null: đếm lại từ attendance
 
                 log.debug("[PAYROLL-EXPORT][START] calculateAssignmentAmount");
                 log.debug("[PAYROLL-EXPORT][INPUT] assignmentId={}, bonus={}, additionalAllowance={}, support={}, noteNull={}",
@@ -1270,7 +1620,8 @@ public class PayrollServiceImpl implements PayrollService {
                                 ? assignment.getScope()
                                 : AssignmentScope.CONTRACT;
 
-                int realWorksDay = calculateActualWorkDays(assignment);
+                int realWorksDay = precomputedWorkDays != null ? precomputedWorkDays
+                                : calculateActualWorkDays(assignment);
 
                 log.debug("[PAYROLL-EXPORT][BASIC] assignmentId={}, type={}, scope={}, realWorksDay={}",
                                 assignment.getId(), type, scope, realWorksDay);
@@ -1428,6 +1779,10 @@ public class PayrollServiceImpl implements PayrollService {
         }
 
         private BigDecimal calculateBaseSalaryForAssignment(Assignment assignment) {
+                return calculateBaseSalaryForAssignment(assignment, null);
+        }
+
+        private BigDecimal calculateBaseSalaryForAssignment(Assignment assignment, Integer precomputedWorkDays) {
                 if (assignment == null || assignment.getAssignmentType() == null) {
                         return BigDecimal.ZERO;
                 }
@@ -1436,7 +1791,8 @@ public class PayrollServiceImpl implements PayrollService {
                                 ? assignment.getSalaryAtTime()
                                 : BigDecimal.ZERO;
 
-                int realWorkDays = calculateActualWorkDays(assignment);
+                int realWorkDays = precomputedWorkDays != null ? precomputedWorkDays
+                                : calculateActualWorkDays(assignment);
                 AssignmentType type = assignment.getAssignmentType();
 
                 // For FIXED types: (salary / plannedDays) * actualDays
@@ -1526,13 +1882,7 @@ public class PayrollServiceImpl implements PayrollService {
                 Payroll payroll = payrollRepository.findById(id)
                                 .orElseThrow(() -> new AppException(ErrorCode.PAYROLL_NOT_FOUND));
 
-                String currentUsername = userService.getCurrentUsername();
-                User currentUser = userRepository.findByUsername(currentUsername).orElse(null);
-                List<Long> assignedCustomerIds = null;
-                if (currentUser != null && currentUser.getRole() != null
-                                && "QLT2".equalsIgnoreCase(currentUser.getRole().getCode())) {
-                        assignedCustomerIds = customerAssignmentRepository.findCustomerIdsByManagerId(currentUser.getId());
-                }
+                List<Long> assignedCustomerIds = resolveAssignedCustomerIds();
 
                 LocalDateTime createdAt = payroll.getCreatedAt();
                 Integer month = createdAt != null ? createdAt.getMonthValue() : null;
@@ -1552,13 +1902,7 @@ public class PayrollServiceImpl implements PayrollService {
         @Override
         public List<PayrollResponse> getAllPayrolls() {
                 log.info("getAllPayrolls requested");
-                String currentUsername = userService.getCurrentUsername();
-                User currentUser = userRepository.findByUsername(currentUsername).orElse(null);
-                List<Long> assignedCustomerIds = null;
-                if (currentUser != null && currentUser.getRole() != null
-                                && "QLT2".equalsIgnoreCase(currentUser.getRole().getCode())) {
-                        assignedCustomerIds = customerAssignmentRepository.findCustomerIdsByManagerId(currentUser.getId());
-                }
+                List<Long> assignedCustomerIds = resolveAssignedCustomerIds();
                 
                 List<Payroll> rawPayrolls;
                 if (assignedCustomerIds != null) {
@@ -1593,13 +1937,7 @@ public class PayrollServiceImpl implements PayrollService {
                 final Integer effectiveYear = year;
                 log.info("getPayrollSummaryList requested: month={}, year={}", effectiveMonth, effectiveYear);
 
-                String currentUsername = userService.getCurrentUsername();
-                User currentUser = userRepository.findByUsername(currentUsername).orElse(null);
-                List<Long> assignedCustomerIds = null;
-                if (currentUser != null && currentUser.getRole() != null
-                        && "QLT2".equalsIgnoreCase(currentUser.getRole().getCode())) {
-                        assignedCustomerIds = customerAssignmentRepository.findCustomerIdsByManagerId(currentUser.getId());
-                }
+                List<Long> assignedCustomerIds = resolveAssignedCustomerIds();
 
                 final List<Long> customerIdFilter = assignedCustomerIds;
                 List<Payroll> rawPayrolls;
@@ -1695,12 +2033,7 @@ public class PayrollServiceImpl implements PayrollService {
                 }
 
                 Pageable pageable = PageRequest.of(page, pageSize, sort);
-                String currentUsername = userService.getCurrentUsername();
-                User currentUser = userRepository.findByUsername(currentUsername).orElse(null);
-                List<Long> assignedCustomerIds = null;
-                if (currentUser != null && currentUser.getRole() != null && "QLT2".equalsIgnoreCase(currentUser.getRole().getCode())) {
-                        assignedCustomerIds = customerAssignmentRepository.findCustomerIdsByManagerId(currentUser.getId());
-                }
+                List<Long> assignedCustomerIds = resolveAssignedCustomerIds();
 
                 Page<Payroll> payrollPage;
                 if (assignedCustomerIds != null) {
@@ -1748,74 +2081,47 @@ public class PayrollServiceImpl implements PayrollService {
                 log.info("getPayrollOverview requested: keyword='{}', month={}, year={}, isPaid={}",
                                 keyword, month, year, isPaid);
 
-                String currentUsername = userService.getCurrentUsername();
-                User currentUser = userRepository.findByUsername(currentUsername).orElse(null);
-                List<Long> assignedCustomerIds = null;
-                if (currentUser != null && currentUser.getRole() != null && "QLT2".equalsIgnoreCase(currentUser.getRole().getCode())) {
-                        assignedCustomerIds = customerAssignmentRepository.findCustomerIdsByManagerId(currentUser.getId());
-                }
-
-                // Lấy toàn bộ payroll theo cùng filter như danh sách, không phân trang
-                Page<Payroll> payrollPage;
-                if (assignedCustomerIds != null) {
-                        if (assignedCustomerIds.isEmpty()) {
-                                return PayrollOverviewResponse.builder()
-                                                .totalPayrolls(0L)
-                                                .paidPayrolls(0L)
-                                                .unpaidPayrolls(0L)
-                                                .partialPaidPayrolls(0L)
-                                                .totalFinalSalary(BigDecimal.ZERO)
-                                                .totalPaidAmount(BigDecimal.ZERO)
-                                                .totalRemainingAmount(BigDecimal.ZERO)
-                                                .build();
+                Long managerId = managerScopeService.getScopedManagerId("QLT2");
+                if (managerId != null && !managerScopeService.hasCustomers(managerId)) {
+                        return emptyOverview();
+                }
+
+                // Đếm và cộng tiền theo status bằng một truy vấn GROUP BY, cùng filter như danh sách
+                List<Object[]> rows = managerId != null
+                                ? payrollRepository.getOverviewStatsByStatusForManager(keyword, month, year, isPaid, managerId)
+                                : payrollRepository.getOverviewStatsByStatus(keyword, month, year, isPaid);
+
+                long totalPayrolls = 0;
+                long paidPayrolls = 0;
+                long unpaidPayrolls = 0;
+                long partialPaidPayrolls = 0;
+                BigDecimal totalFinalSalary = BigDecimal.ZERO;
+                BigDecimal totalPaidAmount = BigDecimal.ZERO;
+                for (Object[] row : rows) {
+                        com.company.company_clean_hub_be.entity.PayrollStatus status = (com.company.company_clean_hub_be.entity.PayrollStatus) row[0];
+                        long count = ((Number) row[1]).longValue();
+                        totalPayrolls += count;
+                        if (status == com.company.company_clean_hub_be.entity.PayrollStatus.PAID) {
+                                paidPayrolls = count;
+                        } else if (status == com.company.company_clean_hub_be.entity.PayrollStatus.UNPAID) {
+                                unpaidPayrolls = count;
+                        } else if (status == com.company.company_clean_hub_be.entity.PayrollStatus.PARTIAL_PAID) {
+                                partialPaidPayrolls = count;
                         }
-                        payrollPage = payrollRepository.findByFiltersAndCustomerIds(keyword, month, year, isPaid, assignedCustomerIds, Pageable.unpaged());
-                } else {
-                        payrollPage = payrollRepository.findByFilters(
-                                        keyword, month, year, isPaid, Pageable.unpaged());
+                        totalFinalSalary = totalFinalSalary.add(defaultZero((BigDecimal) row[2]));
+                        totalPaidAmount = totalPaidAmount.add(defaultZero((BigDecimal) row[3]));
                 }
 
-                List<Payroll> payrolls = payrollPage.getContent();
-
-                if (payrolls == null || payrolls.isEmpty()) {
+                if (totalPayrolls == 0) {
                         log.info("getPayrollOverview: no payrolls found for given filter");
-                        return PayrollOverviewResponse.builder()
-                                        .totalPayrolls(0L)
-                                        .paidPayrolls(0L)
-                                        .unpaidPayrolls(0L)
-                                        .partialPaidPayrolls(0L)
-                                        .totalFinalSalary(BigDecimal.ZERO)
-                                        .totalPaidAmount(BigDecimal.ZERO)
-                                        .totalRemainingAmount(BigDecimal.ZERO)
-                                        .build();
+                        return emptyOverview();
                 }
 
-                long totalPayrolls = payrollPage.getTotalElements();
-                long paidPayrolls = payrolls.stream()
-                                .filter(p -> p.getStatus() == com.company.company_clean_hub_be.entity.PayrollStatus.PAID)
-                                .count();
-                long unpaidPayrolls = payrolls.stream()
-                                .filter(p -> p.getStatus() == com.company.company_clean_hub_be.entity.PayrollStatus.UNPAID)
-                                .count();
-                long partialPaidPayrolls = payrolls.stream()
-                                .filter(p -> p.getStatus() == com.company.company_clean_hub_be.entity.PayrollStatus.PARTIAL_PAID)
-                                .count();
-
-                final List<Long> finalAssignedIds = assignedCustomerIds;
-                List<PayrollResponse> mappedResponses = payrolls.stream()
-                                .map(p -> {
-                                        LocalDateTime createdAt = p.getCreatedAt();
-                                        return mapToResponse(p, createdAt.getMonthValue(), createdAt.getYear(), null, finalAssignedIds);
-                                })
-                                .collect(Collectors.toList());
-
-                BigDecimal totalFinalSalary = mappedResponses.stream()
-                                .map(r -> r.getFinalSalary() != null ? r.getFinalSalary() : BigDecimal.ZERO)
-                                .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-                BigDecimal totalPaidAmount = mappedResponses.stream()
-                                .map(r -> r.getPaidAmount() != null ? r.getPaidAmount() : BigDecimal.ZERO)
-                                .reduce(BigDecimal.ZERO, BigDecimal::add);
+                if (managerId != null) {
+                        // QLT2: lương thực nhận được tính lại theo phạm vi khách hàng được phân công
+                        // (xem mapToResponse) nên không cộng thẳng finalSalary trong DB được
+                        totalFinalSalary = sumScopedFinalSalary(keyword, month, year, isPaid, managerId);
+                }
 
                 BigDecimal totalRemainingAmount = totalFinalSalary.subtract(totalPaidAmount);
 
@@ -1830,6 +2136,83 @@ public class PayrollServiceImpl implements PayrollService {
                                 .build();
         }
 
+        /**
+         * Tổng lương thực nhận theo phạm vi khách hàng của manager, cùng công thức với mapToResponse khi có
+         * assignedCustomerIds: bonus / penalty gom trong SQL theo (payroll, assignment); lương cơ bản, phụ cấp
+         * và hỗ trợ tháng tính từ các assignment còn chấm công, nạp một lần cho cả tập thay vì từng payroll.
+         */
+        private BigDecimal sumScopedFinalSalary(String keyword, Integer month, Integer year, Boolean isPaid,
+                        Long managerId) {
+                List<Object[]> rows = payrollRepository.sumScopedAttendanceByPayrollAndAssignmentForManager(
+                                keyword, month, year, isPaid, managerId);
+
+                Map<Long, List<Object[]>> rowsByPayroll = new LinkedHashMap<>();
+                Set<Long> activeAssignmentIds = new LinkedHashSet<>();
+                for (Object[] row : rows) {
+                        rowsByPayroll.computeIfAbsent((Long) row[0], id -> new ArrayList<>()).add(row);
+                        if (((Number) row[2]).longValue() > 0) {
+                                activeAssignmentIds.add((Long) row[1]);
+                        }
+                }
+
+                Map<Long, Assignment> assignmentsById = new HashMap<>();
+                List<Long> assignmentIds = new ArrayList<>(activeAssignmentIds);
+                for (int i = 0; i < assignmentIds.size(); i += bulkBatchSize) {
+                        assignmentRepository.findAllById(assignmentIds.subList(i, Math.min(i + bulkBatchSize, assignmentIds.size())))
+                                        .forEach(a -> assignmentsById.put(a.getId(), a));
+                }
+                Map<Long, AttendanceSummaryService.AssignmentTotals> totals = attendanceSummaryService
+                                .getTotals(activeAssignmentIds);
+
+                BigDecimal totalFinalSalary = BigDecimal.ZERO;
+                for (List<Object[]> payrollRows : rowsByPayroll.values()) {
+                        BigDecimal bonusTotal = BigDecimal.ZERO;
+                        BigDecimal penaltyTotal = BigDecimal.ZERO;
+                        BigDecimal allowanceTotal = BigDecimal.ZERO;
+                        BigDecimal baseSalary = BigDecimal.ZERO;
+                        BigDecimal monthlySupportTotal = BigDecimal.ZERO;
+                        for (Object[] row : payrollRows) {
+                                bonusTotal = bonusTotal.add(toBigDecimal(row[3]));
+                                penaltyTotal = penaltyTotal.add(toBigDecimal(row[4]));
+                                Assignment assignment = ((Number) row[2]).longValue() > 0 ? assignmentsById.get((Long) row[1]) : null;
+                                if (assignment != null) {
+                                        int workDays = totals.getOrDefault(assignment.getId(),
+                                                        AttendanceSummaryService.AssignmentTotals.EMPTY).workDays();
+                                        baseSalary = baseSalary.add(calculateBaseSalaryForAssignment(assignment, workDays));
+                                        allowanceTotal = allowanceTotal.add(defaultZero(assignment.getAdditionalAllowance()));
+                                        monthlySupportTotal = monthlySupportTotal.add(defaultZero(assignment.getMonthlySupport()));
+                                }
+                        }
+                        BigDecimal finalSalary = baseSalary.add(bonusTotal).add(allowanceTotal).subtract(penaltyTotal)
+                                        .add(monthlySupportTotal);
+                        if (finalSalary.compareTo(BigDecimal.ZERO) > 0) {
+                                totalFinalSalary = totalFinalSalary.add(finalSalary);
+                        }
+                }
+                log.debug("[PAYROLL-OVERVIEW] Scoped final salary: managerId={}, payrolls={}, assignments={}",
+                                managerId, rowsByPayroll.size(), assignmentIds.size());
+                return totalFinalSalary;
+        }
+
+        private static BigDecimal toBigDecimal(Object value) {
+                if (value == null) {
+                        return BigDecimal.ZERO;
+                }
+                return value instanceof BigDecimal decimal ? decimal : new BigDecimal(value.toString());
+        }
+
+        private PayrollOverviewResponse emptyOverview() {
+                return PayrollOverviewResponse.builder()
+                                .totalPayrolls(0L)
+                                .paidPayrolls(0L)
+                                .unpaidPayrolls(0L)
+                                .partialPaidPayrolls(0L)
+                                .totalFinalSalary(BigDecimal.ZERO)
+                                .totalPaidAmount(BigDecimal.ZERO)
+                                .totalRemainingAmount(BigDecimal.ZERO)
+                                .build();
+        }
+
         @Override
         public PayrollResponse updatePaymentStatus(Long id, BigDecimal paidAmount) {
                 log.info("updatePaymentStatus requested: id={}, paidAmount={}", id, paidAmount);
@@ -2004,12 +2387,12 @@ public class PayrollServiceImpl implements PayrollService {
                         log.debug("--- Processing Assignment ID: {} | Scope: {} ---", assignment.getId(),
                                         assignment.getScope());
 
-                        int realDays = calculateActualWorkDays(assignment);
-                        BigDecimal bonus = defaultZero(attendanceRepository.sumBonusByAssignment(assignment.getId()));
-                        BigDecimal penalty = defaultZero(
-                                        attendanceRepository.sumPenaltyByAssignment(assignment.getId()));
-                        BigDecimal support = defaultZero(
-                                        attendanceRepository.sumSupportCostByAssignment(assignment.getId()));
+                        AttendanceSummaryService.AssignmentTotals totals = attendanceSummaryService
+                                        .getTotals(assignment.getId());
+                        int realDays = totals.workDays();
+                        BigDecimal bonus = totals.bonus();
+                        BigDecimal penalty = totals.penalty();
+                        BigDecimal support = totals.supportCost();
                         BigDecimal additionalAllowance = defaultZero(assignment.getAdditionalAllowance());
 
                         // Công thức cũ nhận attendance support nguyên bản.
@@ -2219,13 +2602,13 @@ public class PayrollServiceImpl implements PayrollService {
         }
 
         private PayrollResponse mapToResponse(Payroll payroll, Integer month, Integer year, Long fallbackEmployeeId) {
-                String currentUsername = userService.getCurrentUsername();
-                User currentUser = userRepository.findByUsername(currentUsername).orElse(null);
-                List<Long> assignedCustomerIds = null;
-                if (currentUser != null && currentUser.getRole() != null && "QLT2".equalsIgnoreCase(currentUser.getRole().getCode())) {
-                        assignedCustomerIds = customerAssignmentRepository.findCustomerIdsByManagerId(currentUser.getId());
-                }
-                return mapToResponse(payroll, month, year, fallbackEmployeeId, assignedCustomerIds);
+                return mapToResponse(payroll, month, year, fallbackEmployeeId, resolveAssignedCustomerIds());
+        }
+
+        // Customer được phân công nếu user hiện tại là QLT2 (lấy từ cache phạm vi), null nếu xem toàn bộ
+        private List<Long> resolveAssignedCustomerIds() {
+                Long managerId = managerScopeService.getScopedManagerId("QLT2");
+                return managerId != null ? managerScopeService.getCustomerIds(managerId) : null;
         }
 
         private PayrollResponse mapToResponse(Payroll payroll, Integer month, Integer year, Long fallbackEmployeeId, List<Long> assignedCustomerIds) {
@@ -2341,9 +2724,11 @@ public class PayrollServiceImpl implements PayrollService {
                                 // Build filtered note for QLT2/QLV scoped only to assigned customers
                                 Map<String, String> filteredNoteMap = new LinkedHashMap<>();
                                 for (Assignment assignment : assignmentsForAttendances) {
-                                        BigDecimal bonus = defaultZero(attendanceRepository.sumBonusByAssignment(assignment.getId()));
-                                        BigDecimal penalty = defaultZero(attendanceRepository.sumPenaltyByAssignment(assignment.getId()));
-                                        BigDecimal support = defaultZero(attendanceRepository.sumSupportCostByAssignment(assignment.getId()));
+                                        AttendanceSummaryService.AssignmentTotals totals = attendanceSummaryService
+                                                        .getTotals(assignment.getId());
+                                        BigDecimal bonus = totals.bonus();
+                                        BigDecimal penalty = totals.penalty();
+                                        BigDecimal support = totals.supportCost();
                                         BigDecimal additionalAllowance = defaultZero(assignment.getAdditionalAllowance());
                                         calculateAssignmentAmount(assignment, bonus, additionalAllowance, support, filteredNoteMap);
                                 }
@@ -2438,7 +2823,9 @@ public class PayrollServiceImpl implements PayrollService {
 
                 for (Assignment assignment : assignments) {
                         // Calculate work days
-                        int workDays = calculateActualWorkDays(assignment);
+                        AttendanceSummaryService.AssignmentTotals totals = attendanceSummaryService
+                                        .getTotals(assignment.getId());
+                        int workDays = totals.workDays();
 
                         // Get base salary
                         BigDecimal baseSalary = assignment.getSalaryAtTime() != null
@@ -2446,10 +2833,8 @@ public class PayrollServiceImpl implements PayrollService {
                                         : BigDecimal.ZERO;
 
                         // Calculate expected salary using same formula as payroll
-                        BigDecimal bonus = defaultZero(
-                                        attendanceRepository.sumBonusByAssignment(assignment.getId()));
-                        BigDecimal support = defaultZero(
-                                        attendanceRepository.sumSupportCostByAssignment(assignment.getId()));
+                        BigDecimal bonus = totals.bonus();
+                        BigDecimal support = totals.supportCost();
                         BigDecimal additionalAllowance = defaultZero(assignment.getAdditionalAllowance());
 
                         // Tách support và additionalAllowance:
@@ -37,7 +37,7 @@ public class RatingServiceImpl implements RatingService {
     private final AssignmentRepository assignmentRepository;
     private final com.company.company_clean_hub_be.service.UserService userService;
     private final com.company.company_clean_hub_be.repository.UserRepository userRepository;
-    private final com.company.company_clean_hub_be.repository.CustomerAssignmentRepository customerAssignmentRepository;
+    private final com.company.company_clean_hub_be.service.ManagerScopeService managerScopeService;
 
     @Override
     @Transactional
@@ -211,7 +211,7 @@ public class RatingServiceImpl implements RatingService {
         User currentUser = userRepository.findByUsername(currentUsername).orElse(null);
         List<Long> assignedCustomerIds = null;
         if (currentUser != null && currentUser.getRole() != null && "QLT2".equalsIgnoreCase(currentUser.getRole().getCode())) {
-            assignedCustomerIds = customerAssignmentRepository.findCustomerIdsByManagerId(currentUser.getId());
+            assignedCustomerIds = managerScopeService.getCustomerIds(currentUser.getId());
         }
 
         final List<Long> finalCustomerIds = assignedCustomerIds;
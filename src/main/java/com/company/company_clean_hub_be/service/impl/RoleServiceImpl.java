@@ -6,7 +6,9 @@ import com.company.company_clean_hub_be.entity.Role;
 import com.company.company_clean_hub_be.exception.AppException;
 import com.company.company_clean_hub_be.exception.ErrorCode;
 import com.company.company_clean_hub_be.repository.RoleRepository;
+import com.company.company_clean_hub_be.security.PrincipalCache;
 import com.company.company_clean_hub_be.service.RoleService;
+import com.company.company_clean_hub_be.service.helper.NotificationRecipientResolver;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -20,6 +22,8 @@ import java.util.stream.Collectors;
 @Transactional
 public class RoleServiceImpl implements RoleService {
     private final RoleRepository roleRepository;
+    private final PrincipalCache principalCache;
+    private final NotificationRecipientResolver notificationRecipientResolver;
 
     @Override
     public List<RoleResponse> getAllRoles() {
@@ -60,6 +64,9 @@ public class RoleServiceImpl implements RoleService {
         role.setUpdatedAt(LocalDateTime.now());
 
         Role updatedRole = roleRepository.save(role);
+        // Principal và danh sách người nhận thông báo đang giữ role cũ của mọi user thuộc role này
+        principalCache.evictAllAfterCommit();
+        notificationRecipientResolver.invalidate();
         return mapToResponse(updatedRole);
     }
 
@@ -68,6 +75,8 @@ public class RoleServiceImpl implements RoleService {
         Role role = roleRepository.findById(id)
                 .orElseThrow(() -> new AppException(ErrorCode.ROLE_NOT_FOUND));
         roleRepository.delete(role);
+        principalCache.evictAllAfterCommit();
+        notificationRecipientResolver.invalidate();
     }
 
     private RoleResponse mapToResponse(Role role) {
@@ -12,9 +12,10 @@ import com.company.company_clean_hub_be.exception.AppException;
 import com.company.company_clean_hub_be.exception.ErrorCode;
 import com.company.company_clean_hub_be.repository.RoleRepository;
 import com.company.company_clean_hub_be.repository.UserRepository;
-import com.company.company_clean_hub_be.repository.CustomerAssignmentRepository;
-import com.company.company_clean_hub_be.repository.AssignmentRepository;
+import com.company.company_clean_hub_be.security.PrincipalCache;
+import com.company.company_clean_hub_be.service.ManagerScopeService;
 import com.company.company_clean_hub_be.service.UserService;
+import com.company.company_clean_hub_be.service.helper.NotificationRecipientResolver;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
@@ -41,28 +42,19 @@ public class UserServiceImpl implements UserService {
     private final UserRepository userRepository;
     private final RoleRepository roleRepository;
     private final PasswordEncoder passwordEncoder;
-    private final CustomerAssignmentRepository customerAssignmentRepository;
-    private final AssignmentRepository assignmentRepository;
+    private final NotificationRecipientResolver notificationRecipientResolver;
+    private final PrincipalCache principalCache;
+    private final ManagerScopeService managerScopeService;
 
     @Override
     public List<UserResponse> getAllUsers() {
         log.info("getAllUsers requested by {}", getCurrentUsername());
-        String currentUsername = getCurrentUsername();
-        User currentUser = userRepository.findByUsername(currentUsername).orElse(null);
-        if (currentUser != null && currentUser.getRole() != null
-                && "QLT2".equalsIgnoreCase(currentUser.getRole().getCode())) {
-            List<Long> customerIds = customerAssignmentRepository.findCustomerIdsByManagerId(currentUser.getId());
-            if (customerIds.isEmpty()) {
+        Long managerId = managerScopeService.getScopedManagerId("QLT2");
+        if (managerId != null) {
+            if (!managerScopeService.hasCustomers(managerId)) {
                 return new java.util.ArrayList<>();
             }
-            List<Long> employeeIds = assignmentRepository.findEmployeeIdsByCustomerIds(customerIds);
-            List<Long> allowedUserIds = new java.util.ArrayList<>();
-            allowedUserIds.addAll(customerIds);
-            allowedUserIds.addAll(employeeIds);
-            if (allowedUserIds.isEmpty()) {
-                return new java.util.ArrayList<>();
-            }
-            return userRepository.findAllById(allowedUserIds).stream()
+            return userRepository.findVisibleToManager(managerId).stream()
                     .map(this::mapToResponse)
                     .collect(Collectors.toList());
         }
@@ -77,14 +69,11 @@ public class UserServiceImpl implements UserService {
                 getCurrentUsername(), keyword, roleId, page, pageSize);
         Pageable pageable = PageRequest.of(page, pageSize, Sort.by("createdAt").descending());
 
-        String currentUsername = getCurrentUsername();
-        User currentUser = userRepository.findByUsername(currentUsername).orElse(null);
+        Long managerId = managerScopeService.getScopedManagerId("QLT2");
 
         Page<User> userPage;
-        if (currentUser != null && currentUser.getRole() != null
-                && "QLT2".equalsIgnoreCase(currentUser.getRole().getCode())) {
-            List<Long> customerIds = customerAssignmentRepository.findCustomerIdsByManagerId(currentUser.getId());
-            if (customerIds.isEmpty()) {
+        if (managerId != null) {
+            if (!managerScopeService.hasCustomers(managerId)) {
                 return PageResponse.<UserResponse>builder()
                         .content(new java.util.ArrayList<>())
                         .page(0)
@@ -95,22 +84,7 @@ public class UserServiceImpl implements UserService {
                         .last(true)
                         .build();
             }
-            List<Long> employeeIds = assignmentRepository.findEmployeeIdsByCustomerIds(customerIds);
-            List<Long> allowedUserIds = new java.util.ArrayList<>();
-            allowedUserIds.addAll(customerIds);
-            allowedUserIds.addAll(employeeIds);
-            if (allowedUserIds.isEmpty()) {
-                return PageResponse.<UserResponse>builder()
-                        .content(new java.util.ArrayList<>())
-                        .page(0)
-                        .pageSize(pageSize)
-                        .totalElements(0)
-                        .totalPages(0)
-                        .first(true)
-                        .last(true)
-                        .build();
-            }
-            userPage = userRepository.findByFiltersAndUserIds(keyword, roleId, allowedUserIds, pageable);
+            userPage = userRepository.findByFiltersForManager(keyword, roleId, managerId, pageable);
         } else {
             userPage = userRepository.findByFilters(keyword, roleId, pageable);
         }
@@ -173,6 +147,7 @@ public class UserServiceImpl implements UserService {
                 .build();
 
         User savedUser = userRepository.save(user);
+        notificationRecipientResolver.invalidate();
         log.info("createUser completed by {}: id={}", actor, savedUser.getId());
         return mapToResponse(savedUser);
     }
@@ -197,9 +172,12 @@ public class UserServiceImpl implements UserService {
         Role role = roleRepository.findById(request.getRoleId())
                 .orElseThrow(() -> new AppException(ErrorCode.ROLE_NOT_FOUND));
 
+        String oldUsername = user.getUsername();
         user.setUsername(request.getUsername());
         if (request.getPassword() != null && !request.getPassword().isBlank()) {
             user.setPassword(passwordEncoder.encode(request.getPassword()));
+            // Đặt lại mật khẩu bởi quản trị → thu hồi các token đang dùng
+            bumpTokenVersion(user);
         }
         user.setPhone(request.getPhone());
         user.setEmail(request.getEmail());
@@ -219,6 +197,8 @@ public class UserServiceImpl implements UserService {
         }
 
         User updatedUser = userRepository.save(user);
+        notificationRecipientResolver.invalidate();
+        principalCache.evictAfterCommit(oldUsername, updatedUser.getUsername());
         log.info("updateUser completed by {}: id={}", actor, updatedUser.getId());
         return mapToResponse(updatedUser);
     }
@@ -227,10 +207,12 @@ public class UserServiceImpl implements UserService {
     public void deleteUser(Long id) {
         String actor = getCurrentUsername() != null ? getCurrentUsername() : "anonymous";
         log.info("deleteUser requested by {}: id={}", actor, id);
-        if (!userRepository.existsById(id)) {
-            throw new AppException(ErrorCode.USER_IS_NOT_EXISTS);
-        }
-        userRepository.deleteById(id);
+        User user = userRepository.findById(id)
+                .orElseThrow(() -> new AppException(ErrorCode.USER_IS_NOT_EXISTS));
+        userRepository.delete(user);
+        notificationRecipientResolver.invalidate();
+        principalCache.evictAfterCommit(user.getUsername());
+        managerScopeService.invalidateAll();
         log.info("deleteUser completed by {}: id={}", actor, id);
     }
 
@@ -313,6 +295,8 @@ public class UserServiceImpl implements UserService {
         user.setPassword(passwordEncoder.encode(request.getNewPassword()));
         user.setUpdatedAt(LocalDateTime.now());
         userRepository.save(user);
+        // Tự đổi mật khẩu: giữ phiên hiện tại, chỉ làm mới principal trong cache
+        principalCache.evictAfterCommit(username);
         log.info("changePasswordForCurrentUser completed for user={}", username);
     }
 
@@ -328,7 +312,13 @@ public class UserServiceImpl implements UserService {
 
         user.setPassword(passwordEncoder.encode(request.getNewPassword()));
         user.setUpdatedAt(LocalDateTime.now());
+        bumpTokenVersion(user);
         userRepository.save(user);
+        principalCache.evictAfterCommit(user.getUsername());
         log.info("changePasswordForUser completed: id={}", id);
     }
+
+    private void bumpTokenVersion(User user) {
+        user.setTokenVersion((user.getTokenVersion() != null ? user.getTokenVersion() : 0) + 1);
+    }
 }
@@ -2,13 +2,16 @@ package com.company.company_clean_hub_be.service.impl;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import com.company.company_clean_hub_be.dto.request.VerificationApprovalRequest;
 import com.company.company_clean_hub_be.dto.request.VerificationCaptureRequest;
@@ -65,6 +68,19 @@ public class VerificationServiceImpl implements VerificationService {
     private final WorkScheduleService workScheduleService;
     private final FileStorageService fileStorageService;
     private final AssignmentMetricsService assignmentMetricsService;
+    private final com.company.company_clean_hub_be.service.AttendanceSummaryService attendanceSummaryService;
+    private final TransactionTemplate transactionTemplate;
+
+    // Số work schedule VERIFIED tối thiểu để auto-approve
+    private static final int AUTO_APPROVAL_MIN_VERIFIED = 5;
+    private static final List<VerificationStatus> AUTO_APPROVAL_STATUSES =
+        List.of(VerificationStatus.PENDING, VerificationStatus.IN_PROGRESS);
+
+    @Value("${verification.auto-approval.batch-size:50}")
+    private int autoApprovalBatchSize;
+
+    // Số liệu các lần quét auto-approve (monitor), thay nguyên snapshot sau mỗi lần chạy
+    private volatile AutoApprovalStats autoApprovalStats = AutoApprovalStats.EMPTY;
 
     @Override
     @Transactional
@@ -314,45 +330,85 @@ public class VerificationServiceImpl implements VerificationService {
     }
 
     @Override
-    @Transactional
     public void processAutoApprovals() {
         log.info("Starting auto-approval process...");
+        long startedAt = System.currentTimeMillis();
 
-        // Find verifications that already entered capture flow.
+        // Số work schedule VERIFIED của mọi verification đã vào luồng chụp ảnh, trong một truy vấn gom nhóm.
         // Important: do not limit to IN_PROGRESS only, because some records
         // can remain PENDING even after captures happened.
-        List<AssignmentVerification> verifications = verificationRepository
-            .findVerificationsForAutoApproval();
+        List<Object[]> counts = verificationRepository.countVerifiedSchedulesForAutoApproval(AUTO_APPROVAL_STATUSES);
+        List<Long> eligibleIds = counts.stream()
+            .filter(row -> ((Number) row[1]).longValue() >= AUTO_APPROVAL_MIN_VERIFIED)
+            .map(row -> (Long) row[0])
+            .collect(Collectors.toList());
+        log.info("Auto-approval candidates: {}, eligible: {}", counts.size(), eligibleIds.size());
 
-        for (AssignmentVerification verification : verifications) {
+        int approved = 0;
+        int failed = 0;
+        int batchSize = Math.max(1, autoApprovalBatchSize);
+        for (int i = 0; i < eligibleIds.size(); i += batchSize) {
+            List<Long> batch = eligibleIds.subList(i, Math.min(eligibleIds.size(), i + batchSize));
             try {
-                Long verifiedCount = workScheduleRepository.countByVerificationIdAndStatus(
-                    verification.getId(), WorkScheduleStatus.VERIFIED
-                );
-
-                log.info("Verification {} has {} verified schedules", verification.getId(), verifiedCount);
+                approved += transactionTemplate.execute(status -> approveBatch(batch));
+            } catch (Exception e) {
+                // Lô lỗi đã rollback toàn bộ: xử lý lại từng verification để một bản ghi lỗi không chặn cả lô
+                log.warn("Auto-approval batch of {} failed, retrying one by one: {}", batch.size(), e.getMessage());
+                for (Long verificationId : batch) {
+                    try {
+                        approved += transactionTemplate.execute(status -> approveBatch(List.of(verificationId)));
+                    } catch (Exception ex) {
+                        failed++;
+                        log.error("Failed to auto-approve verification: {}", verificationId, ex);
+                    }
+                }
+            }
+        }
 
-                if (verifiedCount >= 5) {
-                    log.info("Auto-approving verification: id={}", verification.getId());
+        long durationMs = System.currentTimeMillis() - startedAt;
+        recordAutoApprovalRun(counts.size(), eligibleIds.size(), approved, failed, durationMs);
+        log.info("Auto-approval process completed: approved={}, failed={}, {}ms", approved, failed, durationMs);
+    }
 
-                    verification.setStatus(VerificationStatus.AUTO_APPROVED);
-                    verification.setAutoApprovedAt(LocalDateTime.now());
-                    verificationRepository.save(verification);
+    @Override
+    public AutoApprovalStats getAutoApprovalStats() {
+        return autoApprovalStats;
+    }
 
-                    // Handle work schedules
-                    handleVerificationApproval(verification);
+    /**
+     * Một lô trong một transaction: chuyển trạng thái bằng một câu UPDATE rồi xử lý work schedule
+     * của từng verification vừa được duyệt.
+     *
+     * @return Số verification được auto-approve
+     */
+    private int approveBatch(List<Long> verificationIds) {
+        LocalDateTime approvedAt = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+        int updated = verificationRepository.markAutoApproved(verificationIds, AUTO_APPROVAL_STATUSES, approvedAt);
+        if (updated == 0) {
+            return 0;
+        }
 
-                    log.info("Successfully auto-approved verification: {}", verification.getId());
-                } else {
-                    log.info("Verification {} not eligible yet (verified schedules: {})",
-                        verification.getId(), verifiedCount);
-                }
-            } catch (Exception e) {
-                log.error("Failed to auto-approve verification: {}", verification.getId(), e);
-            }
+        List<AssignmentVerification> approved = verificationRepository.findAutoApprovedInBatch(verificationIds, approvedAt);
+        for (AssignmentVerification verification : approved) {
+            // Handle work schedules
+            handleVerificationApproval(verification);
+            log.info("Successfully auto-approved verification: {}", verification.getId());
         }
+        return approved.size();
+    }
 
-        log.info("Auto-approval process completed");
+    private synchronized void recordAutoApprovalRun(int candidates, int eligible, int approved, int failed,
+                                                    long durationMs) {
+        AutoApprovalStats previous = autoApprovalStats;
+        autoApprovalStats = new AutoApprovalStats(
+            previous.runs() + 1,
+            previous.approvedTotal() + approved,
+            LocalDateTime.now(),
+            durationMs,
+            candidates,
+            eligible,
+            approved,
+            failed);
     }
 
     @Override
@@ -621,6 +677,8 @@ public class VerificationServiceImpl implements VerificationService {
 
         // Xóa attendance từ hôm nay trở đi
         attendanceRepository.deleteByAssignmentIdAndDateAfter(assignment.getId(), today.minusDays(1));
+        // Bulk delete không qua entity listener
+        attendanceSummaryService.markDirty(assignment.getId());
 
         Long attendancesAfter = attendanceRepository.countAttendancesByAssignment(assignment.getId());
         log.info("[VERIFI-ENABLE] Attendance count AFTER delete: {} (deleted {})",
@@ -6,6 +6,8 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.context.annotation.Lazy;
@@ -16,6 +18,8 @@ import com.company.company_clean_hub_be.entity.Assignment;
 import com.company.company_clean_hub_be.entity.AssignmentStatus;
 import com.company.company_clean_hub_be.entity.AssignmentVerification;
 import com.company.company_clean_hub_be.entity.Attendance;
+import com.company.company_clean_hub_be.entity.CaptureOutboxEvent;
+import com.company.company_clean_hub_be.entity.CaptureOutboxStatus;
 import com.company.company_clean_hub_be.entity.DayOfWeek;
 import com.company.company_clean_hub_be.entity.Employee;
 import com.company.company_clean_hub_be.entity.VerificationImage;
@@ -28,13 +32,17 @@ import com.company.company_clean_hub_be.exception.ResourceNotFoundException;
 import com.company.company_clean_hub_be.repository.AssignmentRepository;
 import com.company.company_clean_hub_be.repository.AssignmentVerificationRepository;
 import com.company.company_clean_hub_be.repository.AttendanceRepository;
+import com.company.company_clean_hub_be.repository.CaptureOutboxEventRepository;
 import com.company.company_clean_hub_be.repository.EmployeeRepository;
 import com.company.company_clean_hub_be.repository.VerificationImageRepository;
 import com.company.company_clean_hub_be.repository.WorkScheduleRepository;
-import com.company.company_clean_hub_be.service.FileStorageService;
+import com.company.company_clean_hub_be.service.CaptureOutboxService;
+import com.company.company_clean_hub_be.service.GeofenceService;
 import com.company.company_clean_hub_be.service.WorkScheduleService;
 import com.company.company_clean_hub_be.service.AssignmentMetricsService;
+import com.company.company_clean_hub_be.util.WorkScheduleDates;
 
+import jakarta.persistence.EntityManager;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
@@ -49,14 +57,19 @@ public class WorkScheduleServiceImpl implements WorkScheduleService {
     private final AttendanceRepository attendanceRepository;
     private final EmployeeRepository employeeRepository;
     private final VerificationImageRepository imageRepository;
-    private final FileStorageService fileStorageService;
     private final AssignmentMetricsService assignmentMetricsService;
+    private final CaptureOutboxService captureOutboxService;
+    private final CaptureOutboxEventRepository captureOutboxEventRepository;
     private final com.company.company_clean_hub_be.service.helper.VerificationChecker verificationChecker;
     private final com.company.company_clean_hub_be.service.NotificationService notificationService;
-    private final com.company.company_clean_hub_be.repository.WorkLocationRepository workLocationRepository;
+    private final GeofenceService geofenceService;
     private final com.company.company_clean_hub_be.repository.UserRepository userRepository;
-    private final com.company.company_clean_hub_be.repository.NotificationRepository notificationRepository;
-    private final com.company.company_clean_hub_be.repository.CustomerAssignmentRepository customerAssignmentRepository;
+    private final com.company.company_clean_hub_be.service.ManagerScopeService managerScopeService;
+    private final com.company.company_clean_hub_be.repository.ContractRepository contractRepository;
+    private final EntityManager entityManager;
+
+    @Value("${scheduler.page-size:500}")
+    private int schedulerPageSize;
 
     @Override
     @Transactional
@@ -78,58 +91,24 @@ public class WorkScheduleServiceImpl implements WorkScheduleService {
                 .orElseThrow(() -> new ResourceNotFoundException("Verification not found: " + verificationId));
         }
 
-        // Get working days from assignment - convert entity DayOfWeek to java.time.DayOfWeek
-        List<java.time.DayOfWeek> workingDays;
-        List<java.time.DayOfWeek> rawDays = assignment.getWorkingDaysPerWeek();
-        log.info("[CREATE-WS] workingDays from assignment: {} (size={})",
-            rawDays, rawDays != null ? rawDays.size() : "NULL");
-
-        if (rawDays == null || rawDays.isEmpty()) {
-            log.info("[CREATE-WS] workingDays is empty, using default Mon-Sat");
-            workingDays = List.of(
-                java.time.DayOfWeek.MONDAY,
-                java.time.DayOfWeek.TUESDAY,
-                java.time.DayOfWeek.WEDNESDAY,
-                java.time.DayOfWeek.THURSDAY,
-                java.time.DayOfWeek.FRIDAY,
-                java.time.DayOfWeek.SATURDAY
-            );
-        } else {
-            workingDays = rawDays;
-            log.info("[CREATE-WS] workingDays: {}", workingDays);
-        }
-
-        LocalDate currentDate = fromDate;
-        while (!currentDate.isAfter(toDate)) {
-            java.time.DayOfWeek javaDayOfWeek = currentDate.getDayOfWeek();
-            boolean isWorkingDay = workingDays.contains(javaDayOfWeek);
-            boolean alreadyExists = workScheduleRepository.existsByAssignmentIdAndScheduledDate(assignment.getId(), currentDate);
-            log.info("[CREATE-WS] date={}, dayOfWeek={}, isWorkingDay={}, alreadyExists={}",
-                currentDate, javaDayOfWeek, isWorkingDay, alreadyExists);
-
-            if (isWorkingDay) {
-                // Check if already exists
-                if (!workScheduleRepository.existsByAssignmentIdAndScheduledDate(assignment.getId(), currentDate)) {
-                    // Past dates → MISSED (employee didn't capture photo, manager can create attendance manually)
-                    // Today and future → SCHEDULED (waiting for photo capture)
-                    WorkScheduleStatus status = currentDate.isBefore(LocalDate.now())
-                        ? WorkScheduleStatus.MISSED
-                        : WorkScheduleStatus.SCHEDULED;
-
-                    WorkSchedule schedule = WorkSchedule.builder()
-                        .assignment(assignment)
-                        .employee(assignment.getEmployee())
-                        .scheduledDate(currentDate)
-                        .status(status)
-                        .reason(reason)
-                        .assignmentVerification(verification)
-                        .build();
-
-                    schedules.add(schedule);
-                }
+        // Ngày làm việc của assignment, không cấu hình thì Thứ 2 - Thứ 7
+        log.info("[CREATE-WS] workingDays from assignment: {}", assignment.getWorkingDaysPerWeek());
+        LocalDate today = LocalDate.now();
+        for (LocalDate date : WorkScheduleDates.scheduledDates(assignment.getWorkingDaysPerWeek(), fromDate, toDate)) {
+            if (workScheduleRepository.existsByAssignmentIdAndScheduledDate(assignment.getId(), date)) {
+                log.info("[CREATE-WS] date={} already exists, skip", date);
+                continue;
             }
+            WorkSchedule schedule = WorkSchedule.builder()
+                .assignment(assignment)
+                .employee(assignment.getEmployee())
+                .scheduledDate(date)
+                .status(WorkScheduleDates.initialStatus(date, today))
+                .reason(reason)
+                .assignmentVerification(verification)
+                .build();
 
-            currentDate = currentDate.plusDays(1);
+            schedules.add(schedule);
         }
 
         List<WorkSchedule> saved = workScheduleRepository.saveAll(schedules);
@@ -161,15 +140,11 @@ public class WorkScheduleServiceImpl implements WorkScheduleService {
             boolean alreadyExists = workScheduleRepository
                 .existsByAssignmentIdAndScheduledDate(assignment.getId(), date);
             if (!alreadyExists) {
-                WorkScheduleStatus status = date.isBefore(LocalDate.now())
-                    ? WorkScheduleStatus.MISSED
-                    : WorkScheduleStatus.SCHEDULED;
-
                 WorkSchedule schedule = WorkSchedule.builder()
                     .assignment(assignment)
                     .employee(assignment.getEmployee())
                     .scheduledDate(date)
-                    .status(status)
+                    .status(WorkScheduleDates.initialStatus(date, LocalDate.now()))
                     .reason(reason)
                     .assignmentVerification(verification)
                     .build();
@@ -294,22 +269,21 @@ public class WorkScheduleServiceImpl implements WorkScheduleService {
             endDate = startDate.withDayOfMonth(startDate.lengthOfMonth());
         }
 
-        // Get schedules
-        List<WorkSchedule> schedules;
-        if (employeeId != null) {
-            schedules = workScheduleRepository.findByEmployeeIdAndDateRange(employeeId, startDate, endDate);
-        } else {
-            schedules = workScheduleRepository.findAll().stream()
-                .filter(ws -> !ws.getScheduledDate().isBefore(startDate) && !ws.getScheduledDate().isAfter(endDate))
-                .collect(Collectors.toList());
+        // Đếm theo trạng thái ngay trên DB
+        List<Object[]> statusCounts = employeeId != null
+            ? workScheduleRepository.countByStatusForEmployeeInDateRange(employeeId, startDate, endDate)
+            : workScheduleRepository.countByStatusInDateRange(startDate, endDate);
+        java.util.Map<WorkScheduleStatus, Long> byStatus = new java.util.EnumMap<>(WorkScheduleStatus.class);
+        for (Object[] row : statusCounts) {
+            byStatus.put((WorkScheduleStatus) row[0], ((Number) row[1]).longValue());
         }
 
         // Calculate stats
-        long total = schedules.size();
-        long verified = schedules.stream().filter(ws -> ws.getStatus() == WorkScheduleStatus.VERIFIED).count();
-        long missed = schedules.stream().filter(ws -> ws.getStatus() == WorkScheduleStatus.MISSED).count();
-        long scheduled = schedules.stream().filter(ws -> ws.getStatus() == WorkScheduleStatus.SCHEDULED).count();
-        long cancelled = schedules.stream().filter(ws -> ws.getStatus() == WorkScheduleStatus.CANCELLED).count();
+        long total = byStatus.values().stream().mapToLong(Long::longValue).sum();
+        long verified = byStatus.getOrDefault(WorkScheduleStatus.VERIFIED, 0L);
+        long missed = byStatus.getOrDefault(WorkScheduleStatus.MISSED, 0L);
+        long scheduled = byStatus.getOrDefault(WorkScheduleStatus.SCHEDULED, 0L);
+        long cancelled = byStatus.getOrDefault(WorkScheduleStatus.CANCELLED, 0L);
 
         double verifiedPercentage = total > 0 ? (verified * 100.0 / total) : 0.0;
         double missedPercentage = total > 0 ? (missed * 100.0 / total) : 0.0;
@@ -343,37 +317,36 @@ public class WorkScheduleServiceImpl implements WorkScheduleService {
             endDate = startDate.withDayOfMonth(startDate.lengthOfMonth());
         }
 
-        // Get schedules in date range, optionally filtered by contract
-        List<WorkSchedule> schedules = workScheduleRepository.findAll().stream()
-            .filter(ws -> !ws.getScheduledDate().isBefore(startDate) && !ws.getScheduledDate().isAfter(endDate))
-            .filter(ws -> contractId == null
-                || (ws.getAssignment() != null && ws.getAssignment().getContract() != null
-                    && ws.getAssignment().getContract().getId().equals(contractId)))
-            .collect(Collectors.toList());
+        // Group by employee + status trên DB, không nạp entity
+        java.util.Map<Long, com.company.company_clean_hub_be.dto.response.EmployeeScheduleSummary> byEmployee =
+            new java.util.LinkedHashMap<>();
+        for (Object[] row : workScheduleRepository.countByEmployeeAndStatusInDateRange(startDate, endDate, contractId)) {
+            Long employeeId = (Long) row[0];
+            WorkScheduleStatus status = (WorkScheduleStatus) row[3];
+            long count = ((Number) row[4]).longValue();
+
+            com.company.company_clean_hub_be.dto.response.EmployeeScheduleSummary summary = byEmployee.computeIfAbsent(employeeId,
+                id -> com.company.company_clean_hub_be.dto.response.EmployeeScheduleSummary.builder()
+                    .employeeId(id)
+                    .employeeName((String) row[1])
+                    .employeeCode((String) row[2])
+                    .totalSchedules(0L)
+                    .verifiedCount(0L)
+                    .missedCount(0L)
+                    .scheduledCount(0L)
+                    .build());
 
-        // Group by employee
-        return schedules.stream()
-            .collect(Collectors.groupingBy(WorkSchedule::getEmployee))
-            .entrySet().stream()
-            .map(entry -> {
-                Employee employee = entry.getKey();
-                List<WorkSchedule> employeeSchedules = entry.getValue();
-
-                long total = employeeSchedules.size();
-                long verified = employeeSchedules.stream().filter(ws -> ws.getStatus() == WorkScheduleStatus.VERIFIED).count();
-                long missed = employeeSchedules.stream().filter(ws -> ws.getStatus() == WorkScheduleStatus.MISSED).count();
-                long scheduled = employeeSchedules.stream().filter(ws -> ws.getStatus() == WorkScheduleStatus.SCHEDULED).count();
-
-                return com.company.company_clean_hub_be.dto.response.EmployeeScheduleSummary.builder()
-                    .employeeId(employee.getId())
-                    .employeeName(employee.getName())
-                    .employeeCode(employee.getEmployeeCode())
-                    .totalSchedules(total)
-                    .verifiedCount(verified)
-                    .missedCount(missed)
-                    .scheduledCount(scheduled)
-                    .build();
-            })
+            summary.setTotalSchedules(summary.getTotalSchedules() + count);
+            if (status == WorkScheduleStatus.VERIFIED) {
+                summary.setVerifiedCount(summary.getVerifiedCount() + count);
+            } else if (status == WorkScheduleStatus.MISSED) {
+                summary.setMissedCount(summary.getMissedCount() + count);
+            } else if (status == WorkScheduleStatus.SCHEDULED) {
+                summary.setScheduledCount(summary.getScheduledCount() + count);
+            }
+        }
+
+        return byEmployee.values().stream()
             .sorted((a, b) -> a.getEmployeeName().compareTo(b.getEmployeeName()))
             .collect(Collectors.toList());
     }
@@ -399,8 +372,11 @@ public class WorkScheduleServiceImpl implements WorkScheduleService {
             throw new AppException(ErrorCode.INVALID_REQUEST, "Can only capture photo for today's schedule");
         }
 
-        // Save image
-        VerificationImage image = saveVerificationImage(request, schedule);
+        Long assignmentId = schedule.getAssignment().getId();
+        int workDayBefore = assignmentMetricsService.snapshotWorkDay(assignmentId, schedule.getScheduledDate());
+
+        // Lưu ảnh ở trạng thái chờ upload, việc upload do CaptureOutboxWorker thực hiện
+        VerificationImage image = savePendingVerificationImage(request, schedule);
 
         // Update work schedule
         schedule.setStatus(WorkScheduleStatus.VERIFIED);
@@ -424,18 +400,13 @@ public class WorkScheduleServiceImpl implements WorkScheduleService {
 
         log.info("Photo captured successfully for work schedule: {}", schedule.getId());
 
-        // Check auto-approval if NEW_EMPLOYEE_VERIFICATION
-        if (schedule.getReason() == WorkScheduleReason.NEW_EMPLOYEE_VERIFICATION &&
-            schedule.getAssignmentVerification() != null) {
-            checkAndAutoApprove(schedule.getAssignmentVerification().getId());
-        }
-
-        // Always update metrics after photo capture (workDays should increase)
+        // workDays chỉ đếm lại đúng ngày này (O(1)) và cần snapshot trong cùng transaction nên vẫn chạy đồng bộ.
         // Build response BEFORE updating metrics to avoid LazyInitializationException.
         WorkScheduleResponse response = mapToResponse(schedule);
-        assignmentMetricsService.updateAssignmentMetrics(schedule.getAssignment().getId());
+        assignmentMetricsService.applyWorkDayDelta(assignmentId, schedule.getScheduledDate(), workDayBefore);
 
-        // Task 19: Kiểm tra check-in ngoài bán kính (không chặn flow chính)
+        // Task 19: Kiểm tra check-in ngoài bán kính (không chặn flow chính).
+        // Geofence tra trong index bộ nhớ nên chạy đồng bộ được cho mọi lần chụp.
         if (request.getLatitude() != null && request.getLongitude() != null) {
             try {
                 checkAndNotifyCheckinOutsideRadius(schedule.getAssignment(),
@@ -446,9 +417,42 @@ public class WorkScheduleServiceImpl implements WorkScheduleService {
             }
         }
 
+        // Upload ảnh và auto-approve chạy nền qua outbox (commit cùng transaction này)
+        captureOutboxService.enqueue(schedule, image, request);
+
         return response;
     }
 
+    @Override
+    @Transactional
+    public void completeCaptureFollowUp(Long captureEventId) {
+        CaptureOutboxEvent event = captureOutboxEventRepository.findById(captureEventId)
+            .orElseThrow(() -> new AppException(ErrorCode.INVALID_REQUEST, "Capture outbox event not found: " + captureEventId));
+
+        if (event.getStatus() == CaptureOutboxStatus.DONE) {
+            log.info("[CAPTURE-OUTBOX] Event {} already processed, skip", captureEventId);
+            return;
+        }
+
+        WorkSchedule schedule = workScheduleRepository.findById(event.getWorkScheduleId()).orElse(null);
+        if (schedule != null) {
+            // Check auto-approval if NEW_EMPLOYEE_VERIFICATION
+            if (schedule.getReason() == WorkScheduleReason.NEW_EMPLOYEE_VERIFICATION &&
+                schedule.getAssignmentVerification() != null) {
+                checkAndAutoApprove(schedule.getAssignmentVerification().getId());
+            }
+        } else {
+            log.warn("[CAPTURE-OUTBOX] Work schedule {} no longer exists, skip follow-up", event.getWorkScheduleId());
+        }
+
+        // Đánh dấu DONE cùng transaction với các thay đổi ở trên để chúng chỉ xảy ra một lần
+        event.setStatus(CaptureOutboxStatus.DONE);
+        event.setProcessedAt(LocalDateTime.now());
+        event.setLockedAt(null);
+        event.setLastError(null);
+        captureOutboxEventRepository.save(event);
+    }
+
     @Override
     @Transactional
     public void markMissedCheckIns(LocalDate date) {
@@ -480,8 +484,7 @@ public class WorkScheduleServiceImpl implements WorkScheduleService {
             schedule.setLastSyncedAt(LocalDateTime.now());
             workScheduleRepository.save(schedule);
 
-            // Update assignment metrics after attendance deletion
-            assignmentMetricsService.updateAssignmentMetrics(schedule.getAssignment().getId());
+            // Assignment metrics are applied by the caller as a per-day delta around the deletion
 
             log.info("Synced work schedule {} with attendance deletion", schedule.getId());
         });
@@ -504,8 +507,7 @@ public class WorkScheduleServiceImpl implements WorkScheduleService {
             schedule.setLastSyncedAt(LocalDateTime.now());
             workScheduleRepository.save(schedule);
 
-            // Update assignment metrics after attendance creation
-            assignmentMetricsService.updateAssignmentMetrics(schedule.getAssignment().getId());
+            // Assignment metrics are applied by the caller as a per-day delta around the creation
 
             log.info("Synced work schedule {} with attendance creation", schedule.getId());
         });
@@ -519,74 +521,83 @@ public class WorkScheduleServiceImpl implements WorkScheduleService {
         LocalDate startDate = month.withDayOfMonth(1);
         LocalDate endDate = month.withDayOfMonth(month.lengthOfMonth());
 
-        // Find all active assignments
-        List<Assignment> activeAssignments = assignmentRepository.findAll().stream()
-            .filter(a -> a.getStatus() == AssignmentStatus.IN_PROGRESS || a.getStatus() == AssignmentStatus.SCHEDULED)
-            .filter(a -> {
-                // Check if assignment is still active in this month
-                LocalDate assignmentStart = a.getStartDate();
-                LocalDate assignmentEnd = a.getEndDate();
-
-                // Assignment overlaps with month
-                return !assignmentStart.isAfter(endDate) &&
-                       (assignmentEnd == null || !assignmentEnd.isBefore(startDate));
-            })
-            .collect(Collectors.toList());
+        // Active assignments overlapping the month, filtered in SQL and scanned by keyset pages
+        List<AssignmentStatus> statuses = List.of(AssignmentStatus.IN_PROGRESS, AssignmentStatus.SCHEDULED);
+        long startedAt = System.currentTimeMillis();
+        long lastId = 0L;
+        int scanned = 0;
+        int pages = 0;
+        int totalCreated = 0;
 
-        log.info("Found {} active assignments for month {}", activeAssignments.size(), month);
+        List<Assignment> activeAssignments;
+        do {
+            activeAssignments = assignmentRepository.findActiveAssignmentsInRangeAfterId(
+                statuses, startDate, endDate, lastId, PageRequest.of(0, schedulerPageSize));
+            if (activeAssignments.isEmpty()) {
+                break;
+            }
+            pages++;
+            scanned += activeAssignments.size();
+            lastId = activeAssignments.get(activeAssignments.size() - 1).getId();
+
+            for (Assignment assignment : activeAssignments) {
+                try {
+                    // IMPORTANT: Use VerificationChecker.requiresVerification() - no circular dependency
+                    // This checks if employee completed verification (5+ photos)
+                    boolean requiresVerification = verificationChecker.requiresVerification(assignment);
+
+                    log.info("[SCHEDULER] Assignment {}: requiresVerification={}", assignment.getId(), requiresVerification);
+
+                    if (requiresVerification) {
+                        // Determine reason — exclude this assignment (already in DB) from the count
+                        boolean isNewEmployee = isEmployeeNew(assignment.getEmployee().getId(), assignment.getId());
+                        WorkScheduleReason reason = isNewEmployee ?
+                            WorkScheduleReason.NEW_EMPLOYEE_VERIFICATION :
+                            WorkScheduleReason.CONTRACT_REQUIREMENT;
+
+                        // Get verification if exists
+                        Long verificationId = null;
+                        if (isNewEmployee) {
+                            verificationId = verificationRepository
+                                .findByAssignmentId(assignment.getId())
+                                .map(AssignmentVerification::getId)
+                                .orElse(null);
+                        }
 
-        int totalCreated = 0;
-        for (Assignment assignment : activeAssignments) {
-            try {
-                // IMPORTANT: Use VerificationChecker.requiresVerification() - no circular dependency
-                // This checks if employee completed verification (5+ photos)
-                boolean requiresVerification = verificationChecker.requiresVerification(assignment);
-
-                log.info("[SCHEDULER] Assignment {}: requiresVerification={}", assignment.getId(), requiresVerification);
-
-                if (requiresVerification) {
-                    // Determine reason — exclude this assignment (already in DB) from the count
-                    boolean isNewEmployee = isEmployeeNew(assignment.getEmployee().getId(), assignment.getId());
-                    WorkScheduleReason reason = isNewEmployee ?
-                        WorkScheduleReason.NEW_EMPLOYEE_VERIFICATION :
-                        WorkScheduleReason.CONTRACT_REQUIREMENT;
-
-                    // Get verification if exists
-                    Long verificationId = null;
-                    if (isNewEmployee) {
-                        verificationId = verificationRepository
-                            .findByAssignmentId(assignment.getId())
-                            .map(AssignmentVerification::getId)
-                            .orElse(null);
-                    }
+                        // Calculate date range for this assignment
+                        LocalDate assignmentStartInMonth = assignment.getStartDate().isAfter(startDate) ?
+                            assignment.getStartDate() : startDate;
+                        LocalDate assignmentEndInMonth = endDate;
 
-                    // Calculate date range for this assignment
-                    LocalDate assignmentStartInMonth = assignment.getStartDate().isAfter(startDate) ?
-                        assignment.getStartDate() : startDate;
-                    LocalDate assignmentEndInMonth = endDate;
+                        if (assignment.getEndDate() != null && assignment.getEndDate().isBefore(endDate)) {
+                            assignmentEndInMonth = assignment.getEndDate();
+                        }
 
-                    if (assignment.getEndDate() != null && assignment.getEndDate().isBefore(endDate)) {
-                        assignmentEndInMonth = assignment.getEndDate();
+                        // Create work schedules
+                        List<WorkSchedule> created = createWorkSchedulesForAssignment(
+                            assignment,
+                            reason,
+                            verificationId,
+                            assignmentStartInMonth,
+                            assignmentEndInMonth
+                        );
+
+                        totalCreated += created.size();
+                        log.info("Created {} work schedules for assignment {}", created.size(), assignment.getId());
                     }
-
-                    // Create work schedules
-                    List<WorkSchedule> created = createWorkSchedulesForAssignment(
-                        assignment,
-                        reason,
-                        verificationId,
-                        assignmentStartInMonth,
-                        assignmentEndInMonth
-                    );
-
-                    totalCreated += created.size();
-                    log.info("Created {} work schedules for assignment {}", created.size(), assignment.getId());
+                } catch (Exception e) {
+                    log.error("Failed to generate work schedules for assignment {}: {}",
+                        assignment.getId(), e.getMessage(), e);
                 }
-            } catch (Exception e) {
-                log.error("Failed to generate work schedules for assignment {}: {}",
-                    assignment.getId(), e.getMessage(), e);
             }
-        }
 
+            // Release the persistence context between pages
+            entityManager.flush();
+            entityManager.clear();
+        } while (activeAssignments.size() == schedulerPageSize);
+
+        log.info("Scanned {} active assignments in {} pages for month {} ({}ms)",
+            scanned, pages, month, System.currentTimeMillis() - startedAt);
         log.info("Monthly generation complete: created {} work schedules for month {}", totalCreated, month);
     }
 
@@ -604,6 +615,9 @@ public class WorkScheduleServiceImpl implements WorkScheduleService {
         WorkSchedule schedule = workScheduleRepository.findById(id)
             .orElseThrow(() -> new ResourceNotFoundException("Work schedule not found: " + id));
 
+        Long assignmentId = schedule.getAssignment().getId();
+        int workDayBefore = assignmentMetricsService.snapshotWorkDay(assignmentId, schedule.getScheduledDate());
+
         schedule.setStatus(WorkScheduleStatus.CANCELLED);
         schedule.setSyncNote("Cancelled: " + reason);
         schedule.setLastSyncedAt(LocalDateTime.now());
@@ -613,7 +627,7 @@ public class WorkScheduleServiceImpl implements WorkScheduleService {
         // Update assignment metrics after cancellation
         // Build response BEFORE updating metrics to avoid LazyInitializationException.
         WorkScheduleResponse response = mapToResponse(schedule);
-        assignmentMetricsService.updateAssignmentMetrics(schedule.getAssignment().getId());
+        assignmentMetricsService.applyWorkDayDelta(assignmentId, schedule.getScheduledDate(), workDayBefore);
 
         log.info("Cancelled work schedule: {}", id);
 
@@ -633,6 +647,9 @@ public class WorkScheduleServiceImpl implements WorkScheduleService {
                 "Work schedule must be MISSED or SCHEDULED with past date to create attendance manually");
         }
 
+        Long assignmentId = schedule.getAssignment().getId();
+        int workDayBefore = assignmentMetricsService.snapshotWorkDay(assignmentId, schedule.getScheduledDate());
+
         // Create attendance
         Attendance attendance = createAttendanceFromSchedule(schedule);
         schedule.setAttendance(attendance);
@@ -648,13 +665,14 @@ public class WorkScheduleServiceImpl implements WorkScheduleService {
         // the EntityManager, detaching all proxies including schedule.employee.
         WorkScheduleResponse response = mapToResponse(schedule);
 
+        // Always update metrics to reflect the new workDays count (before auto-approve, which may recount)
+        assignmentMetricsService.applyWorkDayDelta(assignmentId, schedule.getScheduledDate(), workDayBefore);
+
         // If NEW_EMPLOYEE_VERIFICATION, increment attempts and check auto-approve
         if (schedule.getReason() == WorkScheduleReason.NEW_EMPLOYEE_VERIFICATION
                 && schedule.getAssignmentVerification() != null) {
             checkAndAutoApprove(schedule.getAssignmentVerification().getId());
         }
-        // Always update metrics to reflect the new workDays count
-        assignmentMetricsService.updateAssignmentMetrics(schedule.getAssignment().getId());
 
         return response;
     }
@@ -928,36 +946,21 @@ public class WorkScheduleServiceImpl implements WorkScheduleService {
         }
     }
 
-    private VerificationImage saveVerificationImage(WorkScheduleCaptureRequest request, WorkSchedule schedule) {
-        try {
-            // Upload to Cloudinary using storeBase64
-            String fileName = "verification_" + schedule.getId() + "_" + System.currentTimeMillis();
-            String publicId = fileStorageService.storeBase64(
-                request.getImageBase64(),
-                fileName,
-                "company-clean-hub/verification"
-            );
-            String imageUrl = fileStorageService.getSecureUrl(publicId);
-
-            VerificationImage image = VerificationImage.builder()
-                .assignmentVerification(schedule.getAssignmentVerification()) // For verification purposes
-                .employee(schedule.getEmployee())
-                .attendance(null) // Will be linked to attendance after attendance is created (for attendance photo tracking)
-                .cloudinaryPublicId(publicId)
-                .cloudinaryUrl(imageUrl)
-                .latitude(request.getLatitude())
-                .longitude(request.getLongitude())
-                .address(request.getAddress())
-                .faceConfidence(request.getFaceConfidence())
-                .imageQualityScore(request.getImageQualityScore())
-                .capturedAt(LocalDateTime.now())
-                .build();
+    private VerificationImage savePendingVerificationImage(WorkScheduleCaptureRequest request, WorkSchedule schedule) {
+        // cloudinaryPublicId/cloudinaryUrl được điền sau khi worker upload xong
+        VerificationImage image = VerificationImage.builder()
+            .assignmentVerification(schedule.getAssignmentVerification()) // For verification purposes
+            .employee(schedule.getEmployee())
+            .attendance(null) // Will be linked to attendance after attendance is created (for attendance photo tracking)
+            .latitude(request.getLatitude())
+            .longitude(request.getLongitude())
+            .address(request.getAddress())
+            .faceConfidence(request.getFaceConfidence())
+            .imageQualityScore(request.getImageQualityScore())
+            .capturedAt(LocalDateTime.now())
+            .build();
 
-            return imageRepository.save(image);
-        } catch (Exception e) {
-            log.error("Failed to save verification image", e);
-            throw new AppException(ErrorCode.FILE_UPLOAD_FAILED, "Failed to save image");
-        }
+        return imageRepository.save(image);
     }
 
     private Attendance createAttendanceFromSchedule(WorkSchedule schedule) {
@@ -1064,42 +1067,51 @@ public class WorkScheduleServiceImpl implements WorkScheduleService {
         if (currentUser != null && currentUser.getRole() != null) {
             String roleCode = currentUser.getRole().getCode();
             if ("QLT2".equalsIgnoreCase(roleCode)) {
-                filterCustomerIds = customerAssignmentRepository.findCustomerIdsByManagerId(currentUser.getId());
+                filterCustomerIds = managerScopeService.getCustomerIds(currentUser.getId());
             } else if ("CUSTOMER".equalsIgnoreCase(roleCode)) {
                 filterCustomerIds = List.of(currentUser.getId());
             }
         }
 
-        final List<Long> finalCustomerIds = filterCustomerIds;
-        List<WorkSchedule> allSchedules = workScheduleRepository.findAll().stream()
-            .filter(ws -> !ws.getScheduledDate().isBefore(startDate) && !ws.getScheduledDate().isAfter(endDate))
-            .filter(ws -> {
-                if (finalCustomerIds == null) return true;
-                if (finalCustomerIds.isEmpty()) return false;
-                return ws.getAssignment() != null && ws.getAssignment().getContract() != null 
-                    && ws.getAssignment().getContract().getCustomer() != null
-                    && finalCustomerIds.contains(ws.getAssignment().getContract().getCustomer().getId());
-            })
-            .collect(Collectors.toList());
+        if (filterCustomerIds != null && filterCustomerIds.isEmpty()) {
+            return new java.util.ArrayList<>();
+        }
+
+        // Group by contract + status trên DB
+        List<Object[]> statusCounts = filterCustomerIds == null
+            ? workScheduleRepository.countByContractAndStatusInDateRange(startDate, endDate)
+            : workScheduleRepository.countByContractAndStatusInDateRangeForCustomers(startDate, endDate, filterCustomerIds);
+
+        java.util.Map<Long, java.util.Map<WorkScheduleStatus, Long>> byContract = new java.util.HashMap<>();
+        for (Object[] row : statusCounts) {
+            byContract.computeIfAbsent((Long) row[0], id -> new java.util.EnumMap<>(WorkScheduleStatus.class))
+                .put((WorkScheduleStatus) row[1], ((Number) row[2]).longValue());
+        }
+        if (byContract.isEmpty()) {
+            return new java.util.ArrayList<>();
+        }
 
-        // Group by contract
-        java.util.Map<Long, List<WorkSchedule>> byContract = allSchedules.stream()
-            .filter(ws -> ws.getAssignment() != null && ws.getAssignment().getContract() != null)
-            .collect(Collectors.groupingBy(ws -> ws.getAssignment().getContract().getId()));
+        java.util.Map<Long, Long> employeeCounts = new java.util.HashMap<>();
+        for (Object[] row : workScheduleRepository.countDistinctEmployeesByContractInDateRange(
+                startDate, endDate, byContract.keySet())) {
+            employeeCounts.put((Long) row[0], ((Number) row[1]).longValue());
+        }
+        java.util.Map<Long, com.company.company_clean_hub_be.entity.Contract> contracts =
+            contractRepository.findAllWithCustomerAndServicesByIdIn(byContract.keySet()).stream()
+                .collect(Collectors.toMap(com.company.company_clean_hub_be.entity.Contract::getId, c -> c));
 
         List<com.company.company_clean_hub_be.dto.response.WorkScheduleContractSummary> result = new java.util.ArrayList<>();
-        for (java.util.Map.Entry<Long, List<WorkSchedule>> entry : byContract.entrySet()) {
+        for (java.util.Map.Entry<Long, java.util.Map<WorkScheduleStatus, Long>> entry : byContract.entrySet()) {
                 Long contractId = entry.getKey();
-                List<WorkSchedule> schedules = entry.getValue();
-                com.company.company_clean_hub_be.entity.Contract contract =
-                    schedules.get(0).getAssignment().getContract();
+                java.util.Map<WorkScheduleStatus, Long> counts = entry.getValue();
+                com.company.company_clean_hub_be.entity.Contract contract = contracts.get(contractId);
+                if (contract == null) continue;
 
-                long total = schedules.size();
-                long verified = schedules.stream().filter(ws -> ws.getStatus() == WorkScheduleStatus.VERIFIED).count();
-                long missed = schedules.stream().filter(ws -> ws.getStatus() == WorkScheduleStatus.MISSED).count();
-                long scheduled = schedules.stream().filter(ws -> ws.getStatus() == WorkScheduleStatus.SCHEDULED).count();
-                long employeeCount = schedules.stream()
-                    .map(ws -> ws.getEmployee().getId()).distinct().count();
+                long total = counts.values().stream().mapToLong(Long::longValue).sum();
+                long verified = counts.getOrDefault(WorkScheduleStatus.VERIFIED, 0L);
+                long missed = counts.getOrDefault(WorkScheduleStatus.MISSED, 0L);
+                long scheduled = counts.getOrDefault(WorkScheduleStatus.SCHEDULED, 0L);
+                long employeeCount = employeeCounts.getOrDefault(contractId, 0L);
 
                 result.add(com.company.company_clean_hub_be.dto.response.WorkScheduleContractSummary.builder()
                     .contractId(contractId)
@@ -1144,24 +1156,11 @@ public class WorkScheduleServiceImpl implements WorkScheduleService {
             return; // COMPANY scope, không có contract → bỏ qua
         }
         Long contractId = assignment.getContract().getId();
-        List<com.company.company_clean_hub_be.entity.WorkLocation> locations =
-                workLocationRepository.findByContractIdAndIsActiveTrue(contractId);
-
-        if (locations == null || locations.isEmpty()) {
-            return; // Không có work location nào được cấu hình → bỏ qua
-        }
 
-        boolean isInsideAny = false;
-        for (com.company.company_clean_hub_be.entity.WorkLocation loc : locations) {
-            double distance = haversineDistance(latitude, longitude,
-                    loc.getLatitude(), loc.getLongitude());
-            if (distance <= loc.getRadiusMeters()) {
-                isInsideAny = true;
-                break;
-            }
-        }
+        // Index trong bộ nhớ; NO_LOCATIONS = chưa cấu hình work location → bỏ qua
+        GeofenceService.CheckResult result = geofenceService.check(contractId, latitude, longitude);
 
-        if (!isInsideAny) {
+        if (result == GeofenceService.CheckResult.OUTSIDE) {
             com.company.company_clean_hub_be.entity.Employee emp =
                     (com.company.company_clean_hub_be.entity.Employee) assignment.getEmployee();
             String title = "Check-in ngoài bán kính cho phép";
@@ -1175,45 +1174,18 @@ public class WorkScheduleServiceImpl implements WorkScheduleService {
                     contractId,
                     latitude, longitude);
 
-            // Gửi cho tất cả QLT1 và QLT2
-            List<com.company.company_clean_hub_be.entity.User> managers =
-                    userRepository.findByRoleCodeIn(List.of("QLT1", "QLT2"));
-            java.time.LocalDateTime todayStart = java.time.LocalDate.now().atStartOfDay();
-            for (com.company.company_clean_hub_be.entity.User manager : managers) {
-                boolean exists = notificationRepository
-                        .existsByTypeAndContractIdAndEmployeeIdAndRecipientIdAndCreatedAtAfter(
-                                com.company.company_clean_hub_be.entity.NotificationType.CHECKIN_OUTSIDE_RADIUS,
-                                contractId,
-                                assignment.getEmployee().getId(),
-                                manager.getId(),
-                                todayStart);
-                if (!exists) {
-                    notificationService.createNotification(
-                            manager,
-                            com.company.company_clean_hub_be.entity.NotificationType.CHECKIN_OUTSIDE_RADIUS,
-                            title,
-                            message,
-                            assignment.getEmployee().getId(),
-                            assignment.getId(),
-                            contractId);
-                }
-            }
+            // Gửi cho tất cả QLT1 và QLT2; ai đã nhận thông báo hôm nay thì bỏ qua
+            notificationService.createNotifications(
+                    notificationService.getRecipientIdsByRoles(List.of("QLT1", "QLT2")),
+                    com.company.company_clean_hub_be.entity.NotificationType.CHECKIN_OUTSIDE_RADIUS,
+                    title,
+                    message,
+                    assignment.getEmployee().getId(),
+                    assignment.getId(),
+                    contractId,
+                    java.time.LocalDate.now().atStartOfDay());
             log.warn("[NOTIFY][CHECKIN_OUTSIDE_RADIUS] Employee {} checked in outside radius at ({},{})",
                     emp.getEmployeeCode(), latitude, longitude);
         }
     }
-
-    /**
-     * Tính khoảng cách giữa 2 điểm GPS bằng công thức Haversine (đơn vị: mét).
-     */
-    private double haversineDistance(double lat1, double lon1, double lat2, double lon2) {
-        final double EARTH_RADIUS = 6_371_000; // mét
-        double dLat = Math.toRadians(lat2 - lat1);
-        double dLon = Math.toRadians(lon2 - lon1);
-        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
-                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
-                * Math.sin(dLon / 2) * Math.sin(dLon / 2);
-        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
-        return EARTH_RADIUS * c;
-    }
 }
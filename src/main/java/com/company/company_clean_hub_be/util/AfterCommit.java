@@ -0,0 +1,28 @@
+package com.company.company_clean_hub_be.util;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Chạy task sau khi transaction hiện tại commit (không có transaction thì chạy ngay; rollback thì
+ * không chạy). Dùng để xoá cache trong bộ nhớ: xoá trước khi commit thì request khác có thể nạp lại
+ * dữ liệu cũ từ DB vào cache ngay trong lúc transaction chưa commit.
+ */
+public final class AfterCommit {
+
+    private AfterCommit() {
+    }
+
+    public static void run(Runnable task) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    task.run();
+                }
+            });
+        } else {
+            task.run();
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.company.company_clean_hub_be.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+
+/**
+ * Iterator đọc dữ liệu theo từng lô khóa (thường là danh sách id đã sắp xếp).
+ * Chỉ giữ một lô kết quả trong bộ nhớ, lô tiếp theo chỉ được nạp khi lô hiện tại
+ * đã được tiêu thụ hết. Dùng cho các luồng xuất Excel dạng streaming.
+ */
+public class ChunkedIterator<K, T> implements Iterator<T> {
+
+    private final List<K> keys;
+    private final int chunkSize;
+    private final Function<List<K>, List<T>> loader;
+
+    private int nextKeyIndex = 0;
+    private Iterator<T> current = Collections.emptyIterator();
+
+    public ChunkedIterator(List<K> keys, int chunkSize, Function<List<K>, List<T>> loader) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize must be positive");
+        }
+        this.keys = keys;
+        this.chunkSize = chunkSize;
+        this.loader = loader;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (!current.hasNext() && nextKeyIndex < keys.size()) {
+            int end = Math.min(nextKeyIndex + chunkSize, keys.size());
+            List<K> chunk = new ArrayList<>(keys.subList(nextKeyIndex, end));
+            nextKeyIndex = end;
+            List<T> loaded = loader.apply(chunk);
+            current = loaded != null ? loaded.iterator() : Collections.emptyIterator();
+        }
+        return current.hasNext();
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return current.next();
+    }
+}
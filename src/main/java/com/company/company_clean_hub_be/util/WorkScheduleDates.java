@@ -0,0 +1,51 @@
+package com.company.company_clean_hub_be.util;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import com.company.company_clean_hub_be.entity.WorkScheduleStatus;
+
+/**
+ * Quy tắc sinh WorkSchedule dùng chung cho WorkScheduleService (JPA) và sinh dữ liệu đầu tháng (JDBC batch):
+ * ngày nào có lịch chụp ảnh và trạng thái ban đầu của lịch.
+ */
+public final class WorkScheduleDates {
+
+    // Assignment không cấu hình ngày làm việc thì chụp ảnh Thứ 2 - Thứ 7
+    public static final Set<DayOfWeek> DEFAULT_DAYS = EnumSet.range(DayOfWeek.MONDAY, DayOfWeek.SATURDAY);
+
+    private WorkScheduleDates() {
+    }
+
+    /**
+     * Các ngày trong [fromDate, toDate] có lịch chụp ảnh.
+     *
+     * @param workingDays null / rỗng = DEFAULT_DAYS
+     */
+    public static List<LocalDate> scheduledDates(Collection<DayOfWeek> workingDays, LocalDate fromDate,
+                                                 LocalDate toDate) {
+        Set<DayOfWeek> days = workingDays == null || workingDays.isEmpty()
+                ? DEFAULT_DAYS
+                : EnumSet.copyOf(workingDays);
+        List<LocalDate> dates = new ArrayList<>();
+        for (LocalDate date = fromDate; !date.isAfter(toDate); date = date.plusDays(1)) {
+            if (days.contains(date.getDayOfWeek())) {
+                dates.add(date);
+            }
+        }
+        return dates;
+    }
+
+    /**
+     * Ngày đã qua → MISSED (nhân viên không chụp ảnh, quản lý có thể tạo chấm công tay),
+     * hôm nay trở đi → SCHEDULED (chờ chụp ảnh).
+     */
+    public static WorkScheduleStatus initialStatus(LocalDate date, LocalDate today) {
+        return date.isBefore(today) ? WorkScheduleStatus.MISSED : WorkScheduleStatus.SCHEDULED;
+    }
+}
@@ -0,0 +1,5 @@
+-- Migration V10: Index cho các job định kỳ quét assignments/payrolls theo trạng thái (keyset theo id)
+
+CREATE INDEX idx_assignments_status_id ON assignments (status, id);
+CREATE INDEX idx_assignments_start_date ON assignments (start_date);
+CREATE INDEX idx_payrolls_status_id ON payrolls (status, id);
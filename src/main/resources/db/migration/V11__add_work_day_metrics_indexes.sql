@@ -0,0 +1,4 @@
+-- Migration V11: Index cho cập nhật workDays theo từng ngày (assignment + ngày) và job đối soát
+
+CREATE INDEX idx_attendance_assignment_date ON attendance (assignment_id, date);
+CREATE INDEX idx_work_schedules_assignment_date ON work_schedules (assignment_id, scheduled_date);
@@ -0,0 +1,21 @@
+-- Migration V12: Outbox cho xử lý sau khi chụp ảnh chấm công (upload ảnh, auto-approve, kiểm tra bán kính)
+
+CREATE TABLE capture_outbox_events (
+    id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    idempotency_key VARCHAR(100) NOT NULL,
+    work_schedule_id BIGINT NOT NULL,
+    verification_image_id BIGINT,
+    image_base64 LONGTEXT,
+    latitude DOUBLE,
+    longitude DOUBLE,
+    status VARCHAR(20) NOT NULL,
+    attempts INT NOT NULL DEFAULT 0,
+    next_attempt_at DATETIME(6),
+    locked_at DATETIME(6),
+    last_error VARCHAR(1000),
+    processed_at DATETIME(6),
+    created_at DATETIME(6),
+    updated_at DATETIME(6),
+    UNIQUE KEY uk_capture_outbox_idempotency_key (idempotency_key),
+    INDEX idx_capture_outbox_status_next_attempt (status, next_attempt_at)
+);
@@ -0,0 +1,3 @@
+-- Migration V13: Index cho các thống kê dashboard lịch làm việc (lọc theo ngày, group theo trạng thái)
+
+CREATE INDEX idx_work_schedules_date_status ON work_schedules (scheduled_date, status);
@@ -0,0 +1,21 @@
+-- Migration V14: Index cho feed notification (keyset theo recipient_id, created_at, id),
+-- bộ đếm chưa đọc, và bảng lưu trữ notification cũ đã đọc
+
+CREATE INDEX idx_notifications_recipient_created_id ON notifications (recipient_id, created_at, id);
+CREATE INDEX idx_notifications_recipient_read ON notifications (recipient_id, is_read);
+CREATE INDEX idx_notifications_read_created ON notifications (is_read, created_at);
+
+CREATE TABLE notifications_archive (
+    id BIGINT PRIMARY KEY,
+    recipient_id BIGINT NOT NULL,
+    type VARCHAR(50) NOT NULL,
+    title VARCHAR(255),
+    message TEXT,
+    ref_employee_id BIGINT,
+    ref_assignment_id BIGINT,
+    ref_contract_id BIGINT,
+    is_read BIT NOT NULL,
+    created_at DATETIME(6),
+    archived_at DATETIME(6),
+    INDEX idx_notifications_archive_recipient_created (recipient_id, created_at)
+);
@@ -0,0 +1,3 @@
+-- Migration V15: Token version của user (tăng khi quản trị đặt lại mật khẩu để thu hồi JWT cũ)
+
+ALTER TABLE users ADD COLUMN token_version INT NOT NULL DEFAULT 0;
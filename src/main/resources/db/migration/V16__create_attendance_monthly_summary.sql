@@ -0,0 +1,30 @@
+-- Migration V16: Bảng tổng hợp chấm công theo (assignment, năm, tháng) cho tính lương / hóa đơn,
+-- dựng lần đầu từ dữ liệu attendance hiện có
+
+CREATE TABLE attendance_monthly_summary (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    assignment_id BIGINT NOT NULL,
+    `year` INT NOT NULL,
+    `month` INT NOT NULL,
+    work_days INT NOT NULL DEFAULT 0,
+    absence_days INT NOT NULL DEFAULT 0,
+    bonus_total DECIMAL(19, 2) NOT NULL DEFAULT 0,
+    penalty_total DECIMAL(19, 2) NOT NULL DEFAULT 0,
+    support_cost_total DECIMAL(19, 2) NOT NULL DEFAULT 0,
+    updated_at DATETIME(6),
+    CONSTRAINT uk_attendance_monthly_summary UNIQUE (assignment_id, `year`, `month`),
+    INDEX idx_attendance_monthly_summary_period (`year`, `month`)
+);
+
+INSERT INTO attendance_monthly_summary (assignment_id, `year`, `month`, work_days, absence_days,
+    bonus_total, penalty_total, support_cost_total, updated_at)
+SELECT a.assignment_id, YEAR(a.date), MONTH(a.date),
+    SUM(CASE WHEN a.deleted = true THEN 0 ELSE 1 END),
+    SUM(CASE WHEN a.deleted = true THEN 1 ELSE 0 END),
+    COALESCE(SUM(CASE WHEN a.deleted = true THEN NULL ELSE a.bonus END), 0),
+    COALESCE(SUM(CASE WHEN a.deleted = true THEN NULL ELSE a.penalty END), 0),
+    COALESCE(SUM(CASE WHEN a.deleted = true THEN NULL ELSE a.support_cost END), 0),
+    NOW(6)
+FROM attendance a
+WHERE a.assignment_id IS NOT NULL AND a.date IS NOT NULL
+GROUP BY a.assignment_id, YEAR(a.date), MONTH(a.date);
@@ -0,0 +1,25 @@
+-- Migration V17: Mỗi hợp đồng chỉ có một hóa đơn cho mỗi tháng (chặn hai lần xuất hóa đơn chạy song song)
+
+-- Dọn hóa đơn trùng trước khi thêm khóa: mỗi (hợp đồng, tháng, năm) giữ hóa đơn đã thanh toán, sau đó tới
+-- hóa đơn chưa hủy, cùng mức thì giữ id nhỏ nhất (bản tạo trước). Dòng hóa đơn thuộc riêng từng hóa đơn
+-- nên bị xóa theo bản trùng, không chuyển sang bản giữ lại
+CREATE TEMPORARY TABLE invoice_duplicates AS
+SELECT ranked.id AS duplicate_id
+FROM (
+    SELECT i.id,
+        FIRST_VALUE(i.id) OVER (PARTITION BY i.contract_id, i.invoice_month, i.invoice_year
+            ORDER BY CASE i.status WHEN 'PAID' THEN 0 WHEN 'CANCELLED' THEN 2 ELSE 1 END, i.id) AS keep_id
+    FROM invoices i
+) ranked
+WHERE ranked.id <> ranked.keep_id;
+
+DELETE l FROM invoice_lines l
+JOIN invoice_duplicates d ON l.invoice_id = d.duplicate_id;
+
+DELETE i FROM invoices i
+JOIN invoice_duplicates d ON i.id = d.duplicate_id;
+
+DROP TEMPORARY TABLE invoice_duplicates;
+
+ALTER TABLE invoices
+    ADD CONSTRAINT uk_invoices_contract_period UNIQUE (contract_id, invoice_month, invoice_year);
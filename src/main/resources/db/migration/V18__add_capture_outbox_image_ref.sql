@@ -0,0 +1,3 @@
+-- Migration V18: Ảnh chờ upload của capture outbox được ghi ra file, sự kiện chỉ giữ tên file
+
+ALTER TABLE capture_outbox_events ADD COLUMN image_ref VARCHAR(100);
@@ -0,0 +1,12 @@
+-- Migration V19: Ảnh chờ upload của capture outbox lưu trong DB (bảng riêng), không dùng thư mục spool trên đĩa
+-- (thư mục trong container mất khi restart / redeploy trong khi sự kiện vẫn còn)
+
+CREATE TABLE capture_outbox_payloads (
+    event_id BIGINT PRIMARY KEY,
+    image_base64 LONGTEXT NOT NULL,
+    created_at DATETIME(6),
+    CONSTRAINT fk_capture_outbox_payload_event FOREIGN KEY (event_id)
+        REFERENCES capture_outbox_events (id) ON DELETE CASCADE
+);
+
+ALTER TABLE capture_outbox_events DROP COLUMN image_ref;
@@ -0,0 +1,39 @@
+-- Migration V20: Mỗi nhân viên chỉ có một bảng lương cho mỗi tháng (chặn hai lần tính lương chạy song song).
+-- Kỳ lương trước đây chỉ suy ra từ created_at (luôn là ngày 1 của tháng lương) nên thêm cột kỳ lương để đặt khóa.
+
+ALTER TABLE payrolls
+    ADD COLUMN payroll_month INT NULL,
+    ADD COLUMN payroll_year INT NULL;
+
+UPDATE payrolls
+SET payroll_month = MONTH(created_at), payroll_year = YEAR(created_at)
+WHERE created_at IS NOT NULL;
+
+-- Gộp bảng lương trùng trước khi thêm khóa: mỗi (nhân viên, tháng, năm) giữ bảng lương đã trả nhiều nhất
+-- (cùng số tiền thì giữ id nhỏ nhất), chuyển chấm công và lịch sử thanh toán của bản trùng sang bản giữ lại
+CREATE TEMPORARY TABLE payroll_duplicates AS
+SELECT ranked.id AS duplicate_id, ranked.keep_id
+FROM (
+    SELECT p.id,
+        FIRST_VALUE(p.id) OVER (PARTITION BY p.employee_id, p.payroll_month, p.payroll_year
+            ORDER BY COALESCE(p.paid_amount, 0) DESC, p.id) AS keep_id
+    FROM payrolls p
+    WHERE p.employee_id IS NOT NULL AND p.payroll_month IS NOT NULL
+) ranked
+WHERE ranked.id <> ranked.keep_id;
+
+UPDATE attendance a
+JOIN payroll_duplicates d ON a.payroll_id = d.duplicate_id
+SET a.payroll_id = d.keep_id;
+
+UPDATE payment_histories h
+JOIN payroll_duplicates d ON h.payroll_id = d.duplicate_id
+SET h.payroll_id = d.keep_id;
+
+DELETE p FROM payrolls p
+JOIN payroll_duplicates d ON p.id = d.duplicate_id;
+
+DROP TEMPORARY TABLE payroll_duplicates;
+
+ALTER TABLE payrolls
+    ADD CONSTRAINT uk_payrolls_employee_period UNIQUE (employee_id, payroll_month, payroll_year);
@@ -0,0 +1,286 @@
+package com.company.company_clean_hub_be.cccd.opencv;
+
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.awt.image.ConvolveOp;
+import java.awt.image.Kernel;
+import java.awt.image.WritableRaster;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageIO;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import com.company.company_clean_hub_be.cccd.dto.CccdExtractedData;
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.EncodeHintType;
+import com.google.zxing.WriterException;
+import com.google.zxing.client.j2se.MatrixToImageWriter;
+import com.google.zxing.qrcode.QRCodeWriter;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Benchmark quét QR mặt sau CCCD: chiến lược mới (định vị OpenCV + fallback song song, CccdQrScanner)
+ * so với chiến lược cũ (multi-pass tuần tự, LegacyCccdQrDecoder) trên ảnh mẫu sinh sẵn (không lưu file
+ * ảnh trong repo): QR thẳng, xoay 90°, lệch 15°, QR nhỏ, ảnh mờ, tương phản thấp và QR nhỏ trên nền ảnh
+ * chụp nhiễu nén JPEG.
+ * Độ trễ là kết quả JMH; tỷ lệ đọc đúng nằm ở cột phụ decoded / missed (@AuxCounters) và được in
+ * thành bảng trước khi chạy JMH. Không chạy trong mvn test; chạy bằng main sau mvn test-compile, ví dụ:
+ * mvn -q test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.company.company_clean_hub_be.cccd.opencv.CccdQrScannerBenchmark
+ */
+@Slf4j
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CccdQrScannerBenchmark {
+
+    private static final String SAMPLE_ID = "001099012345";
+    private static final String SAMPLE_QR_TEXT =
+            SAMPLE_ID + "|123456789|Nguyễn Văn An|01011990|Nam|12 Lê Lợi, Phường Bến Nghé, Quận 1, TP.HCM|01012021";
+    private static final String[] FIXTURES =
+            { "upright", "rotated90", "skewed15", "small", "blurred", "lowContrast", "smallOnPhoto" };
+
+    @Param({ "upright", "rotated90", "skewed15", "small", "blurred", "lowContrast", "smallOnPhoto" })
+    private String fixture;
+
+    private ThreadPoolTaskExecutor executor;
+    private CccdQrScanner scanner;
+    private LegacyCccdQrDecoder legacyDecoder;
+    private byte[] image;
+
+    /**
+     * Số lần đọc đúng số CCCD / không đọc được trong mỗi iteration, JMH in thành cột phụ của kết quả.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class DecodeOutcome {
+        public long decoded;
+        public long missed;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            decoded = 0;
+            missed = 0;
+        }
+
+        void record(boolean success) {
+            if (success) {
+                decoded++;
+            } else {
+                missed++;
+            }
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        executor = newExecutor();
+        scanner = new CccdQrScanner(executor);
+        legacyDecoder = new LegacyCccdQrDecoder();
+        image = fixtureImage(fixture);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    @Benchmark
+    public CccdExtractedData localizedScanner(DecodeOutcome outcome) {
+        CccdExtractedData data = scanner.scanQrFromBytes(image);
+        outcome.record(data != null && SAMPLE_ID.equals(data.getIdCard()));
+        return data;
+    }
+
+    @Benchmark
+    public CccdExtractedData legacyMultiPass(DecodeOutcome outcome) {
+        String text = legacyDecoder.decode(image);
+        CccdExtractedData data = text != null ? scanner.parseCccdQrText(text) : null;
+        outcome.record(data != null && SAMPLE_ID.equals(data.getIdCard()));
+        return data;
+    }
+
+    private static ThreadPoolTaskExecutor newExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(4);
+        executor.setMaxPoolSize(4);
+        executor.setThreadNamePrefix("bench-qr-");
+        executor.initialize();
+        return executor;
+    }
+
+    static byte[] fixtureImage(String name) throws WriterException, IOException {
+        return switch (name) {
+            case "upright" -> png(render(360, 0, false));
+            case "rotated90" -> png(render(360, 90, false));
+            case "skewed15" -> png(render(360, 15, false));
+            case "small" -> png(render(140, 0, false));
+            // Mất nét do rung tay: làm mờ hộp 7x7 (~1 module QR)
+            case "blurred" -> png(blur(render(360, 0, false), 7));
+            // Chụp thiếu sáng: đen/trắng chỉ còn cách nhau ~60 mức xám
+            case "lowContrast" -> png(compressContrast(render(360, 0, false), 0.25));
+            // QR nhỏ, hơi nghiêng trên nền ảnh chụp có nhiễu, lưu JPEG chất lượng thấp
+            case "smallOnPhoto" -> jpeg(render(120, 8, true));
+            default -> throw new IllegalArgumentException("Unknown fixture: " + name);
+        };
+    }
+
+    // Ảnh 1600x1000 (nền xám nhạt hoặc nền "ảnh chụp"), QR đặt lệch tâm rồi xoay quanh tâm QR
+    private static BufferedImage render(int qrSize, double rotationDegrees, boolean photoBackground)
+            throws WriterException {
+        BufferedImage qr = MatrixToImageWriter.toBufferedImage(new QRCodeWriter().encode(SAMPLE_QR_TEXT,
+                BarcodeFormat.QR_CODE, qrSize, qrSize, Map.of(EncodeHintType.CHARACTER_SET, "UTF-8")));
+
+        BufferedImage canvas = new BufferedImage(1600, 1000, BufferedImage.TYPE_BYTE_GRAY);
+        if (photoBackground) {
+            paintPhotoBackground(canvas);
+        }
+        Graphics2D g = canvas.createGraphics();
+        try {
+            if (!photoBackground) {
+                g.setColor(new Color(225, 225, 225));
+                g.fillRect(0, 0, canvas.getWidth(), canvas.getHeight());
+            }
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            int x = 1000;
+            int y = 300;
+            AffineTransform transform = new AffineTransform();
+            transform.rotate(Math.toRadians(rotationDegrees), x + qrSize / 2.0, y + qrSize / 2.0);
+            transform.translate(x, y);
+            g.drawImage(qr, transform, null);
+        } finally {
+            g.dispose();
+        }
+        if (photoBackground) {
+            addNoise(canvas, 18);
+        }
+        return canvas;
+    }
+
+    // Nền chuyển sắc + các mảng tối sáng ngẫu nhiên, seed cố định để các lần chạy giống nhau
+    private static void paintPhotoBackground(BufferedImage canvas) {
+        Random random = new Random(42);
+        Graphics2D g = canvas.createGraphics();
+        try {
+            g.setPaint(new GradientPaint(0, 0, new Color(90, 90, 90), canvas.getWidth(), 0,
+                    new Color(170, 170, 170)));
+            g.fillRect(0, 0, canvas.getWidth(), canvas.getHeight());
+            for (int i = 0; i < 40; i++) {
+                int shade = 60 + random.nextInt(150);
+                g.setColor(new Color(shade, shade, shade));
+                g.fillRect(random.nextInt(1600), random.nextInt(1000), 50 + random.nextInt(400),
+                        50 + random.nextInt(300));
+            }
+        } finally {
+            g.dispose();
+        }
+    }
+
+    // Nhiễu cảm biến (Gauss) trên toàn ảnh, kể cả vùng QR
+    private static void addNoise(BufferedImage canvas, double sigma) {
+        Random random = new Random(7);
+        WritableRaster raster = canvas.getRaster();
+        for (int y = 0; y < canvas.getHeight(); y++) {
+            for (int x = 0; x < canvas.getWidth(); x++) {
+                raster.setSample(x, y, 0, clamp(raster.getSample(x, y, 0) + (int) (random.nextGaussian() * sigma)));
+            }
+        }
+    }
+
+    private static BufferedImage blur(BufferedImage src, int size) {
+        float[] kernel = new float[size * size];
+        Arrays.fill(kernel, 1f / kernel.length);
+        return new ConvolveOp(new Kernel(size, size, kernel), ConvolveOp.EDGE_NO_OP, null).filter(src, null);
+    }
+
+    private static BufferedImage compressContrast(BufferedImage src, double factor) {
+        WritableRaster raster = src.getRaster();
+        for (int y = 0; y < src.getHeight(); y++) {
+            for (int x = 0; x < src.getWidth(); x++) {
+                raster.setSample(x, y, 0, clamp((int) (128 + (raster.getSample(x, y, 0) - 128) * factor)));
+            }
+        }
+        return src;
+    }
+
+    private static int clamp(int value) {
+        return Math.max(0, Math.min(255, value));
+    }
+
+    private static byte[] png(BufferedImage image) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+
+    private static byte[] jpeg(BufferedImage image) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpg", out);
+        return out.toByteArray();
+    }
+
+    /**
+     * Một lượt đọc mỗi ảnh mẫu bằng cả hai chiến lược (decode là tất định), in tỷ lệ đọc đúng theo chiến lược.
+     */
+    private static void logSuccessRates() throws Exception {
+        ThreadPoolTaskExecutor executor = newExecutor();
+        try {
+            CccdQrScanner scanner = new CccdQrScanner(executor);
+            LegacyCccdQrDecoder legacyDecoder = new LegacyCccdQrDecoder();
+            int localizedDecoded = 0;
+            int legacyDecoded = 0;
+            for (String name : FIXTURES) {
+                byte[] bytes = fixtureImage(name);
+                CccdExtractedData localized = scanner.scanQrFromBytes(bytes);
+                String legacyText = legacyDecoder.decode(bytes);
+                CccdExtractedData legacy = legacyText != null ? scanner.parseCccdQrText(legacyText) : null;
+                boolean localizedOk = localized != null && SAMPLE_ID.equals(localized.getIdCard());
+                boolean legacyOk = legacy != null && SAMPLE_ID.equals(legacy.getIdCard());
+                localizedDecoded += localizedOk ? 1 : 0;
+                legacyDecoded += legacyOk ? 1 : 0;
+                log.info("[QR-BENCH] {}: localized={}, legacy={}", name, localizedOk, legacyOk);
+            }
+            log.info("[QR-BENCH] success rate: localized={}/{}, legacy={}/{}", localizedDecoded, FIXTURES.length,
+                    legacyDecoded, FIXTURES.length);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        logSuccessRates();
+        new Runner(new OptionsBuilder()
+                .include(CccdQrScannerBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
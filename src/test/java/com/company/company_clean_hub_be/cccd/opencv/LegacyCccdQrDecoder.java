@@ -0,0 +1,135 @@
+package com.company.company_clean_hub_be.cccd.opencv;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.util.List;
+import java.util.Map;
+
+import javax.imageio.ImageIO;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.MultiFormatReader;
+import com.google.zxing.Result;
+import com.google.zxing.client.j2se.BufferedImageLuminanceSource;
+import com.google.zxing.common.GlobalHistogramBinarizer;
+import com.google.zxing.common.HybridBinarizer;
+
+/**
+ * Chiến lược decode QR CCCD trước khi có bước định vị bằng OpenCV, giữ lại làm mốc so sánh trong
+ * CccdQrScannerBenchmark: đọc ảnh bằng ImageIO rồi lần lượt thử 4 góc xoay × (toàn ảnh, góc trên phải
+ * 2x, 3x, góc trên trái 2x), mỗi lần thử 3 cách nhị phân hóa, tuần tự trên một luồng.
+ */
+final class LegacyCccdQrDecoder {
+
+    private static final int[] ANGLES = { 0, 90, 270, 180 };
+    private static final Map<DecodeHintType, Object> HINTS = Map.of(
+            DecodeHintType.TRY_HARDER, Boolean.TRUE,
+            DecodeHintType.CHARACTER_SET, "UTF-8",
+            DecodeHintType.POSSIBLE_FORMATS, List.of(BarcodeFormat.QR_CODE));
+
+    /**
+     * @return Nội dung QR, null nếu không đọc được
+     */
+    String decode(byte[] imageBytes) {
+        try {
+            BufferedImage original = ImageIO.read(new ByteArrayInputStream(imageBytes));
+            if (original == null) {
+                return null;
+            }
+            for (int angle : ANGLES) {
+                BufferedImage image = rotate(original, angle);
+                Result result = tryDecode(image);
+                if (result == null) {
+                    result = tryDecode(cropAndScale(image, 0.45, 0.0, 0.55, 0.55, 2.0));
+                }
+                if (result == null) {
+                    result = tryDecode(cropAndScale(image, 0.45, 0.0, 0.55, 0.55, 3.0));
+                }
+                if (result == null) {
+                    result = tryDecode(cropAndScale(image, 0.0, 0.0, 0.55, 0.55, 2.0));
+                }
+                if (result != null) {
+                    return result.getText().trim();
+                }
+            }
+            return null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static Result tryDecode(BufferedImage image) {
+        if (image == null) {
+            return null;
+        }
+        Result result = decode(new BinaryBitmap(new HybridBinarizer(new BufferedImageLuminanceSource(image))));
+        if (result == null) {
+            result = decode(new BinaryBitmap(new GlobalHistogramBinarizer(new BufferedImageLuminanceSource(image))));
+        }
+        if (result == null) {
+            LuminanceSource gray = new BufferedImageLuminanceSource(toGrayscale(image));
+            result = decode(new BinaryBitmap(new HybridBinarizer(gray)));
+        }
+        return result;
+    }
+
+    private static Result decode(BinaryBitmap bitmap) {
+        try {
+            Result result = new MultiFormatReader().decode(bitmap, HINTS);
+            return result.getText() != null && !result.getText().isBlank() ? result : null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static BufferedImage rotate(BufferedImage src, int angle) {
+        if (angle == 0) {
+            return src;
+        }
+        int w = src.getWidth();
+        int h = src.getHeight();
+        boolean quarterTurn = angle == 90 || angle == 270;
+        int newW = quarterTurn ? h : w;
+        int newH = quarterTurn ? w : h;
+        BufferedImage rotated = new BufferedImage(newW, newH, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = rotated.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.translate((newW - w) / 2.0, (newH - h) / 2.0);
+        g.rotate(Math.toRadians(angle), w / 2.0, h / 2.0);
+        g.drawImage(src, 0, 0, null);
+        g.dispose();
+        return rotated;
+    }
+
+    private static BufferedImage toGrayscale(BufferedImage src) {
+        BufferedImage dest = new BufferedImage(src.getWidth(), src.getHeight(), BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D g = dest.createGraphics();
+        g.drawImage(src, 0, 0, null);
+        g.dispose();
+        return dest;
+    }
+
+    private static BufferedImage cropAndScale(BufferedImage src, double rx, double ry, double rw, double rh,
+            double scale) {
+        int x = (int) (src.getWidth() * rx);
+        int y = (int) (src.getHeight() * ry);
+        int w = Math.min((int) (src.getWidth() * rw), src.getWidth() - x);
+        int h = Math.min((int) (src.getHeight() * rh), src.getHeight() - y);
+        if (w <= 0 || h <= 0) {
+            return null;
+        }
+        int newW = (int) (w * scale);
+        int newH = (int) (h * scale);
+        BufferedImage scaled = new BufferedImage(newW, newH, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = scaled.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.drawImage(src.getSubimage(x, y, w, h), 0, 0, newW, newH, null);
+        g.dispose();
+        return scaled;
+    }
+}
@@ -0,0 +1,61 @@
+package com.company.company_clean_hub_be.schedule;
+
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.company.company_clean_hub_be.service.AttendanceSummaryService;
+
+class AttendanceSummaryRebuildSchedulerTest {
+
+    private AttendanceSummaryService summaryService;
+    private AttendanceSummaryRebuildScheduler scheduler;
+
+    @BeforeEach
+    void setUp() {
+        summaryService = mock(AttendanceSummaryService.class);
+        scheduler = new AttendanceSummaryRebuildScheduler(summaryService);
+        ReflectionTestUtils.setField(scheduler, "batchSize", 100);
+    }
+
+    @Test
+    void reconcileRebuildsOnlyDriftedRanges() {
+        when(summaryService.findMaxAssignmentId()).thenReturn(250L);
+        when(summaryService.countMismatches(100L, 200L)).thenReturn(3);
+
+        scheduler.executeReconcileAttendanceSummary();
+
+        verify(summaryService).countMismatches(0L, 100L);
+        verify(summaryService).countMismatches(100L, 200L);
+        verify(summaryService).countMismatches(200L, 250L);
+        verify(summaryService, times(1)).rebuildRange(anyLong(), anyLong());
+        verify(summaryService).rebuildRange(100L, 200L);
+    }
+
+    @Test
+    void startupBuildsEmptySummaryTable() {
+        when(summaryService.needsInitialBuild()).thenReturn(true);
+        when(summaryService.findMaxAssignmentId()).thenReturn(150L);
+
+        scheduler.buildIfEmpty();
+
+        verify(summaryService).rebuildRange(0L, 100L);
+        verify(summaryService).rebuildRange(100L, 150L);
+    }
+
+    @Test
+    void startupSkipsBuildWhenSummaryHasRows() {
+        when(summaryService.needsInitialBuild()).thenReturn(false);
+
+        scheduler.buildIfEmpty();
+
+        verify(summaryService, never()).rebuildRange(anyLong(), anyLong());
+    }
+}
@@ -0,0 +1,126 @@
+package com.company.company_clean_hub_be.schedule;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.company.company_clean_hub_be.repository.VerificationImageRepository;
+import com.company.company_clean_hub_be.support.InMemoryFileStorageService;
+
+class ImageCleanupSchedulerTest {
+
+    private VerificationImageRepository repository;
+    private InMemoryFileStorageService storage;
+    private ThreadPoolTaskExecutor executor;
+    private ImageCleanupScheduler scheduler;
+
+    // Ảnh quá hạn: [id, cloudinaryPublicId], sắp theo id
+    private final List<Object[]> candidates = new ArrayList<>();
+    private final List<Long> clearedIds = Collections.synchronizedList(new ArrayList<>());
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(VerificationImageRepository.class);
+        storage = new InMemoryFileStorageService();
+        executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(2);
+        executor.setMaxPoolSize(2);
+        executor.initialize();
+
+        when(repository.findCleanupCandidatesAfterId(any(), anyLong(), any())).thenAnswer(inv -> {
+            long lastId = inv.getArgument(1);
+            Pageable pageable = inv.getArgument(2);
+            return candidates.stream()
+                    .filter(row -> (Long) row[0] > lastId)
+                    .limit(pageable.getPageSize())
+                    .toList();
+        });
+        when(repository.clearCloudinaryData(anyList())).thenAnswer(inv -> {
+            List<Long> ids = inv.getArgument(0);
+            clearedIds.addAll(ids);
+            return ids.size();
+        });
+
+        scheduler = new ImageCleanupScheduler(repository, storage, executor);
+        ReflectionTestUtils.setField(scheduler, "retentionDays", 90);
+        ReflectionTestUtils.setField(scheduler, "pageSize", 4);
+        ReflectionTestUtils.setField(scheduler, "deleteBatchSize", 3);
+        ReflectionTestUtils.setField(scheduler, "maxAttempts", 3);
+        ReflectionTestUtils.setField(scheduler, "retryBaseMillis", 1L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    void deletesAllPagesInBoundedBatchesAndClearsRows() {
+        for (long id = 1; id <= 10; id++) {
+            addCandidate(id, "verification/img-" + id);
+        }
+
+        scheduler.cleanupOldImages();
+
+        assertThat(clearedIds).containsExactlyInAnyOrder(1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L, 10L);
+        assertThat(storage.getDeleteCalls()).allSatisfy(batch -> assertThat(batch).hasSizeLessThanOrEqualTo(3));
+        for (long id = 1; id <= 10; id++) {
+            assertThat(storage.contains("verification/img-" + id)).isFalse();
+        }
+    }
+
+    @Test
+    void retriesTransientStorageFailure() {
+        addCandidate(1L, "verification/img-1");
+        addCandidate(2L, "verification/img-2");
+        storage.failNextDeleteCalls(2);
+
+        scheduler.cleanupOldImages();
+
+        assertThat(storage.getDeleteCalls()).hasSize(3);
+        assertThat(clearedIds).containsExactlyInAnyOrder(1L, 2L);
+    }
+
+    @Test
+    void keepsRowsWhenStorageKeepsFailing() {
+        addCandidate(1L, "verification/img-1");
+        storage.failNextDeleteCalls(Integer.MAX_VALUE);
+
+        scheduler.cleanupOldImages();
+
+        assertThat(storage.getDeleteCalls()).hasSize(3);
+        assertThat(storage.contains("verification/img-1")).isTrue();
+        verify(repository, never()).clearCloudinaryData(anyList());
+    }
+
+    @Test
+    void clearsRowsWithEmptyPublicIdWithoutCallingStorage() {
+        candidates.add(new Object[] { 1L, "" });
+
+        scheduler.cleanupOldImages();
+
+        assertThat(storage.getDeleteCalls()).isEmpty();
+        assertThat(clearedIds).containsExactly(1L);
+    }
+
+    private void addCandidate(long id, String publicId) {
+        storage.put(publicId, "data");
+        candidates.add(new Object[] { id, publicId });
+    }
+}
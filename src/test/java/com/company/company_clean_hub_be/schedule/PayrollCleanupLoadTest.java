@@ -0,0 +1,163 @@
+package com.company.company_clean_hub_be.schedule;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import com.company.company_clean_hub_be.entity.AssignmentScope;
+import com.company.company_clean_hub_be.entity.AssignmentType;
+import com.company.company_clean_hub_be.entity.Contract;
+import com.company.company_clean_hub_be.entity.ContractType;
+import com.company.company_clean_hub_be.entity.Employee;
+import com.company.company_clean_hub_be.entity.EmploymentType;
+import com.company.company_clean_hub_be.entity.Role;
+import com.company.company_clean_hub_be.repository.AssignmentRepository;
+import com.company.company_clean_hub_be.repository.AttendanceRepository;
+import com.company.company_clean_hub_be.support.MySqlIntegrationTest;
+
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Load test cho job dọn payroll orphan trên MySQL thật: nhân viên × tháng payroll chưa thanh toán, tháng chẵn
+ * có chấm công, tháng lẻ là orphan. So sánh số câu lệnh SQL và thời gian của cách kiểm tra cũ (hai truy vấn
+ * cho mỗi payroll) với lượt cleanupOrphanPayrolls (một truy vấn gom nhóm + một transaction xóa mỗi trang).
+ * Chỉ chạy khi bật tay (cần Docker):
+ * mvn test -Dtest=PayrollCleanupLoadTest -Dloadtest.enabled=true
+ *   [-Dloadtest.payroll-cleanup.employees=200 -Dloadtest.payroll-cleanup.months=60]
+ */
+@Slf4j
+@Tag("load")
+@EnabledIfSystemProperty(named = "loadtest.enabled", matches = "true")
+class PayrollCleanupLoadTest extends MySqlIntegrationTest {
+
+    // Tháng riêng của load test, không đụng tháng của các test MySQL khác
+    private static final YearMonth FIRST_MONTH = YearMonth.of(2010, 1);
+    private static final int BATCH_SIZE = 5000;
+
+    @Autowired
+    private PayrollCleanupScheduler scheduler;
+
+    @Autowired
+    private AssignmentRepository assignmentRepository;
+
+    @Autowired
+    private AttendanceRepository attendanceRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void cleanupIssuesAFewStatementsPerPageInsteadOfTwoQueriesPerPayroll() {
+        int employeeCount = Integer.getInteger("loadtest.payroll-cleanup.employees", 200);
+        int months = Integer.getInteger("loadtest.payroll-cleanup.months", 60);
+        List<Long> employeeIds = seed(employeeCount, months);
+        int payrolls = employeeCount * months;
+        int orphans = employeeCount * (months / 2);
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+
+        // Cách cũ: hai truy vấn cho mỗi payroll (chỉ đọc, chưa tính câu lệnh xóa)
+        statistics.clear();
+        long legacyStart = System.nanoTime();
+        int legacyOrphans = 0;
+        for (Long employeeId : employeeIds) {
+            for (int i = 0; i < months; i++) {
+                YearMonth month = FIRST_MONTH.plusMonths(i);
+                boolean hasData = !assignmentRepository.findDistinctAssignmentsByAttendanceMonthAndEmployee(
+                        month.getMonthValue(), month.getYear(), employeeId).isEmpty()
+                        || !attendanceRepository.findAttendancesByMonthYearAndEmployee(
+                                month.getMonthValue(), month.getYear(), employeeId).isEmpty();
+                legacyOrphans += hasData ? 0 : 1;
+            }
+        }
+        long legacyMillis = (System.nanoTime() - legacyStart) / 1_000_000;
+        long legacyStatements = statistics.getPrepareStatementCount();
+
+        statistics.clear();
+        long start = System.nanoTime();
+        scheduler.cleanupOrphanPayrolls();
+        long cleanupMillis = (System.nanoTime() - start) / 1_000_000;
+        long cleanupStatements = statistics.getPrepareStatementCount();
+        statistics.setStatisticsEnabled(false);
+
+        log.info("[LOADTEST] payroll cleanup: {} payrolls, {} orphans", payrolls, orphans);
+        log.info("[LOADTEST] legacy per-payroll lookup: {} statements, {}ms", legacyStatements, legacyMillis);
+        log.info("[LOADTEST] cleanupOrphanPayrolls (lookup + delete): {} statements, {}ms", cleanupStatements,
+                cleanupMillis);
+
+        assertThat(legacyOrphans).isEqualTo(orphans);
+        Map<Boolean, Long> remaining = remainingByBacked(employeeIds);
+        assertThat(remaining.getOrDefault(false, 0L)).as("orphan payroll còn lại").isZero();
+        assertThat(remaining.getOrDefault(true, 0L)).as("payroll có chấm công còn lại")
+                .isEqualTo((long) payrolls - orphans);
+        assertThat(cleanupStatements)
+                .as("cleanup: %d câu lệnh / %dms, cách cũ: %d câu lệnh / %dms", cleanupStatements, cleanupMillis,
+                        legacyStatements, legacyMillis)
+                .isLessThan(legacyStatements / 10);
+    }
+
+    // Nhân viên có một assignment; payroll cho mọi tháng, chấm công (ngày 15) cho các tháng chẵn
+    private List<Long> seed(int employeeCount, int months) {
+        Role role = saveRole(unique("ROLE"));
+        Contract contract = saveContract(saveCustomer(role), ContractType.MONTHLY_ACTUAL, FIRST_MONTH.atDay(1));
+        List<Object[]> payrollRows = new ArrayList<>();
+        List<Object[]> attendanceRows = new ArrayList<>();
+        List<Long> employeeIds = new ArrayList<>();
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        for (int e = 0; e < employeeCount; e++) {
+            Employee employee = saveEmployee(role, EmploymentType.CONTRACT_STAFF, null, null, null);
+            Long assignmentId = saveAssignment(employee, contract, AssignmentType.FIXED_BY_DAY,
+                    AssignmentScope.CONTRACT, FIRST_MONTH.atDay(1), new BigDecimal("250000"), 1, null).getId();
+            employeeIds.add(employee.getId());
+            for (int i = 0; i < months; i++) {
+                YearMonth month = FIRST_MONTH.plusMonths(i);
+                payrollRows.add(new Object[] { employee.getId(), BigDecimal.ZERO, "UNPAID", BigDecimal.ZERO,
+                        Timestamp.valueOf(month.atDay(1).atStartOfDay()), now, month.getMonthValue(), month.getYear() });
+                if (i % 2 == 0) {
+                    attendanceRows.add(new Object[] { assignmentId, employee.getId(), Date.valueOf(month.atDay(15)),
+                            new BigDecimal("8"), false, false, now });
+                }
+            }
+        }
+        batchInsert("INSERT INTO payrolls (employee_id, final_salary, status, paid_amount, created_at, updated_at, "
+                + "payroll_month, payroll_year) VALUES (?, ?, ?, ?, ?, ?, ?, ?)", payrollRows);
+        batchInsert("INSERT INTO attendance (assignment_id, employee_id, date, work_hours, is_overtime, deleted, "
+                + "created_at) VALUES (?, ?, ?, ?, ?, ?, ?)", attendanceRows);
+        return employeeIds;
+    }
+
+    private void batchInsert(String sql, List<Object[]> rows) {
+        for (int from = 0; from < rows.size(); from += BATCH_SIZE) {
+            jdbcTemplate.batchUpdate(sql, rows.subList(from, Math.min(from + BATCH_SIZE, rows.size())));
+        }
+    }
+
+    // Số payroll còn lại của các nhân viên seed, chia theo tháng có chấm công hay không
+    private Map<Boolean, Long> remainingByBacked(List<Long> employeeIds) {
+        String ids = employeeIds.stream().map(String::valueOf).collect(Collectors.joining(","));
+        return jdbcTemplate.queryForList("SELECT created_at FROM payrolls WHERE employee_id IN (" + ids + ")",
+                        LocalDateTime.class)
+                .stream()
+                .collect(Collectors.partitioningBy(
+                        createdAt -> ChronoUnit.MONTHS.between(FIRST_MONTH, YearMonth.from(createdAt)) % 2 == 0,
+                        Collectors.counting()));
+    }
+}
@@ -0,0 +1,221 @@
+package com.company.company_clean_hub_be.schedule;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.company.company_clean_hub_be.entity.Employee;
+import com.company.company_clean_hub_be.entity.Payroll;
+import com.company.company_clean_hub_be.entity.PayrollStatus;
+import com.company.company_clean_hub_be.repository.AttendanceRepository;
+import com.company.company_clean_hub_be.repository.PaymentHistoryRepository;
+import com.company.company_clean_hub_be.repository.PayrollRepository;
+
+class PayrollCleanupSchedulerTest {
+
+    private static final LocalDateTime CREATED_AT = LocalDateTime.of(2026, 5, 10, 8, 0);
+
+    private PayrollRepository payrollRepository;
+    private AttendanceRepository attendanceRepository;
+    private PaymentHistoryRepository paymentHistoryRepository;
+    private TransactionTemplate transactionTemplate;
+    private PayrollCleanupScheduler scheduler;
+
+    // Payroll chưa thanh toán đủ, sắp theo id (repository đã loại PAID trong SQL)
+    private final List<Payroll> unpaid = new ArrayList<>();
+    // (employeeId, tháng) còn chấm công
+    private final Set<String> attendanceMonths = new HashSet<>();
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        payrollRepository = mock(PayrollRepository.class);
+        attendanceRepository = mock(AttendanceRepository.class);
+        paymentHistoryRepository = mock(PaymentHistoryRepository.class);
+        transactionTemplate = mock(TransactionTemplate.class);
+
+        when(payrollRepository.findUnpaidPayrollsAfterId(anyLong(), any())).thenAnswer(inv -> {
+            long lastId = inv.getArgument(0);
+            Pageable pageable = inv.getArgument(1);
+            return unpaid.stream()
+                    .filter(p -> p.getId() > lastId)
+                    .limit(pageable.getPageSize())
+                    .toList();
+        });
+        when(attendanceRepository.findEmployeeMonthsWithAttendance(anyCollection(), any(), any())).thenAnswer(inv -> {
+            Collection<Long> employeeIds = inv.getArgument(0);
+            LocalDate from = inv.getArgument(1);
+            LocalDate to = inv.getArgument(2);
+            List<Object[]> rows = new ArrayList<>();
+            for (String key : attendanceMonths) {
+                String[] parts = key.split("@");
+                long employeeId = Long.parseLong(parts[0]);
+                YearMonth month = YearMonth.parse(parts[1]);
+                if (employeeIds.contains(employeeId) && !month.atDay(1).isBefore(from) && month.atDay(1).isBefore(to)) {
+                    rows.add(new Object[] { employeeId, month.getYear(), month.getMonthValue() });
+                }
+            }
+            return rows;
+        });
+        when(payrollRepository.findUnpaidIdsByIdIn(anyCollection()))
+                .thenAnswer(inv -> new ArrayList<>((Collection<Long>) inv.getArgument(0)));
+        when(payrollRepository.deleteByIdIn(anyCollection()))
+                .thenAnswer(inv -> ((Collection<Long>) inv.getArgument(0)).size());
+        when(transactionTemplate.execute(any())).thenAnswer(
+                inv -> ((TransactionCallback<?>) inv.getArgument(0)).doInTransaction(mock(TransactionStatus.class)));
+
+        scheduler = new PayrollCleanupScheduler(payrollRepository, attendanceRepository, paymentHistoryRepository,
+                transactionTemplate);
+        ReflectionTestUtils.setField(scheduler, "pageSize", 2);
+    }
+
+    @Test
+    void deletesOnlyOrphanPayrollsAcrossAllPages() {
+        payroll(1L, 10L);
+        payroll(2L, 20L);
+        payroll(3L, 30L);
+        payroll(4L, 40L);
+        payroll(5L, 50L);
+        hasAttendance(20L, YearMonth.of(2026, 5));
+        hasAttendance(30L, YearMonth.of(2026, 5));
+
+        scheduler.cleanupOrphanPayrolls();
+
+        assertThat(deletedIds()).containsExactly(1L, 4L, 5L);
+    }
+
+    @Test
+    void issuesOneGroupedLookupAndOneTransactionPerPage() {
+        for (long id = 1; id <= 5; id++) {
+            payroll(id, id * 10);
+        }
+
+        scheduler.cleanupOrphanPayrolls();
+
+        // 5 dòng, trang 2 → 3 trang (2, 2, 1), trang cuối ngắn nên không truy vấn thêm
+        verify(payrollRepository).findUnpaidPayrollsAfterId(eq(0L), any());
+        verify(payrollRepository).findUnpaidPayrollsAfterId(eq(2L), any());
+        verify(payrollRepository).findUnpaidPayrollsAfterId(eq(4L), any());
+        verify(payrollRepository, times(3)).findUnpaidPayrollsAfterId(anyLong(), any());
+        verify(attendanceRepository, times(3)).findEmployeeMonthsWithAttendance(anyCollection(), any(), any());
+        verify(transactionTemplate, times(3)).execute(any());
+        verify(payrollRepository, never()).findAll();
+    }
+
+    @Test
+    void looksUpAttendanceAcrossTheMonthsOfThePageOnly() {
+        payroll(1L, 10L).setCreatedAt(LocalDateTime.of(2026, 4, 1, 0, 0));
+        payroll(2L, 10L).setCreatedAt(LocalDateTime.of(2026, 6, 1, 0, 0));
+        // Chấm công tháng 5 không giữ payroll tháng 4 / tháng 6 của cùng nhân viên
+        hasAttendance(10L, YearMonth.of(2026, 5));
+        hasAttendance(10L, YearMonth.of(2026, 6));
+
+        scheduler.cleanupOrphanPayrolls();
+
+        verify(attendanceRepository).findEmployeeMonthsWithAttendance(eq(Set.of(10L)),
+                eq(LocalDate.of(2026, 4, 1)), eq(LocalDate.of(2026, 7, 1)));
+        assertThat(deletedIds()).containsExactly(1L);
+    }
+
+    @Test
+    void deletesPaymentHistoryAndUnlinksAttendanceBeforeOrphanPayroll() {
+        payroll(1L, 10L);
+
+        scheduler.cleanupOrphanPayrolls();
+
+        InOrder order = inOrder(paymentHistoryRepository, attendanceRepository, payrollRepository);
+        order.verify(payrollRepository).findUnpaidIdsByIdIn(List.of(1L));
+        order.verify(paymentHistoryRepository).deleteByPayrollIdIn(List.of(1L));
+        order.verify(attendanceRepository).unlinkPayrolls(List.of(1L));
+        order.verify(payrollRepository).deleteByIdIn(List.of(1L));
+    }
+
+    @Test
+    void keepsOrphanThatWasPaidBeforeDeletion() {
+        payroll(1L, 10L);
+        payroll(2L, 20L);
+        when(payrollRepository.findUnpaidIdsByIdIn(List.of(1L, 2L))).thenReturn(List.of(2L));
+
+        scheduler.cleanupOrphanPayrolls();
+
+        verify(paymentHistoryRepository).deleteByPayrollIdIn(List.of(2L));
+        assertThat(deletedIds()).containsExactly(2L);
+    }
+
+    @Test
+    void continuesWithNextPageWhenDeletingAPageFails() {
+        for (long id = 1; id <= 4; id++) {
+            payroll(id, id * 10);
+        }
+        when(payrollRepository.deleteByIdIn(List.of(1L, 2L))).thenThrow(new IllegalStateException("lock timeout"));
+
+        scheduler.cleanupOrphanPayrolls();
+
+        verify(payrollRepository).deleteByIdIn(List.of(3L, 4L));
+    }
+
+    @Test
+    void skipsPayrollWithoutEmployeeOrCreatedAt() {
+        Payroll noEmployee = payroll(1L, 10L);
+        noEmployee.setEmployee(null);
+        Payroll noCreatedAt = payroll(2L, 20L);
+        noCreatedAt.setCreatedAt(null);
+
+        scheduler.cleanupOrphanPayrolls();
+
+        verify(attendanceRepository, never()).findEmployeeMonthsWithAttendance(anyCollection(), any(), any());
+        verify(payrollRepository, never()).deleteByIdIn(anyCollection());
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Long> deletedIds() {
+        ArgumentCaptor<Collection<Long>> deleted = ArgumentCaptor.forClass(Collection.class);
+        verify(payrollRepository, atLeast(0)).deleteByIdIn(deleted.capture());
+        return deleted.getAllValues().stream().flatMap(Collection::stream).toList();
+    }
+
+    private void hasAttendance(Long employeeId, YearMonth month) {
+        attendanceMonths.add(employeeId + "@" + month);
+    }
+
+    private Payroll payroll(Long id, Long employeeId) {
+        Employee employee = new Employee();
+        employee.setId(employeeId);
+        Payroll payroll = Payroll.builder()
+                .id(id)
+                .employee(employee)
+                .status(PayrollStatus.UNPAID)
+                .createdAt(CREATED_AT)
+                .build();
+        unpaid.add(payroll);
+        return payroll;
+    }
+}
@@ -0,0 +1,104 @@
+package com.company.company_clean_hub_be.service.helper;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+
+import com.company.company_clean_hub_be.entity.Assignment;
+import com.company.company_clean_hub_be.entity.Attendance;
+import com.company.company_clean_hub_be.entity.Payroll;
+import com.company.company_clean_hub_be.service.AttendanceSummaryService;
+
+class AttendanceSummaryListenerTest {
+
+    private AttendanceSummaryService summaryService;
+    private AttendanceSummaryListener listener;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        summaryService = mock(AttendanceSummaryService.class);
+        ObjectProvider<AttendanceSummaryService> provider = mock(ObjectProvider.class);
+        when(provider.getObject()).thenReturn(summaryService);
+        listener = new AttendanceSummaryListener(provider);
+    }
+
+    private static Attendance attendance(Long assignmentId, LocalDate date) {
+        return Attendance.builder()
+                .id(1L)
+                .assignment(Assignment.builder().id(assignmentId).build())
+                .date(date)
+                .bonus(new BigDecimal("10000"))
+                .penalty(BigDecimal.ZERO)
+                .supportCost(BigDecimal.ZERO)
+                .deleted(false)
+                .build();
+    }
+
+    @Test
+    void createMarksOnlyTheAttendanceMonth() {
+        Attendance attendance = attendance(7L, LocalDate.of(2025, 3, 14));
+
+        listener.onAttendanceCreated(attendance);
+
+        verify(summaryService).markDirty(7L, LocalDate.of(2025, 3, 14));
+        verify(summaryService, never()).markDirty(any());
+    }
+
+    @Test
+    void updateWithoutSummaryColumnsChangedIsSkipped() {
+        Attendance attendance = attendance(7L, LocalDate.of(2025, 3, 14));
+        listener.onAttendanceLoaded(attendance);
+
+        // Gắn payroll / đổi mô tả không ảnh hưởng bảng tổng hợp
+        attendance.setPayroll(Payroll.builder().id(3L).build());
+        attendance.setDescription("Đã chụp ảnh");
+        attendance.setBonus(new BigDecimal("10000.00"));
+        listener.onAttendanceUpdated(attendance);
+
+        verifyNoMoreInteractions(summaryService);
+    }
+
+    @Test
+    void softDeleteMarksTheMonth() {
+        Attendance attendance = attendance(7L, LocalDate.of(2025, 3, 14));
+        listener.onAttendanceLoaded(attendance);
+
+        attendance.setDeleted(true);
+        listener.onAttendanceUpdated(attendance);
+
+        verify(summaryService).markDirty(7L, LocalDate.of(2025, 3, 14));
+    }
+
+    @Test
+    void movingToAnotherMonthMarksOldAndNewMonth() {
+        Attendance attendance = attendance(7L, LocalDate.of(2025, 3, 31));
+        listener.onAttendanceLoaded(attendance);
+
+        attendance.setAssignment(Assignment.builder().id(8L).build());
+        attendance.setDate(LocalDate.of(2025, 4, 1));
+        listener.onAttendanceUpdated(attendance);
+
+        verify(summaryService).markDirty(7L, LocalDate.of(2025, 3, 31));
+        verify(summaryService).markDirty(8L, LocalDate.of(2025, 4, 1));
+    }
+
+    @Test
+    void updateOfDetachedAttendanceMarksCurrentMonth() {
+        Attendance attendance = attendance(7L, LocalDate.of(2025, 3, 14));
+
+        listener.onAttendanceUpdated(attendance);
+
+        verify(summaryService).markDirty(7L, LocalDate.of(2025, 3, 14));
+    }
+}
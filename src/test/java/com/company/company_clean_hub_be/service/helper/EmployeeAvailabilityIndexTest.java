@@ -0,0 +1,185 @@
+package com.company.company_clean_hub_be.service.helper;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import com.company.company_clean_hub_be.repository.AssignmentRepository;
+import com.company.company_clean_hub_be.repository.ContractRepository;
+
+class EmployeeAvailabilityIndexTest {
+
+    private static final long EMPLOYEE_ID = 7L;
+
+    // Khung cho bảng isFree (tháng 3/2026: ngày 1 là Chủ nhật)
+    private static final long MON_WED_FRI_MORNING = 300L; // 08:00–12:00, 01/03–30/03
+    private static final long TUESDAY_AFTERNOON = 400L;   // 13:00–17:00, từ 10/03, không ngày kết thúc
+    private static final long SATURDAY_NO_START = 500L;   // 08:00–12:00, startDate null
+    private static final long SUNDAY_NO_TIME = 600L;      // hợp đồng không có khung giờ
+
+    private AssignmentRepository assignmentRepository;
+    private EmployeeAvailabilityIndex index;
+    // Key: contractId, Value: ngày làm việc; hợp đồng không có trong map làm thứ Hai
+    private final Map<Long, List<DayOfWeek>> contractDays = new HashMap<>();
+
+    @BeforeEach
+    void setUp() {
+        assignmentRepository = mock(AssignmentRepository.class);
+        ContractRepository contractRepository = mock(ContractRepository.class);
+        when(contractRepository.findWorkingDaysByContractIds(anyCollection())).thenAnswer(inv -> {
+            List<Object[]> rows = new ArrayList<>();
+            for (Object id : (java.util.Collection<?>) inv.getArgument(0)) {
+                for (DayOfWeek day : contractDays.getOrDefault((Long) id, List.of(DayOfWeek.MONDAY))) {
+                    rows.add(new Object[] { id, day });
+                }
+            }
+            return rows;
+        });
+        when(assignmentRepository.findAvailabilitySlots(anyCollection()))
+                .thenReturn(rows(slotRow(1L, 100L)));
+        index = new EmployeeAvailabilityIndex(assignmentRepository, contractRepository);
+        index.rebuild();
+    }
+
+    @Test
+    void olderRefreshDoesNotOverwriteNewerOne() {
+        AtomicInteger calls = new AtomicInteger();
+        when(assignmentRepository.findAvailabilitySlotsByEmployeeIds(anyCollection(), any())).thenAnswer(inv -> {
+            if (calls.incrementAndGet() == 1) {
+                // Lần nạp thứ hai bắt đầu và ghi xong trong lúc lần đầu còn đang đọc DB
+                index.refresh(Set.of(EMPLOYEE_ID), Set.of());
+                return rows(slotRow(1L, 100L));
+            }
+            return rows(slotRow(2L, 200L));
+        });
+
+        index.refresh(Set.of(EMPLOYEE_ID), Set.of());
+
+        assertThat(index.getSlots(EMPLOYEE_ID))
+                .extracting(EmployeeAvailabilityIndex.BookedSlot::assignmentId)
+                .containsExactly(2L);
+    }
+
+    @Test
+    void refreshReplacesSlotsWithoutDroppingEmployee() {
+        when(assignmentRepository.findAvailabilitySlotsByEmployeeIds(anyCollection(), any()))
+                .thenReturn(rows(slotRow(2L, 200L)));
+
+        index.refresh(Set.of(EMPLOYEE_ID), Set.of());
+
+        assertThat(index.getSlots(EMPLOYEE_ID))
+                .extracting(EmployeeAvailabilityIndex.BookedSlot::contractId)
+                .containsExactly(200L);
+    }
+
+    @Test
+    void rebuildKeepsRefreshStartedAfterIt() {
+        when(assignmentRepository.findAvailabilitySlots(anyCollection())).thenAnswer(inv -> {
+            // Nạp lại nhân viên trong lúc job dựng lại còn đang đọc snapshot cũ
+            index.refresh(Set.of(EMPLOYEE_ID), Set.of());
+            return rows(slotRow(1L, 100L));
+        });
+        when(assignmentRepository.findAvailabilitySlotsByEmployeeIds(anyCollection(), any()))
+                .thenReturn(rows(slotRow(2L, 200L)));
+
+        index.rebuild();
+
+        assertThat(index.getSlots(EMPLOYEE_ID))
+                .extracting(EmployeeAvailabilityIndex.BookedSlot::assignmentId)
+                .containsExactly(2L);
+    }
+
+    /**
+     * Cùng quy tắc với findAssignmentsWithTimeConflict (startDate <= ngày <= endDate/không giới hạn, giờ
+     * chồng nhau thực sự) cộng kiểm tra ngày làm việc của cả hai hợp đồng.
+     */
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("isFreeCases")
+    void isFreeMatchesBaselineConflictRules(String description, LocalDate from, LocalDate to, Set<DayOfWeek> days,
+                                            LocalTime start, LocalTime end, boolean expectedFree) {
+        contractDays.put(MON_WED_FRI_MORNING, List.of(DayOfWeek.MONDAY, DayOfWeek.WEDNESDAY, DayOfWeek.FRIDAY));
+        contractDays.put(TUESDAY_AFTERNOON, List.of(DayOfWeek.TUESDAY));
+        contractDays.put(SATURDAY_NO_START, List.of(DayOfWeek.SATURDAY));
+        contractDays.put(SUNDAY_NO_TIME, List.of(DayOfWeek.SUNDAY));
+        when(assignmentRepository.findAvailabilitySlots(anyCollection())).thenReturn(rows(
+                slotRow(11L, MON_WED_FRI_MORNING, date(1), date(30), LocalTime.of(8, 0), LocalTime.of(12, 0)),
+                slotRow(12L, TUESDAY_AFTERNOON, date(10), null, LocalTime.of(13, 0), LocalTime.of(17, 0)),
+                slotRow(13L, SATURDAY_NO_START, null, null, LocalTime.of(8, 0), LocalTime.of(12, 0)),
+                slotRow(14L, SUNDAY_NO_TIME, date(1), null, null, null)));
+        index.rebuild();
+
+        boolean free = index.isFree(EMPLOYEE_ID, from, to, EmployeeAvailabilityIndex.toDayMask(days), start, end);
+
+        assertThat(free).as(description).isEqualTo(expectedFree);
+    }
+
+    static Stream<Arguments> isFreeCases() {
+        LocalTime nine = LocalTime.of(9, 0);
+        LocalTime ten = LocalTime.of(10, 0);
+        return Stream.of(
+                Arguments.of("trùng giờ, trùng thứ Hai", date(2), date(2), Set.of(DayOfWeek.MONDAY), nine, ten, false),
+                Arguments.of("chạm giờ kết thúc 12:00", date(2), date(2), Set.of(DayOfWeek.MONDAY),
+                        LocalTime.of(12, 0), LocalTime.of(13, 0), true),
+                Arguments.of("chạm giờ bắt đầu 08:00", date(2), date(2), Set.of(DayOfWeek.MONDAY),
+                        LocalTime.of(7, 0), LocalTime.of(8, 0), true),
+                Arguments.of("bao trùm cả khung", date(2), date(2), Set.of(DayOfWeek.MONDAY),
+                        LocalTime.of(6, 0), LocalTime.of(18, 0), false),
+                Arguments.of("thứ không giao nhau", date(1), date(9), Set.of(DayOfWeek.TUESDAY, DayOfWeek.THURSDAY),
+                        nine, ten, true),
+                Arguments.of("thứ giao nhau nhưng không có trong khoảng ngày", date(6), date(8),
+                        Set.of(DayOfWeek.MONDAY), nine, ten, true),
+                Arguments.of("cả tuần, khung thứ Sáu trong khoảng", date(6), date(8), null, nine, ten, false),
+                Arguments.of("ngày cuối khung (30/03) vẫn bận", date(30), date(30), Set.of(DayOfWeek.MONDAY),
+                        nine, ten, false),
+                Arguments.of("sau ngày kết thúc khung", date(31), null,
+                        Set.of(DayOfWeek.MONDAY, DayOfWeek.WEDNESDAY), nine, ten, true),
+                Arguments.of("trước ngày bắt đầu khung thứ Ba", date(1), date(9), Set.of(DayOfWeek.TUESDAY),
+                        LocalTime.of(14, 0), LocalTime.of(15, 0), true),
+                Arguments.of("đúng ngày bắt đầu khung thứ Ba", date(10), date(10), Set.of(DayOfWeek.TUESDAY),
+                        LocalTime.of(14, 0), LocalTime.of(15, 0), false),
+                Arguments.of("khung không ngày kết thúc vẫn bận về sau", LocalDate.of(2027, 6, 1), null,
+                        Set.of(DayOfWeek.TUESDAY), LocalTime.of(14, 0), LocalTime.of(15, 0), false),
+                Arguments.of("khung không có startDate bị bỏ qua", date(1), null, Set.of(DayOfWeek.SATURDAY),
+                        nine, ten, true),
+                Arguments.of("hợp đồng không có khung giờ không trùng", date(1), null, Set.of(DayOfWeek.SUNDAY),
+                        nine, ten, true));
+    }
+
+    private static LocalDate date(int dayOfMarch) {
+        return LocalDate.of(2026, 3, dayOfMarch);
+    }
+
+    // [assignmentId, employeeId, contractId, startDate, endDate, workStartTime, workEndTime]
+    private static Object[] slotRow(long assignmentId, long contractId, LocalDate startDate, LocalDate endDate,
+                                    LocalTime start, LocalTime end) {
+        return new Object[] { assignmentId, EMPLOYEE_ID, contractId, startDate, endDate, start, end };
+    }
+
+    private static Object[] slotRow(long assignmentId, long contractId) {
+        return slotRow(assignmentId, contractId, LocalDate.of(2026, 1, 1), null, LocalTime.of(8, 0),
+                LocalTime.of(12, 0));
+    }
+
+    private static List<Object[]> rows(Object[]... rows) {
+        return new ArrayList<>(List.of(rows));
+    }
+}
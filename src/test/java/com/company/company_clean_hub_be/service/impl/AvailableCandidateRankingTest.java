@@ -0,0 +1,30 @@
+package com.company.company_clean_hub_be.service.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class AvailableCandidateRankingTest {
+
+    @Test
+    void idleEmployeeWithUnknownDistanceRanksBeforeBusyNearbyOne() {
+        List<EmployeeServiceImpl.AvailableCandidate> candidates = new ArrayList<>(List.of(
+                candidate(1L, 150.0, 2),
+                candidate(2L, null, 0),
+                candidate(3L, 900.0, 1),
+                candidate(4L, null, 1),
+                candidate(5L, 50.0, 1)));
+
+        candidates.sort(EmployeeServiceImpl.CANDIDATE_RANKING);
+
+        assertThat(candidates).extracting(EmployeeServiceImpl.AvailableCandidate::id)
+                .containsExactly(2L, 5L, 3L, 4L, 1L);
+    }
+
+    private static EmployeeServiceImpl.AvailableCandidate candidate(Long id, Double distance, int activeAssignments) {
+        return new EmployeeServiceImpl.AvailableCandidate(new Object[] { id }, distance, activeAssignments);
+    }
+}
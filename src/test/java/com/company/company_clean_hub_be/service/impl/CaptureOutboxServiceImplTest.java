@@ -0,0 +1,125 @@
+package com.company.company_clean_hub_be.service.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.company.company_clean_hub_be.dto.request.WorkScheduleCaptureRequest;
+import com.company.company_clean_hub_be.entity.CaptureOutboxEvent;
+import com.company.company_clean_hub_be.entity.CaptureOutboxPayload;
+import com.company.company_clean_hub_be.entity.VerificationImage;
+import com.company.company_clean_hub_be.entity.WorkSchedule;
+import com.company.company_clean_hub_be.exception.AppException;
+import com.company.company_clean_hub_be.repository.CaptureOutboxEventRepository;
+import com.company.company_clean_hub_be.repository.CaptureOutboxPayloadRepository;
+import com.company.company_clean_hub_be.repository.VerificationImageRepository;
+import com.company.company_clean_hub_be.service.FileStorageService;
+
+class CaptureOutboxServiceImplTest {
+
+    private CaptureOutboxEventRepository outboxRepository;
+    private CaptureOutboxPayloadRepository payloadRepository;
+    private VerificationImageRepository imageRepository;
+    private FileStorageService fileStorageService;
+    private CaptureOutboxServiceImpl service;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        outboxRepository = mock(CaptureOutboxEventRepository.class);
+        payloadRepository = mock(CaptureOutboxPayloadRepository.class);
+        imageRepository = mock(VerificationImageRepository.class);
+        fileStorageService = mock(FileStorageService.class);
+        TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+        doAnswer(inv -> {
+            ((Consumer<TransactionStatus>) inv.getArgument(0)).accept(mock(TransactionStatus.class));
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+        when(outboxRepository.save(any())).thenAnswer(inv -> {
+            CaptureOutboxEvent event = inv.getArgument(0);
+            if (event.getId() == null) {
+                event.setId(99L);
+            }
+            return event;
+        });
+
+        service = new CaptureOutboxServiceImpl(outboxRepository, imageRepository, fileStorageService,
+                payloadRepository, transactionTemplate);
+    }
+
+    @Test
+    void enqueueStoresImageInPayloadTableNotOnEvent() {
+        WorkSchedule schedule = WorkSchedule.builder().id(7L).build();
+        VerificationImage image = VerificationImage.builder().id(3L).build();
+
+        service.enqueue(schedule, image, WorkScheduleCaptureRequest.builder().imageBase64("aGVsbG8=").build());
+
+        ArgumentCaptor<CaptureOutboxEvent> event = ArgumentCaptor.forClass(CaptureOutboxEvent.class);
+        verify(outboxRepository).save(event.capture());
+        assertThat(event.getValue().getImageBase64()).isNull();
+        ArgumentCaptor<CaptureOutboxPayload> payload = ArgumentCaptor.forClass(CaptureOutboxPayload.class);
+        verify(payloadRepository).save(payload.capture());
+        assertThat(payload.getValue().getEventId()).isEqualTo(99L);
+        assertThat(payload.getValue().getImageBase64()).isEqualTo("aGVsbG8=");
+    }
+
+    @Test
+    void uploadAttachesImageAndDeletesPayload() throws Exception {
+        when(outboxRepository.findById(99L)).thenReturn(Optional.of(event()));
+        when(payloadRepository.findImageBase64ByEventId(99L)).thenReturn(Optional.of("aGVsbG8="));
+        VerificationImage image = VerificationImage.builder().id(3L).build();
+        when(imageRepository.findById(3L)).thenReturn(Optional.of(image));
+        when(fileStorageService.storeBase64WithPublicId(eq("aGVsbG8="), anyString(), anyString()))
+                .thenReturn("verification/p1");
+        when(fileStorageService.getSecureUrl("verification/p1")).thenReturn("https://cdn/p1");
+
+        service.uploadPendingImage(99L);
+
+        assertThat(image.getCloudinaryPublicId()).isEqualTo("verification/p1");
+        assertThat(image.getCloudinaryUrl()).isEqualTo("https://cdn/p1");
+        verify(payloadRepository).deleteByEventId(99L);
+    }
+
+    @Test
+    void failedUploadKeepsPayloadForRetry() throws Exception {
+        when(outboxRepository.findById(99L)).thenReturn(Optional.of(event()));
+        when(payloadRepository.findImageBase64ByEventId(99L)).thenReturn(Optional.of("aGVsbG8="));
+        when(imageRepository.findById(3L)).thenReturn(Optional.of(VerificationImage.builder().id(3L).build()));
+        when(fileStorageService.storeBase64WithPublicId(anyString(), anyString(), anyString()))
+                .thenThrow(new java.io.IOException("network"));
+
+        assertThatThrownBy(() -> service.uploadPendingImage(99L)).isInstanceOf(AppException.class);
+
+        verify(payloadRepository, never()).deleteByEventId(any());
+    }
+
+    @Test
+    void uploadIsNoOpWhenPayloadAlreadyGone() throws Exception {
+        when(outboxRepository.findById(99L)).thenReturn(Optional.of(event()));
+        when(payloadRepository.findImageBase64ByEventId(99L)).thenReturn(Optional.empty());
+
+        service.uploadPendingImage(99L);
+
+        verify(fileStorageService, never()).storeBase64WithPublicId(any(), any(), any());
+    }
+
+    private static CaptureOutboxEvent event() {
+        return CaptureOutboxEvent.builder().id(99L).workScheduleId(7L).verificationImageId(3L).build();
+    }
+}
@@ -0,0 +1,239 @@
+package com.company.company_clean_hub_be.service.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import com.company.company_clean_hub_be.cccd.service.impl.CccdValidationServiceImpl;
+import com.company.company_clean_hub_be.dto.response.AvailableEmployeeResponse;
+import com.company.company_clean_hub_be.entity.Contract;
+import com.company.company_clean_hub_be.entity.EmploymentType;
+import com.company.company_clean_hub_be.exception.AppException;
+import com.company.company_clean_hub_be.exception.ErrorCode;
+import com.company.company_clean_hub_be.repository.AssignmentRepository;
+import com.company.company_clean_hub_be.repository.AttendanceRepository;
+import com.company.company_clean_hub_be.repository.ContractRepository;
+import com.company.company_clean_hub_be.repository.EmployeeRepository;
+import com.company.company_clean_hub_be.repository.RoleRepository;
+import com.company.company_clean_hub_be.repository.UserRepository;
+import com.company.company_clean_hub_be.repository.WorkLocationRepository;
+import com.company.company_clean_hub_be.repository.WorkScheduleRepository;
+import com.company.company_clean_hub_be.security.PrincipalCache;
+import com.company.company_clean_hub_be.service.EmployeeImageService;
+import com.company.company_clean_hub_be.service.FileStorageService;
+import com.company.company_clean_hub_be.service.NotificationService;
+import com.company.company_clean_hub_be.service.helper.EmployeeAvailabilityIndex;
+import com.company.company_clean_hub_be.service.helper.EmployeeAvailabilityIndex.BookedSlot;
+
+class EmployeeServiceImplAvailableEmployeesTest {
+
+    private static final LocalDate FROM = LocalDate.of(2026, 3, 2);
+    private static final LocalTime EIGHT = LocalTime.of(8, 0);
+    private static final LocalTime TWELVE = LocalTime.of(12, 0);
+    private static final long CONTRACT_ID = 50L;
+
+    private EmployeeRepository employeeRepository;
+    private ContractRepository contractRepository;
+    private WorkLocationRepository workLocationRepository;
+    private EmployeeAvailabilityIndex availabilityIndex;
+    private EmployeeServiceImpl service;
+
+    private final List<Object[]> candidateRows = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        employeeRepository = mock(EmployeeRepository.class);
+        contractRepository = mock(ContractRepository.class);
+        workLocationRepository = mock(WorkLocationRepository.class);
+        availabilityIndex = mock(EmployeeAvailabilityIndex.class);
+        when(employeeRepository.findAvailabilityCandidateRows(any(), any(), any())).thenReturn(candidateRows);
+
+        service = new EmployeeServiceImpl(employeeRepository, mock(RoleRepository.class), mock(PasswordEncoder.class),
+                mock(UserRepository.class), mock(NotificationService.class), mock(AssignmentRepository.class),
+                mock(AttendanceRepository.class), mock(WorkScheduleRepository.class),
+                mock(EmployeeImageService.class), mock(FileStorageService.class),
+                mock(CccdValidationServiceImpl.class), mock(PrincipalCache.class), contractRepository,
+                workLocationRepository, availabilityIndex);
+    }
+
+    @Test
+    void defaultsToContractStaffAndPassesLocationFilters() {
+        candidate(1L, true);
+
+        service.findAvailableEmployees(null, List.of(DayOfWeek.MONDAY), EIGHT, TWELVE, FROM, null, "Hà Nội",
+                "Cầu Giấy", null, 10);
+        service.findAvailableEmployees(null, List.of(DayOfWeek.MONDAY), EIGHT, TWELVE, FROM, null, null, null,
+                EmploymentType.COMPANY_STAFF, 10);
+
+        verify(employeeRepository).findAvailabilityCandidateRows(EmploymentType.CONTRACT_STAFF, "Hà Nội", "Cầu Giấy");
+        verify(employeeRepository).findAvailabilityCandidateRows(EmploymentType.COMPANY_STAFF, null, null);
+    }
+
+    @Test
+    void returnsOnlyFilteredCandidatesThatAreFree() {
+        candidate(1L, true);
+        candidate(2L, false);
+        candidate(3L, true);
+
+        List<AvailableEmployeeResponse> result = service.findAvailableEmployees(null, List.of(DayOfWeek.MONDAY),
+                EIGHT, TWELVE, FROM, null, null, null, null, 10);
+
+        assertThat(result).extracting(AvailableEmployeeResponse::getEmployeeId).containsExactly(1L, 3L);
+        assertThat(result.get(0).getEmployeeCode()).isEqualTo("NV1");
+        assertThat(result.get(0).getName()).isEqualTo("Nhân viên 1");
+    }
+
+    @Test
+    void fallsBackToContractDaysAndTimes() {
+        when(contractRepository.findById(CONTRACT_ID)).thenReturn(Optional.of(contract(LocalTime.of(7, 0),
+                LocalTime.of(11, 0), DayOfWeek.MONDAY, DayOfWeek.WEDNESDAY)));
+        candidate(1L, true);
+        int mondayWednesday = EmployeeAvailabilityIndex.toDayMask(List.of(DayOfWeek.MONDAY, DayOfWeek.WEDNESDAY));
+
+        service.findAvailableEmployees(CONTRACT_ID, null, null, null, FROM, null, null, null, null, 10);
+        service.findAvailableEmployees(CONTRACT_ID, List.of(), null, null, FROM, null, null, null, null, 10);
+
+        verify(availabilityIndex, times(2)).isFree(1L, FROM, null, mondayWednesday,
+                LocalTime.of(7, 0), LocalTime.of(11, 0));
+    }
+
+    @Test
+    void requestParametersOverrideContract() {
+        when(contractRepository.findById(CONTRACT_ID)).thenReturn(Optional.of(contract(LocalTime.of(7, 0),
+                LocalTime.of(11, 0), DayOfWeek.MONDAY)));
+        candidate(1L, true);
+        LocalDate to = FROM.plusDays(30);
+
+        service.findAvailableEmployees(CONTRACT_ID, List.of(DayOfWeek.TUESDAY), LocalTime.of(13, 0),
+                LocalTime.of(17, 0), FROM, to, null, null, null, 10);
+
+        verify(availabilityIndex).isFree(1L, FROM, to, EmployeeAvailabilityIndex.dayBit(DayOfWeek.TUESDAY),
+                LocalTime.of(13, 0), LocalTime.of(17, 0));
+    }
+
+    @Test
+    void withoutContractOrDaysChecksEveryDayFromToday() {
+        candidate(1L, true);
+
+        service.findAvailableEmployees(null, null, EIGHT, TWELVE, null, null, null, null, null, 10);
+
+        verify(availabilityIndex).isFree(1L, LocalDate.now(), null, EmployeeAvailabilityIndex.ALL_DAYS, EIGHT, TWELVE);
+        verify(workLocationRepository, never()).findActiveCoordinateRowsByContractIds(anyCollection());
+    }
+
+    @Test
+    void rejectsInvalidRequests() {
+        when(contractRepository.findById(CONTRACT_ID)).thenReturn(Optional.empty());
+
+        assertThatThrownBy(() -> service.findAvailableEmployees(CONTRACT_ID, null, EIGHT, TWELVE, FROM, null, null,
+                null, null, 10)).isInstanceOf(AppException.class)
+                .extracting("errorCode").isEqualTo(ErrorCode.CONTRACT_NOT_FOUND);
+        assertThatThrownBy(() -> service.findAvailableEmployees(null, null, null, TWELVE, FROM, null, null, null,
+                null, 10)).isInstanceOf(AppException.class)
+                .extracting("errorCode").isEqualTo(ErrorCode.INVALID_REQUEST);
+        assertThatThrownBy(() -> service.findAvailableEmployees(null, null, TWELVE, EIGHT, FROM, null, null, null,
+                null, 10)).isInstanceOf(AppException.class)
+                .extracting("errorCode").isEqualTo(ErrorCode.INVALID_WORK_TIME_RANGE);
+        assertThatThrownBy(() -> service.findAvailableEmployees(null, null, EIGHT, TWELVE, FROM, FROM.minusDays(1),
+                null, null, null, 10)).isInstanceOf(AppException.class)
+                .extracting("errorCode").isEqualTo(ErrorCode.INVALID_REQUEST);
+        verify(employeeRepository, never()).findAvailabilityCandidateRows(any(), any(), any());
+    }
+
+    @Test
+    void keepsOnlyTopRankedCandidatesWhenLimitIsSmallerThanFreeCount() {
+        candidate(1L, true, slot(1L, 60L), slot(1L, 61L));
+        candidate(2L, true);
+        candidate(3L, true, slot(3L, 60L));
+        candidate(4L, true);
+        candidate(5L, true, slot(5L, 62L));
+        candidate(6L, true, slot(6L, 60L), slot(6L, 61L), slot(6L, 62L));
+        candidate(7L, false);
+
+        List<AvailableEmployeeResponse> result = service.findAvailableEmployees(null, List.of(DayOfWeek.MONDAY),
+                EIGHT, TWELVE, FROM, null, null, null, null, 3);
+
+        // Ít assignment trước, cùng tải thì theo id
+        assertThat(result).extracting(AvailableEmployeeResponse::getEmployeeId).containsExactly(2L, 4L, 3L);
+        assertThat(result).extracting(AvailableEmployeeResponse::getActiveAssignments).containsExactly(0, 0, 1);
+    }
+
+    @Test
+    void distanceIsShortestBetweenCurrentSitesAndTargetContract() {
+        when(contractRepository.findById(CONTRACT_ID)).thenReturn(Optional.of(contract(EIGHT, TWELVE,
+                DayOfWeek.MONDAY)));
+        candidate(1L, true, slot(1L, 60L));
+        candidate(2L, true, slot(2L, 70L));
+        candidate(3L, true);
+        double[] target = { 21.0285, 105.8542 };
+        double[] otherTarget = { 21.0300, 105.8000 };
+        double[] nearSite = { 21.0100, 105.8500 };
+        double[] farSite = { 21.0500, 105.9000 };
+        when(workLocationRepository.findActiveCoordinateRowsByContractIds(anyCollection())).thenReturn(List.of(
+                new Object[] { CONTRACT_ID, target[0], target[1] },
+                new Object[] { CONTRACT_ID, otherTarget[0], otherTarget[1] },
+                new Object[] { 60L, farSite[0], farSite[1] },
+                new Object[] { 60L, nearSite[0], nearSite[1] }));
+
+        List<AvailableEmployeeResponse> result = service.findAvailableEmployees(CONTRACT_ID, null, null, null, FROM,
+                null, null, null, null, 10);
+
+        double expected = Math.min(
+                Math.min(GeofenceServiceImpl.haversineDistance(nearSite[0], nearSite[1], target[0], target[1]),
+                        GeofenceServiceImpl.haversineDistance(nearSite[0], nearSite[1], otherTarget[0], otherTarget[1])),
+                Math.min(GeofenceServiceImpl.haversineDistance(farSite[0], farSite[1], target[0], target[1]),
+                        GeofenceServiceImpl.haversineDistance(farSite[0], farSite[1], otherTarget[0], otherTarget[1])));
+        // Chưa có việc (không rõ khoảng cách) trước, rồi người có khoảng cách, hợp đồng không có vị trí xếp sau
+        assertThat(result).extracting(AvailableEmployeeResponse::getEmployeeId).containsExactly(3L, 1L, 2L);
+        assertThat(result).extracting(AvailableEmployeeResponse::getDistanceMeters)
+                .containsExactly(null, Math.round(expected * 10) / 10.0, null);
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Collection<Long>> contractIds = ArgumentCaptor.forClass(Collection.class);
+        verify(workLocationRepository).findActiveCoordinateRowsByContractIds(contractIds.capture());
+        assertThat(contractIds.getValue()).containsExactlyInAnyOrder(CONTRACT_ID, 60L, 70L);
+    }
+
+    // Dòng [id, employeeCode, name, phone, address] trả về từ bộ lọc, kèm trạng thái rảnh và khung bận
+    private void candidate(long employeeId, boolean free, BookedSlot... slots) {
+        candidateRows.add(new Object[] { employeeId, "NV" + employeeId, "Nhân viên " + employeeId, null, null });
+        when(availabilityIndex.isFree(eq(employeeId), any(), any(), anyInt(), any(), any())).thenReturn(free);
+        when(availabilityIndex.getSlots(employeeId)).thenReturn(Arrays.asList(slots));
+    }
+
+    private static BookedSlot slot(long employeeId, long contractId) {
+        return new BookedSlot(employeeId * 100 + contractId, employeeId, contractId, FROM.minusMonths(1), null,
+                EmployeeAvailabilityIndex.ALL_DAYS, 8 * 60, 12 * 60);
+    }
+
+    private static Contract contract(LocalTime start, LocalTime end, DayOfWeek... days) {
+        return Contract.builder()
+                .id(CONTRACT_ID)
+                .workStartTime(start)
+                .workEndTime(end)
+                .workingDaysPerWeek(new ArrayList<>(List.of(days)))
+                .build();
+    }
+}
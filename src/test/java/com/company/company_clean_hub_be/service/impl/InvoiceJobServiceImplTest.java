@@ -0,0 +1,79 @@
+package com.company.company_clean_hub_be.service.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.company.company_clean_hub_be.dto.response.InvoiceJobResponse;
+import com.company.company_clean_hub_be.entity.User;
+import com.company.company_clean_hub_be.exception.AppException;
+import com.company.company_clean_hub_be.exception.ErrorCode;
+import com.company.company_clean_hub_be.repository.UserRepository;
+import com.company.company_clean_hub_be.service.InvoiceService;
+import com.company.company_clean_hub_be.service.UserService;
+
+class InvoiceJobServiceImplTest {
+
+    private InvoiceService invoiceService;
+    private InvoiceJobServiceImpl invoiceJobService;
+
+    @BeforeEach
+    void setUp() {
+        invoiceService = mock(InvoiceService.class);
+        UserRepository userRepository = mock(UserRepository.class);
+        UserService userService = mock(UserService.class);
+        // Executor không chạy lô nào → job giữ trạng thái đang chạy
+        ThreadPoolTaskExecutor executor = mock(ThreadPoolTaskExecutor.class);
+
+        when(userService.getCurrentUsername()).thenReturn("accountant");
+        when(userRepository.findByUsername("accountant"))
+                .thenReturn(Optional.of(User.builder().id(5L).username("accountant").build()));
+        when(invoiceService.findContractIdsToInvoice(any(), any())).thenReturn(List.of(1L, 2L, 3L));
+
+        invoiceJobService = new InvoiceJobServiceImpl(invoiceService, userRepository, userService, executor);
+        ReflectionTestUtils.setField(invoiceJobService, "chunkSize", 2);
+        ReflectionTestUtils.setField(invoiceJobService, "retentionMinutes", 60L);
+    }
+
+    @Test
+    void rejectsMissingOrOutOfRangeMonth() {
+        assertThatThrownBy(() -> invoiceJobService.startMonthlyInvoicing(null, 2025, null))
+                .isInstanceOf(AppException.class)
+                .extracting("errorCode").isEqualTo(ErrorCode.INVALID_REQUEST);
+        assertThatThrownBy(() -> invoiceJobService.startMonthlyInvoicing(13, 2025, null))
+                .isInstanceOf(AppException.class)
+                .extracting("errorCode").isEqualTo(ErrorCode.INVALID_REQUEST);
+    }
+
+    @Test
+    void rejectsSecondJobForRunningPeriod() {
+        InvoiceJobResponse first = invoiceJobService.startMonthlyInvoicing(3, 2025, null);
+        assertThat(first.getTotalChunks()).isEqualTo(2);
+
+        assertThatThrownBy(() -> invoiceJobService.startMonthlyInvoicing(3, 2025, null))
+                .isInstanceOf(AppException.class)
+                .extracting("errorCode").isEqualTo(ErrorCode.INVOICE_JOB_ALREADY_RUNNING);
+
+        // Tháng khác không bị chặn
+        assertThat(invoiceJobService.startMonthlyInvoicing(4, 2025, null).getJobId()).isNotEqualTo(first.getJobId());
+    }
+
+    @Test
+    void periodIsReleasedWhenJobFinishes() {
+        when(invoiceService.findContractIdsToInvoice(any(), any())).thenReturn(List.of());
+
+        invoiceJobService.startMonthlyInvoicing(3, 2025, null);
+
+        assertThat(invoiceJobService.startMonthlyInvoicing(3, 2025, null).getTotalContracts()).isZero();
+    }
+}
@@ -0,0 +1,145 @@
+package com.company.company_clean_hub_be.service.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.company.company_clean_hub_be.entity.Assignment;
+import com.company.company_clean_hub_be.entity.AssignmentScope;
+import com.company.company_clean_hub_be.entity.AssignmentType;
+import com.company.company_clean_hub_be.entity.Contract;
+import com.company.company_clean_hub_be.entity.ContractType;
+import com.company.company_clean_hub_be.entity.Customer;
+import com.company.company_clean_hub_be.entity.Employee;
+import com.company.company_clean_hub_be.entity.EmploymentType;
+import com.company.company_clean_hub_be.entity.Role;
+import com.company.company_clean_hub_be.entity.User;
+import com.company.company_clean_hub_be.service.AttendanceSummaryService;
+import com.company.company_clean_hub_be.service.PayrollService;
+import com.company.company_clean_hub_be.support.MySqlIntegrationTest;
+
+/**
+ * Đối chiếu luồng tính lương từng nhân viên (payroll.bulk.set-based=false) với luồng set-based trên cùng
+ * một bộ dữ liệu MySQL: các dòng payroll, note và attendance được gắn payroll phải giống hệt nhau.
+ */
+class PayrollBulkCalculationParityTest extends MySqlIntegrationTest {
+
+    private static final int MONTH = 3;
+    private static final int YEAR = 2026;
+    private static final LocalDate MONTH_START = LocalDate.of(YEAR, MONTH, 1);
+
+    @Autowired
+    private PayrollService payrollService;
+
+    @Autowired
+    private AttendanceSummaryService attendanceSummaryService;
+
+    private Object serviceTarget;
+    private boolean originalSetBased;
+    private List<Long> employeeIds;
+    private Long accountantId;
+
+    @BeforeEach
+    void setUp() {
+        serviceTarget = AopTestUtils.getUltimateTargetObject(payrollService);
+        originalSetBased = (Boolean) ReflectionTestUtils.getField(serviceTarget, "setBasedBulkCalculation");
+
+        Role role = saveRole(unique("ROLE"));
+        User accountant = saveUser(role);
+        accountantId = accountant.getId();
+        Customer customer = saveCustomer(role);
+        Contract monthlyFixed = saveContract(customer, ContractType.MONTHLY_FIXED, MONTH_START.minusMonths(6));
+        Contract monthlyActual = saveContract(customer, ContractType.MONTHLY_ACTUAL, MONTH_START.minusMonths(6));
+
+        // Nhân viên hợp đồng: một phân công lương tháng và một phân công lương ngày, có ngày bị xóa mềm
+        Employee contractStaff = saveEmployee(role, EmploymentType.CONTRACT_STAFF, null, new BigDecimal("200000"),
+                new BigDecimal("5000000"));
+        Assignment fixed = saveAssignment(contractStaff, monthlyFixed, AssignmentType.FIXED_BY_CONTRACT,
+                AssignmentScope.CONTRACT, MONTH_START.minusMonths(6), new BigDecimal("6000000"), 22, null);
+        saveAttendances(fixed, MONTH_START, MONTH_START.plusDays(20), true);
+        Assignment byDay = saveAssignment(contractStaff, monthlyActual, AssignmentType.FIXED_BY_DAY,
+                AssignmentScope.CONTRACT, MONTH_START.minusMonths(2), new BigDecimal("250000"), 10,
+                new BigDecimal("100000"));
+        saveAttendances(byDay, MONTH_START.plusDays(10), MONTH_START.plusDays(17), false);
+
+        // Nhân viên công ty: phân công COMPANY, có bảo hiểm tháng trước để tính lại insurance
+        Employee companyStaff = saveEmployee(role, EmploymentType.COMPANY_STAFF, new BigDecimal("9000000"),
+                new BigDecimal("500000"), new BigDecimal("7000000"));
+        Assignment company = saveAssignment(companyStaff, null, AssignmentType.FIXED_BY_COMPANY,
+                AssignmentScope.COMPANY, MONTH_START.minusMonths(12), new BigDecimal("9000000"), 26,
+                new BigDecimal("300000"));
+        saveAttendances(company, MONTH_START, MONTH_START.plusDays(27), false);
+        jdbcTemplate.update("INSERT INTO payrolls (employee_id, accountant_id, insurance_total, final_salary, status, "
+                + "paid_amount, created_at, updated_at) VALUES (?, ?, ?, ?, 'PAID', 0, ?, ?)",
+                companyStaff.getId(), accountantId, new BigDecimal("735000"), new BigDecimal("8000000"),
+                LocalDateTime.of(YEAR, MONTH - 1, 1, 0, 0), LocalDateTime.now());
+
+        // Nhân viên tạm thời chỉ có chấm công đã xóa: cả hai luồng phải bỏ qua
+        Employee absentStaff = saveEmployee(role, EmploymentType.CONTRACT_STAFF, null, null, null);
+        Assignment temporary = saveAssignment(absentStaff, monthlyActual, AssignmentType.TEMPORARY,
+                AssignmentScope.CONTRACT, MONTH_START, new BigDecimal("200000"), 1, null);
+        saveAttendances(temporary, MONTH_START.plusDays(4), MONTH_START.plusDays(4), false);
+        jdbcTemplate.update("UPDATE attendance SET deleted = true WHERE assignment_id = ?", temporary.getId());
+        attendanceSummaryService.refreshAssignments(List.of(temporary.getId()));
+
+        employeeIds = List.of(contractStaff.getId(), companyStaff.getId(), absentStaff.getId());
+    }
+
+    @AfterEach
+    void restoreFlag() {
+        ReflectionTestUtils.setField(serviceTarget, "setBasedBulkCalculation", originalSetBased);
+    }
+
+    @Test
+    void setBasedChunkPersistsSamePayrollsAsPerEmployeeChunk() {
+        ReflectionTestUtils.setField(serviceTarget, "setBasedBulkCalculation", false);
+        int perEmployeeResponses = payrollService.calculatePayrollForEmployees(employeeIds, MONTH, YEAR, accountantId)
+                .size();
+        List<Map<String, Object>> perEmployee = snapshot();
+
+        clearMonthPayrolls();
+
+        ReflectionTestUtils.setField(serviceTarget, "setBasedBulkCalculation", true);
+        int setBasedResponses = payrollService.calculatePayrollForEmployees(employeeIds, MONTH, YEAR, accountantId)
+                .size();
+        List<Map<String, Object>> setBased = snapshot();
+
+        assertThat(perEmployee).hasSize(2);
+        assertThat(perEmployee).allSatisfy(row -> assertThat(row.get("note")).isNotNull());
+        assertThat(setBased).containsExactlyElementsOf(perEmployee);
+        assertThat(setBasedResponses).isEqualTo(perEmployeeResponses);
+    }
+
+    // Dòng payroll của tháng (bỏ id, updated_at) kèm số attendance đã gắn vào payroll
+    private List<Map<String, Object>> snapshot() {
+        return jdbcTemplate.queryForList("SELECT p.employee_id, p.accountant_id, p.bonus_total, p.total_days, "
+                + "p.penalty_total, p.allowance_total, p.insurance_total, p.final_salary, p.base_salary, p.status, "
+                + "p.paid_amount, p.payment_date, p.created_at, p.note, "
+                + "(SELECT COUNT(*) FROM attendance a WHERE a.payroll_id = p.id) AS linked_attendances "
+                + "FROM payrolls p WHERE p.employee_id IN (" + idList() + ") "
+                + "AND MONTH(p.created_at) = ? AND YEAR(p.created_at) = ? ORDER BY p.employee_id", MONTH, YEAR);
+    }
+
+    private void clearMonthPayrolls() {
+        jdbcTemplate.update("UPDATE attendance SET payroll_id = NULL WHERE employee_id IN (" + idList() + ") "
+                + "AND MONTH(date) = ? AND YEAR(date) = ?", MONTH, YEAR);
+        jdbcTemplate.update("DELETE FROM payrolls WHERE employee_id IN (" + idList() + ") "
+                + "AND MONTH(created_at) = ? AND YEAR(created_at) = ?", MONTH, YEAR);
+    }
+
+    private String idList() {
+        return employeeIds.stream().map(String::valueOf).collect(Collectors.joining(","));
+    }
+}
@@ -0,0 +1,99 @@
+package com.company.company_clean_hub_be.service.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.company.company_clean_hub_be.dto.response.PayrollJobResponse;
+import com.company.company_clean_hub_be.entity.User;
+import com.company.company_clean_hub_be.exception.AppException;
+import com.company.company_clean_hub_be.exception.ErrorCode;
+import com.company.company_clean_hub_be.repository.EmployeeRepository;
+import com.company.company_clean_hub_be.repository.UserRepository;
+import com.company.company_clean_hub_be.service.PayrollService;
+import com.company.company_clean_hub_be.service.UserService;
+import com.company.company_clean_hub_be.service.helper.PayrollPeriodGuard;
+
+class PayrollJobServiceImplTest {
+
+    private EmployeeRepository employeeRepository;
+    private PayrollPeriodGuard payrollPeriodGuard;
+    private PayrollJobServiceImpl payrollJobService;
+
+    @BeforeEach
+    void setUp() {
+        PayrollService payrollService = mock(PayrollService.class);
+        employeeRepository = mock(EmployeeRepository.class);
+        UserRepository userRepository = mock(UserRepository.class);
+        UserService userService = mock(UserService.class);
+        // Executor không chạy lô nào → job giữ trạng thái đang chạy
+        ThreadPoolTaskExecutor executor = mock(ThreadPoolTaskExecutor.class);
+        payrollPeriodGuard = new PayrollPeriodGuard();
+
+        when(userService.getCurrentUsername()).thenReturn("accountant");
+        when(userRepository.findByUsername("accountant"))
+                .thenReturn(Optional.of(User.builder().id(5L).username("accountant").build()));
+        when(employeeRepository.findDistinctEmployeeIdsByAssignmentMonthYear(any(), any()))
+                .thenReturn(List.of(1L, 2L, 3L));
+
+        payrollJobService = new PayrollJobServiceImpl(payrollService, employeeRepository, userRepository,
+                userService, executor, payrollPeriodGuard);
+        ReflectionTestUtils.setField(payrollJobService, "chunkSize", 2);
+        ReflectionTestUtils.setField(payrollJobService, "retentionMinutes", 60L);
+    }
+
+    @Test
+    void rejectsSecondCalculationForRunningPeriod() {
+        PayrollJobResponse first = payrollJobService.startCalculation(3, 2026);
+        assertThat(first.getTotalChunks()).isEqualTo(2);
+
+        assertThatThrownBy(() -> payrollJobService.startCalculation(3, 2026))
+                .isInstanceOf(AppException.class)
+                .extracting("errorCode").isEqualTo(ErrorCode.PAYROLL_CALCULATION_ALREADY_RUNNING);
+
+        // Tháng khác và job xuất Excel cùng tháng không bị chặn
+        assertThat(payrollJobService.startCalculation(4, 2026).getJobId()).isNotEqualTo(first.getJobId());
+        assertThat(payrollJobService.startExport(3, 2026).getJobId()).isNotEqualTo(first.getJobId());
+    }
+
+    @Test
+    void runningJobBlocksSynchronousCalculationOfSamePeriod() {
+        payrollJobService.startCalculation(3, 2026);
+
+        assertThatThrownBy(() -> payrollPeriodGuard.acquire(YearMonth.of(2026, 3), "sync"))
+                .isInstanceOf(AppException.class)
+                .extracting("errorCode").isEqualTo(ErrorCode.PAYROLL_CALCULATION_ALREADY_RUNNING);
+    }
+
+    @Test
+    void periodIsReleasedWhenJobFinishes() {
+        when(employeeRepository.findDistinctEmployeeIdsByAssignmentMonthYear(any(), any())).thenReturn(List.of());
+
+        payrollJobService.startCalculation(3, 2026);
+
+        assertThat(payrollJobService.startCalculation(3, 2026).getTotalEmployees()).isZero();
+    }
+
+    @Test
+    void periodIsReleasedWhenJobCannotBeCreated() {
+        when(employeeRepository.findDistinctEmployeeIdsByAssignmentMonthYear(any(), any()))
+                .thenThrow(new IllegalStateException("db down"))
+                .thenReturn(List.of(1L));
+
+        assertThatThrownBy(() -> payrollJobService.startCalculation(3, 2026))
+                .isInstanceOf(IllegalStateException.class);
+
+        assertThat(payrollJobService.startCalculation(3, 2026).getTotalEmployees()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,176 @@
+package com.company.company_clean_hub_be.service.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.NullSource;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import com.company.company_clean_hub_be.dto.response.PayrollOverviewResponse;
+import com.company.company_clean_hub_be.dto.response.PayrollResponse;
+import com.company.company_clean_hub_be.entity.Assignment;
+import com.company.company_clean_hub_be.entity.AssignmentScope;
+import com.company.company_clean_hub_be.entity.AssignmentType;
+import com.company.company_clean_hub_be.entity.Contract;
+import com.company.company_clean_hub_be.entity.ContractType;
+import com.company.company_clean_hub_be.entity.Customer;
+import com.company.company_clean_hub_be.entity.CustomerAssignment;
+import com.company.company_clean_hub_be.entity.Employee;
+import com.company.company_clean_hub_be.entity.EmploymentType;
+import com.company.company_clean_hub_be.entity.PayrollStatus;
+import com.company.company_clean_hub_be.entity.Role;
+import com.company.company_clean_hub_be.entity.User;
+import com.company.company_clean_hub_be.repository.CustomerAssignmentRepository;
+import com.company.company_clean_hub_be.service.PayrollService;
+import com.company.company_clean_hub_be.support.MySqlIntegrationTest;
+
+/**
+ * Tổng quan bảng lương (đếm / cộng bằng truy vấn GROUP BY, QLT2 gom chấm công theo phạm vi khách hàng)
+ * phải khớp với cách tính cũ: lấy toàn bộ danh sách bảng lương cùng filter rồi cộng finalSalary / paidAmount
+ * của từng dòng (mapToResponse) trong Java. Chạy trên MySQL thật, cho cả admin (không giới hạn) và QLT2.
+ */
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class PayrollOverviewParityTest extends MySqlIntegrationTest {
+
+    private static final int MONTH = 5;
+    private static final int YEAR = 2026;
+    private static final LocalDate MONTH_START = LocalDate.of(YEAR, MONTH, 1);
+
+    @Autowired
+    private PayrollService payrollService;
+
+    @Autowired
+    private CustomerAssignmentRepository customerAssignmentRepository;
+
+    private String adminUsername;
+    private String managerUsername;
+
+    @BeforeAll
+    void seed() {
+        Role adminRole = saveRole("ADMIN");
+        Role managerRole = saveRole("QLT2");
+        Role staffRole = saveRole(unique("EMPLOYEE"));
+        User admin = saveUser(adminRole);
+        User manager = saveUser(managerRole);
+        adminUsername = admin.getUsername();
+        managerUsername = manager.getUsername();
+
+        Customer scoped = saveCustomer(staffRole);
+        Customer other = saveCustomer(staffRole);
+        customerAssignmentRepository.save(CustomerAssignment.builder()
+                .manager(manager)
+                .customer(scoped)
+                .assignedBy(admin)
+                .createdAt(LocalDateTime.now())
+                .build());
+        Contract scopedContract = saveContract(scoped, ContractType.MONTHLY_FIXED, MONTH_START.minusMonths(3));
+        Contract otherContract = saveContract(other, ContractType.MONTHLY_ACTUAL, MONTH_START.minusMonths(3));
+
+        // Alice làm cả khách hàng trong phạm vi QLT2 lẫn ngoài phạm vi
+        Employee alice = saveEmployee(staffRole, EmploymentType.CONTRACT_STAFF, null, null, null);
+        Assignment aliceFixed = saveAssignment(alice, scopedContract, AssignmentType.FIXED_BY_CONTRACT,
+                AssignmentScope.CONTRACT, MONTH_START.minusMonths(3), new BigDecimal("6000000"), 22,
+                new BigDecimal("200000"));
+        saveAttendances(aliceFixed, MONTH_START, MONTH_START.plusDays(20), true);
+        Assignment aliceOutside = saveAssignment(alice, otherContract, AssignmentType.FIXED_BY_DAY,
+                AssignmentScope.CONTRACT, MONTH_START.minusMonths(1), new BigDecimal("300000"), 8,
+                new BigDecimal("50000"));
+        saveAttendances(aliceOutside, MONTH_START.plusDays(21), MONTH_START.plusDays(27), false);
+
+        // Bob chỉ làm khách hàng trong phạm vi, Carol chỉ ngoài phạm vi
+        Employee bob = saveEmployee(staffRole, EmploymentType.CONTRACT_STAFF, null, null, null);
+        Assignment bobTemporary = saveAssignment(bob, scopedContract, AssignmentType.TEMPORARY,
+                AssignmentScope.CONTRACT, MONTH_START, new BigDecimal("250000"), 5, null);
+        saveAttendances(bobTemporary, MONTH_START.plusDays(2), MONTH_START.plusDays(8), true);
+        Employee carol = saveEmployee(staffRole, EmploymentType.CONTRACT_STAFF, null, null, null);
+        Assignment carolDaily = saveAssignment(carol, otherContract, AssignmentType.FIXED_BY_DAY,
+                AssignmentScope.CONTRACT, MONTH_START.minusMonths(2), new BigDecimal("280000"), 20, null);
+        saveAttendances(carolDaily, MONTH_START, MONTH_START.plusDays(15), false);
+
+        List<Long> employeeIds = List.of(alice.getId(), bob.getId(), carol.getId());
+        payrollService.calculatePayrollForEmployees(employeeIds, MONTH, YEAR, admin.getId());
+
+        // Đủ ba trạng thái thanh toán
+        markPaid(alice.getId(), PayrollStatus.PAID, null);
+        markPaid(bob.getId(), PayrollStatus.PARTIAL_PAID, new BigDecimal("400000"));
+        markPaid(carol.getId(), PayrollStatus.UNPAID, BigDecimal.ZERO);
+    }
+
+    @AfterEach
+    void clearAuthentication() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @ParameterizedTest
+    @NullSource
+    @ValueSource(booleans = { true, false })
+    void unscopedOverviewMatchesSumOfPayrollList(Boolean isPaid) {
+        authenticate(adminUsername);
+
+        PayrollOverviewResponse overview = payrollService.getPayrollOverview(null, MONTH, YEAR, isPaid);
+
+        assertMatchesList(overview, isPaid);
+        assertThat(overview.getTotalPayrolls()).isEqualTo(isPaid == null ? 3 : isPaid ? 1 : 2);
+    }
+
+    @ParameterizedTest
+    @NullSource
+    @ValueSource(booleans = { true, false })
+    void managerScopedOverviewMatchesSumOfPayrollList(Boolean isPaid) {
+        authenticate(managerUsername);
+
+        PayrollOverviewResponse overview = payrollService.getPayrollOverview(null, MONTH, YEAR, isPaid);
+
+        assertMatchesList(overview, isPaid);
+        // Carol không làm cho khách hàng nào của QLT2
+        assertThat(overview.getTotalPayrolls()).isEqualTo(isPaid == null ? 2 : 1);
+    }
+
+    // Cách tính cũ: cộng từng dòng của danh sách bảng lương cùng filter, cùng người dùng
+    private void assertMatchesList(PayrollOverviewResponse overview, Boolean isPaid) {
+        List<PayrollResponse> rows = payrollService
+                .getPayrollsWithFilter(null, MONTH, YEAR, isPaid, null, null, 0, 1000)
+                .getContent();
+        BigDecimal finalSalary = rows.stream()
+                .map(r -> r.getFinalSalary() != null ? r.getFinalSalary() : BigDecimal.ZERO)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        BigDecimal paidAmount = rows.stream()
+                .map(r -> r.getPaidAmount() != null ? r.getPaidAmount() : BigDecimal.ZERO)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+
+        assertThat(overview.getTotalPayrolls()).isEqualTo(rows.size());
+        assertThat(overview.getPaidPayrolls()).isEqualTo(count(rows, PayrollStatus.PAID));
+        assertThat(overview.getUnpaidPayrolls()).isEqualTo(count(rows, PayrollStatus.UNPAID));
+        assertThat(overview.getPartialPaidPayrolls()).isEqualTo(count(rows, PayrollStatus.PARTIAL_PAID));
+        assertThat(overview.getTotalFinalSalary()).isEqualByComparingTo(finalSalary);
+        assertThat(overview.getTotalPaidAmount()).isEqualByComparingTo(paidAmount);
+        assertThat(overview.getTotalRemainingAmount()).isEqualByComparingTo(finalSalary.subtract(paidAmount));
+    }
+
+    private static long count(List<PayrollResponse> rows, PayrollStatus status) {
+        return rows.stream().filter(r -> r.getStatus() == status).count();
+    }
+
+    // paidAmount null = trả đủ finalSalary
+    private void markPaid(Long employeeId, PayrollStatus status, BigDecimal paidAmount) {
+        jdbcTemplate.update("UPDATE payrolls SET status = ?, paid_amount = COALESCE(?, final_salary) "
+                + "WHERE employee_id = ? AND payroll_month = ? AND payroll_year = ?",
+                status.name(), paidAmount, employeeId, MONTH, YEAR);
+    }
+
+    private static void authenticate(String username) {
+        SecurityContextHolder.getContext()
+                .setAuthentication(new UsernamePasswordAuthenticationToken(username, null, List.of()));
+    }
+}
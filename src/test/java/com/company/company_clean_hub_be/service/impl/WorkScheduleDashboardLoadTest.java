@@ -0,0 +1,167 @@
+package com.company.company_clean_hub_be.service.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.company.company_clean_hub_be.repository.WorkScheduleRepository;
+import com.company.company_clean_hub_be.service.WorkScheduleService;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Load test cho thống kê dashboard lịch làm việc: bảng work_schedules tăng dần tới hàng triệu dòng
+ * (ngoài tháng được thống kê), độ trễ của các truy vấn group-by trên index (scheduled_date, status)
+ * phải gần như không đổi.
+ * Chỉ chạy khi bật tay, trên DB MySQL thử nghiệm có ít nhất một assignment:
+ * mvn test -Dtest=WorkScheduleDashboardLoadTest -Dloadtest.enabled=true
+ *   -DDB_URL=jdbc:mysql://localhost:3307/cl-db-load?rewriteBatchedStatements=true
+ *   [-Dloadtest.work-schedule.sizes=100000,1000000,3000000]
+ * Dòng sinh ra đánh dấu sync_note = MARKER và bị xóa khi test kết thúc.
+ */
+@Slf4j
+@SpringBootTest
+@Tag("load")
+@EnabledIfSystemProperty(named = "loadtest.enabled", matches = "true")
+class WorkScheduleDashboardLoadTest {
+
+    private static final String MARKER = "LOADTEST-DASHBOARD";
+    private static final String INSERT_SQL = "INSERT INTO work_schedules (assignment_id, employee_id, scheduled_date, "
+            + "status, reason, attendance_deleted, sync_note, created_at, updated_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String[] STATUSES = { "SCHEDULED", "VERIFIED", "MISSED", "CANCELLED" };
+    private static final int BATCH_SIZE = 5000;
+    private static final int RUNS = 7;
+
+    // Tháng được thống kê: số dòng cố định, phần tăng thêm nằm ở các năm khác
+    private static final LocalDate TARGET_MONTH = LocalDate.of(1990, 1, 1);
+    private static final int TARGET_MONTH_ROWS = 5000;
+    private static final LocalDate FILLER_START = LocalDate.of(2000, 1, 1);
+    private static final int FILLER_DAYS = 9000;
+
+    // Cho phép nhiễu của máy đo: chậm hơn tối đa 3 lần (và hơn 50ms) so với kích thước nhỏ nhất
+    private static final double MAX_SLOWDOWN = 3.0;
+    private static final long SLOWDOWN_GRACE_MS = 50;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private WorkScheduleService workScheduleService;
+
+    @Autowired
+    private WorkScheduleRepository workScheduleRepository;
+
+    private long seeded;
+
+    @Test
+    void dashboardLatencyStaysFlatAsTableGrows() {
+        List<Map<String, Object>> owners = jdbcTemplate.queryForList(
+                "SELECT id, employee_id FROM assignments WHERE employee_id IS NOT NULL ORDER BY id LIMIT 1");
+        Assumptions.assumeFalse(owners.isEmpty(), "Cần ít nhất một assignment trong DB thử nghiệm");
+        long assignmentId = ((Number) owners.get(0).get("id")).longValue();
+        long employeeId = ((Number) owners.get(0).get("employee_id")).longValue();
+
+        int month = TARGET_MONTH.getMonthValue();
+        int year = TARGET_MONTH.getYear();
+        LocalDate monthEnd = TARGET_MONTH.withDayOfMonth(TARGET_MONTH.lengthOfMonth());
+        Map<String, Supplier<?>> queries = new LinkedHashMap<>();
+        queries.put("getStats", () -> workScheduleService.getStats(month, year, null));
+        queries.put("getEmployeesWithSchedules", () -> workScheduleService.getEmployeesWithSchedules(month, year, null));
+        queries.put("countByContractAndStatus",
+                () -> workScheduleRepository.countByContractAndStatusInDateRange(TARGET_MONTH, monthEnd));
+
+        insert(assignmentId, employeeId, TARGET_MONTH_ROWS, true);
+
+        Map<String, List<Long>> latencies = new LinkedHashMap<>();
+        queries.keySet().forEach(name -> latencies.put(name, new ArrayList<>()));
+        List<Long> sizes = new ArrayList<>();
+        for (int size : sizes()) {
+            insert(assignmentId, employeeId, size - seeded, false);
+            sizes.add(seeded);
+            queries.forEach((name, query) -> latencies.get(name).add(medianMillis(query)));
+        }
+
+        log.info("[LOADTEST] work_schedules seeded rows: {}", sizes);
+        latencies.forEach((name, values) -> log.info("[LOADTEST] {} median ms: {}", name, values));
+
+        latencies.forEach((name, values) -> {
+            long baseline = values.get(0);
+            long largest = values.get(values.size() - 1);
+            assertThat(largest)
+                    .as("%s: %d dòng mất %dms, %d dòng mất %dms", name, sizes.get(0), baseline,
+                            sizes.get(sizes.size() - 1), largest)
+                    .isLessThanOrEqualTo(Math.max((long) (baseline * MAX_SLOWDOWN), baseline + SLOWDOWN_GRACE_MS));
+        });
+    }
+
+    @AfterEach
+    void cleanUp() {
+        // Xóa theo lô để không giữ một transaction khổng lồ
+        while (jdbcTemplate.update("DELETE FROM work_schedules WHERE sync_note = ? LIMIT 50000", MARKER) > 0) {
+            // tiếp tục tới khi hết dòng đánh dấu
+        }
+    }
+
+    private static int[] sizes() {
+        return Arrays.stream(System.getProperty("loadtest.work-schedule.sizes", "100000,1000000,3000000").split(","))
+                .mapToInt(s -> Integer.parseInt(s.trim()))
+                .sorted()
+                .toArray();
+    }
+
+    private void insert(long assignmentId, long employeeId, long count, boolean targetMonth) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Long> batch = new ArrayList<>(BATCH_SIZE);
+        for (long i = 0; i < count; i++) {
+            batch.add(seeded + i);
+            if (batch.size() == BATCH_SIZE || i == count - 1) {
+                jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(), (ps, n) -> {
+                    LocalDate date = targetMonth
+                            ? TARGET_MONTH.plusDays(n % TARGET_MONTH.lengthOfMonth())
+                            : FILLER_START.plusDays(n % FILLER_DAYS);
+                    ps.setLong(1, assignmentId);
+                    ps.setLong(2, employeeId);
+                    ps.setDate(3, Date.valueOf(date));
+                    ps.setString(4, STATUSES[(int) (n % STATUSES.length)]);
+                    ps.setString(5, "CONTRACT_REQUIREMENT");
+                    ps.setBoolean(6, false);
+                    ps.setString(7, MARKER);
+                    ps.setTimestamp(8, now);
+                    ps.setTimestamp(9, now);
+                });
+                batch.clear();
+            }
+        }
+        seeded += Math.max(0, count);
+    }
+
+    private static long medianMillis(Supplier<?> query) {
+        query.get(); // làm nóng
+        long[] samples = new long[RUNS];
+        for (int i = 0; i < RUNS; i++) {
+            long start = System.nanoTime();
+            query.get();
+            samples[i] = (System.nanoTime() - start) / 1_000_000;
+        }
+        Arrays.sort(samples);
+        return samples[RUNS / 2];
+    }
+}
@@ -0,0 +1,98 @@
+package com.company.company_clean_hub_be.support;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.web.multipart.MultipartFile;
+
+import com.company.company_clean_hub_be.service.FileStorageService;
+
+/**
+ * FileStorageService giữ file trong bộ nhớ thay cho Cloudinary khi test.
+ * failNextDeleteCalls(n) làm n lần gọi deleteFiles tiếp theo ném IOException (giả lập lỗi mạng).
+ */
+public class InMemoryFileStorageService implements FileStorageService {
+
+    private final Map<String, String> files = new ConcurrentHashMap<>();
+    private final List<List<String>> deleteCalls = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicInteger failingDeleteCalls = new AtomicInteger();
+
+    public void put(String publicId, String content) {
+        files.put(publicId, content);
+    }
+
+    public boolean contains(String publicId) {
+        return files.containsKey(publicId);
+    }
+
+    public void failNextDeleteCalls(int count) {
+        failingDeleteCalls.set(count);
+    }
+
+    // Các lô đã gọi deleteFiles (kể cả lần lỗi)
+    public List<List<String>> getDeleteCalls() {
+        synchronized (deleteCalls) {
+            return new ArrayList<>(deleteCalls);
+        }
+    }
+
+    @Override
+    public String storeFile(MultipartFile file) throws IOException {
+        return storeBase64(new String(file.getBytes()), file.getOriginalFilename(), "uploads");
+    }
+
+    @Override
+    public String storeBase64(String base64Content, String fileName, String folder) throws IOException {
+        return storeBase64WithPublicId(base64Content, UUID.randomUUID().toString(), folder);
+    }
+
+    @Override
+    public String storeBase64WithPublicId(String base64Content, String publicId, String folder) {
+        String fullId = folder + "/" + publicId;
+        files.put(fullId, base64Content);
+        return fullId;
+    }
+
+    @Override
+    public void deleteFile(String relativePath) {
+        files.remove(relativePath);
+    }
+
+    @Override
+    public Set<String> deleteFiles(List<String> publicIds) throws IOException {
+        deleteCalls.add(List.copyOf(publicIds));
+        if (failingDeleteCalls.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+            throw new IOException("Simulated storage failure");
+        }
+        Set<String> removed = new HashSet<>();
+        for (String publicId : publicIds) {
+            files.remove(publicId);
+            removed.add(publicId);
+        }
+        return removed;
+    }
+
+    @Override
+    public Resource loadFileAsResource(String relativePath) throws IOException {
+        String content = files.get(relativePath);
+        if (content == null) {
+            throw new IOException("File not found: " + relativePath);
+        }
+        return new ByteArrayResource(content.getBytes());
+    }
+
+    @Override
+    public String getSecureUrl(String publicId) {
+        return "https://storage.test/" + publicId;
+    }
+}
@@ -0,0 +1,208 @@
+package com.company.company_clean_hub_be.support;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.testcontainers.containers.MySQLContainer;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import com.company.company_clean_hub_be.entity.Assignment;
+import com.company.company_clean_hub_be.entity.AssignmentScope;
+import com.company.company_clean_hub_be.entity.AssignmentStatus;
+import com.company.company_clean_hub_be.entity.AssignmentType;
+import com.company.company_clean_hub_be.entity.Attendance;
+import com.company.company_clean_hub_be.entity.Contract;
+import com.company.company_clean_hub_be.entity.ContractType;
+import com.company.company_clean_hub_be.entity.Customer;
+import com.company.company_clean_hub_be.entity.Employee;
+import com.company.company_clean_hub_be.entity.EmploymentType;
+import com.company.company_clean_hub_be.entity.Role;
+import com.company.company_clean_hub_be.entity.ServiceEntity;
+import com.company.company_clean_hub_be.entity.User;
+import com.company.company_clean_hub_be.repository.AssignmentRepository;
+import com.company.company_clean_hub_be.repository.AttendanceRepository;
+import com.company.company_clean_hub_be.repository.ContractRepository;
+import com.company.company_clean_hub_be.repository.CustomerRepository;
+import com.company.company_clean_hub_be.repository.EmployeeRepository;
+import com.company.company_clean_hub_be.repository.RoleRepository;
+import com.company.company_clean_hub_be.repository.ServiceEntityRepository;
+import com.company.company_clean_hub_be.repository.UserRepository;
+import com.company.company_clean_hub_be.service.AttendanceSummaryService;
+
+/**
+ * Test chạy trên MySQL thật (Testcontainers, schema do Hibernate ddl-auto tạo).
+ * Container và Spring context dùng chung cho mọi lớp con; tự bỏ qua khi máy không có Docker.
+ * Dữ liệu mẫu dùng mã ngẫu nhiên nên các lớp con không đụng nhau, mỗi lớp con nên dùng tháng riêng.
+ */
+@SpringBootTest
+@Testcontainers(disabledWithoutDocker = true)
+public abstract class MySqlIntegrationTest {
+
+    @ServiceConnection
+    static final MySQLContainer<?> MYSQL = new MySQLContainer<>(DockerImageName.parse("mysql:8.0"));
+
+    @Autowired
+    protected JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private RoleRepository roleRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EmployeeRepository employeeRepository;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private ServiceEntityRepository serviceEntityRepository;
+
+    @Autowired
+    private ContractRepository contractRepository;
+
+    @Autowired
+    private AssignmentRepository assignmentRepository;
+
+    @Autowired
+    private AttendanceRepository attendanceRepository;
+
+    @Autowired
+    private AttendanceSummaryService attendanceSummaryService;
+
+    protected static String unique(String prefix) {
+        return prefix + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+
+    protected Role saveRole(String code) {
+        return roleRepository.save(Role.builder()
+                .name(code)
+                .code(code)
+                .build());
+    }
+
+    protected User saveUser(Role role) {
+        return userRepository.save(User.builder()
+                .username(unique("user"))
+                .password("password")
+                .role(role)
+                .status("ACTIVE")
+                .createdAt(LocalDateTime.now())
+                .build());
+    }
+
+    protected Employee saveEmployee(Role role, EmploymentType type, BigDecimal monthlySalary,
+            BigDecimal allowance, BigDecimal insuranceSalary) {
+        String code = unique("NV");
+        return employeeRepository.save(Employee.builder()
+                .username(code)
+                .password("password")
+                .role(role)
+                .status("ACTIVE")
+                .employeeCode(code)
+                .name("Nhân viên " + code)
+                .employmentType(type)
+                .monthlySalary(monthlySalary)
+                .allowance(allowance)
+                .insuranceSalary(insuranceSalary)
+                .createdAt(LocalDateTime.now())
+                .build());
+    }
+
+    protected Customer saveCustomer(Role role) {
+        String code = unique("KH");
+        return customerRepository.save(Customer.builder()
+                .username(code)
+                .password("password")
+                .role(role)
+                .status("ACTIVE")
+                .customerCode(code)
+                .name("Khách hàng " + code)
+                .createdAt(LocalDateTime.now())
+                .build());
+    }
+
+    protected Contract saveContract(Customer customer, ContractType type, LocalDate startDate) {
+        ServiceEntity service = serviceEntityRepository.save(ServiceEntity.builder()
+                .title(unique("Dịch vụ"))
+                .price(new BigDecimal("10000000"))
+                .vat(new BigDecimal("8"))
+                .effectiveFrom(startDate)
+                .createdAt(LocalDateTime.now())
+                .build());
+        return contractRepository.save(Contract.builder()
+                .customer(customer)
+                .services(Set.of(service))
+                .startDate(startDate)
+                .contractType(type)
+                .workingDaysPerWeek(new ArrayList<>(List.of(java.time.DayOfWeek.MONDAY,
+                        java.time.DayOfWeek.WEDNESDAY, java.time.DayOfWeek.FRIDAY)))
+                .workStartTime(LocalTime.of(8, 0))
+                .workEndTime(LocalTime.of(12, 0))
+                .createdAt(LocalDateTime.now())
+                .build());
+    }
+
+    protected Assignment saveAssignment(Employee employee, Contract contract, AssignmentType type,
+            AssignmentScope scope, LocalDate startDate, BigDecimal salary, Integer workDays,
+            BigDecimal additionalAllowance) {
+        return assignmentRepository.save(Assignment.builder()
+                .employee(employee)
+                .contract(contract)
+                .assignmentType(type)
+                .scope(scope)
+                .status(AssignmentStatus.IN_PROGRESS)
+                .startDate(startDate)
+                .salaryAtTime(salary)
+                .workDays(workDays)
+                .plannedDays(workDays)
+                .additionalAllowance(additionalAllowance)
+                .workingDaysPerWeek(new ArrayList<>(List.of(java.time.DayOfWeek.MONDAY,
+                        java.time.DayOfWeek.WEDNESDAY, java.time.DayOfWeek.FRIDAY)))
+                .createdAt(LocalDateTime.now())
+                .build());
+    }
+
+    /**
+     * Chấm công các ngày from..to (bỏ Chủ nhật) cho assignment; ngày thứ 3 có thưởng, ngày thứ 5 bị phạt
+     * và bị xóa mềm nếu deleteFifth. Bảng tổng hợp chấm công được tính lại ngay.
+     */
+    protected List<Attendance> saveAttendances(Assignment assignment, LocalDate from, LocalDate to,
+            boolean deleteFifth) {
+        List<Attendance> attendances = new ArrayList<>();
+        int index = 0;
+        for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+            if (date.getDayOfWeek() == java.time.DayOfWeek.SUNDAY) {
+                continue;
+            }
+            index++;
+            attendances.add(Attendance.builder()
+                    .assignment(assignment)
+                    .employee(assignment.getEmployee())
+                    .date(date)
+                    .workHours(new BigDecimal("8"))
+                    .bonus(index == 3 ? new BigDecimal("150000") : BigDecimal.ZERO)
+                    .penalty(index == 5 ? new BigDecimal("50000") : BigDecimal.ZERO)
+                    .supportCost(index == 2 ? new BigDecimal("30000") : BigDecimal.ZERO)
+                    .isOvertime(false)
+                    .deleted(deleteFifth && index == 5)
+                    .createdAt(LocalDateTime.now())
+                    .build());
+        }
+        List<Attendance> saved = attendanceRepository.saveAll(attendances);
+        attendanceSummaryService.refreshAssignments(List.of(assignment.getId()));
+        return saved;
+    }
+}
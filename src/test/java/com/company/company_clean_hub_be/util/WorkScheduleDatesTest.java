@@ -0,0 +1,38 @@
+package com.company.company_clean_hub_be.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.company.company_clean_hub_be.entity.WorkScheduleStatus;
+
+class WorkScheduleDatesTest {
+
+    // 2026-06-01 là Thứ 2
+    private static final LocalDate MONDAY = LocalDate.of(2026, 6, 1);
+
+    @Test
+    void emptyWorkingDaysFallBackToMondayToSaturday() {
+        assertThat(WorkScheduleDates.scheduledDates(List.of(), MONDAY, MONDAY.plusDays(6)))
+                .hasSize(6)
+                .doesNotContain(MONDAY.plusDays(6));
+        assertThat(WorkScheduleDates.scheduledDates(null, MONDAY, MONDAY.plusDays(6))).hasSize(6);
+    }
+
+    @Test
+    void configuredWorkingDaysAreRespected() {
+        assertThat(WorkScheduleDates.scheduledDates(List.of(DayOfWeek.SUNDAY, DayOfWeek.WEDNESDAY),
+                MONDAY, MONDAY.plusDays(13)))
+                .containsExactly(MONDAY.plusDays(2), MONDAY.plusDays(6), MONDAY.plusDays(9), MONDAY.plusDays(13));
+    }
+
+    @Test
+    void pastDatesAreMissed() {
+        assertThat(WorkScheduleDates.initialStatus(MONDAY, MONDAY.plusDays(1))).isEqualTo(WorkScheduleStatus.MISSED);
+        assertThat(WorkScheduleDates.initialStatus(MONDAY, MONDAY)).isEqualTo(WorkScheduleStatus.SCHEDULED);
+    }
+}